@@ -27,6 +27,7 @@ import org.bonitasoft.engine.bpm.flownode.HumanTaskInstance;
 import org.bonitasoft.engine.bpm.process.DesignProcessDefinition;
 import org.bonitasoft.engine.bpm.process.ProcessDefinition;
 import org.bonitasoft.engine.bpm.process.impl.ProcessDefinitionBuilder;
+import org.bonitasoft.engine.data.instance.api.DataInstanceContainer;
 import org.bonitasoft.engine.exception.BonitaException;
 import org.bonitasoft.engine.exception.BonitaRuntimeException;
 import org.bonitasoft.engine.exception.UpdateException;
@@ -140,8 +141,8 @@ public class ProcessWithExpressionLocalIT extends TestWithUser {
         updateDataWithOperation(step1, "The updated value", "tData");
         // evaluate it: it should return the updated value
         assertThat(evaluateTransientDataWithExpression(step1).get("tData")).isEqualTo("The updated value");
-        // clear the cache
-        getTenantAccessor().getCacheService().clear("transient_data");
+        // lose the transient data of the task
+        getTenantAccessor().getTransientDataService().deleteDataInstances(step1.getId(), DataInstanceContainer.ACTIVITY_INSTANCE.name());
         // evaluate it: it should return the default value
         assertThat(evaluateTransientDataWithExpression(step1).get("tData")).isEqualTo("The default value");
 
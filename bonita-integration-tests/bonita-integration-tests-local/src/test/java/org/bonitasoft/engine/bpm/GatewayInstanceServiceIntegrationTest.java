@@ -15,11 +15,13 @@ package org.bonitasoft.engine.bpm;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 import org.bonitasoft.engine.builder.BuilderFactory;
 import org.bonitasoft.engine.commons.exceptions.SBonitaException;
 import org.bonitasoft.engine.core.process.definition.model.SGatewayType;
 import org.bonitasoft.engine.core.process.instance.api.exceptions.SFlowNodeDeletionException;
+import org.bonitasoft.engine.core.process.instance.impl.GatewayTokens;
 import org.bonitasoft.engine.core.process.instance.model.SGatewayInstance;
 import org.bonitasoft.engine.core.process.instance.model.builder.SGatewayInstanceBuilderFactory;
 import org.bonitasoft.engine.recorder.model.DeleteRecord;
@@ -129,7 +131,10 @@ public class GatewayInstanceServiceIntegrationTest extends CommonBPMServicesTest
 
         final SGatewayInstance gatewayInstanceRes2 = getGatewayInstanceFromDB(gatewayInstance.getId());
         assertNotNull(gatewayInstanceRes2);
-        assertEquals("1,2,3,4", gatewayInstanceRes2.getHitBys());
+        final GatewayTokens tokens = GatewayTokens.of(gatewayInstanceRes2);
+        assertTrue(tokens.hasTokenOnEachTransition(4));
+        assertEquals(1, tokens.getCount(4));
+        assertEquals("", gatewayInstanceRes2.getHitBys());
 
         deleteGatewayInstance(gatewayInstanceRes);
     }
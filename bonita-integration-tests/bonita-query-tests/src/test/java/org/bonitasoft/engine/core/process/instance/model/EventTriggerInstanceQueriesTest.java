@@ -13,8 +13,11 @@
  **/
 package org.bonitasoft.engine.core.process.instance.model;
 
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.Assert.assertEquals;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import javax.inject.Inject;
@@ -113,10 +116,74 @@ public class EventTriggerInstanceQueriesTest {
         assertEquals(98L, sTimerEventTriggerInstances.get(0).getId());
     }
 
+    @Test
+    public void getTimerEventTriggerInstancesToExecute_should_return_timers_of_the_job_trigger_due_before_the_date_after_the_last_one() {
+        repository.add(buildSTimerEventTriggerInstance(1L, 101L, "timer1", "TimerEventScheduler", 1000L));
+        repository.add(buildSTimerEventTriggerInstance(2L, 102L, "timer2", "TimerEventScheduler", 5000L));
+        repository.add(buildSTimerEventTriggerInstance(3L, 103L, "timer3", "OneShotTrigger123", 1000L));
+        repository.add(buildSTimerEventTriggerInstance(4L, 104L, "timer4", "TimerEventScheduler", 1500L));
+        repository.add(buildSTimerEventTriggerInstance(5L, 105L, "timer5", "TimerEventScheduler", 1000L));
+        repository.add(buildSTimerEventTriggerInstance(6L, 106L, "timer6", "TimerEventScheduler", 2000L));
+
+        final List<STimerEventTriggerInstance> firstPage = repository.getTimerEventTriggerInstancesToExecute("TimerEventScheduler", 3000L,
+                Long.MIN_VALUE, 0L, 2);
+        final List<STimerEventTriggerInstance> secondPage = repository.getTimerEventTriggerInstancesToExecute("TimerEventScheduler", 3000L, 1000L,
+                5L, 2);
+
+        assertThat(firstPage).extracting("id").containsExactly(1L, 5L);
+        assertThat(secondPage).extracting("id").containsExactly(4L, 6L);
+    }
+
+    @Test
+    public void getTimerEventTriggerInstancesOfEventInstances_should_return_timers_of_the_job_trigger_of_the_event_instances() {
+        repository.add(buildSTimerEventTriggerInstance(1L, 101L, "timer1", "TimerEventScheduler", 1000L));
+        repository.add(buildSTimerEventTriggerInstance(2L, 102L, "timer2", "TimerEventScheduler", 1000L));
+        repository.add(buildSTimerEventTriggerInstance(3L, 103L, "timer3", "OneShotTrigger123", 1000L));
+
+        final List<STimerEventTriggerInstance> timers = repository.getTimerEventTriggerInstancesOfEventInstances("TimerEventScheduler",
+                asList(101L, 103L, 104L));
+
+        assertThat(timers).extracting("eventInstanceId").containsOnly(101L);
+    }
+
+    @Test
+    public void getTimerEventTriggerInstancesToExecute_should_read_the_window_by_pages_in_execution_date_order() {
+        // 2 timers due each millisecond, plus timers of Quartz jobs
+        repository.createTimerEventTriggerInstanceIndexes();
+        repository.addTimerEventTriggerInstances(1L, 5_000, 1_000_000L, "TimerEventScheduler");
+        repository.addTimerEventTriggerInstances(10_001L, 5_000, 1_000_000L, "TimerEventScheduler");
+        repository.addTimerEventTriggerInstances(20_001L, 1_000, 1_000_000L, "OneShotTrigger123");
+
+        // load the first 3 seconds
+        final long windowEnd = 1_000_000L + 3_000L;
+        final List<STimerEventTriggerInstance> window = new ArrayList<>();
+        long lastExecutionDate = Long.MIN_VALUE;
+        long lastId = 0;
+        List<STimerEventTriggerInstance> page;
+        do {
+            page = repository.getTimerEventTriggerInstancesToExecute("TimerEventScheduler", windowEnd, lastExecutionDate, lastId, 999);
+            window.addAll(page);
+            if (!page.isEmpty()) {
+                lastExecutionDate = page.get(page.size() - 1).getExecutionDate();
+                lastId = page.get(page.size() - 1).getId();
+            }
+        } while (page.size() == 999);
+
+        assertThat(window).hasSize(6_000);
+        assertThat(window).extracting("id").doesNotHaveDuplicates().startsWith(1L, 10_001L, 2L, 10_002L);
+        assertThat(window).extracting("executionDate").isSorted();
+        assertThat(window.get(5_999).getExecutionDate()).isEqualTo(windowEnd - 1);
+    }
+
     private STimerEventTriggerInstanceImpl buildSTimerEventTriggerInstance(final long id, final long eventInstanceId, final String eventInstanceName,
             final String jobTriggerName) {
-        final STimerEventTriggerInstanceImpl sTimerEventTriggerInstanceImpl = new STimerEventTriggerInstanceImpl(eventInstanceId, eventInstanceName, 96L,
-                jobTriggerName);
+        return buildSTimerEventTriggerInstance(id, eventInstanceId, eventInstanceName, jobTriggerName, 96L);
+    }
+
+    private STimerEventTriggerInstanceImpl buildSTimerEventTriggerInstance(final long id, final long eventInstanceId, final String eventInstanceName,
+            final String jobTriggerName, final long executionDate) {
+        final STimerEventTriggerInstanceImpl sTimerEventTriggerInstanceImpl = new STimerEventTriggerInstanceImpl(eventInstanceId, eventInstanceName,
+                executionDate, jobTriggerName);
         sTimerEventTriggerInstanceImpl.setId(id);
         sTimerEventTriggerInstanceImpl.setTenantId(PersistentObjectBuilder.DEFAULT_TENANT_ID);
         return sTimerEventTriggerInstanceImpl;
@@ -123,6 +123,30 @@ public class FlowNodeInstanceTest {
         assertThat(nodeToRestart).containsOnly(executing.getId(), notStable.getId(), terminal.getId(), abortingBoundary.getId(), cancellingBoundary.getId());
     }
 
+    @Test
+    public void getFlowNodeInstanceIdsToRestart_should_return_ids_of_flow_nodes_to_restart_after_the_last_id_ordered_by_id() {
+        // given
+        final SFlowNodeInstance executing1 = repository.add(aUserTask().withId(1001L).withName("executing1").withStateExecuting(true).withStable(true)
+                .withTerminal(false).build());
+        repository.add(aUserTask().withId(1002L).withName("normalTask").withStateExecuting(false).withStable(true).withTerminal(false).build());
+        final SFlowNodeInstance executing2 = repository.add(aUserTask().withId(1003L).withName("executing2").withStateExecuting(true).withStable(true)
+                .withTerminal(false).build());
+        final SFlowNodeInstance terminal = repository.add(aUserTask().withId(1004L).withName("terminal").withStateExecuting(false).withStable(true)
+                .withTerminal(true).build());
+        final SFlowNodeInstance notStable = repository.add(aUserTask().withId(1005L).withName("notStable").withStateExecuting(false).withStable(false)
+                .withTerminal(false).build());
+
+        // when
+        final List<Long> firstPage = repository.getFlowNodeInstanceIdsToRestart(-1, 2);
+        final List<Long> secondPage = repository.getFlowNodeInstanceIdsToRestart(firstPage.get(1), 2);
+        final List<Long> lastPage = repository.getFlowNodeInstanceIdsToRestart(secondPage.get(1), 2);
+
+        // then
+        assertThat(firstPage).containsExactly(executing1.getId(), executing2.getId());
+        assertThat(secondPage).containsExactly(terminal.getId(), notStable.getId());
+        assertThat(lastPage).isEmpty();
+    }
+
     // For
     @Test
     public void getNumberOfSHumanTaskInstanceAssignedAndPendingByRootProcessFor_should_return_number_of_process_definition_if_one_instance_has_assigned_tasks_to_the_user() {
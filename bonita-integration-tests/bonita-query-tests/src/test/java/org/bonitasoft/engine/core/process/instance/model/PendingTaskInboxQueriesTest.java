@@ -0,0 +1,124 @@
+/**
+ * Copyright (C) 2018 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.core.process.instance.model;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.bonitasoft.engine.test.persistence.builder.PendingTaskInboxEntryBuilder.aPendingTaskInboxEntry;
+import static org.bonitasoft.engine.test.persistence.builder.UserBuilder.aUser;
+import static org.bonitasoft.engine.test.persistence.builder.UserTaskInstanceBuilder.aUserTask;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.inject.Inject;
+
+import org.bonitasoft.engine.test.persistence.repository.ProcessInstanceRepository;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(locations = { "/testContext.xml" })
+@Transactional
+public class PendingTaskInboxQueriesTest {
+
+    @Inject
+    private ProcessInstanceRepository repository;
+
+    @Test
+    public void searchSHumanTaskInstancePendingForUserFromInbox_should_only_return_pending_tasks_not_assigned() {
+        repository.add(aUser().withId(1L).build());
+        repository.add(aUserTask().withId(10L).withName("pending").withStable(true).build());
+        repository.add(aUserTask().withId(11L).withName("assigned").withStable(true).withAssigneeId(2L).build());
+        repository.add(aUserTask().withId(12L).withName("executing").withStable(true).withStateExecuting(true).build());
+        repository.add(aUserTask().withId(13L).withName("other user").withStable(true).build());
+        for (final long taskId : new long[] { 10L, 11L, 12L }) {
+            repository.add(aPendingTaskInboxEntry().forUser(1L).forActivity(taskId).build());
+        }
+        repository.add(aPendingTaskInboxEntry().forUser(2L).forActivity(13L).build());
+
+        assertThat(repository.searchPendingTasksForUserFromInbox(1L)).extracting("id").containsOnly(10L);
+        assertThat(repository.getNumberOfPendingTasksForUserFromInbox(1L)).isEqualTo(1L);
+    }
+
+    @Test
+    public void searchSHumanTaskInstancePendingForUserFromInbox_should_return_task_once_when_user_is_several_times_in_its_inbox() {
+        repository.add(aUser().withId(1L).build());
+        repository.add(aUserTask().withId(10L).withName("pending").withStable(true).build());
+        // added by two concurrent transactions
+        repository.add(aPendingTaskInboxEntry().forUser(1L).forActivity(10L).build());
+        repository.add(aPendingTaskInboxEntry().forUser(1L).forActivity(10L).build());
+
+        assertThat(repository.searchPendingTasksForUserFromInbox(1L)).extracting("id").containsExactly(10L);
+        assertThat(repository.getNumberOfPendingTasksForUserFromInbox(1L)).isEqualTo(1L);
+    }
+
+    @Test
+    public void pending_tasks_from_inbox_should_be_the_same_as_pending_tasks_computed_from_mappings() {
+        final PendingTasksDataSet dataSet = new PendingTasksDataSet(repository, 42L);
+        dataSet.generate(50, 10, 300);
+        dataSet.fillInboxOfUsers();
+
+        for (final Long userId : dataSet.userIds) {
+            final List<SHumanTaskInstance> pendingTasks = repository.searchPendingTasksForUser(userId);
+            assertThat(repository.searchPendingTasksForUserFromInbox(userId)).extracting("id")
+                    .containsOnlyElementsOf(extractIds(pendingTasks)).hasSameSizeAs(pendingTasks);
+            assertThat(repository.getNumberOfPendingTasksForUserFromInbox(userId)).isEqualTo(repository.getNumberOfPendingTasksForUser(userId));
+        }
+    }
+
+    @Test
+    public void users_of_activities_computed_from_actors_should_be_the_same_as_activities_computed_for_users() {
+        final PendingTasksDataSet dataSet = new PendingTasksDataSet(repository, 7L);
+        dataSet.generate(50, 10, 300);
+
+        // entries as added by the inbox when mappings are created
+        final Map<Long, Set<Long>> activitiesOfUsersFromActors = new HashMap<>();
+        for (final Long actorId : dataSet.actorIds) {
+            final Set<Long> userIds = repository.getUserIdsOfActor(actorId);
+            for (final Long activityId : repository.getActivityIdsOfPendingMappingsOfActor(actorId)) {
+                for (final Long userId : userIds) {
+                    activitiesOfUsersFromActors.computeIfAbsent(userId, k -> new TreeSet<>()).add(activityId);
+                }
+            }
+        }
+
+        for (final Long userId : dataSet.userIds) {
+            final List<Long> activityIds = repository.getActivityIdsOfPendingMappingsForUser(userId);
+            // tasks mapped directly to the user using a user filter are not in the actor entries
+            final Set<Long> activityIdsFromActors = activitiesOfUsersFromActors.getOrDefault(userId, new TreeSet<>());
+            assertThat(activityIds).containsAll(activityIdsFromActors);
+            for (final Long activityId : activityIds) {
+                if (!activityIdsFromActors.contains(activityId)) {
+                    assertThat(repository.getPossibleUserIdsOfPendingTasks(activityId)).contains(userId);
+                }
+            }
+        }
+    }
+
+    private List<Long> extractIds(final List<SHumanTaskInstance> tasks) {
+        final List<Long> ids = new ArrayList<>();
+        for (final SHumanTaskInstance task : tasks) {
+            ids.add(task.getId());
+        }
+        return ids;
+    }
+
+}
@@ -0,0 +1,133 @@
+/**
+ * Copyright (C) 2018 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.core.process.instance.model;
+
+import static org.bonitasoft.engine.test.persistence.builder.ActorBuilder.anActor;
+import static org.bonitasoft.engine.test.persistence.builder.ActorMemberBuilder.anActorMember;
+import static org.bonitasoft.engine.test.persistence.builder.PendingActivityMappingBuilder.aPendingActivityMapping;
+import static org.bonitasoft.engine.test.persistence.builder.PendingTaskInboxEntryBuilder.aPendingTaskInboxEntry;
+import static org.bonitasoft.engine.test.persistence.builder.UserBuilder.aUser;
+import static org.bonitasoft.engine.test.persistence.builder.UserMembershipBuilder.aUserMembership;
+import static org.bonitasoft.engine.test.persistence.builder.UserTaskInstanceBuilder.aUserTask;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.bonitasoft.engine.actor.mapping.model.SActor;
+import org.bonitasoft.engine.test.persistence.builder.ActorMemberBuilder;
+import org.bonitasoft.engine.test.persistence.repository.ProcessInstanceRepository;
+
+/**
+ * Generate an organization and human tasks mapped to its users through actors and user filters, in all the states a pending task search must filter.
+ */
+class PendingTasksDataSet {
+
+    private static final int NUMBER_OF_GROUPS = 20;
+
+    private static final int NUMBER_OF_ROLES = 5;
+
+    private final ProcessInstanceRepository repository;
+
+    private final Random random;
+
+    final List<Long> userIds = new ArrayList<>();
+
+    final List<Long> actorIds = new ArrayList<>();
+
+    PendingTasksDataSet(final ProcessInstanceRepository repository, final long seed) {
+        this.repository = repository;
+        random = new Random(seed);
+    }
+
+    void generate(final int numberOfUsers, final int numberOfActors, final int numberOfTasks) {
+        for (long userId = 1; userId <= numberOfUsers; userId++) {
+            repository.add(aUser().withId(userId).withUserName("user" + userId).build());
+            userIds.add(userId);
+            final int numberOfMemberships = 1 + random.nextInt(3);
+            for (int i = 0; i < numberOfMemberships; i++) {
+                repository.add(aUserMembership().forUser(userId).memberOf(randomGroup(), randomRole()).build());
+            }
+        }
+        for (int i = 0; i < numberOfActors; i++) {
+            final SActor actor = repository.add(anActor().build());
+            actorIds.add(actor.getId());
+            final int numberOfMembers = 1 + random.nextInt(4);
+            for (int j = 0; j < numberOfMembers; j++) {
+                repository.add(randomActorMember().forActor(actor).build());
+            }
+        }
+        for (long taskId = 1_000_000; taskId < 1_000_000 + numberOfTasks; taskId++) {
+            repository.add(aUserTask().withId(taskId).withName("task" + taskId)
+                    .withStable(random.nextInt(10) != 0)
+                    .withStateExecuting(random.nextInt(20) == 0)
+                    .withTerminal(random.nextInt(20) == 0)
+                    .withAssigneeId(random.nextInt(5) == 0 ? randomUser() : 0)
+                    .build());
+            if (random.nextInt(4) == 0) {
+                // filtered task
+                final int numberOfUsersOfFilter = 1 + random.nextInt(3);
+                for (int i = 0; i < numberOfUsersOfFilter; i++) {
+                    repository.add(aPendingActivityMapping().withActivityId(taskId).withUserId(randomUser()).withActorId(-1).build());
+                }
+            } else {
+                repository.add(aPendingActivityMapping().withActivityId(taskId).withActorId(randomActor()).withUserId(-1).build());
+                if (random.nextBoolean()) {
+                    repository.add(aPendingActivityMapping().withActivityId(taskId).withActorId(randomActor()).withUserId(-1).build());
+                }
+            }
+        }
+    }
+
+    /**
+     * fill the pending task inbox the same way it is rebuilt when the memberships of a user change
+     */
+    void fillInboxOfUsers() {
+        for (final Long userId : userIds) {
+            for (final Long activityId : repository.getActivityIdsOfPendingMappingsForUser(userId)) {
+                repository.add(aPendingTaskInboxEntry().forUser(userId).forActivity(activityId).build());
+            }
+        }
+    }
+
+    private ActorMemberBuilder randomActorMember() {
+        switch (random.nextInt(4)) {
+            case 0:
+                return anActorMember().withUserId(randomUser());
+            case 1:
+                return anActorMember().withGroupId(randomGroup());
+            case 2:
+                return anActorMember().withRoleId(randomRole());
+            default:
+                return anActorMember().withGroupId(randomGroup()).withRoleId(randomRole());
+        }
+    }
+
+    long randomUser() {
+        return userIds.get(random.nextInt(userIds.size()));
+    }
+
+    private long randomActor() {
+        return actorIds.get(random.nextInt(actorIds.size()));
+    }
+
+    private long randomGroup() {
+        return 1 + random.nextInt(NUMBER_OF_GROUPS);
+    }
+
+    private long randomRole() {
+        return 1 + random.nextInt(NUMBER_OF_ROLES);
+    }
+
+}
@@ -0,0 +1,113 @@
+/**
+ * Copyright (C) 2018 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.core.process.instance.model;
+
+import java.util.concurrent.TimeUnit;
+
+import org.bonitasoft.engine.test.persistence.repository.ProcessInstanceRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.context.support.ClassPathXmlApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Compare the search of the pending tasks of a user computed from the actor mappings and memberships with the search using the
+ * pending task inbox, on an H2 database holding {@link #numberOfTasks} tasks.
+ * Run it using {@link #main(String[])}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PendingTasksForUserBenchmark {
+
+    @Param({ "1000" })
+    public int numberOfUsers;
+
+    @Param({ "50" })
+    public int numberOfActors;
+
+    @Param({ "20000" })
+    public int numberOfTasks;
+
+    private ClassPathXmlApplicationContext context;
+
+    private ProcessInstanceRepository repository;
+
+    private TransactionTemplate transactionTemplate;
+
+    private PendingTasksDataSet dataSet;
+
+    @Setup
+    public void setup() {
+        context = new ClassPathXmlApplicationContext("/testContext.xml");
+        repository = context.getBean(ProcessInstanceRepository.class);
+        transactionTemplate = new TransactionTemplate(context.getBean("transactionManager", PlatformTransactionManager.class));
+        dataSet = new PendingTasksDataSet(repository, 42L);
+        transactionTemplate.execute(status -> {
+            dataSet.generate(numberOfUsers, numberOfActors, numberOfTasks);
+            dataSet.fillInboxOfUsers();
+            return null;
+        });
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public long countPendingTasksFromMappings() {
+        final long userId = dataSet.randomUser();
+        return transactionTemplate.execute(status -> repository.getNumberOfPendingTasksForUser(userId));
+    }
+
+    @Benchmark
+    public long countPendingTasksFromInbox() {
+        final long userId = dataSet.randomUser();
+        return transactionTemplate.execute(status -> repository.getNumberOfPendingTasksForUserFromInbox(userId));
+    }
+
+    @Benchmark
+    public int searchPendingTasksFromMappings() {
+        final long userId = dataSet.randomUser();
+        return transactionTemplate.execute(status -> repository.searchPendingTasksForUser(userId).size());
+    }
+
+    @Benchmark
+    public int searchPendingTasksFromInbox() {
+        final long userId = dataSet.randomUser();
+        return transactionTemplate.execute(status -> repository.searchPendingTasksForUserFromInbox(userId).size());
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(PendingTasksForUserBenchmark.class.getSimpleName()).build()).run();
+    }
+
+}
@@ -0,0 +1,134 @@
+/**
+ * Copyright (C) 2018 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.core.process.instance.model;
+
+import static org.bonitasoft.engine.test.persistence.builder.UserTaskInstanceBuilder.aUserTask;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.bonitasoft.engine.persistence.QueryOptions;
+import org.bonitasoft.engine.test.persistence.repository.FlowNodeInstanceRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.context.support.ClassPathXmlApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Compare the time taken at node restart to read the ids of the flow nodes to restart using offset pages stored in a list of {@link Long} with the time
+ * taken using pages starting after the last read id stored in a primitive array, on an H2 database holding {@link #numberOfFlowNodesToRestart} flow nodes
+ * to restart.
+ * Run it using {@link #main(String[])}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RestartFlowNodesBenchmark {
+
+    private static final int PAGE_SIZE = 50000;
+
+    private static final int INSERT_BATCH_SIZE = 10000;
+
+    @Param({ "1000000" })
+    public int numberOfFlowNodesToRestart;
+
+    private ClassPathXmlApplicationContext context;
+
+    private FlowNodeInstanceRepository repository;
+
+    private TransactionTemplate transactionTemplate;
+
+    @Setup
+    public void setup() {
+        context = new ClassPathXmlApplicationContext("/testContext.xml");
+        repository = context.getBean(FlowNodeInstanceRepository.class);
+        transactionTemplate = new TransactionTemplate(context.getBean("transactionManager", PlatformTransactionManager.class));
+        for (long firstId = 1; firstId <= numberOfFlowNodesToRestart; firstId += INSERT_BATCH_SIZE) {
+            final long from = firstId;
+            transactionTemplate.execute(status -> {
+                for (long id = from; id < from + INSERT_BATCH_SIZE && id <= numberOfFlowNodesToRestart; id++) {
+                    repository.add(aUserTask().withId(id).withName("task" + id).withStable(false).build());
+                }
+                repository.flushAndClear();
+                return null;
+            });
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public int readIdsToRestartWithOffsetPages() {
+        return transactionTemplate.execute(status -> {
+            final List<Long> ids = new ArrayList<>();
+            QueryOptions queryOptions = new QueryOptions(0, PAGE_SIZE);
+            List<Long> page;
+            do {
+                page = repository.getFlowNodeInstanceIdsToRestart(queryOptions);
+                ids.addAll(page);
+                queryOptions = QueryOptions.getNextPage(queryOptions);
+            } while (page.size() == PAGE_SIZE);
+            return ids.size();
+        });
+    }
+
+    @Benchmark
+    public int readIdsToRestartAfterLastId() {
+        return transactionTemplate.execute(status -> {
+            long[] ids = new long[1024];
+            int size = 0;
+            long lastId = -1;
+            List<Long> page;
+            do {
+                page = repository.getFlowNodeInstanceIdsToRestart(lastId, PAGE_SIZE);
+                if (size + page.size() > ids.length) {
+                    ids = Arrays.copyOf(ids, Math.max(size + page.size(), ids.length * 2));
+                }
+                for (final Long id : page) {
+                    ids[size++] = id;
+                }
+                if (!page.isEmpty()) {
+                    lastId = page.get(page.size() - 1);
+                }
+            } while (page.size() == PAGE_SIZE);
+            return size;
+        });
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(RestartFlowNodesBenchmark.class.getSimpleName()).build()).run();
+    }
+
+}
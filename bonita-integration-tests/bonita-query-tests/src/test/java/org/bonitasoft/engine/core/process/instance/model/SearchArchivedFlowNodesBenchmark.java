@@ -0,0 +1,128 @@
+/**
+ * Copyright (C) 2018 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.core.process.instance.model;
+
+import static org.bonitasoft.engine.test.persistence.builder.archive.ArchivedUserTaskInstanceBuilder.anArchivedUserTask;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.bonitasoft.engine.core.process.instance.model.archive.SAFlowNodeInstance;
+import org.bonitasoft.engine.test.persistence.repository.FlowNodeInstanceRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.context.support.ClassPathXmlApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Compare the ways a search reads a page of archived flow nodes sorted by id, on an H2 database holding {@link #numberOfArchivedFlowNodes} archived
+ * flow nodes: counting then reading the page, as searches did, reading the page then counting only when it is full, as they do now, reading one more
+ * result instead of counting, and reading the results after the last one of the previous page instead of using a start index.
+ * {@link #startIndex} must be lower than {@link #numberOfArchivedFlowNodes}, the last default value is on the last page.
+ * Run it using {@link #main(String[])}. Ten million archived flow nodes, with the start indexes changed accordingly, need a few GB of heap.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SearchArchivedFlowNodesBenchmark {
+
+    private static final int PAGE_SIZE = 20;
+
+    private static final int INSERT_BATCH_SIZE = 10000;
+
+    @Param({ "1000000" })
+    public int numberOfArchivedFlowNodes;
+
+    @Param({ "0", "500000", "999990" })
+    public int startIndex;
+
+    private ClassPathXmlApplicationContext context;
+
+    private FlowNodeInstanceRepository repository;
+
+    private TransactionTemplate transactionTemplate;
+
+    @Setup
+    public void setup() {
+        context = new ClassPathXmlApplicationContext("/testContext.xml");
+        repository = context.getBean(FlowNodeInstanceRepository.class);
+        transactionTemplate = new TransactionTemplate(context.getBean("transactionManager", PlatformTransactionManager.class));
+        for (long firstId = 1; firstId <= numberOfArchivedFlowNodes; firstId += INSERT_BATCH_SIZE) {
+            final long from = firstId;
+            transactionTemplate.execute(status -> {
+                for (long id = from; id < from + INSERT_BATCH_SIZE && id <= numberOfArchivedFlowNodes; id++) {
+                    repository.add(anArchivedUserTask().withId(id).withName("task" + id).withStateName("completed").withTerminal(true).build());
+                }
+                repository.flushAndClear();
+                return null;
+            });
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public long countThenReadPage() {
+        return transactionTemplate.execute(status -> {
+            final long count = repository.getNumberOfArchivedFlowNodes();
+            return count + repository.searchArchivedFlowNodes(startIndex, PAGE_SIZE).size();
+        });
+    }
+
+    @Benchmark
+    public long readPageThenCountWhenFull() {
+        return transactionTemplate.execute(status -> {
+            final List<SAFlowNodeInstance> page = repository.searchArchivedFlowNodes(startIndex, PAGE_SIZE);
+            if (page.size() < PAGE_SIZE && (startIndex == 0 || !page.isEmpty())) {
+                return (long) startIndex + page.size();
+            }
+            return repository.getNumberOfArchivedFlowNodes() + page.size();
+        });
+    }
+
+    @Benchmark
+    public long readPageSkippingCount() {
+        return transactionTemplate.execute(status -> (long) repository.searchArchivedFlowNodes(startIndex, PAGE_SIZE + 1).size());
+    }
+
+    @Benchmark
+    public long readPageAfterLastResultSkippingCount() {
+        // ids start at 1: the last result of the previous page has the id startIndex
+        return transactionTemplate.execute(status -> (long) repository.searchArchivedFlowNodesAfter(startIndex, PAGE_SIZE + 1).size());
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(SearchArchivedFlowNodesBenchmark.class.getSimpleName()).build()).run();
+    }
+
+}
@@ -18,6 +18,8 @@ import java.util.List;
 import org.bonitasoft.engine.core.process.instance.model.SFlowNodeInstanceStateCounter;
 import org.bonitasoft.engine.core.process.instance.model.SGatewayInstance;
 import org.bonitasoft.engine.core.process.instance.model.SHumanTaskInstance;
+import org.bonitasoft.engine.core.process.instance.model.archive.SAFlowNodeInstance;
+import org.bonitasoft.engine.core.process.instance.model.archive.impl.SAFlowNodeInstanceImpl;
 import org.bonitasoft.engine.persistence.QueryOptions;
 import org.hibernate.Query;
 import org.hibernate.SessionFactory;
@@ -27,10 +29,44 @@ import org.hibernate.SessionFactory;
  */
 public class FlowNodeInstanceRepository extends TestRepository {
 
+    private static final String ARCHIVED_FLOW_NODES = "FROM " + SAFlowNodeInstanceImpl.class.getName() + " AS a";
+
     public FlowNodeInstanceRepository(final SessionFactory sessionFactory) {
         super(sessionFactory);
     }
 
+    /**
+     * Count the archived flow nodes, as the count query of a search does
+     */
+    public long getNumberOfArchivedFlowNodes() {
+        getSessionWithTenantFilter();
+        return ((Number) getSession().createQuery("SELECT COUNT(a.id) " + ARCHIVED_FLOW_NODES).uniqueResult()).longValue();
+    }
+
+    /**
+     * Read a page of archived flow nodes sorted by id, as the page query of a search does
+     */
+    @SuppressWarnings("unchecked")
+    public List<SAFlowNodeInstance> searchArchivedFlowNodes(final int fromIndex, final int maxResults) {
+        getSessionWithTenantFilter();
+        final Query query = getSession().createQuery("SELECT a " + ARCHIVED_FLOW_NODES + " ORDER BY a.id ASC");
+        query.setFirstResult(fromIndex);
+        query.setMaxResults(maxResults);
+        return query.list();
+    }
+
+    /**
+     * Read the archived flow nodes having an id greater than the given one, as the page query of a search using search after values does
+     */
+    @SuppressWarnings("unchecked")
+    public List<SAFlowNodeInstance> searchArchivedFlowNodesAfter(final long lastId, final int maxResults) {
+        getSessionWithTenantFilter();
+        final Query query = getSession().createQuery("SELECT a " + ARCHIVED_FLOW_NODES + " WHERE (a.id > :lastId) ORDER BY a.id ASC");
+        query.setParameter("lastId", lastId);
+        query.setMaxResults(maxResults);
+        return query.list();
+    }
+
     @SuppressWarnings("unchecked")
     public List<Long> getFlowNodeInstanceIdsToRestart(final QueryOptions queryOptions) {
         getSessionWithTenantFilter();
@@ -40,6 +76,15 @@ public class FlowNodeInstanceRepository extends TestRepository {
         return (List<Long>) namedQuery.list();
     }
 
+    @SuppressWarnings("unchecked")
+    public List<Long> getFlowNodeInstanceIdsToRestart(final long lastId, final int maxResults) {
+        getSessionWithTenantFilter();
+        final Query namedQuery = getNamedQuery("getFlowNodeInstanceIdsToRestartAfter");
+        namedQuery.setParameter("lastId", lastId);
+        namedQuery.setMaxResults(maxResults);
+        return (List<Long>) namedQuery.list();
+    }
+
     @SuppressWarnings("unchecked")
     public SGatewayInstance getActiveGatewayInstanceOfProcess(long parentProcessInstanceId, String name) {
         getSessionWithTenantFilter();
@@ -13,8 +13,13 @@
  **/
 package org.bonitasoft.engine.test.persistence.repository;
 
+import java.sql.PreparedStatement;
+import java.util.Collection;
 import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
 
+import org.bonitasoft.engine.core.process.instance.model.SHumanTaskInstance;
 import org.bonitasoft.engine.core.process.instance.model.SProcessInstance;
 import org.bonitasoft.engine.core.process.instance.model.archive.SAProcessInstance;
 import org.bonitasoft.engine.core.process.instance.model.event.trigger.STimerEventTriggerInstance;
@@ -59,6 +64,67 @@ public class ProcessInstanceRepository extends TestRepository {
         return ((Number) namedQuery.uniqueResult()).longValue() == 1;
     }
 
+    @SuppressWarnings("unchecked")
+    public List<SHumanTaskInstance> searchPendingTasksForUser(final long userId) {
+        getSession().enableFilter("tenantFilter").setParameter("tenantId", PersistentObjectBuilder.DEFAULT_TENANT_ID);
+        final Query namedQuery = getNamedQuery("searchSHumanTaskInstancePendingForUser");
+        namedQuery.setParameter("userId", userId);
+        return namedQuery.list();
+    }
+
+    public long getNumberOfPendingTasksForUser(final long userId) {
+        getSession().enableFilter("tenantFilter").setParameter("tenantId", PersistentObjectBuilder.DEFAULT_TENANT_ID);
+        final Query namedQuery = getNamedQuery("getNumberOfSHumanTaskInstancePendingForUser");
+        namedQuery.setParameter("userId", userId);
+        return ((Number) namedQuery.uniqueResult()).longValue();
+    }
+
+    @SuppressWarnings("unchecked")
+    public List<SHumanTaskInstance> searchPendingTasksForUserFromInbox(final long userId) {
+        getSession().enableFilter("tenantFilter").setParameter("tenantId", PersistentObjectBuilder.DEFAULT_TENANT_ID);
+        final Query namedQuery = getNamedQuery("searchSHumanTaskInstancePendingForUserFromInbox");
+        namedQuery.setParameter("userId", userId);
+        return namedQuery.list();
+    }
+
+    public long getNumberOfPendingTasksForUserFromInbox(final long userId) {
+        getSession().enableFilter("tenantFilter").setParameter("tenantId", PersistentObjectBuilder.DEFAULT_TENANT_ID);
+        final Query namedQuery = getNamedQuery("getNumberOfSHumanTaskInstancePendingForUserFromInbox");
+        namedQuery.setParameter("userId", userId);
+        return ((Number) namedQuery.uniqueResult()).longValue();
+    }
+
+    @SuppressWarnings("unchecked")
+    public List<Long> getActivityIdsOfPendingMappingsForUser(final long userId) {
+        getSession().enableFilter("tenantFilter").setParameter("tenantId", PersistentObjectBuilder.DEFAULT_TENANT_ID);
+        final Query namedQuery = getNamedQuery("getActivityIdsOfPendingMappingsForUser");
+        namedQuery.setParameter("userId", userId);
+        return namedQuery.list();
+    }
+
+    @SuppressWarnings("unchecked")
+    public List<Long> getActivityIdsOfPendingMappingsOfActor(final long actorId) {
+        getSession().enableFilter("tenantFilter").setParameter("tenantId", PersistentObjectBuilder.DEFAULT_TENANT_ID);
+        final Query namedQuery = getNamedQuery("getActivityIdsOfPendingMappingsOfActor");
+        namedQuery.setParameter("actorId", actorId);
+        return namedQuery.list();
+    }
+
+    /**
+     * users of the actor, as computed by the pending task inbox when a task is mapped to the actor
+     */
+    @SuppressWarnings("unchecked")
+    public Set<Long> getUserIdsOfActor(final long actorId) {
+        getSession().enableFilter("tenantFilter").setParameter("tenantId", PersistentObjectBuilder.DEFAULT_TENANT_ID);
+        final Set<Long> userIds = new TreeSet<>();
+        for (final String queryName : new String[] { "getUserIdsOfActorFromActorMembers", "getUserIdsOfActorFromMemberships" }) {
+            final Query namedQuery = getNamedQuery(queryName);
+            namedQuery.setParameter("actorId", actorId);
+            userIds.addAll(namedQuery.list());
+        }
+        return userIds;
+    }
+
     public long countChildrenInstanceIdsOfProcessInstance(final long processInstanceId) {
         getSession().enableFilter("tenantFilter").setParameter("tenantId", PersistentObjectBuilder.DEFAULT_TENANT_ID);
         final Query namedQuery = getNamedQuery("getNumberOfChildInstancesOfProcessInstance");
@@ -152,4 +218,60 @@ public class ProcessInstanceRepository extends TestRepository {
         return namedQuery.list();
     }
 
+    @SuppressWarnings("unchecked")
+    public List<STimerEventTriggerInstance> getTimerEventTriggerInstancesToExecute(final String jobTriggerName, final long maxExecutionDate,
+            final long lastExecutionDate, final long lastId, final int maxResults) {
+        getSession().enableFilter("tenantFilter").setParameter("tenantId", PersistentObjectBuilder.DEFAULT_TENANT_ID);
+        final Query namedQuery = getNamedQuery("getTimerEventTriggerInstancesToExecute");
+        namedQuery.setParameter("jobTriggerName", jobTriggerName);
+        namedQuery.setParameter("maxExecutionDate", maxExecutionDate);
+        namedQuery.setParameter("lastExecutionDate", lastExecutionDate);
+        namedQuery.setParameter("lastId", lastId);
+        namedQuery.setMaxResults(maxResults);
+        return namedQuery.list();
+    }
+
+    @SuppressWarnings("unchecked")
+    public List<STimerEventTriggerInstance> getTimerEventTriggerInstancesOfEventInstances(final String jobTriggerName,
+            final Collection<Long> eventInstanceIds) {
+        getSession().enableFilter("tenantFilter").setParameter("tenantId", PersistentObjectBuilder.DEFAULT_TENANT_ID);
+        final Query namedQuery = getNamedQuery("getTimerEventTriggerInstancesOfEventInstances");
+        namedQuery.setParameter("jobTriggerName", jobTriggerName);
+        namedQuery.setParameterList("eventInstanceIds", eventInstanceIds);
+        return namedQuery.list();
+    }
+
+    /**
+     * Insert timers using JDBC batches, the ids and event instance ids going from firstId to firstId + count - 1 and the execution dates
+     * from firstExecutionDate, one millisecond apart.
+     */
+    public void addTimerEventTriggerInstances(final long firstId, final int count, final long firstExecutionDate, final String jobTriggerName) {
+        getSession().doWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement("INSERT INTO event_trigger_instance"
+                    + " (tenantid, id, eventInstanceId, eventInstanceName, executionDate, jobTriggerName) VALUES (?, ?, ?, ?, ?, ?)")) {
+                for (int i = 0; i < count; i++) {
+                    statement.setLong(1, PersistentObjectBuilder.DEFAULT_TENANT_ID);
+                    statement.setLong(2, firstId + i);
+                    statement.setLong(3, firstId + i);
+                    statement.setString(4, "timer");
+                    statement.setLong(5, firstExecutionDate + i);
+                    statement.setString(6, jobTriggerName);
+                    statement.addBatch();
+                    if (i % 1000 == 999) {
+                        statement.executeBatch();
+                    }
+                }
+                statement.executeBatch();
+            }
+        });
+    }
+
+    /**
+     * Create the indexes used by the timer event scheduler, the schema of the tests being generated from the mapping
+     */
+    public void createTimerEventTriggerInstanceIndexes() {
+        getSession().createSQLQuery("CREATE INDEX IF NOT EXISTS idx_evt_trig_exec ON event_trigger_instance (tenantid, executionDate, id)").executeUpdate();
+        getSession().createSQLQuery("CREATE INDEX IF NOT EXISTS idx_evt_trig_evt ON event_trigger_instance (eventInstanceId, tenantid)").executeUpdate();
+    }
+
 }
@@ -27,6 +27,7 @@ import org.bonitasoft.engine.core.process.definition.model.impl.SProcessDefiniti
 import org.bonitasoft.engine.core.process.instance.model.SConnectorInstance;
 import org.bonitasoft.engine.core.process.instance.model.SFlowNodeInstance;
 import org.bonitasoft.engine.core.process.instance.model.SPendingActivityMapping;
+import org.bonitasoft.engine.core.process.instance.model.SPendingTaskInboxEntry;
 import org.bonitasoft.engine.core.process.instance.model.archive.SAFlowNodeInstance;
 import org.bonitasoft.engine.core.process.instance.model.archive.impl.SAFlowNodeInstanceImpl;
 import org.bonitasoft.engine.core.process.instance.model.archive.impl.SAProcessInstanceImpl;
@@ -38,6 +39,7 @@ import org.bonitasoft.engine.core.process.instance.model.event.trigger.impl.STim
 import org.bonitasoft.engine.core.process.instance.model.impl.SConnectorInstanceImpl;
 import org.bonitasoft.engine.core.process.instance.model.impl.SFlowNodeInstanceImpl;
 import org.bonitasoft.engine.core.process.instance.model.impl.SPendingActivityMappingImpl;
+import org.bonitasoft.engine.core.process.instance.model.impl.SPendingTaskInboxEntryImpl;
 import org.bonitasoft.engine.core.process.instance.model.impl.SProcessInstanceImpl;
 import org.bonitasoft.engine.data.instance.model.archive.SADataInstance;
 import org.bonitasoft.engine.data.instance.model.archive.impl.SADataInstanceImpl;
@@ -104,6 +106,14 @@ public class TestRepository {
         return getSession().getNamedQuery(queryName);
     }
 
+    /**
+     * Write added objects to the database and detach them from the session, to add a large number of objects in one transaction
+     */
+    public void flushAndClear() {
+        getSession().flush();
+        getSession().clear();
+    }
+
     /**
      * Need to replicate add method for each object because we don't have any superclass or interface providing getTenantId method
      */
@@ -134,6 +144,12 @@ public class TestRepository {
                 new PersistentObjectId(pendingActivityMapping.getId(), pendingActivityMapping.getTenantId()));
     }
 
+    public SPendingTaskInboxEntry add(final SPendingTaskInboxEntryImpl pendingTaskInboxEntry) {
+        getSession().save(pendingTaskInboxEntry);
+        return (SPendingTaskInboxEntry) getSession().get(pendingTaskInboxEntry.getClass(),
+                new PersistentObjectId(pendingTaskInboxEntry.getId(), pendingTaskInboxEntry.getTenantId()));
+    }
+
     public SActorMember add(final SActorMemberImpl actorMember) {
         getSession().save(actorMember);
         return (SActorMember) getSession().get(actorMember.getClass(), new PersistentObjectId(actorMember.getId(), actorMember.getTenantId()));
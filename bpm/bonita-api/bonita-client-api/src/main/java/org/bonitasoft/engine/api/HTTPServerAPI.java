@@ -18,6 +18,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.OutputStream;
 import java.io.Serializable;
 import java.lang.reflect.UndeclaredThrowableException;
 import java.nio.charset.Charset;
@@ -34,17 +35,21 @@ import org.apache.http.client.ClientProtocolException;
 import org.apache.http.client.ResponseHandler;
 import org.apache.http.client.entity.UrlEncodedFormEntity;
 import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ContentProducer;
+import org.apache.http.entity.EntityTemplate;
 import org.apache.http.entity.mime.MultipartEntity;
 import org.apache.http.entity.mime.content.ByteArrayBody;
 import org.apache.http.entity.mime.content.StringBody;
 import org.apache.http.impl.client.DefaultHttpClient;
 import org.apache.http.impl.conn.PoolingClientConnectionManager;
 import org.apache.http.message.BasicNameValuePair;
+import org.bonitasoft.engine.api.http.BinaryCodec;
 import org.bonitasoft.engine.api.impl.XmlConverter;
 import org.bonitasoft.engine.api.internal.ServerAPI;
 import org.bonitasoft.engine.api.internal.ServerWrappedException;
 import org.bonitasoft.engine.bpm.bar.BusinessArchive;
 import org.bonitasoft.engine.exception.StackTraceTransformer;
+import org.bonitasoft.engine.http.BinaryResponseHandler;
 import org.bonitasoft.engine.http.BonitaResponseHandler;
 
 /**
@@ -85,6 +90,9 @@ public class HTTPServerAPI implements ServerAPI {
 
     private static final String BASIC_AUTHENTICATION_PASSWORD = "basicAuthentication.password";
 
+    // package-private for testing purpose
+    static final String BINARY_PROTOCOL_ACTIVE = "binaryProtocol.active";
+
     // package-private for testing purpose
     static final String APPLICATION_NAME = "application.name";
 
@@ -98,14 +106,22 @@ public class HTTPServerAPI implements ServerAPI {
 
     private final String basicAuthenticationPassword;
 
+    private final boolean binaryProtocolActive;
+
     private static DefaultHttpClient httpclient;
 
     private static final ResponseHandler<String> RESPONSE_HANDLER = new BonitaResponseHandler();
 
     private final XmlConverter xmlConverter;
 
+    private final BinaryCodec binaryCodec;
+
+    private final ResponseHandler<Object> binaryResponseHandler;
+
     public HTTPServerAPI(final Map<String, String> parameters) {
         xmlConverter = new XmlConverter();
+        binaryCodec = new BinaryCodec();
+        binaryResponseHandler = new BinaryResponseHandler(binaryCodec, xmlConverter);
         // initialize httpclient in the constructor to avoid incompatibility when running tests:
         // java.security.NoSuchAlgorithmException: class configured for SSLContext: sun.security.ssl.SSLContextImpl$TLS10Context not a SSLContext
         if (httpclient == null) {
@@ -116,6 +132,7 @@ public class HTTPServerAPI implements ServerAPI {
         basicAuthenticationActive = "true".equalsIgnoreCase(parameters.get(BASIC_AUTHENTICATION_ACTIVE));
         basicAuthenticationUserName = parameters.get(BASIC_AUTHENTICATION_USERNAME);
         basicAuthenticationPassword = parameters.get(BASIC_AUTHENTICATION_PASSWORD);
+        binaryProtocolActive = "true".equalsIgnoreCase(parameters.get(BINARY_PROTOCOL_ACTIVE));
     }
 
     @Override
@@ -123,6 +140,9 @@ public class HTTPServerAPI implements ServerAPI {
             final List<String> classNameParameters, final Object[] parametersValues) throws ServerWrappedException {
         String response = null;
         try {
+            if (binaryProtocolActive) {
+                return throwIfException(executeBinaryHttpPost(options, apiInterfaceName, methodName, classNameParameters, parametersValues));
+            }
             response = executeHttpPost(options, apiInterfaceName, methodName, classNameParameters, parametersValues);
             return checkInvokeMethodReturn(response);
         } catch (final UndeclaredThrowableException e) {
@@ -141,10 +161,14 @@ public class HTTPServerAPI implements ServerAPI {
     Object checkInvokeMethodReturn(final String response) throws Throwable {
         Object invokeMethodReturn = null;
         if (response != null && !response.isEmpty() && !"null".equals(response)) {
-            invokeMethodReturn = xmlConverter.fromXML(response);
-            if (invokeMethodReturn instanceof Throwable) {
-                throw (Throwable) invokeMethodReturn;
-            }
+            invokeMethodReturn = throwIfException(xmlConverter.fromXML(response));
+        }
+        return invokeMethodReturn;
+    }
+
+    private Object throwIfException(final Object invokeMethodReturn) throws Throwable {
+        if (invokeMethodReturn instanceof Throwable) {
+            throw (Throwable) invokeMethodReturn;
         }
         return invokeMethodReturn;
     }
@@ -164,9 +188,27 @@ public class HTTPServerAPI implements ServerAPI {
         }
     }
 
+    // package-private for testing purpose
+    Object executeBinaryHttpPost(final Map<String, Serializable> options, final String apiInterfaceName, final String methodName,
+            final List<String> classNameParameters, final Object[] parametersValues) throws IOException {
+        final HttpPost httpost = createHttpPost(buildBinaryEntity(options, classNameParameters, parametersValues), apiInterfaceName, methodName);
+        httpost.setHeader("Accept", BinaryCodec.CONTENT_TYPE);
+        try {
+            return httpclient.execute(httpost, binaryResponseHandler);
+        } catch (final ClientProtocolException e) {
+            if (LOGGER.isLoggable(Level.SEVERE)) {
+                LOGGER.log(Level.SEVERE, e.getMessage() + System.getProperty("line.separator") + "httpost = <" + httpost + ">");
+            }
+            throw e;
+        }
+    }
+
     private final HttpPost createHttpPost(final Map<String, Serializable> options, final String apiInterfaceName, final String methodName,
             final List<String> classNameParameters, final Object[] parametersValues) throws IOException {
-        final HttpEntity httpEntity = buildEntity(options, classNameParameters, parametersValues);
+        return createHttpPost(buildEntity(options, classNameParameters, parametersValues), apiInterfaceName, methodName);
+    }
+
+    private HttpPost createHttpPost(final HttpEntity httpEntity, final String apiInterfaceName, final String methodName) throws IOException {
         final StringBuilder sBuilder = new StringBuilder(serverUrl);
         sBuilder.append(SLASH).append(applicationName).append(SERVER_API).append(apiInterfaceName).append(SLASH).append(methodName);
         final HttpPost httpost = new HttpPost(sBuilder.toString());
@@ -220,6 +262,23 @@ public class HTTPServerAPI implements ServerAPI {
         return httpEntity;
     }
 
+    /*
+     * the call is encoded while it is sent: parameters, including binary ones, are never held in memory in an encoded form
+     */
+    // package-private for testing purpose
+    final HttpEntity buildBinaryEntity(final Map<String, Serializable> options, final List<String> classNameParameters,
+            final Object[] parametersValues) {
+        final EntityTemplate entity = new EntityTemplate(new ContentProducer() {
+
+            @Override
+            public void writeTo(final OutputStream outputStream) throws IOException {
+                binaryCodec.write(new Object[] { options, classNameParameters, parametersValues }, outputStream);
+            }
+        });
+        entity.setContentType(BinaryCodec.CONTENT_TYPE);
+        return entity;
+    }
+
     public byte[] serialize(final Object obj) throws IOException {
         final ByteArrayOutputStream b = new ByteArrayOutputStream();
         final ObjectOutputStream o = new ObjectOutputStream(b);
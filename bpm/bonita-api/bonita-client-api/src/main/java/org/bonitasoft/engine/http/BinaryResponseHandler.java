@@ -0,0 +1,71 @@
+/**
+ * Copyright (C) 2018 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.StatusLine;
+import org.apache.http.client.HttpResponseException;
+import org.apache.http.client.ResponseHandler;
+import org.apache.http.util.EntityUtils;
+import org.bonitasoft.engine.api.http.BinaryCodec;
+import org.bonitasoft.engine.api.impl.XmlConverter;
+
+/**
+ * Decodes the response of a call made with the binary encoding while it is read from the connection.
+ * A server answering with the XML encoding, e.g. a server that does not support the binary one, is still understood.
+ */
+public class BinaryResponseHandler implements ResponseHandler<Object> {
+
+    private final BinaryCodec binaryCodec;
+
+    private final XmlConverter xmlConverter;
+
+    public BinaryResponseHandler(final BinaryCodec binaryCodec, final XmlConverter xmlConverter) {
+        this.binaryCodec = binaryCodec;
+        this.xmlConverter = xmlConverter;
+    }
+
+    /**
+     * Returns the decoded response body. Errors encoded by the server are returned as a {@link Throwable}. If the response is not encoded and was
+     * unsuccessful (&gt;= 300 status code), throws an {@link HttpResponseException}.
+     */
+    @Override
+    public Object handleResponse(final HttpResponse response) throws IOException {
+        final HttpEntity entity = response.getEntity();
+        final StatusLine statusLine = response.getStatusLine();
+        final Header contentType = entity == null ? null : entity.getContentType();
+        if (contentType != null && BinaryCodec.isBinary(contentType.getValue())) {
+            try (InputStream content = entity.getContent()) {
+                return binaryCodec.read(content);
+            } catch (final ClassNotFoundException e) {
+                throw new IOException("Unable to decode the response", e);
+            }
+        }
+        if (statusLine.getStatusCode() >= 300) {
+            EntityUtils.consume(entity);
+            throw new HttpResponseException(statusLine.getStatusCode(), statusLine.getReasonPhrase());
+        }
+        final String body = entity == null ? null : EntityUtils.toString(entity);
+        if (body == null || body.isEmpty() || "null".equals(body)) {
+            return null;
+        }
+        return xmlConverter.fromXML(body);
+    }
+
+}
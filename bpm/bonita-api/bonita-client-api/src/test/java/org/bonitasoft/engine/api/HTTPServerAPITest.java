@@ -16,9 +16,11 @@ package org.bonitasoft.engine.api;
 import static java.util.Arrays.asList;
 import static java.util.Collections.emptyMap;
 import static java.util.Collections.singletonMap;
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.*;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.PrintStream;
 import java.io.Serializable;
@@ -35,6 +37,7 @@ import java.util.logging.Logger;
 
 import org.apache.http.HttpEntity;
 import org.apache.http.entity.mime.MultipartEntity;
+import org.bonitasoft.engine.api.http.BinaryCodec;
 import org.bonitasoft.engine.api.internal.ServerWrappedException;
 import org.bonitasoft.engine.exception.BonitaException;
 import org.bonitasoft.engine.io.IOUtil;
@@ -122,4 +125,22 @@ public class HTTPServerAPITest {
         assertTrue(contentAsString.contains("Välue1"));
     }
 
+    @Test
+    public void serializeParametersWithBinaryProtocol() throws Exception {
+        HttpEntity entity = httpServerAPI.buildBinaryEntity(new HashMap<String, Serializable>(),
+                new ArrayList<>(asList(String.class.getName(), byte[].class.getName())),
+                new Object[] { "Välue1", new byte[] { 1, 2 } });
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        entity.writeTo(outputStream);
+
+        Object[] call = (Object[]) new BinaryCodec().read(new ByteArrayInputStream(outputStream.toByteArray()));
+
+        assertThat(entity.getContentType().getValue()).isEqualTo(BinaryCodec.CONTENT_TYPE);
+        assertThat(call[0]).isEqualTo(emptyMap());
+        assertThat(call[1]).isEqualTo(asList(String.class.getName(), byte[].class.getName()));
+        Object[] parametersValues = (Object[]) call[2];
+        assertThat(parametersValues[0]).isEqualTo("Välue1");
+        assertThat((byte[]) parametersValues[1]).containsExactly(1, 2);
+    }
+
 }
@@ -0,0 +1,107 @@
+/**
+ * Copyright (C) 2018 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.api;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.bonitasoft.engine.api.http.BinaryCodec;
+import org.bonitasoft.engine.api.impl.XmlConverter;
+import org.bonitasoft.engine.bpm.process.impl.internal.ProcessInstanceImpl;
+import org.bonitasoft.engine.search.impl.SearchResultImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Encode and decode a search result of {@link #numberOfItems} process instances, as done by the HTTP API, using XStream and using {@link BinaryCodec}.
+ * Run it using {@link #main(String[])}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class WireProtocolBenchmark {
+
+    private static final Logger LOGGER = Logger.getLogger(WireProtocolBenchmark.class.getName());
+
+    @Param({ "10", "1000", "10000" })
+    public int numberOfItems;
+
+    private final XmlConverter xmlConverter = new XmlConverter();
+
+    private final BinaryCodec binaryCodec = new BinaryCodec();
+
+    private SearchResultImpl<ProcessInstanceImpl> searchResult;
+
+    @Setup
+    public void setup() throws Exception {
+        final List<ProcessInstanceImpl> processInstances = new ArrayList<>(numberOfItems);
+        for (int i = 0; i < numberOfItems; i++) {
+            final ProcessInstanceImpl processInstance = new ProcessInstanceImpl("Process instance " + i);
+            processInstance.setId(i);
+            processInstance.setState("started");
+            processInstance.setStartDate(new Date());
+            processInstance.setLastUpdate(new Date());
+            processInstance.setStartedBy(1L);
+            processInstance.setProcessDefinitionId(123456789L);
+            processInstance.setRootProcessInstanceId(i);
+            processInstance.setDescription("Description of process instance " + i);
+            processInstances.add(processInstance);
+        }
+        searchResult = new SearchResultImpl<>(numberOfItems * 10L, processInstances);
+        if (LOGGER.isLoggable(Level.INFO)) {
+            final ByteArrayOutputStream binary = new ByteArrayOutputStream();
+            binaryCodec.write(searchResult, binary);
+            LOGGER.log(Level.INFO, "Encoded size of " + numberOfItems + " items: xml=" + xmlConverter.toXML(searchResult).length()
+                    + " characters, binary=" + binary.size() + " bytes");
+        }
+    }
+
+    @Benchmark
+    public Serializable xstreamRoundTrip() throws Exception {
+        return xmlConverter.fromXML(xmlConverter.toXML(searchResult));
+    }
+
+    @Benchmark
+    public Object binaryRoundTrip() throws Exception {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        binaryCodec.write(searchResult, outputStream);
+        return binaryCodec.read(new ByteArrayInputStream(outputStream.toByteArray()));
+    }
+
+    public static void main(final String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(WireProtocolBenchmark.class.getSimpleName()).build()).run();
+    }
+
+}
@@ -0,0 +1,314 @@
+/**
+ * Copyright (C) 2018 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.api.http;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.lang.reflect.Array;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.bonitasoft.engine.search.SearchResult;
+import org.bonitasoft.engine.search.impl.SearchResultImpl;
+
+/**
+ * Binary encoding of the calls and results exchanged by the HTTP API, an alternative to the XStream XML encoding.
+ * <p>
+ * Values are written as a tag followed by their content: strings, numbers, dates, byte arrays, {@link ArrayList}, {@link HashMap}, object arrays and
+ * {@link SearchResultImpl} are encoded by the codec itself, element by element, so that large results are written to the stream as they are encoded.
+ * Any other object is written using java serialization on the same stream, so that the description of a class is written only once, even when a
+ * search result holds thousands of instances of it.
+ * <p>
+ * Like the XML encoding, it can instantiate any serializable class: it must only be used between a Bonita client and a Bonita server.
+ */
+public class BinaryCodec {
+
+    /**
+     * Content type of the requests and responses encoded by this codec
+     */
+    public static final String CONTENT_TYPE = "application/x-bonita-binary";
+
+    private static final byte VERSION = 1;
+
+    private static final byte NULL = 0;
+
+    private static final byte STRING = 1;
+
+    private static final byte LONG_STRING = 2;
+
+    private static final byte INTEGER = 3;
+
+    private static final byte LONG = 4;
+
+    private static final byte TRUE = 5;
+
+    private static final byte FALSE = 6;
+
+    private static final byte DOUBLE = 7;
+
+    private static final byte DATE = 8;
+
+    private static final byte BYTES = 9;
+
+    private static final byte LIST = 10;
+
+    private static final byte MAP = 11;
+
+    private static final byte ARRAY = 12;
+
+    private static final byte SEARCH_RESULT = 13;
+
+    private static final byte OBJECT = 14;
+
+    // writeUTF is limited to 65535 bytes, i.e. at least 21845 characters
+    private static final int MAX_SHORT_STRING_LENGTH = 65535 / 3;
+
+    // lengths are read from the stream: memory is allocated as the content is read, at most this many bytes or elements in advance
+    private static final int MAX_PREALLOCATED_LENGTH = 8192;
+
+    /**
+     * @param contentType
+     *        the value of a Content-Type or Accept header, can be null
+     * @return true if it designates the binary encoding
+     */
+    public static boolean isBinary(final String contentType) {
+        return contentType != null && contentType.contains(CONTENT_TYPE);
+    }
+
+    /**
+     * Encode the value on the given stream. The stream is flushed but not closed.
+     */
+    public void write(final Object value, final OutputStream outputStream) throws IOException {
+        final ObjectOutputStream output = new ObjectOutputStream(outputStream);
+        output.writeByte(VERSION);
+        writeValue(value, output);
+        output.flush();
+    }
+
+    /**
+     * Decode a value written by {@link #write(Object, OutputStream)}. Classes are loaded using the context classloader of the current thread.
+     */
+    public Object read(final InputStream inputStream) throws IOException, ClassNotFoundException {
+        final CodecObjectInputStream input = new CodecObjectInputStream(inputStream);
+        final byte version = input.readByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported version of the binary encoding: " + version);
+        }
+        return readValue(input);
+    }
+
+    private void writeValue(final Object value, final ObjectOutputStream output) throws IOException {
+        if (value == null) {
+            output.writeByte(NULL);
+        } else if (value instanceof String) {
+            writeString((String) value, output);
+        } else if (value instanceof Integer) {
+            output.writeByte(INTEGER);
+            output.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            output.writeByte(LONG);
+            output.writeLong((Long) value);
+        } else if (value instanceof Boolean) {
+            output.writeByte((Boolean) value ? TRUE : FALSE);
+        } else if (value instanceof Double) {
+            output.writeByte(DOUBLE);
+            output.writeDouble((Double) value);
+        } else if (value.getClass() == Date.class) {
+            output.writeByte(DATE);
+            output.writeLong(((Date) value).getTime());
+        } else if (value instanceof byte[]) {
+            final byte[] bytes = (byte[]) value;
+            output.writeByte(BYTES);
+            output.writeInt(bytes.length);
+            output.write(bytes);
+        } else if (value.getClass() == ArrayList.class) {
+            output.writeByte(LIST);
+            writeElements((List<?>) value, output);
+        } else if (value.getClass() == HashMap.class) {
+            final Map<?, ?> map = (Map<?, ?>) value;
+            output.writeByte(MAP);
+            output.writeInt(map.size());
+            for (final Map.Entry<?, ?> entry : map.entrySet()) {
+                writeValue(entry.getKey(), output);
+                writeValue(entry.getValue(), output);
+            }
+        } else if (value instanceof Object[]) {
+            final Object[] array = (Object[]) value;
+            output.writeByte(ARRAY);
+            output.writeUTF(value.getClass().getComponentType().getName());
+            output.writeInt(array.length);
+            for (final Object element : array) {
+                writeValue(element, output);
+            }
+        } else if (value.getClass() == SearchResultImpl.class) {
+            final SearchResult<?> searchResult = (SearchResult<?>) value;
+            output.writeByte(SEARCH_RESULT);
+            output.writeLong(searchResult.getCount());
+            writeElements(searchResult.getResult(), output);
+        } else {
+            output.writeByte(OBJECT);
+            output.writeObject(value);
+        }
+    }
+
+    private void writeString(final String value, final ObjectOutputStream output) throws IOException {
+        if (value.length() <= MAX_SHORT_STRING_LENGTH) {
+            output.writeByte(STRING);
+            output.writeUTF(value);
+        } else {
+            final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            output.writeByte(LONG_STRING);
+            output.writeInt(bytes.length);
+            output.write(bytes);
+        }
+    }
+
+    private void writeElements(final List<?> list, final ObjectOutputStream output) throws IOException {
+        if (list == null) {
+            output.writeInt(-1);
+            return;
+        }
+        output.writeInt(list.size());
+        for (final Object element : list) {
+            writeValue(element, output);
+        }
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private Object readValue(final CodecObjectInputStream input) throws IOException, ClassNotFoundException {
+        final byte tag = input.readByte();
+        switch (tag) {
+            case NULL:
+                return null;
+            case STRING:
+                return input.readUTF();
+            case LONG_STRING:
+                return new String(readBytes(input), StandardCharsets.UTF_8);
+            case INTEGER:
+                return input.readInt();
+            case LONG:
+                return input.readLong();
+            case TRUE:
+                return Boolean.TRUE;
+            case FALSE:
+                return Boolean.FALSE;
+            case DOUBLE:
+                return input.readDouble();
+            case DATE:
+                return new Date(input.readLong());
+            case BYTES:
+                return readBytes(input);
+            case LIST:
+                return readElements(input);
+            case MAP:
+                final int size = readLength(input);
+                final Map<Object, Object> map = new HashMap<>();
+                for (int i = 0; i < size; i++) {
+                    map.put(readValue(input), readValue(input));
+                }
+                return map;
+            case ARRAY:
+                final Class<?> componentType = input.loadClass(input.readUTF());
+                final int length = readLength(input);
+                final List<Object> elements = new ArrayList<>(Math.min(length, MAX_PREALLOCATED_LENGTH));
+                for (int i = 0; i < length; i++) {
+                    elements.add(readValue(input));
+                }
+                return elements.toArray((Object[]) Array.newInstance(componentType, length));
+            case SEARCH_RESULT:
+                final long count = input.readLong();
+                return new SearchResultImpl(count, readElements(input));
+            case OBJECT:
+                return input.readObject();
+            default:
+                throw new IOException("Unknown tag in the binary encoding: " + tag);
+        }
+    }
+
+    private byte[] readBytes(final CodecObjectInputStream input) throws IOException {
+        final int length = readLength(input);
+        if (length <= MAX_PREALLOCATED_LENGTH) {
+            final byte[] bytes = new byte[length];
+            input.readFully(bytes);
+            return bytes;
+        }
+        // a truncated or corrupted stream fails on its end instead of allocating the length it claims
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(MAX_PREALLOCATED_LENGTH);
+        final byte[] chunk = new byte[MAX_PREALLOCATED_LENGTH];
+        int remaining = length;
+        while (remaining > 0) {
+            final int chunkLength = Math.min(remaining, chunk.length);
+            input.readFully(chunk, 0, chunkLength);
+            bytes.write(chunk, 0, chunkLength);
+            remaining -= chunkLength;
+        }
+        return bytes.toByteArray();
+    }
+
+    private int readLength(final CodecObjectInputStream input) throws IOException {
+        final int length = input.readInt();
+        if (length < 0) {
+            throw new IOException("Invalid length in the binary encoding: " + length);
+        }
+        return length;
+    }
+
+    private List<Serializable> readElements(final CodecObjectInputStream input) throws IOException, ClassNotFoundException {
+        final int size = input.readInt();
+        if (size < 0) {
+            return null;
+        }
+        final List<Serializable> list = new ArrayList<>(Math.min(size, MAX_PREALLOCATED_LENGTH));
+        for (int i = 0; i < size; i++) {
+            list.add((Serializable) readValue(input));
+        }
+        return list;
+    }
+
+    private static final class CodecObjectInputStream extends ObjectInputStream {
+
+        CodecObjectInputStream(final InputStream in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected Class<?> resolveClass(final ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            final ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+            if (contextClassLoader != null) {
+                try {
+                    return Class.forName(desc.getName(), false, contextClassLoader);
+                } catch (final ClassNotFoundException e) {
+                    // try with the default resolution
+                }
+            }
+            return super.resolveClass(desc);
+        }
+
+        Class<?> loadClass(final String name) throws ClassNotFoundException {
+            final ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+            return Class.forName(name, false, contextClassLoader != null ? contextClassLoader : BinaryCodec.class.getClassLoader());
+        }
+    }
+
+}
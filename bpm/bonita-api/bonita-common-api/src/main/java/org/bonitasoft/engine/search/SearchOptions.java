@@ -14,6 +14,7 @@
 package org.bonitasoft.engine.search;
 
 import java.io.Serializable;
+import java.util.Collections;
 import java.util.List;
 
 import org.bonitasoft.engine.search.impl.SearchFilter;
@@ -71,4 +72,28 @@ public interface SearchOptions extends Serializable {
      */
     List<Sort> getSorts();
 
+    /**
+     * Whether counting all the results that match the search criteria is skipped. When it is skipped, {@link SearchResult#getCount()} does not give the
+     * total number of results but the number of results up to the end of the returned page, plus one if more results follow.
+     * 
+     * @return true if the total number of results is not counted
+     * @see SearchOptionsBuilder#skipCount()
+     * @since 7.7.2
+     */
+    default boolean isCountSkipped() {
+        return false;
+    }
+
+    /**
+     * Gets the values of the sort fields after which the results are returned, in the same order as the sorts. This allows to page through the results
+     * using the last result of the previous page instead of a start index.
+     * 
+     * @return the values of the sort fields of the last result already read, or an empty list to start from the first result
+     * @see SearchOptionsBuilder#searchAfter(Serializable...)
+     * @since 7.7.2
+     */
+    default List<Serializable> getSearchAfter() {
+        return Collections.emptyList();
+    }
+
 }
@@ -14,6 +14,7 @@
 package org.bonitasoft.engine.search;
 
 import java.io.Serializable;
+import java.util.Arrays;
 import java.util.List;
 
 import org.bonitasoft.engine.search.impl.SearchFilter;
@@ -58,6 +59,8 @@ public class SearchOptionsBuilder {
         options.setFilters(searchOptions.getFilters());
         options.setSorts(searchOptions.getSorts());
         options.setSearchTerm(searchOptions.getSearchTerm());
+        options.setCountSkipped(searchOptions.isCountSkipped());
+        options.setSearchAfter(searchOptions.getSearchAfter());
     }
 
     /**
@@ -202,6 +205,36 @@ public class SearchOptionsBuilder {
         return this;
     }
 
+    /**
+     * Do not count all the results matching the search criteria. The search then runs a single query, which is faster on large tables, and
+     * {@link SearchResult#getCount()} only tells the number of results up to the end of the returned page, plus one if more results follow.
+     *
+     * @return this builder itself
+     * @see SearchOptions#isCountSkipped()
+     * @since 7.7.2
+     */
+    public SearchOptionsBuilder skipCount() {
+        options.setCountSkipped(true);
+        return this;
+    }
+
+    /**
+     * Returns only the results located after the given values of the sort fields, e.g. the values of the last result of the previous page. Unlike a start
+     * index, the database does not have to read and skip all the previous results, so deep pages are as fast as the first one.
+     * One value must be given per sort, in the same order, and none can be null. The last sort should be on a unique field such as the id, otherwise
+     * results having the same values as the last result are skipped.
+     *
+     * @param sortValues
+     *        the values of the sort fields of the last result already read
+     * @return this builder itself
+     * @see SearchOptions#getSearchAfter()
+     * @since 7.7.2
+     */
+    public SearchOptionsBuilder searchAfter(final Serializable... sortValues) {
+        options.setSearchAfter(Arrays.asList(sortValues));
+        return this;
+    }
+
     /**
      * @param filters the filters to set
      * @return this builder itself
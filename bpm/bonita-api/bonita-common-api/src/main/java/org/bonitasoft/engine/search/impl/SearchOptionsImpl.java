@@ -15,6 +15,7 @@ package org.bonitasoft.engine.search.impl;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import org.bonitasoft.engine.exception.IncorrectParameterException;
@@ -42,6 +43,10 @@ public class SearchOptionsImpl implements SearchOptions {
 
     private List<Sort> sorts;
 
+    private boolean countSkipped;
+
+    private List<Serializable> searchAfter;
+
     public SearchOptionsImpl(final int startIndex, final int numberOfResults) {
         filters = new ArrayList<SearchFilter>(5);
         sorts = new ArrayList<Sort>(2);
@@ -150,6 +155,25 @@ public class SearchOptionsImpl implements SearchOptions {
         this.sorts = sorts;
     }
 
+    @Override
+    public boolean isCountSkipped() {
+        return countSkipped;
+    }
+
+    public void setCountSkipped(final boolean countSkipped) {
+        this.countSkipped = countSkipped;
+    }
+
+    @Override
+    public List<Serializable> getSearchAfter() {
+        // null when deserialized from a version not having it
+        return searchAfter == null ? Collections.<Serializable> emptyList() : searchAfter;
+    }
+
+    public void setSearchAfter(final List<Serializable> searchAfter) {
+        this.searchAfter = searchAfter;
+    }
+
     @Override
     public int hashCode() {
         final int prime = 31;
@@ -159,6 +183,8 @@ public class SearchOptionsImpl implements SearchOptions {
         result = prime * result + (searchTerm == null ? 0 : searchTerm.hashCode());
         result = prime * result + (sorts == null ? 0 : sorts.hashCode());
         result = prime * result + startIndex;
+        result = prime * result + (countSkipped ? 1231 : 1237);
+        result = prime * result + getSearchAfter().hashCode();
         return result;
     }
 
@@ -201,7 +227,10 @@ public class SearchOptionsImpl implements SearchOptions {
         if (startIndex != other.startIndex) {
             return false;
         }
-        return true;
+        if (countSkipped != other.countSkipped) {
+            return false;
+        }
+        return getSearchAfter().equals(other.getSearchAfter());
     }
 
 }
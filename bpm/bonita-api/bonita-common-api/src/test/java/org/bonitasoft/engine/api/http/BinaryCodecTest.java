@@ -0,0 +1,177 @@
+/**
+ * Copyright (C) 2018 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.api.http;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.bonitasoft.engine.exception.BonitaException;
+import org.bonitasoft.engine.search.SearchResult;
+import org.bonitasoft.engine.search.impl.SearchResultImpl;
+import org.junit.Test;
+
+public class BinaryCodecTest {
+
+    private final BinaryCodec binaryCodec = new BinaryCodec();
+
+    private static class Item implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final long id;
+
+        private final String name;
+
+        Item(final long id, final String name) {
+            this.id = id;
+            this.name = name;
+        }
+    }
+
+    private Object roundTrip(final Object value) throws IOException, ClassNotFoundException {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        binaryCodec.write(value, outputStream);
+        return binaryCodec.read(new ByteArrayInputStream(outputStream.toByteArray()));
+    }
+
+    @Test
+    public void should_encode_simple_values() throws Exception {
+        assertThat(roundTrip(null)).isNull();
+        assertThat(roundTrip("välue")).isEqualTo("välue");
+        assertThat(roundTrip(42)).isEqualTo(42);
+        assertThat(roundTrip(42L)).isEqualTo(42L);
+        assertThat(roundTrip(true)).isEqualTo(true);
+        assertThat(roundTrip(false)).isEqualTo(false);
+        assertThat(roundTrip(4.2d)).isEqualTo(4.2d);
+        assertThat(roundTrip(new Date(123456789L))).isEqualTo(new Date(123456789L));
+        assertThat((byte[]) roundTrip(new byte[] { 1, 2, 3 })).containsExactly(1, 2, 3);
+    }
+
+    @Test
+    public void should_encode_strings_longer_than_the_utf_limit() throws Exception {
+        final char[] chars = new char[100000];
+        Arrays.fill(chars, 'é');
+        final String longString = new String(chars);
+
+        assertThat(roundTrip(longString)).isEqualTo(longString);
+    }
+
+    @Test
+    public void should_encode_collections_and_arrays() throws Exception {
+        final Map<String, Serializable> map = new HashMap<>();
+        map.put("key", "value");
+        map.put("list", new ArrayList<>(Arrays.asList(1L, "two", null)));
+
+        final Object[] call = (Object[]) roundTrip(new Object[] { map, new ArrayList<>(Arrays.asList("java.lang.String")), new String[] { "a", "b" } });
+
+        assertThat(call[0]).isEqualTo(map);
+        assertThat(call[1]).isEqualTo(Collections.singletonList("java.lang.String"));
+        assertThat(call[2]).isInstanceOf(String[].class);
+        assertThat((String[]) call[2]).containsExactly("a", "b");
+    }
+
+    @Test
+    public void should_keep_the_type_of_collections_not_encoded_element_by_element() throws Exception {
+        final List<String> list = Collections.unmodifiableList(new ArrayList<>(Arrays.asList("a", "b")));
+
+        assertThat(roundTrip(list).getClass()).isEqualTo(list.getClass());
+    }
+
+    @Test
+    public void should_encode_search_results() throws Exception {
+        final List<Serializable> result = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            result.add(new Item(i, "item " + i));
+        }
+
+        @SuppressWarnings("unchecked")
+        final SearchResult<Item> searchResult = (SearchResult<Item>) roundTrip(new SearchResultImpl<>(5000, result));
+
+        assertThat(searchResult.getCount()).isEqualTo(5000);
+        assertThat(searchResult.getResult()).hasSize(1000);
+        assertThat(searchResult.getResult().get(999).id).isEqualTo(999);
+        assertThat(searchResult.getResult().get(999).name).isEqualTo("item 999");
+    }
+
+    @Test
+    public void should_write_the_description_of_a_class_only_once() throws Exception {
+        final ByteArrayOutputStream one = new ByteArrayOutputStream();
+        binaryCodec.write(new ArrayList<>(Collections.singletonList(new Item(1, "a"))), one);
+        final ByteArrayOutputStream two = new ByteArrayOutputStream();
+        binaryCodec.write(new ArrayList<>(Arrays.asList(new Item(1, "a"), new Item(2, "b"))), two);
+
+        assertThat(two.size() - one.size()).isLessThan(one.size() / 2);
+    }
+
+    @Test
+    public void should_encode_exceptions_with_their_stack_trace() throws Exception {
+        final BonitaException exception = new BonitaException("failure");
+
+        final BonitaException decoded = (BonitaException) roundTrip(exception);
+
+        assertThat(decoded.getMessage()).isEqualTo("failure");
+        assertThat(decoded.getStackTrace()).isEqualTo(exception.getStackTrace());
+    }
+
+    @Test
+    public void should_not_allocate_the_length_claimed_by_a_truncated_stream() throws Exception {
+        // version, then bytes and a list claiming more content than the stream holds
+        assertThatThrownBy(() -> binaryCodec.read(new ByteArrayInputStream(encode(1, 9, Integer.MAX_VALUE, 1, 2, 3))))
+                .isInstanceOf(EOFException.class);
+        assertThatThrownBy(() -> binaryCodec.read(new ByteArrayInputStream(encode(1, 10, Integer.MAX_VALUE, 0))))
+                .isInstanceOf(EOFException.class);
+    }
+
+    @Test
+    public void should_reject_negative_lengths() throws Exception {
+        assertThatThrownBy(() -> binaryCodec.read(new ByteArrayInputStream(encode(1, 9, -5))))
+                .isInstanceOf(IOException.class).hasMessageContaining("-5");
+    }
+
+    private byte[] encode(final int version, final int tag, final int length, final int... content) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (final ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+            output.writeByte(version);
+            output.writeByte(tag);
+            output.writeInt(length);
+            for (final int value : content) {
+                output.writeByte(value);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    @Test
+    public void should_recognize_the_binary_content_type() {
+        assertThat(BinaryCodec.isBinary("application/x-bonita-binary")).isTrue();
+        assertThat(BinaryCodec.isBinary("text/xml, application/x-bonita-binary")).isTrue();
+        assertThat(BinaryCodec.isBinary("application/json;charset=UTF-8")).isFalse();
+        assertThat(BinaryCodec.isBinary(null)).isFalse();
+    }
+
+}
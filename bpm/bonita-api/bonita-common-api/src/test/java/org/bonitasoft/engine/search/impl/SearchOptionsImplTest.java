@@ -15,6 +15,9 @@ package org.bonitasoft.engine.search.impl;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import java.io.Serializable;
+import java.util.Arrays;
+
 import org.junit.Test;
 
 public class SearchOptionsImplTest {
@@ -35,6 +38,17 @@ public class SearchOptionsImplTest {
         assertThat(options1.hashCode()).isEqualTo(options2.hashCode());
     }
 
+    @Test
+    public void equals_should_check_the_search_after_values() {
+        final SearchOptionsImpl options1 = buildSearchOptions();
+        final SearchOptionsImpl options2 = buildSearchOptions();
+        options1.setSearchAfter(Arrays.<Serializable> asList("name", 12L));
+
+        assertThat(options1).isNotEqualTo(options2);
+        options2.setSearchAfter(Arrays.<Serializable> asList("name", 12L));
+        assertThat(options1).isEqualTo(options2);
+    }
+
     private SearchOptionsImpl buildSearchOptions() {
         final SearchOptionsImpl options = new SearchOptionsImpl(0, 2000);
         options.addFilter("field1", "value");
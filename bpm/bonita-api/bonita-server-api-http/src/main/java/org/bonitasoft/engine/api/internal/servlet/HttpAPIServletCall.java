@@ -13,9 +13,11 @@
  **/
 package org.bonitasoft.engine.api.internal.servlet;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.OutputStream;
 import java.io.Serializable;
 import java.io.StringReader;
 import java.io.StringWriter;
@@ -29,6 +31,7 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.apache.commons.fileupload.FileUploadException;
+import org.bonitasoft.engine.api.http.BinaryCodec;
 import org.bonitasoft.engine.api.impl.ServerAPIFactory;
 import org.bonitasoft.engine.api.internal.ServerAPI;
 import org.bonitasoft.engine.api.internal.ServerWrappedException;
@@ -58,6 +61,12 @@ public class HttpAPIServletCall extends ServletCall {
 
     private static final String OPTIONS = "options";
 
+    private static final String CONTENT_TYPE = "Content-Type";
+
+    private static final String ACCEPT = "Accept";
+
+    private static final BinaryCodec BINARY_CODEC = new BinaryCodec();
+
     private static final XStream XSTREAM = new XStream();
 
     static {
@@ -77,27 +86,68 @@ public class HttpAPIServletCall extends ServletCall {
 
     @Override
     public void doPost() {
+        if (BinaryCodec.isBinary(getRequestHeader(ACCEPT))) {
+            Object response;
+            int status = HttpServletResponse.SC_OK;
+            try {
+                response = invokeServerAPI();
+            } catch (final Exception e) {
+                response = getResponseException(e);
+                status = HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
+            }
+            outputBinary(response, status);
+            return;
+        }
         try {
-            String apiInterfaceName = null;
-            String methodName = null;
-            final String[] pathParams = getRequestURL().split(SLASH);
-            if (pathParams != null && pathParams.length >= 2) {
-                apiInterfaceName = pathParams[pathParams.length - 2];
-                methodName = pathParams[pathParams.length - 1];
+            final Object invokeMethod = invokeServerAPI();
+
+            String invokeMethodSerialized = null;
+            if (invokeMethod != null) {
+                invokeMethodSerialized = toXML(invokeMethod, XSTREAM);
+            }
+
+            // add charset avoid encoding problems
+            this.output(invokeMethodSerialized);
+        } catch (final Exception e) {
+            error(toResponse(e), HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object invokeServerAPI() throws Exception {
+        String apiInterfaceName = null;
+        String methodName = null;
+        final String[] pathParams = getRequestURL().split(SLASH);
+        if (pathParams != null && pathParams.length >= 2) {
+            apiInterfaceName = pathParams[pathParams.length - 2];
+            methodName = pathParams[pathParams.length - 1];
+        }
+        Map<String, Serializable> myOptions = new HashMap<String, Serializable>();
+        List<String> myClassNameParameters = new ArrayList<String>();
+        Object[] myParametersValues = new Object[0];
+        if (BinaryCodec.isBinary(getRequestHeader(CONTENT_TYPE))) {
+            // options, class names and values of the parameters, binary parameters are encoded inline
+            final Object[] call = (Object[]) BINARY_CODEC.read(getRequestBody());
+            if (call[0] != null) {
+                myOptions = (Map<String, Serializable>) call[0];
+            }
+            if (call[1] != null) {
+                myClassNameParameters = (List<String>) call[1];
+            }
+            if (call[2] != null) {
+                myParametersValues = (Object[]) call[2];
             }
+        } else {
             final String options = this.getParameter(OPTIONS);
             final String parametersValues = this.getParameter(PARAMETERS_VALUES);
             final String parametersClasses = this.getParameter(CLASS_NAME_PARAMETERS);
 
-            Map<String, Serializable> myOptions = new HashMap<String, Serializable>();
             if (options != null && !options.isEmpty()) {
                 myOptions = fromXML(options, XSTREAM);
             }
-            List<String> myClassNameParameters = new ArrayList<String>();
             if (parametersClasses != null && !parametersClasses.isEmpty() && !parametersClasses.equals(ARRAY)) {
                 myClassNameParameters = fromXML(parametersClasses, XSTREAM);
             }
-            Object[] myParametersValues = new Object[0];
             if (parametersValues != null && !parametersValues.isEmpty() && !parametersValues.equals(NULL)) {
                 myParametersValues = fromXML(parametersValues, XSTREAM);
                 if (myParametersValues != null && !(myParametersValues.length == 0)) {
@@ -110,26 +160,36 @@ public class HttpAPIServletCall extends ServletCall {
                     }
                 }
             }
+        }
 
-            final ServerAPI serverAPI = ServerAPIFactory.getServerAPI();
+        final ServerAPI serverAPI = ServerAPIFactory.getServerAPI();
+        try {
+            return serverAPI.invokeMethod(myOptions, apiInterfaceName, methodName, myClassNameParameters, myParametersValues);
+        } catch (ServerWrappedException e) {
+            // merge stack trace of the server exception
+            throw StackTraceTransformer.mergeStackTraces(e);
+        }
+    }
 
-            final Object invokeMethod;
+    private void outputBinary(final Object response, final int status) {
+        // encoded before the status is sent: a result that can't be encoded is answered as an error
+        final ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        int encodedStatus = status;
+        try {
+            BINARY_CODEC.write(response, encoded);
+        } catch (final IOException | RuntimeException e) {
+            encoded.reset();
+            encodedStatus = HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
             try {
-                invokeMethod = serverAPI.invokeMethod(myOptions, apiInterfaceName, methodName, myClassNameParameters, myParametersValues);
-            } catch (ServerWrappedException e) {
-                // merge stack trace of the server exception
-                throw StackTraceTransformer.mergeStackTraces(e);
+                BINARY_CODEC.write(new BonitaRuntimeException("unable to serialize object " + response, e), encoded);
+            } catch (final IOException ioe) {
+                throw new BonitaRuntimeException("unable to serialize object " + response, ioe);
             }
-
-            String invokeMethodSerialized = null;
-            if (invokeMethod != null) {
-                invokeMethodSerialized = toXML(invokeMethod, XSTREAM);
-            }
-
-            // add charset avoid encoding problems
-            this.output(invokeMethodSerialized);
-        } catch (final Exception e) {
-            error(toResponse(e), HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+        }
+        try (final OutputStream outputStream = getResponseOutputStream(BinaryCodec.CONTENT_TYPE, encodedStatus)) {
+            encoded.writeTo(outputStream);
+        } catch (final IOException e) {
+            throw new BonitaRuntimeException("unable to write the response", e);
         }
     }
 
@@ -165,13 +225,15 @@ public class HttpAPIServletCall extends ServletCall {
         error("DELETE method forbidden", HttpServletResponse.SC_FORBIDDEN);
     }
 
-    private String toResponse(final Exception exception) {
-        Throwable result = null;
+    private Throwable getResponseException(final Exception exception) {
         if (exception instanceof ServerWrappedException) {
-            result = exception.getCause();
-        } else {
-            result = exception;
+            return exception.getCause();
         }
+        return exception;
+    }
+
+    private String toResponse(final Exception exception) {
+        final Throwable result = getResponseException(exception);
         // ignore fields suppressedExceptions and stackTrance causing exceptions in some cases
         XSTREAM.omitField(Throwable.class, "suppressedExceptions");
         // xstream.omitField(Throwable.class, "stackTrace");
@@ -23,6 +23,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -167,6 +168,21 @@ public abstract class ServletCall {
         return request.getRequestURL().toString();
     }
 
+    /**
+     * @see javax.servlet.http.HttpServletRequest#getHeader(String)
+     */
+    public final String getRequestHeader(final String name) {
+        return request.getHeader(name);
+    }
+
+    /**
+     * Get the body of the request as a stream, to read it without loading it in memory.
+     * It must not be used when the parameters are read from the body, i.e. for multipart or form requests.
+     */
+    protected final InputStream getRequestBody() throws IOException {
+        return request.getInputStream();
+    }
+
     /**
      * Read the input stream and set it in a String
      */
@@ -318,6 +334,20 @@ public abstract class ServletCall {
         }
     }
 
+    /**
+     * Get the stream of the response, to write it without building it in memory
+     * 
+     * @param contentType
+     *        The content type of the response
+     * @param status
+     *        The status of the response
+     */
+    protected final OutputStream getResponseOutputStream(final String contentType, final int status) throws IOException {
+        response.setStatus(status);
+        response.setContentType(contentType);
+        return response.getOutputStream();
+    }
+
     protected void error(final String message, final int errorCode) {
         output(message);
         response.setStatus(errorCode);
@@ -0,0 +1,33 @@
+/**
+ * Copyright (C) 2018 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.core.data.instance;
+
+/**
+ * Recreates a transient data that is not in the {@link TransientDataService} anymore, because it was evicted or because the node was restarted.
+ */
+public interface TransientDataReloader {
+
+    /**
+     * Create the data again in the {@link TransientDataService}. Does nothing if the data can not be recreated.
+     *
+     * @param dataName
+     *        name of the missing data
+     * @param containerId
+     *        id of the container of the data
+     * @param containerType
+     *        type of the container of the data
+     */
+    void reload(String dataName, long containerId, String containerType);
+
+}
@@ -81,4 +81,12 @@ public interface TransientDataService {
      */
     List<SDataInstance> getDataInstances(List<Long> dataInstanceIds);
 
+    /**
+     * Delete all data instances of a container, e.g. when the flow node they belong to is completed
+     *
+     * @param containerId
+     * @param containerType
+     */
+    void deleteDataInstances(long containerId, String containerType);
+
 }
@@ -13,6 +13,7 @@
  **/
 package org.bonitasoft.engine.core.data.instance.impl;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -20,29 +21,37 @@ import java.util.Map;
 import java.util.UUID;
 
 import org.apache.commons.lang3.text.WordUtils;
-import org.bonitasoft.engine.cache.CacheService;
-import org.bonitasoft.engine.cache.SCacheException;
 import org.bonitasoft.engine.commons.ClassReflector;
-import org.bonitasoft.engine.commons.exceptions.SReflectException;
+import org.bonitasoft.engine.core.data.instance.TransientDataReloader;
 import org.bonitasoft.engine.core.data.instance.TransientDataService;
 import org.bonitasoft.engine.data.instance.exception.SCreateDataInstanceException;
 import org.bonitasoft.engine.data.instance.exception.SDataInstanceException;
 import org.bonitasoft.engine.data.instance.exception.SDataInstanceNotFoundException;
 import org.bonitasoft.engine.data.instance.exception.SUpdateDataInstanceException;
 import org.bonitasoft.engine.data.instance.model.SDataInstance;
+import org.bonitasoft.engine.data.instance.model.impl.SDataInstanceImpl;
 import org.bonitasoft.engine.recorder.model.EntityUpdateDescriptor;
 
 /**
+ * Keeps the transient data instances in a {@link TransientDataStore}, bounded to a maximum number of data instances.
+ * Data instances that are not found, e.g. because they were evicted, are recreated using the {@link TransientDataReloader} if one is set.
+ *
  * @author Baptiste Mesta
  */
 public class TransientDataServiceImpl implements TransientDataService {
 
-    private static final String TRANSIENT_DATA_CACHE_NAME = "transient_data";
+    private static final String VALUE_FIELD = "value";
 
-    private final CacheService cacheService;
+    private final TransientDataStore store;
 
-    public TransientDataServiceImpl(final CacheService cacheService) {
-        this.cacheService = cacheService;
+    private TransientDataReloader reloader;
+
+    public TransientDataServiceImpl(final int maxDataInstances) {
+        store = new TransientDataStore(maxDataInstances);
+    }
+
+    public void setReloader(final TransientDataReloader reloader) {
+        this.reloader = reloader;
     }
 
     @Override
@@ -54,32 +63,17 @@ public class TransientDataServiceImpl implements TransientDataService {
         return data;
     }
 
-    private String getKey(final String dataInstanceName, final long containerId, final String containerType) {
-        return dataInstanceName + ":" + containerId + ":" + containerType;
-    }
-
-    private String getKey(final SDataInstance dataInstance) {
-        return getKey(dataInstance.getName(), dataInstance.getContainerId(), dataInstance.getContainerType());
-    }
-
     @Override
     public void createDataInstance(final SDataInstance dataInstance) throws SDataInstanceException {
-        try {
-            final String dataInstanceKey = getKey(dataInstance);
-            if (checkDataAlreadyExists(dataInstanceKey)) {
-                handleDataAlreadyExists(dataInstance);
-            }
-            setId(dataInstance);
-            cacheService.store(TRANSIENT_DATA_CACHE_NAME, dataInstanceKey, dataInstance);
-        } catch (final Exception e) {
-            throw new SDataInstanceException("Impossible to store transient data", e);
+        setId(dataInstance);
+        if (!store.add(dataInstance)) {
+            handleDataAlreadyExists(dataInstance);
         }
     }
 
-    private void setId(final SDataInstance dataInstance) throws SecurityException, IllegalArgumentException, SReflectException {
+    private void setId(final SDataInstance dataInstance) {
         // FIXME: probably the id will be be used, so not necessary to be set
-        final long id = Math.abs(UUID.randomUUID().getMostSignificantBits());
-        ClassReflector.invokeSetter(dataInstance, "setId", long.class, id);
+        dataInstance.setId(Math.abs(UUID.randomUUID().getMostSignificantBits()));
     }
 
     private void handleDataAlreadyExists(final SDataInstance dataInstance) throws SCreateDataInstanceException {
@@ -92,80 +86,59 @@ public class TransientDataServiceImpl implements TransientDataService {
         throw new SCreateDataInstanceException(stb.toString());
     }
 
-    private boolean checkDataAlreadyExists(final String dataInstanceKey) throws SCacheException {
-        final List<?> keys = getCacheKeys(TRANSIENT_DATA_CACHE_NAME);
-        return keys.contains(dataInstanceKey);
-    }
-
     @Override
     public void updateDataInstance(final SDataInstance dataInstance, final EntityUpdateDescriptor descriptor) throws SDataInstanceException {
-        try {
-            final String key = getKey(dataInstance);
-
-            for (final Map.Entry<String, Object> field : descriptor.getFields().entrySet()) {
-                try {
-                    final String setterName = "set" + WordUtils.capitalize(field.getKey());
-                    ClassReflector.invokeMethodByName(dataInstance, setterName, field.getValue());
-                } catch (final Exception e) {
-                    throw new SUpdateDataInstanceException("Problem while updating entity: " + dataInstance + " with id: " + dataInstance.getId()
-                            + " in TransientDataInstanceDataSource.", e);
-                }
+        for (final Map.Entry<String, Object> field : descriptor.getFields().entrySet()) {
+            try {
+                setField(dataInstance, field.getKey(), field.getValue());
+            } catch (final Exception e) {
+                throw new SUpdateDataInstanceException("Problem while updating entity: " + dataInstance + " with id: " + dataInstance.getId()
+                        + " in TransientDataInstanceDataSource.", e);
             }
+        }
+        store.put(dataInstance);
+    }
 
-            cacheService.store(TRANSIENT_DATA_CACHE_NAME, key, dataInstance);
-        } catch (final SCacheException e) {
-            throw new SDataInstanceException("Impossible to update transient data", e);
+    private void setField(final SDataInstance dataInstance, final String fieldName, final Object fieldValue) throws Exception {
+        // the value is the only field updated by the engine: set it without reflection
+        if (VALUE_FIELD.equals(fieldName) && dataInstance instanceof SDataInstanceImpl) {
+            ((SDataInstanceImpl) dataInstance).setValue((Serializable) fieldValue);
+        } else {
+            ClassReflector.invokeMethodByName(dataInstance, "set" + WordUtils.capitalize(fieldName), fieldValue);
         }
     }
 
     @Override
-    public void deleteDataInstance(final SDataInstance dataInstance) throws SDataInstanceException {
-        try {
-            final String key = getKey(dataInstance);
-            cacheService.remove(TRANSIENT_DATA_CACHE_NAME, key);
-        } catch (final SCacheException e) {
-            throw new SDataInstanceException("Impossible to delete transient data", e);
-        }
+    public void deleteDataInstance(final SDataInstance dataInstance) {
+        store.remove(dataInstance);
+    }
+
+    @Override
+    public void deleteDataInstances(final long containerId, final String containerType) {
+        store.removeAll(containerId, containerType);
     }
 
     @Override
     public SDataInstance getDataInstance(final long dataInstanceId) throws SDataInstanceException {
-        try {
-            final List<?> cacheKeys = getCacheKeys(TRANSIENT_DATA_CACHE_NAME);
-            for (final Object key : cacheKeys) {
-                final SDataInstance dataInstance = (SDataInstance) cacheService.get(TRANSIENT_DATA_CACHE_NAME, key);
-                if (dataInstance != null && dataInstance.getId() == dataInstanceId) {
-                    return dataInstance;
-                }
-            }
-        } catch (final SCacheException e) {
-            throw new SDataInstanceException("Impossible to get transient data: ", e);
+        final SDataInstance dataInstance = store.get(dataInstanceId);
+        if (dataInstance == null) {
+            throw new SDataInstanceNotFoundException("No data found. Id: " + dataInstanceId);
         }
-        throw new SDataInstanceNotFoundException("No data found. Id: " + dataInstanceId);
+        return dataInstance;
     }
 
     @Override
     public SDataInstance getDataInstance(final String dataName, final long containerId, final String containerType) throws SDataInstanceException {
-        try {
-            final List<?> cacheKeys = getCacheKeys(TRANSIENT_DATA_CACHE_NAME);
-            final String key = getKey(dataName, containerId, containerType);
-
-            if (!cacheKeys.contains(key)) {
-                handleDataInstanceNotFound(dataName, containerId, containerType);
-            }
-
-            return (SDataInstance) cacheService.get(TRANSIENT_DATA_CACHE_NAME, key);
-        } catch (final SCacheException e) {
-            throw new SDataInstanceException("Impossible to get transient data: ", e);
+        SDataInstance dataInstance = store.get(dataName, containerId, containerType);
+        if (dataInstance == null && reloader != null) {
+            reloader.reload(dataName, containerId, containerType);
+            // the data may also have been created concurrently
+            dataInstance = store.get(dataName, containerId, containerType);
         }
-    }
-
-    private List<?> getCacheKeys(final String cacheName) throws SCacheException {
-        List<?> cacheKeys = Collections.emptyList();
-        if (cacheService.getCachesNames().contains(cacheName)) {
-            cacheKeys = cacheService.getKeys(cacheName);
+        if (dataInstance == null) {
+            handleDataInstanceNotFound(dataName, containerId, containerType);
         }
-        return cacheKeys;
+        return dataInstance;
     }
 
     private void handleDataInstanceNotFound(final String dataName, final long containerId, final String containerType) throws SDataInstanceNotFoundException {
@@ -179,39 +152,21 @@ public class TransientDataServiceImpl implements TransientDataService {
     }
 
     @Override
-    public List<SDataInstance> getDataInstances(final long containerId, final String containerType, final int fromIndex, final int numberOfResults)
-            throws SDataInstanceException {
-        final String matchingKey = containerId + ":" + containerType;
-        final List<SDataInstance> dataInstances = new ArrayList<SDataInstance>();
-        try {
-            final List<?> cacheKeys = getCacheKeys(TRANSIENT_DATA_CACHE_NAME);
-            for (int i = fromIndex; i < cacheKeys.size() && i < numberOfResults; i++) {
-                final Object key = cacheKeys.get(i);
-                if (((String) key).contains(matchingKey)) {
-                    final SDataInstance dataInstance = getDataInstance(((String) key).substring(0, ((String) key).indexOf(":")), containerId, containerType);
-                    if (dataInstance != null) {
-                        dataInstances.add(dataInstance);
-                    }
-                }
-            }
-
-            if (!dataInstances.isEmpty()) {
-                return dataInstances;
-            }
+    public List<SDataInstance> getDataInstances(final long containerId, final String containerType, final int fromIndex, final int numberOfResults) {
+        final List<SDataInstance> dataInstances = store.getAll(containerId, containerType);
+        if (fromIndex >= dataInstances.size()) {
             return Collections.emptyList();
-            // throw new SDataInstanceException("No data instance found for container type " + containerType + " and container id " + containerId);
-        } catch (final SCacheException e) {
-            throw new SDataInstanceException("Impossible to get transient data: ", e);
         }
+        return dataInstances.subList(fromIndex, (int) Math.min(dataInstances.size(), (long) fromIndex + numberOfResults));
     }
 
     @Override
     public List<SDataInstance> getDataInstances(final List<Long> dataInstanceIds) {
         final List<SDataInstance> results = new ArrayList<SDataInstance>(dataInstanceIds.size());
         for (final Long dataInstanceId : dataInstanceIds) {
-            try {
-                results.add(getDataInstance(dataInstanceId));
-            } catch (final SDataInstanceException e) {
+            final SDataInstance dataInstance = store.get(dataInstanceId);
+            if (dataInstance != null) {
+                results.add(dataInstance);
             }
         }
         return results;
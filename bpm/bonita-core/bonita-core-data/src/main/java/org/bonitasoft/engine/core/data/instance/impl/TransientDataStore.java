@@ -0,0 +1,310 @@
+/**
+ * Copyright (C) 2018 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.core.data.instance.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.bonitasoft.engine.data.instance.model.SDataInstance;
+
+/**
+ * In memory store of the transient data instances, grouped by container.
+ * <p>
+ * Each container (id, type) holds a small table of its data instances indexed by name, so that finding, adding or removing a data instance
+ * does not depend on the number of containers, and all data instances of a container are removed at once when the container completes.
+ * <p>
+ * The number of data instances kept is bounded: when it is exceeded, whole containers are evicted using a clock (second chance) policy, the
+ * containers accessed since the last pass of the clock hand being kept. Evicted data instances must be reloaded by the caller.
+ */
+final class TransientDataStore {
+
+    private static final int MIN_QUEUED_CONTAINERS_TO_PURGE = 1024;
+
+    private final int maxDataInstances;
+
+    private final ConcurrentHashMap<ContainerKey, Container> containers = new ConcurrentHashMap<>();
+
+    private final ConcurrentHashMap<Long, SDataInstance> dataInstancesById = new ConcurrentHashMap<>();
+
+    // containers in creation order, the head being the position of the clock hand
+    private final ConcurrentLinkedQueue<Container> clock = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger queuedContainers = new AtomicInteger();
+
+    private final AtomicBoolean purging = new AtomicBoolean();
+
+    private final AtomicInteger size = new AtomicInteger();
+
+    TransientDataStore(final int maxDataInstances) {
+        this.maxDataInstances = maxDataInstances;
+    }
+
+    /**
+     * @return false if the container of the data instance already has a data instance with the same name
+     */
+    boolean add(final SDataInstance dataInstance) {
+        final boolean added = store(dataInstance, false);
+        evictIfNeeded();
+        return added;
+    }
+
+    /**
+     * Add the data instance, replacing the one of its container having the same name if any.
+     */
+    void put(final SDataInstance dataInstance) {
+        store(dataInstance, true);
+        evictIfNeeded();
+    }
+
+    private boolean store(final SDataInstance dataInstance, final boolean replace) {
+        final ContainerKey key = new ContainerKey(dataInstance.getContainerId(), dataInstance.getContainerType());
+        while (true) {
+            final Container container = getOrCreateContainer(key);
+            synchronized (container) {
+                if (container.removed) {
+                    // evicted or removed concurrently: retry with a new container
+                    continue;
+                }
+                container.referenced = true;
+                final SDataInstance previous = container.dataInstances.get(dataInstance.getName());
+                if (previous != null && !replace) {
+                    return false;
+                }
+                container.dataInstances.put(dataInstance.getName(), dataInstance);
+                if (previous == null) {
+                    size.incrementAndGet();
+                } else if (previous.getId() != dataInstance.getId()) {
+                    dataInstancesById.remove(previous.getId());
+                }
+                dataInstancesById.put(dataInstance.getId(), dataInstance);
+                return true;
+            }
+        }
+    }
+
+    private Container getOrCreateContainer(final ContainerKey key) {
+        final Container container = containers.get(key);
+        if (container != null) {
+            return container;
+        }
+        return containers.computeIfAbsent(key, k -> {
+            final Container created = new Container(k);
+            clock.offer(created);
+            queuedContainers.incrementAndGet();
+            return created;
+        });
+    }
+
+    SDataInstance get(final String dataName, final long containerId, final String containerType) {
+        final Container container = containers.get(new ContainerKey(containerId, containerType));
+        if (container == null) {
+            return null;
+        }
+        synchronized (container) {
+            if (!container.referenced) {
+                container.referenced = true;
+            }
+            return container.dataInstances.get(dataName);
+        }
+    }
+
+    SDataInstance get(final long dataInstanceId) {
+        return dataInstancesById.get(dataInstanceId);
+    }
+
+    /**
+     * @return the data instances of the container, in the order they were added
+     */
+    List<SDataInstance> getAll(final long containerId, final String containerType) {
+        final Container container = containers.get(new ContainerKey(containerId, containerType));
+        if (container == null) {
+            return Collections.emptyList();
+        }
+        synchronized (container) {
+            container.referenced = true;
+            return new ArrayList<>(container.dataInstances.values());
+        }
+    }
+
+    void remove(final SDataInstance dataInstance) {
+        final Container container = containers.get(new ContainerKey(dataInstance.getContainerId(), dataInstance.getContainerType()));
+        if (container == null) {
+            return;
+        }
+        synchronized (container) {
+            if (container.removed) {
+                return;
+            }
+            final SDataInstance removed = container.dataInstances.remove(dataInstance.getName());
+            if (removed != null) {
+                dataInstancesById.remove(removed.getId());
+                size.decrementAndGet();
+            }
+            if (container.dataInstances.isEmpty()) {
+                discardLocked(container);
+            }
+        }
+        purgeClockIfNeeded();
+    }
+
+    /**
+     * Remove all data instances of the container
+     *
+     * @return the number of data instances removed
+     */
+    int removeAll(final long containerId, final String containerType) {
+        final Container container = containers.get(new ContainerKey(containerId, containerType));
+        if (container == null) {
+            return 0;
+        }
+        return discard(container);
+    }
+
+    void clear() {
+        for (final Container container : containers.values()) {
+            discard(container);
+        }
+    }
+
+    int size() {
+        return size.get();
+    }
+
+    int containerCount() {
+        return containers.size();
+    }
+
+    private int discard(final Container container) {
+        final int removedDataInstances;
+        synchronized (container) {
+            removedDataInstances = discardLocked(container);
+        }
+        purgeClockIfNeeded();
+        return removedDataInstances;
+    }
+
+    // must be called holding the lock of the container
+    private int discardLocked(final Container container) {
+        if (container.removed) {
+            return 0;
+        }
+        container.removed = true;
+        containers.remove(container.key, container);
+        for (final SDataInstance dataInstance : container.dataInstances.values()) {
+            dataInstancesById.remove(dataInstance.getId());
+        }
+        final int removedDataInstances = container.dataInstances.size();
+        container.dataInstances.clear();
+        size.addAndGet(-removedDataInstances);
+        return removedDataInstances;
+    }
+
+    private void evictIfNeeded() {
+        while (size.get() > maxDataInstances) {
+            final Container container = clock.poll();
+            if (container == null) {
+                return;
+            }
+            queuedContainers.decrementAndGet();
+            synchronized (container) {
+                if (container.removed) {
+                    continue;
+                }
+                if (container.referenced) {
+                    // second chance
+                    container.referenced = false;
+                    clock.offer(container);
+                    queuedContainers.incrementAndGet();
+                    continue;
+                }
+                discardLocked(container);
+            }
+        }
+    }
+
+    /*
+     * containers removed before the clock hand reaches them stay in the clock: drop them once they outnumber the live ones so that the clock
+     * does not grow when nothing is evicted
+     */
+    private void purgeClockIfNeeded() {
+        if (queuedContainers.get() < Math.max(MIN_QUEUED_CONTAINERS_TO_PURGE, 2 * containers.size()) || !purging.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            final Iterator<Container> iterator = clock.iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().removed) {
+                    iterator.remove();
+                    queuedContainers.decrementAndGet();
+                }
+            }
+        } finally {
+            purging.set(false);
+        }
+    }
+
+    private static final class ContainerKey {
+
+        private final long id;
+
+        private final String type;
+
+        ContainerKey(final long id, final String type) {
+            this.id = id;
+            this.type = type;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof ContainerKey)) {
+                return false;
+            }
+            final ContainerKey other = (ContainerKey) o;
+            return id == other.id && (type == null ? other.type == null : type.equals(other.type));
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Long.hashCode(id) + (type == null ? 0 : type.hashCode());
+        }
+    }
+
+    private static final class Container {
+
+        private final ContainerKey key;
+
+        // guarded by the container
+        private final Map<String, SDataInstance> dataInstances = new LinkedHashMap<>(4);
+
+        private volatile boolean referenced = true;
+
+        private volatile boolean removed;
+
+        Container(final ContainerKey key) {
+            this.key = key;
+        }
+    }
+
+}
@@ -0,0 +1,204 @@
+/**
+ * Copyright (C) 2018 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.core.data.instance.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang3.text.WordUtils;
+import org.bonitasoft.engine.commons.ClassReflector;
+import org.bonitasoft.engine.data.instance.model.SDataInstance;
+import org.bonitasoft.engine.data.instance.model.impl.SShortTextDataInstanceImpl;
+import org.bonitasoft.engine.recorder.model.EntityUpdateDescriptor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compare the {@link TransientDataServiceImpl} with the previous implementation, which stored each data instance in a cache under a
+ * {@code name:containerId:containerType} key and listed all keys of the cache to check whether a data instance exists, while
+ * {@link #liveContainers} flow nodes have {@link #dataPerContainer} transient data each.
+ * The lifecycle of a flow node creates its transient data, reads and updates them, then removes them when it completes.
+ * Run it using {@link #main(String[])}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TransientDataServiceBenchmark {
+
+    private static final String CONTAINER_TYPE = "ACTIVITY_INSTANCE";
+
+    @Param({ "containerStore", "keyListCache" })
+    public String implementation;
+
+    @Param({ "100000" })
+    public int liveContainers;
+
+    @Param({ "3" })
+    public int dataPerContainer;
+
+    private final AtomicLong containerIds = new AtomicLong();
+
+    private TransientDataServiceImpl transientDataService;
+
+    private KeyListCacheTransientData keyListCache;
+
+    @Setup
+    public void setup() throws Exception {
+        transientDataService = new TransientDataServiceImpl(Integer.MAX_VALUE);
+        keyListCache = new KeyListCacheTransientData();
+        for (int i = 0; i < liveContainers; i++) {
+            final long containerId = containerIds.incrementAndGet();
+            for (int d = 0; d < dataPerContainer; d++) {
+                create(data(containerId, d));
+            }
+        }
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Object flowNodeLifecycle() throws Exception {
+        final long containerId = containerIds.incrementAndGet();
+        for (int d = 0; d < dataPerContainer; d++) {
+            create(data(containerId, d));
+        }
+        final EntityUpdateDescriptor descriptor = new EntityUpdateDescriptor();
+        descriptor.addField("value", "updated");
+        Object value = null;
+        for (int d = 0; d < dataPerContainer; d++) {
+            final SDataInstance dataInstance = get("data" + d, containerId);
+            update(dataInstance, descriptor);
+            value = get("data" + d, containerId).getValue();
+        }
+        deleteAll(containerId);
+        return value;
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Object readDataOfLiveFlowNode() throws Exception {
+        final long containerId = 1 + ThreadLocalRandom.current().nextLong(liveContainers);
+        return get("data0", containerId).getValue();
+    }
+
+    private void create(final SDataInstance dataInstance) throws Exception {
+        if ("containerStore".equals(implementation)) {
+            transientDataService.createDataInstance(dataInstance);
+        } else {
+            keyListCache.create(dataInstance);
+        }
+    }
+
+    private SDataInstance get(final String name, final long containerId) throws Exception {
+        if ("containerStore".equals(implementation)) {
+            return transientDataService.getDataInstance(name, containerId, CONTAINER_TYPE);
+        }
+        return keyListCache.get(name, containerId, CONTAINER_TYPE);
+    }
+
+    private void update(final SDataInstance dataInstance, final EntityUpdateDescriptor descriptor) throws Exception {
+        if ("containerStore".equals(implementation)) {
+            transientDataService.updateDataInstance(dataInstance, descriptor);
+        } else {
+            keyListCache.update(dataInstance, descriptor);
+        }
+    }
+
+    private void deleteAll(final long containerId) throws Exception {
+        if ("containerStore".equals(implementation)) {
+            transientDataService.deleteDataInstances(containerId, CONTAINER_TYPE);
+        } else {
+            for (int d = 0; d < dataPerContainer; d++) {
+                keyListCache.delete(keyListCache.get("data" + d, containerId, CONTAINER_TYPE));
+            }
+        }
+    }
+
+    private static SDataInstance data(final long containerId, final int index) {
+        final SShortTextDataInstanceImpl data = new SShortTextDataInstanceImpl();
+        data.setName("data" + index);
+        data.setContainerId(containerId);
+        data.setContainerType(CONTAINER_TYPE);
+        data.setValue("value");
+        return data;
+    }
+
+    /**
+     * The previous implementation: an in memory cache listing a copy of its keys, as the cache service does, before each lookup.
+     */
+    private static final class KeyListCacheTransientData {
+
+        private final Map<Object, Object> cache = new ConcurrentHashMap<>();
+
+        private String getKey(final String name, final long containerId, final String containerType) {
+            return name + ":" + containerId + ":" + containerType;
+        }
+
+        private List<Object> getKeys() {
+            return new ArrayList<>(cache.keySet());
+        }
+
+        void create(final SDataInstance dataInstance) throws Exception {
+            final String key = getKey(dataInstance.getName(), dataInstance.getContainerId(), dataInstance.getContainerType());
+            if (getKeys().contains(key)) {
+                throw new IllegalStateException("Data already exists " + key);
+            }
+            ClassReflector.invokeSetter(dataInstance, "setId", long.class, ThreadLocalRandom.current().nextLong(Long.MAX_VALUE));
+            cache.put(key, dataInstance);
+        }
+
+        SDataInstance get(final String name, final long containerId, final String containerType) {
+            final String key = getKey(name, containerId, containerType);
+            if (!getKeys().contains(key)) {
+                throw new IllegalStateException("No data found " + key);
+            }
+            return (SDataInstance) cache.get(key);
+        }
+
+        void update(final SDataInstance dataInstance, final EntityUpdateDescriptor descriptor) throws Exception {
+            for (final Map.Entry<String, Object> field : descriptor.getFields().entrySet()) {
+                ClassReflector.invokeMethodByName(dataInstance, "set" + WordUtils.capitalize(field.getKey()), field.getValue());
+            }
+            cache.put(getKey(dataInstance.getName(), dataInstance.getContainerId(), dataInstance.getContainerType()), dataInstance);
+        }
+
+        void delete(final SDataInstance dataInstance) {
+            cache.remove(getKey(dataInstance.getName(), dataInstance.getContainerId(), dataInstance.getContainerType()));
+        }
+    }
+
+    public static void main(final String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(TransientDataServiceBenchmark.class.getSimpleName()).build()).run();
+    }
+
+}
@@ -14,20 +14,22 @@
 package org.bonitasoft.engine.core.data.instance.impl;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.*;
 
 import java.util.Arrays;
 import java.util.List;
 
-import org.bonitasoft.engine.cache.CacheService;
-import org.bonitasoft.engine.cache.SCacheException;
+import org.bonitasoft.engine.core.data.instance.TransientDataReloader;
+import org.bonitasoft.engine.data.instance.exception.SCreateDataInstanceException;
+import org.bonitasoft.engine.data.instance.exception.SDataInstanceNotFoundException;
 import org.bonitasoft.engine.data.instance.model.SDataInstance;
 import org.bonitasoft.engine.data.instance.model.impl.SShortTextDataInstanceImpl;
 import org.bonitasoft.engine.recorder.model.EntityUpdateDescriptor;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
@@ -35,45 +37,51 @@ import org.mockito.junit.MockitoJUnitRunner;
 public class TransientDataServiceImplTest {
 
     @Mock
-    private CacheService cacheService;
+    private TransientDataReloader reloader;
 
-    @InjectMocks
     private TransientDataServiceImpl transientDataServiceImpl;
 
     @Before
     public void before() {
-        when(cacheService.getCachesNames()).thenReturn(Arrays.asList("transient_data"));
+        transientDataServiceImpl = new TransientDataServiceImpl(100);
+        transientDataServiceImpl.setReloader(reloader);
     }
 
     @Test
-    public void should_createDataInstance_add_in_cache() throws Exception {
+    public void should_createDataInstance_store_the_data_with_an_id() throws Exception {
         // given
-        SShortTextDataInstanceImpl data = createData(12, 42, "name", "containerType");
+        SShortTextDataInstanceImpl data = createData(42, "name", "containerType");
 
         // when
         transientDataServiceImpl.createDataInstance(data);
 
         // then
         assertThat(data.getId()).isGreaterThan(0);
-        verify(cacheService, times(1)).store("transient_data", "name:42:containerType", data);
+        assertThat(transientDataServiceImpl.getDataInstance("name", 42, "containerType")).isSameAs(data);
     }
 
-    private SShortTextDataInstanceImpl createData(final long id, final int containerId, final String name, final String containerType) throws SCacheException {
-        SShortTextDataInstanceImpl data = new SShortTextDataInstanceImpl();
-        data.setId(id);
-        data.setName(name);
-        data.setContainerId(containerId);
-        data.setContainerType(containerType);
-        data.setValue("A value");
-        when(cacheService.get("transient_data", name + ":" + containerId + ":" + containerType)).thenReturn(data);
-        return data;
+    @Test(expected = SCreateDataInstanceException.class)
+    public void should_createDataInstance_fail_when_data_already_exists_in_container() throws Exception {
+        transientDataServiceImpl.createDataInstance(createData(42, "name", "ctype"));
+
+        transientDataServiceImpl.createDataInstance(createData(42, "name", "ctype"));
+    }
+
+    @Test
+    public void should_createDataInstance_accept_same_name_in_other_container() throws Exception {
+        transientDataServiceImpl.createDataInstance(createData(42, "name", "ctype"));
+        transientDataServiceImpl.createDataInstance(createData(43, "name", "ctype"));
+        transientDataServiceImpl.createDataInstance(createData(42, "name", "otherType"));
+
+        assertThat(transientDataServiceImpl.getDataInstance("name", 43, "ctype").getContainerId()).isEqualTo(43);
+        assertThat(transientDataServiceImpl.getDataInstance("name", 42, "otherType").getContainerType()).isEqualTo("otherType");
     }
 
     @Test
     public void testUpdateDataInstance() throws Exception {
         // given
-        SShortTextDataInstanceImpl data = createData(12, 42, "name", "ctype");
-        when(cacheService.getKeys("transient_data")).thenReturn(Arrays.asList((Object) "name:42:ctype"));
+        SShortTextDataInstanceImpl data = createData(42, "name", "ctype");
+        transientDataServiceImpl.createDataInstance(data);
 
         // when
         EntityUpdateDescriptor entityUpdateDescriptor = new EntityUpdateDescriptor();
@@ -81,49 +89,125 @@ public class TransientDataServiceImplTest {
         transientDataServiceImpl.updateDataInstance(data, entityUpdateDescriptor);
 
         // then
-        assertThat(transientDataServiceImpl.getDataInstance(12).getValue()).isEqualTo("newValue");
-        verify(cacheService, times(1)).store("transient_data", "name:42:ctype", data);
+        assertThat(transientDataServiceImpl.getDataInstance(data.getId()).getValue()).isEqualTo("newValue");
+        assertThat(transientDataServiceImpl.getDataInstance("name", 42, "ctype").getValue()).isEqualTo("newValue");
+    }
+
+    @Test
+    public void should_updateDataInstance_set_other_fields_using_setters() throws Exception {
+        // given
+        SShortTextDataInstanceImpl data = createData(42, "name", "ctype");
+        transientDataServiceImpl.createDataInstance(data);
+
+        // when
+        EntityUpdateDescriptor entityUpdateDescriptor = new EntityUpdateDescriptor();
+        entityUpdateDescriptor.addField("description", "new description");
+        transientDataServiceImpl.updateDataInstance(data, entityUpdateDescriptor);
+
+        // then
+        assertThat(transientDataServiceImpl.getDataInstance("name", 42, "ctype").getDescription()).isEqualTo("new description");
     }
 
     @Test
     public void testDeleteDataInstance() throws Exception {
-        SShortTextDataInstanceImpl data = createData(12, 42, "name", "ctype");
+        SShortTextDataInstanceImpl data = createData(42, "name", "ctype");
+        transientDataServiceImpl.createDataInstance(data);
 
         transientDataServiceImpl.deleteDataInstance(data);
 
-        verify(cacheService).remove("transient_data", "name:42:ctype");
+        assertThat(transientDataServiceImpl.getDataInstances(42, "ctype", 0, 10)).isEmpty();
+        assertThat(transientDataServiceImpl.getDataInstances(Arrays.asList(data.getId()))).isEmpty();
+    }
+
+    @Test
+    public void should_deleteDataInstances_remove_all_data_of_the_container() throws Exception {
+        SShortTextDataInstanceImpl data1 = createData(42, "data1", "ctype");
+        SShortTextDataInstanceImpl data2 = createData(42, "data2", "ctype");
+        SShortTextDataInstanceImpl otherContainerData = createData(43, "data1", "ctype");
+        transientDataServiceImpl.createDataInstance(data1);
+        transientDataServiceImpl.createDataInstance(data2);
+        transientDataServiceImpl.createDataInstance(otherContainerData);
+
+        transientDataServiceImpl.deleteDataInstances(42, "ctype");
+
+        assertThat(transientDataServiceImpl.getDataInstances(42, "ctype", 0, 10)).isEmpty();
+        assertThat(transientDataServiceImpl.getDataInstances(Arrays.asList(data1.getId(), data2.getId(), otherContainerData.getId())))
+                .containsExactly(otherContainerData);
     }
 
     @Test
     public void should_getDataInstanceById_return_the_data() throws Exception {
         // given
-        SShortTextDataInstanceImpl data = createData(12, 42, "name", "ctype");
-        when(cacheService.getKeys("transient_data")).thenReturn(Arrays.asList((Object) "name:42:ctype"));
+        SShortTextDataInstanceImpl data = createData(42, "name", "ctype");
+        transientDataServiceImpl.createDataInstance(data);
 
         // when
-        SDataInstance result = transientDataServiceImpl.getDataInstance(12);
+        SDataInstance result = transientDataServiceImpl.getDataInstance(data.getId());
 
         // then
         assertThat(result).isEqualTo(data);
     }
 
+    @Test(expected = SDataInstanceNotFoundException.class)
+    public void should_getDataInstanceById_throw_not_found_when_absent() throws Exception {
+        transientDataServiceImpl.getDataInstance(12L);
+    }
+
     @Test
     public void testGetDataInstanceStringLongString() throws Exception {
         // given
-        SShortTextDataInstanceImpl data = createData(12, 42, "name", "ctype");
-        when(cacheService.getKeys("transient_data")).thenReturn(Arrays.asList((Object) "name:42:ctype"));
+        SShortTextDataInstanceImpl data = createData(42, "name", "ctype");
+        transientDataServiceImpl.createDataInstance(data);
 
         // when
         SDataInstance result = transientDataServiceImpl.getDataInstance("name", 42, "ctype");
 
         // then
         assertThat(result).isEqualTo(data);
+        verifyZeroInteractions(reloader);
+    }
+
+    @Test
+    public void should_getDataInstance_reload_missing_data() throws Exception {
+        // given
+        final SShortTextDataInstanceImpl data = createData(42, "name", "ctype");
+        doAnswer(invocation -> {
+            transientDataServiceImpl.createDataInstance(data);
+            return null;
+        }).when(reloader).reload("name", 42, "ctype");
+
+        // when
+        SDataInstance result = transientDataServiceImpl.getDataInstance("name", 42, "ctype");
+
+        // then
+        assertThat(result).isEqualTo(data);
+    }
+
+    @Test(expected = SDataInstanceNotFoundException.class)
+    public void should_getDataInstance_throw_not_found_when_data_can_not_be_reloaded() throws Exception {
+        transientDataServiceImpl.getDataInstance("name", 42, "ctype");
+    }
+
+    @Test
+    public void should_reload_data_of_evicted_containers() throws Exception {
+        // given
+        transientDataServiceImpl = new TransientDataServiceImpl(2);
+        transientDataServiceImpl.setReloader(reloader);
+        transientDataServiceImpl.createDataInstance(createData(1, "name", "ctype"));
+        transientDataServiceImpl.createDataInstance(createData(2, "name", "ctype"));
+
+        // when
+        transientDataServiceImpl.createDataInstance(createData(3, "name", "ctype"));
+        transientDataServiceImpl.getDataInstance("name", 1, "ctype");
+
+        // then
+        verify(reloader).reload("name", 1, "ctype");
     }
 
     @Test
     public void testGetDataInstancesLongStringIntInt() throws Exception {
-        SShortTextDataInstanceImpl data = createData(12, 42, "name", "ctype");
-        when(cacheService.getKeys("transient_data")).thenReturn(Arrays.asList((Object) "name:42:ctype"));
+        SShortTextDataInstanceImpl data = createData(42, "name", "ctype");
+        transientDataServiceImpl.createDataInstance(data);
 
         List<SDataInstance> dataInstances = transientDataServiceImpl.getDataInstances(42, "ctype", 0, 10);
 
@@ -131,4 +215,28 @@ public class TransientDataServiceImplTest {
         assertThat(dataInstances.get(0)).isEqualTo(data);
     }
 
+    @Test
+    public void should_getDataInstances_of_container_return_the_requested_page() throws Exception {
+        SShortTextDataInstanceImpl data1 = createData(42, "data1", "ctype");
+        SShortTextDataInstanceImpl data2 = createData(42, "data2", "ctype");
+        SShortTextDataInstanceImpl data3 = createData(42, "data3", "ctype");
+        transientDataServiceImpl.createDataInstance(data1);
+        transientDataServiceImpl.createDataInstance(data2);
+        transientDataServiceImpl.createDataInstance(data3);
+
+        assertThat(transientDataServiceImpl.getDataInstances(42, "ctype", 1, 1)).containsExactly(data2);
+        assertThat(transientDataServiceImpl.getDataInstances(42, "ctype", 1, Integer.MAX_VALUE)).containsExactly(data2, data3);
+        assertThat(transientDataServiceImpl.getDataInstances(42, "ctype", 3, 10)).isEmpty();
+        verify(reloader, never()).reload(anyString(), anyLong(), anyString());
+    }
+
+    private SShortTextDataInstanceImpl createData(final long containerId, final String name, final String containerType) {
+        SShortTextDataInstanceImpl data = new SShortTextDataInstanceImpl();
+        data.setName(name);
+        data.setContainerId(containerId);
+        data.setContainerType(containerType);
+        data.setValue("A value");
+        return data;
+    }
+
 }
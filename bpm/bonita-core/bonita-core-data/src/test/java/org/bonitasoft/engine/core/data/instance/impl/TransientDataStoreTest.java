@@ -0,0 +1,158 @@
+/**
+ * Copyright (C) 2018 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.core.data.instance.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.bonitasoft.engine.data.instance.model.SDataInstance;
+import org.bonitasoft.engine.data.instance.model.impl.SShortTextDataInstanceImpl;
+import org.junit.Test;
+
+public class TransientDataStoreTest {
+
+    private final AtomicLong ids = new AtomicLong();
+
+    @Test
+    public void should_add_refuse_a_data_with_the_same_name_in_the_same_container() {
+        final TransientDataStore store = new TransientDataStore(10);
+
+        assertThat(store.add(data(1, "a"))).isTrue();
+        assertThat(store.add(data(1, "a"))).isFalse();
+        assertThat(store.add(data(2, "a"))).isTrue();
+        assertThat(store.size()).isEqualTo(2);
+    }
+
+    @Test
+    public void should_put_replace_the_data_with_the_same_name() {
+        final TransientDataStore store = new TransientDataStore(10);
+        final SDataInstance first = data(1, "a");
+        final SDataInstance second = data(1, "a");
+        store.add(first);
+
+        store.put(second);
+
+        assertThat(store.get("a", 1, "ACTIVITY_INSTANCE")).isSameAs(second);
+        assertThat(store.get(first.getId())).isNull();
+        assertThat(store.get(second.getId())).isSameAs(second);
+        assertThat(store.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void should_removing_the_last_data_of_a_container_remove_the_container() {
+        final TransientDataStore store = new TransientDataStore(10);
+        final SDataInstance data = data(1, "a");
+        store.add(data);
+
+        store.remove(data);
+
+        assertThat(store.size()).isEqualTo(0);
+        assertThat(store.containerCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void should_evict_the_containers_not_accessed_since_the_last_pass_first() {
+        final TransientDataStore store = new TransientDataStore(4);
+        store.add(data(1, "a"));
+        store.add(data(1, "b"));
+        store.add(data(2, "a"));
+        store.add(data(2, "b"));
+        // a full pass of the hand clears the flags of all containers, then the oldest one is evicted
+        store.add(data(3, "a"));
+        assertThat(store.getAll(1, "ACTIVITY_INSTANCE")).isEmpty();
+        // container 2 is accessed: it gets a second chance
+        store.get("a", 2, "ACTIVITY_INSTANCE");
+
+        store.add(data(4, "a"));
+        store.add(data(4, "b"));
+
+        assertThat(store.get("a", 2, "ACTIVITY_INSTANCE")).isNotNull();
+        assertThat(store.get("a", 3, "ACTIVITY_INSTANCE")).isNull();
+        assertThat(store.size()).isEqualTo(4);
+    }
+
+    @Test
+    public void should_keep_the_number_of_data_instances_bounded() {
+        final TransientDataStore store = new TransientDataStore(1000);
+
+        for (int i = 0; i < 10000; i++) {
+            store.add(data(i, "a"));
+            store.add(data(i, "b"));
+        }
+
+        assertThat(store.size()).isLessThanOrEqualTo(1000);
+        assertThat(store.get("a", 9999, "ACTIVITY_INSTANCE")).isNotNull();
+    }
+
+    @Test
+    public void should_removeAll_remove_every_data_of_the_container() {
+        final TransientDataStore store = new TransientDataStore(10);
+        final SDataInstance a = data(1, "a");
+        store.add(a);
+        store.add(data(1, "b"));
+        store.add(data(2, "a"));
+
+        assertThat(store.removeAll(1, "ACTIVITY_INSTANCE")).isEqualTo(2);
+
+        assertThat(store.getAll(1, "ACTIVITY_INSTANCE")).isEmpty();
+        assertThat(store.get(a.getId())).isNull();
+        assertThat(store.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void should_support_concurrent_creation_and_removal_of_containers() throws Exception {
+        final TransientDataStore store = new TransientDataStore(100000);
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                final int thread = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 10000; i++) {
+                        final long containerId = thread * 100000L + i;
+                        store.add(data(containerId, "a"));
+                        store.add(data(containerId, "b"));
+                        assertThat(store.getAll(containerId, "ACTIVITY_INSTANCE")).hasSize(2);
+                        store.removeAll(containerId, "ACTIVITY_INSTANCE");
+                    }
+                }));
+            }
+            for (final Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertThat(store.size()).isEqualTo(0);
+        assertThat(store.containerCount()).isEqualTo(0);
+    }
+
+    private SDataInstance data(final long containerId, final String name) {
+        final SShortTextDataInstanceImpl data = new SShortTextDataInstanceImpl();
+        data.setId(ids.incrementAndGet());
+        data.setName(name);
+        data.setContainerId(containerId);
+        data.setContainerType("ACTIVITY_INSTANCE");
+        data.setValue("value");
+        return data;
+    }
+
+}
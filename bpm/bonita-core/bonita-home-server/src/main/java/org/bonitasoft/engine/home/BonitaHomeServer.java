@@ -193,6 +193,10 @@ public class BonitaHomeServer {
         return FolderMgr.getPlatformLocalClassLoaderFolder(artifactType, artifactId).toURI();
     }
 
+    public File getJarStoreFolder() throws IOException {
+        return FolderMgr.getJarStoreFolder().getFile();
+    }
+
     public void createTenant(final long tenantId) {
         getConfigurationService().storeTenantEngineConf(getConfigurationService().getTenantTemplateEngineConf(), tenantId);
         getConfigurationService().storeTenantSecurityScripts(getConfigurationService().getTenantTemplateSecurityScripts(), tenantId);
@@ -3,6 +3,10 @@ package org.bonitasoft.engine.home;
 import java.io.File;
 import java.io.IOException;
 import java.lang.management.ManagementFactory;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
 import java.util.Arrays;
 import java.util.List;
 
@@ -17,6 +21,7 @@ class FolderMgr {
 
     public static final Logger LOGGER = LoggerFactory.getLogger(FolderMgr.class);
     public static final String TEMP_FOLDER_NAME_PREFIX = "bonita_engine_";
+    public static final String JAR_STORE_FOLDER_NAME = "bonita_jar_store";
 
     private static Folder getFolder(final File baseFolder, final String subFolder) throws IOException {
         return new Folder(new Folder(baseFolder), subFolder);
@@ -50,6 +55,28 @@ class FolderMgr {
 
     }
 
+    /**
+     * the jar store is not created as a temporary folder: its content is kept between restarts and shared by engines running on the same host with the
+     * same system user. Other users of the host can neither read nor write it.
+     */
+    static Folder getJarStoreFolder() throws IOException {
+        final Folder jarStoreFolder = getFolder(new File(System.getProperty("java.io.tmpdir")), JAR_STORE_FOLDER_NAME).createIfNotExists();
+        restrictToOwner(jarStoreFolder.getFile().toPath());
+        return jarStoreFolder;
+    }
+
+    private static void restrictToOwner(final Path folder) throws IOException {
+        if (!FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            return;
+        }
+        try {
+            Files.setPosixFilePermissions(folder, PosixFilePermissions.fromString("rwx------"));
+        } catch (final IOException e) {
+            throw new IOException("Unable to restrict the access of the folder " + folder
+                    + " to the user running the engine, it might have been created by another user", e);
+        }
+    }
+
     static Folder getPlatformTempFolder() throws IOException {
         return getFolder(getTempFolder(), "platform").createIfNotExists();
     }
@@ -16,7 +16,11 @@ package org.bonitasoft.engine.home;
 import static org.assertj.core.api.Assertions.assertThat;
 
 import java.io.File;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
 
+import org.junit.Assume;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.contrib.java.lang.system.RestoreSystemProperties;
@@ -61,4 +65,14 @@ public class FolderMgrTest {
 
     }
 
+    @Test
+    public void getJarStoreFolder_should_only_be_accessible_by_its_owner() throws Exception {
+        Assume.assumeTrue(FileSystems.getDefault().supportedFileAttributeViews().contains("posix"));
+        System.setProperty("java.io.tmpdir", temporaryFolder.newFolder().getAbsolutePath());
+
+        final Folder jarStoreFolder = FolderMgr.getJarStoreFolder();
+
+        assertThat(PosixFilePermissions.toString(Files.getPosixFilePermissions(jarStoreFolder.getFile().toPath()))).isEqualTo("rwx------");
+    }
+
 }
@@ -0,0 +1,223 @@
+/**
+ * Copyright (C) 2018 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.core.expression.control.api.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.bonitasoft.engine.expression.ContainerState;
+import org.bonitasoft.engine.expression.ExpressionExecutorStrategy;
+import org.bonitasoft.engine.expression.ExpressionService;
+import org.bonitasoft.engine.expression.ExpressionType;
+import org.bonitasoft.engine.expression.exception.SExpressionDependencyMissingException;
+import org.bonitasoft.engine.expression.exception.SExpressionEvaluationException;
+import org.bonitasoft.engine.expression.exception.SExpressionTypeUnknownException;
+import org.bonitasoft.engine.expression.exception.SInvalidExpressionException;
+import org.bonitasoft.engine.expression.model.ExpressionKind;
+import org.bonitasoft.engine.expression.model.SExpression;
+
+/**
+ * Evaluation plan of a list of expressions and of all their dependencies, computed once by {@link #compile(List)}.
+ * <p>
+ * Expressions of kinds that have no dependencies are evaluated first, grouped by kind in the order of
+ * {@link ExpressionExecutorStrategy#NO_DEPENDENCY_EXPRESSION_EVALUATION_ORDER}. Then the other expressions are evaluated
+ * one by one, dependencies first. Expressions having the same discriminant are evaluated only once.
+ * All results are put in a single map of resolved expressions, that is never copied.
+ */
+final class ExpressionEvaluationPlan {
+
+    private static final ExpressionKind KIND_VARIABLE = new ExpressionKind(ExpressionType.TYPE_VARIABLE.name());
+
+    private final ExpressionKind[] batchKinds;
+    private final List<List<SExpression>> batches;
+    private final List<SExpression> variableExpressions;
+    private final SExpression[] steps;
+    private final int[] stepDiscriminants;
+    private final SExpression[] expressions;
+    private final int[] discriminants;
+    private final int numberOfExpressions;
+
+    private ExpressionEvaluationPlan(ExpressionKind[] batchKinds, List<List<SExpression>> batches, List<SExpression> variableExpressions,
+            SExpression[] steps, SExpression[] expressions, int numberOfExpressions) {
+        this.batchKinds = batchKinds;
+        this.batches = batches;
+        this.variableExpressions = variableExpressions;
+        this.steps = steps;
+        this.stepDiscriminants = discriminantsOf(steps);
+        this.expressions = expressions;
+        this.discriminants = discriminantsOf(expressions);
+        this.numberOfExpressions = numberOfExpressions;
+    }
+
+    private static int[] discriminantsOf(SExpression[] expressions) {
+        final int[] discriminants = new int[expressions.length];
+        for (int i = 0; i < expressions.length; i++) {
+            if (expressions[i] != null) {
+                discriminants[i] = expressions[i].getDiscriminant();
+            }
+        }
+        return discriminants;
+    }
+
+    /**
+     * Compute the evaluation plan of the given expressions. Null expressions are allowed and evaluated to null.
+     */
+    static ExpressionEvaluationPlan compile(List<SExpression> expressions) {
+        final Map<Integer, SExpression> sortedExpressions = new LinkedHashMap<>();
+        for (final SExpression expression : expressions) {
+            if (expression != null) {
+                addDependenciesFirst(expression, sortedExpressions);
+            }
+        }
+        final Map<ExpressionKind, List<SExpression>> expressionsByKind = new HashMap<>();
+        final List<SExpression> steps = new ArrayList<>();
+        for (final SExpression expression : sortedExpressions.values()) {
+            final ExpressionKind kind = expression.getExpressionKind();
+            if (ExpressionExecutorStrategy.NO_DEPENDENCY_EXPRESSION_EVALUATION_ORDER.contains(kind)) {
+                List<SExpression> expressionsOfKind = expressionsByKind.get(kind);
+                if (expressionsOfKind == null) {
+                    expressionsOfKind = new ArrayList<>();
+                    expressionsByKind.put(kind, expressionsOfKind);
+                }
+                expressionsOfKind.add(expression);
+            } else {
+                steps.add(expression);
+            }
+        }
+        final List<ExpressionKind> batchKinds = new ArrayList<>();
+        final List<List<SExpression>> batches = new ArrayList<>();
+        for (final ExpressionKind kind : ExpressionExecutorStrategy.NO_DEPENDENCY_EXPRESSION_EVALUATION_ORDER) {
+            final List<SExpression> expressionsOfKind = expressionsByKind.get(kind);
+            if (expressionsOfKind != null) {
+                batchKinds.add(kind);
+                batches.add(expressionsOfKind);
+            }
+        }
+        final List<SExpression> variableExpressions = expressionsByKind.get(KIND_VARIABLE);
+        return new ExpressionEvaluationPlan(batchKinds.toArray(new ExpressionKind[batchKinds.size()]), batches,
+                variableExpressions != null ? variableExpressions : new ArrayList<SExpression>(),
+                steps.toArray(new SExpression[steps.size()]), expressions.toArray(new SExpression[expressions.size()]), sortedExpressions.size());
+    }
+
+    private static void addDependenciesFirst(SExpression expression, Map<Integer, SExpression> sortedExpressions) {
+        final Integer discriminant = expression.getDiscriminant();
+        if (sortedExpressions.containsKey(discriminant)) {
+            // already added with all its dependencies
+            return;
+        }
+        final List<SExpression> dependencies = expression.getDependencies();
+        if (dependencies != null) {
+            for (final SExpression dependency : dependencies) {
+                addDependenciesFirst(dependency, sortedExpressions);
+            }
+        }
+        sortedExpressions.put(discriminant, expression);
+    }
+
+    /**
+     * @return the expressions of type {@link ExpressionType#TYPE_VARIABLE} of this plan
+     */
+    List<SExpression> getVariableExpressions() {
+        return variableExpressions;
+    }
+
+    /**
+     * @return the number of distinct expressions evaluated by this plan, dependencies included
+     */
+    int getNumberOfExpressions() {
+        return numberOfExpressions;
+    }
+
+    /**
+     * Evaluate the expressions of this plan
+     *
+     * @param dependencyValues values available to the expressions, results of the expressions that must be put in the
+     *        context are added to it
+     * @return the results of the expressions given to {@link #compile(List)}, in the same order
+     */
+    List<Object> evaluate(ExpressionService expressionService, Map<String, Object> dependencyValues, ContainerState containerState)
+            throws SExpressionTypeUnknownException, SExpressionEvaluationException, SExpressionDependencyMissingException, SInvalidExpressionException {
+        final Map<Integer, Object> resolvedExpressions = new HashMap<>((int) (numberOfExpressions / 0.75f) + 1);
+        for (int i = 0; i < batchKinds.length; i++) {
+            final List<SExpression> batch = batches.get(i);
+            final List<Object> results = expressionService.evaluate(batchKinds[i], batch, dependencyValues, resolvedExpressions, containerState);
+            for (int j = 0; j < batch.size(); j++) {
+                addResult(expressionService, resolvedExpressions, dependencyValues, batch.get(j), batch.get(j).getDiscriminant(), results.get(j));
+            }
+        }
+        for (int i = 0; i < steps.length; i++) {
+            if (!resolvedExpressions.containsKey(stepDiscriminants[i])) {
+                final Object result = expressionService.evaluate(steps[i], dependencyValues, resolvedExpressions, containerState);
+                addResult(expressionService, resolvedExpressions, dependencyValues, steps[i], stepDiscriminants[i], result);
+            }
+        }
+        final List<Object> results = new ArrayList<>(expressions.length);
+        for (int i = 0; i < expressions.length; i++) {
+            if (expressions[i] != null) {
+                final Object result = resolvedExpressions.get(discriminants[i]);
+                if (result == null && !resolvedExpressions.containsKey(discriminants[i])) {
+                    throw new SExpressionEvaluationException("No result found for the expression " + expressions[i], expressions[i].getName());
+                }
+                results.add(result);
+            } else {
+                results.add(null);
+            }
+        }
+        return results;
+    }
+
+    private static void addResult(ExpressionService expressionService, Map<Integer, Object> resolvedExpressions, Map<String, Object> dependencyValues,
+            SExpression expression, int discriminant, Object result) {
+        resolvedExpressions.put(discriminant, result);
+        if (expressionService.mustPutEvaluatedExpressionInContext(expression.getExpressionKind())) {
+            dependencyValues.put(expression.getContent(), result);
+        }
+    }
+
+    /**
+     * Key of a cached plan: expressions are compared by value, so that expressions built again for each call, e.g. by
+     * API callers, reuse the plan compiled for equal expressions instead of adding a new one to the cache.
+     */
+    static final class Key {
+
+        private final SExpression[] expressions;
+        private final int hash;
+
+        Key(List<SExpression> expressions) {
+            this.expressions = expressions.toArray(new SExpression[expressions.size()]);
+            this.hash = Arrays.hashCode(this.expressions);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            return Arrays.equals(expressions, ((Key) o).expressions);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+}
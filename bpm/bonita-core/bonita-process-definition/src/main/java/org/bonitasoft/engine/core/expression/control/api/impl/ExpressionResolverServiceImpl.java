@@ -13,14 +13,16 @@
  **/
 package org.bonitasoft.engine.core.expression.control.api.impl;
 
-import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
+import org.bonitasoft.engine.classloader.ClassLoaderListener;
 import org.bonitasoft.engine.classloader.ClassLoaderService;
 import org.bonitasoft.engine.classloader.SClassLoaderException;
 import org.bonitasoft.engine.commons.exceptions.SBonitaException;
@@ -29,15 +31,11 @@ import org.bonitasoft.engine.core.expression.control.model.SExpressionContext;
 import org.bonitasoft.engine.core.process.definition.ProcessDefinitionService;
 import org.bonitasoft.engine.core.process.definition.exception.SProcessDefinitionNotFoundException;
 import org.bonitasoft.engine.core.process.definition.model.SProcessDefinition;
-import org.bonitasoft.engine.expression.ContainerState;
-import org.bonitasoft.engine.expression.ExpressionExecutorStrategy;
 import org.bonitasoft.engine.expression.ExpressionService;
-import org.bonitasoft.engine.expression.ExpressionType;
 import org.bonitasoft.engine.expression.exception.SExpressionDependencyMissingException;
 import org.bonitasoft.engine.expression.exception.SExpressionEvaluationException;
 import org.bonitasoft.engine.expression.exception.SExpressionTypeUnknownException;
 import org.bonitasoft.engine.expression.exception.SInvalidExpressionException;
-import org.bonitasoft.engine.expression.model.ExpressionKind;
 import org.bonitasoft.engine.expression.model.SExpression;
 import org.bonitasoft.engine.persistence.SBonitaReadException;
 import org.bonitasoft.engine.tracking.TimeTracker;
@@ -53,6 +51,10 @@ public class ExpressionResolverServiceImpl implements ExpressionResolverService
 
     private static final SExpressionContext EMPTY_CONTEXT = new SExpressionContext();
 
+    private static final String DEFINITION_TYPE = "PROCESS";
+
+    private static final int MAX_CACHED_EVALUATION_PLANS_PER_DEFINITION = 1000;
+
     private final ExpressionService expressionService;
 
     private final ProcessDefinitionService processDefinitionService;
@@ -61,6 +63,8 @@ public class ExpressionResolverServiceImpl implements ExpressionResolverService
 
     private final TimeTracker timeTracker;
 
+    private final ConcurrentMap<Long, EvaluationPlans> evaluationPlans = new ConcurrentHashMap<>();
+
     public ExpressionResolverServiceImpl(final ExpressionService expressionService, final ProcessDefinitionService processDefinitionService,
             final ClassLoaderService classLoaderService, final TimeTracker timeTracker) {
         this.expressionService = expressionService;
@@ -106,35 +110,20 @@ public class ExpressionResolverServiceImpl implements ExpressionResolverService
                 fillContext(newEvaluationContext, dependencyValues);
             }
 
-            loadProcessClassLoader(newEvaluationContext);
+            final Long definitionId = getDefinitionId(newEvaluationContext);
+            loadProcessClassLoader(definitionId);
 
-            final Map<SExpression, SExpression> dataReplacement = new HashMap<>();
-            // We incrementally build the Map of already resolved expressions:
-            final Map<Integer, Object> resolvedExpressions = new HashMap<>();
-            // Let's evaluate all expressions with no dependencies first:
-            resolvedExpressions.putAll(evaluateAllExpressionsWithNoDependencies(dependencyValues, dataReplacement, expressions, newEvaluationContext));
-
-            for (final SExpression sExpression : expressions) {
-                if (sExpression != null) {
-                    // Then evaluate recursively all remaining expressions:
-                    resolvedExpressions.putAll(evaluateExpressionWithResolvedDependencies(sExpression, dependencyValues, dataReplacement, resolvedExpressions,
-                            newEvaluationContext.getContainerState()));
+            final ExpressionEvaluationPlan evaluationPlan = getEvaluationPlan(definitionId, expressions);
+            final List<SExpression> variableExpressions = evaluationPlan.getVariableExpressions();
+            if (newEvaluationContext.isEvaluateInDefinition() && !variableExpressions.isEmpty()) {
+                final SExpression expressionNotProvided = variablesAreAllProvided(variableExpressions, newEvaluationContext);
+                if (expressionNotProvided != null) {
+                    // We forbid the evaluation of expressions of type VARIABLE at process definition level:
+                    throw new SExpressionEvaluationException("Evaluation of expressions of type VARIABLE is forbidden at process definition level.",
+                            expressionNotProvided.getName());
                 }
             }
-            final List<Object> results = new ArrayList<>(expressions.size());
-            for (final SExpression sExpression : expressions) {
-                if (sExpression != null) {
-                    final int key = sExpression.getDiscriminant();
-                    final Object res = resolvedExpressions.get(key);
-                    if (res == null && !resolvedExpressions.containsKey(key)) {
-                        throw new SExpressionEvaluationException("No result found for the expression " + sExpression, sExpression.getName());
-                    }
-                    results.add(res);
-                } else {
-                    results.add(null);
-                }
-            }
-            return results;
+            return evaluationPlan.evaluate(expressionService, dependencyValues, newEvaluationContext.getContainerState());
         } catch (final SProcessDefinitionNotFoundException | SBonitaReadException e) {
             throw buildSExpressionEvaluationExceptionWhenNotFindProcess(newEvaluationContext, e);
         } catch (final SClassLoaderException e) {
@@ -144,15 +133,44 @@ public class ExpressionResolverServiceImpl implements ExpressionResolverService
         }
     }
 
-    private void loadProcessClassLoader(final SExpressionContext evaluationContext) throws SClassLoaderException {
-        Long processId;
+    /**
+     * Plans are kept with the process definition the expressions belong to and are dropped when its classloader is
+     * updated or destroyed, i.e. when the definition is undeployed.
+     */
+    ExpressionEvaluationPlan getEvaluationPlan(final Long definitionId, final List<SExpression> expressions) {
+        if (definitionId == null) {
+            // expressions that are not part of a process definition are built for a single call, do not keep them
+            return ExpressionEvaluationPlan.compile(expressions);
+        }
+        EvaluationPlans plansOfDefinition = evaluationPlans.get(definitionId);
+        if (plansOfDefinition == null) {
+            plansOfDefinition = new EvaluationPlans();
+            final EvaluationPlans existing = evaluationPlans.putIfAbsent(definitionId, plansOfDefinition);
+            if (existing != null) {
+                plansOfDefinition = existing;
+            } else {
+                classLoaderService.addListener(DEFINITION_TYPE, definitionId, new DefinitionClassLoaderListener(definitionId));
+            }
+        }
+        final ExpressionEvaluationPlan.Key key = new ExpressionEvaluationPlan.Key(expressions);
+        ExpressionEvaluationPlan evaluationPlan = plansOfDefinition.get(key);
+        if (evaluationPlan == null) {
+            evaluationPlan = ExpressionEvaluationPlan.compile(expressions);
+            plansOfDefinition.put(key, evaluationPlan);
+        }
+        return evaluationPlan;
+    }
+
+    private Long getDefinitionId(final SExpressionContext evaluationContext) {
         if (evaluationContext.getParentProcessDefinitionId() != null) {
-            processId = evaluationContext.getParentProcessDefinitionId();
-        } else {
-            processId = evaluationContext.getProcessDefinitionId();
+            return evaluationContext.getParentProcessDefinitionId();
         }
+        return evaluationContext.getProcessDefinitionId();
+    }
+
+    private void loadProcessClassLoader(final Long processId) throws SClassLoaderException {
         if (processId != null) {
-            Thread.currentThread().setContextClassLoader(classLoaderService.getLocalClassLoader("PROCESS", processId));
+            Thread.currentThread().setContextClassLoader(classLoaderService.getLocalClassLoader(DEFINITION_TYPE, processId));
         }
     }
 
@@ -163,29 +181,6 @@ public class ExpressionResolverServiceImpl implements ExpressionResolverService
         return exception;
     }
 
-    private Map<Integer, Object> evaluateAllExpressionsWithNoDependencies(final Map<String, Object> dependencyValues,
-            final Map<SExpression, SExpression> dataReplacement, final List<SExpression> expressions, final SExpressionContext evaluationContext)
-            throws SExpressionTypeUnknownException, SExpressionEvaluationException, SExpressionDependencyMissingException, SInvalidExpressionException {
-        final Map<Integer, Object> resolvedExpressions = new HashMap<>();
-        final Map<ExpressionKind, List<SExpression>> expressionMapByKind = flattenDependencies(expressions);
-        final List<SExpression> variableExpressions = expressionMapByKind.get(new ExpressionKind(ExpressionType.TYPE_VARIABLE.name()));
-
-        if (evaluationContext.isEvaluateInDefinition() && variableExpressions != null && !variableExpressions.isEmpty()) {
-            final SExpression expressionNotProvided = variablesAreAllProvided(variableExpressions, evaluationContext);
-            if (expressionNotProvided != null) {
-                // We forbid the evaluation of expressions of type VARIABLE at process definition level:
-                throw new SExpressionEvaluationException("Evaluation of expressions of type VARIABLE is forbidden at process definition level.",
-                        expressionNotProvided.getName());
-            }
-        }
-        for (final ExpressionKind kind : ExpressionExecutorStrategy.NO_DEPENDENCY_EXPRESSION_EVALUATION_ORDER) {
-            resolvedExpressions.putAll(evaluateExpressionsOfKind(dependencyValues, expressionMapByKind.get(kind), kind, dataReplacement, resolvedExpressions,
-                    evaluationContext.getContainerState()));
-            expressionMapByKind.remove(kind);
-        }
-        return resolvedExpressions;
-    }
-
     private SExpression variablesAreAllProvided(final List<SExpression> variableExpressions, final SExpressionContext evaluationContext) {
         final Iterator<SExpression> iterator = variableExpressions.iterator();
         final Map<String, Object> inputValues = evaluationContext.getInputValues();
@@ -198,81 +193,6 @@ public class ExpressionResolverServiceImpl implements ExpressionResolverService
         return null;
     }
 
-    private Map<? extends Integer, ? extends Object> evaluateExpressionWithResolvedDependencies(final SExpression sExpression,
-            final Map<String, Object> dependencyValues, final Map<SExpression, SExpression> dataReplacement,
-            final Map<Integer, Object> alreadyResolvedExpressions, final ContainerState containerState) throws SExpressionTypeUnknownException,
-            SExpressionEvaluationException, SExpressionDependencyMissingException, SInvalidExpressionException {
-        final Map<Integer, Object> resolvedExpressions = new HashMap<>(alreadyResolvedExpressions);
-        // Evaluate the dependencies first:
-        for (final SExpression dep : sExpression.getDependencies()) {
-            resolvedExpressions.putAll(evaluateExpressionWithResolvedDependencies(dep, dependencyValues, dataReplacement, resolvedExpressions, containerState));
-        }
-        // Then evaluate the expression itself:
-        if (!resolvedExpressions.containsKey(sExpression.getDiscriminant())) {
-            // Let's evaluate the expression only if it is not already in the list of resolved dependencies:
-            final Object exprResult = expressionService.evaluate(sExpression, dependencyValues, resolvedExpressions, containerState);
-            addResultToMap(resolvedExpressions, dataReplacement, sExpression, exprResult, dependencyValues);
-        }
-        return resolvedExpressions;
-    }
-
-    private Map<Integer, Object> evaluateExpressionsOfKind(final Map<String, Object> dependencyValues, final List<SExpression> expressionsOfKind,
-            final ExpressionKind kind, final Map<SExpression, SExpression> dataReplacement, final Map<Integer, Object> alreadyResolvedExpressions,
-            final ContainerState containerState) throws SExpressionTypeUnknownException, SExpressionEvaluationException,
-            SExpressionDependencyMissingException, SInvalidExpressionException {
-        final Map<Integer, Object> resolvedExpressions = new HashMap<>();
-        if (expressionsOfKind != null) {
-            final List<Object> evaluationResults = expressionService.evaluate(kind, expressionsOfKind, dependencyValues, alreadyResolvedExpressions,
-                    containerState);
-            final Iterator<SExpression> variableIterator = expressionsOfKind.iterator();
-            for (final Object evaluationResult : evaluationResults) {
-                final SExpression expression = variableIterator.next();
-                addResultToMap(resolvedExpressions, dataReplacement, expression, evaluationResult, dependencyValues);
-            }
-        }
-        return resolvedExpressions;
-    }
-
-    private void addResultToMap(final Map<Integer, Object> resolvedExpressions, final Map<SExpression, SExpression> dataReplacement,
-            final SExpression expression, final Object expressionResult, final Map<String, Object> dependencyValues) {
-        resolvedExpressions.put(expression.getDiscriminant(), expressionResult);
-        if (expressionService.mustPutEvaluatedExpressionInContext(expression.getExpressionKind())) {
-            dependencyValues.put(expression.getContent(), expressionResult);
-        }
-        final SExpression replacement = dataReplacement.get(expression);
-        if (replacement != null) {
-            resolvedExpressions.put(replacement.getDiscriminant(), expressionResult);
-            if (expressionService.mustPutEvaluatedExpressionInContext(expression.getExpressionKind())) {
-                dependencyValues.put(replacement.getContent(), expressionResult);
-            }
-        }
-    }
-
-    private Map<ExpressionKind, List<SExpression>> flattenDependencies(final Collection<SExpression> collection) {
-        final Map<ExpressionKind, List<SExpression>> expressionMapByKind = new HashMap<>();
-        for (final SExpression sExpression : collection) {
-            if (sExpression == null) {
-                continue;
-            }
-            final ExpressionKind expressionKind = sExpression.getExpressionKind();
-            // Get from the map the list of expressions of given ExpressionKind
-            List<SExpression> exprList = expressionMapByKind.get(expressionKind);
-
-            // If no present, put it in the map
-            if (exprList == null) {
-                exprList = new ArrayList<>();
-                expressionMapByKind.put(expressionKind, exprList);
-            }
-            if (!exprList.contains(sExpression)) {
-                exprList.add(sExpression);
-            }
-            if (sExpression.getDependencies() != null) {
-                expressionMapByKind.putAll(flattenDependencies(sExpression.getDependencies()));
-            }
-        }
-        return expressionMapByKind;
-    }
-
     private void fillContext(final SExpressionContext evaluationContext, final Map<String, Object> dependencyValues)
             throws SProcessDefinitionNotFoundException, SBonitaReadException {
         if (evaluationContext.getContainerId() == null && evaluationContext.getProcessDefinitionId() != null) {
@@ -303,4 +223,72 @@ public class ExpressionResolverServiceImpl implements ExpressionResolverService
         return evaluateExpressionsFlatten(expressions, contextDependency);
     }
 
+    /**
+     * Evaluation plans of a process definition, the least recently used ones are evicted: plans are cached by identity of
+     * the expressions, a definition reloaded in the cache of definitions gives new ones.
+     */
+    private static final class EvaluationPlans {
+
+        private final Map<ExpressionEvaluationPlan.Key, ExpressionEvaluationPlan> plans = new LinkedHashMap<ExpressionEvaluationPlan.Key, ExpressionEvaluationPlan>(
+                16, 0.75f, true) {
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<ExpressionEvaluationPlan.Key, ExpressionEvaluationPlan> eldest) {
+                return size() > MAX_CACHED_EVALUATION_PLANS_PER_DEFINITION;
+            }
+        };
+
+        synchronized ExpressionEvaluationPlan get(final ExpressionEvaluationPlan.Key key) {
+            return plans.get(key);
+        }
+
+        synchronized void put(final ExpressionEvaluationPlan.Key key, final ExpressionEvaluationPlan evaluationPlan) {
+            plans.put(key, evaluationPlan);
+        }
+    }
+
+    /**
+     * Drops the plans of the definition whose classloader changed. Listeners are compared on the definition id so that a
+     * definition has a single listener registered.
+     */
+    private class DefinitionClassLoaderListener implements ClassLoaderListener {
+
+        private final long definitionId;
+
+        DefinitionClassLoaderListener(final long definitionId) {
+            this.definitionId = definitionId;
+        }
+
+        @Override
+        public void onUpdate(final ClassLoader newClassLoader) {
+            evaluationPlans.remove(definitionId);
+        }
+
+        @Override
+        public void onDestroy(final ClassLoader oldClassLoader) {
+            evaluationPlans.remove(definitionId);
+        }
+
+        private ExpressionResolverServiceImpl getResolverService() {
+            return ExpressionResolverServiceImpl.this;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof DefinitionClassLoaderListener)) {
+                return false;
+            }
+            final DefinitionClassLoaderListener that = (DefinitionClassLoaderListener) o;
+            return definitionId == that.definitionId && getResolverService() == that.getResolverService();
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (definitionId ^ (definitionId >>> 32));
+        }
+    }
+
 }
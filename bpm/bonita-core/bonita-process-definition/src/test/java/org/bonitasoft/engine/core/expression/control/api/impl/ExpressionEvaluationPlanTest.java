@@ -0,0 +1,143 @@
+/**
+ * Copyright (C) 2018 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.core.expression.control.api.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.bonitasoft.engine.expression.ContainerState;
+import org.bonitasoft.engine.expression.ExpressionExecutorStrategy;
+import org.bonitasoft.engine.expression.ExpressionService;
+import org.bonitasoft.engine.expression.ExpressionType;
+import org.bonitasoft.engine.expression.model.SExpression;
+import org.bonitasoft.engine.expression.model.impl.SExpressionImpl;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ExpressionEvaluationPlanTest {
+
+    @Mock
+    private ExpressionService expressionService;
+
+    private final Map<String, Object> dependencyValues = new HashMap<>();
+
+    private static SExpression script(String name, SExpression... dependencies) {
+        return new SExpressionImpl(name, "return " + name, ExpressionType.TYPE_READ_ONLY_SCRIPT.name(), String.class.getName(), "GROOVY",
+                Arrays.asList(dependencies));
+    }
+
+    private static SExpression expression(String name, ExpressionType type) {
+        return new SExpressionImpl(name, name, type.name(), String.class.getName(), null, Collections.<SExpression> emptyList());
+    }
+
+    @Test
+    public void should_evaluate_dependencies_before_expressions_and_only_once() throws Exception {
+        SExpression shared = script("shared");
+        SExpression first = script("first", shared);
+        SExpression second = script("second", shared, first);
+        when(expressionService.evaluate(any(SExpression.class), anyMap(), anyMap(), any(ContainerState.class))).thenReturn("result");
+
+        ExpressionEvaluationPlan plan = ExpressionEvaluationPlan.compile(Arrays.asList(second, first));
+        List<Object> results = plan.evaluate(expressionService, dependencyValues, ContainerState.ACTIVE);
+
+        assertThat(results).containsExactly("result", "result");
+        assertThat(plan.getNumberOfExpressions()).isEqualTo(3);
+        InOrder inOrder = inOrder(expressionService);
+        inOrder.verify(expressionService).evaluate(eq(shared), anyMap(), anyMap(), eq(ContainerState.ACTIVE));
+        inOrder.verify(expressionService).evaluate(eq(first), anyMap(), anyMap(), eq(ContainerState.ACTIVE));
+        inOrder.verify(expressionService).evaluate(eq(second), anyMap(), anyMap(), eq(ContainerState.ACTIVE));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void should_evaluate_expressions_without_dependencies_grouped_by_kind_first() throws Exception {
+        SExpression constant1 = expression("c1", ExpressionType.TYPE_CONSTANT);
+        SExpression constant2 = expression("c2", ExpressionType.TYPE_CONSTANT);
+        SExpression contractInput = expression("input", ExpressionType.TYPE_CONTRACT_INPUT);
+        SExpression script = script("script", constant2, contractInput);
+        when(expressionService.evaluate(eq(ExpressionExecutorStrategy.KIND_CONSTANT), anyList(), anyMap(), anyMap(), any(ContainerState.class)))
+                .thenReturn(Arrays.<Object> asList("c1", "c2"));
+        when(expressionService.evaluate(eq(ExpressionExecutorStrategy.KIND_CONTRACT_INPUT), anyList(), anyMap(), anyMap(), any(ContainerState.class)))
+                .thenReturn(Collections.<Object> singletonList("input"));
+        when(expressionService.evaluate(eq(script), anyMap(), anyMap(), any(ContainerState.class))).thenReturn("script");
+
+        List<Object> results = ExpressionEvaluationPlan.compile(Arrays.asList(constant1, script)).evaluate(expressionService, dependencyValues, ContainerState.ACTIVE);
+
+        assertThat(results).containsExactly("c1", "script");
+        verify(expressionService).evaluate(eq(ExpressionExecutorStrategy.KIND_CONSTANT), eq(Arrays.asList(constant1, constant2)), anyMap(), anyMap(),
+                any(ContainerState.class));
+        verify(expressionService, times(1)).evaluate(any(SExpression.class), anyMap(), anyMap(), any(ContainerState.class));
+    }
+
+    @Test
+    public void should_return_null_for_null_expressions() throws Exception {
+        SExpression script = script("script");
+        when(expressionService.evaluate(any(SExpression.class), anyMap(), anyMap(), any(ContainerState.class))).thenReturn("result");
+
+        List<Object> results = ExpressionEvaluationPlan.compile(Arrays.asList(null, script)).evaluate(expressionService, dependencyValues, ContainerState.ACTIVE);
+
+        assertThat(results).containsExactly(null, "result");
+    }
+
+    @Test
+    public void should_put_result_in_context_when_required_by_expression_kind() throws Exception {
+        SExpression script = script("script");
+        when(expressionService.evaluate(any(SExpression.class), anyMap(), anyMap(), any(ContainerState.class))).thenReturn("result");
+        when(expressionService.mustPutEvaluatedExpressionInContext(script.getExpressionKind())).thenReturn(true);
+
+        ExpressionEvaluationPlan.compile(Collections.singletonList(script)).evaluate(expressionService, dependencyValues, ContainerState.ACTIVE);
+
+        assertThat(dependencyValues).containsEntry("return script", "result");
+    }
+
+    @Test
+    public void should_list_variable_expressions() {
+        SExpression variable = expression("var", ExpressionType.TYPE_VARIABLE);
+
+        ExpressionEvaluationPlan plan = ExpressionEvaluationPlan.compile(Collections.singletonList(script("script", variable)));
+
+        assertThat(plan.getVariableExpressions()).containsExactly(variable);
+    }
+
+    @Test
+    public void keys_should_be_equal_for_equal_expressions() {
+        SExpression script = script("script");
+
+        assertThat(new ExpressionEvaluationPlan.Key(Collections.singletonList(script)))
+                .isEqualTo(new ExpressionEvaluationPlan.Key(Collections.singletonList(script("script"))))
+                .hasSameHashCodeAs(new ExpressionEvaluationPlan.Key(Collections.singletonList(script("script"))));
+        assertThat(new ExpressionEvaluationPlan.Key(Collections.singletonList(script)))
+                .isNotEqualTo(new ExpressionEvaluationPlan.Key(Collections.singletonList(script("other"))));
+        assertThat(new ExpressionEvaluationPlan.Key(Collections.singletonList(script)))
+                .isNotEqualTo(new ExpressionEvaluationPlan.Key(Collections.singletonList(script("script", script("dependency")))));
+    }
+
+}
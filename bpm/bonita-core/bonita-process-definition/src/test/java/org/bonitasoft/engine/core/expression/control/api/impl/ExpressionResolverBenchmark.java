@@ -0,0 +1,160 @@
+/**
+ * Copyright (C) 2018 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.core.expression.control.api.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.bonitasoft.engine.core.expression.control.model.SExpressionContext;
+import org.bonitasoft.engine.expression.ContainerState;
+import org.bonitasoft.engine.expression.ExpressionService;
+import org.bonitasoft.engine.expression.ExpressionType;
+import org.bonitasoft.engine.expression.exception.SExpressionDependencyMissingException;
+import org.bonitasoft.engine.expression.model.ExpressionKind;
+import org.bonitasoft.engine.expression.model.SExpression;
+import org.bonitasoft.engine.expression.model.impl.SExpressionImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measure the overhead of {@link ExpressionResolverServiceImpl} when evaluating operations built like the ones of a
+ * process: a groovy script using contract inputs, data and the API accessor, itself depending on {@link #depth} levels
+ * of nested scripts. Expression executors are replaced by a stub so that only the resolution is measured.
+ * Run it using {@link #main(String[])}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ExpressionResolverBenchmark {
+
+    @Param({ "1", "5", "20" })
+    public int depth;
+
+    @Param({ "10" })
+    public int numberOfOperations;
+
+    private final StubExpressionService expressionService = new StubExpressionService();
+    private ExpressionResolverServiceImpl resolverService;
+    private List<SExpression> operations;
+    private SExpressionContext context;
+
+    @Setup
+    public void setup() {
+        resolverService = new ExpressionResolverServiceImpl(expressionService, null, null, null);
+        operations = new ArrayList<>(numberOfOperations);
+        for (int i = 0; i < numberOfOperations; i++) {
+            operations.add(operation(i));
+        }
+        context = new SExpressionContext(12L, "ACTIVITY_INSTANCE", null);
+    }
+
+    private SExpression operation(int index) {
+        SExpression nested = script("nested" + index + "_0", expression("amount", ExpressionType.TYPE_CONTRACT_INPUT),
+                expression("customer", ExpressionType.TYPE_VARIABLE));
+        for (int level = 1; level < depth; level++) {
+            nested = script("nested" + index + "_" + level, nested, expression("rate" + level, ExpressionType.TYPE_CONSTANT),
+                    expression("currency", ExpressionType.TYPE_VARIABLE));
+        }
+        return script("operation" + index, nested, expression("amount", ExpressionType.TYPE_CONTRACT_INPUT),
+                expression("comment", ExpressionType.TYPE_CONTRACT_INPUT), expression("apiAccessor", ExpressionType.TYPE_ENGINE_CONSTANT),
+                expression("customer", ExpressionType.TYPE_VARIABLE));
+    }
+
+    private static SExpression script(String name, SExpression... dependencies) {
+        return new SExpressionImpl(name, "return " + name, ExpressionType.TYPE_READ_ONLY_SCRIPT.name(), String.class.getName(), "GROOVY",
+                Arrays.asList(dependencies));
+    }
+
+    private static SExpression expression(String name, ExpressionType type) {
+        return new SExpressionImpl(name, name, type.name(), String.class.getName(), null, Collections.<SExpression> emptyList());
+    }
+
+    @Benchmark
+    public List<Object> evaluateWithCachedPlan() throws Exception {
+        return resolverService.evaluate(operations, context);
+    }
+
+    @Benchmark
+    public List<Object> compileAndEvaluate() throws Exception {
+        return ExpressionEvaluationPlan.compile(operations).evaluate(expressionService, new HashMap<String, Object>(), ContainerState.ACTIVE);
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(ExpressionResolverBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    /**
+     * Return the content of expressions, after checking that dependencies of scripts are resolved like the script
+     * executor does.
+     */
+    private static class StubExpressionService implements ExpressionService {
+
+        @Override
+        public Object evaluate(SExpression expression, Map<Integer, Object> resolvedExpressions, ContainerState containerState)
+                throws SExpressionDependencyMissingException {
+            return evaluate(expression, Collections.<String, Object> emptyMap(), resolvedExpressions, containerState);
+        }
+
+        @Override
+        public Object evaluate(SExpression expression, Map<String, Object> dependencyValues, Map<Integer, Object> resolvedExpressions,
+                ContainerState containerState) throws SExpressionDependencyMissingException {
+            for (SExpression dependency : expression.getDependencies()) {
+                if (!resolvedExpressions.containsKey(dependency.getDiscriminant())) {
+                    throw new SExpressionDependencyMissingException("Dependency " + dependency.getName() + " is not resolved");
+                }
+            }
+            return expression.getContent();
+        }
+
+        @Override
+        public List<Object> evaluate(ExpressionKind expressionKind, List<SExpression> expressions, Map<String, Object> dependencyValues,
+                Map<Integer, Object> resolvedExpressions, ContainerState containerState) throws SExpressionDependencyMissingException {
+            List<Object> results = new ArrayList<>(expressions.size());
+            for (SExpression expression : expressions) {
+                results.add(evaluate(expression, dependencyValues, resolvedExpressions, containerState));
+            }
+            return results;
+        }
+
+        @Override
+        public boolean mustCheckExpressionReturnType() {
+            return false;
+        }
+
+        @Override
+        public boolean mustPutEvaluatedExpressionInContext(ExpressionKind expressionKind) {
+            return false;
+        }
+    }
+
+}
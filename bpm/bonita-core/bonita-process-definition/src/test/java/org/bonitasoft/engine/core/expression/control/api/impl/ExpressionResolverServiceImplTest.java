@@ -13,19 +13,29 @@
  **/
 package org.bonitasoft.engine.core.expression.control.api.impl;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 
+import java.util.Collections;
+import java.util.List;
+
+import org.bonitasoft.engine.classloader.ClassLoaderListener;
 import org.bonitasoft.engine.classloader.ClassLoaderService;
 import org.bonitasoft.engine.core.expression.control.model.SExpressionContext;
 import org.bonitasoft.engine.core.process.definition.ProcessDefinitionService;
 import org.bonitasoft.engine.expression.ExpressionService;
+import org.bonitasoft.engine.expression.ExpressionType;
 import org.bonitasoft.engine.expression.model.SExpression;
+import org.bonitasoft.engine.expression.model.impl.SExpressionImpl;
 import org.bonitasoft.engine.tracking.TimeTracker;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
@@ -82,4 +92,65 @@ public class ExpressionResolverServiceImplTest {
         verify(classLoaderService, never()).getLocalClassLoader(anyString(), anyLong());
     }
 
+    @Test
+    public void getEvaluationPlan_should_reuse_plan_of_the_same_expressions_of_a_definition() {
+        final List<SExpression> expressions = constants("a");
+
+        final ExpressionEvaluationPlan plan = resolverService.getEvaluationPlan(83L, expressions);
+
+        assertThat(resolverService.getEvaluationPlan(83L, expressions)).isSameAs(plan);
+        assertThat(resolverService.getEvaluationPlan(84L, expressions)).isNotSameAs(plan);
+    }
+
+    @Test
+    public void getEvaluationPlan_should_reuse_plan_of_equal_expressions_built_for_each_call() {
+        final ExpressionEvaluationPlan plan = resolverService.getEvaluationPlan(83L, constants("a"));
+
+        assertThat(resolverService.getEvaluationPlan(83L, constants("a"))).isSameAs(plan);
+        assertThat(resolverService.getEvaluationPlan(83L, constants("b"))).isNotSameAs(plan);
+    }
+
+    @Test
+    public void getEvaluationPlan_should_not_keep_plans_of_expressions_without_definition() {
+        final List<SExpression> expressions = constants("a");
+
+        final ExpressionEvaluationPlan plan = resolverService.getEvaluationPlan(null, expressions);
+
+        assertThat(resolverService.getEvaluationPlan(null, expressions)).isNotSameAs(plan);
+        verify(classLoaderService, never()).addListener(anyString(), anyLong(), any(ClassLoaderListener.class));
+    }
+
+    @Test
+    public void getEvaluationPlan_should_drop_plans_of_a_definition_when_its_classloader_is_destroyed() {
+        final List<SExpression> expressions = constants("a");
+        final ExpressionEvaluationPlan plan = resolverService.getEvaluationPlan(83L, expressions);
+        final ArgumentCaptor<ClassLoaderListener> listener = ArgumentCaptor.forClass(ClassLoaderListener.class);
+        verify(classLoaderService).addListener(eq("PROCESS"), eq(83L), listener.capture());
+
+        listener.getValue().onDestroy(null);
+
+        assertThat(resolverService.getEvaluationPlan(83L, expressions)).isNotSameAs(plan);
+    }
+
+    @Test
+    public void getEvaluationPlan_should_evict_least_recently_used_plans_of_a_definition() {
+        final List<SExpression> recentlyUsed = constants("recentlyUsed");
+        final List<SExpression> notUsed = constants("notUsed");
+        final ExpressionEvaluationPlan recentlyUsedPlan = resolverService.getEvaluationPlan(83L, recentlyUsed);
+        final ExpressionEvaluationPlan notUsedPlan = resolverService.getEvaluationPlan(83L, notUsed);
+        resolverService.getEvaluationPlan(83L, recentlyUsed);
+
+        for (int i = 0; i < 999; i++) {
+            resolverService.getEvaluationPlan(83L, constants("other" + i));
+        }
+
+        assertThat(resolverService.getEvaluationPlan(83L, recentlyUsed)).isSameAs(recentlyUsedPlan);
+        assertThat(resolverService.getEvaluationPlan(83L, notUsed)).isNotSameAs(notUsedPlan);
+    }
+
+    private static List<SExpression> constants(final String name) {
+        return Collections.<SExpression> singletonList(new SExpressionImpl(name, name, ExpressionType.TYPE_CONSTANT.name(), String.class.getName(), null,
+                Collections.<SExpression> emptyList()));
+    }
+
 }
@@ -0,0 +1,202 @@
+/**
+ * Copyright (C) 2018 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.api.impl;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.bonitasoft.engine.api.NoSessionRequired;
+import org.bonitasoft.engine.api.impl.transaction.CustomTransactions;
+
+/**
+ * A method of an API implementation, resolved once with everything {@link ServerAPIImpl} needs to dispatch a call to it: a {@link MethodHandle} to
+ * invoke it and the annotations telling in which transaction and in which state of the node and of the tenant it can be called.
+ * <p>
+ * The methods of an API implementation class are all resolved the first time one of them is called, and kept as long as the class is loaded.
+ */
+final class APIMethod {
+
+    private static final MethodType INVOKER_TYPE = MethodType.methodType(Object.class, Object.class, Object[].class);
+
+    private static final ClassValue<DispatchTable> DISPATCH_TABLES = new ClassValue<DispatchTable>() {
+
+        @Override
+        protected DispatchTable computeValue(final Class<?> apiImplementationClass) {
+            return new DispatchTable(apiImplementationClass);
+        }
+    };
+
+    private final Method method;
+
+    private final List<String> parameterTypeNames;
+
+    private final MethodHandle invoker;
+
+    private final boolean outsideTransaction;
+
+    private final boolean availableOnStoppedNode;
+
+    private final AvailableWhenTenantIsPaused availableWhenTenantIsPaused;
+
+    private final boolean deprecated;
+
+    private APIMethod(final Class<?> apiImplementationClass, final Method method) {
+        this.method = method;
+        final List<String> names = new ArrayList<>(method.getParameterCount());
+        for (final Class<?> parameterType : method.getParameterTypes()) {
+            names.add(parameterType.getName());
+        }
+        parameterTypeNames = Collections.unmodifiableList(names);
+        invoker = createInvoker(method);
+        // No session required means that there is no transaction
+        outsideTransaction = method.isAnnotationPresent(CustomTransactions.class) || method.isAnnotationPresent(NoSessionRequired.class);
+        availableOnStoppedNode = method.isAnnotationPresent(AvailableOnStoppedNode.class);
+        final AvailableWhenTenantIsPaused methodAnnotation = method.getAnnotation(AvailableWhenTenantIsPaused.class);
+        availableWhenTenantIsPaused = methodAnnotation != null ? methodAnnotation : apiImplementationClass.getAnnotation(AvailableWhenTenantIsPaused.class);
+        deprecated = method.isAnnotationPresent(Deprecated.class);
+    }
+
+    /*
+     * (implementation, Object[] parameters) -> Object, or null when the method can only be invoked using reflection
+     */
+    private static MethodHandle createInvoker(final Method method) {
+        if (Modifier.isStatic(method.getModifiers())) {
+            return null;
+        }
+        try {
+            return MethodHandles.publicLookup().unreflect(method).asSpreader(Object[].class, method.getParameterCount()).asType(INVOKER_TYPE);
+        } catch (final IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @param apiImplementationClass
+     *        the class of the API implementation
+     * @param methodName
+     *        the name of the method
+     * @param classNameParameters
+     *        the names of the types of the parameters, as given by {@link Class#getName()}
+     * @throws NoSuchMethodException
+     *         if the class has no such public method
+     */
+    static APIMethod get(final Class<?> apiImplementationClass, final String methodName, final List<String> classNameParameters)
+            throws NoSuchMethodException {
+        final APIMethod apiMethod = DISPATCH_TABLES.get(apiImplementationClass).get(methodName, classNameParameters);
+        if (apiMethod == null) {
+            throw new NoSuchMethodException(apiImplementationClass.getName() + "." + methodName + "(" + classNameParameters + ")");
+        }
+        return apiMethod;
+    }
+
+    /**
+     * @return the given method of the given API implementation class, resolved on the fly if it is not one of its public methods
+     */
+    static APIMethod get(final Class<?> apiImplementationClass, final Method method) {
+        final APIMethod apiMethod = DISPATCH_TABLES.get(apiImplementationClass).get(method);
+        return apiMethod != null ? apiMethod : new APIMethod(apiImplementationClass, method);
+    }
+
+    Method getMethod() {
+        return method;
+    }
+
+    boolean isOutsideTransaction() {
+        return outsideTransaction;
+    }
+
+    boolean isAvailableOnStoppedNode() {
+        return availableOnStoppedNode;
+    }
+
+    AvailableWhenTenantIsPaused getAvailableWhenTenantIsPaused() {
+        return availableWhenTenantIsPaused;
+    }
+
+    boolean isDeprecated() {
+        return deprecated;
+    }
+
+    /**
+     * Invoke the method, exceptions thrown by the method are thrown as is.
+     */
+    Object invoke(final Object apiImplementation, final Object[] parametersValues) throws Throwable {
+        if (invoker != null) {
+            return (Object) invoker.invokeExact(apiImplementation, parametersValues);
+        }
+        try {
+            return method.invoke(apiImplementation, parametersValues);
+        } catch (final InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static final class DispatchTable {
+
+        private final Map<String, List<APIMethod>> methodsByName = new HashMap<>();
+
+        private final Map<Method, APIMethod> methods = new HashMap<>();
+
+        DispatchTable(final Class<?> apiImplementationClass) {
+            for (final Method candidate : apiImplementationClass.getMethods()) {
+                final Method method;
+                try {
+                    // same resolution as Class.getMethod, e.g. a covariant override is preferred to its bridge method
+                    method = apiImplementationClass.getMethod(candidate.getName(), candidate.getParameterTypes());
+                } catch (final NoSuchMethodException e) {
+                    throw new IllegalStateException(e);
+                }
+                if (methods.containsKey(method)) {
+                    continue;
+                }
+                final APIMethod apiMethod = new APIMethod(apiImplementationClass, method);
+                methods.put(method, apiMethod);
+                List<APIMethod> overloads = methodsByName.get(method.getName());
+                if (overloads == null) {
+                    overloads = new ArrayList<>(1);
+                    methodsByName.put(method.getName(), overloads);
+                }
+                overloads.add(apiMethod);
+            }
+        }
+
+        APIMethod get(final String methodName, final List<String> classNameParameters) {
+            final List<APIMethod> overloads = methodsByName.get(methodName);
+            if (overloads == null) {
+                return null;
+            }
+            final List<String> parameterTypeNames = classNameParameters != null ? classNameParameters : Collections.<String> emptyList();
+            for (final APIMethod overload : overloads) {
+                if (overload.parameterTypeNames.equals(parameterTypeNames)) {
+                    return overload;
+                }
+            }
+            return null;
+        }
+
+        APIMethod get(final Method method) {
+            return methods.get(method);
+        }
+    }
+
+}
@@ -13,6 +13,7 @@
  **/
 package org.bonitasoft.engine.api.impl;
 
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -87,13 +88,37 @@ public class DocumentAPIImpl implements DocumentAPI {
     @Override
     public Document addDocument(final long processInstanceId, final String documentName, final String description, final DocumentValue documentValue)
             throws DocumentAttachmentException, AlreadyExistsException {
+        return addDocument(processInstanceId, documentName, description, documentValue.getIndex(), buildSDocument(documentValue));
+    }
+
+    /**
+     * Attach a new document to a process instance, as {@link #addDocument(long, String, String, DocumentValue)}, reading its content from a stream.
+     * <p>
+     * When the content store of documents is enabled, the content is written in it while it is read and is never entirely in memory. A stream can't
+     * be sent to a remote API: this method is only available to code running in the engine.
+     *
+     * @param content the content of the document, read until its end but not closed
+     */
+    public Document addDocument(final long processInstanceId, final String documentName, final String description, final String fileName,
+            final String mimeType, final InputStream content) throws DocumentAttachmentException, AlreadyExistsException {
+        final DocumentService documentService = getTenantAccessor().getDocumentService();
+        final SDocument sDocument = buildProcessDocument(fileName, mimeType, getUserId(), null);
+        try {
+            documentService.writeDocumentContent(sDocument, content);
+        } catch (final SBonitaException e) {
+            throw new DocumentAttachmentException(e);
+        }
+        return addDocument(processInstanceId, documentName, description, -1, sDocument);
+    }
+
+    private Document addDocument(final long processInstanceId, final String documentName, final String description, final int documentIndex,
+            final SDocument sDocument) throws DocumentAttachmentException, AlreadyExistsException {
         final TenantServiceAccessor tenantAccessor = getTenantAccessor();
         final DocumentService documentService = tenantAccessor.getDocumentService();
 
         final DocumentHelper documentHelper = new DocumentHelper(documentService, tenantAccessor.getProcessDefinitionService(),
                 tenantAccessor.getProcessInstanceService());
-        final SDocument sDocument = buildSDocument(documentValue);
-        int index = documentValue.getIndex();
+        int index = documentIndex;
         try {
             if (documentHelper.isListDefinedInDefinition(documentName, processInstanceId)) {
                 final List<SMappedDocument> allDocumentOfTheList = documentHelper.getAllDocumentOfTheList(processInstanceId, documentName);
@@ -242,6 +267,23 @@ public class DocumentAPIImpl implements DocumentAPI {
         }
     }
 
+    /**
+     * Get the content of a document as {@link #getDocumentContent(String)}, as a stream that reads it from the content store of documents without
+     * loading it all in memory when it is there.
+     * <p>
+     * A stream can't be sent to a remote API: this method is only available to code running in the engine.
+     *
+     * @return a stream on the content to be closed by the caller, null if the document has no content
+     */
+    public InputStream getDocumentContentAsStream(final String documentStorageId) throws DocumentNotFoundException {
+        final DocumentService documentService = getTenantAccessor().getDocumentService();
+        try {
+            return documentService.getDocumentContentAsStream(documentStorageId);
+        } catch (final SObjectNotFoundException sbe) {
+            throw new DocumentNotFoundException(sbe);
+        }
+    }
+
     @Override
     public Document getLastDocument(final long processInstanceId, final String documentName) throws DocumentNotFoundException {
         final TenantServiceAccessor tenantAccessor = getTenantAccessor();
@@ -24,6 +24,7 @@ import java.util.Set;
 import org.bonitasoft.engine.actor.mapping.ActorMappingService;
 import org.bonitasoft.engine.actor.mapping.model.SActor;
 import org.bonitasoft.engine.api.IdentityAPI;
+import org.bonitasoft.engine.api.impl.transaction.CustomTransactions;
 import org.bonitasoft.engine.api.impl.transaction.actor.GetActor;
 import org.bonitasoft.engine.api.impl.transaction.identity.AddUserMembership;
 import org.bonitasoft.engine.api.impl.transaction.identity.AddUserMemberships;
@@ -91,6 +92,7 @@ import org.bonitasoft.engine.identity.SGroupNotFoundException;
 import org.bonitasoft.engine.identity.SIdentityException;
 import org.bonitasoft.engine.identity.SRoleNotFoundException;
 import org.bonitasoft.engine.identity.SUserNotFoundException;
+import org.bonitasoft.engine.identity.StreamingImportOrganization;
 import org.bonitasoft.engine.identity.User;
 import org.bonitasoft.engine.identity.UserCreator;
 import org.bonitasoft.engine.identity.UserCriterion;
@@ -1475,27 +1477,39 @@ public class IdentityAPIImpl implements IdentityAPI {
     }
 
     @Override
+    @CustomTransactions
     public void importOrganization(final String organizationContent) throws OrganizationImportException {
         importOrganization(organizationContent, ImportPolicy.MERGE_DUPLICATES);
     }
 
     @Override
+    @CustomTransactions
     public void importOrganization(final String organizationContent, final ImportPolicy policy) throws OrganizationImportException {
         importOrganizationWithWarnings(organizationContent, policy);
     }
 
     @Override
+    @CustomTransactions
     public List<String> importOrganizationWithWarnings(String organizationContent, ImportPolicy policy) throws OrganizationImportException {
         final TenantServiceAccessor tenantAccessor = getTenantAccessor();
-        try {
-            final SCustomUserInfoValueBuilderFactory creatorFactory = BuilderFactory.get(SCustomUserInfoValueBuilderFactory.class);
-            final SCustomUserInfoValueUpdateBuilderFactory updaterFactor = BuilderFactory.get(SCustomUserInfoValueUpdateBuilderFactory.class);
-            final SCustomUserInfoValueAPI customUserInfoValueAPI = new SCustomUserInfoValueAPI(tenantAccessor.getIdentityService(), creatorFactory,
-                    updaterFactor);
-            ImportOrganization importedOrganization = new ImportOrganization(tenantAccessor, organizationContent, policy, customUserInfoValueAPI);
-            importedOrganization.execute();
-            return importedOrganization.getResult();
-        } catch (final SBonitaException e) {
+        final SCustomUserInfoValueBuilderFactory creatorFactory = BuilderFactory.get(SCustomUserInfoValueBuilderFactory.class);
+        final SCustomUserInfoValueUpdateBuilderFactory updaterFactor = BuilderFactory.get(SCustomUserInfoValueUpdateBuilderFactory.class);
+        final SCustomUserInfoValueAPI customUserInfoValueAPI = new SCustomUserInfoValueAPI(tenantAccessor.getIdentityService(), creatorFactory,
+                updaterFactor);
+        final int chunkSize = tenantAccessor.getTenantConfiguration().getOrganizationImportChunkSize();
+        try {
+            if (chunkSize > 0) {
+                // large organizations: committed chunk by chunk
+                return new StreamingImportOrganization(tenantAccessor, organizationContent, policy, customUserInfoValueAPI, chunkSize).execute();
+            }
+            return tenantAccessor.getUserTransactionService().executeInTransaction(() -> {
+                ImportOrganization importedOrganization = new ImportOrganization(tenantAccessor, organizationContent, policy, customUserInfoValueAPI);
+                importedOrganization.execute();
+                return importedOrganization.getResult();
+            });
+        } catch (final OrganizationImportException e) {
+            throw e;
+        } catch (final Exception e) {
             throw new OrganizationImportException(e);
         }
     }
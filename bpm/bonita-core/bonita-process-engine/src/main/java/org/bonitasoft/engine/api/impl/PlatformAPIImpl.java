@@ -107,7 +107,7 @@ import org.bonitasoft.engine.transaction.TransactionService;
 public class PlatformAPIImpl implements PlatformAPI {
 
     private static final String STATUS_DEACTIVATED = "DEACTIVATED";
-    static boolean isNodeStarted = false;
+    static volatile boolean isNodeStarted = false;
 
     public PlatformAPIImpl() {
         super();
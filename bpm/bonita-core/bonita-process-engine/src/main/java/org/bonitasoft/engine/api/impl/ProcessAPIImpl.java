@@ -322,6 +322,7 @@ import org.bonitasoft.engine.execution.SUnreleasableTaskException;
 import org.bonitasoft.engine.execution.event.EventsHandler;
 import org.bonitasoft.engine.execution.job.JobNameBuilder;
 import org.bonitasoft.engine.execution.state.FlowNodeStateManager;
+import org.bonitasoft.engine.execution.timer.TimerEventScheduler;
 import org.bonitasoft.engine.execution.work.BPMWorkFactory;
 import org.bonitasoft.engine.expression.ContainerState;
 import org.bonitasoft.engine.expression.Expression;
@@ -4629,6 +4630,10 @@ public class ProcessAPIImpl implements ProcessAPI {
                 throw new TimerEventTriggerInstanceNotFoundException(timerEventTriggerInstanceId);
             }
             eventInstanceService.updateEventTriggerInstance(sTimerEventTriggerInstance, descriptor);
+            if (TimerEventScheduler.JOB_TRIGGER_NAME.equals(sTimerEventTriggerInstance.getJobTriggerName())) {
+                tenantAccessor.getTimerEventScheduler().reschedule(sTimerEventTriggerInstance.getEventInstanceId(), executionDate.getTime());
+                return executionDate;
+            }
             return schedulerService
                     .rescheduleJob(sTimerEventTriggerInstance.getJobTriggerName(), String.valueOf(getTenantAccessor().getTenantId()), executionDate);
         } catch (final SBonitaException sbe) {
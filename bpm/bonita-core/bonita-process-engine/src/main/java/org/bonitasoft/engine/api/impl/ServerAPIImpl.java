@@ -22,15 +22,12 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
 
-import org.bonitasoft.engine.api.NoSessionRequired;
 import org.bonitasoft.engine.api.PlatformAPI;
 import org.bonitasoft.engine.api.TenantAdministrationAPI;
-import org.bonitasoft.engine.api.impl.transaction.CustomTransactions;
 import org.bonitasoft.engine.api.internal.ServerAPI;
 import org.bonitasoft.engine.api.internal.ServerWrappedException;
 import org.bonitasoft.engine.classloader.ClassLoaderService;
 import org.bonitasoft.engine.classloader.SClassLoaderException;
-import org.bonitasoft.engine.commons.ClassReflector;
 import org.bonitasoft.engine.commons.exceptions.SBonitaException;
 import org.bonitasoft.engine.core.login.LoginService;
 import org.bonitasoft.engine.core.platform.login.PlatformLoginService;
@@ -70,10 +67,7 @@ public class ServerAPIImpl implements ServerAPI {
 
     private static final String SESSION = "session";
 
-    private static final String IS_NODE_STARTED_METHOD_NAME = "isNodeStarted";
-
     private static final long serialVersionUID = -161775388604256321L;
-    private static final String IS_PAUSED = "isPaused";
 
     protected final APIAccessResolver accessResolver;
 
@@ -261,12 +255,11 @@ public class ServerAPIImpl implements ServerAPI {
 
     Object invokeAPI(final String apiInterfaceName, final String methodName, final List<String> classNameParameters, final Object[] parametersValues,
             final Session session) throws Throwable {
-        final Class<?>[] parameterTypes = getParameterTypes(classNameParameters);
-
         final Object apiImpl = accessResolver.getAPIImplementation(apiInterfaceName);
-        final Method method = ClassReflector.getMethod(apiImpl.getClass(), methodName, parameterTypes);
+        final APIMethod apiMethod = APIMethod.get(apiImpl.getClass(), methodName, classNameParameters);
+        final Method method = apiMethod.getMethod();
         // No session required means that there is no transaction
-        if (method.isAnnotationPresent(CustomTransactions.class) || method.isAnnotationPresent(NoSessionRequired.class)) {
+        if (apiMethod.isOutsideTransaction()) {
             return invokeAPIOutsideTransaction(parametersValues, apiImpl, method, apiInterfaceName, session);
         } else {
             return invokeAPIInTransaction(parametersValues, apiImpl, method, session, apiInterfaceName);
@@ -281,7 +274,8 @@ public class ServerAPIImpl implements ServerAPI {
 
     protected void checkMethodAccessibility(final Object apiImpl, final String apiInterfaceName, final Method method, final Session session,
             boolean isAlreadyInTransaction) {
-        warnIfDeprecated(method, apiInterfaceName);
+        final APIMethod apiMethod = APIMethod.get(apiImpl.getClass(), method);
+        warnIfDeprecated(apiMethod, apiInterfaceName);
         if (!isNodeInAValidStateFor(method)) {
             logNodeNotStartedMessage(apiInterfaceName, method);
             throw new NodeNotStartedException();
@@ -298,14 +292,8 @@ public class ServerAPIImpl implements ServerAPI {
     protected void checkTenantIsInAValidModeFor(final Object apiImpl, final Method method, final String apiInterfaceName, final long tenantId,
             final Session session, boolean isAlreadyInTransaction) {
         final boolean tenantRunning = isTenantAvailable(tenantId, session, isAlreadyInTransaction);
-        final AvailableWhenTenantIsPaused methodAnnotation = method.getAnnotation(AvailableWhenTenantIsPaused.class);
-        AvailableWhenTenantIsPaused annotation;
-        if (methodAnnotation != null) {
-            annotation = methodAnnotation;
-        } else {
-            final Class<?> apiClass = apiImpl.getClass();
-            annotation = apiClass.getAnnotation(AvailableWhenTenantIsPaused.class);
-        }
+        // annotation of the method, or else of the API implementation
+        final AvailableWhenTenantIsPaused annotation = APIMethod.get(apiImpl.getClass(), method).getAvailableWhenTenantIsPaused();
         checkIsValidModeFor(tenantRunning, annotation, tenantId, apiImpl, method, apiInterfaceName);
     }
 
@@ -346,6 +334,8 @@ public class ServerAPIImpl implements ServerAPI {
     }
 
     /**
+     * The state known by this node is used when there is one, see {@link TenantStateSnapshot}, otherwise it is read from the tenant.
+     *
      * @param tenantId
      *        the ID of the tenant to check
      * @param session
@@ -355,30 +345,30 @@ public class ServerAPIImpl implements ServerAPI {
      * @return true if the tenant is available, false otherwise (if the tenant is paused)
      */
     protected boolean isTenantAvailable(final long tenantId, final Session session, boolean isAlreadyInTransaction) {
-        final Object apiImpl;
+        final Boolean knownPaused = TenantStateSnapshot.isPaused(tenantId);
+        if (knownPaused != null) {
+            return !knownPaused;
+        }
         try {
-            apiImpl = accessResolver.getAPIImplementation(TenantAdministrationAPI.class.getName());
-            final Method method = ClassReflector.getMethod(apiImpl.getClass(), IS_PAUSED);
-            final Boolean paused;
+            final TenantAdministrationAPI tenantAdministrationAPI = (TenantAdministrationAPI) accessResolver
+                    .getAPIImplementation(TenantAdministrationAPI.class.getName());
+            final boolean paused;
             if (isAlreadyInTransaction) {
-                paused = (Boolean) invokeAPI(method, apiImpl);
+                paused = tenantAdministrationAPI.isPaused();
             } else {
                 final UserTransactionService userTransactionService = selectUserTransactionService(session, getSessionType(session));
 
-                final Callable<Object> callable = new Callable<Object>() {
+                final Callable<Boolean> callable = new Callable<Boolean>() {
 
                     @Override
-                    public Object call() throws Exception {
-                        try {
-                            return invokeAPI(method, apiImpl);
-                        } catch (final Throwable cause) {
-                            throw new ServerAPIRuntimeException(cause);
-                        }
+                    public Boolean call() throws Exception {
+                        return tenantAdministrationAPI.isPaused();
                     }
                 };
 
-                paused = (Boolean) userTransactionService.executeInTransaction(callable);
+                paused = userTransactionService.executeInTransaction(callable);
             }
+            TenantStateSnapshot.setPausedIfUnknown(tenantId, paused);
             return !paused;
         } catch (final Throwable e) {
             throw new BonitaRuntimeException("Cannot determine if the tenant with ID " + tenantId + " is accessible", e);
@@ -407,9 +397,7 @@ public class ServerAPIImpl implements ServerAPI {
      */
     private boolean isNodeStarted() {
         try {
-            final Object apiImpl = accessResolver.getAPIImplementation(PlatformAPI.class.getName());
-            final Method method = ClassReflector.getMethod(apiImpl.getClass(), IS_NODE_STARTED_METHOD_NAME);
-            return (Boolean) invokeAPI(method, apiImpl);
+            return ((PlatformAPI) accessResolver.getAPIImplementation(PlatformAPI.class.getName())).isNodeStarted();
         } catch (final Throwable e) {
             return false;
         }
@@ -458,16 +446,12 @@ public class ServerAPIImpl implements ServerAPI {
     }
 
     protected Object invokeAPI(final Method method, final Object apiImpl, final Object... parametersValues) throws Throwable {
-        try {
-            return method.invoke(apiImpl, parametersValues);
-        } catch (final InvocationTargetException e) {
-            throw e.getCause();
-        }
+        return APIMethod.get(apiImpl.getClass(), method).invoke(apiImpl, parametersValues);
     }
 
-    private void warnIfDeprecated(Method method, String apiInterfaceName) {
-        if (technicalLogger != null && method.isAnnotationPresent(Deprecated.class)) {
-            technicalLogger.log(this.getClass(), TechnicalLogSeverity.WARNING, "The API method " + apiInterfaceName + "." + method.getName()
+    private void warnIfDeprecated(APIMethod apiMethod, String apiInterfaceName) {
+        if (technicalLogger != null && apiMethod.isDeprecated()) {
+            technicalLogger.log(this.getClass(), TechnicalLogSeverity.WARNING, "The API method " + apiInterfaceName + "." + apiMethod.getMethod().getName()
                     + " is deprecated. It will be deleted in a future release. Please plan to update your code to use the replacement method instead. Check the Javadoc for more details.");
         }
     }
@@ -36,6 +36,8 @@ public class TenantConfiguration {
 
     private List<AbstractBonitaTenantJobListener> jobListeners;
 
+    private int organizationImportChunkSize;
+
     public void setJobsToRegister(final List<JobRegister> jobsToRegister) {
         this.jobsToRegister = jobsToRegister;
     }
@@ -86,4 +88,20 @@ public class TenantConfiguration {
         this.jobListeners = jobListeners;
     }
 
+    /**
+     * @return the number of elements imported in each transaction when importing an organization, 0 to import it in a single transaction
+     * @since 7.7.2
+     */
+    public int getOrganizationImportChunkSize() {
+        return organizationImportChunkSize;
+    }
+
+    /**
+     * @param organizationImportChunkSize
+     * @since 7.7.2
+     */
+    public void setOrganizationImportChunkSize(int organizationImportChunkSize) {
+        this.organizationImportChunkSize = organizationImportChunkSize;
+    }
+
 }
@@ -0,0 +1,60 @@
+/**
+ * Copyright (C) 2018 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.api.impl;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Whether tenants are paused, as known by this node, so that {@link ServerAPIImpl} does not read the tenant for each API call.
+ * <p>
+ * It is updated on each node when the services of a tenant are paused, resumed, started or stopped. When the state of a tenant is unknown, e.g.
+ * a tenant that was paused when the node started, it is read from the tenant and kept until the services of the tenant change state.
+ */
+public final class TenantStateSnapshot {
+
+    private static final ConcurrentMap<Long, Boolean> PAUSED_TENANTS = new ConcurrentHashMap<>();
+
+    private TenantStateSnapshot() {
+    }
+
+    /**
+     * @return whether the tenant is paused, or null if it is not known
+     */
+    public static Boolean isPaused(final long tenantId) {
+        return PAUSED_TENANTS.get(tenantId);
+    }
+
+    /**
+     * Called when the services of the tenant changed state on this node.
+     */
+    public static void setPaused(final long tenantId, final boolean paused) {
+        PAUSED_TENANTS.put(tenantId, paused);
+    }
+
+    /**
+     * Keep a state read from the tenant, unless the services of the tenant changed state since it was read.
+     */
+    static void setPausedIfUnknown(final long tenantId, final boolean paused) {
+        PAUSED_TENANTS.putIfAbsent(tenantId, paused);
+    }
+
+    /**
+     * Forget the state of the tenant, e.g. when its services are stopped.
+     */
+    public static void clear(final long tenantId) {
+        PAUSED_TENANTS.remove(tenantId);
+    }
+
+}
@@ -32,6 +32,7 @@ import org.bonitasoft.engine.dependency.SDependencyException;
 import org.bonitasoft.engine.dependency.model.SDependency;
 import org.bonitasoft.engine.dependency.model.SDependencyMapping;
 import org.bonitasoft.engine.dependency.model.ScopeType;
+import org.bonitasoft.engine.expression.impl.GroovyScriptCompiler;
 import org.bonitasoft.engine.persistence.FilterOption;
 import org.bonitasoft.engine.persistence.QueryOptions;
 
@@ -57,6 +58,10 @@ public class ClasspathArtifactManager implements BusinessArchiveArtifactManager
         final Map<String, byte[]> resourcesWithRealName = new HashMap<>(resources.size());
         for (final Map.Entry<String, byte[]> resource : resources.entrySet()) {
             final String name = resource.getKey().substring(10);
+            if (GroovyScriptCompiler.COMPILED_SCRIPTS_JAR_NAME.equals(name)) {
+                // scripts are compiled again against the deployed dependencies
+                continue;
+            }
             final byte[] jarContent = resource.getValue();
             resourcesWithRealName.put(name, jarContent);
         }
@@ -88,6 +93,10 @@ public class ClasspathArtifactManager implements BusinessArchiveArtifactManager
                 .getDependencyMappings(new QueryOptions(0, Integer.MAX_VALUE, null, filters, null));
         for (SDependencyMapping dependencyMapping : dependencyMappings) {
             final SDependency dependency = dependencyService.getDependency(dependencyMapping.getDependencyId());
+            if (GroovyScriptCompiler.COMPILED_SCRIPTS_JAR_NAME.equals(dependency.getFileName())) {
+                // generated at deployment, not part of the business archive
+                continue;
+            }
             businessArchiveBuilder.addClasspathResource(new BarResource(dependency.getFileName(), dependency.getValue()));
         }
     }
@@ -19,6 +19,7 @@ import java.util.List;
 import java.util.concurrent.Callable;
 
 import org.bonitasoft.engine.api.impl.TenantConfiguration;
+import org.bonitasoft.engine.api.impl.TenantStateSnapshot;
 import org.bonitasoft.engine.classloader.ClassLoaderService;
 import org.bonitasoft.engine.commons.TenantLifecycleService;
 import org.bonitasoft.engine.commons.exceptions.SBonitaException;
@@ -33,6 +34,10 @@ import org.bonitasoft.engine.log.technical.TechnicalLoggerService;
 import org.bonitasoft.engine.service.PlatformServiceAccessor;
 import org.bonitasoft.engine.service.TenantServiceAccessor;
 import org.bonitasoft.engine.service.impl.ServiceAccessorFactory;
+import org.bonitasoft.engine.transaction.BonitaTransactionSynchronization;
+import org.bonitasoft.engine.transaction.STransactionNotFoundException;
+import org.bonitasoft.engine.transaction.TransactionState;
+import org.bonitasoft.engine.transaction.UserTransactionService;
 
 /**
  * @author Matthieu Chaffotte
@@ -81,6 +86,7 @@ public class SetServiceState implements Callable<Void>, Serializable {
                     throw new UpdateException("Unable to " + serviceStrategy.getStateName() + " service: " + tenantService.getClass().getName(), sbe);
                 }
             }
+            updateTenantStateSnapshotOnCommit(platformServiceAccessor.getTransactionService());
             return null;
         } finally {
             // reset previous class loader:
@@ -88,6 +94,38 @@ public class SetServiceState implements Callable<Void>, Serializable {
         }
     }
 
+    private void updateTenantStateSnapshotOnCommit(final UserTransactionService transactionService) {
+        try {
+            transactionService.registerBonitaSynchronization(new BonitaTransactionSynchronization() {
+
+                @Override
+                public void beforeCommit() {
+                    // nothing to do
+                }
+
+                @Override
+                public void afterCompletion(final TransactionState txState) {
+                    if (txState == TransactionState.COMMITTED) {
+                        updateTenantStateSnapshot();
+                    }
+                }
+            });
+        } catch (final STransactionNotFoundException e) {
+            // not called in a transaction: the services already changed state
+            updateTenantStateSnapshot();
+        }
+    }
+
+    private void updateTenantStateSnapshot() {
+        if (serviceStrategy instanceof PauseServiceStrategy) {
+            TenantStateSnapshot.setPaused(tenantId, true);
+        } else if (serviceStrategy instanceof ResumeServiceStrategy || serviceStrategy instanceof StartServiceStrategy) {
+            TenantStateSnapshot.setPaused(tenantId, false);
+        } else {
+            TenantStateSnapshot.clear(tenantId);
+        }
+    }
+
     protected void refreshClassloaderOfProcessDefinitions(final TenantServiceAccessor tenantServiceAccessor) throws SBonitaException {
         final DependencyService dependencyService = tenantServiceAccessor.getDependencyService();
         final ProcessDefinitionService processDefinitionService = tenantServiceAccessor.getProcessDefinitionService();
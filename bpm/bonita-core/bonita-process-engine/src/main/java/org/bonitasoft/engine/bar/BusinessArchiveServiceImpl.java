@@ -47,14 +47,17 @@ public class BusinessArchiveServiceImpl implements BusinessArchiveService {
     private final BusinessArchiveArtifactsManager businessArchiveArtifactsManager;
     private final TechnicalLoggerService logger;
     private final ClassLoaderService classLoaderService;
+    private final ProcessScriptsCompiler processScriptsCompiler;
 
     public BusinessArchiveServiceImpl(ProcessDefinitionService processDefinitionService, DependencyService dependencyService,
-            BusinessArchiveArtifactsManager businessArchiveArtifactsManager, TechnicalLoggerService logger, ClassLoaderService classLoaderService) {
+            BusinessArchiveArtifactsManager businessArchiveArtifactsManager, TechnicalLoggerService logger, ClassLoaderService classLoaderService,
+            ProcessScriptsCompiler processScriptsCompiler) {
         this.processDefinitionService = processDefinitionService;
         this.dependencyService = dependencyService;
         this.businessArchiveArtifactsManager = businessArchiveArtifactsManager;
         this.logger = logger;
         this.classLoaderService = classLoaderService;
+        this.processScriptsCompiler = processScriptsCompiler;
     }
 
     @Override
@@ -72,6 +75,10 @@ public class BusinessArchiveServiceImpl implements BusinessArchiveService {
                 processDefinitionService.resolveProcess(sProcessDefinition.getId());
             }
             dependencyService.refreshClassLoaderAfterUpdate(ScopeType.PROCESS, sProcessDefinition.getId());
+            if (processScriptsCompiler.compileScripts(designProcessDefinition, sProcessDefinition.getId())) {
+                // other nodes will load the compiled scripts with the refresh registered above, that runs once the deployment is committed
+                dependencyService.refreshClassLoader(ScopeType.PROCESS, sProcessDefinition.getId());
+            }
         } catch (SAlreadyExistsException e) {
             throw e;
         } catch (final SBonitaException e) {
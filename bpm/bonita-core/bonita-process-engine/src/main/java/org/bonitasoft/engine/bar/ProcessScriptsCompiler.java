@@ -0,0 +1,89 @@
+/**
+ * Copyright (C) 2018 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.bar;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+
+import org.bonitasoft.engine.bpm.process.DesignProcessDefinition;
+import org.bonitasoft.engine.classloader.ClassLoaderService;
+import org.bonitasoft.engine.classloader.SClassLoaderException;
+import org.bonitasoft.engine.commons.io.IOUtil;
+import org.bonitasoft.engine.dependency.DependencyService;
+import org.bonitasoft.engine.dependency.SDependencyException;
+import org.bonitasoft.engine.dependency.model.ScopeType;
+import org.bonitasoft.engine.expression.impl.GroovyScriptCompiler;
+import org.bonitasoft.engine.log.technical.TechnicalLogSeverity;
+import org.bonitasoft.engine.log.technical.TechnicalLoggerService;
+
+/**
+ * Compiles the groovy scripts of a process when it is deployed.
+ * <p>
+ * The compiled classes are stored in the {@link GroovyScriptCompiler#COMPILED_SCRIPTS_JAR_NAME} dependency of the process, so they are part of the
+ * classloader of the process on every node and after each restart, and scripts are not compiled again when they are first evaluated.
+ */
+public class ProcessScriptsCompiler {
+
+    private final DependencyService dependencyService;
+    private final ClassLoaderService classLoaderService;
+    private final TechnicalLoggerService logger;
+    private final GroovyScriptCompiler groovyScriptCompiler;
+    private final boolean enabled;
+
+    public ProcessScriptsCompiler(DependencyService dependencyService, ClassLoaderService classLoaderService, TechnicalLoggerService logger,
+            GroovyScriptCompiler groovyScriptCompiler, boolean enabled) {
+        this.dependencyService = dependencyService;
+        this.classLoaderService = classLoaderService;
+        this.logger = logger;
+        this.groovyScriptCompiler = groovyScriptCompiler;
+        this.enabled = enabled;
+    }
+
+    /**
+     * Compile the scripts of the process against its classloader, that must already contain the dependencies of the process.
+     *
+     * @return true if compiled scripts were added to the dependencies of the process, its classloader must then be refreshed
+     */
+    public boolean compileScripts(DesignProcessDefinition designProcessDefinition, long processDefinitionId)
+            throws SClassLoaderException, SDependencyException {
+        if (!enabled) {
+            return false;
+        }
+        final Set<String> scripts = new GroovyScriptsFinder().findScripts(designProcessDefinition);
+        if (scripts.isEmpty()) {
+            return false;
+        }
+        final ClassLoader classLoader = classLoaderService.getLocalClassLoader(ScopeType.PROCESS.name(), processDefinitionId);
+        final byte[] jar;
+        try {
+            final Map<String, byte[]> classes = groovyScriptCompiler.compile(scripts, classLoader);
+            if (classes.isEmpty()) {
+                return false;
+            }
+            jar = IOUtil.generateJar(classes);
+        } catch (IOException | RuntimeException e) {
+            // scripts will be compiled when evaluated, as if they were not compiled at deploy time
+            logger.log(getClass(), TechnicalLogSeverity.WARNING, "Unable to compile the groovy scripts of process " + processDefinitionId, e);
+            return false;
+        }
+        dependencyService.createMappedDependency(GroovyScriptCompiler.COMPILED_SCRIPTS_JAR_NAME, jar, GroovyScriptCompiler.COMPILED_SCRIPTS_JAR_NAME,
+                processDefinitionId, ScopeType.PROCESS);
+        if (logger.isLoggable(getClass(), TechnicalLogSeverity.DEBUG)) {
+            logger.log(getClass(), TechnicalLogSeverity.DEBUG, "Compiled " + scripts.size() + " groovy scripts of process " + processDefinitionId);
+        }
+        return true;
+    }
+
+}
@@ -214,6 +214,35 @@ public class BPMInstancesCreator {
         return flownNodeInstance;
     }
 
+    /**
+     * Create the inner instances of a multi instance activity having loop counters from {@code firstLoopCounter}. All instances and then all their
+     * connector instances are inserted together, so that their insert statements are sent in JDBC batches.
+     */
+    public List<SActivityInstance> createInnerActivityInstances(final long processDefinitionId, final long rootContainerId, final long parentContainerId,
+            final SActivityDefinition activityDefinition, final long rootProcessInstanceId, final long parentProcessInstanceId, final int firstLoopCounter,
+            final int numberOfInstances) throws SBonitaException {
+        final List<SActivityInstance> activityInstances = new ArrayList<>(numberOfInstances);
+        for (int loopCounter = firstLoopCounter; loopCounter < firstLoopCounter + numberOfInstances; loopCounter++) {
+            activityInstances.add((SActivityInstance) toFlowNodeInstance(processDefinitionId, rootContainerId, parentContainerId,
+                    SFlowElementsContainerType.FLOWNODE, activityDefinition, rootProcessInstanceId, parentProcessInstanceId, true, loopCounter,
+                    SStateCategory.NORMAL, -1));
+        }
+        activityInstanceService.createActivityInstances(activityInstances);
+        final List<SConnectorDefinition> connectors = activityDefinition.getConnectors();
+        if (!connectors.isEmpty()) {
+            final List<SConnectorInstance> connectorInstances = new ArrayList<>(activityInstances.size() * connectors.size());
+            for (final SActivityInstance activityInstance : activityInstances) {
+                int executionOrder = 0;
+                for (final SConnectorDefinition sConnectorDefinition : connectors) {
+                    connectorInstances.add(createConnectorInstanceObject(activityInstance, SConnectorInstance.FLOWNODE_TYPE, sConnectorDefinition,
+                            executionOrder++));
+                }
+            }
+            connectorInstanceService.createConnectorInstances(connectorInstances);
+        }
+        return activityInstances;
+    }
+
     public SFlowNodeInstance toFlowNodeInstance(final long processDefinitionId, final long rootContainerId, final long parentContainerId,
             final SFlowElementsContainerType parentContainerType, final SFlowNodeDefinition sFlowNodeDefinition, final long rootProcessInstanceId,
             final long parentProcessInstanceId, final boolean createInnerActivity, final int loopCounter, final SStateCategory stateCategory,
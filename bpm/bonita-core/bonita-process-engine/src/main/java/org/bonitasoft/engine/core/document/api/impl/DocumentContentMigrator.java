@@ -0,0 +1,185 @@
+/**
+ * Copyright (C) 2018 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.core.document.api.impl;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import org.bonitasoft.engine.commons.TenantLifecycleService;
+import org.bonitasoft.engine.commons.exceptions.SBonitaException;
+import org.bonitasoft.engine.core.document.api.DocumentService;
+import org.bonitasoft.engine.log.technical.TechnicalLogSeverity;
+import org.bonitasoft.engine.log.technical.TechnicalLoggerService;
+import org.bonitasoft.engine.sessionaccessor.SessionAccessor;
+import org.bonitasoft.engine.transaction.UserTransactionService;
+
+/**
+ * Moves, in background, the content of existing documents to where the content of new documents is written: in the
+ * {@link org.bonitasoft.engine.core.document.api.DocumentContentStore} when it is enabled, in the document table when it is not.
+ * <p>
+ * It runs once each time the tenant starts. Documents are read by pages of {@code batchSize} ids and each document is moved in its own
+ * transaction, so a large content never makes a large transaction and a document that can't be moved does not prevent the others from being
+ * moved. Documents remain readable during the migration, wherever their content is.
+ */
+public class DocumentContentMigrator implements TenantLifecycleService {
+
+    private final DocumentService documentService;
+
+    private final UserTransactionService transactionService;
+
+    private final SessionAccessor sessionAccessor;
+
+    private final TechnicalLoggerService logger;
+
+    private final long tenantId;
+
+    private final boolean enabled;
+
+    private final int batchSize;
+
+    private volatile boolean started;
+
+    private volatile boolean stopRequested;
+
+    private Thread migratorThread;
+
+    public DocumentContentMigrator(final DocumentService documentService, final UserTransactionService transactionService,
+            final SessionAccessor sessionAccessor, final TechnicalLoggerService logger, final long tenantId, final boolean enabled, final int batchSize) {
+        this.documentService = documentService;
+        this.transactionService = transactionService;
+        this.sessionAccessor = sessionAccessor;
+        this.logger = logger;
+        this.tenantId = tenantId;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public synchronized void start() throws SBonitaException {
+        if (!enabled || started) {
+            return;
+        }
+        started = true;
+        stopRequested = false;
+        migratorThread = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                migrate();
+            }
+        }, "Bonita-Document-Content-Migrator-" + tenantId);
+        migratorThread.setDaemon(true);
+        migratorThread.start();
+    }
+
+    @Override
+    public synchronized void stop() throws SBonitaException {
+        if (!started) {
+            return;
+        }
+        // the document being moved is finished, the migration continues on next start
+        started = false;
+        stopRequested = true;
+        try {
+            migratorThread.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        migratorThread = null;
+    }
+
+    @Override
+    public void pause() throws SBonitaException {
+        stop();
+    }
+
+    @Override
+    public void resume() throws SBonitaException {
+        start();
+    }
+
+    /**
+     * @return the number of documents having their content moved
+     */
+    int migrate() {
+        int moved = 0;
+        int failed = 0;
+        long lastId = -1;
+        try {
+            while (!stopRequested) {
+                final long afterId = lastId;
+                final List<Long> ids = executeInTransaction(new Callable<List<Long>>() {
+
+                    @Override
+                    public List<Long> call() throws Exception {
+                        return documentService.getIdsOfDocumentsWithContentToMove(afterId, batchSize);
+                    }
+                });
+                if (ids.isEmpty()) {
+                    break;
+                }
+                for (final Long id : ids) {
+                    if (stopRequested) {
+                        break;
+                    }
+                    lastId = id;
+                    if (move(id)) {
+                        moved++;
+                    } else {
+                        failed++;
+                    }
+                }
+            }
+        } catch (final Exception e) {
+            logger.log(getClass(), TechnicalLogSeverity.ERROR, "Unable to read the documents having their content to move, the migration will continue on "
+                    + "next start", e);
+        }
+        if (logger.isLoggable(getClass(), TechnicalLogSeverity.INFO)) {
+            logger.log(getClass(), TechnicalLogSeverity.INFO, "Moved the content of " + moved + " documents" + (failed > 0 ? ", " + failed
+                    + " documents could not be moved" : "") + (stopRequested ? ", migration stopped before the end" : ""));
+        }
+        return moved;
+    }
+
+    private boolean move(final long documentId) {
+        try {
+            executeInTransaction(new Callable<Boolean>() {
+
+                @Override
+                public Boolean call() throws Exception {
+                    return documentService.moveDocumentContent(documentId);
+                }
+            });
+            return true;
+        } catch (final Exception e) {
+            logger.log(getClass(), TechnicalLogSeverity.WARNING, "Unable to move the content of document " + documentId + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    private <T> T executeInTransaction(final Callable<T> callable) throws Exception {
+        sessionAccessor.setTenantId(tenantId);
+        try {
+            return transactionService.executeInTransaction(callable);
+        } finally {
+            sessionAccessor.deleteTenantId();
+        }
+    }
+
+    boolean isStarted() {
+        return started;
+    }
+
+}
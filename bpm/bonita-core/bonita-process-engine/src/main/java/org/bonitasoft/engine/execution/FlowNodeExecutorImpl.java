@@ -14,6 +14,9 @@
 package org.bonitasoft.engine.execution;
 
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.bonitasoft.engine.SArchivingException;
 import org.bonitasoft.engine.archive.ArchiveService;
@@ -24,6 +27,7 @@ import org.bonitasoft.engine.commons.exceptions.SBonitaException;
 import org.bonitasoft.engine.core.connector.ConnectorInstanceService;
 import org.bonitasoft.engine.core.contract.data.ContractDataService;
 import org.bonitasoft.engine.core.contract.data.SContractDataDeletionException;
+import org.bonitasoft.engine.core.data.instance.TransientDataService;
 import org.bonitasoft.engine.core.operation.OperationService;
 import org.bonitasoft.engine.core.process.comment.api.SCommentAddException;
 import org.bonitasoft.engine.core.process.comment.api.SCommentService;
@@ -50,11 +54,14 @@ import org.bonitasoft.engine.core.process.instance.model.SStateCategory;
 import org.bonitasoft.engine.core.process.instance.model.archive.builder.SAAutomaticTaskInstanceBuilderFactory;
 import org.bonitasoft.engine.core.process.instance.model.builder.SUserTaskInstanceBuilderFactory;
 import org.bonitasoft.engine.core.process.instance.model.event.SBoundaryEventInstance;
+import org.bonitasoft.engine.data.instance.api.DataInstanceContainer;
 import org.bonitasoft.engine.data.instance.api.DataInstanceService;
 import org.bonitasoft.engine.dependency.model.ScopeType;
 import org.bonitasoft.engine.execution.archive.ProcessArchiver;
 import org.bonitasoft.engine.execution.state.FlowNodeStateManager;
 import org.bonitasoft.engine.execution.work.BPMWorkFactory;
+import org.bonitasoft.engine.log.technical.TechnicalLogSeverity;
+import org.bonitasoft.engine.log.technical.TechnicalLoggerService;
 import org.bonitasoft.engine.persistence.SBonitaReadException;
 import org.bonitasoft.engine.work.SWorkRegisterException;
 import org.bonitasoft.engine.work.WorkService;
@@ -98,6 +105,40 @@ public class FlowNodeExecutorImpl implements FlowNodeExecutor {
 
     private final ContractDataService contractDataService;
 
+    private final TransientDataService transientDataService;
+
+    /**
+     * maximum number of consecutive states a flow node goes through in a single work, 1 means one work per state
+     */
+    private final int maxStatesPerWork;
+
+    private final TechnicalLoggerService logger;
+
+    /**
+     * maximum number of root process instances whose saved works are counted at the same time: instances deleted while running, or ending on
+     * another node, are never reported and stay counted
+     */
+    static final int MAX_COUNTED_ROOT_PROCESS_INSTANCES = 10000;
+
+    private final AtomicLong numberOfSavedWorks = new AtomicLong();
+
+    private final Map<Long, AtomicLong> savedWorksPerRootProcessInstance = new ConcurrentHashMap<>();
+
+    public FlowNodeExecutorImpl(final FlowNodeStateManager flowNodeStateManager, final ActivityInstanceService activityInstanceManager,
+            final OperationService operationService, final ArchiveService archiveService,
+            final DataInstanceService dataInstanceService,
+            final ContainerRegistry containerRegistry, final ProcessDefinitionService processDefinitionService,
+            final SCommentService commentService,
+            final ProcessInstanceService processInstanceService,
+            final ConnectorInstanceService connectorInstanceService,
+            final ClassLoaderService classLoaderService, final WorkService workService, BPMWorkFactory workFactory,
+            final ContractDataService contractDataService, final EventInstanceService eventInstanceService,
+            final TransientDataService transientDataService) {
+        this(flowNodeStateManager, activityInstanceManager, operationService, archiveService, dataInstanceService, containerRegistry,
+                processDefinitionService, commentService, processInstanceService, connectorInstanceService, classLoaderService, workService,
+                workFactory, contractDataService, eventInstanceService, transientDataService, 1, null);
+    }
+
     public FlowNodeExecutorImpl(final FlowNodeStateManager flowNodeStateManager, final ActivityInstanceService activityInstanceManager,
             final OperationService operationService, final ArchiveService archiveService,
             final DataInstanceService dataInstanceService,
@@ -106,7 +147,8 @@ public class FlowNodeExecutorImpl implements FlowNodeExecutor {
             final ProcessInstanceService processInstanceService,
             final ConnectorInstanceService connectorInstanceService,
             final ClassLoaderService classLoaderService, final WorkService workService, BPMWorkFactory workFactory,
-            final ContractDataService contractDataService, final EventInstanceService eventInstanceService) {
+            final ContractDataService contractDataService, final EventInstanceService eventInstanceService,
+            final TransientDataService transientDataService, final int maxStatesPerWork, final TechnicalLoggerService logger) {
         super();
         this.flowNodeStateManager = flowNodeStateManager;
         activityInstanceService = activityInstanceManager;
@@ -124,6 +166,9 @@ public class FlowNodeExecutorImpl implements FlowNodeExecutor {
         this.commentService = commentService;
         this.contractDataService = contractDataService;
         this.eventInstanceService = eventInstanceService;
+        this.transientDataService = transientDataService;
+        this.maxStatesPerWork = Math.max(1, maxStatesPerWork);
+        this.logger = logger;
     }
 
     @Override
@@ -168,7 +213,18 @@ public class FlowNodeExecutorImpl implements FlowNodeExecutor {
             }
 
             final SProcessDefinition processDefinition = processDefinitionService.getProcessDefinition(processDefinitionId);
-            final FlowNodeState state = updateState(sFlowNodeInstance, processDefinition);
+            FlowNodeState state = updateState(sFlowNodeInstance, processDefinition);
+            int executedStates = 1;
+            // go on with the next states in the same work while they do not wait for anything: connectors leave the flow node executing
+            // and human tasks or waiting events stop on a stable state
+            while (executedStates < maxStatesPerWork && state != null && !sFlowNodeInstance.isStateExecuting() && mustBeExecutedInAWork(state)) {
+                archiveFlowNodeInstance(sFlowNodeInstance, false, processDefinitionId);
+                state = updateState(sFlowNodeInstance, processDefinition);
+                executedStates++;
+            }
+            if (executedStates > 1) {
+                reportSavedWorks(sFlowNodeInstance, executedStates - 1);
+            }
             if (!sFlowNodeInstance.isStateExecuting() && state != null) {
                 registerWork(state, sFlowNodeInstance);
             }
@@ -205,8 +261,53 @@ public class FlowNodeExecutorImpl implements FlowNodeExecutor {
         return state;
     }
 
+    private boolean mustBeExecutedInAWork(FlowNodeState state) {
+        return !state.isStable() && !state.isInterrupting();
+    }
+
+    private void reportSavedWorks(SFlowNodeInstance sFlowNodeInstance, int savedWorks) {
+        numberOfSavedWorks.addAndGet(savedWorks);
+        final long rootProcessInstanceId = sFlowNodeInstance.getRootProcessInstanceId();
+        AtomicLong savedWorksOfRootProcessInstance = savedWorksPerRootProcessInstance.get(rootProcessInstanceId);
+        if (savedWorksOfRootProcessInstance == null && savedWorksPerRootProcessInstance.size() < MAX_COUNTED_ROOT_PROCESS_INSTANCES) {
+            savedWorksOfRootProcessInstance = savedWorksPerRootProcessInstance.computeIfAbsent(rootProcessInstanceId, id -> new AtomicLong());
+        }
+        if (savedWorksOfRootProcessInstance != null) {
+            savedWorksOfRootProcessInstance.addAndGet(savedWorks);
+        }
+        if (logger != null && logger.isLoggable(getClass(), TechnicalLogSeverity.TRACE)) {
+            logger.log(getClass(), TechnicalLogSeverity.TRACE, "Executed " + (savedWorks + 1) + " states of flow node " + sFlowNodeInstance.getId()
+                    + " of process instance " + sFlowNodeInstance.getRootProcessInstanceId() + " in a single work, saved " + savedWorks
+                    + " works and transactions");
+        }
+    }
+
+    private void reportSavedWorksOfRootProcessInstance(final long rootProcessInstanceId) {
+        final AtomicLong savedWorks = savedWorksPerRootProcessInstance.remove(rootProcessInstanceId);
+        if (savedWorks != null && logger != null && logger.isLoggable(getClass(), TechnicalLogSeverity.DEBUG)) {
+            logger.log(getClass(), TechnicalLogSeverity.DEBUG, "Root process instance " + rootProcessInstanceId + " ended, executing consecutive states"
+                    + " of its flow nodes in a single work saved " + savedWorks.get() + " works and transactions on this node, "
+                    + numberOfSavedWorks.get() + " since the node started");
+        }
+    }
+
+    /**
+     * @return the number of works, and so of transactions, that were not needed because consecutive states were executed in the same work
+     */
+    public long getNumberOfSavedWorks() {
+        return numberOfSavedWorks.get();
+    }
+
+    /**
+     * @return the number of works saved on this node for the flow nodes of a root process instance that did not end yet
+     */
+    long getNumberOfSavedWorks(final long rootProcessInstanceId) {
+        final AtomicLong savedWorks = savedWorksPerRootProcessInstance.get(rootProcessInstanceId);
+        return savedWorks == null ? 0 : savedWorks.get();
+    }
+
     private void registerWork(FlowNodeState state, SFlowNodeInstance sFlowNodeInstance) throws SWorkRegisterException {
-        if (!state.isStable() && !state.isInterrupting()) {
+        if (mustBeExecutedInAWork(state)) {
             registerExecuteFlowNodeWork(sFlowNodeInstance);
         } else if (state.isTerminal()) {
             registerNotifyFinishWork(sFlowNodeInstance);
@@ -319,6 +420,9 @@ public class FlowNodeExecutorImpl implements FlowNodeExecutor {
     public void childReachedState(final SProcessInstance childProcInst, final ProcessInstanceState childState, final boolean hasActionsToExecute)
             throws SBonitaException {
         final long callerId = childProcInst.getCallerId();
+        if (isTerminalState(childState) && childProcInst.getId() == childProcInst.getRootProcessInstanceId()) {
+            reportSavedWorksOfRootProcessInstance(childProcInst.getId());
+        }
         if (isTerminalState(childState) && callerId > 0) {
             final SActivityInstance callActivityInstance = activityInstanceService.getActivityInstance(childProcInst.getCallerId());
             decrementToken(callActivityInstance);
@@ -357,6 +461,10 @@ public class FlowNodeExecutorImpl implements FlowNodeExecutor {
             throws SArchivingException {
         new ProcessArchiver().archiveFlowNodeInstance(flowNodeInstance, deleteAfterArchive, processDefinitionId, processInstanceService,
                 processDefinitionService, archiveService, dataInstanceService, activityInstanceService, connectorInstanceService, contractDataService);
+        if (deleteAfterArchive) {
+            // the flow node is completed: its transient data will not be read anymore
+            transientDataService.deleteDataInstances(flowNodeInstance.getId(), DataInstanceContainer.ACTIVITY_INSTANCE.name());
+        }
     }
 
 }
@@ -64,7 +64,6 @@ import org.bonitasoft.engine.core.process.definition.model.SReceiveTaskDefinitio
 import org.bonitasoft.engine.core.process.definition.model.SSendTaskDefinition;
 import org.bonitasoft.engine.core.process.definition.model.SUserFilterDefinition;
 import org.bonitasoft.engine.core.process.definition.model.event.SBoundaryEventDefinition;
-import org.bonitasoft.engine.core.process.definition.model.event.SCatchEventDefinition;
 import org.bonitasoft.engine.core.process.definition.model.event.SIntermediateCatchEventDefinition;
 import org.bonitasoft.engine.core.process.definition.model.event.SThrowEventDefinition;
 import org.bonitasoft.engine.core.process.instance.api.ActivityInstanceService;
@@ -159,6 +158,8 @@ public class StateBehaviors {
     private final RefBusinessDataService refBusinessDataService;
     private ProcessExecutor processExecutor;
     private final BPMWorkFactory workFactory;
+    // 0 to create the inner instances of multi instance activities one by one
+    private int multiInstanceCreationChunkSize;
 
     public StateBehaviors(final BPMInstancesCreator bpmInstancesCreator, final EventsHandler eventsHandler,
                           final ActivityInstanceService activityInstanceService, final UserFilterService userFilterService, final ClassLoaderService classLoaderService,
@@ -195,6 +196,14 @@ public class StateBehaviors {
         this.processExecutor = processExecutor;
     }
 
+    /**
+     * @param multiInstanceCreationChunkSize
+     *        number of inner instances of a multi instance activity inserted together, 0 inserts them one by one
+     */
+    public void setMultiInstanceCreationChunkSize(final int multiInstanceCreationChunkSize) {
+        this.multiInstanceCreationChunkSize = multiInstanceCreationChunkSize;
+    }
+
     public DataInstanceContainer getParentContainerType(final SFlowNodeInstance flowNodeInstance) {
         DataInstanceContainer parentContainerType;
         if (flowNodeInstance.getLogicalGroup(2) <= 0) {
@@ -711,17 +720,20 @@ public class StateBehaviors {
         try {
             final List<SBoundaryEventInstance> boundaryEventInstances = eventInstanceService.getActivityBoundaryEventInstances(activityInstance.getId(), 0,
                     QueryOptions.UNLIMITED_NUMBER_OF_RESULTS);
+            final List<SBoundaryEventInstance> boundaryEventInstancesToInterrupt = new ArrayList<>(boundaryEventInstances.size());
             for (final SBoundaryEventInstance boundaryEventInstance : boundaryEventInstances) {
                 // don't abort boundary event that put this activity in aborting state
                 if (activityInstance.getAbortedByBoundary() != boundaryEventInstance.getId()) {
-                    final boolean stable = boundaryEventInstance.isStable();
-                    final SCatchEventDefinition catchEventDef = processDefinition.getProcessContainer().getBoundaryEvent(boundaryEventInstance.getName());
-                    waitingEventsInterrupter.interruptWaitingEvents(processDefinition, boundaryEventInstance, catchEventDef);
-                    activityInstanceService.setStateCategory(boundaryEventInstance, categoryState);
-                    if (stable) {
-                        containerRegistry.executeFlowNode(processDefinition.getId(),
-                                boundaryEventInstance.getLogicalGroup(keyProvider.getParentProcessInstanceIndex()), boundaryEventInstance.getId());
-                    }
+                    boundaryEventInstancesToInterrupt.add(boundaryEventInstance);
+                }
+            }
+            waitingEventsInterrupter.interruptWaitingEvents(processDefinition, boundaryEventInstancesToInterrupt);
+            for (final SBoundaryEventInstance boundaryEventInstance : boundaryEventInstancesToInterrupt) {
+                final boolean stable = boundaryEventInstance.isStable();
+                activityInstanceService.setStateCategory(boundaryEventInstance, categoryState);
+                if (stable) {
+                    containerRegistry.executeFlowNode(processDefinition.getId(),
+                            boundaryEventInstance.getLogicalGroup(keyProvider.getParentProcessInstanceIndex()), boundaryEventInstance.getId());
                 }
             }
         } catch (final SBonitaException e) {
@@ -751,20 +763,35 @@ public class StateBehaviors {
         }
     }
 
+    /**
+     * Create the next inner instances of a multi instance activity, by chunks of {@link #setMultiInstanceCreationChunkSize(int)} when set.
+     * <p>
+     * Only the activity instances and their connector instances are written here. Data instances and pending mappings of an inner instance are
+     * created when it is initialized, in the work executing it, so they are not part of this transaction. A sequential multi instance creates its
+     * next inner instance when the previous one completes, creating them ahead would make them visible before they are executed.
+     */
     public List<SFlowNodeInstance> createInnerInstances(final long processDefinitionId, final SActivityDefinition activity,
             final SMultiInstanceActivityInstance flowNodeInstance, final int numberOfInstanceToCreate) throws SBonitaException {
         final SMultiInstanceActivityInstanceBuilderFactory keyProvider = BuilderFactory.get(SMultiInstanceActivityInstanceBuilderFactory.class);
         final long rootProcessInstanceId = flowNodeInstance.getLogicalGroup(keyProvider.getRootProcessInstanceIndex());
         final long parentProcessInstanceId = flowNodeInstance.getLogicalGroup(keyProvider.getParentProcessInstanceIndex());
-        int nbOfcreatedInstances = 0;
         final int nbOfInstances = flowNodeInstance.getNumberOfInstances();
-        final List<SFlowNodeInstance> createdInstances = new ArrayList<>();
-        for (int i = nbOfInstances; i < nbOfInstances + numberOfInstanceToCreate; i++) {
-            createdInstances.add(bpmInstancesCreator.createFlowNodeInstance(processDefinitionId, flowNodeInstance.getRootContainerId(),
-                    flowNodeInstance.getId(), SFlowElementsContainerType.FLOWNODE, activity, rootProcessInstanceId, parentProcessInstanceId, true, i,
-                    SStateCategory.NORMAL, -1));
-            nbOfcreatedInstances++;
+        final int end = nbOfInstances + numberOfInstanceToCreate;
+        final List<SFlowNodeInstance> createdInstances = new ArrayList<>(numberOfInstanceToCreate);
+        if (multiInstanceCreationChunkSize > 0) {
+            for (int first = nbOfInstances; first < end; first += multiInstanceCreationChunkSize) {
+                createdInstances.addAll(bpmInstancesCreator.createInnerActivityInstances(processDefinitionId, flowNodeInstance.getRootContainerId(),
+                        flowNodeInstance.getId(), activity, rootProcessInstanceId, parentProcessInstanceId, first,
+                        Math.min(multiInstanceCreationChunkSize, end - first)));
+            }
+        } else {
+            for (int i = nbOfInstances; i < end; i++) {
+                createdInstances.add(bpmInstancesCreator.createFlowNodeInstance(processDefinitionId, flowNodeInstance.getRootContainerId(),
+                        flowNodeInstance.getId(), SFlowElementsContainerType.FLOWNODE, activity, rootProcessInstanceId, parentProcessInstanceId, true, i,
+                        SStateCategory.NORMAL, -1));
+            }
         }
+        final int nbOfcreatedInstances = createdInstances.size();
         activityInstanceService.addMultiInstanceNumberOfActiveActivities(flowNodeInstance, nbOfcreatedInstances);
         final int tokenCount = flowNodeInstance.getTokenCount() + nbOfcreatedInstances;
         activityInstanceService.setTokenCount(flowNodeInstance, tokenCount);
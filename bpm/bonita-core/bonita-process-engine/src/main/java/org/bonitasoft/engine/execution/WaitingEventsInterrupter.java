@@ -17,6 +17,7 @@ package org.bonitasoft.engine.execution;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 
 import org.bonitasoft.engine.builder.BuilderFactory;
 import org.bonitasoft.engine.commons.exceptions.SBonitaException;
@@ -32,6 +33,7 @@ import org.bonitasoft.engine.core.process.instance.model.event.SCatchEventInstan
 import org.bonitasoft.engine.core.process.instance.model.event.SIntermediateCatchEventInstance;
 import org.bonitasoft.engine.core.process.instance.model.event.handling.SWaitingEvent;
 import org.bonitasoft.engine.execution.job.JobNameBuilder;
+import org.bonitasoft.engine.execution.timer.TimerEventScheduler;
 import org.bonitasoft.engine.log.technical.TechnicalLogSeverity;
 import org.bonitasoft.engine.log.technical.TechnicalLoggerService;
 import org.bonitasoft.engine.persistence.FilterOption;
@@ -49,23 +51,67 @@ public class WaitingEventsInterrupter {
 
     private final EventInstanceService eventInstanceService;
     private final SchedulerService schedulerService;
+    private final TimerEventScheduler timerEventScheduler;
     private final TechnicalLoggerService logger;
 
     private static final int MAX_NUMBER_OF_RESULTS = 100;
 
     public WaitingEventsInterrupter(final EventInstanceService eventInstanceService, final SchedulerService schedulerService, final TechnicalLoggerService logger) {
+        this(eventInstanceService, schedulerService, null, logger);
+    }
+
+    public WaitingEventsInterrupter(final EventInstanceService eventInstanceService, final SchedulerService schedulerService,
+            final TimerEventScheduler timerEventScheduler, final TechnicalLoggerService logger) {
         this.eventInstanceService = eventInstanceService;
         this.schedulerService = schedulerService;
+        this.timerEventScheduler = timerEventScheduler;
         this.logger = logger;
     }
 
     public void interruptWaitingEvents(final SProcessDefinition processDefinition, final SCatchEventInstance catchEventInstance,
                                        final SCatchEventDefinition catchEventDef) throws SBonitaException {
-        interruptTimerEvent(processDefinition, catchEventInstance, catchEventDef);
+        if (!catchEventDef.getTimerEventTriggerDefinitions().isEmpty()
+                && !cancelTimersOfTimerEventScheduler(Collections.singletonList(catchEventInstance.getId())).contains(catchEventInstance.getId())) {
+            interruptTimerEvent(processDefinition, catchEventInstance, catchEventDef);
+        }
         // message, signal and error
         interruptWaitingEvents(catchEventInstance.getId(), catchEventDef);
     }
 
+    /**
+     * Interrupt the waiting events of several boundary events, the timers handled by the {@link TimerEventScheduler} being cancelled all
+     * at once.
+     */
+    public void interruptWaitingEvents(final SProcessDefinition processDefinition, final List<SBoundaryEventInstance> boundaryEventInstances)
+            throws SBonitaException {
+        final List<Long> timerEventInstanceIds = new ArrayList<>();
+        for (final SBoundaryEventInstance boundaryEventInstance : boundaryEventInstances) {
+            if (!getBoundaryEventDefinition(processDefinition, boundaryEventInstance).getTimerEventTriggerDefinitions().isEmpty()) {
+                timerEventInstanceIds.add(boundaryEventInstance.getId());
+            }
+        }
+        final Set<Long> cancelledTimers = cancelTimersOfTimerEventScheduler(timerEventInstanceIds);
+        for (final SBoundaryEventInstance boundaryEventInstance : boundaryEventInstances) {
+            final SCatchEventDefinition catchEventDef = getBoundaryEventDefinition(processDefinition, boundaryEventInstance);
+            if (!cancelledTimers.contains(boundaryEventInstance.getId())) {
+                interruptTimerEvent(processDefinition, boundaryEventInstance, catchEventDef);
+            }
+            interruptWaitingEvents(boundaryEventInstance.getId(), catchEventDef);
+        }
+    }
+
+    private SCatchEventDefinition getBoundaryEventDefinition(final SProcessDefinition processDefinition,
+            final SBoundaryEventInstance boundaryEventInstance) {
+        return processDefinition.getProcessContainer().getBoundaryEvent(boundaryEventInstance.getName());
+    }
+
+    private Set<Long> cancelTimersOfTimerEventScheduler(final List<Long> eventInstanceIds) throws SBonitaException {
+        if (eventInstanceIds.isEmpty() || timerEventScheduler == null || !timerEventScheduler.isEnabled()) {
+            return Collections.emptySet();
+        }
+        return timerEventScheduler.cancel(eventInstanceIds);
+    }
+
     private void interruptWaitingEvents(final long instanceId, final SCatchEventDefinition catchEventDef)
             throws SBonitaReadException, SWaitingEventModificationException {
         if (!catchEventDef.getEventTriggers().isEmpty()) {
@@ -66,6 +66,7 @@ import org.bonitasoft.engine.data.instance.exception.SDataInstanceException;
 import org.bonitasoft.engine.execution.ContainerRegistry;
 import org.bonitasoft.engine.execution.ProcessExecutor;
 import org.bonitasoft.engine.execution.ProcessInstanceInterruptor;
+import org.bonitasoft.engine.execution.timer.TimerEventScheduler;
 import org.bonitasoft.engine.execution.work.BPMWorkFactory;
 import org.bonitasoft.engine.expression.exception.SExpressionException;
 import org.bonitasoft.engine.log.technical.TechnicalLoggerService;
@@ -115,7 +116,8 @@ public class EventsHandler {
             final ProcessInstanceService processInstanceService, final FlowNodeInstanceService flowNodeInstanceService,
             final TechnicalLoggerService logger,
             OperationService operationService,
-            MessagesHandlingService messagesHandlingService, WorkService workService, BPMWorkFactory workFactory) {
+            MessagesHandlingService messagesHandlingService, WorkService workService, BPMWorkFactory workFactory,
+            TimerEventScheduler timerEventScheduler) {
         this.eventInstanceService = eventInstanceService;
         this.processDefinitionService = processDefinitionService;
         this.containerRegistry = containerRegistry;
@@ -124,7 +126,8 @@ public class EventsHandler {
         this.logger = logger;
         this.operationService = operationService;
         handlers = new HashMap<>(4);
-        handlers.put(SEventTriggerType.TIMER, new TimerEventHandlerStrategy(expressionResolverService, schedulerService, eventInstanceService, logger));
+        handlers.put(SEventTriggerType.TIMER, new TimerEventHandlerStrategy(expressionResolverService, schedulerService, eventInstanceService,
+                timerEventScheduler, logger));
         handlers.put(SEventTriggerType.MESSAGE, new MessageEventHandlerStrategy(expressionResolverService, eventInstanceService,
                 bpmInstancesCreator, processDefinitionService, messagesHandlingService));
         handlers.put(SEventTriggerType.SIGNAL,
@@ -41,6 +41,7 @@ import org.bonitasoft.engine.core.process.instance.model.event.trigger.STimerEve
 import org.bonitasoft.engine.core.process.instance.model.event.trigger.impl.STimerEventTriggerInstanceImpl;
 import org.bonitasoft.engine.data.instance.api.DataInstanceContainer;
 import org.bonitasoft.engine.execution.job.JobNameBuilder;
+import org.bonitasoft.engine.execution.timer.TimerEventScheduler;
 import org.bonitasoft.engine.expression.exception.SExpressionDependencyMissingException;
 import org.bonitasoft.engine.expression.exception.SExpressionEvaluationException;
 import org.bonitasoft.engine.expression.exception.SExpressionTypeUnknownException;
@@ -75,25 +76,37 @@ public class TimerEventHandlerStrategy extends EventHandlerStrategy {
 
     private final EventInstanceService eventInstanceService;
 
+    private final TimerEventScheduler timerEventScheduler;
+
     private final TechnicalLoggerService logger;
 
     public TimerEventHandlerStrategy(final ExpressionResolverService expressionResolverService, final SchedulerService schedulerService,
             final EventInstanceService eventInstanceService, final TechnicalLoggerService logger) {
+        this(expressionResolverService, schedulerService, eventInstanceService, null, logger);
+    }
+
+    public TimerEventHandlerStrategy(final ExpressionResolverService expressionResolverService, final SchedulerService schedulerService,
+            final EventInstanceService eventInstanceService, final TimerEventScheduler timerEventScheduler, final TechnicalLoggerService logger) {
         this.schedulerService = schedulerService;
         this.expressionResolverService = expressionResolverService;
         this.eventInstanceService = eventInstanceService;
+        this.timerEventScheduler = timerEventScheduler;
         this.logger = logger;
     }
 
     @Override
     public void handleCatchEvent(final SProcessDefinition processDefinition, final SEventDefinition eventDefinition, final SCatchEventInstance eventInstance,
             final SEventTriggerDefinition sEventTriggerDefinition) throws SBonitaException {
-        final String jobName = JobNameBuilder.getTimerEventJobName(processDefinition.getId(), eventDefinition, eventInstance);
-        final SJobDescriptor jobDescriptor = getJobDescriptor(jobName);
-        final List<SJobParameter> jobParameters = getJobParameters(processDefinition, eventDefinition, eventInstance);
         STimerEventTriggerDefinition timerEventTriggerDefinition = (STimerEventTriggerDefinition) sEventTriggerDefinition;
         final Object timerCondition = evaluateTimerCondition(timerEventTriggerDefinition, processDefinition.getId(),
                 eventInstance != null ? eventInstance.getParentProcessInstanceId() : null);
+        if (isHandledByTimerEventScheduler(timerEventTriggerDefinition, eventInstance)) {
+            timerEventScheduler.schedule(eventInstance, getTrigger(timerEventTriggerDefinition, timerCondition).getStartDate().getTime());
+            return;
+        }
+        final String jobName = JobNameBuilder.getTimerEventJobName(processDefinition.getId(), eventDefinition, eventInstance);
+        final SJobDescriptor jobDescriptor = getJobDescriptor(jobName);
+        final List<SJobParameter> jobParameters = getJobParameters(processDefinition, eventDefinition, eventInstance);
         Trigger trigger = scheduleJob(timerEventTriggerDefinition, jobDescriptor, jobParameters, timerCondition);
         if (timerEventTriggerDefinition.getTimerType() != STimerType.CYCLE && eventInstance != null) {
             final STimerEventTriggerInstance sEventTriggerInstance
@@ -102,6 +115,11 @@ public class TimerEventHandlerStrategy extends EventHandlerStrategy {
         }
     }
 
+    private boolean isHandledByTimerEventScheduler(final STimerEventTriggerDefinition timerEventTriggerDefinition, final SCatchEventInstance eventInstance) {
+        return eventInstance != null && timerEventTriggerDefinition.getTimerType() != STimerType.CYCLE && timerEventScheduler != null
+                && timerEventScheduler.isEnabled();
+    }
+
     protected Trigger getTrigger(final STimerEventTriggerDefinition timerTrigger, Object timerCondition)
             throws SBonitaException {
         Date startDate;
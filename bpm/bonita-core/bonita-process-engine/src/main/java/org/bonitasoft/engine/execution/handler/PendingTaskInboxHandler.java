@@ -0,0 +1,91 @@
+/**
+ * Copyright (C) 2018 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.execution.handler;
+
+import java.util.UUID;
+
+import org.bonitasoft.engine.actor.mapping.ActorMappingService;
+import org.bonitasoft.engine.actor.mapping.model.SActorMember;
+import org.bonitasoft.engine.commons.exceptions.SBonitaException;
+import org.bonitasoft.engine.core.process.instance.api.ActivityInstanceService;
+import org.bonitasoft.engine.events.model.SEvent;
+import org.bonitasoft.engine.events.model.SHandlerExecutionException;
+import org.bonitasoft.engine.identity.model.SUserMembership;
+import org.bonitasoft.engine.service.TenantServiceAccessor;
+import org.bonitasoft.engine.service.impl.ServiceAccessorFactory;
+
+/**
+ * Keep the pending task inbox up to date when memberships of users or members of actors are created, updated or deleted.
+ */
+public class PendingTaskInboxHandler implements SProcessInstanceHandler<SEvent> {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final String ACTOR_MEMBER_CREATED = ActorMappingService.ACTOR_MEMBER + SEvent.CREATED;
+
+    private final long tenantId;
+
+    private final String identifier;
+
+    public PendingTaskInboxHandler(final long tenantId) {
+        this(tenantId, UUID.randomUUID().toString());
+    }
+
+    public PendingTaskInboxHandler(final long tenantId, final String identifier) {
+        this.tenantId = tenantId;
+        this.identifier = identifier;
+    }
+
+    @Override
+    public void execute(final SEvent event) throws SHandlerExecutionException {
+        final TenantServiceAccessor tenantServiceAccessor = getTenantServiceAccessor();
+        final ActivityInstanceService activityInstanceService = tenantServiceAccessor.getActivityInstanceService();
+        try {
+            if (event.getObject() instanceof SUserMembership) {
+                activityInstanceService.updatePendingTaskInboxOfUser(((SUserMembership) event.getObject()).getUserId());
+            } else {
+                final SActorMember actorMember = (SActorMember) event.getObject();
+                if (ACTOR_MEMBER_CREATED.equals(event.getType())) {
+                    // the actor can have many pending tasks: fill their inboxes once the actor member is committed
+                    tenantServiceAccessor.getWorkService().registerWork(tenantServiceAccessor.getBPMWorkFactory()
+                            .createAddActorMemberToPendingTaskInboxWorkDescriptor(actorMember.getActorId(), actorMember.getUserId(),
+                                    actorMember.getGroupId(), actorMember.getRoleId()));
+                } else {
+                    activityInstanceService.updatePendingTaskInboxOfActor(actorMember.getActorId());
+                }
+            }
+        } catch (final SBonitaException e) {
+            throw new SHandlerExecutionException(e);
+        }
+    }
+
+    private TenantServiceAccessor getTenantServiceAccessor() throws SHandlerExecutionException {
+        try {
+            return ServiceAccessorFactory.getInstance().createTenantServiceAccessor(tenantId);
+        } catch (final Exception e) {
+            throw new SHandlerExecutionException(e.getMessage(), null);
+        }
+    }
+
+    @Override
+    public boolean isInterested(final SEvent event) {
+        return event.getObject() instanceof SUserMembership || event.getObject() instanceof SActorMember;
+    }
+
+    @Override
+    public String getIdentifier() {
+        return identifier;
+    }
+
+}
@@ -30,7 +30,11 @@ public class JobNameBuilder {
         if (SFlowNodeType.START_EVENT.equals(eventDefinition.getType())) {
             return PREFIX + processDefinitionId + eventDefinition.getName();
         }
-        return PREFIX + flowNodeInstance.getId();
+        return getTimerEventJobName(flowNodeInstance.getId());
+    }
+
+    public static String getTimerEventJobName(final long flowNodeInstanceId) {
+        return PREFIX + flowNodeInstanceId;
     }
 
     public static String getTimerEventJobName(final Long processDefinitionId, final SEventDefinition eventDefinition, final long parentProcessInstanceId,
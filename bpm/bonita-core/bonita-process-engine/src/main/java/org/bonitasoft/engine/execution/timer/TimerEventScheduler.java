@@ -0,0 +1,397 @@
+/**
+ * Copyright (C) 2018 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.execution.timer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.bonitasoft.engine.commons.TenantLifecycleService;
+import org.bonitasoft.engine.commons.exceptions.SBonitaException;
+import org.bonitasoft.engine.core.process.instance.api.event.EventInstanceService;
+import org.bonitasoft.engine.core.process.instance.model.event.SCatchEventInstance;
+import org.bonitasoft.engine.core.process.instance.model.event.trigger.STimerEventTriggerInstance;
+import org.bonitasoft.engine.core.process.instance.model.event.trigger.impl.STimerEventTriggerInstanceImpl;
+import org.bonitasoft.engine.execution.work.BPMWorkFactory;
+import org.bonitasoft.engine.log.technical.TechnicalLogSeverity;
+import org.bonitasoft.engine.log.technical.TechnicalLoggerService;
+import org.bonitasoft.engine.sessionaccessor.SessionAccessor;
+import org.bonitasoft.engine.transaction.BonitaTransactionSynchronization;
+import org.bonitasoft.engine.transaction.STransactionNotFoundException;
+import org.bonitasoft.engine.transaction.TransactionState;
+import org.bonitasoft.engine.transaction.UserTransactionService;
+import org.bonitasoft.engine.work.WorkService;
+
+/**
+ * Schedule the date and duration timers of intermediate catch and boundary events without using a Quartz job per timer.
+ * <p>
+ * Timers are only stored as {@link STimerEventTriggerInstance}s having {@link #JOB_TRIGGER_NAME} as job trigger name. The timers due in
+ * the next {@code windowMillis} are loaded in a {@link TimingWheel} that is advanced every {@code tickMillis}; expired timers are
+ * triggered by {@link TriggerTimerEventsWork}s, each one handling up to {@code batchSize} timers. Timers created, rescheduled or
+ * cancelled in a transaction are added to or removed from the wheel when it commits. A timer that fails to be triggered is triggered again
+ * with the next window, up to {@code maxAttempts} times: it is then scheduled as a Quartz job, that is recorded as a failed job if it fails
+ * again and can be replayed as such.
+ * <p>
+ * When the scheduler is disabled, timers are scheduled as Quartz jobs. Timer start events, event sub-processes and cycle timers are always
+ * scheduled as Quartz jobs.
+ */
+public class TimerEventScheduler implements TenantLifecycleService {
+
+    /**
+     * Job trigger name of the timer event trigger instances handled by this scheduler
+     */
+    public static final String JOB_TRIGGER_NAME = "TimerEventScheduler";
+
+    private static final int LOAD_PAGE_SIZE = 1000;
+
+    private static final int WHEEL_SIZE = 512;
+
+    private final boolean enabled;
+    private final long tickMillis;
+    private final long windowMillis;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final EventInstanceService eventInstanceService;
+    private final WorkService workService;
+    private final BPMWorkFactory workFactory;
+    private final UserTransactionService userTransactionService;
+    private final SessionAccessor sessionAccessor;
+    private final TechnicalLoggerService loggerService;
+    private final Long tenantId;
+
+    // the fields below are guarded by this
+    private TimingWheel wheel;
+    private long windowEnd;
+    // timers expired for which a work is registered but not yet executed: they must not be loaded again
+    private final Set<Long> triggering = new HashSet<>();
+    // number of times timers failed to be triggered, by event instance
+    private final Map<Long, Integer> failedAttempts = new HashMap<>();
+
+    private ScheduledExecutorService ticker;
+
+    public TimerEventScheduler(boolean enabled, long tickMillis, long windowMillis, int batchSize, int maxAttempts,
+            EventInstanceService eventInstanceService, WorkService workService, BPMWorkFactory workFactory, UserTransactionService userTransactionService,
+            SessionAccessor sessionAccessor, TechnicalLoggerService loggerService, Long tenantId) {
+        this.enabled = enabled;
+        this.tickMillis = tickMillis;
+        this.windowMillis = Math.max(windowMillis, tickMillis);
+        this.batchSize = batchSize;
+        this.maxAttempts = Math.max(maxAttempts, 1);
+        this.eventInstanceService = eventInstanceService;
+        this.workService = workService;
+        this.workFactory = workFactory;
+        this.userTransactionService = userTransactionService;
+        this.sessionAccessor = sessionAccessor;
+        this.loggerService = loggerService;
+        this.tenantId = tenantId;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Persist the timer of the given catch event. It is added to the wheel when the current transaction commits.
+     */
+    public STimerEventTriggerInstance schedule(SCatchEventInstance eventInstance, long executionDate) throws SBonitaException {
+        final STimerEventTriggerInstanceImpl timerEventTriggerInstance = new STimerEventTriggerInstanceImpl(eventInstance.getId(),
+                eventInstance.getName(), executionDate, JOB_TRIGGER_NAME);
+        eventInstanceService.createTimerEventTriggerInstance(timerEventTriggerInstance);
+        userTransactionService.registerBonitaSynchronization(new UpdateWheelSynchronization(eventInstance.getId(), executionDate));
+        return timerEventTriggerInstance;
+    }
+
+    /**
+     * Move the timer of the given event instance, whose execution date was updated in the current transaction, when the transaction commits.
+     */
+    public void reschedule(long eventInstanceId, long executionDate) throws STransactionNotFoundException {
+        userTransactionService.registerBonitaSynchronization(new UpdateWheelSynchronization(eventInstanceId, executionDate));
+    }
+
+    /**
+     * Delete the timers of the given event instances using a single statement. They are removed from the wheel when the current transaction
+     * commits.
+     *
+     * @return the ids of the event instances that had a timer handled by this scheduler
+     */
+    public Set<Long> cancel(Collection<Long> eventInstanceIds) throws SBonitaException {
+        final List<STimerEventTriggerInstance> timers = eventInstanceService.getTimerEventTriggerInstances(JOB_TRIGGER_NAME, eventInstanceIds);
+        if (timers.isEmpty()) {
+            return Collections.emptySet();
+        }
+        final Set<Long> cancelled = new HashSet<>();
+        for (final STimerEventTriggerInstance timer : timers) {
+            cancelled.add(timer.getEventInstanceId());
+        }
+        eventInstanceService.deleteTimerEventTriggerInstances(JOB_TRIGGER_NAME, cancelled);
+        for (final Long eventInstanceId : cancelled) {
+            userTransactionService.registerBonitaSynchronization(new UpdateWheelSynchronization(eventInstanceId, -1));
+        }
+        return cancelled;
+    }
+
+    /**
+     * Called by {@link TriggerTimerEventsWork} once the given timers are handled, whether they were triggered or not
+     */
+    public synchronized void triggered(Collection<Long> eventInstanceIds) {
+        triggering.removeAll(eventInstanceIds);
+    }
+
+    /**
+     * Called by {@link TriggerTimerEventsWork} once it tried to trigger the given timers.
+     *
+     * @param failures the timers that failed to be triggered, with the cause of their failure
+     * @return the timers that failed {@code maxAttempts} times: they must no longer be handled by this scheduler
+     */
+    public synchronized List<Long> triggered(Collection<Long> eventInstanceIds, Map<Long, Exception> failures) {
+        triggering.removeAll(eventInstanceIds);
+        final List<Long> failedTooManyTimes = new ArrayList<>();
+        for (final Long eventInstanceId : eventInstanceIds) {
+            final Exception failure = failures.get(eventInstanceId);
+            if (failure == null) {
+                failedAttempts.remove(eventInstanceId);
+                continue;
+            }
+            final int attempts = failedAttempts.merge(eventInstanceId, 1, Integer::sum);
+            if (attempts >= maxAttempts) {
+                failedAttempts.remove(eventInstanceId);
+                failedTooManyTimes.add(eventInstanceId);
+            } else if (loggerService.isLoggable(TimerEventScheduler.class, TechnicalLogSeverity.WARNING)) {
+                loggerService.log(TimerEventScheduler.class, TechnicalLogSeverity.WARNING, "Unable to trigger the timer of event instance "
+                        + eventInstanceId + " (attempt " + attempts + " of " + maxAttempts + "), it will be triggered again with the next window of timers",
+                        failure);
+            }
+        }
+        return failedTooManyTimes;
+    }
+
+    @Override
+    public synchronized void start() throws SBonitaException {
+        if (!enabled || ticker != null) {
+            return;
+        }
+        log(TechnicalLogSeverity.INFO, "Starting the timer event scheduler.");
+        initWheel(System.currentTimeMillis());
+        ticker = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+            @Override
+            public Thread newThread(Runnable r) {
+                final Thread thread = new Thread(r, "Bonita-Timer-Scheduler-" + tenantId);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        ticker.scheduleWithFixedDelay(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    tick(System.currentTimeMillis());
+                } catch (final Exception e) {
+                    loggerService.log(TimerEventScheduler.class, TechnicalLogSeverity.ERROR, "Error while triggering timers", e);
+                }
+            }
+        }, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void stop() throws SBonitaException {
+        final ScheduledExecutorService stoppedTicker;
+        synchronized (this) {
+            if (ticker == null) {
+                return;
+            }
+            stoppedTicker = ticker;
+            ticker = null;
+        }
+        log(TechnicalLogSeverity.INFO, "Stopping the timer event scheduler...");
+        stoppedTicker.shutdown();
+        try {
+            if (!stoppedTicker.awaitTermination(5000, TimeUnit.MILLISECONDS)) {
+                log(TechnicalLogSeverity.WARNING, "Failed to terminate the thread of the timer event scheduler.");
+            }
+        } catch (final InterruptedException ignored) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            // timers are loaded again from the database on start
+            wheel = null;
+            triggering.clear();
+            failedAttempts.clear();
+        }
+        log(TechnicalLogSeverity.INFO, "Timer event scheduler successfully stopped.");
+    }
+
+    @Override
+    public void pause() throws SBonitaException {
+        stop();
+    }
+
+    @Override
+    public void resume() throws SBonitaException {
+        start();
+    }
+
+    synchronized void initWheel(final long now) {
+        wheel = new TimingWheel(tickMillis, WHEEL_SIZE, now);
+        // the first tick loads the first window
+        windowEnd = 0;
+    }
+
+    void tick(final long now) throws Exception {
+        sessionAccessor.setTenantId(tenantId);
+        try {
+            if (needsNextWindow(now)) {
+                loadWindow(now + windowMillis);
+            }
+            final List<Long> expired = advance(now);
+            if (!expired.isEmpty()) {
+                registerTriggerWorks(expired);
+            }
+        } finally {
+            sessionAccessor.deleteTenantId();
+        }
+    }
+
+    private synchronized boolean needsNextWindow(final long now) {
+        return wheel != null && now + tickMillis >= windowEnd;
+    }
+
+    /*
+     * the end of the window is moved before the timers are read so that the timers committed while they are read are added by their
+     * synchronization: a timer can be added twice, which only replaces it
+     */
+    private void loadWindow(final long newWindowEnd) throws Exception {
+        synchronized (this) {
+            windowEnd = newWindowEnd;
+        }
+        final int loaded = userTransactionService.executeInTransaction(new Callable<Integer>() {
+
+            @Override
+            public Integer call() throws Exception {
+                int count = 0;
+                long lastExecutionDate = Long.MIN_VALUE;
+                long lastId = 0;
+                List<STimerEventTriggerInstance> timers;
+                do {
+                    timers = eventInstanceService.getTimerEventTriggerInstancesToExecute(JOB_TRIGGER_NAME, newWindowEnd, lastExecutionDate, lastId,
+                            LOAD_PAGE_SIZE);
+                    for (final STimerEventTriggerInstance timer : timers) {
+                        if (addToWheel(timer.getEventInstanceId(), timer.getExecutionDate())) {
+                            count++;
+                        }
+                        lastExecutionDate = timer.getExecutionDate();
+                        lastId = timer.getId();
+                    }
+                } while (timers.size() == LOAD_PAGE_SIZE);
+                return count;
+            }
+        });
+        log(TechnicalLogSeverity.DEBUG, "Loaded " + loaded + " timers due before " + newWindowEnd);
+    }
+
+    private synchronized boolean addToWheel(final long eventInstanceId, final long executionDate) {
+        if (wheel == null || triggering.contains(eventInstanceId)) {
+            return false;
+        }
+        wheel.add(eventInstanceId, executionDate);
+        return true;
+    }
+
+    private synchronized void updateWheel(final long eventInstanceId, final long executionDate) {
+        if (wheel == null) {
+            return;
+        }
+        if (executionDate >= 0 && executionDate < windowEnd) {
+            addToWheel(eventInstanceId, executionDate);
+        } else {
+            // cancelled or now due after the current window: it will be loaded with its window
+            wheel.remove(eventInstanceId);
+            if (executionDate < 0) {
+                failedAttempts.remove(eventInstanceId);
+            }
+        }
+    }
+
+    private synchronized List<Long> advance(final long now) {
+        if (wheel == null) {
+            return Collections.emptyList();
+        }
+        final List<Long> expired = wheel.advance(now);
+        triggering.addAll(expired);
+        return expired;
+    }
+
+    private void registerTriggerWorks(final List<Long> expired) throws Exception {
+        try {
+            userTransactionService.executeInTransaction(new Callable<Void>() {
+
+                @Override
+                public Void call() throws Exception {
+                    for (int from = 0; from < expired.size(); from += batchSize) {
+                        final List<Long> batch = new ArrayList<>(expired.subList(from, Math.min(from + batchSize, expired.size())));
+                        workService.registerWork(workFactory.createTriggerTimerEventsWorkDescriptor(batch));
+                    }
+                    return null;
+                }
+            });
+            log(TechnicalLogSeverity.DEBUG, "Triggering " + expired.size() + " timers");
+        } catch (final Exception e) {
+            // the timers are still in database: they will be loaded again with the next window
+            triggered(expired);
+            throw e;
+        }
+    }
+
+    private void log(final TechnicalLogSeverity severity, final String message) {
+        if (loggerService.isLoggable(TimerEventScheduler.class, severity)) {
+            loggerService.log(TimerEventScheduler.class, severity, message);
+        }
+    }
+
+    private class UpdateWheelSynchronization implements BonitaTransactionSynchronization {
+
+        private final long eventInstanceId;
+
+        // -1 when the timer is cancelled
+        private final long executionDate;
+
+        UpdateWheelSynchronization(final long eventInstanceId, final long executionDate) {
+            this.eventInstanceId = eventInstanceId;
+            this.executionDate = executionDate;
+        }
+
+        @Override
+        public void beforeCommit() {
+        }
+
+        @Override
+        public void afterCompletion(final TransactionState txState) {
+            if (txState == TransactionState.COMMITTED) {
+                updateWheel(eventInstanceId, executionDate);
+            }
+        }
+    }
+
+}
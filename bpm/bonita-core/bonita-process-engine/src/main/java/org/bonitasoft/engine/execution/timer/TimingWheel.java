@@ -0,0 +1,247 @@
+/**
+ * Copyright (C) 2018 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.execution.timer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hierarchical timing wheel holding timers identified by a {@code long}.
+ * <p>
+ * Level 0 has one bucket per tick, level {@code n} one bucket per {@code wheelSize^n} ticks. A timer is put in the lowest level
+ * able to hold it and moved down one level each time the wheel reaches its bucket, so adding, removing and expiring a timer do not
+ * depend on the number of timers. A timer expires at the first tick that is not before its due date.
+ * <p>
+ * Not thread safe.
+ */
+public class TimingWheel {
+
+    private final long tickMillis;
+
+    private final int wheelSize;
+
+    private final List<Entry[]> levels = new ArrayList<>();
+
+    private final Map<Long, Entry> entries = new HashMap<>();
+
+    // expired timers waiting for the next call to advance
+    private final List<Entry> expired = new ArrayList<>();
+
+    private long currentTick;
+
+    /**
+     * @param tickMillis
+     *        duration of a tick, i.e. the precision of the wheel
+     * @param wheelSize
+     *        number of buckets of each level
+     * @param startTime
+     *        current time of the wheel
+     */
+    public TimingWheel(final long tickMillis, final int wheelSize, final long startTime) {
+        if (tickMillis <= 0 || wheelSize < 2) {
+            throw new IllegalArgumentException("Invalid timing wheel: tick=" + tickMillis + "ms, size=" + wheelSize);
+        }
+        this.tickMillis = tickMillis;
+        this.wheelSize = wheelSize;
+        this.currentTick = startTime / tickMillis;
+    }
+
+    /**
+     * Add a timer, replacing the existing one having the same id if any. A timer that is already due expires on the next call to
+     * {@link #advance(long)}.
+     */
+    public void add(final long id, final long dueTime) {
+        remove(id);
+        final Entry entry = new Entry(id, dueTime);
+        entries.put(id, entry);
+        insert(entry);
+    }
+
+    /**
+     * @return true if the timer was in the wheel
+     */
+    public boolean remove(final long id) {
+        final Entry entry = entries.remove(id);
+        if (entry == null) {
+            return false;
+        }
+        if (entry.level < 0) {
+            expired.remove(entry);
+        } else {
+            unlink(entry);
+        }
+        return true;
+    }
+
+    public boolean contains(final long id) {
+        return entries.containsKey(id);
+    }
+
+    /**
+     * @return the due date of the timer or -1 if it is not in the wheel
+     */
+    public long getDueTime(final long id) {
+        final Entry entry = entries.get(id);
+        return entry == null ? -1 : entry.dueTime;
+    }
+
+    /**
+     * Move the wheel to the given time.
+     *
+     * @return the ids of the timers that expired, they are removed from the wheel
+     */
+    public List<Long> advance(final long now) {
+        final long targetTick = now / tickMillis;
+        while (currentTick < targetTick) {
+            if (entries.size() == expired.size()) {
+                // nothing left in the buckets: jump directly to the target
+                currentTick = targetTick;
+                break;
+            }
+            currentTick++;
+            cascade();
+            final Entry[] level0 = levels.get(0);
+            final int index = (int) (currentTick % wheelSize);
+            Entry entry = level0[index];
+            level0[index] = null;
+            while (entry != null) {
+                final Entry next = entry.next;
+                entry.prev = null;
+                entry.next = null;
+                entry.level = -1;
+                expired.add(entry);
+                entry = next;
+            }
+        }
+        final List<Long> expiredIds = new ArrayList<>(expired.size());
+        for (final Entry entry : expired) {
+            entries.remove(entry.id);
+            expiredIds.add(entry.id);
+        }
+        expired.clear();
+        return expiredIds;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public void clear() {
+        entries.clear();
+        expired.clear();
+        levels.clear();
+    }
+
+    /*
+     * when the current tick is a multiple of wheelSize^n, the bucket of level n matching the current tick holds the timers that are now
+     * within reach of level n-1: move them down, starting from the highest level so that they can be moved down again
+     */
+    private void cascade() {
+        int highestLevel = 0;
+        long quotient = currentTick;
+        while (highestLevel + 1 < levels.size() && quotient % wheelSize == 0) {
+            quotient /= wheelSize;
+            highestLevel++;
+        }
+        for (int level = highestLevel; level > 0; level--) {
+            final Entry[] buckets = levels.get(level);
+            final int index = (int) (slotAt(currentTick, level) % wheelSize);
+            Entry entry = buckets[index];
+            buckets[index] = null;
+            while (entry != null) {
+                final Entry next = entry.next;
+                entry.prev = null;
+                entry.next = null;
+                insert(entry);
+                entry = next;
+            }
+        }
+    }
+
+    private void insert(final Entry entry) {
+        // first tick that is not before the due date
+        final long dueTick = Math.floorDiv(entry.dueTime, tickMillis) + (Math.floorMod(entry.dueTime, tickMillis) == 0 ? 0 : 1);
+        if (dueTick <= currentTick) {
+            entry.level = -1;
+            expired.add(entry);
+            return;
+        }
+        int level = 0;
+        while (slotAt(dueTick, level) - slotAt(currentTick, level) >= wheelSize) {
+            level++;
+        }
+        final Entry[] buckets = getLevel(level);
+        final int index = (int) (slotAt(dueTick, level) % wheelSize);
+        entry.level = level;
+        entry.index = index;
+        entry.prev = null;
+        entry.next = buckets[index];
+        if (entry.next != null) {
+            entry.next.prev = entry;
+        }
+        buckets[index] = entry;
+    }
+
+    private void unlink(final Entry entry) {
+        if (entry.prev != null) {
+            entry.prev.next = entry.next;
+        } else {
+            levels.get(entry.level)[entry.index] = entry.next;
+        }
+        if (entry.next != null) {
+            entry.next.prev = entry.prev;
+        }
+        entry.prev = null;
+        entry.next = null;
+    }
+
+    private Entry[] getLevel(final int level) {
+        while (levels.size() <= level) {
+            levels.add(new Entry[wheelSize]);
+        }
+        return levels.get(level);
+    }
+
+    private long slotAt(final long tick, final int level) {
+        long slot = tick;
+        for (int i = 0; i < level; i++) {
+            slot /= wheelSize;
+        }
+        return slot;
+    }
+
+    private static final class Entry {
+
+        private final long id;
+
+        private final long dueTime;
+
+        // -1 when expired
+        private int level;
+
+        private int index;
+
+        private Entry prev;
+
+        private Entry next;
+
+        Entry(final long id, final long dueTime) {
+            this.id = id;
+            this.dueTime = dueTime;
+        }
+    }
+
+}
@@ -0,0 +1,156 @@
+/**
+ * Copyright (C) 2018 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.execution.timer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.bonitasoft.engine.builder.BuilderFactory;
+import org.bonitasoft.engine.commons.exceptions.SBonitaException;
+import org.bonitasoft.engine.core.process.instance.api.event.EventInstanceService;
+import org.bonitasoft.engine.core.process.instance.model.SFlowElementsContainerType;
+import org.bonitasoft.engine.core.process.instance.model.SFlowNodeInstance;
+import org.bonitasoft.engine.core.process.instance.model.event.trigger.STimerEventTriggerInstance;
+import org.bonitasoft.engine.core.process.instance.model.event.trigger.impl.STimerEventTriggerInstanceImpl;
+import org.bonitasoft.engine.execution.job.JobNameBuilder;
+import org.bonitasoft.engine.execution.work.TenantAwareBonitaWork;
+import org.bonitasoft.engine.jobs.TriggerTimerEventJob;
+import org.bonitasoft.engine.log.technical.TechnicalLogSeverity;
+import org.bonitasoft.engine.log.technical.TechnicalLoggerService;
+import org.bonitasoft.engine.scheduler.builder.SJobDescriptorBuilderFactory;
+import org.bonitasoft.engine.scheduler.builder.SJobParameterBuilderFactory;
+import org.bonitasoft.engine.scheduler.model.SJobDescriptor;
+import org.bonitasoft.engine.scheduler.model.SJobParameter;
+import org.bonitasoft.engine.scheduler.trigger.OneShotTrigger;
+import org.bonitasoft.engine.scheduler.trigger.Trigger;
+import org.bonitasoft.engine.service.TenantServiceAccessor;
+
+/**
+ * Trigger the catch events of timers expired in the {@link TimerEventScheduler}, each one in its own transaction.
+ * <p>
+ * A timer that fails to be triggered stays in database and is triggered again when the scheduler loads its next window. Once it failed too
+ * many times, it is scheduled as a Quartz job to be triggered at once: when it fails again, it is recorded as a failed job that can be replayed.
+ */
+public class TriggerTimerEventsWork extends TenantAwareBonitaWork {
+
+    private final List<Long> eventInstanceIds;
+
+    public TriggerTimerEventsWork(final List<Long> eventInstanceIds) {
+        this.eventInstanceIds = eventInstanceIds;
+    }
+
+    @Override
+    public String getDescription() {
+        return getClass().getSimpleName() + ": " + eventInstanceIds.size() + " timers, event instances " + eventInstanceIds;
+    }
+
+    @Override
+    public void work(final Map<String, Object> context) throws Exception {
+        final TenantServiceAccessor tenantAccessor = getTenantAccessor(context);
+        final TechnicalLoggerService logger = tenantAccessor.getTechnicalLoggerService();
+        final Map<Long, Exception> failures = new HashMap<>();
+        final List<Long> failedTooManyTimes;
+        try {
+            for (final Long eventInstanceId : eventInstanceIds) {
+                try {
+                    tenantAccessor.getUserTransactionService().executeInTransaction(() -> {
+                        trigger(tenantAccessor, eventInstanceId);
+                        return null;
+                    });
+                } catch (final Exception e) {
+                    failures.put(eventInstanceId, e);
+                }
+            }
+        } finally {
+            failedTooManyTimes = tenantAccessor.getTimerEventScheduler().triggered(eventInstanceIds, failures);
+        }
+        for (final Long eventInstanceId : failedTooManyTimes) {
+            try {
+                tenantAccessor.getUserTransactionService().executeInTransaction(() -> {
+                    scheduleAsJob(tenantAccessor, eventInstanceId);
+                    return null;
+                });
+                logger.log(TriggerTimerEventsWork.class, TechnicalLogSeverity.ERROR, "Unable to trigger the timer of event instance " + eventInstanceId
+                        + ", it is now scheduled as a job that can be replayed once it failed", failures.get(eventInstanceId));
+            } catch (final Exception e) {
+                logger.log(TriggerTimerEventsWork.class, TechnicalLogSeverity.ERROR, "Unable to schedule the failing timer of event instance "
+                        + eventInstanceId + " as a job, it will be triggered again with the next window of timers", e);
+            }
+        }
+    }
+
+    private void trigger(final TenantServiceAccessor tenantAccessor, final long eventInstanceId) throws Exception {
+        final EventInstanceService eventInstanceService = tenantAccessor.getEventInstanceService();
+        final List<STimerEventTriggerInstance> timers = eventInstanceService.getTimerEventTriggerInstances(TimerEventScheduler.JOB_TRIGGER_NAME,
+                Collections.singletonList(eventInstanceId));
+        if (timers.isEmpty()) {
+            // cancelled since it expired
+            return;
+        }
+        final SFlowNodeInstance eventInstance = tenantAccessor.getActivityInstanceService().getFlowNodeInstance(eventInstanceId);
+        tenantAccessor.getEventsHandler().triggerCatchEvent(eventInstance.getType().name(), eventInstance.getProcessDefinitionId(),
+                eventInstance.getFlowNodeDefinitionId(), eventInstanceId, SFlowElementsContainerType.PROCESS.name());
+        for (final STimerEventTriggerInstance timer : timers) {
+            eventInstanceService.deleteEventTriggerInstance(timer);
+        }
+    }
+
+    /*
+     * the timer is handed to Quartz as if it was scheduled by the TimerEventHandlerStrategy with the timer event scheduler disabled: it can
+     * be cancelled and replayed as any timer job
+     */
+    private void scheduleAsJob(final TenantServiceAccessor tenantAccessor, final long eventInstanceId) throws SBonitaException {
+        final EventInstanceService eventInstanceService = tenantAccessor.getEventInstanceService();
+        final List<STimerEventTriggerInstance> timers = eventInstanceService.getTimerEventTriggerInstances(TimerEventScheduler.JOB_TRIGGER_NAME,
+                Collections.singletonList(eventInstanceId));
+        if (timers.isEmpty()) {
+            // cancelled since it failed
+            return;
+        }
+        final SFlowNodeInstance eventInstance = tenantAccessor.getActivityInstanceService().getFlowNodeInstance(eventInstanceId);
+        final SJobDescriptor jobDescriptor = BuilderFactory.get(SJobDescriptorBuilderFactory.class)
+                .createNewInstance(TriggerTimerEventJob.class.getName(), JobNameBuilder.getTimerEventJobName(eventInstanceId), false).done();
+        final SJobParameterBuilderFactory jobParameterBuilderFactory = BuilderFactory.get(SJobParameterBuilderFactory.class);
+        final List<SJobParameter> jobParameters = new ArrayList<>();
+        jobParameters.add(jobParameterBuilderFactory.createNewInstance("processDefinitionId", eventInstance.getProcessDefinitionId()).done());
+        jobParameters.add(jobParameterBuilderFactory.createNewInstance("containerType", SFlowElementsContainerType.PROCESS.name()).done());
+        jobParameters.add(jobParameterBuilderFactory.createNewInstance("eventType", eventInstance.getType().name()).done());
+        jobParameters.add(jobParameterBuilderFactory.createNewInstance("targetSFlowNodeDefinitionId", eventInstance.getFlowNodeDefinitionId()).done());
+        jobParameters.add(jobParameterBuilderFactory.createNewInstance("flowNodeInstanceId", eventInstanceId).done());
+        final Trigger trigger = new OneShotTrigger("OneShotTrigger" + UUID.randomUUID().getLeastSignificantBits(), new Date());
+        tenantAccessor.getSchedulerService().schedule(jobDescriptor, jobParameters, trigger);
+        for (final STimerEventTriggerInstance timer : timers) {
+            eventInstanceService.deleteEventTriggerInstance(timer);
+        }
+        eventInstanceService.createTimerEventTriggerInstance(new STimerEventTriggerInstanceImpl(eventInstanceId, eventInstance.getName(),
+                trigger.getStartDate().getTime(), trigger.getName()));
+    }
+
+    @Override
+    public void handleFailure(final Exception e, final Map<String, Object> context) throws Exception {
+        // timers that were not triggered are still in database: they are loaded again by the scheduler
+        getTenantAccessor(context).getTimerEventScheduler().triggered(eventInstanceIds);
+    }
+
+    @Override
+    public String getRecoveryProcedure() {
+        return "The timers of event instances " + eventInstanceIds + " are triggered again when the timer event scheduler loads its next window";
+    }
+
+}
@@ -0,0 +1,70 @@
+/**
+ * Copyright (C) 2018 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.execution.work;
+
+import java.util.Map;
+
+import org.bonitasoft.engine.log.technical.TechnicalLogSeverity;
+import org.bonitasoft.engine.log.technical.TechnicalLoggerService;
+
+/**
+ * Add the users of a new actor member in the pending task inboxes of all the tasks of the actor.
+ * <p>
+ * A member added to an actor having many pending tasks adds one entry per user and per task: this is done in a work instead of in the transaction adding
+ * the actor member.
+ */
+public class AddActorMemberToPendingTaskInboxWork extends TenantAwareBonitaWork {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long actorId;
+
+    private final long userId;
+
+    private final long groupId;
+
+    private final long roleId;
+
+    AddActorMemberToPendingTaskInboxWork(final long actorId, final long userId, final long groupId, final long roleId) {
+        this.actorId = actorId;
+        this.userId = userId;
+        this.groupId = groupId;
+        this.roleId = roleId;
+    }
+
+    @Override
+    public String getDescription() {
+        return getClass().getSimpleName() + ": actorId: " + actorId + ", userId: " + userId + ", groupId: " + groupId + ", roleId: " + roleId;
+    }
+
+    @Override
+    public void work(final Map<String, Object> context) throws Exception {
+        getTenantAccessor(context).getActivityInstanceService().addActorMemberToPendingTaskInbox(actorId, userId, groupId, roleId);
+    }
+
+    @Override
+    public void handleFailure(final Exception e, final Map<String, Object> context) throws Exception {
+        final TechnicalLoggerService logger = getTenantAccessor(context).getTechnicalLoggerService();
+        if (logger.isLoggable(AddActorMemberToPendingTaskInboxWork.class, TechnicalLogSeverity.WARNING)) {
+            logger.log(AddActorMemberToPendingTaskInboxWork.class, TechnicalLogSeverity.WARNING, "Unable to add the member of actor " + actorId
+                    + " in the pending task inbox, " + getRecoveryProcedure(), e);
+        }
+    }
+
+    @Override
+    public String getRecoveryProcedure() {
+        return "execute the command 'rebuildPendingTaskInbox' to recompute the pending task inbox";
+    }
+
+}
@@ -13,7 +13,9 @@
  **/
 package org.bonitasoft.engine.execution.work;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.function.Function;
 
@@ -22,6 +24,7 @@ import org.bonitasoft.engine.core.process.instance.model.event.handling.SMessage
 import org.bonitasoft.engine.core.process.instance.model.event.handling.SWaitingMessageEvent;
 import org.bonitasoft.engine.core.process.instance.model.event.handling.SWaitingSignalEvent;
 import org.bonitasoft.engine.execution.FlowNodeSelector;
+import org.bonitasoft.engine.execution.timer.TriggerTimerEventsWork;
 import org.bonitasoft.engine.execution.work.failurewrapping.ConnectorDefinitionAndInstanceContextWork;
 import org.bonitasoft.engine.execution.work.failurewrapping.FlowNodeDefinitionAndInstanceContextWork;
 import org.bonitasoft.engine.execution.work.failurewrapping.MessageInstanceContextWork;
@@ -47,6 +50,8 @@ public class BPMWorkFactory implements WorkFactory {
     private static final String FINISH_FLOWNODE = "FINISH_FLOWNODE";
     private static final String EXECUTE_MESSAGE = "EXECUTE_MESSAGE";
     private static final String TRIGGER_SIGNAL = "TRIGGER_SIGNAL";
+    private static final String TRIGGER_TIMER_EVENTS = "TRIGGER_TIMER_EVENTS";
+    private static final String ADD_ACTOR_MEMBER_TO_PENDING_TASK_INBOX = "ADD_ACTOR_MEMBER_TO_PENDING_TASK_INBOX";
     private static final String PROCESS_DEFINITION_ID = "processDefinitionId";
     private static final String PROCESS_INSTANCE_ID = "processInstanceId";
     private static final String FLOW_NODE_DEFINITION_ID = "flowNodeDefinitionId";
@@ -235,6 +240,28 @@ public class BPMWorkFactory implements WorkFactory {
         return withSession(triggerSignalWork);
     }
 
+    public WorkDescriptor createTriggerTimerEventsWorkDescriptor(List<Long> eventInstanceIds) {
+        return WorkDescriptor.create(TRIGGER_TIMER_EVENTS).withParameter("eventInstanceIds", new ArrayList<>(eventInstanceIds));
+    }
+
+    @SuppressWarnings("unchecked")
+    private BonitaWork createTriggerTimerEventsWork(WorkDescriptor workDescriptor) {
+        List<Long> eventInstanceIds = (List<Long>) workDescriptor.getParameter("eventInstanceIds");
+        // each timer is triggered in its own transaction
+        return withSession(new TriggerTimerEventsWork(eventInstanceIds));
+    }
+
+    public WorkDescriptor createAddActorMemberToPendingTaskInboxWorkDescriptor(final long actorId, final long userId, final long groupId,
+            final long roleId) {
+        return WorkDescriptor.create(ADD_ACTOR_MEMBER_TO_PENDING_TASK_INBOX).withParameter("actorId", actorId).withParameter("userId", userId)
+                .withParameter("groupId", groupId).withParameter("roleId", roleId);
+    }
+
+    private BonitaWork createAddActorMemberToPendingTaskInboxWork(WorkDescriptor workDescriptor) {
+        return withSession(withTx(new AddActorMemberToPendingTaskInboxWork(workDescriptor.getLong("actorId"), workDescriptor.getLong("userId"),
+                workDescriptor.getLong("groupId"), workDescriptor.getLong("roleId"))));
+    }
+
     @Override
     public BonitaWork create(WorkDescriptor workDescriptor) {
         BonitaWork work;
@@ -254,9 +281,15 @@ public class BPMWorkFactory implements WorkFactory {
             case TRIGGER_SIGNAL:
                 work = createTriggerSignalWork(workDescriptor);
                 break;
+            case TRIGGER_TIMER_EVENTS:
+                work = createTriggerTimerEventsWork(workDescriptor);
+                break;
             case EXECUTE_MESSAGE:
                 work = createExecuteMessageCoupleWork(workDescriptor);
                 break;
+            case ADD_ACTOR_MEMBER_TO_PENDING_TASK_INBOX:
+                work = createAddActorMemberToPendingTaskInboxWork(workDescriptor);
+                break;
             default:
                 work = createFromExtension(workDescriptor);
                 break;
@@ -268,6 +301,26 @@ public class BPMWorkFactory implements WorkFactory {
         return work;
     }
 
+    @Override
+    public Long getProcessInstanceToLock(WorkDescriptor workDescriptor) {
+        switch (workDescriptor.getType()) {
+            case EXECUTE_FLOWNODE:
+            case FINISH_FLOWNODE:
+                return workDescriptor.getLong(PROCESS_INSTANCE_ID);
+            case EXECUTE_MESSAGE:
+                return toLockedProcessInstance(((SWaitingMessageEvent) workDescriptor.getParameter("waitingMessage")).getParentProcessInstanceId());
+            case TRIGGER_SIGNAL:
+                return toLockedProcessInstance(((SWaitingSignalEvent) workDescriptor.getParameter("listeningSignal")).getParentProcessInstanceId());
+            default:
+                return null;
+        }
+    }
+
+    private Long toLockedProcessInstance(long parentProcessInstanceId) {
+        // same rule as when the work is created: it is wrapped in a LockProcessInstanceWork only if it has a parent process instance
+        return parentProcessInstanceId > 0 ? parentProcessInstanceId : null;
+    }
+
     private BonitaWork createFromExtension(WorkDescriptor workDescriptor) {
         if (!extensions.containsKey(workDescriptor.getType())) {
             throw new IllegalArgumentException("Unkown type of work:" + workDescriptor.getType());
@@ -13,7 +13,6 @@
  **/
 package org.bonitasoft.engine.execution.work;
 
-import java.util.Iterator;
 import java.util.concurrent.Callable;
 
 import org.bonitasoft.engine.commons.exceptions.SBonitaException;
@@ -34,15 +33,13 @@ import org.bonitasoft.engine.work.SWorkRegisterException;
 import org.bonitasoft.engine.work.WorkService;
 
 /**
- * Restart flownodes that needs to be restarted in a single transaction, with a maximum of {@value #MAX_FLOWNODES_TO_RESTART_PER_TRANSACTION}.
+ * Restart a batch of flownodes that needs to be restarted in a single transaction.
  *
  * @author Baptiste Mesta
  * @author Emmanuel Duchastenier
  */
 public class ExecuteFlowNodes implements Callable<Object> {
 
-    private static final int MAX_FLOWNODES_TO_RESTART_PER_TRANSACTION = 20;
-
     private final WorkService workService;
     private final BPMWorkFactory workFactory;
 
@@ -56,9 +53,9 @@ public class ExecuteFlowNodes implements Callable<Object> {
 
     private final FlowNodeStateManager flowNodeStateManager;
 
-    private final Iterator<Long> iterator;
+    private final long[] flowNodeIds;
 
-    public ExecuteFlowNodes(final TenantServiceAccessor tenantServiceAccessor, final Iterator<Long> iterator) {
+    public ExecuteFlowNodes(final TenantServiceAccessor tenantServiceAccessor, final long[] flowNodeIds) {
         workService = tenantServiceAccessor.getWorkService();
         logger = tenantServiceAccessor.getTechnicalLoggerService();
         activityInstanceService = tenantServiceAccessor.getActivityInstanceService();
@@ -66,14 +63,14 @@ public class ExecuteFlowNodes implements Callable<Object> {
         processDefinitionService = tenantServiceAccessor.getProcessDefinitionService();
         flowNodeStateManager = tenantServiceAccessor.getFlowNodeStateManager();
         workFactory = tenantServiceAccessor.getBPMWorkFactory();
-        this.iterator = iterator;
+        this.flowNodeIds = flowNodeIds;
     }
 
     @Override
     public Object call() throws Exception {
         try {
-            for (int i = 0; i < MAX_FLOWNODES_TO_RESTART_PER_TRANSACTION && iterator.hasNext(); i++) {
-                SFlowNodeInstance flowNodeInstance = activityInstanceService.getFlowNodeInstance(iterator.next());
+            for (final long flowNodeId : flowNodeIds) {
+                SFlowNodeInstance flowNodeInstance = activityInstanceService.getFlowNodeInstance(flowNodeId);
                 if (flowNodeInstance.isTerminal()) {
                     createNotifyChildFinishedWork(workService, logger, flowNodeInstance);
                 } else {
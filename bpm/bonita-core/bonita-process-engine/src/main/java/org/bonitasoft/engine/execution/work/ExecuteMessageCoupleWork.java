@@ -15,19 +15,12 @@ package org.bonitasoft.engine.execution.work;
 
 import java.util.Map;
 
-import org.bonitasoft.engine.builder.BuilderFactory;
 import org.bonitasoft.engine.core.process.instance.api.event.EventInstanceService;
-import org.bonitasoft.engine.core.process.instance.api.exceptions.event.trigger.SMessageInstanceReadException;
-import org.bonitasoft.engine.core.process.instance.api.exceptions.event.trigger.SMessageModificationException;
-import org.bonitasoft.engine.core.process.instance.api.exceptions.event.trigger.SWaitingEventModificationException;
-import org.bonitasoft.engine.core.process.instance.api.exceptions.event.trigger.SWaitingEventReadException;
-import org.bonitasoft.engine.core.process.instance.model.builder.event.handling.SMessageInstanceBuilder;
-import org.bonitasoft.engine.core.process.instance.model.builder.event.handling.SWaitingMessageEventBuilderFactory;
 import org.bonitasoft.engine.core.process.instance.model.event.handling.SMessageInstance;
 import org.bonitasoft.engine.core.process.instance.model.event.handling.SWaitingMessageEvent;
 import org.bonitasoft.engine.data.instance.api.DataInstanceContainer;
 import org.bonitasoft.engine.data.instance.api.DataInstanceService;
-import org.bonitasoft.engine.recorder.model.EntityUpdateDescriptor;
+import org.bonitasoft.engine.message.MessagesHandlingService;
 import org.bonitasoft.engine.service.TenantServiceAccessor;
 
 /**
@@ -52,23 +45,6 @@ public class ExecuteMessageCoupleWork extends TenantAwareBonitaWork {
         return getClass().getSimpleName() + ": messageInstanceId: " + messageInstanceId + ", waitingMessageId: " + waitingMessageId;
     }
 
-    private void resetWaitingMessage(final long waitingMessageId, final EventInstanceService eventInstanceService) throws SWaitingEventModificationException,
-            SWaitingEventReadException {
-        final SWaitingMessageEvent waitingMsg = eventInstanceService.getWaitingMessage(waitingMessageId);
-        final EntityUpdateDescriptor descriptor = new EntityUpdateDescriptor();
-        descriptor
-                .addField(BuilderFactory.get(SWaitingMessageEventBuilderFactory.class).getProgressKey(), SWaitingMessageEventBuilderFactory.PROGRESS_FREE_KEY);
-        eventInstanceService.updateWaitingMessage(waitingMsg, descriptor);
-    }
-
-    private void resetMessageInstance(final long messageInstanceId, final EventInstanceService eventInstanceService) throws SMessageModificationException,
-            SMessageInstanceReadException {
-        final SMessageInstance messageInstance = eventInstanceService.getMessageInstance(messageInstanceId);
-        final EntityUpdateDescriptor descriptor = new EntityUpdateDescriptor();
-        descriptor.addField(SMessageInstanceBuilder.HANDLED, false);
-        eventInstanceService.updateMessageInstance(messageInstance, descriptor);
-    }
-
     @Override
     public String getRecoveryProcedure() {
         return "call processApi.executeMessageCouple(" + messageInstanceId + ", " + waitingMessageId + "); to re-launch the execution of the message.";
@@ -91,8 +67,13 @@ public class ExecuteMessageCoupleWork extends TenantAwareBonitaWork {
     @Override
     public void handleFailure(final Exception e, final Map<String, Object> context) throws Exception {
         final TenantServiceAccessor tenantAccessor = getTenantAccessor(context);
-        resetWaitingMessage(waitingMessageId, tenantAccessor.getEventInstanceService());
-        resetMessageInstance(messageInstanceId, tenantAccessor.getEventInstanceService());
+        final MessagesHandlingService messagesHandlingService = tenantAccessor.getMessagesHandlingService();
+        tenantAccessor.getUserTransactionService().executeInTransaction(() -> {
+            messagesHandlingService.resetMessageCouple(messageInstanceId, waitingMessageId);
+            // the couple was removed from the correlation index when it was matched: match it again once the reset is committed
+            messagesHandlingService.triggerMatchingOfMessages();
+            return null;
+        });
     }
 
 }
@@ -0,0 +1,71 @@
+/**
+ * Copyright (C) 2018 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.execution.work;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Growable list of ids backed by a primitive array: the ids of the elements to restart are kept without boxing each one of them.
+ */
+class LongIdBuffer {
+
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    private long[] ids = new long[DEFAULT_CAPACITY];
+
+    private int size;
+
+    void addAll(final List<Long> idsToAdd) {
+        ensureCapacity(size + idsToAdd.size());
+        for (final Long id : idsToAdd) {
+            ids[size++] = id;
+        }
+    }
+
+    void add(final long id) {
+        ensureCapacity(size + 1);
+        ids[size++] = id;
+    }
+
+    private void ensureCapacity(final int capacity) {
+        if (capacity > ids.length) {
+            ids = Arrays.copyOf(ids, Math.max(capacity, ids.length * 2));
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    long get(final int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return ids[index];
+    }
+
+    /**
+     * @return a copy of the ids from index <code>from</code>, inclusive, to index <code>to</code>, exclusive. <code>to</code> is truncated to the size of
+     *         the buffer.
+     */
+    long[] copyOfRange(final int from, final int to) {
+        return Arrays.copyOfRange(ids, from, Math.min(to, size));
+    }
+
+}
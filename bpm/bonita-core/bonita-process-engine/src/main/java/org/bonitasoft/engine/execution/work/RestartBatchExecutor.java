@@ -0,0 +1,186 @@
+/**
+ * Copyright (C) 2018 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.execution.work;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.bonitasoft.engine.log.technical.TechnicalLogSeverity;
+import org.bonitasoft.engine.log.technical.TechnicalLoggerService;
+import org.bonitasoft.engine.service.TenantServiceAccessor;
+import org.bonitasoft.engine.sessionaccessor.SessionAccessor;
+import org.bonitasoft.engine.sessionaccessor.SessionIdNotSetException;
+import org.bonitasoft.engine.transaction.TransactionService;
+import org.bonitasoft.engine.work.WorkerThreadFactory;
+
+/**
+ * Restart elements by batches of ids, each batch in its own transaction.
+ * When there is more than one batch and more than one thread, batches are executed in parallel by a pool of threads that exists only during the restart. Each
+ * thread takes the next batch to execute until all batches are executed or one of them fails.
+ */
+class RestartBatchExecutor {
+
+    static final int DEFAULT_NUMBER_OF_THREADS = 4;
+
+    static final int DEFAULT_BATCH_SIZE = 20;
+
+    /**
+     * Create the transactional content that restarts one batch of elements
+     */
+    interface BatchFactory {
+
+        Callable<?> createBatch(long[] ids);
+    }
+
+    private final String elementsName;
+
+    private final int numberOfThreads;
+
+    private final int batchSize;
+
+    RestartBatchExecutor(final String elementsName, final int numberOfThreads, final int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("The size of restart batches must be at least 1 but was " + batchSize);
+        }
+        this.elementsName = elementsName;
+        this.numberOfThreads = numberOfThreads;
+        this.batchSize = batchSize;
+    }
+
+    int getNumberOfThreads() {
+        return numberOfThreads;
+    }
+
+    int getBatchSize() {
+        return batchSize;
+    }
+
+    void execute(final TransactionService transactionService, final TenantServiceAccessor tenantServiceAccessor, final LongIdBuffer ids,
+            final BatchFactory batchFactory) throws RestartException {
+        final int numberOfBatches = (ids.size() + batchSize - 1) / batchSize;
+        final Progress progress = new Progress(tenantServiceAccessor.getTechnicalLoggerService(), ids.size(), numberOfBatches);
+        if (numberOfThreads <= 1 || numberOfBatches <= 1) {
+            for (int batch = 0; batch < numberOfBatches; batch++) {
+                executeBatch(transactionService, ids, batch, batchFactory, progress);
+            }
+            return;
+        }
+        executeInParallel(transactionService, tenantServiceAccessor, ids, numberOfBatches, batchFactory, progress);
+    }
+
+    private void executeInParallel(final TransactionService transactionService, final TenantServiceAccessor tenantServiceAccessor, final LongIdBuffer ids,
+            final int numberOfBatches, final BatchFactory batchFactory, final Progress progress) throws RestartException {
+        final long tenantId = tenantServiceAccessor.getTenantId();
+        final SessionAccessor sessionAccessor = tenantServiceAccessor.getSessionAccessor();
+        final long sessionId = getSessionId(sessionAccessor);
+        final AtomicInteger nextBatch = new AtomicInteger();
+        final AtomicReference<Exception> failure = new AtomicReference<>();
+        final int threads = Math.min(numberOfThreads, numberOfBatches);
+        final ExecutorService executor = Executors.newFixedThreadPool(threads, new WorkerThreadFactory("Bonita-Restart", tenantId, threads));
+        try {
+            final List<Future<?>> workers = new ArrayList<>(threads);
+            for (int i = 0; i < threads; i++) {
+                workers.add(executor.submit(() -> {
+                    // works are registered and elements are read using the session of the thread restarting the tenant
+                    sessionAccessor.setSessionInfo(sessionId, tenantId);
+                    try {
+                        int batch;
+                        while (failure.get() == null && (batch = nextBatch.getAndIncrement()) < numberOfBatches) {
+                            executeBatch(transactionService, ids, batch, batchFactory, progress);
+                        }
+                    } catch (final Exception e) {
+                        failure.compareAndSet(null, e);
+                    } finally {
+                        sessionAccessor.deleteSessionId();
+                    }
+                }));
+            }
+            for (final Future<?> worker : workers) {
+                worker.get();
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RestartException("Interrupted while restarting " + elementsName, e);
+        } catch (final ExecutionException e) {
+            throw new RestartException("Unable to restart " + elementsName, e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        final Exception batchFailure = failure.get();
+        if (batchFailure instanceof RestartException) {
+            throw (RestartException) batchFailure;
+        }
+        if (batchFailure != null) {
+            throw new RestartException("Unable to restart " + elementsName, batchFailure);
+        }
+    }
+
+    private long getSessionId(final SessionAccessor sessionAccessor) throws RestartException {
+        try {
+            return sessionAccessor.getSessionId();
+        } catch (final SessionIdNotSetException e) {
+            throw new RestartException("Unable to restart " + elementsName + ": no session is set on the restarting thread", e);
+        }
+    }
+
+    private void executeBatch(final TransactionService transactionService, final LongIdBuffer ids, final int batch, final BatchFactory batchFactory,
+            final Progress progress) throws RestartException {
+        final int from = batch * batchSize;
+        try {
+            transactionService.executeInTransaction(batchFactory.createBatch(ids.copyOfRange(from, from + batchSize)));
+        } catch (final RestartException e) {
+            throw e;
+        } catch (final Exception e) {
+            throw new RestartException("Unable to restart " + elementsName, e);
+        }
+        progress.batchExecuted();
+    }
+
+    private class Progress {
+
+        private final TechnicalLoggerService logger;
+
+        private final int numberOfElements;
+
+        private final int numberOfBatches;
+
+        private final int logEvery;
+
+        private final AtomicInteger executedBatches = new AtomicInteger();
+
+        Progress(final TechnicalLoggerService logger, final int numberOfElements, final int numberOfBatches) {
+            this.logger = logger;
+            this.numberOfElements = numberOfElements;
+            this.numberOfBatches = numberOfBatches;
+            // log roughly each 10% of the restart
+            logEvery = Math.max(1, numberOfBatches / 10);
+        }
+
+        void batchExecuted() {
+            final int executed = executedBatches.incrementAndGet();
+            if ((executed % logEvery == 0 || executed == numberOfBatches) && logger.isLoggable(RestartBatchExecutor.class, TechnicalLogSeverity.INFO)) {
+                logger.log(RestartBatchExecutor.class, TechnicalLogSeverity.INFO, "Restarted " + Math.min((long) executed * batchSize, numberOfElements)
+                        + " of " + numberOfElements + " " + elementsName);
+            }
+        }
+    }
+
+}
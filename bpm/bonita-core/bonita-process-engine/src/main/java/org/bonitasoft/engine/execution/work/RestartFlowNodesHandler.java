@@ -13,16 +13,13 @@
  **/
 package org.bonitasoft.engine.execution.work;
 
-import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
 import org.bonitasoft.engine.core.process.instance.api.FlowNodeInstanceService;
 import org.bonitasoft.engine.log.technical.TechnicalLogSeverity;
 import org.bonitasoft.engine.log.technical.TechnicalLoggerService;
-import org.bonitasoft.engine.persistence.QueryOptions;
 import org.bonitasoft.engine.persistence.SBonitaReadException;
 import org.bonitasoft.engine.service.PlatformServiceAccessor;
 import org.bonitasoft.engine.service.TenantServiceAccessor;
@@ -30,6 +27,9 @@ import org.bonitasoft.engine.transaction.TransactionService;
 
 /**
  * Restart flow nodes for works: {@link ExecuteFlowNodeWork} {@link ExecuteConnectorOfActivity} {@link NotifyChildFinishedWork}
+ * <p>
+ * Ids of the flow nodes to restart are read page by page after the last id of the previous page and are restarted by batches executed in parallel, see
+ * {@link RestartBatchExecutor}.
  *
  * @author Baptiste Mesta
  * @author Celine Souchet
@@ -37,9 +37,27 @@ import org.bonitasoft.engine.transaction.TransactionService;
  */
 public class RestartFlowNodesHandler implements TenantRestartHandler {
 
+    // using a to low page size (100) causes too many access to the database and causes timeout exception if there are lot of elements.
+    // As we retrieve only the id we can use a greater page size
+    static final int ID_PAGE_SIZE = 50000;
+
     //the handler is executed on one tenant only but we keep a map by tenant because this class is a singleton
     //It should not be a singleton but have a factory to create it
-    final Map<Long, List<Long>> flownodesToRestartByTenant = new HashMap<>();
+    final Map<Long, LongIdBuffer> flownodesToRestartByTenant = new HashMap<>();
+
+    private final RestartBatchExecutor batchExecutor;
+
+    public RestartFlowNodesHandler() {
+        this(RestartBatchExecutor.DEFAULT_NUMBER_OF_THREADS, RestartBatchExecutor.DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * @param numberOfThreads number of threads restarting batches of flow nodes in parallel
+     * @param batchSize number of flow nodes restarted in a single transaction
+     */
+    public RestartFlowNodesHandler(final int numberOfThreads, final int batchSize) {
+        batchExecutor = new RestartBatchExecutor("flow nodes", numberOfThreads, batchSize);
+    }
 
     @Override
     public void beforeServicesStart(final PlatformServiceAccessor platformServiceAccessor, final TenantServiceAccessor tenantServiceAccessor)
@@ -47,21 +65,20 @@ public class RestartFlowNodesHandler implements TenantRestartHandler {
         try {
             final long tenantId = tenantServiceAccessor.getTenantId();
             final TechnicalLoggerService logger = tenantServiceAccessor.getTechnicalLoggerService();
-            final ArrayList<Long> flownodesToRestart = new ArrayList<>();
+            final LongIdBuffer flownodesToRestart = new LongIdBuffer();
             flownodesToRestartByTenant.put(tenantId, flownodesToRestart);
             final FlowNodeInstanceService flowNodeInstanceService = tenantServiceAccessor.getActivityInstanceService();
 
-            // using a to low page size (100) causes too many access to the database and causes timeout exception if there are lot of elements.
-            // As we retrieve only the id we can use a greater page size
-            QueryOptions queryOptions = new QueryOptions(0, 50000);
+            long lastId = -1;
             List<Long> ids;
             logInfo(logger, "Restarting flow nodes...");
             do {
-                ids = flowNodeInstanceService.getFlowNodeInstanceIdsToRestart(queryOptions);
+                ids = flowNodeInstanceService.getFlowNodeInstanceIdsToRestart(lastId, ID_PAGE_SIZE);
                 flownodesToRestart.addAll(ids);
-                queryOptions = QueryOptions.getNextPage(queryOptions);
-
-            } while (ids.size() == queryOptions.getNumberOfResults());
+                if (!ids.isEmpty()) {
+                    lastId = ids.get(ids.size() - 1);
+                }
+            } while (ids.size() == ID_PAGE_SIZE);
             logInfo(logger, "Found " + flownodesToRestart.size() + " flow nodes to restart on tenant " + tenantId);
         } catch (final SBonitaReadException e) {
             throw new RestartException("unable to flag elements as to be restarted", e);
@@ -81,18 +98,10 @@ public class RestartFlowNodesHandler implements TenantRestartHandler {
         final TechnicalLoggerService logger = tenantServiceAccessor.getTechnicalLoggerService();
         final TransactionService transactionService = platformServiceAccessor.getTransactionService();
         final long tenantId = tenantServiceAccessor.getTenantId();
-        final List<Long> flownodesIds = flownodesToRestartByTenant.get(tenantId);
-
-        logger.log(getClass(), TechnicalLogSeverity.INFO, "Restarting " + flownodesIds.size() + " flow nodes for tenant " + tenantId);
-        try {
-            final Iterator<Long> iterator = flownodesIds.iterator();
-            do {
-                final ExecuteFlowNodes callable = new ExecuteFlowNodes(tenantServiceAccessor, iterator);
-                transactionService.executeInTransaction(callable);
-            } while (iterator.hasNext());
-        } catch (final Exception e) {
-            throw new RestartException("Unable to restart elements", e);
-        }
+        final LongIdBuffer flownodesIds = flownodesToRestartByTenant.remove(tenantId);
 
+        logger.log(getClass(), TechnicalLogSeverity.INFO, "Restarting " + flownodesIds.size() + " flow nodes for tenant " + tenantId + " using "
+                + batchExecutor.getNumberOfThreads() + " threads");
+        batchExecutor.execute(transactionService, tenantServiceAccessor, flownodesIds, ids -> new ExecuteFlowNodes(tenantServiceAccessor, ids));
     }
 }
@@ -13,9 +13,7 @@
  **/
 package org.bonitasoft.engine.execution.work;
 
-import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
@@ -34,8 +32,6 @@ import org.bonitasoft.engine.execution.ProcessExecutor;
 import org.bonitasoft.engine.execution.state.FlowNodeStateManager;
 import org.bonitasoft.engine.log.technical.TechnicalLogSeverity;
 import org.bonitasoft.engine.log.technical.TechnicalLoggerService;
-import org.bonitasoft.engine.persistence.OrderByType;
-import org.bonitasoft.engine.persistence.QueryOptions;
 import org.bonitasoft.engine.service.PlatformServiceAccessor;
 import org.bonitasoft.engine.service.TenantServiceAccessor;
 import org.bonitasoft.engine.transaction.TransactionService;
@@ -43,6 +39,9 @@ import org.bonitasoft.engine.work.WorkService;
 
 /**
  * Restart handler for work {@link ExecuteConnectorOfProcess}
+ * <p>
+ * Ids of the process instances to restart are read page by page after the last id of the previous page and are restarted by batches executed in parallel,
+ * see {@link RestartBatchExecutor}.
  *
  * @author Baptiste Mesta
  */
@@ -64,13 +63,13 @@ public class RestartProcessHandler implements TenantRestartHandler {
 
         private final FlowNodeStateManager flowNodeStateManager;
         private BPMWorkFactory workFactory;
-        private final Iterator<Long> iterator;
+        private final long[] processInstanceIds;
 
         public ExecuteProcesses(final WorkService workService, final TechnicalLoggerService logger, final ActivityInstanceService activityInstanceService,
                                 final ProcessDefinitionService processDefinitionService,
                                 final ProcessInstanceService processInstanceService,
                                 final ProcessExecutor processExecutor, FlowNodeStateManager flowNodeStateManager,
-                                BPMWorkFactory workFactory, final Iterator<Long> iterator) {
+                                BPMWorkFactory workFactory, final long[] processInstanceIds) {
             this.workService = workService;
             this.logger = logger;
             this.activityInstanceService = activityInstanceService;
@@ -79,13 +78,12 @@ public class RestartProcessHandler implements TenantRestartHandler {
             this.processExecutor = processExecutor;
             this.flowNodeStateManager = flowNodeStateManager;
             this.workFactory = workFactory;
-            this.iterator = iterator;
+            this.processInstanceIds = processInstanceIds;
         }
 
         @Override
         public Object call() throws Exception {
-            for (int i = 0; i < 20 && iterator.hasNext(); i++) {
-                final Long processId = iterator.next();
+            for (final long processId : processInstanceIds) {
                 try {
                     final SProcessInstance processInstance = processInstanceService.getProcessInstance(processId);
                     final SProcessDefinition processDefinition = processDefinitionService.getProcessDefinition(processInstance.getProcessDefinitionId());
@@ -117,9 +115,25 @@ public class RestartProcessHandler implements TenantRestartHandler {
         }
     }
 
+    private static final int ID_PAGE_SIZE = 50000;
+
     //the handler is executed on one tenant only but we keep a map by tenant because this class is a singleton
     //It should not be a singleton but have a factory to create it
-    private final Map<Long, List<Long>> processInstancesByTenant = new HashMap<Long, List<Long>>();
+    private final Map<Long, LongIdBuffer> processInstancesByTenant = new HashMap<>();
+
+    private final RestartBatchExecutor batchExecutor;
+
+    public RestartProcessHandler() {
+        this(RestartBatchExecutor.DEFAULT_NUMBER_OF_THREADS, RestartBatchExecutor.DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * @param numberOfThreads number of threads restarting batches of process instances in parallel
+     * @param batchSize number of process instances restarted in a single transaction
+     */
+    public RestartProcessHandler(final int numberOfThreads, final int batchSize) {
+        batchExecutor = new RestartBatchExecutor("process instances", numberOfThreads, batchSize);
+    }
 
     @Override
     public void beforeServicesStart(final PlatformServiceAccessor platformServiceAccessor, final TenantServiceAccessor tenantServiceAccessor)
@@ -128,20 +142,20 @@ public class RestartProcessHandler implements TenantRestartHandler {
         final TechnicalLoggerService logger = tenantServiceAccessor.getTechnicalLoggerService();
         final long tenantId = tenantServiceAccessor.getTenantId();
 
-        final List<Long> ids = new ArrayList<Long>();
+        final LongIdBuffer ids = new LongIdBuffer();
         processInstancesByTenant.put(tenantId, ids);
-        QueryOptions queryOptions = new QueryOptions(0, 1000, SProcessInstance.class, "id", OrderByType.ASC);
+        long lastId = -1;
         try {
-            List<SProcessInstance> processInstances;
+            List<Long> processInstanceIds;
             do {
-                processInstances = processInstanceService.getProcessInstancesInStates(queryOptions, ProcessInstanceState.INITIALIZING,
-                        ProcessInstanceState.COMPLETING, ProcessInstanceState.COMPLETED,
+                processInstanceIds = processInstanceService.getProcessInstanceIdsInStates(lastId, ID_PAGE_SIZE,
+                        ProcessInstanceState.INITIALIZING, ProcessInstanceState.COMPLETING, ProcessInstanceState.COMPLETED,
                         ProcessInstanceState.ABORTED, ProcessInstanceState.CANCELLED);
-                queryOptions = QueryOptions.getNextPage(queryOptions);
-                for (final SProcessInstance sProcessInstance : processInstances) {
-                    ids.add(sProcessInstance.getId());
+                ids.addAll(processInstanceIds);
+                if (!processInstanceIds.isEmpty()) {
+                    lastId = processInstanceIds.get(processInstanceIds.size() - 1);
                 }
-            } while (processInstances.size() == queryOptions.getNumberOfResults());
+            } while (processInstanceIds.size() == ID_PAGE_SIZE);
             logInfo(logger, "Found " + ids.size() + " process to restart on tenant " + tenantId);
         } catch (final SProcessInstanceReadException e) {
             handleException(e, "Unable to restart process: can't read process instances");
@@ -179,21 +193,14 @@ public class RestartProcessHandler implements TenantRestartHandler {
         final ActivityInstanceService activityInstanceService = tenantServiceAccessor.getActivityInstanceService();
         final WorkService workService = tenantServiceAccessor.getWorkService();
         final BPMWorkFactory workFactory = tenantServiceAccessor.getBPMWorkFactory();
-
-        final List<Long> list = processInstancesByTenant.get(tenantId);
-        final Iterator<Long> iterator = list.iterator();
-        logger.log(getClass(), TechnicalLogSeverity.INFO, "Restarting " + list.size() + " processes for tenant " + tenantId);
-        ExecuteProcesses exec;
-        try {
-            do {
-                exec = new ExecuteProcesses(workService, logger, activityInstanceService, processDefinitionService, processInstanceService, processExecutor,
-                        tenantServiceAccessor.getFlowNodeStateManager(), workFactory, iterator);
-                transactionService.executeInTransaction(exec);
-            } while (iterator.hasNext());
-        } catch (final Exception e) {
-            throw new RestartException("Unable to restart process instance", e);
-        }
-
+        final FlowNodeStateManager flowNodeStateManager = tenantServiceAccessor.getFlowNodeStateManager();
+
+        final LongIdBuffer processInstanceIds = processInstancesByTenant.remove(tenantId);
+        logger.log(getClass(), TechnicalLogSeverity.INFO, "Restarting " + processInstanceIds.size() + " processes for tenant " + tenantId + " using "
+                + batchExecutor.getNumberOfThreads() + " threads");
+        batchExecutor.execute(transactionService, tenantServiceAccessor, processInstanceIds,
+                ids -> new ExecuteProcesses(workService, logger, activityInstanceService, processDefinitionService, processInstanceService, processExecutor,
+                        flowNodeStateManager, workFactory, ids));
     }
 
     protected void handleCompletion(final SProcessInstance processInstance, final TechnicalLoggerService logger,
@@ -0,0 +1,71 @@
+/**
+ * Copyright (C) 2018 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.expression;
+
+import org.bonitasoft.engine.bpm.model.impl.BPMInstancesCreator;
+import org.bonitasoft.engine.core.data.instance.TransientDataReloader;
+import org.bonitasoft.engine.core.process.definition.ProcessDefinitionService;
+import org.bonitasoft.engine.core.process.instance.api.FlowNodeInstanceService;
+import org.bonitasoft.engine.data.instance.api.DataInstanceContainer;
+import org.bonitasoft.engine.log.technical.TechnicalLogSeverity;
+import org.bonitasoft.engine.log.technical.TechnicalLoggerService;
+import org.bonitasoft.engine.operation.TransientDataLeftOperandHandler;
+import org.bonitasoft.engine.persistence.SBonitaReadException;
+
+/**
+ * Reloads a transient data of an activity by evaluating again its default value from the definition of the activity.
+ */
+public class ReevaluatingTransientDataReloader implements TransientDataReloader {
+
+    private final TechnicalLoggerService logger;
+
+    private FlowNodeInstanceService flownodeInstanceService;
+
+    private ProcessDefinitionService processDefinitionService;
+
+    private BPMInstancesCreator bpmInstancesCreator;
+
+    public ReevaluatingTransientDataReloader(final TechnicalLoggerService logger) {
+        this.logger = logger;
+    }
+
+    public void setFlownodeInstanceService(final FlowNodeInstanceService flownodeInstanceService) {
+        this.flownodeInstanceService = flownodeInstanceService;
+    }
+
+    public void setProcessDefinitionService(final ProcessDefinitionService processDefinitionService) {
+        this.processDefinitionService = processDefinitionService;
+    }
+
+    public void setBpmInstancesCreator(final BPMInstancesCreator bpmInstancesCreator) {
+        this.bpmInstancesCreator = bpmInstancesCreator;
+    }
+
+    @Override
+    public void reload(final String dataName, final long containerId, final String containerType) {
+        if (!DataInstanceContainer.ACTIVITY_INSTANCE.name().equals(containerType)) {
+            return;
+        }
+        try {
+            TransientDataLeftOperandHandler.reevaluateTransientData(dataName, containerId, containerType, flownodeInstanceService, processDefinitionService,
+                    bpmInstancesCreator);
+        } catch (final SBonitaReadException e) {
+            if (logger.isLoggable(getClass(), TechnicalLogSeverity.DEBUG)) {
+                logger.log(getClass(), TechnicalLogSeverity.DEBUG, "Unable to reload the transient data " + dataName + " of " + containerId + " "
+                        + containerType + ": " + e.getMessage());
+            }
+        }
+    }
+
+}
@@ -73,16 +73,18 @@ public class ImportOrganization implements TransactionContentWithResult<List<Str
         this.organizationContent = updateNamespace(organizationContent);
         logger = serviceAccessor.getTechnicalLoggerService();
         warnings = new ArrayList<>();
+        strategy = createStrategy(policy, identityService, userInfoValueAPI, logger);
+    }
+
+    static ImportOrganizationStrategy createStrategy(final ImportPolicy policy, final IdentityService identityService,
+            final SCustomUserInfoValueAPI userInfoValueAPI, final TechnicalLoggerService logger) throws OrganizationImportException {
         switch (policy) {
             case FAIL_ON_DUPLICATES:
-                strategy = new ImportOrganizationFailOnDuplicatesStrategy();
-                break;
+                return new ImportOrganizationFailOnDuplicatesStrategy();
             case IGNORE_DUPLICATES:
-                strategy = new ImportOrganizationIgnoreDuplicatesStrategy();
-                break;
+                return new ImportOrganizationIgnoreDuplicatesStrategy();
             case MERGE_DUPLICATES:
-                strategy = new ImportOrganizationMergeDuplicatesStrategy(identityService, userInfoValueAPI, logger);
-                break;
+                return new ImportOrganizationMergeDuplicatesStrategy(identityService, userInfoValueAPI, logger);
             default:
                 throw new OrganizationImportException("No import strategy found for " + policy);
         }
@@ -232,7 +234,7 @@ public class ImportOrganization implements TransactionContentWithResult<List<Str
         return groupPathToIdMap;
     }
 
-    private String getGroupPath(final ExportedGroup exportedGroup) {
+    static String getGroupPath(final ExportedGroup exportedGroup) {
         final String name = exportedGroup.getName();
         final String parentPath = exportedGroup.getParentPath();
         if (parentPath == null) {
@@ -287,7 +289,7 @@ public class ImportOrganization implements TransactionContentWithResult<List<Str
         identityService.createUserMembership(sUserMembership);
     }
 
-    private long getAssignedDate(final ExportedUserMembership newMembership) {
+    static long getAssignedDate(final ExportedUserMembership newMembership) {
         final Long assignedDate = newMembership.getAssignedDate();
         if (assignedDate != null) {
             return assignedDate;
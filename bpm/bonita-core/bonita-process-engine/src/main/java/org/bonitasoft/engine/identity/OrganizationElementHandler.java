@@ -0,0 +1,39 @@
+/**
+ * Copyright (C) 2018 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.identity;
+
+import org.bonitasoft.engine.commons.exceptions.SBonitaException;
+import org.bonitasoft.engine.identity.xml.ExportedCustomUserInfoDefinition;
+import org.bonitasoft.engine.identity.xml.ExportedGroup;
+import org.bonitasoft.engine.identity.xml.ExportedRole;
+import org.bonitasoft.engine.identity.xml.ExportedUser;
+import org.bonitasoft.engine.identity.xml.ExportedUserMembership;
+
+/**
+ * Receive the elements of an organization one by one, in the order of the organization file, when it is read using
+ * {@link OrganizationParser#read(String, OrganizationElementHandler)}.
+ */
+public interface OrganizationElementHandler {
+
+    void handle(ExportedCustomUserInfoDefinition customUserInfoDefinition) throws SBonitaException;
+
+    void handle(ExportedUser user) throws SBonitaException;
+
+    void handle(ExportedRole role) throws SBonitaException;
+
+    void handle(ExportedGroup group) throws SBonitaException;
+
+    void handle(ExportedUserMembership membership) throws SBonitaException;
+
+}
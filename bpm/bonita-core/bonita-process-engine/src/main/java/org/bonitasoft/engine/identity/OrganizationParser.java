@@ -14,6 +14,7 @@
 
 package org.bonitasoft.engine.identity;
 
+import java.io.IOException;
 import java.io.StringReader;
 import java.io.StringWriter;
 import java.net.URL;
@@ -23,11 +24,22 @@ import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Marshaller;
 import javax.xml.bind.Unmarshaller;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.transform.stream.StreamSource;
 import javax.xml.validation.Schema;
 import javax.xml.validation.SchemaFactory;
 
+import org.bonitasoft.engine.commons.exceptions.SBonitaException;
 import org.bonitasoft.engine.exception.BonitaRuntimeException;
+import org.bonitasoft.engine.identity.xml.ExportedCustomUserInfoDefinition;
+import org.bonitasoft.engine.identity.xml.ExportedGroup;
+import org.bonitasoft.engine.identity.xml.ExportedRole;
+import org.bonitasoft.engine.identity.xml.ExportedUser;
+import org.bonitasoft.engine.identity.xml.ExportedUserMembership;
 import org.bonitasoft.engine.identity.xml.Organization;
+import org.xml.sax.SAXException;
 
 /**
  * @author Baptiste Mesta
@@ -49,14 +61,77 @@ public class OrganizationParser {
     }
 
     public Organization convert(String organizationContent) throws JAXBException {
-        if (!organizationContent.contains("http://documentation.bonitasoft.com/organization-xml-schema/1.1")) {
-            organizationContent = organizationContent.replace("http://documentation.bonitasoft.com/organization-xml-schema", "http://documentation.bonitasoft.com/organization-xml-schema/1.1");
-        }
+        organizationContent = updateNamespace(organizationContent);
         Unmarshaller unmarshaller = jaxbContext.createUnmarshaller();
         unmarshaller.setSchema(schema);
         return (Organization) unmarshaller.unmarshal(new StringReader(organizationContent));
     }
 
+    /**
+     * Read the organization element by element instead of building the whole {@link Organization} in memory.
+     * <p>
+     * The content is first validated against the organization schema, then each user, role, group, membership and custom user info definition
+     * is unmarshalled alone and given to the handler, in the order of the file.
+     */
+    public void read(String organizationContent, final OrganizationElementHandler handler) throws JAXBException, XMLStreamException, SAXException,
+            IOException, SBonitaException {
+        organizationContent = updateNamespace(organizationContent);
+        schema.newValidator().validate(new StreamSource(new StringReader(organizationContent)));
+        final XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+        inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        final XMLStreamReader reader = inputFactory.createXMLStreamReader(new StringReader(organizationContent));
+        try {
+            final Unmarshaller unmarshaller = jaxbContext.createUnmarshaller();
+            int depth = 0;
+            while (reader.hasNext()) {
+                if (reader.isStartElement()) {
+                    // elements of the organization are in a wrapper element: Organization > users > user
+                    if (depth == 2 && readElement(reader, unmarshaller, handler)) {
+                        // the reader is already after the end of the element
+                        continue;
+                    }
+                    depth++;
+                } else if (reader.isEndElement()) {
+                    depth--;
+                }
+                reader.next();
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    private boolean readElement(final XMLStreamReader reader, final Unmarshaller unmarshaller, final OrganizationElementHandler handler)
+            throws JAXBException, SBonitaException {
+        switch (reader.getLocalName()) {
+            case "customUserInfoDefinition":
+                handler.handle(unmarshaller.unmarshal(reader, ExportedCustomUserInfoDefinition.class).getValue());
+                return true;
+            case "user":
+                handler.handle(unmarshaller.unmarshal(reader, ExportedUser.class).getValue());
+                return true;
+            case "role":
+                handler.handle(unmarshaller.unmarshal(reader, ExportedRole.class).getValue());
+                return true;
+            case "group":
+                handler.handle(unmarshaller.unmarshal(reader, ExportedGroup.class).getValue());
+                return true;
+            case "membership":
+                handler.handle(unmarshaller.unmarshal(reader, ExportedUserMembership.class).getValue());
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private String updateNamespace(String organizationContent) {
+        if (!organizationContent.contains("http://documentation.bonitasoft.com/organization-xml-schema/1.1")) {
+            organizationContent = organizationContent.replace("http://documentation.bonitasoft.com/organization-xml-schema", "http://documentation.bonitasoft.com/organization-xml-schema/1.1");
+        }
+        return organizationContent;
+    }
+
     private Marshaller getMarshaller() throws JAXBException {
         Marshaller marshaller = jaxbContext.createMarshaller();
         marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
@@ -31,4 +31,8 @@ public class SImportOrganizationException extends SBonitaException {
         super(cause);
     }
 
+    public SImportOrganizationException(final String message, final Throwable cause) {
+        super(message, cause);
+    }
+
 }
@@ -0,0 +1,409 @@
+/**
+ * Copyright (C) 2018 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.identity;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import org.bonitasoft.engine.api.impl.SCustomUserInfoValueAPI;
+import org.bonitasoft.engine.api.impl.SessionInfos;
+import org.bonitasoft.engine.builder.BuilderFactory;
+import org.bonitasoft.engine.commons.exceptions.SBonitaException;
+import org.bonitasoft.engine.identity.model.SCustomUserInfoDefinition;
+import org.bonitasoft.engine.identity.model.SGroup;
+import org.bonitasoft.engine.identity.model.SRole;
+import org.bonitasoft.engine.identity.model.SUser;
+import org.bonitasoft.engine.identity.model.SUserMembership;
+import org.bonitasoft.engine.identity.model.builder.SUserMembershipBuilderFactory;
+import org.bonitasoft.engine.identity.model.builder.SUserUpdateBuilderFactory;
+import org.bonitasoft.engine.identity.xml.ExportedCustomUserInfoDefinition;
+import org.bonitasoft.engine.identity.xml.ExportedGroup;
+import org.bonitasoft.engine.identity.xml.ExportedRole;
+import org.bonitasoft.engine.identity.xml.ExportedUser;
+import org.bonitasoft.engine.identity.xml.ExportedUserMembership;
+import org.bonitasoft.engine.log.technical.TechnicalLogSeverity;
+import org.bonitasoft.engine.log.technical.TechnicalLoggerService;
+import org.bonitasoft.engine.persistence.OrderByOption;
+import org.bonitasoft.engine.persistence.OrderByType;
+import org.bonitasoft.engine.service.ModelConvertor;
+import org.bonitasoft.engine.service.TenantServiceAccessor;
+import org.bonitasoft.engine.transaction.UserTransactionService;
+
+/**
+ * Import an organization without loading it in memory nor in a single transaction.
+ * <p>
+ * The organization file is read element by element using {@link OrganizationParser#read(String, OrganizationElementHandler)} and elements are
+ * imported in chunks of {@link #chunkSize}, each chunk in its own transaction, so that inserts of a chunk are flushed together. Duplicates are
+ * resolved using the names of the users, roles, groups and memberships of the tenant, loaded once before reading the file, instead of being looked up
+ * element by element.
+ * <p>
+ * A chunk that fails is rolled back but chunks before it stay committed: the error gives the number of elements committed. Importing the same file
+ * again using {@link ImportPolicy#IGNORE_DUPLICATES} or {@link ImportPolicy#MERGE_DUPLICATES} resumes the import, elements already imported being
+ * found as duplicates without reading them one by one.
+ */
+public class StreamingImportOrganization implements OrganizationElementHandler {
+
+    private static final int PREFETCH_PAGE_SIZE = 5000;
+
+    private final TenantServiceAccessor serviceAccessor;
+
+    private final IdentityService identityService;
+
+    private final UserTransactionService userTransactionService;
+
+    private final TechnicalLoggerService logger;
+
+    private final String organizationContent;
+
+    private final ImportOrganizationStrategy strategy;
+
+    private final SCustomUserInfoValueAPI userInfoValueAPI;
+
+    private final int chunkSize;
+
+    private final List<String> warnings = new ArrayList<>();
+
+    private final Map<String, Long> userNameToId = new HashMap<>();
+
+    private final Map<String, Long> roleNameToId = new HashMap<>();
+
+    private final Map<String, Long> groupPathToId = new HashMap<>();
+
+    private final Set<MembershipKey> existingMemberships = new HashSet<>();
+
+    private final Map<String, SCustomUserInfoDefinition> customUserInfoDefinitions = new HashMap<>();
+
+    // user name to manager user name: managers are set once all users are imported
+    private final Map<String, String> managers = new LinkedHashMap<>();
+
+    private final Map<Class<?>, Integer> numberOfImportedElements = new LinkedHashMap<>();
+
+    private final List<Object> chunk = new ArrayList<>();
+
+    private UserImporter userImporter;
+
+    private long numberOfCommittedElements;
+
+    public StreamingImportOrganization(final TenantServiceAccessor serviceAccessor, final String organizationContent, final ImportPolicy policy,
+            final SCustomUserInfoValueAPI userInfoValueAPI, final int chunkSize) throws OrganizationImportException {
+        this.serviceAccessor = serviceAccessor;
+        this.organizationContent = organizationContent;
+        this.userInfoValueAPI = userInfoValueAPI;
+        this.chunkSize = chunkSize;
+        identityService = serviceAccessor.getIdentityService();
+        userTransactionService = serviceAccessor.getUserTransactionService();
+        logger = serviceAccessor.getTechnicalLoggerService();
+        strategy = ImportOrganization.createStrategy(policy, identityService, userInfoValueAPI, logger);
+    }
+
+    /**
+     * @return the warnings of the import
+     */
+    public List<String> execute() throws SBonitaException {
+        try {
+            loadExistingOrganization();
+            new OrganizationParser().read(organizationContent, this);
+            commitChunk();
+            updateManagers();
+        } catch (final Exception e) {
+            throw importFailed(e);
+        }
+        if (logger.isLoggable(getClass(), TechnicalLogSeverity.INFO)) {
+            logger.log(getClass(), TechnicalLogSeverity.INFO, "Organization imported: " + describeProgress());
+        }
+        return warnings;
+    }
+
+    private SBonitaException importFailed(final Exception e) {
+        if (numberOfCommittedElements == 0) {
+            return e instanceof SBonitaException ? (SBonitaException) e : new SImportOrganizationException(e);
+        }
+        return new SImportOrganizationException("Organization import stopped after " + describeProgress()
+                + ". Import the organization again using policy IGNORE_DUPLICATES or MERGE_DUPLICATES to import the remaining elements", e);
+    }
+
+    private void loadExistingOrganization() throws Exception {
+        loadPages(fromIndex -> identityService.getUsers(fromIndex, PREFETCH_PAGE_SIZE, "id", OrderByType.ASC),
+                user -> userNameToId.put(user.getUserName(), user.getId()));
+        loadPages(fromIndex -> identityService.getRoles(fromIndex, PREFETCH_PAGE_SIZE, "id", OrderByType.ASC),
+                role -> roleNameToId.put(role.getName(), role.getId()));
+        loadPages(fromIndex -> identityService.getGroups(fromIndex, PREFETCH_PAGE_SIZE, "id", OrderByType.ASC),
+                group -> groupPathToId.put(group.getPath(), group.getId()));
+        final OrderByOption orderById = new OrderByOption(SUserMembership.class, "id", OrderByType.ASC);
+        loadPages(fromIndex -> identityService.getUserMemberships(fromIndex, PREFETCH_PAGE_SIZE, orderById),
+                membership -> existingMemberships.add(new MembershipKey(membership.getUserId(), membership.getGroupId(), membership.getRoleId())));
+    }
+
+    private <T> void loadPages(final PageReader<T> pageReader, final Consumer<T> consumer) throws Exception {
+        int fromIndex = 0;
+        List<T> page;
+        do {
+            final int currentIndex = fromIndex;
+            // one transaction per page to not keep all entities of the tenant in the session
+            page = userTransactionService.executeInTransaction(() -> pageReader.read(currentIndex));
+            page.forEach(consumer);
+            fromIndex += PREFETCH_PAGE_SIZE;
+        } while (page.size() == PREFETCH_PAGE_SIZE);
+    }
+
+    @Override
+    public void handle(final ExportedCustomUserInfoDefinition customUserInfoDefinition) throws SBonitaException {
+        add(customUserInfoDefinition);
+    }
+
+    @Override
+    public void handle(final ExportedUser user) throws SBonitaException {
+        add(user);
+    }
+
+    @Override
+    public void handle(final ExportedRole role) throws SBonitaException {
+        add(role);
+    }
+
+    @Override
+    public void handle(final ExportedGroup group) throws SBonitaException {
+        add(group);
+    }
+
+    @Override
+    public void handle(final ExportedUserMembership membership) throws SBonitaException {
+        add(membership);
+    }
+
+    private void add(final Object element) throws SBonitaException {
+        // memberships reference elements imported before them: a chunk contains only one kind of elements
+        if (!chunk.isEmpty() && chunk.get(0).getClass() != element.getClass()) {
+            commitChunk();
+        }
+        chunk.add(element);
+        if (chunk.size() >= chunkSize) {
+            commitChunk();
+        }
+    }
+
+    private void commitChunk() throws SBonitaException {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        inTransaction(() -> {
+            for (final Object element : chunk) {
+                importElement(element);
+            }
+        });
+        numberOfCommittedElements += chunk.size();
+        numberOfImportedElements.merge(chunk.get(0).getClass(), chunk.size(), Integer::sum);
+        chunk.clear();
+        if (logger.isLoggable(getClass(), TechnicalLogSeverity.INFO)) {
+            logger.log(getClass(), TechnicalLogSeverity.INFO, "Importing organization: " + describeProgress());
+        }
+    }
+
+    private void inTransaction(final ChunkContent content) throws SBonitaException {
+        try {
+            userTransactionService.executeInTransaction(() -> {
+                content.execute();
+                return null;
+            });
+        } catch (final SBonitaException e) {
+            throw e;
+        } catch (final Exception e) {
+            throw new SImportOrganizationException(e);
+        }
+    }
+
+    private String describeProgress() {
+        final StringBuilder progress = new StringBuilder().append(numberOfCommittedElements).append(" elements committed");
+        for (final Map.Entry<Class<?>, Integer> entry : numberOfImportedElements.entrySet()) {
+            progress.append(", ").append(entry.getValue()).append(" of type ").append(entry.getKey().getSimpleName());
+        }
+        return progress.toString();
+    }
+
+    private void importElement(final Object element) throws SBonitaException {
+        if (element instanceof ExportedUser) {
+            importUser((ExportedUser) element);
+        } else if (element instanceof ExportedUserMembership) {
+            importMembership((ExportedUserMembership) element);
+        } else if (element instanceof ExportedGroup) {
+            importGroup((ExportedGroup) element);
+        } else if (element instanceof ExportedRole) {
+            importRole((ExportedRole) element);
+        } else if (element instanceof ExportedCustomUserInfoDefinition) {
+            importCustomUserInfoDefinition((ExportedCustomUserInfoDefinition) element);
+        }
+    }
+
+    private void importCustomUserInfoDefinition(final ExportedCustomUserInfoDefinition definition) throws SBonitaException {
+        customUserInfoDefinitions.putAll(new CustomUserInfoDefinitionImporter(serviceAccessor, strategy)
+                .importCustomUserInfoDefinitions(Collections.singletonList(definition)));
+    }
+
+    private void importUser(final ExportedUser user) throws SBonitaException {
+        if (userImporter == null) {
+            // custom user info definitions are before users in the organization
+            userImporter = createUserImporter();
+        }
+        final SUser sUser = userImporter.importUser(user, userNameToId.get(user.getUserName()));
+        userNameToId.put(sUser.getUserName(), sUser.getId());
+        final String managerUserName = user.getManagerUserName();
+        if (managerUserName != null && managerUserName.trim().length() > 0) {
+            managers.put(user.getUserName(), managerUserName.trim());
+        }
+    }
+
+    UserImporter createUserImporter() {
+        return new UserImporter(serviceAccessor, strategy, SessionInfos.getUserIdFromSession(),
+                new CustomUserInfoValueImporter(userInfoValueAPI, customUserInfoDefinitions));
+    }
+
+    private void importRole(final ExportedRole role) throws SBonitaException {
+        final Long existingRoleId = roleNameToId.get(role.getName());
+        if (existingRoleId != null) {
+            strategy.foundExistingRole(identityService.getRole(existingRoleId), role);
+            return;
+        }
+        final SRole sRole = ModelConvertor.constructSRole(role);
+        identityService.createRole(sRole, null, null);
+        roleNameToId.put(sRole.getName(), sRole.getId());
+    }
+
+    private void importGroup(final ExportedGroup group) throws SBonitaException {
+        if (group.getName().contains("/")) {
+            warnings.add("The group name " + group.getName() + " contains the character '/' which is not supported. The group has not been imported");
+            return;
+        }
+        final Long existingGroupId = groupPathToId.get(ImportOrganization.getGroupPath(group));
+        if (existingGroupId != null) {
+            strategy.foundExistingGroup(identityService.getGroup(existingGroupId), group);
+            return;
+        }
+        final SGroup sGroup = ModelConvertor.constructSGroup(group);
+        identityService.createGroup(sGroup, null, null);
+        groupPathToId.put(sGroup.getPath(), sGroup.getId());
+    }
+
+    private void importMembership(final ExportedUserMembership membership) throws SBonitaException {
+        final Long userId = getIdOrDefault(userNameToId, membership.getUserName());
+        final String groupParentPath = membership.getGroupParentPath();
+        final Long groupId = groupPathToId.get((groupParentPath == null ? '/' : groupParentPath + '/') + membership.getGroupName());
+        final Long roleId = getIdOrDefault(roleNameToId, membership.getRoleName());
+        if (userId == null || groupId == null || roleId == null) {
+            if (logger.isLoggable(getClass(), TechnicalLogSeverity.WARNING)) {
+                logger.log(getClass(), TechnicalLogSeverity.WARNING, "The membership " + membership
+                        + " could not be imported because the user, group or role can't be found\n userId=" + userId + " groupId=" + groupId
+                        + " roleId=" + roleId);
+            }
+            return;
+        }
+        final MembershipKey key = new MembershipKey(userId, groupId, roleId);
+        if (existingMemberships.contains(key)) {
+            strategy.foundExistingMembership(identityService.getUserMembership(userId, groupId, roleId));
+            return;
+        }
+        final Long assignedBy = getIdOrDefault(userNameToId, membership.getAssignedBy());
+        final SUserMembership sUserMembership = BuilderFactory.get(SUserMembershipBuilderFactory.class).createNewInstance(userId, groupId, roleId)
+                .setAssignedBy(assignedBy == null ? -1L : assignedBy).setAssignedDate(ImportOrganization.getAssignedDate(membership)).done();
+        identityService.createUserMembership(sUserMembership);
+        existingMemberships.add(key);
+    }
+
+    /*
+     * -1 when no name is given, null when the name is unknown
+     */
+    private Long getIdOrDefault(final Map<String, Long> nameToId, final String name) {
+        if (name == null || name.isEmpty()) {
+            return -1L;
+        }
+        return nameToId.get(name);
+    }
+
+    private void updateManagers() throws SBonitaException {
+        final Iterator<Map.Entry<String, String>> iterator = managers.entrySet().iterator();
+        while (iterator.hasNext()) {
+            final List<Map.Entry<String, String>> managersOfChunk = new ArrayList<>(chunkSize);
+            while (iterator.hasNext() && managersOfChunk.size() < chunkSize) {
+                managersOfChunk.add(iterator.next());
+            }
+            inTransaction(() -> {
+                for (final Map.Entry<String, String> userAndManager : managersOfChunk) {
+                    updateManager(userAndManager.getKey(), userAndManager.getValue());
+                }
+            });
+        }
+    }
+
+    private void updateManager(final String userName, final String managerUserName) throws SBonitaException {
+        final Long managerId = userNameToId.get(managerUserName);
+        if (managerId == null) {
+            logger.log(getClass(), TechnicalLogSeverity.WARNING, "The user " + userName + " has a manager with username "
+                    + managerUserName + ", but this one does not exist. Please set it manually.");
+            return;
+        }
+        identityService.updateUser(identityService.getUser(userNameToId.get(userName)),
+                BuilderFactory.get(SUserUpdateBuilderFactory.class).createNewInstance().updateManagerUserId(managerId).done());
+    }
+
+    private interface PageReader<T> {
+
+        List<T> read(int fromIndex) throws SBonitaException;
+    }
+
+    private interface ChunkContent {
+
+        void execute() throws SBonitaException;
+    }
+
+    private static final class MembershipKey {
+
+        private final long userId;
+
+        private final long groupId;
+
+        private final long roleId;
+
+        private MembershipKey(final long userId, final long groupId, final long roleId) {
+            this.userId = userId;
+            this.groupId = groupId;
+            this.roleId = roleId;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            final MembershipKey that = (MembershipKey) o;
+            return userId == that.userId && groupId == that.groupId && roleId == that.roleId;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(userId, groupId, roleId);
+        }
+    }
+
+}
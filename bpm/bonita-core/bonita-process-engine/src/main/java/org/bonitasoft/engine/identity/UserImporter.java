@@ -67,6 +67,21 @@ public class UserImporter {
         return userNameToSUsers;
     }
 
+    /**
+     * import the user when it is already known whether a user with the same name exists, without looking it up
+     *
+     * @param existingUserId
+     *        the id of the user having the same name or null if there is none
+     */
+    public SUser importUser(final ExportedUser userToImport, final Long existingUserId) throws SBonitaException {
+        if (existingUserId != null) {
+            final SUser existingUser = identityService.getUser(existingUserId);
+            strategy.foundExistingUser(existingUser, userToImport);
+            return existingUser;
+        }
+        return addAllUserInfo(userToImport);
+    }
+
     private boolean hasUserWithUserName(String userName) throws SBonitaReadException {
         final SUserBuilderFactory keyProvider = BuilderFactory.get(SUserBuilderFactory.class);
         final FilterOption filter = new FilterOption(SUser.class, keyProvider.getUserNameKey(), userName);
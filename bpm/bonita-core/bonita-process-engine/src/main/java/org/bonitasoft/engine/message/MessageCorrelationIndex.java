@@ -0,0 +1,252 @@
+/**
+ * Copyright (C) 2018 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.message;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.bonitasoft.engine.core.process.instance.model.event.handling.SBPMEventType;
+import org.bonitasoft.engine.core.process.instance.model.event.handling.SMessageEventCouple;
+import org.bonitasoft.engine.core.process.instance.model.event.handling.SMessageInstance;
+import org.bonitasoft.engine.core.process.instance.model.event.handling.SWaitingMessageEvent;
+import org.bonitasoft.engine.core.process.instance.model.event.handling.impl.SMessageEventCoupleImpl;
+
+/**
+ * In memory index of the message instances and waiting message events that are not yet matched.
+ * <p>
+ * Elements are indexed by their correlation key (message name, target process and the 5 correlations), so that a new
+ * message or waiting message is matched in O(1) against the elements having the same key instead of joining the whole
+ * {@code message_instance} and {@code waiting_event} tables. The rules are the ones of the {@code getMessageEventCouples}
+ * query and of {@link MessagesHandlingService#getMessageUniqueCouples(List)}:
+ * <ul>
+ * <li>a message having a target flow node only matches waiting messages of this flow node</li>
+ * <li>a message is matched only once</li>
+ * <li>a waiting message is matched only once, except start events that stay in the index and match all messages</li>
+ * </ul>
+ * The couples produced are only candidates: elements can be deleted or modified in database without the index knowing
+ * it (e.g. when a process instance is cancelled), so they must be checked before being executed.
+ * The index is bounded: when it contains more than maxEntries elements, it is cleared and must be rebuilt from the
+ * database.
+ * <p>
+ * This class is not thread safe: it is only used by the message matching thread.
+ */
+public class MessageCorrelationIndex {
+
+    private final boolean enabled;
+    private final int maxEntries;
+    private final Map<CorrelationKey, Bucket> buckets = new HashMap<>();
+    private int numberOfEntries;
+    private boolean complete;
+    private boolean overflowed;
+
+    /**
+     * @param enabled true to match messages using this index, false to always use the database
+     * @param maxEntries maximum number of message instances and waiting messages kept in memory
+     */
+    public MessageCorrelationIndex(boolean enabled, int maxEntries) {
+        this.enabled = enabled;
+        this.maxEntries = maxEntries;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return true if the index contains all unmatched elements of the database, i.e. it was rebuilt and not cleared
+     *         since then
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    public void markAsComplete() {
+        complete = !overflowed;
+    }
+
+    /**
+     * @return true if the index was cleared because it contained more than maxEntries elements since the last call to
+     *         {@link #clear()}
+     */
+    public boolean hasOverflowed() {
+        return overflowed;
+    }
+
+    public void clear() {
+        removeAll();
+        overflowed = false;
+    }
+
+    private void removeAll() {
+        buckets.clear();
+        numberOfEntries = 0;
+        complete = false;
+    }
+
+    public int size() {
+        return numberOfEntries;
+    }
+
+    /**
+     * Index a new message instance
+     *
+     * @return the couple matching this message, or null if no waiting message matches it yet
+     */
+    public SMessageEventCouple addMessage(SMessageInstance messageInstance) {
+        CorrelationKey key = new CorrelationKey(messageInstance.getMessageName(), messageInstance.getTargetProcess(), messageInstance.getCorrelation1(),
+                messageInstance.getCorrelation2(), messageInstance.getCorrelation3(), messageInstance.getCorrelation4(),
+                messageInstance.getCorrelation5());
+        Bucket bucket = buckets.get(key);
+        if (bucket != null) {
+            Iterator<WaitingMessage> waitingMessages = bucket.waitingMessages.iterator();
+            while (waitingMessages.hasNext()) {
+                WaitingMessage waitingMessage = waitingMessages.next();
+                if (waitingMessage.accepts(messageInstance.getTargetFlowNode())) {
+                    if (!waitingMessage.isStartEvent()) {
+                        waitingMessages.remove();
+                        removed(key, bucket);
+                    }
+                    return new SMessageEventCoupleImpl(waitingMessage.id, waitingMessage.eventType, messageInstance.getId());
+                }
+            }
+        } else {
+            bucket = new Bucket();
+            buckets.put(key, bucket);
+        }
+        bucket.messages.addLast(new Message(messageInstance.getId(), messageInstance.getTargetFlowNode()));
+        added();
+        return null;
+    }
+
+    /**
+     * Index a new waiting message
+     *
+     * @return the couples matching this waiting message: at most one, except for start events that match all messages
+     */
+    public List<SMessageEventCouple> addWaitingMessage(SWaitingMessageEvent waitingMessageEvent) {
+        CorrelationKey key = new CorrelationKey(waitingMessageEvent.getMessageName(), waitingMessageEvent.getProcessName(),
+                waitingMessageEvent.getCorrelation1(), waitingMessageEvent.getCorrelation2(), waitingMessageEvent.getCorrelation3(),
+                waitingMessageEvent.getCorrelation4(), waitingMessageEvent.getCorrelation5());
+        WaitingMessage waitingMessage = new WaitingMessage(waitingMessageEvent.getId(), waitingMessageEvent.getEventType(),
+                waitingMessageEvent.getFlowNodeName());
+        Bucket bucket = buckets.get(key);
+        List<SMessageEventCouple> couples = new ArrayList<>(1);
+        if (bucket != null) {
+            Iterator<Message> messages = bucket.messages.iterator();
+            while (messages.hasNext()) {
+                Message message = messages.next();
+                if (waitingMessage.accepts(message.targetFlowNode)) {
+                    messages.remove();
+                    removed(key, bucket);
+                    couples.add(new SMessageEventCoupleImpl(waitingMessage.id, waitingMessage.eventType, message.id));
+                    if (!waitingMessage.isStartEvent()) {
+                        return couples;
+                    }
+                }
+            }
+        } else {
+            bucket = new Bucket();
+            buckets.put(key, bucket);
+        }
+        bucket.waitingMessages.addLast(waitingMessage);
+        added();
+        return couples;
+    }
+
+    private void added() {
+        numberOfEntries++;
+        if (numberOfEntries > maxEntries) {
+            removeAll();
+            overflowed = true;
+        }
+    }
+
+    private void removed(CorrelationKey key, Bucket bucket) {
+        numberOfEntries--;
+        if (bucket.isEmpty()) {
+            buckets.remove(key);
+        }
+    }
+
+    private static final class CorrelationKey {
+
+        private final String[] values;
+        private final int hash;
+
+        CorrelationKey(String... values) {
+            this.values = values;
+            this.hash = Arrays.hashCode(values);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return this == o || o instanceof CorrelationKey && Arrays.equals(values, ((CorrelationKey) o).values);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static final class Bucket {
+
+        private final ArrayDeque<Message> messages = new ArrayDeque<>(1);
+        private final ArrayDeque<WaitingMessage> waitingMessages = new ArrayDeque<>(1);
+
+        boolean isEmpty() {
+            return messages.isEmpty() && waitingMessages.isEmpty();
+        }
+    }
+
+    private static final class Message {
+
+        private final long id;
+        private final String targetFlowNode;
+
+        Message(long id, String targetFlowNode) {
+            this.id = id;
+            this.targetFlowNode = targetFlowNode;
+        }
+    }
+
+    private static final class WaitingMessage {
+
+        private final long id;
+        private final SBPMEventType eventType;
+        private final String flowNodeName;
+
+        WaitingMessage(long id, SBPMEventType eventType, String flowNodeName) {
+            this.id = id;
+            this.eventType = eventType;
+            this.flowNodeName = flowNodeName;
+        }
+
+        boolean accepts(String targetFlowNode) {
+            return targetFlowNode == null || Objects.equals(targetFlowNode, flowNodeName);
+        }
+
+        boolean isStartEvent() {
+            //EVENT_SUB_PROCESS of type non-interrupted should be considered as well, as soon as we support them
+            return SBPMEventType.START_EVENT.equals(eventType);
+        }
+    }
+
+}
@@ -14,10 +14,14 @@
 
 package org.bonitasoft.engine.message;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.RejectedExecutionHandler;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -53,11 +57,19 @@ import org.bonitasoft.engine.work.SWorkRegisterException;
 import org.bonitasoft.engine.work.WorkService;
 
 /**
+ * Match message instances with waiting message events and trigger the execution of the matched couples.
+ * <p>
+ * By default, the matching is done by joining message instances and waiting messages in database each time an element is
+ * created. When the {@link MessageCorrelationIndex} is enabled, newly created elements are matched in memory against the
+ * index and the database join is only used to rebuild the index (on startup, when it overflows or when explicitly
+ * triggered).
+ *
  * @author Baptiste Mesta
  */
 public class MessagesHandlingService implements TenantLifecycleService {
 
     private static final int MAX_COUPLES = 1000;
+    private static final int INDEX_PAGE_SIZE = 1000;
     private static final String LOCK_TYPE = "EVENTS";
     private ThreadPoolExecutor threadPoolExecutor;
     private EventInstanceService eventInstanceService;
@@ -68,10 +80,20 @@ public class MessagesHandlingService implements TenantLifecycleService {
     private UserTransactionService userTransactionService;
     private SessionAccessor sessionAccessor;
     private BPMWorkFactory workFactory;
+    private final MessageCorrelationIndex correlationIndex;
+    private final ConcurrentLinkedQueue<Object> createdElements = new ConcurrentLinkedQueue<>();
+    private volatile boolean indexRebuildRequested = true;
 
     public MessagesHandlingService(EventInstanceService eventInstanceService, WorkService workService, TechnicalLoggerService loggerService,
             LockService lockService, Long tenantId, UserTransactionService userTransactionService,
             SessionAccessor sessionAccessor, BPMWorkFactory workFactory) {
+        this(eventInstanceService, workService, loggerService, lockService, tenantId, userTransactionService, sessionAccessor, workFactory,
+                new MessageCorrelationIndex(false, 0));
+    }
+
+    public MessagesHandlingService(EventInstanceService eventInstanceService, WorkService workService, TechnicalLoggerService loggerService,
+            LockService lockService, Long tenantId, UserTransactionService userTransactionService,
+            SessionAccessor sessionAccessor, BPMWorkFactory workFactory, MessageCorrelationIndex correlationIndex) {
         this.eventInstanceService = eventInstanceService;
         this.workService = workService;
         this.loggerService = loggerService;
@@ -80,6 +102,7 @@ public class MessagesHandlingService implements TenantLifecycleService {
         this.userTransactionService = userTransactionService;
         this.sessionAccessor = sessionAccessor;
         this.workFactory = workFactory;
+        this.correlationIndex = correlationIndex != null ? correlationIndex : new MessageCorrelationIndex(false, 0);
     }
 
     @Override
@@ -117,6 +140,8 @@ public class MessagesHandlingService implements TenantLifecycleService {
         } catch (InterruptedException ignored) {
         }
         threadPoolExecutor = null;
+        //elements created while stopped are not known by the index: it will be rebuilt on next matching
+        indexRebuildRequested = true;
         log(TechnicalLogSeverity.INFO, "Thread that handle messages successfully stopped.");
     }
 
@@ -130,19 +155,58 @@ public class MessagesHandlingService implements TenantLifecycleService {
         start();
     }
 
+    /**
+     * Trigger the matching of all message instances and waiting messages using the database. When the correlation index is
+     * enabled, it is also rebuilt from the database.
+     */
     public void triggerMatchingOfMessages() throws STransactionNotFoundException {
         if (threadPoolExecutor == null) {
             log(TechnicalLogSeverity.WARNING, "Cannot match events when service is stopped. Maybe the engine is not yet started.");
             return;
         }
-        userTransactionService.registerBonitaSynchronization(new RegisterMatchingOfEventSynchronization());
+        //the index might miss elements that were not created through this service, e.g. by another node or reset after a failure:
+        //it is rebuilt once the current transaction is completed, so that the rebuild sees what this transaction changed
+        userTransactionService.registerBonitaSynchronization(new RegisterMatchingOfEventSynchronization(null, true));
+    }
+
+    private void triggerMatchingOfDatabaseMessages() throws STransactionNotFoundException {
+        userTransactionService.registerBonitaSynchronization(new RegisterMatchingOfEventSynchronization(null, false));
+    }
+
+    /**
+     * Trigger the matching of a message instance created in the current transaction
+     */
+    public void triggerMatchingOfMessage(SMessageInstance messageInstance) throws STransactionNotFoundException {
+        triggerMatchingOfElement(messageInstance);
+    }
+
+    /**
+     * Trigger the matching of a waiting message created in the current transaction
+     */
+    public void triggerMatchingOfWaitingMessage(SWaitingMessageEvent waitingMessageEvent) throws STransactionNotFoundException {
+        triggerMatchingOfElement(waitingMessageEvent);
+    }
+
+    private void triggerMatchingOfElement(Object element) throws STransactionNotFoundException {
+        if (threadPoolExecutor == null) {
+            log(TechnicalLogSeverity.WARNING, "Cannot match events when service is stopped. Maybe the engine is not yet started.");
+            return;
+        }
+        userTransactionService.registerBonitaSynchronization(new RegisterMatchingOfEventSynchronization(correlationIndex.isEnabled() ? element : null, false));
     }
 
-    private void matchEventCoupleAndTriggerExecution() throws Exception {
+    void matchEventCoupleAndTriggerExecution() throws Exception {
         userTransactionService.executeInTransaction(new Callable<Object>() {
 
             @Override
             public Object call() throws Exception {
+                if (correlationIndex.isEnabled() && correlationIndex.isComplete() && !indexRebuildRequested) {
+                    userTransactionService.registerBonitaSynchronization(new CorrelationIndexSynchronization(false));
+                    matchCreatedElementsUsingIndex();
+                    return null;
+                }
+                //elements created until now are matched using the database
+                createdElements.clear();
                 final List<SMessageEventCouple> potentialMessageCouples = eventInstanceService.getMessageEventCouples(0, MAX_COUPLES);
                 final List<SMessageEventCouple> uniqueCouples = getMessageUniqueCouples(potentialMessageCouples);
                 executeUniqueMessageCouplesWork(uniqueCouples);
@@ -153,13 +217,126 @@ public class MessagesHandlingService implements TenantLifecycleService {
                 }
                 if (potentialMessageCouples.size() == MAX_COUPLES) {
                     log(TechnicalLogSeverity.DEBUG, "There is more than " + MAX_COUPLES + " event to match. will retrigger the execution now.");
-                    triggerMatchingOfMessages();
+                    triggerMatchingOfDatabaseMessages();
+                } else if (correlationIndex.isEnabled()) {
+                    userTransactionService.registerBonitaSynchronization(new CorrelationIndexSynchronization(true));
+                    rebuildCorrelationIndex();
                 }
                 return null;
             }
         });
     }
 
+    /**
+     * Rebuild the correlation index from the database. Must be called after the database matching so that the index
+     * only contains elements that do not match.
+     * The index is only marked as complete once the transaction is committed, see {@link CorrelationIndexSynchronization}.
+     */
+    private void rebuildCorrelationIndex() throws SBonitaException {
+        indexRebuildRequested = false;
+        //elements committed from now on can be both in the database and in the queue: the duplicates are only candidates
+        //that are discarded when checked against the database
+        correlationIndex.clear();
+        final ArrayDeque<SMessageEventCouple> candidates = new ArrayDeque<>();
+        List<SMessageInstance> messageInstances;
+        long lastId = 0;
+        do {
+            messageInstances = eventInstanceService.getUnhandledMessageInstances(lastId, INDEX_PAGE_SIZE);
+            for (SMessageInstance messageInstance : messageInstances) {
+                addCandidate(candidates, correlationIndex.addMessage(messageInstance));
+                lastId = messageInstance.getId();
+            }
+        } while (messageInstances.size() == INDEX_PAGE_SIZE && !correlationIndex.hasOverflowed());
+        List<SWaitingMessageEvent> waitingMessages;
+        lastId = 0;
+        do {
+            waitingMessages = eventInstanceService.getFreeWaitingMessageEvents(lastId, INDEX_PAGE_SIZE);
+            for (SWaitingMessageEvent waitingMessage : waitingMessages) {
+                candidates.addAll(correlationIndex.addWaitingMessage(waitingMessage));
+                lastId = waitingMessage.getId();
+            }
+        } while (waitingMessages.size() == INDEX_PAGE_SIZE && !correlationIndex.hasOverflowed());
+        executeCandidateCouples(candidates);
+        if (correlationIndex.hasOverflowed()) {
+            //try again on next matching: the database is used until the messages are consumed
+            indexRebuildRequested = true;
+            log(TechnicalLogSeverity.INFO, "Too many messages are waiting to be matched to keep them in memory, the database will be used to match them.");
+        } else {
+            log(TechnicalLogSeverity.DEBUG, "Correlation index of messages rebuilt with " + correlationIndex.size() + " elements");
+        }
+    }
+
+    private void matchCreatedElementsUsingIndex() throws SBonitaException {
+        final ArrayDeque<SMessageEventCouple> candidates = new ArrayDeque<>();
+        Object element;
+        while ((element = createdElements.poll()) != null) {
+            if (element instanceof SMessageInstance) {
+                addCandidate(candidates, correlationIndex.addMessage((SMessageInstance) element));
+            } else {
+                candidates.addAll(correlationIndex.addWaitingMessage((SWaitingMessageEvent) element));
+            }
+        }
+        executeCandidateCouples(candidates);
+        if (!correlationIndex.isComplete()) {
+            indexRebuildRequested = true;
+            log(TechnicalLogSeverity.DEBUG, "Correlation index of messages was cleared, the database will be used to match messages.");
+            triggerMatchingOfDatabaseMessages();
+        }
+    }
+
+    /**
+     * Execute the couples matched by the index after checking them against the database: the index is not notified when
+     * an element is deleted or modified by something else than the matching.
+     * When only one side of a couple is still valid, it is matched again using the index.
+     */
+    private void executeCandidateCouples(ArrayDeque<SMessageEventCouple> candidates) throws SBonitaException {
+        int executed = 0;
+        SMessageEventCouple couple;
+        while ((couple = candidates.poll()) != null) {
+            final SWaitingMessageEvent waitingMessage = eventInstanceService.getWaitingMessage(couple.getWaitingMessageId());
+            final SMessageInstance messageInstance = eventInstanceService.getMessageInstance(couple.getMessageInstanceId());
+            final boolean waitingMessageValid = isFree(waitingMessage);
+            final boolean messageInstanceValid = isFree(messageInstance);
+            if (waitingMessageValid && messageInstanceValid) {
+                executeMessageCouple(couple.getMessageInstanceId(), couple.getWaitingMessageId());
+                executed++;
+            } else if (!waitingMessageValid && isStartEvent(couple)) {
+                //start events are never removed from the index when matched: rebuild it to get rid of this one
+                if (messageInstanceValid) {
+                    indexRebuildRequested = true;
+                    triggerMatchingOfDatabaseMessages();
+                }
+            } else if (messageInstanceValid) {
+                addCandidate(candidates, correlationIndex.addMessage(messageInstance));
+            } else if (waitingMessageValid && !isStartEvent(couple)) {
+                candidates.addAll(correlationIndex.addWaitingMessage(waitingMessage));
+            }
+        }
+        if (executed > 0) {
+            log(TechnicalLogSeverity.INFO, "Triggered execution of " + executed + " event couples");
+        }
+    }
+
+    private static void addCandidate(ArrayDeque<SMessageEventCouple> candidates, SMessageEventCouple couple) {
+        if (couple != null) {
+            candidates.add(couple);
+        }
+    }
+
+    private static boolean isStartEvent(SMessageEventCouple couple) {
+        //EVENT_SUB_PROCESS of type non-interrupted should be considered as well, as soon as we support them
+        return SBPMEventType.START_EVENT.equals(couple.getWaitingMessageEventType());
+    }
+
+    private static boolean isFree(SWaitingMessageEvent waitingMessage) {
+        return waitingMessage != null && waitingMessage.isActive() && !waitingMessage.isLocked()
+                && waitingMessage.getProgress() == SWaitingMessageEventBuilderFactory.PROGRESS_FREE_KEY;
+    }
+
+    private static boolean isFree(SMessageInstance messageInstance) {
+        return messageInstance != null && !messageInstance.isLocked() && !messageInstance.isHandled();
+    }
+
     private void log(TechnicalLogSeverity severity, String message) {
         loggerService.log(MessagesHandlingService.class, severity, message);
     }
@@ -195,8 +372,8 @@ public class MessagesHandlingService implements TenantLifecycleService {
      * @return the reduced list of couple, where we insure that a unique message instance is associated with a unique waiting message.
      */
     List<SMessageEventCouple> getMessageUniqueCouples(List<SMessageEventCouple> potentialMessageCouples) throws SEventTriggerInstanceReadException {
-        final List<Long> takenMessages = new ArrayList<>();
-        final List<Long> takenWaitings = new ArrayList<>();
+        final Set<Long> takenMessages = new HashSet<>();
+        final Set<Long> takenWaitings = new HashSet<>();
         final List<SMessageEventCouple> uniqueMessageCouples = new ArrayList<>();
         for (final SMessageEventCouple couple : potentialMessageCouples) {
             final long messageInstanceId = couple.getMessageInstanceId();
@@ -284,8 +461,47 @@ public class MessagesHandlingService implements TenantLifecycleService {
         }
     }
 
+    /**
+     * The correlation index is modified by the matching transaction before it is committed. It is only considered as
+     * reflecting the database once the transaction is committed: when it is rolled back, the index is dropped and rebuilt
+     * from the database on next matching. It is not retriggered right away to avoid looping when the database is failing.
+     */
+    private class CorrelationIndexSynchronization implements BonitaTransactionSynchronization {
+
+        private final boolean rebuilt;
+
+        CorrelationIndexSynchronization(boolean rebuilt) {
+            this.rebuilt = rebuilt;
+        }
+
+        @Override
+        public void beforeCommit() {
+        }
+
+        @Override
+        public void afterCompletion(TransactionState txState) {
+            if (txState == TransactionState.COMMITTED) {
+                if (rebuilt) {
+                    correlationIndex.markAsComplete();
+                }
+                return;
+            }
+            log(TechnicalLogSeverity.DEBUG, "Matching of messages was rolled back, the correlation index of messages will be rebuilt.");
+            correlationIndex.clear();
+            indexRebuildRequested = true;
+        }
+    }
+
     private class RegisterMatchingOfEventSynchronization implements BonitaTransactionSynchronization {
 
+        private final Object createdElement;
+        private final boolean rebuildIndex;
+
+        RegisterMatchingOfEventSynchronization(Object createdElement, boolean rebuildIndex) {
+            this.createdElement = createdElement;
+            this.rebuildIndex = rebuildIndex;
+        }
+
         @Override
         public void beforeCommit() {
         }
@@ -293,6 +509,12 @@ public class MessagesHandlingService implements TenantLifecycleService {
         @Override
         public void afterCompletion(TransactionState txState) {
             log(TechnicalLogSeverity.DEBUG, "transaction triggered the matching of events.");
+            if (createdElement != null && txState == TransactionState.COMMITTED) {
+                createdElements.add(createdElement);
+            }
+            if (rebuildIndex) {
+                indexRebuildRequested = true;
+            }
             threadPoolExecutor.submit(new MatchEventCallable());
         }
     }
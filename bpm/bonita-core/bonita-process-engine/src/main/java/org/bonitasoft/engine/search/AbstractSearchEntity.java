@@ -24,6 +24,7 @@ import org.bonitasoft.engine.persistence.PersistentObject;
 import org.bonitasoft.engine.persistence.QueryOptions;
 import org.bonitasoft.engine.persistence.SBonitaReadException;
 import org.bonitasoft.engine.persistence.SearchFields;
+import org.bonitasoft.engine.persistence.search.FilterOperationType;
 import org.bonitasoft.engine.search.descriptor.SearchEntityDescriptor;
 import org.bonitasoft.engine.search.impl.SearchFilter;
 import org.bonitasoft.engine.search.impl.SearchResultImpl;
@@ -101,17 +102,56 @@ public abstract class AbstractSearchEntity<C extends Serializable, S extends Per
             final OrderByOption order = searchDescriptor.getEntityOrder(sort);
             orderOptions.add(order);
         }
+        final List<Serializable> searchAfter = options.getSearchAfter();
+        final List<FilterOption> pageFilterOptions = getPageFilterOptions(filterOptions, sorts, searchAfter);
         final QueryOptions countOptions = new QueryOptions(0, QueryOptions.UNLIMITED_NUMBER_OF_RESULTS, null, filterOptions, userSearchTerm);
-        count = executeCount(countOptions);
-        if (count > 0 && numberOfResults != 0) {
-            final QueryOptions searchOptions = new QueryOptions(fromIndex, numberOfResults, orderOptions, filterOptions, userSearchTerm);
-            serverObjects = executeSearch(searchOptions);
-        } else {
+        if (numberOfResults == 0) {
+            count = executeCount(countOptions);
             serverObjects = Collections.emptyList();
+        } else if (options.isCountSkipped()) {
+            // read one more result to know if there are more results after this page
+            final int numberOfResultsToRead = numberOfResults == Integer.MAX_VALUE ? numberOfResults : numberOfResults + 1;
+            serverObjects = executeSearch(new QueryOptions(fromIndex, numberOfResultsToRead, orderOptions, pageFilterOptions, userSearchTerm));
+            final boolean hasMoreResults = serverObjects.size() > numberOfResults;
+            if (hasMoreResults) {
+                serverObjects = serverObjects.subList(0, numberOfResults);
+            }
+            count = fromIndex + serverObjects.size() + (hasMoreResults ? 1 : 0);
+        } else if (searchAfter.isEmpty()) {
+            serverObjects = executeSearch(new QueryOptions(fromIndex, numberOfResults, orderOptions, pageFilterOptions, userSearchTerm));
+            if (serverObjects.size() < numberOfResults && (fromIndex == 0 || !serverObjects.isEmpty())) {
+                // this is the last page: the total is known without counting
+                count = fromIndex + serverObjects.size();
+            } else {
+                count = executeCount(countOptions);
+            }
+        } else {
+            count = executeCount(countOptions);
+            if (count > 0) {
+                serverObjects = executeSearch(new QueryOptions(fromIndex, numberOfResults, orderOptions, pageFilterOptions, userSearchTerm));
+            } else {
+                serverObjects = Collections.emptyList();
+            }
         }
         clientObjects = convertToClientObjects(serverObjects);
     }
 
+    private List<FilterOption> getPageFilterOptions(final List<FilterOption> filterOptions, final List<Sort> sorts, final List<Serializable> searchAfter)
+            throws SBonitaReadException {
+        if (searchAfter.isEmpty()) {
+            return filterOptions;
+        }
+        final List<FilterOption> pageFilterOptions = new ArrayList<>();
+        if (!filterOptions.isEmpty()) {
+            // filters can contain OR operators
+            pageFilterOptions.add(new FilterOption(FilterOperationType.L_PARENTHESIS));
+            pageFilterOptions.addAll(filterOptions);
+            pageFilterOptions.add(new FilterOption(FilterOperationType.R_PARENTHESIS));
+        }
+        pageFilterOptions.addAll(searchDescriptor.getEntitySearchAfter(sorts, searchAfter));
+        return pageFilterOptions;
+    }
+
     /**
      * execute this search and return the result
      *
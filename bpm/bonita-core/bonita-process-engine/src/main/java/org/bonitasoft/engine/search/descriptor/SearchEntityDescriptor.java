@@ -15,6 +15,7 @@ package org.bonitasoft.engine.search.descriptor;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.StringTokenizer;
@@ -26,6 +27,7 @@ import org.bonitasoft.engine.persistence.PersistentObject;
 import org.bonitasoft.engine.persistence.SBonitaReadException;
 import org.bonitasoft.engine.persistence.SearchFields;
 import org.bonitasoft.engine.persistence.search.FilterOperationType;
+import org.bonitasoft.engine.search.Order;
 import org.bonitasoft.engine.search.Sort;
 import org.bonitasoft.engine.search.impl.SearchFilter;
 
@@ -53,6 +55,59 @@ public abstract class SearchEntityDescriptor {
         return new OrderByOption(fieldDescriptor.getPersistentClass(), fieldDescriptor.getValue(), type);
     }
 
+    /**
+     * Build the filters matching the entities located after the given values of the sort fields, i.e.
+     * {@code (s1 > v1) OR (s1 = v1 AND s2 > v2) OR ...}, using {@code <} for descending sorts.
+     *
+     * @param sorts
+     *        The sorts of the search
+     * @param values
+     *        The values of the sort fields, one per sort
+     * @return the filters to add to the search
+     * @throws SBonitaReadException
+     *         if the values do not match the sorts
+     * @since 7.7.2
+     */
+    public List<FilterOption> getEntitySearchAfter(final List<Sort> sorts, final List<Serializable> values) throws SBonitaReadException {
+        if (values.size() != sorts.size()) {
+            throw new SBonitaReadException("Search after needs one value per sort, got " + values.size() + " values for " + sorts.size() + " sorts");
+        }
+        final List<FilterOption> filterOptions = new ArrayList<FilterOption>();
+        filterOptions.add(new FilterOption(FilterOperationType.L_PARENTHESIS));
+        for (int i = 0; i < sorts.size(); i++) {
+            if (i > 0) {
+                filterOptions.add(new FilterOption(FilterOperationType.OR));
+            }
+            filterOptions.add(new FilterOption(FilterOperationType.L_PARENTHESIS));
+            for (int j = 0; j < i; j++) {
+                filterOptions.add(constructSearchAfterOption(sorts.get(j), values.get(j), FilterOperationType.EQUALS));
+            }
+            final Sort sort = sorts.get(i);
+            filterOptions.add(constructSearchAfterOption(sort, values.get(i), isDescending(sort.getOrder()) ? FilterOperationType.LESS
+                    : FilterOperationType.GREATER));
+            filterOptions.add(new FilterOption(FilterOperationType.R_PARENTHESIS));
+        }
+        filterOptions.add(new FilterOption(FilterOperationType.R_PARENTHESIS));
+        return filterOptions;
+    }
+
+    private FilterOption constructSearchAfterOption(final Sort sort, final Serializable value, final FilterOperationType operationType)
+            throws SBonitaReadException {
+        final FieldDescriptor fieldDescriptor = getEntityKeys().get(sort.getField());
+        if (fieldDescriptor == null) {
+            throw new SBonitaReadException("Invalid sort key: " + sort.getField());
+        }
+        if (value == null) {
+            throw new SBonitaReadException("Search after value of sort key " + sort.getField() + " cannot be null");
+        }
+        return new FilterOption(fieldDescriptor.getPersistentClass(), fieldDescriptor.getValue(), convertFilterValue(sort.getField(), value),
+                operationType);
+    }
+
+    private boolean isDescending(final Order order) {
+        return order == Order.DESC || order == Order.DESC_NULLS_FIRST || order == Order.DESC_NULLS_LAST;
+    }
+
     public SearchFields getEntitySearchTerm(final String searchString) {
         final StringTokenizer tokens = new StringTokenizer(searchString, " ");
         final ArrayList<String> terms = new ArrayList<String>(tokens.countTokens());
@@ -58,6 +58,7 @@ import org.bonitasoft.engine.execution.FlowNodeExecutor;
 import org.bonitasoft.engine.execution.ProcessExecutor;
 import org.bonitasoft.engine.execution.event.EventsHandler;
 import org.bonitasoft.engine.execution.state.FlowNodeStateManager;
+import org.bonitasoft.engine.execution.timer.TimerEventScheduler;
 import org.bonitasoft.engine.execution.work.BPMWorkFactory;
 import org.bonitasoft.engine.expression.ExpressionService;
 import org.bonitasoft.engine.external.identity.mapping.ExternalIdentityMappingService;
@@ -258,4 +259,6 @@ public interface TenantServiceAccessor extends ServiceAccessor {
     MessagesHandlingService getMessagesHandlingService();
 
     BPMWorkFactory getBPMWorkFactory();
+
+    TimerEventScheduler getTimerEventScheduler();
 }
@@ -0,0 +1,120 @@
+/**
+ * Copyright (C) 2018 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.api.impl;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Collections;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+public class APIMethodTest {
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    public static class MyAPIImpl {
+
+        public String concat(final String value, final long number) {
+            return value + number;
+        }
+
+        public String concat(final String value, final int number) {
+            return value + "int" + number;
+        }
+
+        public void failing() {
+            throw new IllegalStateException("failing");
+        }
+
+        public Number number() {
+            return 1;
+        }
+    }
+
+    public static class MyAPIImplExt extends MyAPIImpl {
+
+        @Override
+        public Integer number() {
+            return 2;
+        }
+    }
+
+    @AvailableWhenTenantIsPaused
+    public static class MyPausedAPIImpl {
+
+        public void method() {
+        }
+    }
+
+    @Test
+    public void should_resolve_overloaded_methods_using_the_names_of_the_parameter_types() throws Throwable {
+        final APIMethod withLong = APIMethod.get(MyAPIImpl.class, "concat", asList(String.class.getName(), "long"));
+        final APIMethod withInt = APIMethod.get(MyAPIImpl.class, "concat", asList(String.class.getName(), "int"));
+
+        assertThat(withLong.invoke(new MyAPIImpl(), new Object[] { "a", 1L })).isEqualTo("a1");
+        assertThat(withInt.invoke(new MyAPIImpl(), new Object[] { "a", 1 })).isEqualTo("aint1");
+    }
+
+    @Test
+    public void should_resolve_the_same_method_each_time() throws Throwable {
+        final APIMethod apiMethod = APIMethod.get(MyAPIImpl.class, "failing", Collections.<String> emptyList());
+
+        assertThat(APIMethod.get(MyAPIImpl.class, "failing", null)).isSameAs(apiMethod);
+        assertThat(APIMethod.get(MyAPIImpl.class, MyAPIImpl.class.getMethod("failing"))).isSameAs(apiMethod);
+    }
+
+    @Test
+    public void should_throw_the_exception_of_the_method() throws Throwable {
+        expectedException.expect(IllegalStateException.class);
+        expectedException.expectMessage("failing");
+
+        APIMethod.get(MyAPIImpl.class, "failing", null).invoke(new MyAPIImpl(), null);
+    }
+
+    @Test
+    public void should_prefer_covariant_override_to_bridge_method() throws Throwable {
+        final APIMethod apiMethod = APIMethod.get(MyAPIImplExt.class, "number", null);
+
+        assertThat(apiMethod.getMethod().getReturnType()).isEqualTo(Integer.class);
+        assertThat(apiMethod.invoke(new MyAPIImplExt(), null)).isEqualTo(2);
+    }
+
+    @Test
+    public void should_throw_NoSuchMethodException_when_method_does_not_exist() throws Throwable {
+        expectedException.expect(NoSuchMethodException.class);
+
+        APIMethod.get(MyAPIImpl.class, "concat", asList(String.class.getName(), "double"));
+    }
+
+    @Test
+    public void should_use_annotation_of_the_api_implementation_when_method_is_not_annotated() throws Throwable {
+        final APIMethod apiMethod = APIMethod.get(MyPausedAPIImpl.class, "method", null);
+
+        assertThat(apiMethod.getAvailableWhenTenantIsPaused()).isNotNull();
+        assertThat(apiMethod.isOutsideTransaction()).isFalse();
+    }
+
+    @Test
+    public void should_read_annotations_of_the_method() throws Throwable {
+        assertThat(APIMethod.get(FakeAPI.class, "customTxAPIMethod", null).isOutsideTransaction()).isTrue();
+        assertThat(APIMethod.get(FakeAPI.class, "noSessionRequiredMethod", null).isOutsideTransaction()).isTrue();
+        assertThat(APIMethod.get(FakeAPI.class, "notAnnotatedMethod", null).isOutsideTransaction()).isFalse();
+        assertThat(APIMethod.get(FakeTenantLevelAPI.class, "canAlsoBeCalledOnPausedTenant", null).getAvailableWhenTenantIsPaused()).isNotNull();
+    }
+
+}
@@ -0,0 +1,141 @@
+/**
+ * Copyright (C) 2018 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.api.impl;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.bonitasoft.engine.api.NoSessionRequired;
+import org.bonitasoft.engine.api.PlatformAPI;
+import org.bonitasoft.engine.api.impl.transaction.CustomTransactions;
+import org.bonitasoft.engine.commons.ClassReflector;
+import org.bonitasoft.engine.service.APIAccessResolver;
+import org.bonitasoft.engine.session.impl.APISessionImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Per call overhead of {@link ServerAPIImpl} to resolve an API method, check the node and tenant state and invoke it, compared to the reflective
+ * lookups it used to do for each call. The reading of the tenant, in a transaction, that was also done for each call is not part of the comparison.
+ * Run it using {@link #main(String[])}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ServerAPIDispatchBenchmark {
+
+    private static final long TENANT_ID = 1L;
+
+    private static final String API_NAME = "BenchmarkAPI";
+
+    private static final String METHOD_NAME = "getName";
+
+    private static final List<String> PARAMETER_TYPES = Arrays.asList(String.class.getName(), "long");
+
+    private final Object[] parameters = { "name", 42L };
+
+    private final APISessionImpl session = new APISessionImpl(1L, new Date(), 1000L, "john", 2L, "default", TENANT_ID);
+
+    private final Map<String, Object> apis = new HashMap<>();
+
+    private ServerAPIImpl serverAPI;
+
+    public static class BenchmarkAPIImpl {
+
+        @CustomTransactions
+        public String getName(final String prefix, final long id) {
+            return prefix;
+        }
+    }
+
+    @Setup
+    public void setup() {
+        apis.put(API_NAME, new BenchmarkAPIImpl());
+        apis.put(PlatformAPI.class.getName(), new PlatformAPIImpl());
+        serverAPI = new ServerAPIImpl(true, new APIAccessResolver() {
+
+            @Override
+            public Object getAPIImplementation(final String interfaceName) {
+                return apis.get(interfaceName);
+            }
+
+            @Override
+            public boolean needSession(final String interfaceName) {
+                return true;
+            }
+        });
+        PlatformAPIImpl.isNodeStarted = true;
+        TenantStateSnapshot.setPaused(TENANT_ID, false);
+    }
+
+    @TearDown
+    public void tearDown() {
+        PlatformAPIImpl.isNodeStarted = false;
+        TenantStateSnapshot.clear(TENANT_ID);
+    }
+
+    @Benchmark
+    public Object dispatchTable() throws Throwable {
+        return serverAPI.invokeAPI(API_NAME, METHOD_NAME, PARAMETER_TYPES, parameters, session);
+    }
+
+    @Benchmark
+    public Object reflectiveLookups() throws Throwable {
+        final Object apiImpl = apis.get(API_NAME);
+        final Method method = ClassReflector.getMethod(apiImpl.getClass(), METHOD_NAME, serverAPI.getParameterTypes(PARAMETER_TYPES));
+        if (!method.isAnnotationPresent(CustomTransactions.class) && !method.isAnnotationPresent(NoSessionRequired.class)) {
+            throw new IllegalStateException();
+        }
+        method.isAnnotationPresent(Deprecated.class);
+        final Object platformAPI = apis.get(PlatformAPI.class.getName());
+        final Method isNodeStarted = ClassReflector.getMethod(platformAPI.getClass(), "isNodeStarted");
+        if (!method.isAnnotationPresent(AvailableOnStoppedNode.class) && !(Boolean) isNodeStarted.invoke(platformAPI)) {
+            throw new IllegalStateException();
+        }
+        final AvailableWhenTenantIsPaused annotation = method.getAnnotation(AvailableWhenTenantIsPaused.class);
+        if (annotation == null) {
+            apiImpl.getClass().getAnnotation(AvailableWhenTenantIsPaused.class);
+        }
+        try {
+            return method.invoke(apiImpl, parameters);
+        } catch (final InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    public static void main(final String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(ServerAPIDispatchBenchmark.class.getSimpleName()).build()).run();
+    }
+
+}
@@ -32,6 +32,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
 
+import org.bonitasoft.engine.api.TenantAdministrationAPI;
 import org.bonitasoft.engine.api.internal.ServerWrappedException;
 import org.bonitasoft.engine.exception.BonitaRuntimeException;
 import org.bonitasoft.engine.exception.TenantStatusException;
@@ -383,6 +384,34 @@ public class ServerAPIImplTest {
         assertThat(valid).isFalse();
     }
 
+    @Test
+    public void isTenantAvailable_should_use_the_known_state_of_the_tenant() throws Exception {
+        final long tenantId = 7854L;
+        TenantStateSnapshot.setPaused(tenantId, true);
+        try {
+            assertThat(serverAPIImpl.isTenantAvailable(tenantId, buildSession(tenantId), false)).isFalse();
+
+            verify(accessResolver, never()).getAPIImplementation(anyString());
+        } finally {
+            TenantStateSnapshot.clear(tenantId);
+        }
+    }
+
+    @Test
+    public void isTenantAvailable_should_read_the_tenant_when_its_state_is_not_known() throws Exception {
+        final long tenantId = 7855L;
+        final TenantAdministrationAPI tenantAdministrationAPI = mock(TenantAdministrationAPI.class);
+        when(tenantAdministrationAPI.isPaused()).thenReturn(true);
+        when(accessResolver.getAPIImplementation(TenantAdministrationAPI.class.getName())).thenReturn(tenantAdministrationAPI);
+        try {
+            assertThat(serverAPIImpl.isTenantAvailable(tenantId, buildSession(tenantId), true)).isFalse();
+
+            assertThat(TenantStateSnapshot.isPaused(tenantId)).isTrue();
+        } finally {
+            TenantStateSnapshot.clear(tenantId);
+        }
+    }
+
     protected APISessionImpl buildSession(final long tenantId) {
         return new APISessionImpl(415L, new Date(), 645646L, "userName", 7777L, "dummyTenant", tenantId);
     }
@@ -13,12 +13,14 @@
  **/
 package org.bonitasoft.engine.api.impl.transaction;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Matchers.anyInt;
 import static org.mockito.Mockito.*;
 
 import java.util.Arrays;
 
 import org.bonitasoft.engine.api.impl.TenantConfiguration;
+import org.bonitasoft.engine.api.impl.TenantStateSnapshot;
 import org.bonitasoft.engine.classloader.ClassLoaderService;
 import org.bonitasoft.engine.core.process.definition.ProcessDefinitionService;
 import org.bonitasoft.engine.dependency.DependencyService;
@@ -26,9 +28,15 @@ import org.bonitasoft.engine.dependency.model.ScopeType;
 import org.bonitasoft.engine.log.technical.TechnicalLoggerService;
 import org.bonitasoft.engine.service.PlatformServiceAccessor;
 import org.bonitasoft.engine.service.TenantServiceAccessor;
+import org.bonitasoft.engine.transaction.BonitaTransactionSynchronization;
+import org.bonitasoft.engine.transaction.STransactionNotFoundException;
+import org.bonitasoft.engine.transaction.TransactionService;
+import org.bonitasoft.engine.transaction.TransactionState;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
@@ -46,12 +54,15 @@ public class SetServiceStateTest {
     private ProcessDefinitionService processDefinitionService;
     @Mock
     private ServiceStrategy serviceStrategy;
+    @Mock
+    private TransactionService transactionService;
     private SetServiceState setServiceState;
     public static final long TENANT_ID = 635434L;
 
     @Before
     public void before() throws Exception {
         doReturn(tenantServiceAccessor).when(platformServiceAccessor).getTenantServiceAccessor(anyLong());
+        doReturn(transactionService).when(platformServiceAccessor).getTransactionService();
 
         when(tenantServiceAccessor.getClassLoaderService()).thenReturn(mock(ClassLoaderService.class));
         when(tenantServiceAccessor.getTenantConfiguration()).thenReturn(mock(TenantConfiguration.class));
@@ -92,4 +103,53 @@ public class SetServiceStateTest {
         order.verify(dependencyService).refreshClassLoader(ScopeType.PROCESS, 1L);
         order.verify(dependencyService).refreshClassLoader(ScopeType.PROCESS, 2L);
     }
+
+    @After
+    public void clearTenantState() {
+        TenantStateSnapshot.clear(TENANT_ID);
+    }
+
+    private SetServiceState pauseServices() throws Exception {
+        final PauseServiceStrategy pauseServiceStrategy = mock(PauseServiceStrategy.class);
+        doReturn(true).when(pauseServiceStrategy).shouldRefreshClassLoaders();
+        final SetServiceState pause = spy(new SetServiceState(TENANT_ID, pauseServiceStrategy));
+        doReturn(platformServiceAccessor).when(pause).getPlatformAccessor();
+        return pause;
+    }
+
+    @Test
+    public void should_update_the_tenant_state_once_the_transaction_committed() throws Exception {
+        final SetServiceState pause = pauseServices();
+
+        pause.call();
+
+        assertThat(TenantStateSnapshot.isPaused(TENANT_ID)).isNull();
+        final ArgumentCaptor<BonitaTransactionSynchronization> synchronization = ArgumentCaptor.forClass(BonitaTransactionSynchronization.class);
+        verify(transactionService).registerBonitaSynchronization(synchronization.capture());
+        synchronization.getValue().afterCompletion(TransactionState.COMMITTED);
+        assertThat(TenantStateSnapshot.isPaused(TENANT_ID)).isTrue();
+    }
+
+    @Test
+    public void should_not_update_the_tenant_state_when_the_transaction_rolled_back() throws Exception {
+        TenantStateSnapshot.setPaused(TENANT_ID, false);
+        final SetServiceState pause = pauseServices();
+
+        pause.call();
+
+        final ArgumentCaptor<BonitaTransactionSynchronization> synchronization = ArgumentCaptor.forClass(BonitaTransactionSynchronization.class);
+        verify(transactionService).registerBonitaSynchronization(synchronization.capture());
+        synchronization.getValue().afterCompletion(TransactionState.ROLLEDBACK);
+        assertThat(TenantStateSnapshot.isPaused(TENANT_ID)).isFalse();
+    }
+
+    @Test
+    public void should_update_the_tenant_state_at_once_when_not_in_a_transaction() throws Exception {
+        doThrow(STransactionNotFoundException.class).when(transactionService).registerBonitaSynchronization(any());
+        final SetServiceState pause = pauseServices();
+
+        pause.call();
+
+        assertThat(TenantStateSnapshot.isPaused(TENANT_ID)).isTrue();
+    }
 }
@@ -16,6 +16,7 @@ package org.bonitasoft.engine.bpm.model.impl;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.bonitasoft.engine.core.process.definition.model.SFlowNodeType.USER_TASK;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
@@ -34,6 +35,7 @@ import org.bonitasoft.engine.core.operation.model.SOperation;
 import org.bonitasoft.engine.core.operation.model.SOperatorType;
 import org.bonitasoft.engine.core.operation.model.impl.SLeftOperandImpl;
 import org.bonitasoft.engine.core.operation.model.impl.SOperationImpl;
+import org.bonitasoft.engine.core.process.definition.model.SActivityDefinition;
 import org.bonitasoft.engine.core.process.definition.model.SConnectorDefinition;
 import org.bonitasoft.engine.core.process.definition.model.SFlowNodeType;
 import org.bonitasoft.engine.core.process.definition.model.SGatewayType;
@@ -41,6 +43,7 @@ import org.bonitasoft.engine.core.process.definition.model.SHumanTaskDefinition;
 import org.bonitasoft.engine.core.process.definition.model.impl.SGatewayDefinitionImpl;
 import org.bonitasoft.engine.core.process.instance.api.ActivityInstanceService;
 import org.bonitasoft.engine.core.process.instance.api.GatewayInstanceService;
+import org.bonitasoft.engine.core.process.instance.model.SActivityInstance;
 import org.bonitasoft.engine.core.process.instance.model.SConnectorInstance;
 import org.bonitasoft.engine.core.process.instance.model.SFlowElementsContainerType;
 import org.bonitasoft.engine.core.process.instance.model.SGatewayInstance;
@@ -110,6 +113,31 @@ public class BPMInstancesCreatorTest {
         verify(bpmInstancesCreator).createConnectorInstanceObject(any(PersistentObject.class), anyString(), any(SConnectorDefinition.class), eq(1));
     }
 
+    @Test
+    public void createInnerActivityInstances_should_insert_all_instances_and_then_all_their_connectors() throws Exception {
+        final SActivityDefinition activityDefinition = mock(SActivityDefinition.class);
+        final List<SConnectorDefinition> connectors = getConnectorList();
+        doReturn(connectors).when(activityDefinition).getConnectors();
+        final SActivityInstance instance3 = mock(SActivityInstance.class);
+        final SActivityInstance instance4 = mock(SActivityInstance.class);
+        doReturn(instance3).when(bpmInstancesCreator).toFlowNodeInstance(12L, 1L, 2L, SFlowElementsContainerType.FLOWNODE, activityDefinition, 1L, 1L, true, 3,
+                SStateCategory.NORMAL, -1);
+        doReturn(instance4).when(bpmInstancesCreator).toFlowNodeInstance(12L, 1L, 2L, SFlowElementsContainerType.FLOWNODE, activityDefinition, 1L, 1L, true, 4,
+                SStateCategory.NORMAL, -1);
+        final SConnectorInstance connectorInstance = mock(SConnectorInstance.class);
+        doReturn(connectorInstance).when(bpmInstancesCreator).createConnectorInstanceObject(any(PersistentObject.class), anyString(),
+                any(SConnectorDefinition.class), anyInt());
+
+        final List<SActivityInstance> created = bpmInstancesCreator.createInnerActivityInstances(12L, 1L, 2L, activityDefinition, 1L, 1L, 3, 2);
+
+        assertThat(created).containsExactly(instance3, instance4);
+        verify(activityInstanceService).createActivityInstances(Arrays.asList(instance3, instance4));
+        verify(bpmInstancesCreator).createConnectorInstanceObject(instance3, SConnectorInstance.FLOWNODE_TYPE, connectors.get(1), 1);
+        verify(bpmInstancesCreator).createConnectorInstanceObject(instance4, SConnectorInstance.FLOWNODE_TYPE, connectors.get(0), 0);
+        verify(connectorInstanceService).createConnectorInstances(Arrays.asList(connectorInstance, connectorInstance, connectorInstance, connectorInstance));
+        verify(connectorInstanceService, never()).createConnectorInstance(any(SConnectorInstance.class));
+    }
+
     @Test
     public void should_getOperationToSetData_return_the_operation_for_the_data() {
         // given
@@ -0,0 +1,96 @@
+/**
+ * Copyright (C) 2018 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.core.document.api.impl;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.verify;
+
+import java.util.Collections;
+import java.util.concurrent.Callable;
+
+import org.bonitasoft.engine.commons.exceptions.SObjectModificationException;
+import org.bonitasoft.engine.core.document.api.DocumentService;
+import org.bonitasoft.engine.log.technical.TechnicalLoggerService;
+import org.bonitasoft.engine.sessionaccessor.SessionAccessor;
+import org.bonitasoft.engine.transaction.UserTransactionService;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class DocumentContentMigratorTest {
+
+    @Mock
+    private DocumentService documentService;
+    @Mock
+    private UserTransactionService transactionService;
+    @Mock
+    private SessionAccessor sessionAccessor;
+    @Mock
+    private TechnicalLoggerService logger;
+
+    private DocumentContentMigrator migrator;
+
+    @Before
+    public void before() throws Exception {
+        migrator = new DocumentContentMigrator(documentService, transactionService, sessionAccessor, logger, 1L, true, 2);
+    }
+
+    private void executeCallablesInTransaction() throws Exception {
+        doAnswer(invocation -> ((Callable<?>) invocation.getArgument(0)).call()).when(transactionService).executeInTransaction(any(Callable.class));
+    }
+
+    @Test
+    public void should_move_the_content_of_all_documents_page_by_page() throws Exception {
+        executeCallablesInTransaction();
+        doReturn(asList(1L, 2L)).when(documentService).getIdsOfDocumentsWithContentToMove(-1L, 2);
+        doReturn(asList(5L)).when(documentService).getIdsOfDocumentsWithContentToMove(2L, 2);
+        doReturn(Collections.<Long> emptyList()).when(documentService).getIdsOfDocumentsWithContentToMove(5L, 2);
+
+        assertThat(migrator.migrate()).isEqualTo(3);
+
+        verify(documentService).moveDocumentContent(1L);
+        verify(documentService).moveDocumentContent(2L);
+        verify(documentService).moveDocumentContent(5L);
+    }
+
+    @Test
+    public void should_continue_with_next_documents_when_one_can_not_be_moved() throws Exception {
+        executeCallablesInTransaction();
+        doReturn(asList(1L, 2L)).when(documentService).getIdsOfDocumentsWithContentToMove(-1L, 2);
+        doReturn(Collections.<Long> emptyList()).when(documentService).getIdsOfDocumentsWithContentToMove(2L, 2);
+        doThrow(new SObjectModificationException("content missing")).when(documentService).moveDocumentContent(1L);
+
+        assertThat(migrator.migrate()).isEqualTo(1);
+
+        verify(documentService).moveDocumentContent(2L);
+    }
+
+    @Test
+    public void should_not_start_when_disabled() throws Exception {
+        migrator = new DocumentContentMigrator(documentService, transactionService, sessionAccessor, logger, 1L, false, 2);
+
+        migrator.start();
+
+        assertThat(migrator.isStarted()).isFalse();
+    }
+
+}
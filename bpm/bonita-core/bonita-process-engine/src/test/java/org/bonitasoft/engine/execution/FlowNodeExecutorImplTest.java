@@ -25,17 +25,29 @@ import java.util.List;
 import java.util.stream.Collectors;
 
 import org.bonitasoft.engine.archive.ArchiveService;
+import org.bonitasoft.engine.bpm.process.ProcessInstanceState;
+import org.bonitasoft.engine.classloader.ClassLoaderService;
+import org.bonitasoft.engine.core.process.comment.api.SCommentService;
 import org.bonitasoft.engine.core.process.definition.ProcessDefinitionService;
+import org.bonitasoft.engine.core.process.definition.model.SProcessDefinition;
 import org.bonitasoft.engine.core.process.instance.api.ActivityInstanceService;
 import org.bonitasoft.engine.core.process.instance.api.event.EventInstanceService;
 import org.bonitasoft.engine.core.process.instance.api.exceptions.SFlowNodeNotFoundException;
 import org.bonitasoft.engine.core.process.instance.api.exceptions.SFlowNodeReadException;
+import org.bonitasoft.engine.core.process.instance.api.states.FlowNodeState;
+import org.bonitasoft.engine.core.process.instance.api.states.StateCode;
 import org.bonitasoft.engine.core.process.instance.model.SActivityInstance;
+import org.bonitasoft.engine.core.process.instance.model.SFlowNodeInstance;
+import org.bonitasoft.engine.core.process.instance.model.SStateCategory;
+import org.bonitasoft.engine.core.process.instance.model.impl.SAutomaticTaskInstanceImpl;
+import org.bonitasoft.engine.core.process.instance.model.impl.SProcessInstanceImpl;
 import org.bonitasoft.engine.core.process.instance.model.impl.SUserTaskInstanceImpl;
 import org.bonitasoft.engine.execution.state.FlowNodeStateManager;
 import org.bonitasoft.engine.execution.state.SkippedFlowNodeStateImpl;
 import org.bonitasoft.engine.execution.work.BPMWorkFactory;
 import org.bonitasoft.engine.execution.work.WrappingBonitaWork;
+import org.bonitasoft.engine.log.technical.TechnicalLogSeverity;
+import org.bonitasoft.engine.log.technical.TechnicalLoggerService;
 import org.bonitasoft.engine.persistence.QueryOptions;
 import org.bonitasoft.engine.work.BonitaWork;
 import org.bonitasoft.engine.work.WorkDescriptor;
@@ -70,6 +82,14 @@ public class FlowNodeExecutorImplTest {
     private EventInstanceService eventInstanceService;
     @Mock
     private ArchiveService archiveService;
+    @Mock
+    private ClassLoaderService classLoaderService;
+    @Mock
+    private SCommentService commentService;
+    @Mock
+    private SProcessDefinition processDefinition;
+    @Mock
+    private TechnicalLoggerService logger;
     @Captor
     private ArgumentCaptor<WorkDescriptor> workDescriptorArgumentCaptor;
     private FlowNodeExecutorImpl flowNodeExecutor;
@@ -79,7 +99,7 @@ public class FlowNodeExecutorImplTest {
     public void before() throws Exception {
         flowNodeExecutor = new FlowNodeExecutorImpl(flowNodeStateManager, activityInstanceService, null, archiveService,
                 null, containerRegistry, processDefinitionService, null, null, null, null, workService, workFactory,
-                null,eventInstanceService);
+                null,eventInstanceService, null);
         skippedFlowNodeState = new SkippedFlowNodeStateImpl();
         doReturn(skippedFlowNodeState).when(flowNodeStateManager).getState(SkippedFlowNodeStateImpl.ID);
     }
@@ -114,6 +134,153 @@ public class FlowNodeExecutorImplTest {
                 .isEqualTo("FINISH_FLOWNODE");
     }
 
+    @Test
+    public void should_execute_only_one_state_per_work_by_default() throws Exception {
+        SAutomaticTaskInstanceImpl task = anAutomaticTask(1L);
+        executedState(1, StateCode.DONE);
+        FlowNodeState executing = nextState(1, 2);
+        FlowNodeExecutorImpl executor = executorExecutingStatesPerWork(1);
+
+        FlowNodeState state = executor.stepForward(1L, null, null);
+
+        assertThat(state).isEqualTo(executing);
+        verify(executing, never()).execute(processDefinition, task);
+        verify(workService).registerWork(workDescriptorArgumentCaptor.capture());
+        assertThat(workDescriptorArgumentCaptor.getValue().getType()).isEqualTo("EXECUTE_FLOWNODE");
+        assertThat(executor.getNumberOfSavedWorks()).isEqualTo(0);
+    }
+
+    @Test
+    public void should_execute_consecutive_states_in_the_same_work_up_to_the_maximum() throws Exception {
+        SAutomaticTaskInstanceImpl task = anAutomaticTask(1L);
+        executedState(1, StateCode.DONE);
+        FlowNodeState executing = nextState(1, 2);
+        stubExecution(executing, 2, StateCode.DONE);
+        FlowNodeState completing = nextState(2, 3);
+        FlowNodeExecutorImpl executor = executorExecutingStatesPerWork(2);
+
+        FlowNodeState state = executor.stepForward(1L, null, null);
+
+        assertThat(state).isEqualTo(completing);
+        verify(executing).execute(processDefinition, task);
+        verify(completing, never()).execute(processDefinition, task);
+        verify(executor, times(2)).archiveFlowNodeInstance(task, false, task.getProcessDefinitionId());
+        verify(workService).registerWork(workDescriptorArgumentCaptor.capture());
+        assertThat(workDescriptorArgumentCaptor.getValue().getType()).isEqualTo("EXECUTE_FLOWNODE");
+        assertThat(executor.getNumberOfSavedWorks()).isEqualTo(1);
+    }
+
+    @Test
+    public void should_stop_executing_states_in_the_same_work_when_reaching_a_stable_state() throws Exception {
+        SAutomaticTaskInstanceImpl task = anAutomaticTask(1L);
+        executedState(1, StateCode.DONE);
+        FlowNodeState executing = nextState(1, 2);
+        stubExecution(executing, 2, StateCode.DONE);
+        FlowNodeState completed = nextState(2, 3);
+        doReturn(true).when(completed).isStable();
+        doReturn(true).when(completed).isTerminal();
+        FlowNodeExecutorImpl executor = executorExecutingStatesPerWork(10);
+
+        FlowNodeState state = executor.stepForward(1L, null, null);
+
+        assertThat(state).isEqualTo(completed);
+        verify(completed, never()).execute(processDefinition, task);
+        verify(workService).registerWork(workDescriptorArgumentCaptor.capture());
+        assertThat(workDescriptorArgumentCaptor.getValue().getType()).isEqualTo("FINISH_FLOWNODE");
+        assertThat(executor.getNumberOfSavedWorks()).isEqualTo(1);
+    }
+
+    @Test
+    public void should_stop_executing_states_in_the_same_work_when_the_state_is_still_executing() throws Exception {
+        SAutomaticTaskInstanceImpl task = anAutomaticTask(1L);
+        executedState(1, StateCode.DONE);
+        FlowNodeState executing = nextState(1, 2);
+        stubExecution(executing, 2, StateCode.EXECUTING);
+        doAnswer(invocation -> {
+            task.setStateExecuting(true);
+            return null;
+        }).when(activityInstanceService).setExecuting(task);
+        FlowNodeExecutorImpl executor = executorExecutingStatesPerWork(10);
+
+        FlowNodeState state = executor.stepForward(1L, null, null);
+
+        assertThat(state).isNull();
+        verify(activityInstanceService).setExecuting(task);
+        verify(workService, never()).registerWork(any());
+        assertThat(executor.getNumberOfSavedWorks()).isEqualTo(1);
+    }
+
+    @Test
+    public void should_report_the_saved_works_of_a_root_process_instance_when_it_ends() throws Exception {
+        SAutomaticTaskInstanceImpl task = anAutomaticTask(1L);
+        task.setLogicalGroup(1, PROCESS_INSTANCE_ID);
+        executedState(1, StateCode.DONE);
+        FlowNodeState executing = nextState(1, 2);
+        stubExecution(executing, 2, StateCode.DONE);
+        nextState(2, 3);
+        doReturn(true).when(logger).isLoggable(FlowNodeExecutorImpl.class, TechnicalLogSeverity.DEBUG);
+        FlowNodeExecutorImpl executor = executorExecutingStatesPerWork(2, logger);
+        executor.stepForward(1L, null, null);
+        SProcessInstanceImpl processInstance = new SProcessInstanceImpl();
+        processInstance.setId(PROCESS_INSTANCE_ID);
+
+        assertThat(executor.getNumberOfSavedWorks(PROCESS_INSTANCE_ID)).isEqualTo(1);
+        executor.childReachedState(processInstance, ProcessInstanceState.COMPLETED, false);
+
+        verify(logger).log(eq(FlowNodeExecutorImpl.class), eq(TechnicalLogSeverity.DEBUG),
+                startsWith("Root process instance " + PROCESS_INSTANCE_ID
+                        + " ended, executing consecutive states of its flow nodes in a single work saved 1 works"));
+        assertThat(executor.getNumberOfSavedWorks(PROCESS_INSTANCE_ID)).isEqualTo(0);
+        assertThat(executor.getNumberOfSavedWorks()).isEqualTo(1);
+    }
+
+    private FlowNodeExecutorImpl executorExecutingStatesPerWork(int maxStatesPerWork) throws Exception {
+        return executorExecutingStatesPerWork(maxStatesPerWork, null);
+    }
+
+    private FlowNodeExecutorImpl executorExecutingStatesPerWork(int maxStatesPerWork, TechnicalLoggerService logger) throws Exception {
+        FlowNodeExecutorImpl executor = spy(new FlowNodeExecutorImpl(flowNodeStateManager, activityInstanceService, null, archiveService,
+                null, containerRegistry, processDefinitionService, commentService, null, null, classLoaderService, workService, workFactory,
+                null, eventInstanceService, null, maxStatesPerWork, logger));
+        doNothing().when(executor).archiveFlowNodeInstance(any(SFlowNodeInstance.class), anyBoolean(), anyLong());
+        doReturn(processDefinition).when(processDefinitionService).getProcessDefinition(anyLong());
+        return executor;
+    }
+
+    private SAutomaticTaskInstanceImpl anAutomaticTask(long id) throws Exception {
+        SAutomaticTaskInstanceImpl task = new SAutomaticTaskInstanceImpl();
+        task.setId(id);
+        task.setParentContainerId(PROCESS_INSTANCE_ID);
+        task.setLogicalGroup(3, PROCESS_INSTANCE_ID);
+        task.setStateId(1);
+        doReturn(task).when(activityInstanceService).getFlowNodeInstance(id);
+        doAnswer(invocation -> {
+            task.setStateId(invocation.<FlowNodeState> getArgument(1).getId());
+            task.setStateExecuting(false);
+            return null;
+        }).when(activityInstanceService).setState(eq(task), any(FlowNodeState.class));
+        return task;
+    }
+
+    private FlowNodeState executedState(int id, StateCode stateCode) throws Exception {
+        FlowNodeState state = mock(FlowNodeState.class);
+        stubExecution(state, id, stateCode);
+        return state;
+    }
+
+    private void stubExecution(FlowNodeState state, int id, StateCode stateCode) throws Exception {
+        doReturn(state).when(flowNodeStateManager).getState(id);
+        doReturn(SStateCategory.NORMAL).when(state).getStateCategory();
+        doReturn(stateCode).when(state).execute(eq(processDefinition), any(SFlowNodeInstance.class));
+    }
+
+    private FlowNodeState nextState(int previousId, int id) throws Exception {
+        FlowNodeState next = mock(FlowNodeState.class);
+        doReturn(id).when(next).getId();
+        doReturn(next).when(flowNodeStateManager).getNextNormalState(eq(processDefinition), any(SFlowNodeInstance.class), eq(previousId));
+        return next;
+    }
+
     @Test
     public void should_set_the_state_on_the_activity() throws Exception {
         SUserTaskInstanceImpl aTask = aTask(1L, true);
@@ -30,6 +30,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.bonitasoft.engine.bpm.model.impl.BPMInstancesCreator;
 import org.bonitasoft.engine.classloader.ClassLoaderService;
 import org.bonitasoft.engine.core.connector.ConnectorInstanceService;
 import org.bonitasoft.engine.core.expression.control.api.ExpressionResolverService;
@@ -45,8 +46,11 @@ import org.bonitasoft.engine.core.process.definition.model.SUserTaskDefinition;
 import org.bonitasoft.engine.core.process.definition.model.impl.SConnectorDefinitionImpl;
 import org.bonitasoft.engine.core.process.instance.api.ActivityInstanceService;
 import org.bonitasoft.engine.core.process.instance.api.exceptions.SActivityStateExecutionException;
+import org.bonitasoft.engine.core.process.instance.model.SFlowElementsContainerType;
 import org.bonitasoft.engine.core.process.instance.model.SFlowNodeInstance;
+import org.bonitasoft.engine.core.process.instance.model.SMultiInstanceActivityInstance;
 import org.bonitasoft.engine.core.process.instance.model.SPendingActivityMapping;
+import org.bonitasoft.engine.core.process.instance.model.SStateCategory;
 import org.bonitasoft.engine.core.process.instance.model.impl.SConnectorInstanceImpl;
 import org.bonitasoft.engine.data.instance.api.DataInstanceContainer;
 import org.bonitasoft.engine.expression.model.SExpression;
@@ -93,6 +97,10 @@ public class StateBehaviorsTest {
     private ClassLoaderService classLoaderService;
     @Mock
     private ExpressionResolverService expressionResolverService;
+    @Mock
+    private BPMInstancesCreator bpmInstancesCreator;
+    @Mock
+    private SMultiInstanceActivityInstance multiInstanceActivityInstance;
     @InjectMocks
     private StateBehaviors stateBehaviors;
 
@@ -340,4 +348,36 @@ public class StateBehaviorsTest {
         //then
         assertThat(noConnectorStarted).isTrue();
     }
+
+    @Test
+    public void should_createInnerInstances_create_instances_by_chunks() throws Exception {
+        //given
+        stateBehaviors.setMultiInstanceCreationChunkSize(2);
+        doReturn(1).when(multiInstanceActivityInstance).getNumberOfInstances();
+        doReturn(1).when(multiInstanceActivityInstance).getTokenCount();
+        //when
+        stateBehaviors.createInnerInstances(processDefinitionId, flowNodeDefinition, multiInstanceActivityInstance, 5);
+        //then
+        verify(bpmInstancesCreator).createInnerActivityInstances(processDefinitionId, 0L, 0L, flowNodeDefinition, 0L, 0L, 1, 2);
+        verify(bpmInstancesCreator).createInnerActivityInstances(processDefinitionId, 0L, 0L, flowNodeDefinition, 0L, 0L, 3, 2);
+        verify(bpmInstancesCreator).createInnerActivityInstances(processDefinitionId, 0L, 0L, flowNodeDefinition, 0L, 0L, 5, 1);
+        verify(bpmInstancesCreator, never()).createFlowNodeInstance(anyLong(), anyLong(), anyLong(), any(SFlowElementsContainerType.class),
+                any(SUserTaskDefinition.class), anyLong(), anyLong(), anyBoolean(), anyInt(), any(SStateCategory.class), anyLong());
+    }
+
+    @Test
+    public void should_createInnerInstances_create_instances_one_by_one_by_default() throws Exception {
+        //given
+        doReturn(mock(SFlowNodeInstance.class)).when(bpmInstancesCreator).createFlowNodeInstance(eq(processDefinitionId), anyLong(), anyLong(),
+                eq(SFlowElementsContainerType.FLOWNODE), eq(flowNodeDefinition), anyLong(), anyLong(), eq(true), anyInt(), eq(SStateCategory.NORMAL),
+                eq(-1L));
+        //when
+        final List<SFlowNodeInstance> innerInstances = stateBehaviors.createInnerInstances(processDefinitionId, flowNodeDefinition,
+                multiInstanceActivityInstance, 3);
+        //then
+        assertThat(innerInstances).hasSize(3);
+        verify(activityInstanceService).addMultiInstanceNumberOfActiveActivities(multiInstanceActivityInstance, 3);
+        verify(activityInstanceService).setTokenCount(multiInstanceActivityInstance, 3);
+        verifyZeroInteractions(connectorInstanceService);
+    }
 }
@@ -0,0 +1,273 @@
+/**
+ * Copyright (C) 2018 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.execution.timer;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import org.bonitasoft.engine.core.process.instance.api.event.EventInstanceService;
+import org.bonitasoft.engine.core.process.instance.model.event.SCatchEventInstance;
+import org.bonitasoft.engine.core.process.instance.model.event.trigger.STimerEventTriggerInstance;
+import org.bonitasoft.engine.core.process.instance.model.event.trigger.impl.STimerEventTriggerInstanceImpl;
+import org.bonitasoft.engine.execution.work.BPMWorkFactory;
+import org.bonitasoft.engine.log.technical.TechnicalLoggerService;
+import org.bonitasoft.engine.sessionaccessor.SessionAccessor;
+import org.bonitasoft.engine.transaction.BonitaTransactionSynchronization;
+import org.bonitasoft.engine.transaction.TransactionState;
+import org.bonitasoft.engine.transaction.UserTransactionService;
+import org.bonitasoft.engine.work.WorkDescriptor;
+import org.bonitasoft.engine.work.WorkService;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class TimerEventSchedulerTest {
+
+    private static final long NOW = 1_000_000L;
+
+    @Mock
+    private EventInstanceService eventInstanceService;
+    @Mock
+    private WorkService workService;
+    @Mock
+    private UserTransactionService userTransactionService;
+    @Mock
+    private SessionAccessor sessionAccessor;
+    @Mock
+    private TechnicalLoggerService loggerService;
+
+    private List<BonitaTransactionSynchronization> synchronizations = new ArrayList<>();
+
+    private List<WorkDescriptor> registeredWorks = new ArrayList<>();
+
+    private TimerEventScheduler timerEventScheduler;
+
+    @Before
+    public void before() throws Exception {
+        doAnswer(invocation -> ((Callable<?>) invocation.getArgument(0)).call()).when(userTransactionService).executeInTransaction(any());
+        doAnswer(invocation -> synchronizations.add(invocation.getArgument(0))).when(userTransactionService).registerBonitaSynchronization(any());
+        doAnswer(invocation -> registeredWorks.add(invocation.getArgument(0))).when(workService).registerWork(any());
+        when(eventInstanceService.getTimerEventTriggerInstancesToExecute(eq(TimerEventScheduler.JOB_TRIGGER_NAME), anyLong(), anyLong(), anyLong(),
+                anyInt())).thenReturn(Collections.<STimerEventTriggerInstance> emptyList());
+        // 2 timers per work, 3 attempts
+        timerEventScheduler = new TimerEventScheduler(true, 10, 1000, 2, 3, eventInstanceService, workService, new BPMWorkFactory(),
+                userTransactionService, sessionAccessor, loggerService, 1L);
+        timerEventScheduler.initWheel(NOW);
+    }
+
+    @Test
+    public void should_load_timers_due_in_the_window_and_trigger_them_when_they_expire() throws Exception {
+        when(eventInstanceService.getTimerEventTriggerInstancesToExecute(TimerEventScheduler.JOB_TRIGGER_NAME, NOW + 1000, Long.MIN_VALUE, 0, 1000))
+                .thenReturn(asList(timer(1, 11, NOW + 50), timer(2, 12, NOW + 500), timer(3, 13, NOW + 40)));
+
+        timerEventScheduler.tick(NOW);
+        timerEventScheduler.tick(NOW + 50);
+
+        // in due order
+        assertThat(registeredTimers()).containsExactly(asList(13L, 11L));
+        timerEventScheduler.tick(NOW + 500);
+        assertThat(registeredTimers()).containsExactly(asList(13L, 11L), singletonList(12L));
+    }
+
+    @Test
+    public void should_split_expired_timers_in_works_of_batch_size() throws Exception {
+        when(eventInstanceService.getTimerEventTriggerInstancesToExecute(TimerEventScheduler.JOB_TRIGGER_NAME, NOW + 1000, Long.MIN_VALUE, 0, 1000))
+                .thenReturn(asList(timer(1, 11, NOW + 50), timer(2, 12, NOW + 50), timer(3, 13, NOW + 50)));
+
+        timerEventScheduler.tick(NOW);
+        timerEventScheduler.tick(NOW + 50);
+
+        final List<List<Long>> registeredTimers = registeredTimers();
+        assertThat(registeredTimers).extracting(List::size).containsExactly(2, 1);
+        assertThat(registeredTimers.stream().flatMap(List::stream)).containsOnly(11L, 12L, 13L);
+    }
+
+    @Test
+    public void should_add_timer_to_the_wheel_when_transaction_is_committed() throws Exception {
+        timerEventScheduler.tick(NOW);
+
+        timerEventScheduler.schedule(catchEvent(11), NOW + 100);
+        timerEventScheduler.tick(NOW + 100);
+        verify(workService, never()).registerWork(any());
+
+        commit();
+        timerEventScheduler.tick(NOW + 110);
+        verify(eventInstanceService).createTimerEventTriggerInstance(any(STimerEventTriggerInstanceImpl.class));
+        assertThat(registeredTimers()).containsExactly(singletonList(11L));
+    }
+
+    @Test
+    public void should_not_add_timer_to_the_wheel_when_transaction_is_rolled_back() throws Exception {
+        timerEventScheduler.tick(NOW);
+
+        timerEventScheduler.schedule(catchEvent(11), NOW + 100);
+        for (final BonitaTransactionSynchronization synchronization : synchronizations) {
+            synchronization.afterCompletion(TransactionState.ROLLEDBACK);
+        }
+        timerEventScheduler.tick(NOW + 110);
+
+        verify(workService, never()).registerWork(any());
+    }
+
+    @Test
+    public void should_delete_cancelled_timers_at_once_and_remove_them_from_the_wheel() throws Exception {
+        when(eventInstanceService.getTimerEventTriggerInstancesToExecute(TimerEventScheduler.JOB_TRIGGER_NAME, NOW + 1000, Long.MIN_VALUE, 0, 1000))
+                .thenReturn(asList(timer(1, 11, NOW + 50), timer(2, 12, NOW + 50)));
+        when(eventInstanceService.getTimerEventTriggerInstances(TimerEventScheduler.JOB_TRIGGER_NAME, asList(11L, 14L)))
+                .thenReturn(singletonList(timer(1, 11, NOW + 50)));
+        timerEventScheduler.tick(NOW);
+
+        assertThat(timerEventScheduler.cancel(asList(11L, 14L))).containsOnly(11L);
+        commit();
+        timerEventScheduler.tick(NOW + 50);
+
+        verify(eventInstanceService).deleteTimerEventTriggerInstances(TimerEventScheduler.JOB_TRIGGER_NAME, Collections.singleton(11L));
+        assertThat(registeredTimers()).containsExactly(singletonList(12L));
+    }
+
+    @Test
+    public void should_not_load_timers_being_triggered_again() throws Exception {
+        when(eventInstanceService.getTimerEventTriggerInstancesToExecute(eq(TimerEventScheduler.JOB_TRIGGER_NAME), anyLong(), eq(Long.MIN_VALUE), eq(0L),
+                eq(1000))).thenReturn(singletonList(timer(1, 11, NOW + 50)));
+        timerEventScheduler.tick(NOW + 50);
+        assertThat(registeredTimers()).hasSize(1);
+
+        // next window: the timer is still in database while its work is being executed
+        timerEventScheduler.tick(NOW + 1050);
+        verify(workService, times(1)).registerWork(any());
+
+        // the timer was not triggered: it is loaded with the window after
+        timerEventScheduler.triggered(singletonList(11L));
+        timerEventScheduler.tick(NOW + 2100);
+        verify(workService, times(2)).registerWork(any());
+    }
+
+    @Test
+    public void should_give_up_timers_that_failed_to_be_triggered_max_attempts_times() throws Exception {
+        final Map<Long, Exception> failures = Collections.singletonMap(11L, new Exception("failure"));
+
+        assertThat(timerEventScheduler.triggered(asList(11L, 12L), failures)).isEmpty();
+        assertThat(timerEventScheduler.triggered(asList(11L, 12L), failures)).isEmpty();
+
+        assertThat(timerEventScheduler.triggered(asList(11L, 12L), failures)).containsExactly(11L);
+    }
+
+    @Test
+    public void should_count_attempts_again_once_the_timer_was_triggered() throws Exception {
+        final Map<Long, Exception> failures = Collections.singletonMap(11L, new Exception("failure"));
+        timerEventScheduler.triggered(singletonList(11L), failures);
+        timerEventScheduler.triggered(singletonList(11L), failures);
+
+        timerEventScheduler.triggered(singletonList(11L), Collections.emptyMap());
+
+        assertThat(timerEventScheduler.triggered(singletonList(11L), failures)).isEmpty();
+    }
+
+    @Test
+    public void should_load_timers_again_when_works_can_not_be_registered() throws Exception {
+        when(eventInstanceService.getTimerEventTriggerInstancesToExecute(eq(TimerEventScheduler.JOB_TRIGGER_NAME), anyLong(), eq(Long.MIN_VALUE), eq(0L),
+                eq(1000))).thenReturn(singletonList(timer(1, 11, NOW + 50)));
+        doAnswer(invocation -> {
+            throw new IllegalStateException("work service stopped");
+        }).doNothing().when(workService).registerWork(any());
+
+        try {
+            timerEventScheduler.tick(NOW + 50);
+        } catch (final IllegalStateException ignored) {
+        }
+        // timers are loaded again with the next window
+        timerEventScheduler.tick(NOW + 1050);
+
+        verify(workService, times(2)).registerWork(any());
+    }
+
+    @Test
+    public void should_read_window_by_pages() throws Exception {
+        final List<STimerEventTriggerInstance> firstPage = new ArrayList<>();
+        for (int id = 1; id <= 1000; id++) {
+            firstPage.add(timer(id, id, NOW + 2000));
+        }
+        when(eventInstanceService.getTimerEventTriggerInstancesToExecute(TimerEventScheduler.JOB_TRIGGER_NAME, NOW + 1000, Long.MIN_VALUE, 0, 1000))
+                .thenReturn(firstPage);
+        when(eventInstanceService.getTimerEventTriggerInstancesToExecute(TimerEventScheduler.JOB_TRIGGER_NAME, NOW + 1000, NOW + 2000, 1000, 1000))
+                .thenReturn(singletonList(timer(1001, 1001, NOW + 50)));
+
+        timerEventScheduler.tick(NOW);
+        timerEventScheduler.tick(NOW + 50);
+
+        assertThat(registeredTimers()).containsExactly(singletonList(1001L));
+    }
+
+    @Test
+    public void should_not_use_database_when_cancelling_no_timer() throws Exception {
+        when(eventInstanceService.getTimerEventTriggerInstances(eq(TimerEventScheduler.JOB_TRIGGER_NAME), anyCollection()))
+                .thenReturn(Collections.<STimerEventTriggerInstance> emptyList());
+
+        assertThat(timerEventScheduler.cancel(singletonList(11L))).isEmpty();
+
+        verify(eventInstanceService, never()).deleteTimerEventTriggerInstances(any(), anyCollection());
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<List<Long>> registeredTimers() {
+        final List<List<Long>> timers = new ArrayList<>();
+        for (final WorkDescriptor workDescriptor : registeredWorks) {
+            timers.add((List<Long>) workDescriptor.getParameter("eventInstanceIds"));
+        }
+        return timers;
+    }
+
+    private void commit() {
+        for (final BonitaTransactionSynchronization synchronization : synchronizations) {
+            synchronization.afterCompletion(TransactionState.COMMITTED);
+        }
+        synchronizations.clear();
+    }
+
+    private STimerEventTriggerInstance timer(final long id, final long eventInstanceId, final long executionDate) {
+        final STimerEventTriggerInstanceImpl timer = new STimerEventTriggerInstanceImpl(eventInstanceId, "timer" + eventInstanceId, executionDate,
+                TimerEventScheduler.JOB_TRIGGER_NAME);
+        timer.setId(id);
+        return timer;
+    }
+
+    private SCatchEventInstance catchEvent(final long id) {
+        final SCatchEventInstance catchEventInstance = mock(SCatchEventInstance.class);
+        when(catchEventInstance.getId()).thenReturn(id);
+        when(catchEventInstance.getName()).thenReturn("timer" + id);
+        return catchEventInstance;
+    }
+
+}
@@ -0,0 +1,97 @@
+/**
+ * Copyright (C) 2018 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.execution.timer;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measure the cost of arming, cancelling and expiring a timer in the {@link TimingWheel} of the {@link TimerEventScheduler} when
+ * {@link #armedTimers} timers, due in the next hour, are already armed.
+ * Run it using {@link #main(String[])}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TimingWheelBenchmark {
+
+    private static final long TICK = 100;
+
+    private static final int HOUR = 3_600_000;
+
+    @Param({ "500000" })
+    public int armedTimers;
+
+    private TimingWheel wheel;
+
+    private long now;
+
+    private long nextId;
+
+    @Setup
+    public void setup() {
+        now = 0;
+        wheel = new TimingWheel(TICK, 512, now);
+        for (nextId = 0; nextId < armedTimers; nextId++) {
+            wheel.add(nextId, randomDueTime());
+        }
+    }
+
+    private long randomDueTime() {
+        return now + 1 + ThreadLocalRandom.current().nextInt(HOUR);
+    }
+
+    @Benchmark
+    public boolean armAndCancel() {
+        final long id = nextId++;
+        wheel.add(id, randomDueTime());
+        return wheel.remove(id);
+    }
+
+    /*
+     * move the wheel one tick further, re-arming the timers that expired so that the number of armed timers stays the same
+     */
+    @Benchmark
+    public int advanceOneTick() {
+        now += TICK;
+        final List<Long> expired = wheel.advance(now);
+        for (final Long id : expired) {
+            wheel.add(id, randomDueTime());
+        }
+        return expired.size();
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(TimingWheelBenchmark.class.getSimpleName()).build()).run();
+    }
+
+}
@@ -0,0 +1,121 @@
+/**
+ * Copyright (C) 2018 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.execution.timer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TimingWheelTest {
+
+    private static final long START = 1_000_000L;
+
+    private TimingWheel wheel = new TimingWheel(10, 8, START);
+
+    @Test
+    public void should_expire_timer_at_first_tick_not_before_its_due_date() {
+        wheel.add(1L, START + 25);
+
+        assertThat(wheel.advance(START + 20)).isEmpty();
+        assertThat(wheel.advance(START + 29)).isEmpty();
+        assertThat(wheel.advance(START + 30)).containsExactly(1L);
+        assertThat(wheel.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void should_expire_timers_already_due_on_next_advance() {
+        wheel.add(1L, START - 1000);
+        wheel.add(2L, START);
+
+        assertThat(wheel.advance(START)).containsOnly(1L, 2L);
+    }
+
+    @Test
+    public void should_expire_timers_far_in_the_future_after_moving_them_down_the_levels() {
+        // 8 ticks per level: 10000ms is in the 4th level
+        wheel.add(1L, START + 10_000);
+        wheel.add(2L, START + 650);
+
+        assertThat(wheel.advance(START + 640)).isEmpty();
+        assertThat(wheel.advance(START + 650)).containsExactly(2L);
+        assertThat(wheel.advance(START + 9_990)).isEmpty();
+        assertThat(wheel.advance(START + 10_000)).containsExactly(1L);
+    }
+
+    @Test
+    public void should_not_expire_removed_timer() {
+        wheel.add(1L, START + 100);
+        wheel.add(2L, START + 100);
+
+        assertThat(wheel.remove(1L)).isTrue();
+        assertThat(wheel.remove(1L)).isFalse();
+
+        assertThat(wheel.advance(START + 1000)).containsExactly(2L);
+    }
+
+    @Test
+    public void should_replace_timer_having_the_same_id() {
+        wheel.add(1L, START + 100);
+        wheel.add(1L, START + 500);
+
+        assertThat(wheel.size()).isEqualTo(1);
+        assertThat(wheel.getDueTime(1L)).isEqualTo(START + 500);
+        assertThat(wheel.advance(START + 400)).isEmpty();
+        assertThat(wheel.advance(START + 500)).containsExactly(1L);
+    }
+
+    @Test
+    public void should_expire_timers_in_due_order_when_advancing_tick_by_tick() {
+        final Random random = new Random(42);
+        final Map<Long, Long> dueTimes = new HashMap<>();
+        for (long id = 0; id < 10_000; id++) {
+            final long dueTime = START + random.nextInt(100_000);
+            dueTimes.put(id, dueTime);
+            wheel.add(id, dueTime);
+        }
+        // remove some of them
+        for (long id = 0; id < 10_000; id += 7) {
+            wheel.remove(id);
+            dueTimes.remove(id);
+        }
+
+        final List<Long> expiredIds = new ArrayList<>();
+        for (long now = START; now <= START + 100_000; now += 10) {
+            for (final Long id : wheel.advance(now)) {
+                assertThat(dueTimes.get(id)).isLessThanOrEqualTo(now).isGreaterThan(now - 10);
+                expiredIds.add(id);
+            }
+        }
+
+        assertThat(expiredIds).hasSameSizeAs(dueTimes.keySet()).containsOnlyElementsOf(dueTimes.keySet());
+        assertThat(wheel.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void should_expire_all_due_timers_when_advancing_by_a_large_step() {
+        wheel.add(1L, START + 50);
+        wheel.add(2L, START + 5_000);
+        wheel.add(3L, START + 50_000);
+
+        assertThat(wheel.advance(START + 10_000)).containsOnly(1L, 2L);
+        assertThat(wheel.advance(START + 100_000)).containsExactly(3L);
+    }
+
+}
@@ -67,6 +67,33 @@ public class BPMWorkFactoryTest {
         Assert.assertTrue("A lock Process Instance Work is missing although there is a Target process", containsLockProcessInstance);
     }
 
+    @Test
+    public void getProcessInstanceToLock_should_return_parent_process_instance_of_message_couple() {
+        doReturn(12L).when(waitingMessageEvent).getParentProcessInstanceId();
+
+        assertThat(workFactory.getProcessInstanceToLock(workFactory.createExecuteMessageCoupleWorkDescriptor(messageInstance, waitingMessageEvent)))
+                .isEqualTo(12L);
+    }
+
+    @Test
+    public void getProcessInstanceToLock_should_return_null_when_message_couple_has_no_target_process() {
+        doReturn(-1L).when(waitingMessageEvent).getParentProcessInstanceId();
+
+        assertThat(workFactory.getProcessInstanceToLock(workFactory.createExecuteMessageCoupleWorkDescriptor(messageInstance, waitingMessageEvent)))
+                .isNull();
+    }
+
+    @Test
+    public void getProcessInstanceToLock_should_return_process_instance_of_execute_flow_node() {
+        assertThat(workFactory.getProcessInstanceToLock(workFactory.createExecuteFlowNodeWorkDescriptor(1L, 2L, 3L))).isEqualTo(2L);
+    }
+
+    @Test
+    public void getProcessInstanceToLock_should_return_null_for_connector_execution() {
+        assertThat(workFactory.getProcessInstanceToLock(workFactory.createExecuteConnectorOfActivityDescriptor(1L, 2L, 3L, 4L, 5L, "myConnector")))
+                .isNull();
+    }
+
     @Test
     public void createExecuteMessageCoupleWork() {
         final WrappingBonitaWork work = (WrappingBonitaWork) workFactory.create(workFactory.createExecuteMessageCoupleWorkDescriptor(messageInstance, waitingMessageEvent));
@@ -110,6 +137,16 @@ public class BPMWorkFactoryTest {
         Assert.assertTrue("A ProcessInstanceContextWork is missing", containsFailureHandlingFlowNodeInstance(work));
     }
 
+    @Test
+    public void createAddActorMemberToPendingTaskInboxWork_should_execute_in_a_transaction_without_lock() {
+        final WorkDescriptor descriptor = workFactory.createAddActorMemberToPendingTaskInboxWorkDescriptor(1L, -1L, 2L, 3L);
+        final WrappingBonitaWork work = (WrappingBonitaWork) workFactory.create(descriptor);
+
+        assertThat(containsWorkOfClass(work, TxBonitaWork.class)).isTrue();
+        assertThat(work.getDescription()).isEqualTo("AddActorMemberToPendingTaskInboxWork: actorId: 1, userId: -1, groupId: 2, roleId: 3");
+        assertThat(workFactory.getProcessInstanceToLock(descriptor)).isNull();
+    }
+
     private boolean containsFailureHandlingFlowNodeInstance(final WrappingBonitaWork work) {
         return containsWorkOfClass(work, FlowNodeDefinitionAndInstanceContextWork.class);
     }
@@ -82,12 +82,12 @@ public class ExecuteFlowNodesTest {
     }
 
     private ExecuteFlowNodes createExecutorWith(final SFlowNodeInstance... flowNodes) throws Exception {
-        ArrayList<Long> nodes = new ArrayList<Long>();
-        for (SFlowNodeInstance node : flowNodes) {
-            nodes.add(node.getId());
-            when(activityInstanceService.getFlowNodeInstance(node.getId())).thenReturn(node);
+        long[] nodes = new long[flowNodes.length];
+        for (int i = 0; i < flowNodes.length; i++) {
+            nodes[i] = flowNodes[i].getId();
+            when(activityInstanceService.getFlowNodeInstance(nodes[i])).thenReturn(flowNodes[i]);
         }
-        return new ExecuteFlowNodes(tenantServiceAccessor, nodes.iterator());
+        return new ExecuteFlowNodes(tenantServiceAccessor, nodes);
     }
 
     @Test
@@ -129,7 +129,7 @@ public class ExecuteFlowNodesTest {
     }
 
     @Test
-    public final void execute_21_flow_node_only_execute_20() throws Exception {
+    public final void execute_all_flow_nodes_of_the_batch() throws Exception {
         ArrayList<SFlowNodeInstance> list = new ArrayList<SFlowNodeInstance>();
         for (int i = 1; i <= 21; i++) {
             list.add(createTask(123 + i, false));
@@ -139,7 +139,7 @@ public class ExecuteFlowNodesTest {
         executeFlowNodes.call();
 
         assertThat(list.size()).isEqualTo(21);
-        verify(workService, times(20)).registerWork(argThat(work -> work.getType().equals("EXECUTE_FLOWNODE")));
+        verify(workService, times(21)).registerWork(argThat(work -> work.getType().equals("EXECUTE_FLOWNODE")));
     }
 
     @Test
@@ -0,0 +1,141 @@
+/**
+ * Copyright (C) 2018 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.execution.work;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import org.bonitasoft.engine.core.process.instance.api.event.EventInstanceService;
+import org.bonitasoft.engine.core.process.instance.model.event.handling.SBPMEventType;
+import org.bonitasoft.engine.core.process.instance.model.event.handling.SMessageInstance;
+import org.bonitasoft.engine.core.process.instance.model.event.handling.SWaitingMessageEvent;
+import org.bonitasoft.engine.lock.BonitaLock;
+import org.bonitasoft.engine.lock.LockService;
+import org.bonitasoft.engine.log.technical.TechnicalLoggerService;
+import org.bonitasoft.engine.message.MessageCorrelationIndex;
+import org.bonitasoft.engine.message.MessagesHandlingService;
+import org.bonitasoft.engine.service.TenantServiceAccessor;
+import org.bonitasoft.engine.sessionaccessor.SessionAccessor;
+import org.bonitasoft.engine.transaction.BonitaTransactionSynchronization;
+import org.bonitasoft.engine.transaction.TransactionState;
+import org.bonitasoft.engine.transaction.UserTransactionService;
+import org.bonitasoft.engine.work.WorkService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ExecuteMessageCoupleWorkTest {
+
+    private static final long MESSAGE_INSTANCE_ID = 1L;
+    private static final long WAITING_MESSAGE_ID = 2L;
+
+    @Mock
+    private EventInstanceService eventInstanceService;
+    @Mock
+    private WorkService workService;
+    @Mock
+    private TechnicalLoggerService loggerService;
+    @Mock
+    private LockService lockService;
+    @Mock
+    private UserTransactionService userTransactionService;
+    @Mock
+    private SessionAccessor sessionAccessor;
+    @Mock
+    private BPMWorkFactory workFactory;
+    @Mock
+    private TenantServiceAccessor tenantServiceAccessor;
+    @Mock
+    private SMessageInstance messageInstance;
+    @Mock
+    private SWaitingMessageEvent waitingMessage;
+    private MessagesHandlingService messagesHandlingService;
+    private final ThreadLocal<List<BonitaTransactionSynchronization>> synchronizations = ThreadLocal.withInitial(ArrayList::new);
+
+    @Before
+    public void before() throws Exception {
+        messagesHandlingService = new MessagesHandlingService(eventInstanceService, workService, loggerService, lockService, 1L,
+                userTransactionService, sessionAccessor, workFactory, new MessageCorrelationIndex(true, 10));
+        doAnswer(invocation -> synchronizations.get().add(invocation.getArgument(0))).when(userTransactionService)
+                .registerBonitaSynchronization(any());
+        doAnswer(invocation -> {
+            Object result = ((Callable<?>) invocation.getArgument(0)).call();
+            List<BonitaTransactionSynchronization> registered = new ArrayList<>(synchronizations.get());
+            synchronizations.get().clear();
+            for (BonitaTransactionSynchronization synchronization : registered) {
+                synchronization.afterCompletion(TransactionState.COMMITTED);
+            }
+            return result;
+        }).when(userTransactionService).executeInTransaction(any());
+        doReturn(mock(BonitaLock.class)).when(lockService).tryLock(anyLong(), anyString(), anyLong(), any(TimeUnit.class), anyLong());
+
+        doReturn(MESSAGE_INSTANCE_ID).when(messageInstance).getId();
+        doReturn("message").when(messageInstance).getMessageName();
+        doReturn("process").when(messageInstance).getTargetProcess();
+        doReturn(WAITING_MESSAGE_ID).when(waitingMessage).getId();
+        doReturn("message").when(waitingMessage).getMessageName();
+        doReturn("process").when(waitingMessage).getProcessName();
+        doReturn(SBPMEventType.INTERMEDIATE_CATCH_EVENT).when(waitingMessage).getEventType();
+        doReturn(true).when(waitingMessage).isActive();
+        doReturn(Collections.singletonList(messageInstance)).when(eventInstanceService).getUnhandledMessageInstances(anyLong(), anyInt());
+        doReturn(Collections.singletonList(waitingMessage)).when(eventInstanceService).getFreeWaitingMessageEvents(anyLong(), anyInt());
+        doReturn(messageInstance).when(eventInstanceService).getMessageInstance(MESSAGE_INSTANCE_ID);
+        doReturn(waitingMessage).when(eventInstanceService).getWaitingMessage(WAITING_MESSAGE_ID);
+
+        doReturn(messagesHandlingService).when(tenantServiceAccessor).getMessagesHandlingService();
+        doReturn(userTransactionService).when(tenantServiceAccessor).getUserTransactionService();
+        messagesHandlingService.start();
+    }
+
+    @After
+    public void after() throws Exception {
+        messagesHandlingService.stop();
+    }
+
+    @Test
+    public void should_match_the_couple_again_when_its_execution_fails() throws Exception {
+        userTransactionService.executeInTransaction(() -> {
+            messagesHandlingService.triggerMatchingOfMessages();
+            return null;
+        });
+        // the couple is matched while rebuilding the correlation index, that is complete from now on
+        verify(workService, timeout(5000)).registerWork(any());
+        Map<String, Object> context = new HashMap<>();
+        context.put(TenantAwareBonitaWork.TENANT_ACCESSOR, tenantServiceAccessor);
+
+        new ExecuteMessageCoupleWork(MESSAGE_INSTANCE_ID, WAITING_MESSAGE_ID).handleFailure(new Exception("failure"), context);
+
+        verify(workService, timeout(5000).times(2)).registerWork(any());
+    }
+
+}
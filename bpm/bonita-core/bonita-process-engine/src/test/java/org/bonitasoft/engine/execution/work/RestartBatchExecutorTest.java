@@ -0,0 +1,135 @@
+/**
+ * Copyright (C) 2018 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.execution.work;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import org.bonitasoft.engine.log.technical.TechnicalLoggerService;
+import org.bonitasoft.engine.service.TenantServiceAccessor;
+import org.bonitasoft.engine.sessionaccessor.SessionAccessor;
+import org.bonitasoft.engine.transaction.TransactionService;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class RestartBatchExecutorTest {
+
+    private static final long TENANT_ID = 12L;
+    private static final long SESSION_ID = 541L;
+
+    @Mock
+    private TransactionService transactionService;
+    @Mock
+    private TenantServiceAccessor tenantServiceAccessor;
+    @Mock
+    private TechnicalLoggerService logger;
+    @Mock
+    private SessionAccessor sessionAccessor;
+
+    private final List<Long> restartedIds = Collections.synchronizedList(new ArrayList<>());
+
+    @Before
+    public void before() throws Exception {
+        doReturn(logger).when(tenantServiceAccessor).getTechnicalLoggerService();
+        doAnswer(invocation -> ((Callable<?>) invocation.getArgument(0)).call()).when(transactionService).executeInTransaction(any());
+    }
+
+    private void havingASessionOnTheRestartingThread() throws Exception {
+        doReturn(TENANT_ID).when(tenantServiceAccessor).getTenantId();
+        doReturn(sessionAccessor).when(tenantServiceAccessor).getSessionAccessor();
+        doReturn(SESSION_ID).when(sessionAccessor).getSessionId();
+    }
+
+    private LongIdBuffer ids(final int numberOfIds) {
+        final LongIdBuffer ids = new LongIdBuffer();
+        for (long id = 1; id <= numberOfIds; id++) {
+            ids.add(id);
+        }
+        return ids;
+    }
+
+    private Callable<Object> restart(final long[] ids) {
+        return () -> {
+            for (final long id : ids) {
+                restartedIds.add(id);
+            }
+            return null;
+        };
+    }
+
+    @Test
+    public void should_restart_each_batch_in_its_own_transaction() throws Exception {
+        new RestartBatchExecutor("elements", 1, 20).execute(transactionService, tenantServiceAccessor, ids(45), this::restart);
+
+        verify(transactionService, times(3)).executeInTransaction(any());
+        assertThat(restartedIds).hasSize(45).startsWith(1L, 2L, 3L).endsWith(44L, 45L);
+    }
+
+    @Test
+    public void should_restart_all_batches_in_parallel_with_the_session_of_the_restarting_thread() throws Exception {
+        havingASessionOnTheRestartingThread();
+
+        new RestartBatchExecutor("elements", 4, 7).execute(transactionService, tenantServiceAccessor, ids(1000), this::restart);
+
+        verify(transactionService, times(143)).executeInTransaction(any());
+        assertThat(restartedIds).hasSize(1000).doesNotHaveDuplicates();
+        verify(sessionAccessor, times(4)).setSessionInfo(SESSION_ID, TENANT_ID);
+        verify(sessionAccessor, times(4)).deleteSessionId();
+    }
+
+    @Test
+    public void should_do_nothing_when_there_is_no_element_to_restart() throws Exception {
+        new RestartBatchExecutor("elements", 4, 20).execute(transactionService, tenantServiceAccessor, new LongIdBuffer(), this::restart);
+
+        verify(transactionService, times(0)).executeInTransaction(any());
+    }
+
+    @Test
+    public void should_stop_restarting_and_throw_the_failure_of_a_batch() throws Exception {
+        havingASessionOnTheRestartingThread();
+        final IllegalStateException failure = new IllegalStateException("cannot restart");
+
+        final Throwable thrown = catchThrowable(
+                () -> new RestartBatchExecutor("elements", 4, 10).execute(transactionService, tenantServiceAccessor, ids(1000), ids -> () -> {
+                    if (ids[0] == 501) {
+                        throw failure;
+                    }
+                    return restart(ids).call();
+                }));
+
+        assertThat(thrown).isInstanceOf(RestartException.class);
+        assertThat(thrown.getCause()).isSameAs(failure);
+        assertThat(restartedIds).doesNotContain(501L);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void should_not_accept_empty_batches() {
+        new RestartBatchExecutor("elements", 4, 0);
+    }
+
+}
@@ -15,14 +15,18 @@ package org.bonitasoft.engine.execution.work;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
 import static org.mockito.Mockito.*;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 
 import org.bonitasoft.engine.core.process.instance.api.ActivityInstanceService;
 import org.bonitasoft.engine.log.technical.TechnicalLogSeverity;
 import org.bonitasoft.engine.log.technical.TechnicalLoggerService;
-import org.bonitasoft.engine.persistence.QueryOptions;
 import org.bonitasoft.engine.persistence.SBonitaReadException;
 import org.bonitasoft.engine.service.PlatformServiceAccessor;
 import org.bonitasoft.engine.service.TenantServiceAccessor;
@@ -62,19 +66,42 @@ public class RestartFlowNodesHandlerTest {
     public final void do_nothing_if_no_flownode() throws Exception {
         //given
         doReturn(123l).when(tenantServiceAccessor).getTenantId();
-        doReturn(Collections.EMPTY_LIST).when(activityInstanceService).getFlowNodeInstanceIdsToRestart(any(QueryOptions.class));
+        doReturn(Collections.EMPTY_LIST).when(activityInstanceService).getFlowNodeInstanceIdsToRestart(anyLong(), anyInt());
 
         //when
         restartFlowNodesHandler.beforeServicesStart(platformServiceAccessor, tenantServiceAccessor);
 
         //then
-        assertThat(restartFlowNodesHandler.flownodesToRestartByTenant.get(123l)).isEmpty();
+        assertThat(restartFlowNodesHandler.flownodesToRestartByTenant.get(123l).isEmpty()).isTrue();
+    }
+
+    @Test
+    public final void read_ids_of_flownodes_after_the_last_id_of_the_previous_page() throws Exception {
+        //given
+        doReturn(123l).when(tenantServiceAccessor).getTenantId();
+        final List<Long> firstPage = new ArrayList<>();
+        for (long id = 1; id <= RestartFlowNodesHandler.ID_PAGE_SIZE; id++) {
+            firstPage.add(id * 2);
+        }
+        doReturn(firstPage).when(activityInstanceService).getFlowNodeInstanceIdsToRestart(-1, RestartFlowNodesHandler.ID_PAGE_SIZE);
+        doReturn(Arrays.asList(100003L, 100005L)).when(activityInstanceService).getFlowNodeInstanceIdsToRestart(100000,
+                RestartFlowNodesHandler.ID_PAGE_SIZE);
+
+        //when
+        restartFlowNodesHandler.beforeServicesStart(platformServiceAccessor, tenantServiceAccessor);
+
+        //then
+        final LongIdBuffer flownodesToRestart = restartFlowNodesHandler.flownodesToRestartByTenant.get(123l);
+        assertThat(flownodesToRestart.size()).isEqualTo(RestartFlowNodesHandler.ID_PAGE_SIZE + 2);
+        assertThat(flownodesToRestart.get(0)).isEqualTo(2L);
+        assertThat(flownodesToRestart.get(RestartFlowNodesHandler.ID_PAGE_SIZE + 1)).isEqualTo(100005L);
+        verify(activityInstanceService, times(2)).getFlowNodeInstanceIdsToRestart(anyLong(), anyInt());
     }
 
     @Test(expected = RestartException.class)
     public final void throw_exception_if_error_when_get_flownode() throws Exception {
         //given
-        doThrow(new SBonitaReadException("plop")).when(activityInstanceService).getFlowNodeInstanceIdsToRestart(any(QueryOptions.class));
+        doThrow(new SBonitaReadException("plop")).when(activityInstanceService).getFlowNodeInstanceIdsToRestart(anyLong(), anyInt());
 
         //when
         restartFlowNodesHandler.beforeServicesStart(platformServiceAccessor, tenantServiceAccessor);
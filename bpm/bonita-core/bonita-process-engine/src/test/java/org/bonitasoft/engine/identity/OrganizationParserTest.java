@@ -15,6 +15,7 @@
 package org.bonitasoft.engine.identity;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
 
 import org.bonitasoft.engine.commons.io.IOUtil;
 import org.bonitasoft.engine.identity.xml.ExportedCustomUserInfoDefinition;
@@ -25,6 +26,7 @@ import org.bonitasoft.engine.identity.xml.ExportedUser;
 import org.bonitasoft.engine.identity.xml.ExportedUserMembership;
 import org.bonitasoft.engine.identity.xml.Organization;
 import org.junit.Test;
+import org.xml.sax.SAXException;
 
 /**
  * @author Baptiste Mesta
@@ -136,6 +138,60 @@ public class OrganizationParserTest {
         );
     }
 
+    @Test
+    public void should_read_ACME_element_by_element_in_file_order() throws Exception {
+        //given
+        String content = IOUtil.read(OrganizationParserTest.class.getResourceAsStream("/ACME.xml"));
+        final Organization readOrganization = new Organization();
+        //when
+        organizationParser.read(content, new OrganizationElementHandler() {
+
+            @Override
+            public void handle(ExportedCustomUserInfoDefinition customUserInfoDefinition) {
+                readOrganization.getCustomUserInfoDefinition().add(customUserInfoDefinition);
+            }
+
+            @Override
+            public void handle(ExportedUser user) {
+                readOrganization.getUsers().add(user);
+            }
+
+            @Override
+            public void handle(ExportedRole role) {
+                readOrganization.getRoles().add(role);
+            }
+
+            @Override
+            public void handle(ExportedGroup group) {
+                readOrganization.getGroups().add(group);
+            }
+
+            @Override
+            public void handle(ExportedUserMembership membership) {
+                readOrganization.getMemberships().add(membership);
+            }
+        });
+        //then
+        Organization organization = organizationParser.convert(content);
+        assertThat(readOrganization.getCustomUserInfoDefinition()).isEqualTo(organization.getCustomUserInfoDefinition());
+        assertThat(readOrganization.getUsers()).hasSameSizeAs(organization.getUsers());
+        checkWilliamJobs(readOrganization.getUsers().get(0));
+        checkAprilSanchez(readOrganization.getUsers().get(1));
+        assertThat(readOrganization.getRoles()).isEqualTo(organization.getRoles());
+        assertThat(readOrganization.getGroups()).isEqualTo(organization.getGroups());
+        assertThat(readOrganization.getMemberships()).isEqualTo(organization.getMemberships());
+    }
+
+    @Test(expected = SAXException.class)
+    public void should_not_read_organization_not_matching_the_schema() throws Exception {
+        String content = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                "<organization:Organization xmlns:organization=\"http://documentation.bonitasoft.com/organization-xml-schema/1.1\">\n" +
+                "\t<users><unknown/></users>\n" +
+                "</organization:Organization>";
+
+        organizationParser.read(content, mock(OrganizationElementHandler.class));
+    }
+
     private void checkAprilSanchez(ExportedUser aprilSanchez) {
         assertThat(aprilSanchez.getUserName()).isEqualTo("april.sanchez");
         assertThat(aprilSanchez.isPasswordEncrypted()).isEqualTo(true);
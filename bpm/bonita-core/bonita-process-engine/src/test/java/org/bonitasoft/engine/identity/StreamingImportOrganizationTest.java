@@ -0,0 +1,312 @@
+/**
+ * Copyright (C) 2018 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.identity;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import org.bonitasoft.engine.api.impl.SCustomUserInfoValueAPI;
+import org.bonitasoft.engine.identity.model.SGroup;
+import org.bonitasoft.engine.identity.model.SRole;
+import org.bonitasoft.engine.identity.model.SUser;
+import org.bonitasoft.engine.identity.model.SUserMembership;
+import org.bonitasoft.engine.identity.xml.ExportedUser;
+import org.bonitasoft.engine.log.technical.TechnicalLogSeverity;
+import org.bonitasoft.engine.log.technical.TechnicalLoggerService;
+import org.bonitasoft.engine.persistence.OrderByOption;
+import org.bonitasoft.engine.persistence.OrderByType;
+import org.bonitasoft.engine.recorder.model.EntityUpdateDescriptor;
+import org.bonitasoft.engine.service.TenantServiceAccessor;
+import org.bonitasoft.engine.transaction.UserTransactionService;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class StreamingImportOrganizationTest {
+
+    @Mock
+    private TenantServiceAccessor serviceAccessor;
+    @Mock
+    private IdentityService identityService;
+    @Mock
+    private UserTransactionService userTransactionService;
+    @Mock
+    private TechnicalLoggerService logger;
+    @Mock
+    private SCustomUserInfoValueAPI userInfoValueAPI;
+    @Mock
+    private UserImporter userImporter;
+
+    // elements created in each transaction, transactions reading the existing organization are empty
+    private final List<List<String>> transactions = new ArrayList<>();
+
+    private long nextUserId = 100L;
+
+    @Before
+    public void before() throws Exception {
+        when(serviceAccessor.getIdentityService()).thenReturn(identityService);
+        when(serviceAccessor.getUserTransactionService()).thenReturn(userTransactionService);
+        when(serviceAccessor.getTechnicalLoggerService()).thenReturn(logger);
+        when(logger.isLoggable(any(), any())).thenReturn(true);
+        when(userTransactionService.executeInTransaction(any())).thenAnswer(invocation -> {
+            transactions.add(new ArrayList<>());
+            return ((Callable<?>) invocation.getArgument(0)).call();
+        });
+        doAnswer(invocation -> created("membership " + ((SUserMembership) invocation.getArgument(0)).getUserId())).when(identityService)
+                .createUserMembership(any());
+        doAnswer(invocation -> created("manager of " + ((SUser) invocation.getArgument(0)).getUserName())).when(identityService)
+                .updateUser(any(), any());
+        when(userImporter.importUser(any(), isNull())).thenAnswer(invocation -> {
+            final ExportedUser user = invocation.getArgument(0);
+            created("user " + user.getUserName());
+            return user(nextUserId++, user.getUserName());
+        });
+    }
+
+    private Object created(final String element) {
+        transactions.get(transactions.size() - 1).add(element);
+        return null;
+    }
+
+    private List<List<String>> importTransactions() {
+        final List<List<String>> importTransactions = new ArrayList<>();
+        for (final List<String> transaction : transactions) {
+            if (!transaction.isEmpty()) {
+                importTransactions.add(transaction);
+            }
+        }
+        return importTransactions;
+    }
+
+    private StreamingImportOrganization importer(final String organization, final ImportPolicy policy, final int chunkSize) throws Exception {
+        final StreamingImportOrganization importer = spy(new StreamingImportOrganization(serviceAccessor, organization, policy, userInfoValueAPI,
+                chunkSize));
+        doReturn(userImporter).when(importer).createUserImporter();
+        return importer;
+    }
+
+    @Test
+    public void should_commit_elements_in_chunks_of_the_given_size() throws Exception {
+        importer(organization(users("u1", "u2", "u3", "u4", "u5"), "", "", ""), ImportPolicy.FAIL_ON_DUPLICATES, 2).execute();
+
+        assertThat(importTransactions()).containsExactly(asList("user u1", "user u2"), asList("user u3", "user u4"), singletonList("user u5"));
+    }
+
+    @Test
+    public void should_commit_memberships_in_their_own_chunk_after_the_users() throws Exception {
+        final SRole existingRole = role(5L, "r1");
+        final SGroup existingGroup = group(6L, "g1");
+        when(identityService.getRoles(anyInt(), anyInt(), anyString(), any(OrderByType.class))).thenReturn(singletonList(existingRole));
+        when(identityService.getGroups(anyInt(), anyInt(), anyString(), any(OrderByType.class))).thenReturn(singletonList(existingGroup));
+
+        importer(organization(users("john", "paul"), "", "", membership("john", "r1", "g1") + membership("paul", "r1", "g1")),
+                ImportPolicy.FAIL_ON_DUPLICATES, 10).execute();
+
+        assertThat(importTransactions()).containsExactly(asList("user john", "user paul"), asList("membership 100", "membership 101"));
+    }
+
+    @Test
+    public void should_give_the_number_of_committed_elements_when_a_chunk_fails() throws Exception {
+        doThrow(new SUserCreationException("database error")).when(userImporter)
+                .importUser(argThat(user -> user != null && "u3".equals(user.getUserName())), isNull());
+
+        final Throwable thrown = catchThrowable(() -> importer(organization(users("u1", "u2", "u3"), "", "", ""), ImportPolicy.FAIL_ON_DUPLICATES, 2)
+                .execute());
+
+        assertThat(thrown).isInstanceOf(SImportOrganizationException.class).hasMessageContaining("2 elements committed")
+                .hasCauseInstanceOf(SUserCreationException.class);
+    }
+
+    @Test
+    public void should_set_managers_once_all_users_are_imported() throws Exception {
+        final SUser april = user(100L, "april");
+        when(identityService.getUser(100L)).thenReturn(april);
+
+        importer(organization(userWithManager("april", "helen") + users("helen"), "", "", ""), ImportPolicy.FAIL_ON_DUPLICATES, 1).execute();
+
+        assertThat(importTransactions()).containsExactly(singletonList("user april"), singletonList("user helen"), singletonList("manager of april"));
+        final ArgumentCaptor<EntityUpdateDescriptor> descriptor = ArgumentCaptor.forClass(EntityUpdateDescriptor.class);
+        verify(identityService).updateUser(eq(april), descriptor.capture());
+        assertThat(descriptor.getValue().getFields()).containsEntry("managerUserId", 101L);
+    }
+
+    @Test
+    public void should_not_set_manager_that_does_not_exist() throws Exception {
+        importer(organization(userWithManager("april", "unknown"), "", "", ""), ImportPolicy.FAIL_ON_DUPLICATES, 10).execute();
+
+        verify(identityService, never()).updateUser(any(), any());
+        verify(logger).log(eq(StreamingImportOrganization.class), eq(TechnicalLogSeverity.WARNING), anyString());
+    }
+
+    @Test
+    public void should_resolve_manager_already_in_the_tenant() throws Exception {
+        final SUser helen = user(7L, "helen");
+        final SUser april = user(100L, "april");
+        when(identityService.getUsers(anyInt(), anyInt(), anyString(), any(OrderByType.class))).thenReturn(singletonList(helen));
+        when(identityService.getUser(100L)).thenReturn(april);
+
+        importer(organization(userWithManager("april", "helen"), "", "", ""), ImportPolicy.IGNORE_DUPLICATES, 10).execute();
+
+        final ArgumentCaptor<EntityUpdateDescriptor> descriptor = ArgumentCaptor.forClass(EntityUpdateDescriptor.class);
+        verify(identityService).updateUser(any(), descriptor.capture());
+        assertThat(descriptor.getValue().getFields()).containsEntry("managerUserId", 7L);
+    }
+
+    @Test
+    public void should_fail_on_existing_role_with_fail_on_duplicates_policy() throws Exception {
+        final SRole existingRole = role(5L, "r1");
+        when(identityService.getRoles(anyInt(), anyInt(), anyString(), any(OrderByType.class))).thenReturn(singletonList(existingRole));
+        when(identityService.getRole(5L)).thenReturn(existingRole);
+
+        final Throwable thrown = catchThrowable(() -> importer(organization("", roles("r1"), "", ""), ImportPolicy.FAIL_ON_DUPLICATES, 10)
+                .execute());
+
+        assertThat(thrown).isInstanceOf(ImportDuplicateInOrganizationException.class);
+        verify(identityService, never()).createRole(any(), any(), any());
+    }
+
+    @Test
+    public void should_keep_existing_user_and_membership_with_ignore_duplicates_policy() throws Exception {
+        final SUser existingUser = user(7L, "john");
+        final SRole existingRole = role(5L, "r1");
+        final SGroup existingGroup = group(6L, "g1");
+        final SUserMembership existingMembership = membership(7L, 6L, 5L);
+        when(identityService.getUsers(anyInt(), anyInt(), anyString(), any(OrderByType.class))).thenReturn(singletonList(existingUser));
+        when(identityService.getRoles(anyInt(), anyInt(), anyString(), any(OrderByType.class))).thenReturn(singletonList(existingRole));
+        when(identityService.getGroups(anyInt(), anyInt(), anyString(), any(OrderByType.class))).thenReturn(singletonList(existingGroup));
+        when(identityService.getUserMemberships(anyInt(), anyInt(), any(OrderByOption.class))).thenReturn(singletonList(existingMembership));
+        doReturn(existingUser).when(userImporter).importUser(any(), eq(7L));
+
+        importer(organization(users("john"), roles("r1"), groups("g1"), membership("john", "r1", "g1")), ImportPolicy.IGNORE_DUPLICATES, 10).execute();
+
+        verify(userImporter).importUser(any(), eq(7L));
+        verify(identityService, never()).createRole(any(), any(), any());
+        verify(identityService, never()).createGroup(any(), any(), any());
+        verify(identityService, never()).createUserMembership(any());
+        assertThat(importTransactions()).isEmpty();
+    }
+
+    @Test
+    public void should_update_existing_group_with_merge_duplicates_policy() throws Exception {
+        final SGroup existingGroup = group(6L, "g1");
+        when(identityService.getGroups(anyInt(), anyInt(), anyString(), any(OrderByType.class))).thenReturn(singletonList(existingGroup));
+        when(identityService.getGroup(6L)).thenReturn(existingGroup);
+
+        importer(organization("", "", "<group name=\"g1\"><displayName>new display name</displayName></group>", ""), ImportPolicy.MERGE_DUPLICATES, 10)
+                .execute();
+
+        final ArgumentCaptor<EntityUpdateDescriptor> descriptor = ArgumentCaptor.forClass(EntityUpdateDescriptor.class);
+        verify(identityService).updateGroup(eq(existingGroup), descriptor.capture(), isNull());
+        assertThat(descriptor.getValue().getFields()).containsValue("new display name");
+        verify(identityService, never()).createGroup(any(), any(), any());
+    }
+
+    private SUser user(final long id, final String userName) {
+        final SUser user = mock(SUser.class);
+        when(user.getId()).thenReturn(id);
+        when(user.getUserName()).thenReturn(userName);
+        return user;
+    }
+
+    private SRole role(final long id, final String name) {
+        final SRole role = mock(SRole.class);
+        when(role.getId()).thenReturn(id);
+        when(role.getName()).thenReturn(name);
+        return role;
+    }
+
+    private SGroup group(final long id, final String name) {
+        final SGroup group = mock(SGroup.class);
+        when(group.getId()).thenReturn(id);
+        when(group.getName()).thenReturn(name);
+        when(group.getPath()).thenReturn("/" + name);
+        return group;
+    }
+
+    private SUserMembership membership(final long userId, final long groupId, final long roleId) {
+        final SUserMembership membership = mock(SUserMembership.class);
+        when(membership.getUserId()).thenReturn(userId);
+        when(membership.getGroupId()).thenReturn(groupId);
+        when(membership.getRoleId()).thenReturn(roleId);
+        return membership;
+    }
+
+    private String organization(final String users, final String roles, final String groups, final String memberships) {
+        return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<organization:Organization xmlns:organization=\"http://documentation.bonitasoft.com/organization-xml-schema/1.1\">\n"
+                + "<users>" + users + "</users>\n"
+                + "<roles>" + roles + "</roles>\n"
+                + "<groups>" + groups + "</groups>\n"
+                + "<memberships>" + memberships + "</memberships>\n"
+                + "</organization:Organization>";
+    }
+
+    private String users(final String... userNames) {
+        final StringBuilder users = new StringBuilder();
+        for (final String userName : userNames) {
+            users.append("<user userName=\"").append(userName).append("\"><password encrypted=\"false\">bpm</password></user>");
+        }
+        return users.toString();
+    }
+
+    private String userWithManager(final String userName, final String managerUserName) {
+        return "<user userName=\"" + userName + "\"><password encrypted=\"false\">bpm</password><manager>" + managerUserName + "</manager></user>";
+    }
+
+    private String roles(final String... names) {
+        final StringBuilder roles = new StringBuilder();
+        for (final String name : names) {
+            roles.append("<role name=\"").append(name).append("\"/>");
+        }
+        return roles.toString();
+    }
+
+    private String groups(final String... names) {
+        final StringBuilder groups = new StringBuilder();
+        for (final String name : names) {
+            groups.append("<group name=\"").append(name).append("\"/>");
+        }
+        return groups.toString();
+    }
+
+    private String membership(final String userName, final String roleName, final String groupName) {
+        return "<membership><userName>" + userName + "</userName><roleName>" + roleName + "</roleName><groupName>" + groupName
+                + "</groupName></membership>";
+    }
+
+}
@@ -0,0 +1,121 @@
+/**
+ * Copyright (C) 2018 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.message;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.bonitasoft.engine.core.process.instance.model.event.handling.SBPMEventType;
+import org.bonitasoft.engine.core.process.instance.model.event.handling.SMessageEventCouple;
+import org.bonitasoft.engine.core.process.instance.model.event.handling.SMessageInstance;
+import org.bonitasoft.engine.core.process.instance.model.event.handling.impl.SMessageInstanceImpl;
+import org.bonitasoft.engine.core.process.instance.model.event.handling.impl.SWaitingMessageEventImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measure the time needed to match a new waiting message when {@link #pendingMessages} message instances are waiting to
+ * be matched, using the {@link MessageCorrelationIndex} and using a scan of all pending messages, which is what the
+ * {@code getMessageEventCouples} join does for each new element.
+ * Run it using {@link #main(String[])}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MessageCorrelationIndexBenchmark {
+
+    private static final String NO_VALUE = "NONE";
+
+    @Param({ "100000" })
+    public int pendingMessages;
+
+    private MessageCorrelationIndex index;
+    private List<SMessageInstance> messages;
+
+    @Setup
+    public void setup() {
+        index = new MessageCorrelationIndex(true, Integer.MAX_VALUE);
+        messages = new ArrayList<>(pendingMessages);
+        for (int i = 0; i < pendingMessages; i++) {
+            SMessageInstance message = message(i);
+            messages.add(message);
+            index.addMessage(message);
+        }
+    }
+
+    private static SMessageInstanceImpl message(long id) {
+        SMessageInstanceImpl messageInstance = new SMessageInstanceImpl("msg", "process", null, 1L, "throw");
+        messageInstance.setId(id);
+        messageInstance.setCorrelation1("orderId-$-" + id);
+        messageInstance.setCorrelation2(NO_VALUE);
+        return messageInstance;
+    }
+
+    private static SWaitingMessageEventImpl waitingMessage(long id) {
+        SWaitingMessageEventImpl waitingMessage = new SWaitingMessageEventImpl(SBPMEventType.INTERMEDIATE_CATCH_EVENT, 2L, "process", 3L, "catch", "msg");
+        waitingMessage.setId(id);
+        waitingMessage.setCorrelation1("orderId-$-" + id);
+        waitingMessage.setCorrelation2(NO_VALUE);
+        return waitingMessage;
+    }
+
+    @Benchmark
+    public List<SMessageEventCouple> matchUsingIndex() {
+        long id = ThreadLocalRandom.current().nextInt(pendingMessages);
+        List<SMessageEventCouple> couples = index.addWaitingMessage(waitingMessage(id));
+        //put back the matched message so that the number of pending messages stays the same
+        index.addMessage(messages.get((int) id));
+        return couples;
+    }
+
+    @Benchmark
+    public SMessageInstance matchUsingScan() {
+        SWaitingMessageEventImpl waitingMessage = waitingMessage(ThreadLocalRandom.current().nextInt(pendingMessages));
+        for (SMessageInstance message : messages) {
+            if (message.getMessageName().equals(waitingMessage.getMessageName())
+                    && message.getTargetProcess().equals(waitingMessage.getProcessName())
+                    && (message.getTargetFlowNode() == null || message.getTargetFlowNode().equals(waitingMessage.getFlowNodeName()))
+                    && Objects.equals(message.getCorrelation1(), waitingMessage.getCorrelation1())
+                    && Objects.equals(message.getCorrelation2(), waitingMessage.getCorrelation2())
+                    && Objects.equals(message.getCorrelation3(), waitingMessage.getCorrelation3())
+                    && Objects.equals(message.getCorrelation4(), waitingMessage.getCorrelation4())
+                    && Objects.equals(message.getCorrelation5(), waitingMessage.getCorrelation5())) {
+                return message;
+            }
+        }
+        return null;
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(MessageCorrelationIndexBenchmark.class.getSimpleName()).build()).run();
+    }
+
+}
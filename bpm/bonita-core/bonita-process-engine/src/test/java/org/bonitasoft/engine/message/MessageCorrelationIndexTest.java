@@ -0,0 +1,126 @@
+/**
+ * Copyright (C) 2018 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.message;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+import java.util.List;
+
+import org.bonitasoft.engine.core.process.instance.model.event.handling.SBPMEventType;
+import org.bonitasoft.engine.core.process.instance.model.event.handling.SMessageEventCouple;
+import org.bonitasoft.engine.core.process.instance.model.event.handling.impl.SMessageInstanceImpl;
+import org.bonitasoft.engine.core.process.instance.model.event.handling.impl.SWaitingMessageEventImpl;
+import org.junit.Test;
+
+public class MessageCorrelationIndexTest {
+
+    private MessageCorrelationIndex index = new MessageCorrelationIndex(true, 10);
+
+    private SMessageInstanceImpl message(long id, String messageName, String targetFlowNode, String correlation1) {
+        SMessageInstanceImpl messageInstance = new SMessageInstanceImpl(messageName, "process", targetFlowNode, 1L, "throw");
+        messageInstance.setId(id);
+        messageInstance.setCorrelation1(correlation1);
+        return messageInstance;
+    }
+
+    private SWaitingMessageEventImpl waitingMessage(long id, SBPMEventType eventType, String messageName, String flowNodeName, String correlation1) {
+        SWaitingMessageEventImpl waitingMessageEvent = new SWaitingMessageEventImpl(eventType, 2L, "process", 3L, flowNodeName, messageName);
+        waitingMessageEvent.setId(id);
+        waitingMessageEvent.setCorrelation1(correlation1);
+        return waitingMessageEvent;
+    }
+
+    @Test
+    public void should_match_message_with_waiting_message_having_same_correlation() {
+        assertThat(index.addWaitingMessage(waitingMessage(10L, SBPMEventType.INTERMEDIATE_CATCH_EVENT, "msg", "catch", "key-$-1"))).isEmpty();
+
+        SMessageEventCouple couple = index.addMessage(message(1L, "msg", null, "key-$-1"));
+
+        assertThat(couple.getWaitingMessageId()).isEqualTo(10L);
+        assertThat(couple.getMessageInstanceId()).isEqualTo(1L);
+        assertThat(couple.getWaitingMessageEventType()).isEqualTo(SBPMEventType.INTERMEDIATE_CATCH_EVENT);
+        assertThat(index.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void should_not_match_message_with_different_correlation_or_name() {
+        index.addWaitingMessage(waitingMessage(10L, SBPMEventType.INTERMEDIATE_CATCH_EVENT, "msg", "catch", "key-$-1"));
+
+        assertThat(index.addMessage(message(1L, "msg", null, "key-$-2"))).isNull();
+        assertThat(index.addMessage(message(2L, "otherMsg", null, "key-$-1"))).isNull();
+        assertThat(index.size()).isEqualTo(3);
+    }
+
+    @Test
+    public void should_match_waiting_message_with_first_message_targeting_its_flow_node() {
+        index.addMessage(message(1L, "msg", "otherCatch", "key-$-1"));
+        index.addMessage(message(2L, "msg", "catch", "key-$-1"));
+        index.addMessage(message(3L, "msg", null, "key-$-1"));
+
+        List<SMessageEventCouple> couples = index.addWaitingMessage(waitingMessage(10L, SBPMEventType.INTERMEDIATE_CATCH_EVENT, "msg", "catch", "key-$-1"));
+
+        assertThat(couples).extracting("waitingMessageId", "messageInstanceId").containsExactly(tuple(10L, 2L));
+        assertThat(index.size()).isEqualTo(2);
+    }
+
+    @Test
+    public void should_match_a_waiting_message_only_once() {
+        index.addWaitingMessage(waitingMessage(10L, SBPMEventType.INTERMEDIATE_CATCH_EVENT, "msg", "catch", "key-$-1"));
+
+        assertThat(index.addMessage(message(1L, "msg", null, "key-$-1"))).isNotNull();
+        assertThat(index.addMessage(message(2L, "msg", null, "key-$-1"))).isNull();
+    }
+
+    @Test
+    public void should_match_start_event_with_all_messages() {
+        index.addMessage(message(1L, "msg", null, "key-$-1"));
+        index.addMessage(message(2L, "msg", null, "key-$-1"));
+
+        List<SMessageEventCouple> couples = index.addWaitingMessage(waitingMessage(10L, SBPMEventType.START_EVENT, "msg", "start", "key-$-1"));
+        SMessageEventCouple couple = index.addMessage(message(3L, "msg", null, "key-$-1"));
+
+        assertThat(couples).extracting("waitingMessageId", "messageInstanceId").containsExactly(tuple(10L, 1L), tuple(10L, 2L));
+        assertThat(couple.getWaitingMessageId()).isEqualTo(10L);
+        assertThat(index.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void should_clear_index_when_max_entries_is_reached() {
+        index.markAsComplete();
+        for (int i = 0; i <= 10; i++) {
+            index.addMessage(message(i, "msg", null, "key-$-" + i));
+        }
+
+        assertThat(index.size()).isEqualTo(0);
+        assertThat(index.hasOverflowed()).isTrue();
+        assertThat(index.isComplete()).isFalse();
+        index.markAsComplete();
+        assertThat(index.isComplete()).isFalse();
+    }
+
+    @Test
+    public void should_reset_overflow_when_cleared() {
+        for (int i = 0; i <= 10; i++) {
+            index.addMessage(message(i, "msg", null, "key-$-" + i));
+        }
+
+        index.clear();
+        index.markAsComplete();
+
+        assertThat(index.hasOverflowed()).isFalse();
+        assertThat(index.isComplete()).isTrue();
+    }
+
+}
@@ -14,21 +14,33 @@
 
 package org.bonitasoft.engine.message;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Callable;
 
 import org.bonitasoft.engine.core.process.instance.api.event.EventInstanceService;
 import org.bonitasoft.engine.core.process.instance.api.exceptions.event.trigger.SEventTriggerInstanceReadException;
 import org.bonitasoft.engine.core.process.instance.model.event.handling.SBPMEventType;
 import org.bonitasoft.engine.core.process.instance.model.event.handling.SMessageEventCouple;
+import org.bonitasoft.engine.core.process.instance.model.event.handling.SMessageInstance;
 import org.bonitasoft.engine.lock.LockService;
 import org.bonitasoft.engine.log.technical.TechnicalLoggerService;
 import org.bonitasoft.engine.sessionaccessor.SessionAccessor;
+import org.bonitasoft.engine.transaction.BonitaTransactionSynchronization;
+import org.bonitasoft.engine.transaction.TransactionState;
 import org.bonitasoft.engine.transaction.UserTransactionService;
 import org.bonitasoft.engine.work.WorkService;
 import org.junit.Test;
@@ -213,4 +225,69 @@ public class MessagesHandlingServiceTest {
         assertEquals(20L, second.getWaitingMessageId());
     }
 
+    @Test
+    public void should_rebuild_correlation_index_when_matching_transaction_is_rolled_back() throws Exception {
+        MessagesHandlingService service = serviceWithCorrelationIndex(new MessageCorrelationIndex(true, 10));
+        when(eventInstanceService.getUnhandledMessageInstances(anyLong(), anyInt())).thenReturn(Collections.singletonList(mock(SMessageInstance.class)));
+        completeTransactionsWith(TransactionState.COMMITTED);
+        service.matchEventCoupleAndTriggerExecution();
+        completeTransactionsWith(TransactionState.ROLLEDBACK);
+        service.matchEventCoupleAndTriggerExecution();
+        completeTransactionsWith(TransactionState.COMMITTED);
+
+        service.matchEventCoupleAndTriggerExecution();
+
+        verify(eventInstanceService, times(2)).getMessageEventCouples(0, 1000);
+        verify(eventInstanceService, times(2)).getUnhandledMessageInstances(0, 1000);
+    }
+
+    @Test
+    public void should_not_mark_correlation_index_as_complete_when_rebuild_is_rolled_back() throws Exception {
+        MessageCorrelationIndex correlationIndex = new MessageCorrelationIndex(true, 10);
+        MessagesHandlingService service = serviceWithCorrelationIndex(correlationIndex);
+        when(eventInstanceService.getUnhandledMessageInstances(anyLong(), anyInt())).thenReturn(Collections.singletonList(mock(SMessageInstance.class)));
+        completeTransactionsWith(TransactionState.ROLLEDBACK);
+
+        service.matchEventCoupleAndTriggerExecution();
+
+        assertThat(correlationIndex.isComplete()).isFalse();
+        assertThat(correlationIndex.size()).isZero();
+    }
+
+    @Test
+    public void should_retry_to_rebuild_correlation_index_after_an_overflow() throws Exception {
+        MessageCorrelationIndex correlationIndex = new MessageCorrelationIndex(true, 1);
+        MessagesHandlingService service = serviceWithCorrelationIndex(correlationIndex);
+        when(eventInstanceService.getUnhandledMessageInstances(anyLong(), anyInt()))
+                .thenReturn(Arrays.asList(mock(SMessageInstance.class), mock(SMessageInstance.class)))
+                .thenReturn(Collections.singletonList(mock(SMessageInstance.class)));
+        completeTransactionsWith(TransactionState.COMMITTED);
+        service.matchEventCoupleAndTriggerExecution();
+        assertThat(correlationIndex.isComplete()).isFalse();
+
+        service.matchEventCoupleAndTriggerExecution();
+
+        verify(eventInstanceService, times(2)).getUnhandledMessageInstances(0, 1000);
+        assertThat(correlationIndex.isComplete()).isTrue();
+    }
+
+    private MessagesHandlingService serviceWithCorrelationIndex(MessageCorrelationIndex correlationIndex) {
+        return new MessagesHandlingService(eventInstanceService, workService, loggerService, lockService, 1L, userTransactionService,
+                sessionAccessor, null, correlationIndex);
+    }
+
+    private void completeTransactionsWith(TransactionState txState) throws Exception {
+        List<BonitaTransactionSynchronization> synchronizations = new ArrayList<>();
+        doAnswer(invocation -> synchronizations.add(invocation.getArgument(0))).when(userTransactionService)
+                .registerBonitaSynchronization(any());
+        doAnswer(invocation -> {
+            Object result = ((Callable<?>) invocation.getArgument(0)).call();
+            for (BonitaTransactionSynchronization synchronization : synchronizations) {
+                synchronization.afterCompletion(txState);
+            }
+            synchronizations.clear();
+            return result;
+        }).when(userTransactionService).executeInTransaction(any());
+    }
+
 }
@@ -0,0 +1,197 @@
+/**
+ * Copyright (C) 2018 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.search;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.bonitasoft.engine.persistence.search.FilterOperationType.*;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.bonitasoft.engine.bpm.process.ProcessInstanceSearchDescriptor;
+import org.bonitasoft.engine.core.process.instance.model.SProcessInstance;
+import org.bonitasoft.engine.exception.SearchException;
+import org.bonitasoft.engine.persistence.FilterOption;
+import org.bonitasoft.engine.persistence.QueryOptions;
+import org.bonitasoft.engine.persistence.search.FilterOperationType;
+import org.bonitasoft.engine.search.descriptor.SearchProcessInstanceDescriptor;
+import org.bonitasoft.engine.search.impl.SearchFilter;
+import org.junit.Test;
+
+public class AbstractSearchEntityTest {
+
+    private final List<QueryOptions> countQueries = new ArrayList<>();
+    private final List<QueryOptions> searchQueries = new ArrayList<>();
+
+    private SearchResult<Long> search(SearchOptions searchOptions, long count, int numberOfResults) throws Exception {
+        return AbstractSearchEntity.<Long, SProcessInstance> search(new SearchProcessInstanceDescriptor(), searchOptions,
+                serverObjects -> Collections.nCopies(serverObjects.size(), 1L),
+                queryOptions -> {
+                    countQueries.add(queryOptions);
+                    return count;
+                },
+                queryOptions -> {
+                    searchQueries.add(queryOptions);
+                    return Collections.nCopies(Math.min(numberOfResults, queryOptions.getNumberOfResults()), null);
+                });
+    }
+
+    @Test
+    public void should_not_count_when_the_page_is_the_last_one() throws Exception {
+        final SearchResult<Long> result = search(new SearchOptionsBuilder(0, 10).done(), 3, 3);
+
+        assertThat(result.getCount()).isEqualTo(3);
+        assertThat(result.getResult()).hasSize(3);
+        assertThat(searchQueries).hasSize(1);
+        assertThat(countQueries).isEmpty();
+    }
+
+    @Test
+    public void should_not_count_when_there_is_no_result() throws Exception {
+        final SearchResult<Long> result = search(new SearchOptionsBuilder(0, 10).done(), 0, 0);
+
+        assertThat(result.getCount()).isEqualTo(0);
+        assertThat(result.getResult()).isEmpty();
+        assertThat(countQueries).isEmpty();
+    }
+
+    @Test
+    public void should_count_when_the_last_page_is_exactly_full() throws Exception {
+        final SearchResult<Long> result = search(new SearchOptionsBuilder(0, 10).done(), 10, 10);
+
+        assertThat(result.getCount()).isEqualTo(10);
+        assertThat(countQueries).hasSize(1);
+    }
+
+    @Test
+    public void should_derive_the_count_from_a_last_page_that_is_not_the_first_one() throws Exception {
+        final SearchResult<Long> result = search(new SearchOptionsBuilder(40, 10).done(), 42, 2);
+
+        assertThat(result.getCount()).isEqualTo(42);
+        assertThat(result.getResult()).hasSize(2);
+        assertThat(countQueries).isEmpty();
+    }
+
+    @Test
+    public void should_count_without_the_page_filters_and_read_the_page_with_the_same_filters() throws Exception {
+        search(new SearchOptionsBuilder(0, 10).filter(ProcessInstanceSearchDescriptor.PROCESS_DEFINITION_ID, 5L).searchTerm("my").done(), 42, 10);
+
+        assertThat(countQueries.get(0).getFilters()).isEqualTo(searchQueries.get(0).getFilters());
+        assertThat(countQueries.get(0).getMultipleFilter()).isSameAs(searchQueries.get(0).getMultipleFilter());
+    }
+
+    @Test
+    public void should_count_with_search_options_implemented_before_skip_count_and_search_after() throws Exception {
+        final SearchOptions options = new SearchOptionsBuilder(0, 10).done();
+        final SearchOptions previousImplementation = new SearchOptions() {
+
+            @Override
+            public List<SearchFilter> getFilters() {
+                return options.getFilters();
+            }
+
+            @Override
+            public String getSearchTerm() {
+                return options.getSearchTerm();
+            }
+
+            @Override
+            public int getStartIndex() {
+                return options.getStartIndex();
+            }
+
+            @Override
+            public int getMaxResults() {
+                return options.getMaxResults();
+            }
+
+            @Override
+            public List<Sort> getSorts() {
+                return options.getSorts();
+            }
+        };
+
+        final SearchResult<Long> result = search(previousImplementation, 42, 10);
+
+        assertThat(result.getCount()).isEqualTo(42);
+        assertThat(searchQueries.get(0).getNumberOfResults()).isEqualTo(10);
+        assertThat(countQueries).hasSize(1);
+    }
+
+    @Test
+    public void should_count_when_the_page_is_full() throws Exception {
+        final SearchResult<Long> result = search(new SearchOptionsBuilder(10, 10).done(), 42, 10);
+
+        assertThat(result.getCount()).isEqualTo(42);
+        assertThat(result.getResult()).hasSize(10);
+        assertThat(countQueries).hasSize(1);
+    }
+
+    @Test
+    public void should_count_when_the_page_is_after_the_last_result() throws Exception {
+        final SearchResult<Long> result = search(new SearchOptionsBuilder(50, 10).done(), 42, 0);
+
+        assertThat(result.getCount()).isEqualTo(42);
+        assertThat(result.getResult()).isEmpty();
+        assertThat(countQueries).hasSize(1);
+    }
+
+    @Test
+    public void should_only_count_when_no_result_is_asked() throws Exception {
+        final SearchResult<Long> result = search(new SearchOptionsBuilder(0, 0).done(), 42, 10);
+
+        assertThat(result.getCount()).isEqualTo(42);
+        assertThat(searchQueries).isEmpty();
+    }
+
+    @Test
+    public void should_read_one_more_result_instead_of_counting_when_count_is_skipped() throws Exception {
+        final SearchResult<Long> result = search(new SearchOptionsBuilder(20, 10).skipCount().done(), 42, 100);
+
+        assertThat(result.getResult()).hasSize(10);
+        assertThat(result.getCount()).isEqualTo(31);
+        assertThat(searchQueries.get(0).getNumberOfResults()).isEqualTo(11);
+        assertThat(countQueries).isEmpty();
+    }
+
+    @Test
+    public void should_search_after_the_sort_values_and_count_without_them() throws Exception {
+        final SearchOptions searchOptions = new SearchOptionsBuilder(0, 10).filter(ProcessInstanceSearchDescriptor.PROCESS_DEFINITION_ID, 5L)
+                .sort(ProcessInstanceSearchDescriptor.NAME, Order.ASC).sort(ProcessInstanceSearchDescriptor.ID, Order.DESC)
+                .searchAfter("myProcess", 12L).done();
+
+        search(searchOptions, 42, 10);
+
+        assertThat(countQueries.get(0).getFilters()).containsExactly(filter("processDefinitionId", 5L, EQUALS));
+        assertThat(searchQueries.get(0).getFilters()).containsExactly(
+                new FilterOption(L_PARENTHESIS), filter("processDefinitionId", 5L, EQUALS), new FilterOption(R_PARENTHESIS),
+                new FilterOption(L_PARENTHESIS),
+                new FilterOption(L_PARENTHESIS), filter("name", "myProcess", GREATER), new FilterOption(R_PARENTHESIS),
+                new FilterOption(OR),
+                new FilterOption(L_PARENTHESIS), filter("name", "myProcess", EQUALS), filter("id", 12L, LESS), new FilterOption(R_PARENTHESIS),
+                new FilterOption(R_PARENTHESIS));
+    }
+
+    @Test(expected = SearchException.class)
+    public void should_fail_when_search_after_values_do_not_match_the_sorts() throws Exception {
+        search(new SearchOptionsBuilder(0, 10).sort(ProcessInstanceSearchDescriptor.NAME, Order.ASC).searchAfter("myProcess", 12L).done(), 42, 10);
+    }
+
+    private FilterOption filter(String fieldName, Serializable value, FilterOperationType operationType) {
+        return new FilterOption(SProcessInstance.class, fieldName, value, operationType);
+    }
+
+}
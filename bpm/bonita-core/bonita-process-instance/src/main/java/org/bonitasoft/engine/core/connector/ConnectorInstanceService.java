@@ -68,6 +68,17 @@ public interface ConnectorInstanceService {
      */
     void createConnectorInstance(SConnectorInstance connectorInstance) throws SConnectorInstanceCreationException;
 
+    /**
+     * Create many connector instances, their insert statements are sent together
+     *
+     * @param connectorInstances
+     *        Connector instances
+     * @throws SConnectorInstanceCreationException
+     *         Error thrown if has exceptions during the connector instances creation
+     * @since 7.7.2
+     */
+    void createConnectorInstances(List<SConnectorInstance> connectorInstances) throws SConnectorInstanceCreationException;
+
     /**
      * Delete the given connector instance from the database
      * 
@@ -159,6 +159,15 @@ public class ConnectorInstanceServiceImpl implements ConnectorInstanceService {
         }
     }
 
+    @Override
+    public void createConnectorInstances(final List<SConnectorInstance> connectorInstances) throws SConnectorInstanceCreationException {
+        try {
+            recorder.recordInsertInBatch(connectorInstances, CONNECTOR_INSTANCE);
+        } catch (final SRecorderException e) {
+            throw new SConnectorInstanceCreationException(e);
+        }
+    }
+
     @Override
     public List<SConnectorInstance> getConnectorInstances(final long containerId, final String containerType, final ConnectorEvent activationEvent,
             final int from, final int numberOfResult, final String state) throws SConnectorInstanceReadException {
@@ -0,0 +1,50 @@
+/**
+ * Copyright (C) 2018 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.core.document.api;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Stores the content of documents outside of the document table.
+ * <p>
+ * The document table keeps the reference returned by {@link #write(InputStream)} instead of the content. Documents without reference have their
+ * content in the document table, which is the default.
+ */
+public interface DocumentContentStore {
+
+    /**
+     * Write the content in the store
+     *
+     * @param content the content to write, it is read until its end but not closed
+     * @return the reference of the content, to be given to {@link #read(String)}
+     */
+    String write(InputStream content) throws IOException;
+
+    /**
+     * @param reference the reference returned when the content was written
+     * @return a stream on the content, to be closed by the caller
+     * @throws java.io.FileNotFoundException when there is no content with this reference in the store
+     */
+    InputStream read(String reference) throws IOException;
+
+    /**
+     * Delete the content from the store. It must not be referenced by any document anymore.
+     *
+     * @param reference the reference returned when the content was written
+     * @return true if the content was deleted, false if there was no content with this reference in the store
+     */
+    boolean delete(String reference) throws IOException;
+
+}
@@ -13,6 +13,7 @@
  **/
 package org.bonitasoft.engine.core.document.api;
 
+import java.io.InputStream;
 import java.util.List;
 
 import org.bonitasoft.engine.commons.exceptions.SObjectAlreadyExistsException;
@@ -103,6 +104,24 @@ public interface DocumentService {
      */
     byte[] getDocumentContent(String documentId) throws SObjectNotFoundException;
 
+    /**
+     * Get document content by document id, without reading it all in memory when it is in the {@link DocumentContentStore}
+     *
+     * @param documentId identifier of the document
+     * @return a stream on the document content to be closed by the caller, null if the document has no content
+     * @throws SObjectNotFoundException
+     */
+    InputStream getDocumentContentAsStream(String documentId) throws SObjectNotFoundException;
+
+    /**
+     * Write the content of a document not yet attached, in the {@link DocumentContentStore} when it is enabled, or in the document itself
+     *
+     * @param document the document built without content
+     * @param content the content of the document, read until its end but not closed
+     * @throws SObjectCreationException when the content can't be written
+     */
+    void writeDocumentContent(SDocument document, InputStream content) throws SObjectCreationException;
+
     /**
      * Get document with mapping by its mapping id
      *
@@ -365,4 +384,23 @@ public interface DocumentService {
      * @param sDocument the new version of the document @return
      */
     SMappedDocument updateDocument(long documentId, SDocument sDocument) throws SObjectNotFoundException, SObjectModificationException, SBonitaReadException;
+
+    /**
+     * Get the ids of the documents having their content where new content is not written anymore: in the document table when the
+     * {@link DocumentContentStore} is enabled, in the {@link DocumentContentStore} when it is not.
+     *
+     * @param afterDocumentId only documents having an id greater than this one are returned
+     * @param maxResults maximum number of ids to return
+     * @return the ids, in ascending order
+     */
+    List<Long> getIdsOfDocumentsWithContentToMove(long afterDocumentId, int maxResults) throws SBonitaReadException;
+
+    /**
+     * Move the content of the document where new content is written: in the {@link DocumentContentStore} when it is enabled, in the document table
+     * when it is not.
+     *
+     * @param documentId the id of the document
+     * @return false if the content of the document was already there
+     */
+    boolean moveDocumentContent(long documentId) throws SObjectNotFoundException, SBonitaReadException, SObjectModificationException;
 }
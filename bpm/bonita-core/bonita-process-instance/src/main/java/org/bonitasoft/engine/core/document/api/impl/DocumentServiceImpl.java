@@ -13,6 +13,9 @@
  **/
 package org.bonitasoft.engine.core.document.api.impl;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -26,6 +29,8 @@ import org.bonitasoft.engine.commons.exceptions.SObjectAlreadyExistsException;
 import org.bonitasoft.engine.commons.exceptions.SObjectCreationException;
 import org.bonitasoft.engine.commons.exceptions.SObjectModificationException;
 import org.bonitasoft.engine.commons.exceptions.SObjectNotFoundException;
+import org.bonitasoft.engine.commons.io.IOUtil;
+import org.bonitasoft.engine.core.document.api.DocumentContentStore;
 import org.bonitasoft.engine.core.document.api.DocumentService;
 import org.bonitasoft.engine.core.document.model.SDocument;
 import org.bonitasoft.engine.core.document.model.SDocumentMapping;
@@ -34,10 +39,13 @@ import org.bonitasoft.engine.core.document.model.SMappedDocument;
 import org.bonitasoft.engine.core.document.model.archive.SADocumentMapping;
 import org.bonitasoft.engine.core.document.model.archive.SAMappedDocument;
 import org.bonitasoft.engine.core.document.model.archive.impl.SADocumentMappingImpl;
+import org.bonitasoft.engine.core.document.model.impl.SDocumentImpl;
 import org.bonitasoft.engine.core.document.model.impl.SDocumentMappingImpl;
 import org.bonitasoft.engine.core.document.model.impl.SMappedDocumentImpl;
 import org.bonitasoft.engine.core.document.model.recorder.SelectDescriptorBuilder;
 import org.bonitasoft.engine.events.EventService;
+import org.bonitasoft.engine.log.technical.TechnicalLogSeverity;
+import org.bonitasoft.engine.log.technical.TechnicalLoggerService;
 import org.bonitasoft.engine.persistence.FilterOption;
 import org.bonitasoft.engine.persistence.OrderByType;
 import org.bonitasoft.engine.persistence.QueryOptions;
@@ -50,6 +58,10 @@ import org.bonitasoft.engine.recorder.SRecorderException;
 import org.bonitasoft.engine.recorder.model.DeleteRecord;
 import org.bonitasoft.engine.recorder.model.InsertRecord;
 import org.bonitasoft.engine.recorder.model.UpdateRecord;
+import org.bonitasoft.engine.transaction.BonitaTransactionSynchronization;
+import org.bonitasoft.engine.transaction.STransactionNotFoundException;
+import org.bonitasoft.engine.transaction.TransactionState;
+import org.bonitasoft.engine.transaction.UserTransactionService;
 
 /**
  * @author Nicolas Chabanoles
@@ -65,14 +77,29 @@ public class DocumentServiceImpl implements DocumentService {
     private final Recorder recorder;
     private final ReadPersistenceService persistenceService;
     private final ReadPersistenceService definitiveArchiveReadPersistenceService;
-
+    private final DocumentContentStore contentStore;
+    private final boolean contentStoreEnabled;
+    private final UserTransactionService transactionService;
+    private final TechnicalLoggerService logger;
+
+    /**
+     * @param contentStore store of the content of documents written when it was enabled
+     * @param contentStoreEnabled true to write the content of new documents in the contentStore instead of the document table
+     * @param transactionService used to delete the content of purged documents from the contentStore once the purge is committed
+     */
     public DocumentServiceImpl(final Recorder recorder, final ReadPersistenceService persistenceService,
-            final SDocumentDownloadURLProvider urlProvider, final EventService eventService, final ArchiveService archiveService) {
+            final SDocumentDownloadURLProvider urlProvider, final EventService eventService, final ArchiveService archiveService,
+            final DocumentContentStore contentStore, final boolean contentStoreEnabled, final UserTransactionService transactionService,
+            final TechnicalLoggerService logger) {
         this.recorder = recorder;
         this.persistenceService = persistenceService;
         this.urlProvider = urlProvider;
         this.eventService = eventService;
         this.archiveService = archiveService;
+        this.contentStore = contentStore;
+        this.contentStoreEnabled = contentStoreEnabled;
+        this.transactionService = transactionService;
+        this.logger = logger;
         definitiveArchiveReadPersistenceService = archiveService.getDefinitiveArchiveReadPersistenceService();
 
     }
@@ -147,10 +174,35 @@ public class DocumentServiceImpl implements DocumentService {
     }
 
     private SDocument insertDocument(final SDocument document) throws SRecorderException {
+        if (contentStoreEnabled && document.getContent() != null && document.getContentReference() == null) {
+            final SDocumentImpl documentImpl = (SDocumentImpl) document;
+            try {
+                documentImpl.setContentReference(contentStore.write(new ByteArrayInputStream(document.getContent())));
+            } catch (final IOException e) {
+                throw new SRecorderException(e);
+            }
+            documentImpl.setContent(null);
+        }
         recorder.recordInsert(new InsertRecord(document), DOCUMENT);
         return document;
     }
 
+    @Override
+    public void writeDocumentContent(final SDocument document, final InputStream content) throws SObjectCreationException {
+        final SDocumentImpl documentImpl = (SDocumentImpl) document;
+        try {
+            if (contentStoreEnabled) {
+                documentImpl.setContentReference(contentStore.write(content));
+                documentImpl.setContent(null);
+            } else {
+                documentImpl.setContent(IOUtil.getAllContentFrom(content));
+            }
+        } catch (final IOException e) {
+            throw new SObjectCreationException("Unable to write the content of document " + document.getFileName(), e);
+        }
+        documentImpl.setHasContent(true);
+    }
+
     @Override
     public void deleteDocumentsFromProcessInstance(final Long processInstanceId) throws SBonitaReadException, SObjectModificationException {
         List<SMappedDocument> mappedDocuments;
@@ -243,14 +295,46 @@ public class DocumentServiceImpl implements DocumentService {
         try {
             final Long id = Long
                     .valueOf(documentId);
-            return getDocumentWithContent(id).getContent();
+            final SDocument document = getDocumentWithContent(id);
+            if (document.getContentReference() == null) {
+                return document.getContent();
+            }
+            try (InputStream content = readFromContentStore(document)) {
+                return IOUtil.getAllContentFrom(content);
+            }
         } catch (final NumberFormatException e) {
             throw new SObjectNotFoundException("Identifier " + documentId + " is not valid, it must be a long");
         } catch (final SBonitaReadException e) {
             throw new SObjectNotFoundException(e);
+        } catch (final IOException e) {
+            throw new SObjectNotFoundException("Unable to read the content of document " + documentId, e);
         }
     }
 
+    @Override
+    public InputStream getDocumentContentAsStream(final String documentId) throws SObjectNotFoundException {
+        try {
+            final SDocument document = getDocumentWithContent(Long.valueOf(documentId));
+            if (document.getContentReference() == null) {
+                return document.getContent() != null ? new ByteArrayInputStream(document.getContent()) : null;
+            }
+            return readFromContentStore(document);
+        } catch (final NumberFormatException e) {
+            throw new SObjectNotFoundException("Identifier " + documentId + " is not valid, it must be a long");
+        } catch (final SBonitaReadException e) {
+            throw new SObjectNotFoundException(e);
+        } catch (final IOException e) {
+            throw new SObjectNotFoundException("Unable to read the content of document " + documentId, e);
+        }
+    }
+
+    private InputStream readFromContentStore(final SDocument document) throws IOException {
+        if (contentStore == null) {
+            throw new IOException("The content of document " + document.getId() + " is in a content store but no content store is configured");
+        }
+        return contentStore.read(document.getContentReference());
+    }
+
     private SDocument getDocumentWithContent(final Long id) throws SBonitaReadException, SObjectNotFoundException {
         final SDocument document = persistenceService.selectById(new SelectByIdDescriptor<SDocument>(SDocument.class, id));
         if (document == null) {
@@ -440,7 +524,86 @@ public class DocumentServiceImpl implements DocumentService {
     public void deleteContentOfArchivedDocument(final long archivedDocumentId) throws SObjectNotFoundException, SBonitaReadException, SRecorderException {
         final SAMappedDocument archivedDocument = getArchivedDocument(archivedDocumentId);
         final SDocument document = getDocumentWithContent(archivedDocument.getDocumentId());
-        recorder.recordUpdate(UpdateRecord.buildSetFields(document, Collections.singletonMap("content", null)), DOCUMENT);
+        final String contentReference = document.getContentReference();
+        // the same content can be shared with other documents: it is deleted from the content store only when this document is the last one using it
+        final boolean lastReference = contentStoreEnabled && contentReference != null
+                && persistenceService.selectOne(SelectDescriptorBuilder.getNumberOfDocumentsWithContentReference(contentReference)) <= 1;
+        final Map<String, Object> fields = new HashMap<>(2);
+        fields.put("content", null);
+        fields.put("contentReference", null);
+        recorder.recordUpdate(UpdateRecord.buildSetFields(document, fields), DOCUMENT);
+        if (lastReference) {
+            deleteFromContentStoreOnCommit(contentReference);
+        }
+    }
+
+    private void deleteFromContentStoreOnCommit(final String contentReference) {
+        final BonitaTransactionSynchronization deletion = new BonitaTransactionSynchronization() {
+
+            @Override
+            public void beforeCommit() {
+                // the content is still referenced until the transaction is committed
+            }
+
+            @Override
+            public void afterCompletion(final TransactionState txState) {
+                if (txState == TransactionState.COMMITTED) {
+                    deleteFromContentStore(contentReference);
+                }
+            }
+        };
+        try {
+            transactionService.registerBonitaSynchronization(deletion);
+        } catch (final STransactionNotFoundException e) {
+            deleteFromContentStore(contentReference);
+        }
+    }
+
+    private void deleteFromContentStore(final String contentReference) {
+        try {
+            contentStore.delete(contentReference);
+        } catch (final IOException | RuntimeException e) {
+            // the content is not referenced anymore, it only uses space in the store
+            if (logger.isLoggable(getClass(), TechnicalLogSeverity.WARNING)) {
+                logger.log(getClass(), TechnicalLogSeverity.WARNING, "Unable to delete the content " + contentReference
+                        + " of a purged document from the content store: " + e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public List<Long> getIdsOfDocumentsWithContentToMove(final long afterDocumentId, final int maxResults) throws SBonitaReadException {
+        if (contentStoreEnabled) {
+            return persistenceService.selectList(SelectDescriptorBuilder.getIdsOfDocumentsWithContentInTable(afterDocumentId, maxResults));
+        }
+        return persistenceService.selectList(SelectDescriptorBuilder.getIdsOfDocumentsWithContentInStore(afterDocumentId, maxResults));
+    }
+
+    @Override
+    public boolean moveDocumentContent(final long documentId) throws SObjectNotFoundException, SBonitaReadException, SObjectModificationException {
+        final SDocument document = getDocumentWithContent(documentId);
+        final Map<String, Object> fields = new HashMap<>(2);
+        try {
+            if (contentStoreEnabled) {
+                if (document.getContentReference() != null || document.getContent() == null) {
+                    return false;
+                }
+                fields.put("contentReference", contentStore.write(new ByteArrayInputStream(document.getContent())));
+                fields.put("content", null);
+            } else {
+                if (document.getContentReference() == null) {
+                    return false;
+                }
+                try (InputStream content = readFromContentStore(document)) {
+                    fields.put("content", IOUtil.getAllContentFrom(content));
+                }
+                fields.put("contentReference", null);
+            }
+            recorder.recordUpdate(UpdateRecord.buildSetFields(document, fields), DOCUMENT);
+        } catch (final IOException | SRecorderException e) {
+            throw new SObjectModificationException("Unable to move the content of document " + documentId, e);
+        }
+        return true;
     }
 
     @Override
@@ -0,0 +1,199 @@
+/**
+ * Copyright (C) 2018 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.core.document.api.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.regex.Pattern;
+
+import org.bonitasoft.engine.commons.exceptions.SBonitaRuntimeException;
+import org.bonitasoft.engine.core.document.api.DocumentContentStore;
+
+/**
+ * Stores the content of documents in a local folder, one file per distinct content.
+ * <p>
+ * Files are named after the SHA-256 of their content, which is also the reference of the content: the same content attached many times, e.g. the
+ * same file given to every instance of a process, is stored once. Files are written through a temporary file moved into place, so a file having the
+ * name of a content is always complete. Files are never modified, they are read through a memory mapping.
+ * <p>
+ * The folder must be on a persistent disk shared by all the nodes reading the documents of the tenant. It has no default value: the store cannot be
+ * enabled without a folder, and a store without a folder neither reads nor writes any content.
+ */
+public class FileSystemDocumentContentStore implements DocumentContentStore {
+
+    private static final Pattern REFERENCE = Pattern.compile("[0-9a-f]{64}");
+
+    private final Path folder;
+
+    public FileSystemDocumentContentStore(final String folder, final long tenantId, final boolean enabled) {
+        if (isBlank(folder)) {
+            if (enabled) {
+                throw new SBonitaRuntimeException("The folder of the document content store must be set with bonita.tenant.document.contentStore.folder"
+                        + " when the store is enabled, it was '" + folder + "'");
+            }
+            this.folder = null;
+        } else {
+            this.folder = Paths.get(folder, Long.toString(tenantId));
+        }
+    }
+
+    Path getFolder() {
+        return folder;
+    }
+
+    @Override
+    public String write(final InputStream content) throws IOException {
+        checkFolder();
+        Files.createDirectories(folder);
+        final Path temporaryFile = Files.createTempFile(folder, "content", ".tmp");
+        try {
+            final MessageDigest digest = newDigest();
+            Files.copy(new DigestInputStream(content, digest), temporaryFile, StandardCopyOption.REPLACE_EXISTING);
+            final String reference = String.format("%064x", new BigInteger(1, digest.digest()));
+            final Path file = getFile(reference);
+            if (!Files.exists(file)) {
+                Files.createDirectories(file.getParent());
+                moveIntoPlace(temporaryFile, file);
+            }
+            return reference;
+        } finally {
+            Files.deleteIfExists(temporaryFile);
+        }
+    }
+
+    private void moveIntoPlace(final Path temporaryFile, final Path file) throws IOException {
+        try {
+            Files.move(temporaryFile, file, StandardCopyOption.ATOMIC_MOVE);
+        } catch (final AtomicMoveNotSupportedException e) {
+            try {
+                Files.move(temporaryFile, file);
+            } catch (final FileAlreadyExistsException alreadyWritten) {
+                // the same content was written concurrently
+            }
+        } catch (final FileAlreadyExistsException e) {
+            // the same content was written concurrently
+        }
+    }
+
+    @Override
+    public InputStream read(final String reference) throws IOException {
+        checkFolder();
+        final Path file = getFile(reference);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            if (size == 0) {
+                return new ByteArrayInputStream(new byte[0]);
+            }
+            if (size > Integer.MAX_VALUE) {
+                // a mapping is limited to 2GB, the channel is then read directly and closed with the stream
+                return Channels.newInputStream(FileChannel.open(file, StandardOpenOption.READ));
+            }
+            // the mapping stays valid once the channel is closed
+            return new MappedByteBufferInputStream(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+        } catch (final NoSuchFileException e) {
+            throw new FileNotFoundException("No document content with reference " + reference + " in " + folder);
+        }
+    }
+
+    @Override
+    public boolean delete(final String reference) throws IOException {
+        checkFolder();
+        return Files.deleteIfExists(getFile(reference));
+    }
+
+    Path getFile(final String reference) {
+        if (reference == null || !REFERENCE.matcher(reference).matches()) {
+            throw new IllegalArgumentException("Invalid document content reference: " + reference);
+        }
+        return folder.resolve(reference.substring(0, 2)).resolve(reference);
+    }
+
+    private void checkFolder() throws IOException {
+        if (folder == null) {
+            throw new IOException("No folder is set for the document content store, set it with bonita.tenant.document.contentStore.folder");
+        }
+    }
+
+    private static boolean isBlank(final String value) {
+        return value == null || value.trim().isEmpty();
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException e) {
+            // every Java platform must support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static final class MappedByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        MappedByteBufferInputStream(final MappedByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(final byte[] bytes, final int offset, final int length) {
+            if (length == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            final int read = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, read);
+            return read;
+        }
+
+        @Override
+        public long skip(final long n) {
+            final int skipped = (int) Math.max(0, Math.min(n, buffer.remaining()));
+            buffer.position(buffer.position() + skipped);
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+
+    }
+
+}
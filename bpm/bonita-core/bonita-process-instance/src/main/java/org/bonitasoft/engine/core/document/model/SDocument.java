@@ -22,4 +22,10 @@ public interface SDocument extends SLightDocument {
 
     byte[] getContent();
 
+    /**
+     * @return the reference of the content in the {@link org.bonitasoft.engine.core.document.api.DocumentContentStore}, null when the content is
+     *         in the document table
+     */
+    String getContentReference();
+
 }
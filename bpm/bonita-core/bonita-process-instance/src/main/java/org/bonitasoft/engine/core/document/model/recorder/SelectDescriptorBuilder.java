@@ -13,6 +13,7 @@
  **/
 package org.bonitasoft.engine.core.document.model.recorder;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -105,4 +106,19 @@ public class SelectDescriptorBuilder {
         return new SelectListDescriptor<>("getDocumentCreatedBeforeList", parameters, SMappedDocument.class,
                 queryOptions);
     }
+
+    public static SelectListDescriptor<Long> getIdsOfDocumentsWithContentInTable(long afterDocumentId, int maxResults) {
+        return new SelectListDescriptor<>("getIdsOfDocumentsWithContentInTable", Collections.<String, Object> singletonMap("afterId", afterDocumentId),
+                SDocument.class, Long.class, new QueryOptions(0, maxResults));
+    }
+
+    public static SelectListDescriptor<Long> getIdsOfDocumentsWithContentInStore(long afterDocumentId, int maxResults) {
+        return new SelectListDescriptor<>("getIdsOfDocumentsWithContentInStore", Collections.<String, Object> singletonMap("afterId", afterDocumentId),
+                SDocument.class, Long.class, new QueryOptions(0, maxResults));
+    }
+
+    public static SelectOneDescriptor<Long> getNumberOfDocumentsWithContentReference(String contentReference) {
+        return new SelectOneDescriptor<>("getNumberOfDocumentsWithContentReference",
+                Collections.<String, Object> singletonMap("contentReference", contentReference), SDocument.class, Long.class);
+    }
 }
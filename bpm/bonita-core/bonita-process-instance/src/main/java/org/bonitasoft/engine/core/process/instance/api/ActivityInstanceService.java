@@ -67,6 +67,16 @@ public interface ActivityInstanceService extends FlowNodeInstanceService {
      */
     void createActivityInstance(SActivityInstance activityInstance) throws SActivityCreationException;
 
+    /**
+     * Create many activity instances in DB, their insert statements are sent together
+     *
+     * @param activityInstances
+     *        the activity instances to create, e.g. the children of a multi instance activity
+     * @throws SActivityCreationException
+     * @since 7.7.2
+     */
+    void createActivityInstances(List<? extends SActivityInstance> activityInstances) throws SActivityCreationException;
+
     /**
      * Create a new pending activity mapping in DB
      *
@@ -93,6 +103,53 @@ public interface ActivityInstanceService extends FlowNodeInstanceService {
      */
     void deleteAllPendingMappings() throws SActivityModificationException;
 
+    /**
+     * Recompute the pending task inbox of a user after its memberships changed. Does nothing when the pending task inbox is disabled.
+     *
+     * @param userId
+     *        the identifier of the user
+     * @throws SActivityModificationException
+     * @since 7.7.2
+     */
+    void updatePendingTaskInboxOfUser(long userId) throws SActivityModificationException;
+
+    /**
+     * Recompute the pending task inbox of the tasks mapped to an actor after one of its members was removed. Does nothing when the pending task inbox is
+     * disabled.
+     *
+     * @param actorId
+     *        the identifier of the actor
+     * @throws SActivityModificationException
+     * @since 7.7.2
+     */
+    void updatePendingTaskInboxOfActor(long actorId) throws SActivityModificationException;
+
+    /**
+     * Add the users of a new actor member in the pending task inbox of the tasks mapped to its actor. Does nothing when the pending task inbox is
+     * disabled.
+     *
+     * @param actorId
+     *        the identifier of the actor
+     * @param userId
+     *        the user of the actor member, or -1
+     * @param groupId
+     *        the group of the actor member, or -1
+     * @param roleId
+     *        the role of the actor member, or -1
+     * @throws SActivityModificationException
+     * @since 7.7.2
+     */
+    void addActorMemberToPendingTaskInbox(long actorId, long userId, long groupId, long roleId) throws SActivityModificationException;
+
+    /**
+     * Recompute the whole pending task inbox of the tenant from the pending mappings and the organization. Does nothing when the pending task inbox is
+     * disabled.
+     *
+     * @throws SActivityModificationException
+     * @since 7.7.2
+     */
+    void rebuildPendingTaskInbox() throws SActivityModificationException;
+
     /**
      * Get activityInstance by its id
      *
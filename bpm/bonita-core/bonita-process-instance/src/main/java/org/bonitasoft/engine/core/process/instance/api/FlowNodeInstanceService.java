@@ -327,6 +327,20 @@ public interface FlowNodeInstanceService {
      */
     List<Long> getFlowNodeInstanceIdsToRestart(QueryOptions queryOptions) throws SBonitaReadException;
 
+    /**
+     * retrieve, ordered by id, the ids of elements that need to be restarted having an id greater than the given one
+     * The last id of a page is given to retrieve the next one: the cost of a page does not depend on the number of pages already read.
+     *
+     * @param lastId
+     *        the last id of the previous page, -1 to get the first page
+     * @param maxResults
+     *        the maximum number of ids to retrieve
+     * @return the ids of the flow nodes to restart
+     * @throws SBonitaReadException
+     * @since 7.7.2
+     */
+    List<Long> getFlowNodeInstanceIdsToRestart(long lastId, int maxResults) throws SBonitaReadException;
+
     /**
      * get the number of flow node is this root container
      * 
@@ -551,6 +551,22 @@ public interface ProcessInstanceService {
     List<SProcessInstance> getProcessInstancesInStates(final QueryOptions queryOptions, final ProcessInstanceState... states)
             throws SProcessInstanceReadException;
 
+    /**
+     * Returns, ordered by id, the ids of the <code>SProcessInstance</code>s in a given list of states having an id greater than the given one.
+     *
+     * @param lastId
+     *        the last id of the previous page, -1 to get the first page
+     * @param maxResults
+     *        the maximum number of ids to retrieve
+     * @param states
+     *        the list of valid states to retrieve.
+     * @return the ids of the matching <code>SProcessInstance</code>s
+     * @throws SProcessInstanceReadException
+     *         if a read error occurs
+     * @since 7.7.2
+     */
+    List<Long> getProcessInstanceIdsInStates(long lastId, int maxResults, ProcessInstanceState... states) throws SProcessInstanceReadException;
+
     /**
      * @param processInstanceId
      * @throws SBonitaException
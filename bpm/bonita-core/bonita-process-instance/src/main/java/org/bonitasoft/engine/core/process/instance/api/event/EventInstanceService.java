@@ -13,6 +13,7 @@
  **/
 package org.bonitasoft.engine.core.process.instance.api.event;
 
+import java.util.Collection;
 import java.util.List;
 
 import org.bonitasoft.engine.core.process.instance.api.FlowNodeInstanceService;
@@ -120,6 +121,24 @@ public interface EventInstanceService extends FlowNodeInstanceService {
 
     List<SMessageEventCouple> getMessageEventCouples(int fromIndex, int maxResults) throws SEventTriggerInstanceReadException;
 
+    /**
+     * Get message instances that are neither locked nor handled, ordered by id
+     *
+     * @param lastId only message instances having an id greater than this one are returned
+     * @param maxResults the maximum number of message instances to return
+     * @since 7.7.2
+     */
+    List<SMessageInstance> getUnhandledMessageInstances(long lastId, int maxResults) throws SMessageInstanceReadException;
+
+    /**
+     * Get active waiting message events that are neither locked nor in progress, ordered by id
+     *
+     * @param lastId only waiting message events having an id greater than this one are returned
+     * @param maxResults the maximum number of waiting message events to return
+     * @since 7.7.2
+     */
+    List<SWaitingMessageEvent> getFreeWaitingMessageEvents(long lastId, int maxResults) throws SWaitingEventReadException;
+
     SWaitingMessageEvent getWaitingMessage(long waitingMessageId) throws SWaitingEventReadException;
 
     SMessageInstance getMessageInstance(long messageInstanceId) throws SMessageInstanceReadException;
@@ -206,4 +225,33 @@ public interface EventInstanceService extends FlowNodeInstanceService {
     void updateEventTriggerInstance(STimerEventTriggerInstance sTimerEventTriggerInstance, EntityUpdateDescriptor descriptor)
             throws SEventTriggerInstanceModificationException;
 
+    /**
+     * Get the timer event trigger instances having the given job trigger name that are due before the given date, ordered by execution date and id
+     *
+     * @param jobTriggerName the job trigger name of the timer event trigger instances
+     * @param maxExecutionDate only timer event trigger instances having an execution date before this one are returned
+     * @param lastExecutionDate execution date of the last timer event trigger instance of the previous page, {@link Long#MIN_VALUE} for the first page
+     * @param lastId id of the last timer event trigger instance of the previous page: only timer event trigger instances after
+     *        (lastExecutionDate, lastId) are returned
+     * @param maxResults the maximum number of timer event trigger instances to return
+     * @since 7.7.2
+     */
+    List<STimerEventTriggerInstance> getTimerEventTriggerInstancesToExecute(String jobTriggerName, long maxExecutionDate, long lastExecutionDate,
+            long lastId, int maxResults) throws SEventTriggerInstanceReadException;
+
+    /**
+     * Get the timer event trigger instances having the given job trigger name of the given event instances
+     *
+     * @since 7.7.2
+     */
+    List<STimerEventTriggerInstance> getTimerEventTriggerInstances(String jobTriggerName, Collection<Long> eventInstanceIds)
+            throws SEventTriggerInstanceReadException;
+
+    /**
+     * Delete, using a single statement, the timer event trigger instances having the given job trigger name of the given event instances
+     *
+     * @since 7.7.2
+     */
+    void deleteTimerEventTriggerInstances(String jobTriggerName, Collection<Long> eventInstanceIds) throws SEventTriggerInstanceDeletionException;
+
 }
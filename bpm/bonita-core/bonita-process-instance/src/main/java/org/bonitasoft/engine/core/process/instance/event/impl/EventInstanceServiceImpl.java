@@ -13,6 +13,8 @@
  **/
 package org.bonitasoft.engine.core.process.instance.event.impl;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -47,6 +49,7 @@ import org.bonitasoft.engine.core.process.instance.recorder.SelectDescriptorBuil
 import org.bonitasoft.engine.events.EventService;
 import org.bonitasoft.engine.log.technical.TechnicalLogSeverity;
 import org.bonitasoft.engine.log.technical.TechnicalLoggerService;
+import org.bonitasoft.engine.persistence.FilterOption;
 import org.bonitasoft.engine.persistence.OrderByType;
 import org.bonitasoft.engine.persistence.QueryOptions;
 import org.bonitasoft.engine.persistence.SBonitaReadException;
@@ -54,6 +57,7 @@ import org.bonitasoft.engine.persistence.SelectByIdDescriptor;
 import org.bonitasoft.engine.persistence.SelectListDescriptor;
 import org.bonitasoft.engine.recorder.Recorder;
 import org.bonitasoft.engine.recorder.SRecorderException;
+import org.bonitasoft.engine.recorder.model.DeleteAllRecord;
 import org.bonitasoft.engine.recorder.model.DeleteRecord;
 import org.bonitasoft.engine.recorder.model.EntityUpdateDescriptor;
 import org.bonitasoft.engine.recorder.model.InsertRecord;
@@ -264,6 +268,24 @@ public class EventInstanceServiceImpl extends FlowNodeInstancesServiceImpl imple
         }
     }
 
+    @Override
+    public List<SMessageInstance> getUnhandledMessageInstances(final long lastId, final int maxResults) throws SMessageInstanceReadException {
+        try {
+            return getPersistenceService().selectList(SelectDescriptorBuilder.getUnhandledMessageInstances(lastId, maxResults));
+        } catch (final SBonitaReadException e) {
+            throw new SMessageInstanceReadException(e);
+        }
+    }
+
+    @Override
+    public List<SWaitingMessageEvent> getFreeWaitingMessageEvents(final long lastId, final int maxResults) throws SWaitingEventReadException {
+        try {
+            return getPersistenceService().selectList(SelectDescriptorBuilder.getFreeWaitingMessageEvents(lastId, maxResults));
+        } catch (final SBonitaReadException e) {
+            throw new SWaitingEventReadException(e);
+        }
+    }
+
     @Override
     public SMessageInstance getMessageInstance(final long messageInstanceId) throws SMessageInstanceReadException {
         try {
@@ -373,4 +395,46 @@ public class EventInstanceServiceImpl extends FlowNodeInstancesServiceImpl imple
         }
     }
 
+    @Override
+    public List<STimerEventTriggerInstance> getTimerEventTriggerInstancesToExecute(final String jobTriggerName, final long maxExecutionDate,
+            final long lastExecutionDate, final long lastId, final int maxResults) throws SEventTriggerInstanceReadException {
+        try {
+            return getPersistenceService().selectList(
+                    SelectDescriptorBuilder.getTimerEventTriggerInstancesToExecute(jobTriggerName, maxExecutionDate, lastExecutionDate, lastId,
+                            maxResults));
+        } catch (final SBonitaReadException e) {
+            throw new SEventTriggerInstanceReadException(e);
+        }
+    }
+
+    @Override
+    public List<STimerEventTriggerInstance> getTimerEventTriggerInstances(final String jobTriggerName, final Collection<Long> eventInstanceIds)
+            throws SEventTriggerInstanceReadException {
+        if (eventInstanceIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        try {
+            return getPersistenceService().selectList(
+                    SelectDescriptorBuilder.getTimerEventTriggerInstancesOfEventInstances(jobTriggerName, new ArrayList<>(eventInstanceIds)));
+        } catch (final SBonitaReadException e) {
+            throw new SEventTriggerInstanceReadException(e);
+        }
+    }
+
+    @Override
+    public void deleteTimerEventTriggerInstances(final String jobTriggerName, final Collection<Long> eventInstanceIds)
+            throws SEventTriggerInstanceDeletionException {
+        if (eventInstanceIds.isEmpty()) {
+            return;
+        }
+        final List<FilterOption> filters = new ArrayList<>(2);
+        filters.add(new FilterOption(STimerEventTriggerInstance.class, "jobTriggerName", jobTriggerName));
+        filters.add(new FilterOption(STimerEventTriggerInstance.class, "eventInstanceId").in(eventInstanceIds));
+        try {
+            getRecorder().recordDeleteAll(new DeleteAllRecord(STimerEventTriggerInstance.class, filters));
+        } catch (final SRecorderException e) {
+            throw new SEventTriggerInstanceDeletionException(e);
+        }
+    }
+
 }
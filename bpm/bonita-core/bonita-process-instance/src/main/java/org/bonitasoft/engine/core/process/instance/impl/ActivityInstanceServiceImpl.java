@@ -110,6 +110,8 @@ public class ActivityInstanceServiceImpl extends FlowNodeInstancesServiceImpl im
 
     private static final String PENDING_FOR_USER = "PendingForUser";
 
+    private static final String PENDING_FOR_USER_FROM_INBOX = "PendingForUserFromInbox";
+
     private static final String PENDING_OR_ASSIGNED = "PendingOrAssigned";
 
     private static final String PENDING_ASSIGNED_TO = "PendingAssignedTo";
@@ -130,12 +132,22 @@ public class ActivityInstanceServiceImpl extends FlowNodeInstancesServiceImpl im
 
     private final ConnectorInstanceService connectorInstanceService;
 
+    private final PendingTaskInbox pendingTaskInbox;
+
     public ActivityInstanceServiceImpl(final Recorder recorder, final PersistenceService persistenceService, final ArchiveService archiveService,
             final DataInstanceService dataInstanceService, final ConnectorInstanceService connectorInstanceService, final EventService eventService,
             final TechnicalLoggerService logger) {
+        this(recorder, persistenceService, archiveService, dataInstanceService, connectorInstanceService, eventService, logger,
+                new PendingTaskInbox(false, persistenceService));
+    }
+
+    public ActivityInstanceServiceImpl(final Recorder recorder, final PersistenceService persistenceService, final ArchiveService archiveService,
+            final DataInstanceService dataInstanceService, final ConnectorInstanceService connectorInstanceService, final EventService eventService,
+            final TechnicalLoggerService logger, final PendingTaskInbox pendingTaskInbox) {
         super(recorder, persistenceService, eventService, logger, archiveService);
         this.dataInstanceService = dataInstanceService;
         this.connectorInstanceService = connectorInstanceService;
+        this.pendingTaskInbox = pendingTaskInbox;
         sUserTaskInstanceBuilder = BuilderFactory.get(SUserTaskInstanceBuilderFactory.class);
         sMultiInstanceActivityInstanceBuilder = BuilderFactory.get(SMultiInstanceActivityInstanceBuilderFactory.class);
     }
@@ -170,11 +182,28 @@ public class ActivityInstanceServiceImpl extends FlowNodeInstancesServiceImpl im
         }
     }
 
+    @Override
+    public void createActivityInstances(final List<? extends SActivityInstance> activityInstances) throws SActivityCreationException {
+        try {
+            getRecorder().recordInsertInBatch(activityInstances, ACTIVITYINSTANCE);
+        } catch (final SRecorderException e) {
+            throw new SActivityCreationException(e);
+        }
+        if (!activityInstances.isEmpty() && getLogger().isLoggable(getClass(), TechnicalLogSeverity.DEBUG)) {
+            final SActivityInstance first = activityInstances.get(0);
+            getLogger().log(this.getClass(), TechnicalLogSeverity.DEBUG, "Created " + activityInstances.size() + " " + first.getType().getValue()
+                    + " <" + first.getName() + "> with ids from <" + first.getId() + "> to <" + activityInstances.get(activityInstances.size() - 1).getId()
+                    + ">, parent activity instance id = <" + first.getParentActivityInstanceId() + ">, root process instance id = <"
+                    + first.getRootProcessInstanceId() + ">");
+        }
+    }
+
     @Override
     public void addPendingActivityMappings(final SPendingActivityMapping mapping) throws SActivityCreationException {
         try {
             getRecorder().recordInsert(new InsertRecord(mapping), PENDINGACTIVITYMAPPING);
-        } catch (final SRecorderException e) {
+            pendingTaskInbox.addMapping(mapping);
+        } catch (final SBonitaException e) {
             throw new SActivityCreationException(e);
         }
     }
@@ -187,6 +216,7 @@ public class ActivityInstanceServiceImpl extends FlowNodeInstancesServiceImpl im
             while (!(mappings = getPendingMappings(humanTaskInstanceId, queryOptions)).isEmpty()) {
                 deletePendingMappings(mappings);
             }
+            pendingTaskInbox.removeActivity(humanTaskInstanceId);
         } catch (final SBonitaException e) {
             throw new SActivityModificationException(e);
         }
@@ -204,11 +234,50 @@ public class ActivityInstanceServiceImpl extends FlowNodeInstancesServiceImpl im
             final FilterOption filterOption = new FilterOption(SPendingActivityMapping.class, SPendingActivityMappingBuilderFactory.ACTOR_ID, -1);
             final DeleteAllRecord record = new DeleteAllRecord(SPendingActivityMapping.class, Collections.singletonList(filterOption));
             getRecorder().recordDeleteAll(record);
-        } catch (final SRecorderException e) {
+            // users are deleted with the pending mappings: no entry of the inbox is still valid
+            pendingTaskInbox.clear();
+        } catch (final SBonitaException e) {
             throw new SActivityModificationException("Can't delete all pending mappings not attached to an actor.", e);
         }
     }
 
+    @Override
+    public void updatePendingTaskInboxOfUser(final long userId) throws SActivityModificationException {
+        try {
+            pendingTaskInbox.rebuildUser(userId);
+        } catch (final SBonitaException e) {
+            throw new SActivityModificationException("Unable to update the pending task inbox of user " + userId, e);
+        }
+    }
+
+    @Override
+    public void updatePendingTaskInboxOfActor(final long actorId) throws SActivityModificationException {
+        try {
+            pendingTaskInbox.rebuildActor(actorId);
+        } catch (final SBonitaException e) {
+            throw new SActivityModificationException("Unable to update the pending task inbox of the tasks of actor " + actorId, e);
+        }
+    }
+
+    @Override
+    public void addActorMemberToPendingTaskInbox(final long actorId, final long userId, final long groupId, final long roleId)
+            throws SActivityModificationException {
+        try {
+            pendingTaskInbox.addActorMember(actorId, userId, groupId, roleId);
+        } catch (final SBonitaException e) {
+            throw new SActivityModificationException("Unable to update the pending task inbox of the tasks of actor " + actorId, e);
+        }
+    }
+
+    @Override
+    public void rebuildPendingTaskInbox() throws SActivityModificationException {
+        try {
+            pendingTaskInbox.rebuild();
+        } catch (final SBonitaException e) {
+            throw new SActivityModificationException("Unable to rebuild the pending task inbox", e);
+        }
+    }
+
     /**
      * @param humanTaskInstanceId
      * @param queryOptions
@@ -735,13 +804,17 @@ public class ActivityInstanceServiceImpl extends FlowNodeInstancesServiceImpl im
     @Override
     public long getNumberOfPendingTasksForUser(final long userId, final QueryOptions searchOptions) throws SBonitaReadException {
         final Map<String, Object> parameters = Collections.singletonMap("userId", userId);
-        return getPersistenceService().getNumberOfEntities(SHumanTaskInstance.class, PENDING_FOR_USER, searchOptions, parameters);
+        return getPersistenceService().getNumberOfEntities(SHumanTaskInstance.class, getPendingForUserQuerySuffix(), searchOptions, parameters);
     }
 
     @Override
     public List<SHumanTaskInstance> searchPendingTasksForUser(final long userId, final QueryOptions searchOptions) throws SBonitaReadException {
         final Map<String, Object> parameters = Collections.singletonMap("userId", userId);
-        return getPersistenceService().searchEntity(SHumanTaskInstance.class, PENDING_FOR_USER, searchOptions, parameters);
+        return getPersistenceService().searchEntity(SHumanTaskInstance.class, getPendingForUserQuerySuffix(), searchOptions, parameters);
+    }
+
+    private String getPendingForUserQuerySuffix() {
+        return pendingTaskInbox.isEnabled() ? PENDING_FOR_USER_FROM_INBOX : PENDING_FOR_USER;
     }
 
     @Override
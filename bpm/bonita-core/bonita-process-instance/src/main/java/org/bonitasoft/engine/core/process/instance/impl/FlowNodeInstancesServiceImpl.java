@@ -466,6 +466,15 @@ public abstract class FlowNodeInstancesServiceImpl implements FlowNodeInstanceSe
         return getUnmodifiableList(selectList);
     }
 
+    @Override
+    public List<Long> getFlowNodeInstanceIdsToRestart(final long lastId, final int maxResults) throws SBonitaReadException {
+        final Map<String, Object> parameters = Collections.singletonMap("lastId", (Object) lastId);
+        final List<Long> selectList = getPersistenceService().selectList(
+                new SelectListDescriptor<Long>("getFlowNodeInstanceIdsToRestartAfter", parameters, SFlowNodeInstance.class,
+                        new QueryOptions(0, maxResults)));
+        return getUnmodifiableList(selectList);
+    }
+
     @Override
     public int getNumberOfFlowNodes(final long parentProcessInstanceId) throws SBonitaReadException {
         return getPersistenceService().selectOne(SelectDescriptorBuilder.getNumberOfFlowNode(parentProcessInstanceId)).intValue();
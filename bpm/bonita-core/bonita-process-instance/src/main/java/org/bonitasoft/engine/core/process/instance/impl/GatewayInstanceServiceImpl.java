@@ -15,7 +15,6 @@ package org.bonitasoft.engine.core.process.instance.impl;
 
 import java.io.Serializable;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -135,7 +134,6 @@ public class GatewayInstanceServiceImpl implements GatewayInstanceService {
             logger.log(TAG, TechnicalLogSeverity.DEBUG,
                     "Evaluate if gateway " + gatewayInstance.getName() + " of instance " + gatewayInstance.getRootProcessInstanceId() + " of definition "
                             + sDefinition.getName() + " must be activated ");
-        logger.log(TAG, TechnicalLogSeverity.DEBUG, "HitBys = " + gatewayInstance.getHitBys());
         if(gatewayInstance.isFinished()) {
             return false;
         }
@@ -143,14 +141,15 @@ public class GatewayInstanceServiceImpl implements GatewayInstanceService {
         SFlowNodeDefinition gatewayDefinition = processContainer.getFlowNode(gatewayInstance.getFlowNodeDefinitionId());
         long processInstanceId = gatewayInstance.getParentContainerId();
 
-        List<String> hitByTransitionList = getHitByTransitionList(gatewayInstance);
+        GatewayTokens tokens = GatewayTokens.of(gatewayInstance);
+        logger.log(TAG, TechnicalLogSeverity.DEBUG, "Tokens = " + tokens);
         List<STransitionDefinition> incomingTransitions = gatewayDefinition.getIncomingTransitions();
         List<STransitionDefinition> incomingWithTokens = new ArrayList<STransitionDefinition>();
         List<STransitionDefinition> incomingWithoutTokens = new ArrayList<STransitionDefinition>();
 
         for (int i = 0; i < incomingTransitions.size(); i++) {
             STransitionDefinition currentTransition = incomingTransitions.get(i);
-            if (hitByTransitionList.contains(String.valueOf(i + 1))) {
+            if (tokens.hasToken(i + 1)) {
                 incomingWithTokens.add(currentTransition);
             } else {
                 incomingWithoutTokens.add(currentTransition);
@@ -261,22 +260,8 @@ public class GatewayInstanceServiceImpl implements GatewayInstanceService {
     }
 
     boolean isParallelGatewayActivated(final SProcessDefinition sDefinition, final SGatewayInstance gatewayInstance) {
-        final List<String> hitsBy = getHitByTransitionList(gatewayInstance);
         final List<STransitionDefinition> trans = getTransitionDefinitions(gatewayInstance, sDefinition);
-        boolean go = true;
-        int i = 1;
-        while (go && i <= trans.size()) {
-            go = hitsBy.contains(String.valueOf(i));
-            i++;
-        }
-        return go;
-    }
-
-    /**
-     * @return the list of transition indexes that hit the gateway
-     */
-    private List<String> getHitByTransitionList(final SGatewayInstance gatewayInstance) {
-        return Arrays.asList(gatewayInstance.getHitBys().split(","));
+        return GatewayTokens.of(gatewayInstance).hasTokenOnEachTransition(trans.size());
     }
 
     protected List<STransitionDefinition> getTransitionDefinitions(final SGatewayInstance gatewayInstance, final SProcessDefinition processDefinition) {
@@ -294,21 +279,27 @@ public class GatewayInstanceServiceImpl implements GatewayInstanceService {
     public void hitTransition(final SGatewayInstance gatewayInstance, final long transitionIndex) throws SGatewayModificationException {
         logger.log(TAG, TechnicalLogSeverity.DEBUG, "Hit gateway " + gatewayInstance.getName() +" ("+gatewayInstance.getId()+")" + " of instance " + gatewayInstance.getRootProcessInstanceId()
                 + " with transition index " + transitionIndex);
-        final String hitBys = gatewayInstance.getHitBys();
-        String columnValue;
-        if (hitBys == null || hitBys.isEmpty()) {
-            columnValue = String.valueOf(transitionIndex);
-        } else {
-            columnValue = hitBys + "," + transitionIndex;
+        final GatewayTokens tokens = GatewayTokens.of(gatewayInstance);
+        tokens.hit((int) transitionIndex);
+        final EntityUpdateDescriptor entityUpdateDescriptor = new EntityUpdateDescriptor();
+        entityUpdateDescriptor.addField(sGatewayInstanceBuilderFactory.getTokensKey(), tokens.encode());
+        if (gatewayInstance.getTokens() == null && gatewayInstance.getHitBys() != null && !gatewayInstance.getHitBys().isEmpty()) {
+            // tokens of the legacy hitBys column are now serialized with the new ones
+            entityUpdateDescriptor.addField(sGatewayInstanceBuilderFactory.getHitBysKey(), "");
         }
-        updateOneColumnAndMetaData(gatewayInstance, sGatewayInstanceBuilderFactory.getHitBysKey(), columnValue, GATEWAYINSTANCE_HITBYS);
+        updateColumnsAndMetaData(gatewayInstance, entityUpdateDescriptor, GATEWAYINSTANCE_HITBYS);
     }
 
     private void updateOneColumnAndMetaData(final SGatewayInstance gatewayInstance, final String columnName, final Serializable columnValue, final String event)
             throws SGatewayModificationException {
-        final long now = System.currentTimeMillis();
         final EntityUpdateDescriptor entityUpdateDescriptor = new EntityUpdateDescriptor();
         entityUpdateDescriptor.addField(columnName, columnValue);
+        updateColumnsAndMetaData(gatewayInstance, entityUpdateDescriptor, event);
+    }
+
+    private void updateColumnsAndMetaData(final SGatewayInstance gatewayInstance, final EntityUpdateDescriptor entityUpdateDescriptor, final String event)
+            throws SGatewayModificationException {
+        final long now = System.currentTimeMillis();
         entityUpdateDescriptor.addField("lastUpdateDate", now);
         entityUpdateDescriptor.addField("reachedStateDate", now);
         try {
@@ -336,10 +327,9 @@ public class GatewayInstanceServiceImpl implements GatewayInstanceService {
      */
     @Override
     public List<SGatewayInstance> setFinishAndCreateNewGatewayForRemainingToken(SProcessDefinition processDefinition, final SGatewayInstance gatewayInstance) throws SBonitaException {
-        List<String> hitBys = getHitByTransitionList(gatewayInstance);
-        List<String> merged = getMergedTokens(gatewayInstance, hitBys);
-        setFinished(gatewayInstance, merged.size());
-        List<String> remaining = getRemainingTokens(hitBys, merged);
+        GatewayTokens remaining = GatewayTokens.of(gatewayInstance);
+        int merged = mergeTokens(gatewayInstance, remaining);
+        setFinished(gatewayInstance, merged);
         logger.log(TAG, TechnicalLogSeverity.DEBUG, "There is "+remaining+" remaining token to merge on gateway "+gatewayInstance.getName()+" will create a new if there is");
         if(remaining.isEmpty()){
             return Collections.emptyList();
@@ -354,38 +344,21 @@ public class GatewayInstanceServiceImpl implements GatewayInstanceService {
         return toFire;
     }
 
-    List<String> getMergedTokens(SGatewayInstance gatewayInstance, List<String> hitBys) {
-        List<String> merged = null;
+    /**
+     * remove from the tokens the ones that are merged by the gateway
+     *
+     * @return the number of merged tokens
+     */
+    int mergeTokens(SGatewayInstance gatewayInstance, GatewayTokens tokens) {
         switch (gatewayInstance.getGatewayType()){
             case PARALLEL:
-                merged = unique(hitBys);
-                break;
             case INCLUSIVE:
-                merged = unique(hitBys);
-                break;
+                return tokens.consumeOnePerTransition();
             case EXCLUSIVE:
-                merged = Collections.singletonList(hitBys.get(0));
-                break;
-        }
-        return merged;
-    }
-
-    private ArrayList<String> unique(List<String> hitBys) {
-        ArrayList<String> merged = new ArrayList<String>();
-        for (String hitBy : hitBys) {
-            if(!merged.contains(hitBy)){
-                merged.add(hitBy);
-            }
-        }
-        return merged;
-    }
-
-    ArrayList<String> getRemainingTokens(List<String> hitBys, List<String> merged) {
-        ArrayList<String> remaining = new ArrayList<String>(hitBys);
-        for (String mergedToken : merged) {
-            remaining.remove(mergedToken);
+                return tokens.consumeFirst();
+            default:
+                return 0;
         }
-        return remaining;
     }
 
     /**
@@ -398,13 +371,9 @@ public class GatewayInstanceServiceImpl implements GatewayInstanceService {
      * @return
      *         the new gateway
      */
-    private SGatewayInstance createGatewayWithRemainingTokens(SGatewayInstance gatewayInstance, List<String> remaining) throws SGatewayCreationException {
+    private SGatewayInstance createGatewayWithRemainingTokens(SGatewayInstance gatewayInstance, GatewayTokens remaining) throws SGatewayCreationException {
         SGatewayInstanceImpl sGatewayInstance = new SGatewayInstanceImpl(gatewayInstance);
-        String remainingTokenAsString = "";
-        for (String token : remaining) {
-            remainingTokenAsString += token + ",";
-        }
-        sGatewayInstance.setHitBys(remainingTokenAsString.substring(0, remainingTokenAsString.length() - 1));
+        sGatewayInstance.setTokens(remaining.encode());
         createGatewayInstance(sGatewayInstance);
         return sGatewayInstance;
     }
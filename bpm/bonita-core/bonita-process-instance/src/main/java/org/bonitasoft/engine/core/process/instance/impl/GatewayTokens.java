@@ -0,0 +1,237 @@
+/**
+ * Copyright (C) 2018 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.core.process.instance.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+import org.bonitasoft.engine.core.process.instance.model.SGatewayInstance;
+
+/**
+ * Tokens that are waiting on a gateway, stored as one counter per incoming transition.
+ * <p>
+ * Transition indexes are 1-based, like the ones given by {@link org.bonitasoft.engine.core.process.definition.model.SFlowNodeDefinition#getTransitionIndex(Long)}.
+ * The counters are serialized as a sequence of unsigned varints: the number of counters followed by each counter. A join of 500 branches with one token
+ * on each takes about 500 bytes, and checking that every incoming transition has a token is a single pass over the counters.
+ * <p>
+ * Gateways created before this format existed have their tokens in the comma separated {@link SGatewayInstance#getHitBys()} column, they are read from it
+ * when no tokens were serialized yet.
+ */
+public final class GatewayTokens {
+
+    private int[] counters;
+
+    private int size;
+
+    private GatewayTokens(final int[] counters, final int size) {
+        this.counters = counters;
+        this.size = size;
+    }
+
+    public static GatewayTokens empty() {
+        return new GatewayTokens(new int[4], 0);
+    }
+
+    /**
+     * @return the tokens of the gateway, read from its serialized tokens or from its legacy hitBys. A finished gateway has no tokens left.
+     */
+    public static GatewayTokens of(final SGatewayInstance gatewayInstance) {
+        if (gatewayInstance.isFinished()) {
+            return empty();
+        }
+        final byte[] tokens = gatewayInstance.getTokens();
+        if (tokens != null) {
+            return decode(tokens);
+        }
+        return fromHitBys(gatewayInstance.getHitBys());
+    }
+
+    /**
+     * @param hitBys
+     *        comma separated list of transition indexes, e.g. <code>1,2,3,2</code>
+     */
+    public static GatewayTokens fromHitBys(final String hitBys) {
+        final GatewayTokens gatewayTokens = empty();
+        if (hitBys == null || hitBys.isEmpty()) {
+            return gatewayTokens;
+        }
+        int value = 0;
+        boolean hasValue = false;
+        for (int i = 0; i < hitBys.length(); i++) {
+            final char c = hitBys.charAt(i);
+            if (c == ',') {
+                if (hasValue) {
+                    gatewayTokens.hit(value);
+                }
+                value = 0;
+                hasValue = false;
+            } else if (c >= '0' && c <= '9') {
+                value = value * 10 + (c - '0');
+                hasValue = true;
+            } else {
+                throw new IllegalArgumentException("Invalid transition index in hitBys: " + hitBys);
+            }
+        }
+        if (hasValue) {
+            gatewayTokens.hit(value);
+        }
+        return gatewayTokens;
+    }
+
+    public static GatewayTokens decode(final byte[] bytes) {
+        if (bytes.length == 0) {
+            return empty();
+        }
+        final int[] position = new int[1];
+        final int size = readVarInt(bytes, position);
+        final int[] counters = new int[Math.max(size, 4)];
+        for (int i = 0; i < size; i++) {
+            counters[i] = readVarInt(bytes, position);
+        }
+        return new GatewayTokens(counters, size);
+    }
+
+    public byte[] encode() {
+        int last = size;
+        while (last > 0 && counters[last - 1] == 0) {
+            last--;
+        }
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream(last + 1);
+        writeVarInt(outputStream, last);
+        for (int i = 0; i < last; i++) {
+            writeVarInt(outputStream, counters[i]);
+        }
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * add a token coming from the given transition
+     */
+    public void hit(final int transitionIndex) {
+        if (transitionIndex < 1) {
+            throw new IllegalArgumentException("Transition index must be greater than 0 but was " + transitionIndex);
+        }
+        if (transitionIndex > counters.length) {
+            counters = Arrays.copyOf(counters, Math.max(transitionIndex, counters.length * 2));
+        }
+        counters[transitionIndex - 1]++;
+        size = Math.max(size, transitionIndex);
+    }
+
+    public int getCount(final int transitionIndex) {
+        if (transitionIndex < 1 || transitionIndex > size) {
+            return 0;
+        }
+        return counters[transitionIndex - 1];
+    }
+
+    public boolean hasToken(final int transitionIndex) {
+        return getCount(transitionIndex) > 0;
+    }
+
+    /**
+     * @return true if each of the transitions from 1 to numberOfTransitions has at least one token
+     */
+    public boolean hasTokenOnEachTransition(final int numberOfTransitions) {
+        if (numberOfTransitions > size) {
+            return false;
+        }
+        for (int i = 0; i < numberOfTransitions; i++) {
+            if (counters[i] == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public boolean isEmpty() {
+        for (int i = 0; i < size; i++) {
+            if (counters[i] > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * remove one token from each transition having at least one
+     *
+     * @return the number of tokens removed
+     */
+    public int consumeOnePerTransition() {
+        int consumed = 0;
+        for (int i = 0; i < size; i++) {
+            if (counters[i] > 0) {
+                counters[i]--;
+                consumed++;
+            }
+        }
+        return consumed;
+    }
+
+    /**
+     * remove the token of the transition having the lowest index
+     *
+     * @return the number of tokens removed
+     */
+    public int consumeFirst() {
+        for (int i = 0; i < size; i++) {
+            if (counters[i] > 0) {
+                counters[i]--;
+                return 1;
+            }
+        }
+        return 0;
+    }
+
+    private static void writeVarInt(final ByteArrayOutputStream outputStream, int value) {
+        while ((value & ~0x7F) != 0) {
+            outputStream.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        outputStream.write(value);
+    }
+
+    private static int readVarInt(final byte[] bytes, final int[] position) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            if (position[0] >= bytes.length || shift > 28) {
+                throw new IllegalArgumentException("Invalid serialized gateway tokens");
+            }
+            b = bytes[position[0]++];
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder stringBuilder = new StringBuilder("GatewayTokens{");
+        boolean first = true;
+        for (int i = 0; i < size; i++) {
+            if (counters[i] > 0) {
+                if (!first) {
+                    stringBuilder.append(", ");
+                }
+                stringBuilder.append(i + 1).append('=').append(counters[i]);
+                first = false;
+            }
+        }
+        return stringBuilder.append('}').toString();
+    }
+
+}
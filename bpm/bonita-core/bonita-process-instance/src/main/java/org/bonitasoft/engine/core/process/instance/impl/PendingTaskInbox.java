@@ -0,0 +1,280 @@
+/**
+ * Copyright (C) 2018 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.core.process.instance.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.bonitasoft.engine.core.process.instance.model.SPendingActivityMapping;
+import org.bonitasoft.engine.core.process.instance.model.SPendingTaskInboxEntry;
+import org.bonitasoft.engine.core.process.instance.model.impl.SPendingTaskInboxEntryImpl;
+import org.bonitasoft.engine.persistence.FilterOption;
+import org.bonitasoft.engine.persistence.OrderByType;
+import org.bonitasoft.engine.persistence.QueryOptions;
+import org.bonitasoft.engine.persistence.SBonitaReadException;
+import org.bonitasoft.engine.persistence.SelectListDescriptor;
+import org.bonitasoft.engine.services.PersistenceService;
+import org.bonitasoft.engine.services.SPersistenceException;
+
+/**
+ * Materialized inbox of the pending human tasks of users.
+ * <p>
+ * Finding the pending tasks of a user from the {@link SPendingActivityMapping}s requires resolving, for every task, the actors, actor members and
+ * memberships of the user. When enabled, this inbox stores one {@link SPendingTaskInboxEntry} for each task and each user that can perform it so that
+ * pending tasks of a user are read using a single index lookup.
+ * <p>
+ * Entries are added when a pending mapping is created, removed with the pending mappings of a task and recomputed when memberships of a user or members of an
+ * actor change. They do not depend on the state nor on the assignee of the task: these are checked when reading the inbox, so that executing, assigning or
+ * completing a task does not update it. {@link #rebuild()} recomputes the whole inbox in case it gets out of sync, e.g. after bulk modifications of the
+ * organization.
+ * <p>
+ * Concurrent transactions can add the same user to the inbox of the same task, e.g. when a membership of the user is created while a task of its actor
+ * is created. Entries are therefore not unique: the inbox is only read to check whether a user has an entry for a task, and all entries of a user or of
+ * a task are removed together.
+ */
+public class PendingTaskInbox {
+
+    private static final int BATCH_SIZE = 1000;
+
+    private final boolean enabled;
+
+    private final PersistenceService persistenceService;
+
+    public PendingTaskInbox(final boolean enabled, final PersistenceService persistenceService) {
+        this.enabled = enabled;
+        this.persistenceService = persistenceService;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * add the users of the given mapping in the inbox of its task
+     */
+    public void addMapping(final SPendingActivityMapping mapping) throws SBonitaReadException, SPersistenceException {
+        if (!enabled) {
+            return;
+        }
+        addUsers(mapping.getActivityId(), getUserIds(mapping), getUserIdsOfActivity(mapping.getActivityId()));
+    }
+
+    /**
+     * remove the task from all inboxes, called when the pending mappings of the task are deleted
+     */
+    public void removeActivity(final long activityId) throws SPersistenceException {
+        if (!enabled) {
+            return;
+        }
+        delete(new FilterOption(SPendingTaskInboxEntry.class, "activityId", activityId));
+    }
+
+    /**
+     * remove all entries of the inbox, called when all pending mappings are deleted with the organization
+     */
+    public void clear() throws SPersistenceException {
+        if (!enabled) {
+            return;
+        }
+        persistenceService.deleteByTenant(SPendingTaskInboxEntry.class, Collections.<FilterOption> emptyList());
+    }
+
+    /**
+     * recompute the inbox of the user, called when memberships of the user change
+     */
+    public void rebuildUser(final long userId) throws SBonitaReadException, SPersistenceException {
+        if (!enabled) {
+            return;
+        }
+        delete(new FilterOption(SPendingTaskInboxEntry.class, "userId", userId));
+        final Map<String, Object> parameters = Collections.<String, Object> singletonMap("userId", userId);
+        int startIndex = 0;
+        List<Long> activityIds;
+        do {
+            activityIds = selectIds("getActivityIdsOfPendingMappingsForUser", parameters, startIndex);
+            final List<SPendingTaskInboxEntry> entries = new ArrayList<>(activityIds.size());
+            for (final Long activityId : activityIds) {
+                entries.add(new SPendingTaskInboxEntryImpl(userId, activityId));
+            }
+            persistenceService.insertInBatch(entries);
+            startIndex += BATCH_SIZE;
+        } while (activityIds.size() == BATCH_SIZE);
+    }
+
+    /**
+     * recompute the inboxes of all tasks mapped to the actor, called when a member is removed from the actor
+     */
+    public void rebuildActor(final long actorId) throws SBonitaReadException, SPersistenceException {
+        if (!enabled) {
+            return;
+        }
+        final Map<String, Object> parameters = Collections.<String, Object> singletonMap("actorId", actorId);
+        int startIndex = 0;
+        List<Long> activityIds;
+        do {
+            activityIds = selectIds("getActivityIdsOfPendingMappingsOfActor", parameters, startIndex);
+            for (final Long activityId : activityIds) {
+                delete(new FilterOption(SPendingTaskInboxEntry.class, "activityId", activityId));
+                rebuildActivity(activityId);
+            }
+            startIndex += BATCH_SIZE;
+        } while (activityIds.size() == BATCH_SIZE);
+    }
+
+    /**
+     * add the users of a new member of the actor in the inboxes of the tasks mapped to the actor
+     *
+     * @param userId
+     *        the user of the actor member or -1
+     * @param groupId
+     *        the group of the actor member or -1
+     * @param roleId
+     *        the role of the actor member or -1
+     */
+    public void addActorMember(final long actorId, final long userId, final long groupId, final long roleId) throws SBonitaReadException,
+            SPersistenceException {
+        if (!enabled) {
+            return;
+        }
+        final Set<Long> userIds = getUserIdsOfActorMember(userId, groupId, roleId);
+        if (userIds.isEmpty()) {
+            return;
+        }
+        final Map<String, Object> parameters = Collections.<String, Object> singletonMap("actorId", actorId);
+        int startIndex = 0;
+        List<Long> activityIds;
+        do {
+            activityIds = selectIds("getActivityIdsOfPendingMappingsOfActor", parameters, startIndex);
+            for (final Long activityId : activityIds) {
+                addUsers(activityId, userIds, getUserIdsOfActivity(activityId));
+            }
+            startIndex += BATCH_SIZE;
+        } while (activityIds.size() == BATCH_SIZE);
+    }
+
+    /**
+     * recompute the whole inbox from the pending mappings and the organization
+     */
+    public void rebuild() throws SBonitaReadException, SPersistenceException {
+        if (!enabled) {
+            return;
+        }
+        clear();
+        int startIndex = 0;
+        List<Long> activityIds;
+        do {
+            activityIds = selectIds("getActivityIdsOfPendingMappings", Collections.<String, Object> emptyMap(), startIndex);
+            for (final Long activityId : activityIds) {
+                rebuildActivity(activityId);
+            }
+            startIndex += BATCH_SIZE;
+        } while (activityIds.size() == BATCH_SIZE);
+    }
+
+    private void rebuildActivity(final long activityId) throws SBonitaReadException, SPersistenceException {
+        final Set<Long> userIds = new HashSet<>();
+        for (final SPendingActivityMapping mapping : getMappings(activityId)) {
+            addUsers(activityId, getUserIds(mapping), userIds);
+        }
+    }
+
+    private void addUsers(final long activityId, final Collection<Long> userIds, final Set<Long> usersAlreadyInInbox) throws SPersistenceException {
+        final List<SPendingTaskInboxEntry> entries = new ArrayList<>();
+        for (final Long userId : userIds) {
+            if (usersAlreadyInInbox.add(userId)) {
+                entries.add(new SPendingTaskInboxEntryImpl(userId, activityId));
+            }
+        }
+        persistenceService.insertInBatch(entries);
+    }
+
+    private Set<Long> getUserIds(final SPendingActivityMapping mapping) throws SBonitaReadException {
+        if (mapping.getUserId() > 0) {
+            return Collections.singleton(mapping.getUserId());
+        }
+        final Map<String, Object> parameters = Collections.<String, Object> singletonMap("actorId", mapping.getActorId());
+        final Set<Long> userIds = selectAllIds("getUserIdsOfActorFromActorMembers", parameters);
+        userIds.addAll(selectAllIds("getUserIdsOfActorFromMemberships", parameters));
+        return userIds;
+    }
+
+    private Set<Long> getUserIdsOfActorMember(final long userId, final long groupId, final long roleId) throws SBonitaReadException {
+        if (userId > 0) {
+            return Collections.singleton(userId);
+        }
+        final Map<String, Object> parameters = new HashMap<>(2);
+        if (groupId > 0) {
+            parameters.put("groupId", groupId);
+        }
+        if (roleId > 0) {
+            parameters.put("roleId", roleId);
+        }
+        if (groupId > 0 && roleId > 0) {
+            return selectAllIds("getUserIdsOfUserMembershipsOfGroupAndRole", parameters);
+        }
+        if (groupId > 0) {
+            return selectAllIds("getUserIdsOfUserMembershipsOfGroup", parameters);
+        }
+        if (roleId > 0) {
+            return selectAllIds("getUserIdsOfUserMembershipsOfRole", parameters);
+        }
+        return Collections.emptySet();
+    }
+
+    private Set<Long> getUserIdsOfActivity(final long activityId) throws SBonitaReadException {
+        return selectAllIds("getUserIdsOfPendingTaskInboxEntriesOfActivity", Collections.<String, Object> singletonMap("activityId", activityId));
+    }
+
+    private List<SPendingActivityMapping> getMappings(final long activityId) throws SBonitaReadException {
+        final Map<String, Object> parameters = Collections.<String, Object> singletonMap("activityId", activityId);
+        final List<SPendingActivityMapping> mappings = new ArrayList<>();
+        int startIndex = 0;
+        List<SPendingActivityMapping> page;
+        do {
+            page = persistenceService.selectList(new SelectListDescriptor<SPendingActivityMapping>("getPendingMappingsOfTask", parameters,
+                    SPendingActivityMapping.class, new QueryOptions(startIndex, BATCH_SIZE, SPendingActivityMapping.class, "id", OrderByType.ASC)));
+            mappings.addAll(page);
+            startIndex += BATCH_SIZE;
+        } while (page.size() == BATCH_SIZE);
+        return mappings;
+    }
+
+    private void delete(final FilterOption filter) throws SPersistenceException {
+        persistenceService.deleteByTenant(SPendingTaskInboxEntry.class, Collections.singletonList(filter));
+    }
+
+    private Set<Long> selectAllIds(final String queryName, final Map<String, Object> parameters) throws SBonitaReadException {
+        final Set<Long> ids = new HashSet<>();
+        int startIndex = 0;
+        List<Long> page;
+        do {
+            page = selectIds(queryName, parameters, startIndex);
+            ids.addAll(page);
+            startIndex += BATCH_SIZE;
+        } while (page.size() == BATCH_SIZE);
+        return ids;
+    }
+
+    private List<Long> selectIds(final String queryName, final Map<String, Object> parameters, final int startIndex) throws SBonitaReadException {
+        return persistenceService.selectList(new SelectListDescriptor<Long>(queryName, parameters, SPendingTaskInboxEntry.class, Long.class,
+                new QueryOptions(startIndex, BATCH_SIZE)));
+    }
+
+}
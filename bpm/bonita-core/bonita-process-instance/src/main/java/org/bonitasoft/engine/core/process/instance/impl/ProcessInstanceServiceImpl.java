@@ -842,6 +842,21 @@ public class ProcessInstanceServiceImpl implements ProcessInstanceService {
         }
     }
 
+    @Override
+    public List<Long> getProcessInstanceIdsInStates(final long lastId, final int maxResults, final ProcessInstanceState... states)
+            throws SProcessInstanceReadException {
+        final Map<String, Object> inputParameters = new HashMap<>(2);
+        inputParameters.put("lastId", lastId);
+        inputParameters.put("stateIds", getStateIdsFromStates(states));
+        final SelectListDescriptor<Long> selectProcessInstanceIdsInStates = new SelectListDescriptor<>("getProcessInstanceIdsInStatesAfter",
+                inputParameters, SProcessInstance.class, new QueryOptions(0, maxResults));
+        try {
+            return persistenceRead.selectList(selectProcessInstanceIdsInStates);
+        } catch (final SBonitaReadException e) {
+            throw new SProcessInstanceReadException(e);
+        }
+    }
+
     protected Set<Integer> getStateIdsFromStates(final ProcessInstanceState... states) {
         if (states.length < 1) {
             throw new IllegalArgumentException("ProcessInstanceServiceImpl.getProcessInstancesInStates() must have at least one state as parameter");
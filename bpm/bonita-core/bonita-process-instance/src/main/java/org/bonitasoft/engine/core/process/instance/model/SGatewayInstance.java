@@ -24,6 +24,12 @@ public interface SGatewayInstance extends SFlowNodeInstance {
 
     String getHitBys();
 
+    /**
+     * @return the tokens waiting on this gateway serialized by {@link org.bonitasoft.engine.core.process.instance.impl.GatewayTokens}, or null if they are
+     *         still in {@link #getHitBys()}
+     */
+    byte[] getTokens();
+
     boolean isFinished();
 
 }
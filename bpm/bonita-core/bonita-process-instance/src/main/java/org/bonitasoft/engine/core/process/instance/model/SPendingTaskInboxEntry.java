@@ -0,0 +1,36 @@
+/**
+ * Copyright (C) 2018 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.core.process.instance.model;
+
+import org.bonitasoft.engine.persistence.PersistentObject;
+
+/**
+ * Entry of the inbox of pending tasks of a user: the human task {@link #getActivityId()} can be performed by the user {@link #getUserId()}.
+ * <p>
+ * Entries are computed from the {@link SPendingActivityMapping} of the task and from the organization when the pending task inbox is enabled. They do not
+ * depend on the state nor on the assignee of the task, these are checked when the inbox is read.
+ */
+public interface SPendingTaskInboxEntry extends PersistentObject {
+
+    /**
+     * the id of the user that can perform the task
+     */
+    long getUserId();
+
+    /**
+     * the id of the human task
+     */
+    long getActivityId();
+
+}
@@ -29,4 +29,6 @@ public interface SGatewayInstanceBuilderFactory extends SFlowNodeInstanceBuilder
 
     String getHitBysKey();
 
+    String getTokensKey();
+
 }
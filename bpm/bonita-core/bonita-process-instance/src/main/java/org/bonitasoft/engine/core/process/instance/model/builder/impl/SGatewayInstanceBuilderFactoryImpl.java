@@ -34,6 +34,8 @@ public class SGatewayInstanceBuilderFactoryImpl extends SFlowNodeInstanceBuilder
 
     private static final String HITBYS = "hitBys";
 
+    private static final String TOKENS = "tokens";
+
     @Override
     public SGatewayInstanceBuilder createNewInstance(final String name, final long flowNodeDefinitionId, final long rootContainerId,
             final long parentContainerId, final SGatewayType gatewayType, final long processDefinitionId, final long rootProcessInstanceId,
@@ -69,4 +71,9 @@ public class SGatewayInstanceBuilderFactoryImpl extends SFlowNodeInstanceBuilder
         return HITBYS;
     }
 
+    @Override
+    public String getTokensKey() {
+        return TOKENS;
+    }
+
 }
@@ -13,6 +13,8 @@
  **/
 package org.bonitasoft.engine.core.process.instance.model.impl;
 
+import java.util.Arrays;
+
 import org.bonitasoft.engine.core.process.definition.model.SFlowNodeType;
 import org.bonitasoft.engine.core.process.definition.model.SGatewayType;
 import org.bonitasoft.engine.core.process.instance.api.GatewayInstanceService;
@@ -30,6 +32,8 @@ public class SGatewayInstanceImpl extends SFlowNodeInstanceImpl implements SGate
 
     private String hitBys = "";
 
+    private byte[] tokens;
+
     public SGatewayInstanceImpl() {
         super();
     }
@@ -60,6 +64,11 @@ public class SGatewayInstanceImpl extends SFlowNodeInstanceImpl implements SGate
         return hitBys;
     }
 
+    @Override
+    public byte[] getTokens() {
+        return tokens;
+    }
+
     @Override
     public boolean isFinished() {
         return hitBys != null && hitBys.startsWith(GatewayInstanceService.FINISH);
@@ -73,6 +82,10 @@ public class SGatewayInstanceImpl extends SFlowNodeInstanceImpl implements SGate
         this.hitBys = hitBys;
     }
 
+    public void setTokens(final byte[] tokens) {
+        this.tokens = tokens;
+    }
+
     @Override
     public SFlowNodeType getType() {
         return SFlowNodeType.GATEWAY;
@@ -91,6 +104,7 @@ public class SGatewayInstanceImpl extends SFlowNodeInstanceImpl implements SGate
         int result = super.hashCode();
         result = prime * result + (gatewayType == null ? 0 : gatewayType.hashCode());
         result = prime * result + (hitBys == null ? 0 : hitBys.hashCode());
+        result = prime * result + Arrays.hashCode(tokens);
         return result;
     }
 
@@ -116,6 +130,9 @@ public class SGatewayInstanceImpl extends SFlowNodeInstanceImpl implements SGate
         } else if (!hitBys.equals(other.hitBys)) {
             return false;
         }
+        if (!Arrays.equals(tokens, other.tokens)) {
+            return false;
+        }
         return true;
     }
 
@@ -0,0 +1,57 @@
+/**
+ * Copyright (C) 2018 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.core.process.instance.model.impl;
+
+import org.bonitasoft.engine.core.process.instance.model.SPendingTaskInboxEntry;
+
+public class SPendingTaskInboxEntryImpl extends SPersistenceObjectImpl implements SPendingTaskInboxEntry {
+
+    private static final long serialVersionUID = 2851377014926482047L;
+
+    private long userId;
+
+    private long activityId;
+
+    public SPendingTaskInboxEntryImpl() {
+    }
+
+    public SPendingTaskInboxEntryImpl(final long userId, final long activityId) {
+        this.userId = userId;
+        this.activityId = activityId;
+    }
+
+    @Override
+    public long getUserId() {
+        return userId;
+    }
+
+    @Override
+    public long getActivityId() {
+        return activityId;
+    }
+
+    @Override
+    public String getDiscriminator() {
+        return SPendingTaskInboxEntryImpl.class.getName();
+    }
+
+    public void setUserId(final long userId) {
+        this.userId = userId;
+    }
+
+    public void setActivityId(final long activityId) {
+        this.activityId = activityId;
+    }
+
+}
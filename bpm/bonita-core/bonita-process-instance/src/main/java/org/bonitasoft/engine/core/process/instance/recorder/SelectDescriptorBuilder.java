@@ -32,8 +32,10 @@ import org.bonitasoft.engine.core.process.instance.model.archive.SAProcessInstan
 import org.bonitasoft.engine.core.process.instance.model.event.SBoundaryEventInstance;
 import org.bonitasoft.engine.core.process.instance.model.event.SEventInstance;
 import org.bonitasoft.engine.core.process.instance.model.event.handling.SMessageEventCouple;
+import org.bonitasoft.engine.core.process.instance.model.event.handling.SMessageInstance;
 import org.bonitasoft.engine.core.process.instance.model.event.handling.SWaitingErrorEvent;
 import org.bonitasoft.engine.core.process.instance.model.event.handling.SWaitingEvent;
+import org.bonitasoft.engine.core.process.instance.model.event.handling.SWaitingMessageEvent;
 import org.bonitasoft.engine.core.process.instance.model.event.handling.SWaitingSignalEvent;
 import org.bonitasoft.engine.core.process.instance.model.event.trigger.STimerEventTriggerInstance;
 import org.bonitasoft.engine.persistence.OrderByType;
@@ -248,6 +250,36 @@ public class SelectDescriptorBuilder {
         return new SelectListDescriptor<>("getMessageEventCouples", parameters, SMessageEventCouple.class, queryOptions);
     }
 
+    public static SelectListDescriptor<SMessageInstance> getUnhandledMessageInstances(final long lastId, final int maxResults) {
+        final Map<String, Object> parameters = Collections.singletonMap("lastId", (Object) lastId);
+        return new SelectListDescriptor<>("getUnhandledMessageInstances", parameters, SMessageInstance.class, new QueryOptions(0, maxResults));
+    }
+
+    public static SelectListDescriptor<STimerEventTriggerInstance> getTimerEventTriggerInstancesToExecute(final String jobTriggerName,
+            final long maxExecutionDate, final long lastExecutionDate, final long lastId, final int maxResults) {
+        final Map<String, Object> parameters = new HashMap<>(4);
+        parameters.put("jobTriggerName", jobTriggerName);
+        parameters.put("maxExecutionDate", maxExecutionDate);
+        parameters.put("lastExecutionDate", lastExecutionDate);
+        parameters.put("lastId", lastId);
+        return new SelectListDescriptor<>("getTimerEventTriggerInstancesToExecute", parameters, STimerEventTriggerInstance.class,
+                new QueryOptions(0, maxResults));
+    }
+
+    public static SelectListDescriptor<STimerEventTriggerInstance> getTimerEventTriggerInstancesOfEventInstances(final String jobTriggerName,
+            final List<Long> eventInstanceIds) {
+        final Map<String, Object> parameters = new HashMap<>(2);
+        parameters.put("jobTriggerName", jobTriggerName);
+        parameters.put("eventInstanceIds", eventInstanceIds);
+        return new SelectListDescriptor<>("getTimerEventTriggerInstancesOfEventInstances", parameters, STimerEventTriggerInstance.class,
+                new QueryOptions(0, QueryOptions.UNLIMITED_NUMBER_OF_RESULTS));
+    }
+
+    public static SelectListDescriptor<SWaitingMessageEvent> getFreeWaitingMessageEvents(final long lastId, final int maxResults) {
+        final Map<String, Object> parameters = Collections.singletonMap("lastId", (Object) lastId);
+        return new SelectListDescriptor<>("getFreeWaitingMessageEvents", parameters, SWaitingMessageEvent.class, new QueryOptions(0, maxResults));
+    }
+
     public static SelectOneDescriptor<SAActivityInstance> getArchivedActivityInstanceWithActivityIdAndStateId(final long activityInstanceId,
             final int stateId) {
         final Map<String, Object> parameters = new HashMap<>(2);
@@ -17,6 +17,8 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.Assert.assertEquals;
 import static org.mockito.Mockito.*;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -24,19 +26,28 @@ import java.util.List;
 
 import org.bonitasoft.engine.archive.ArchiveService;
 import org.bonitasoft.engine.commons.exceptions.SObjectNotFoundException;
+import org.bonitasoft.engine.core.document.api.DocumentContentStore;
+import org.bonitasoft.engine.core.document.model.SDocument;
 import org.bonitasoft.engine.core.document.model.SMappedDocument;
 import org.bonitasoft.engine.core.document.model.archive.impl.SAMappedDocumentImpl;
+import org.bonitasoft.engine.core.document.model.impl.SDocumentImpl;
 import org.bonitasoft.engine.core.document.model.impl.SMappedDocumentImpl;
 import org.bonitasoft.engine.core.document.model.recorder.SelectDescriptorBuilder;
 import org.bonitasoft.engine.events.EventService;
 import org.bonitasoft.engine.log.technical.TechnicalLoggerService;
 import org.bonitasoft.engine.persistence.QueryOptions;
 import org.bonitasoft.engine.persistence.ReadPersistenceService;
+import org.bonitasoft.engine.persistence.SelectByIdDescriptor;
 import org.bonitasoft.engine.persistence.SelectListDescriptor;
 import org.bonitasoft.engine.recorder.Recorder;
+import org.bonitasoft.engine.recorder.model.UpdateRecord;
+import org.bonitasoft.engine.transaction.BonitaTransactionSynchronization;
+import org.bonitasoft.engine.transaction.TransactionState;
+import org.bonitasoft.engine.transaction.UserTransactionService;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Matchers;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
@@ -60,12 +71,155 @@ public class DocumentServiceImplTest {
     private TechnicalLoggerService technicalLogger;
     @Mock
     private ArchiveService archiveService;
+    @Mock
+    private DocumentContentStore contentStore;
+    @Mock
+    private UserTransactionService transactionService;
 
     private DocumentServiceImpl documentService;
 
     @Before
     public void setUp() {
-        documentService = spy(new DocumentServiceImpl(recorder, persistenceService, urlProvider, eventService, archiveService));
+        documentService = spy(new DocumentServiceImpl(recorder, persistenceService, urlProvider, eventService, archiveService, contentStore, false,
+                transactionService, technicalLogger));
+    }
+
+    private DocumentServiceImpl documentServiceWithContentStoreEnabled() {
+        return new DocumentServiceImpl(recorder, persistenceService, urlProvider, eventService, archiveService, contentStore, true,
+                transactionService, technicalLogger);
+    }
+
+    private SDocumentImpl document(final long id, final byte[] content, final String contentReference) throws Exception {
+        final SDocumentImpl document = new SDocumentImpl();
+        document.setId(id);
+        document.setHasContent(true);
+        document.setContent(content);
+        document.setContentReference(contentReference);
+        doReturn(document).when(persistenceService).selectById(new SelectByIdDescriptor<>(SDocument.class, id));
+        return document;
+    }
+
+    private DocumentServiceImpl archivedDocument(final long archivedDocumentId, final SDocument document) throws Exception {
+        final DocumentServiceImpl documentServiceWithContentStoreEnabled = spy(documentServiceWithContentStoreEnabled());
+        final SAMappedDocumentImpl archivedDocument = new SAMappedDocumentImpl();
+        archivedDocument.setId(archivedDocumentId);
+        archivedDocument.setDocumentId(document.getId());
+        doReturn(archivedDocument).when(documentServiceWithContentStoreEnabled).getArchivedDocument(archivedDocumentId);
+        return documentServiceWithContentStoreEnabled;
+    }
+
+    @Test
+    public void should_write_content_of_new_document_in_content_store_when_enabled() throws Exception {
+        final SDocumentImpl document = new SDocumentImpl();
+        document.setHasContent(true);
+        document.setContent(new byte[] { 1, 2, 3 });
+        doReturn("abc").when(contentStore).write(any(InputStream.class));
+
+        documentServiceWithContentStoreEnabled().attachDocumentToProcessInstance(document, 45L, "doc", "description");
+
+        assertThat(document.getContentReference()).isEqualTo("abc");
+        assertThat(document.getContent()).isNull();
+    }
+
+    @Test
+    public void should_keep_content_of_new_document_in_table_when_content_store_is_disabled() throws Exception {
+        final SDocumentImpl document = new SDocumentImpl();
+        document.setHasContent(true);
+        document.setContent(new byte[] { 1, 2, 3 });
+
+        documentService.attachDocumentToProcessInstance(document, 45L, "doc", "description");
+
+        assertThat(document.getContent()).containsExactly(1, 2, 3);
+        verifyZeroInteractions(contentStore);
+    }
+
+    @Test
+    public void should_read_content_from_content_store_when_document_has_a_content_reference() throws Exception {
+        document(12L, null, "abc");
+        doReturn(new ByteArrayInputStream(new byte[] { 1, 2, 3 })).when(contentStore).read("abc");
+
+        assertThat(documentService.getDocumentContent("12")).containsExactly(1, 2, 3);
+    }
+
+    @Test
+    public void should_stream_content_from_table_when_document_has_no_content_reference() throws Exception {
+        document(12L, new byte[] { 1, 2, 3 }, null);
+
+        assertThat(documentService.getDocumentContentAsStream("12")).hasSameContentAs(new ByteArrayInputStream(new byte[] { 1, 2, 3 }));
+        verifyZeroInteractions(contentStore);
+    }
+
+    @Test
+    public void should_move_content_from_table_to_content_store_when_enabled() throws Exception {
+        document(12L, new byte[] { 1, 2, 3 }, null);
+        doReturn("abc").when(contentStore).write(any(InputStream.class));
+
+        assertThat(documentServiceWithContentStoreEnabled().moveDocumentContent(12L)).isTrue();
+
+        final ArgumentCaptor<UpdateRecord> updateRecord = ArgumentCaptor.forClass(UpdateRecord.class);
+        verify(recorder).recordUpdate(updateRecord.capture(), eq(DocumentServiceImpl.DOCUMENT));
+        assertThat(updateRecord.getValue().getFields()).containsEntry("contentReference", "abc").containsEntry("content", null);
+    }
+
+    @Test
+    public void should_move_content_from_content_store_back_to_table_when_disabled() throws Exception {
+        document(12L, null, "abc");
+        final byte[] content = { 1, 2, 3 };
+        doReturn(new ByteArrayInputStream(content)).when(contentStore).read("abc");
+
+        assertThat(documentService.moveDocumentContent(12L)).isTrue();
+
+        final ArgumentCaptor<UpdateRecord> updateRecord = ArgumentCaptor.forClass(UpdateRecord.class);
+        verify(recorder).recordUpdate(updateRecord.capture(), eq(DocumentServiceImpl.DOCUMENT));
+        assertThat(updateRecord.getValue().getFields()).containsEntry("contentReference", null);
+        assertThat((byte[]) updateRecord.getValue().getFields().get("content")).containsExactly(1, 2, 3);
+    }
+
+    @Test
+    public void should_not_move_content_already_in_content_store() throws Exception {
+        document(12L, null, "abc");
+
+        assertThat(documentServiceWithContentStoreEnabled().moveDocumentContent(12L)).isFalse();
+
+        verifyZeroInteractions(recorder, contentStore);
+    }
+
+    @Test
+    public void should_delete_content_of_purged_document_from_content_store_once_committed() throws Exception {
+        final DocumentServiceImpl documentServiceWithContentStoreEnabled = archivedDocument(13L, document(12L, null, "abc"));
+        doReturn(1L).when(persistenceService).selectOne(SelectDescriptorBuilder.getNumberOfDocumentsWithContentReference("abc"));
+
+        documentServiceWithContentStoreEnabled.deleteContentOfArchivedDocument(13L);
+
+        final ArgumentCaptor<BonitaTransactionSynchronization> synchronization = ArgumentCaptor.forClass(BonitaTransactionSynchronization.class);
+        verify(transactionService).registerBonitaSynchronization(synchronization.capture());
+        verify(contentStore, never()).delete("abc");
+        synchronization.getValue().afterCompletion(TransactionState.COMMITTED);
+        verify(contentStore).delete("abc");
+    }
+
+    @Test
+    public void should_keep_content_of_purged_document_in_content_store_when_rolled_back() throws Exception {
+        final DocumentServiceImpl documentServiceWithContentStoreEnabled = archivedDocument(13L, document(12L, null, "abc"));
+        doReturn(1L).when(persistenceService).selectOne(SelectDescriptorBuilder.getNumberOfDocumentsWithContentReference("abc"));
+
+        documentServiceWithContentStoreEnabled.deleteContentOfArchivedDocument(13L);
+
+        final ArgumentCaptor<BonitaTransactionSynchronization> synchronization = ArgumentCaptor.forClass(BonitaTransactionSynchronization.class);
+        verify(transactionService).registerBonitaSynchronization(synchronization.capture());
+        synchronization.getValue().afterCompletion(TransactionState.ROLLEDBACK);
+        verify(contentStore, never()).delete("abc");
+    }
+
+    @Test
+    public void should_keep_content_of_purged_document_in_content_store_when_shared_with_other_documents() throws Exception {
+        final DocumentServiceImpl documentServiceWithContentStoreEnabled = archivedDocument(13L, document(12L, null, "abc"));
+        doReturn(2L).when(persistenceService).selectOne(SelectDescriptorBuilder.getNumberOfDocumentsWithContentReference("abc"));
+
+        documentServiceWithContentStoreEnabled.deleteContentOfArchivedDocument(13L);
+
+        verify(recorder).recordUpdate(any(UpdateRecord.class), eq(DocumentServiceImpl.DOCUMENT));
+        verifyZeroInteractions(transactionService, contentStore);
     }
 
     @Test
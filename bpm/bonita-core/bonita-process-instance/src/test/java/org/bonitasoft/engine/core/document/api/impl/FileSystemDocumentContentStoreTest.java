@@ -0,0 +1,131 @@
+/**
+ * Copyright (C) 2018 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.core.document.api.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import org.bonitasoft.engine.commons.exceptions.SBonitaRuntimeException;
+import org.bonitasoft.engine.commons.io.IOUtil;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class FileSystemDocumentContentStoreTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private FileSystemDocumentContentStore store;
+
+    @Before
+    public void before() throws Exception {
+        store = new FileSystemDocumentContentStore(temporaryFolder.getRoot().getAbsolutePath(), 1L, true);
+    }
+
+    @Test
+    public void should_read_the_content_written() throws Exception {
+        final String reference = store.write(new ByteArrayInputStream("the content".getBytes()));
+
+        try (InputStream content = store.read(reference)) {
+            assertThat(content).hasSameContentAs(new ByteArrayInputStream("the content".getBytes()));
+        }
+    }
+
+    @Test
+    public void should_name_content_after_its_sha256() throws Exception {
+        final String reference = store.write(new ByteArrayInputStream("the content".getBytes()));
+
+        assertThat(reference).isEqualTo(IOUtil.sha256("the content".getBytes()));
+        assertThat(store.getFile(reference)).exists();
+    }
+
+    @Test
+    public void should_store_a_content_written_twice_once() throws Exception {
+        final String first = store.write(new ByteArrayInputStream("the content".getBytes()));
+        final String second = store.write(new ByteArrayInputStream("the content".getBytes()));
+
+        assertThat(second).isEqualTo(first);
+        assertThat(countFiles()).isEqualTo(1);
+    }
+
+    @Test
+    public void should_read_an_empty_content() throws Exception {
+        final String reference = store.write(new ByteArrayInputStream(new byte[0]));
+
+        try (InputStream content = store.read(reference)) {
+            assertThat(content.read()).isEqualTo(-1);
+        }
+    }
+
+    @Test
+    public void should_delete_a_content() throws Exception {
+        final String reference = store.write(new ByteArrayInputStream("the content".getBytes()));
+
+        assertThat(store.delete(reference)).isTrue();
+
+        assertThat(catchThrowable(() -> store.read(reference))).isInstanceOf(FileNotFoundException.class);
+        assertThat(store.delete(reference)).isFalse();
+    }
+
+    @Test
+    public void should_keep_contents_of_tenants_in_separate_folders() throws Exception {
+        final FileSystemDocumentContentStore otherTenantStore = new FileSystemDocumentContentStore(temporaryFolder.getRoot().getAbsolutePath(), 2L, true);
+        final String reference = store.write(new ByteArrayInputStream("the content".getBytes()));
+
+        final Throwable thrown = catchThrowable(() -> otherTenantStore.read(reference));
+
+        assertThat(thrown).isInstanceOf(FileNotFoundException.class);
+    }
+
+    @Test
+    public void should_refuse_references_not_written_by_the_store() throws Exception {
+        final Throwable thrown = catchThrowable(() -> store.read("../../etc/passwd"));
+
+        assertThat(thrown).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void should_not_be_enabled_without_a_folder() throws Exception {
+        final Throwable thrown = catchThrowable(() -> new FileSystemDocumentContentStore("  ", 1L, true));
+
+        assertThat(thrown).isInstanceOf(SBonitaRuntimeException.class).hasMessageContaining("bonita.tenant.document.contentStore.folder");
+    }
+
+    @Test
+    public void should_neither_read_nor_write_when_disabled_without_a_folder() throws Exception {
+        final FileSystemDocumentContentStore storeWithoutFolder = new FileSystemDocumentContentStore(null, 1L, false);
+
+        assertThat(catchThrowable(() -> storeWithoutFolder.write(new ByteArrayInputStream("the content".getBytes()))))
+                .isInstanceOf(IOException.class).hasMessageContaining("bonita.tenant.document.contentStore.folder");
+        assertThat(catchThrowable(() -> storeWithoutFolder.read(IOUtil.sha256("the content".getBytes()))))
+                .isInstanceOf(IOException.class).hasMessageContaining("bonita.tenant.document.contentStore.folder");
+    }
+
+    private long countFiles() throws Exception {
+        try (Stream<Path> files = Files.walk(store.getFolder())) {
+            return files.filter(Files::isRegularFile).count();
+        }
+    }
+
+}
@@ -31,6 +31,7 @@ import org.bonitasoft.engine.core.process.instance.api.exceptions.SFlowNodeModif
 import org.bonitasoft.engine.core.process.instance.model.SFlowNodeInstance;
 import org.bonitasoft.engine.core.process.instance.model.SFlowNodeInstanceStateCounter;
 import org.bonitasoft.engine.core.process.instance.model.SHumanTaskInstance;
+import org.bonitasoft.engine.core.process.instance.model.SPendingActivityMapping;
 import org.bonitasoft.engine.core.process.instance.model.builder.SFlowNodeInstanceBuilderFactory;
 import org.bonitasoft.engine.core.process.instance.model.builder.impl.SUserTaskInstanceBuilderFactoryImpl;
 import org.bonitasoft.engine.log.technical.TechnicalLoggerService;
@@ -68,6 +69,9 @@ public class ActivityInstanceServiceImplTest {
     @Mock
     private TechnicalLoggerService logger;
 
+    @Mock
+    private PendingTaskInbox pendingTaskInbox;
+
     @InjectMocks
     private ActivityInstanceServiceImpl activityInstanceServiceImpl;
 
@@ -420,4 +424,38 @@ public class ActivityInstanceServiceImplTest {
                 .hasMessageContaining("Fake for test");
     }
 
+    @Test
+    public void should_search_pending_tasks_for_user_using_mappings_when_inbox_is_disabled() throws Exception {
+        final QueryOptions options = new QueryOptions(0, 10);
+        final List<SHumanTaskInstance> expectedResult = new ArrayList<>();
+        when(persistenceService.searchEntity(SHumanTaskInstance.class, "PendingForUser", options, Collections.singletonMap("userId", 61L)))
+                .thenReturn(expectedResult);
+
+        assertThat(activityInstanceServiceImpl.searchPendingTasksForUser(61L, options)).isSameAs(expectedResult);
+    }
+
+    @Test
+    public void should_search_pending_tasks_for_user_using_inbox_when_enabled() throws Exception {
+        final QueryOptions options = new QueryOptions(0, 10);
+        final List<SHumanTaskInstance> expectedResult = new ArrayList<>();
+        when(pendingTaskInbox.isEnabled()).thenReturn(true);
+        when(persistenceService.searchEntity(SHumanTaskInstance.class, "PendingForUserFromInbox", options, Collections.singletonMap("userId", 61L)))
+                .thenReturn(expectedResult);
+        when(persistenceService.getNumberOfEntities(SHumanTaskInstance.class, "PendingForUserFromInbox", options, Collections.singletonMap("userId", 61L)))
+                .thenReturn(3L);
+
+        assertThat(activityInstanceServiceImpl.searchPendingTasksForUser(61L, options)).isSameAs(expectedResult);
+        assertThat(activityInstanceServiceImpl.getNumberOfPendingTasksForUser(61L, options)).isEqualTo(3L);
+    }
+
+    @Test
+    public void should_remove_task_from_inbox_when_deleting_its_pending_mappings() throws Exception {
+        when(persistenceService.selectList(Matchers.<SelectListDescriptor<SPendingActivityMapping>> any()))
+                .thenReturn(Collections.<SPendingActivityMapping> emptyList());
+
+        activityInstanceServiceImpl.deletePendingMappings(12L);
+
+        verify(pendingTaskInbox).removeActivity(12L);
+    }
+
 }
@@ -375,40 +375,96 @@ public class GatewayInstanceServiceImplTest {
     }
 
     @Test
-    public void should_getMergedTokens_on_exclusive_return_the_first_token() throws Exception {
+    public void should_mergeTokens_on_exclusive_consume_the_first_token() throws Exception {
         SGatewayInstanceImpl gate = new SGatewayInstanceImpl();
         gate.setGatewayType(SGatewayType.EXCLUSIVE);
+        GatewayTokens tokens = GatewayTokens.fromHitBys("1,2");
 
-        List<String> mergedTokens = gatewayInstanceService.getMergedTokens(gate, Arrays.asList("1", "2"));
+        int merged = gatewayInstanceService.mergeTokens(gate, tokens);
 
-        assertThat(mergedTokens).containsOnly("1");
+        assertThat(merged).isEqualTo(1);
+        assertThat(tokens.hasToken(1)).isFalse();
+        assertThat(tokens.getCount(2)).isEqualTo(1);
     }
 
     @Test
-    public void should_getMergedTokens_on_parallel() throws Exception {
+    public void should_mergeTokens_on_parallel_consume_one_token_per_transition() throws Exception {
         SGatewayInstanceImpl gate = new SGatewayInstanceImpl();
         gate.setGatewayType(SGatewayType.PARALLEL);
+        GatewayTokens tokens = GatewayTokens.fromHitBys("1,2,3,2,1");
 
-        List<String> mergedTokens = gatewayInstanceService.getMergedTokens(gate, Arrays.asList("1", "2", "3", "2"));
+        int merged = gatewayInstanceService.mergeTokens(gate, tokens);
 
-        assertThat(mergedTokens).containsOnly("1", "2", "3");
+        assertThat(merged).isEqualTo(3);
+        assertThat(tokens.getCount(1)).isEqualTo(1);
+        assertThat(tokens.getCount(2)).isEqualTo(1);
+        assertThat(tokens.getCount(3)).isEqualTo(0);
     }
 
     @Test
-    public void should_getMergedTokens_on_inclusive() throws Exception {
+    public void should_mergeTokens_on_inclusive_consume_one_token_per_transition() throws Exception {
         SGatewayInstanceImpl gate = new SGatewayInstanceImpl();
         gate.setGatewayType(SGatewayType.INCLUSIVE);
+        GatewayTokens tokens = GatewayTokens.fromHitBys("1,2,3,2");
 
-        List<String> mergedTokens = gatewayInstanceService.getMergedTokens(gate, Arrays.asList("1", "2", "3", "2"));
+        int merged = gatewayInstanceService.mergeTokens(gate, tokens);
 
-        assertThat(mergedTokens).containsOnly("1", "2", "3");
+        assertThat(merged).isEqualTo(3);
+        assertThat(tokens.getCount(2)).isEqualTo(1);
+        assertThat(tokens.hasToken(1)).isFalse();
+        assertThat(tokens.hasToken(3)).isFalse();
     }
 
     @Test
-    public void should_getRemainingToken_return_not_merged_tokens() {
-        List<String> remainingTokens = gatewayInstanceService.getRemainingTokens(Arrays.asList("1", "2", "3", "2", "1"), Arrays.asList("1", "2", "3"));
+    public void should_hitTransition_store_serialized_tokens() throws Exception {
+        SGatewayInstanceImpl gate = new SGatewayInstanceImpl();
+        GatewayTokens tokens = GatewayTokens.empty();
+        tokens.hit(1);
+        gate.setTokens(tokens.encode());
+
+        gatewayInstanceService.hitTransition(gate, 3);
+
+        verify(recorder).recordUpdate(updateRecordCaptor.capture(), nullable(String.class));
+        GatewayTokens updated = GatewayTokens.decode((byte[]) updateRecordCaptor.getValue().getFields().get("tokens"));
+        assertThat(updated.getCount(1)).isEqualTo(1);
+        assertThat(updated.getCount(2)).isEqualTo(0);
+        assertThat(updated.getCount(3)).isEqualTo(1);
+        assertThat(updateRecordCaptor.getValue().getFields()).doesNotContainKey("hitBys");
+    }
+
+    @Test
+    public void should_hitTransition_move_legacy_hitBys_to_tokens() throws Exception {
+        SGatewayInstanceImpl gate = new SGatewayInstanceImpl();
+        gate.setHitBys("1,2");
+
+        gatewayInstanceService.hitTransition(gate, 2);
+
+        verify(recorder).recordUpdate(updateRecordCaptor.capture(), nullable(String.class));
+        GatewayTokens updated = GatewayTokens.decode((byte[]) updateRecordCaptor.getValue().getFields().get("tokens"));
+        assertThat(updated.getCount(1)).isEqualTo(1);
+        assertThat(updated.getCount(2)).isEqualTo(2);
+        assertThat(updateRecordCaptor.getValue().getFields()).containsEntry("hitBys", "");
+    }
 
-        assertThat(remainingTokens).containsOnly("2", "1");
+    @Test
+    public void should_parallelBehavior_merged_with_serialized_tokens_of_500_transitions() {
+        SProcessDefinitionImpl processDefinition = new SProcessDefinitionImpl("P", "1.0");
+        processDefinition.setProcessContainer(processContainer);
+        SGatewayInstanceImpl gate = new SGatewayInstanceImpl();
+        gate.setName("gate");
+        gate.setFlowNodeDefinitionId(666);
+        node(666, "gate");
+        GatewayTokens tokens = GatewayTokens.empty();
+        for (int i = 1; i <= 500; i++) {
+            node(i, "step" + i);
+            transition(i, 666);
+            tokens.hit(i);
+        }
+        gate.setTokens(tokens.encode());
+
+        boolean isMerged = gatewayInstanceService.isParallelGatewayActivated(processDefinition, gate);
+
+        assertThat(isMerged).isTrue();
     }
 
     @Test
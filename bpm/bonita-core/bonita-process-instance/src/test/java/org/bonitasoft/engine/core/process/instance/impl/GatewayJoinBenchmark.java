@@ -0,0 +1,83 @@
+/**
+ * Copyright (C) 2018 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.core.process.instance.impl;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measure a full join of a parallel gateway having {@link #numberOfBranches} incoming transitions: each arriving branch reads the tokens of the gateway,
+ * adds its own, writes them back and checks the merging condition, as {@link GatewayInstanceServiceImpl} does on each hit.
+ * The comma separated hitBys string previously used is measured as a baseline.
+ * Run it using {@link #main(String[])}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class GatewayJoinBenchmark {
+
+    @Param({ "50", "500" })
+    public int numberOfBranches;
+
+    @Benchmark
+    public boolean joinWithTokens() {
+        byte[] row = GatewayTokens.empty().encode();
+        boolean merged = false;
+        for (int transitionIndex = 1; transitionIndex <= numberOfBranches; transitionIndex++) {
+            GatewayTokens tokens = GatewayTokens.decode(row);
+            tokens.hit(transitionIndex);
+            row = tokens.encode();
+            merged = GatewayTokens.decode(row).hasTokenOnEachTransition(numberOfBranches);
+        }
+        GatewayTokens.decode(row).consumeOnePerTransition();
+        return merged;
+    }
+
+    @Benchmark
+    public boolean joinWithHitBys() {
+        String row = "";
+        boolean merged = false;
+        for (int transitionIndex = 1; transitionIndex <= numberOfBranches; transitionIndex++) {
+            row = row.isEmpty() ? String.valueOf(transitionIndex) : row + "," + transitionIndex;
+            List<String> hitBys = Arrays.asList(row.split(","));
+            merged = true;
+            for (int i = 1; merged && i <= numberOfBranches; i++) {
+                merged = hitBys.contains(String.valueOf(i));
+            }
+        }
+        return merged;
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(GatewayJoinBenchmark.class.getSimpleName()).build()).run();
+    }
+
+}
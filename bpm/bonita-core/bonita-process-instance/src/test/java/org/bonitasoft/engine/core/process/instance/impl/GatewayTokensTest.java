@@ -0,0 +1,155 @@
+/**
+ * Copyright (C) 2018 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.core.process.instance.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+import org.bonitasoft.engine.core.process.instance.model.impl.SGatewayInstanceImpl;
+import org.junit.Test;
+
+public class GatewayTokensTest {
+
+    @Test
+    public void should_count_tokens_hit_on_each_transition() {
+        GatewayTokens tokens = GatewayTokens.empty();
+
+        tokens.hit(2);
+        tokens.hit(2);
+        tokens.hit(7);
+
+        assertThat(tokens.getCount(1)).isEqualTo(0);
+        assertThat(tokens.getCount(2)).isEqualTo(2);
+        assertThat(tokens.getCount(7)).isEqualTo(1);
+        assertThat(tokens.getCount(8)).isEqualTo(0);
+    }
+
+    @Test
+    public void should_encode_and_decode_tokens() {
+        GatewayTokens tokens = GatewayTokens.empty();
+        for (int i = 1; i <= 500; i++) {
+            tokens.hit(i);
+        }
+        tokens.hit(300);
+        for (int i = 0; i < 200; i++) {
+            tokens.hit(42);
+        }
+
+        GatewayTokens decoded = GatewayTokens.decode(tokens.encode());
+
+        assertThat(decoded.hasTokenOnEachTransition(500)).isTrue();
+        assertThat(decoded.getCount(300)).isEqualTo(2);
+        assertThat(decoded.getCount(42)).isEqualTo(201);
+        assertThat(decoded.getCount(501)).isEqualTo(0);
+    }
+
+    @Test
+    public void should_encode_500_transitions_with_one_token_in_about_one_byte_per_transition() {
+        GatewayTokens tokens = GatewayTokens.empty();
+        for (int i = 1; i <= 500; i++) {
+            tokens.hit(i);
+        }
+
+        assertThat(tokens.encode()).hasSize(502);
+    }
+
+    @Test
+    public void should_not_encode_trailing_transitions_without_tokens() {
+        GatewayTokens tokens = GatewayTokens.fromHitBys("1,3");
+        tokens.consumeOnePerTransition();
+
+        assertThat(tokens.encode()).containsExactly((byte) 0);
+        assertThat(GatewayTokens.decode(tokens.encode()).isEmpty()).isTrue();
+    }
+
+    @Test
+    public void should_hasTokenOnEachTransition_be_false_when_one_transition_has_no_token() {
+        GatewayTokens tokens = GatewayTokens.fromHitBys("1,3,4");
+
+        assertThat(tokens.hasTokenOnEachTransition(4)).isFalse();
+        assertThat(tokens.hasTokenOnEachTransition(1)).isTrue();
+        assertThat(tokens.hasTokenOnEachTransition(5)).isFalse();
+    }
+
+    @Test
+    public void should_consumeOnePerTransition_keep_tokens_that_hit_several_times() {
+        GatewayTokens tokens = GatewayTokens.fromHitBys("1,2,3,2,1,2");
+
+        int consumed = tokens.consumeOnePerTransition();
+
+        assertThat(consumed).isEqualTo(3);
+        assertThat(tokens.getCount(1)).isEqualTo(1);
+        assertThat(tokens.getCount(2)).isEqualTo(2);
+        assertThat(tokens.getCount(3)).isEqualTo(0);
+        assertThat(tokens.isEmpty()).isFalse();
+    }
+
+    @Test
+    public void should_consumeFirst_remove_the_token_of_the_lowest_transition() {
+        GatewayTokens tokens = GatewayTokens.fromHitBys("3,2");
+
+        int consumed = tokens.consumeFirst();
+
+        assertThat(consumed).isEqualTo(1);
+        assertThat(tokens.hasToken(2)).isFalse();
+        assertThat(tokens.hasToken(3)).isTrue();
+    }
+
+    @Test
+    public void should_read_tokens_from_legacy_hitBys_when_gateway_has_no_serialized_tokens() {
+        SGatewayInstanceImpl gate = new SGatewayInstanceImpl();
+        gate.setHitBys("1,2,2");
+
+        GatewayTokens tokens = GatewayTokens.of(gate);
+
+        assertThat(tokens.getCount(1)).isEqualTo(1);
+        assertThat(tokens.getCount(2)).isEqualTo(2);
+    }
+
+    @Test
+    public void should_read_serialized_tokens_before_legacy_hitBys() {
+        SGatewayInstanceImpl gate = new SGatewayInstanceImpl();
+        gate.setHitBys("1");
+        gate.setTokens(GatewayTokens.fromHitBys("2").encode());
+
+        GatewayTokens tokens = GatewayTokens.of(gate);
+
+        assertThat(tokens.hasToken(1)).isFalse();
+        assertThat(tokens.hasToken(2)).isTrue();
+    }
+
+    @Test
+    public void should_finished_gateway_have_no_tokens() {
+        SGatewayInstanceImpl gate = new SGatewayInstanceImpl();
+        gate.setHitBys("FINISH:2");
+        gate.setTokens(GatewayTokens.fromHitBys("1,2").encode());
+
+        assertThat(GatewayTokens.of(gate).isEmpty()).isTrue();
+    }
+
+    @Test
+    public void should_reject_invalid_transition_index() {
+        Throwable thrown = catchThrowable(() -> GatewayTokens.empty().hit(0));
+
+        assertThat(thrown).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void should_reject_invalid_hitBys() {
+        Throwable thrown = catchThrowable(() -> GatewayTokens.fromHitBys("a,b"));
+
+        assertThat(thrown).isInstanceOf(IllegalArgumentException.class);
+    }
+
+}
@@ -0,0 +1,135 @@
+/**
+ * Copyright (C) 2018 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.core.process.instance.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.bonitasoft.engine.core.process.instance.model.SPendingActivityMapping;
+import org.bonitasoft.engine.core.process.instance.model.SPendingTaskInboxEntry;
+import org.bonitasoft.engine.core.process.instance.model.impl.SPendingActivityMappingImpl;
+import org.bonitasoft.engine.persistence.SelectListDescriptor;
+import org.bonitasoft.engine.services.PersistenceService;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class PendingTaskInboxTest {
+
+    @Mock
+    private PersistenceService persistenceService;
+
+    private PendingTaskInbox pendingTaskInbox;
+
+    @Before
+    public void before() throws Exception {
+        pendingTaskInbox = new PendingTaskInbox(true, persistenceService);
+        when(persistenceService.selectList(any())).thenReturn(Collections.emptyList());
+    }
+
+    @Test
+    public void should_not_use_database_when_disabled() throws Exception {
+        pendingTaskInbox = new PendingTaskInbox(false, persistenceService);
+
+        pendingTaskInbox.addMapping(userMapping(12L, 1L));
+        pendingTaskInbox.removeActivity(12L);
+        pendingTaskInbox.rebuildUser(1L);
+        pendingTaskInbox.rebuildActor(3L);
+        pendingTaskInbox.addActorMember(3L, 1L, -1L, -1L);
+        pendingTaskInbox.rebuild();
+
+        verifyZeroInteractions(persistenceService);
+    }
+
+    @Test
+    public void should_add_user_of_user_filter_mapping_in_inbox() throws Exception {
+        pendingTaskInbox.addMapping(userMapping(12L, 1L));
+
+        assertThat(insertedEntries()).extracting("userId", "activityId").containsExactly(tuple(1L, 12L));
+    }
+
+    @Test
+    public void should_add_users_of_actor_mapping_not_already_in_inbox() throws Exception {
+        returnIds("getUserIdsOfActorFromActorMembers", 1L, 2L);
+        returnIds("getUserIdsOfActorFromMemberships", 2L, 3L);
+        returnIds("getUserIdsOfPendingTaskInboxEntriesOfActivity", 3L);
+
+        pendingTaskInbox.addMapping(actorMapping(12L, 5L));
+
+        assertThat(insertedEntries()).extracting("userId").containsOnly(1L, 2L);
+    }
+
+    @Test
+    public void should_add_users_of_group_member_in_inbox_of_tasks_of_actor() throws Exception {
+        returnIds("getUserIdsOfUserMembershipsOfGroup", 1L, 2L);
+        returnIds("getActivityIdsOfPendingMappingsOfActor", 12L);
+        returnIds("getUserIdsOfPendingTaskInboxEntriesOfActivity", 2L);
+
+        pendingTaskInbox.addActorMember(5L, -1L, 7L, -1L);
+
+        assertThat(insertedEntries()).extracting("userId", "activityId").containsExactly(tuple(1L, 12L));
+    }
+
+    @Test
+    public void should_not_update_inbox_when_actor_member_has_no_user() throws Exception {
+        pendingTaskInbox.addActorMember(5L, -1L, -1L, -1L);
+
+        verify(persistenceService, never()).selectList(any());
+        verify(persistenceService, never()).insertInBatch(any());
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<SPendingTaskInboxEntry> insertedEntries() throws Exception {
+        final ArgumentCaptor<List<SPendingTaskInboxEntry>> captor = ArgumentCaptor.forClass(List.class);
+        verify(persistenceService).insertInBatch(captor.capture());
+        return captor.getValue();
+    }
+
+    private void returnIds(final String queryName, final Long... ids) throws Exception {
+        when(persistenceService.selectList(argThat((SelectListDescriptor<Long> descriptor) -> descriptor != null && queryName.equals(descriptor.getQueryName()))))
+                .thenReturn(new ArrayList<>(Arrays.asList(ids)));
+    }
+
+    private SPendingActivityMapping userMapping(final long activityId, final long userId) {
+        final SPendingActivityMappingImpl mapping = new SPendingActivityMappingImpl();
+        mapping.setActivityId(activityId);
+        mapping.setUserId(userId);
+        mapping.setActorId(-1);
+        return mapping;
+    }
+
+    private SPendingActivityMapping actorMapping(final long activityId, final long actorId) {
+        final SPendingActivityMappingImpl mapping = new SPendingActivityMappingImpl();
+        mapping.setActivityId(activityId);
+        mapping.setActorId(actorId);
+        mapping.setUserId(-1);
+        return mapping;
+    }
+
+}
@@ -19,6 +19,7 @@ DELETE FROM arch_ref_biz_data_inst;
 DELETE FROM multi_biz_data;
 DELETE FROM ref_biz_data_inst;
 DELETE FROM pending_mapping;
+DELETE FROM pending_task_inbox;
 DELETE FROM message_instance;
 DELETE FROM waiting_event;
 DELETE FROM event_trigger_instance;
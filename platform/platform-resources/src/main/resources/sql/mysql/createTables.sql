@@ -155,6 +155,7 @@ CREATE TABLE document (
   mimetype VARCHAR(255),
   url VARCHAR(1024),
   content LONGBLOB,
+  contentreference VARCHAR(64),
   PRIMARY KEY (tenantid, id)
 ) ENGINE = INNODB;
 
@@ -319,6 +320,7 @@ CREATE TABLE flownode_instance (
   priority TINYINT,
   gatewayType VARCHAR(50),
   hitBys VARCHAR(255),
+  tokens LONGBLOB,
   stateCategory VARCHAR(50) NOT NULL,
   logicalGroup1 BIGINT NOT NULL,
   logicalGroup2 BIGINT NOT NULL,
@@ -376,6 +378,8 @@ CREATE TABLE event_trigger_instance (
   	jobTriggerName VARCHAR(255),
   	PRIMARY KEY (tenantid, id)
 ) ENGINE = INNODB;
+CREATE INDEX idx_evt_trig_exec ON event_trigger_instance (tenantid, executionDate, id);
+CREATE INDEX idx_evt_trig_evt ON event_trigger_instance (eventInstanceId, tenantid);
 
 CREATE TABLE waiting_event (
 	tenantid BIGINT NOT NULL,
@@ -435,6 +439,16 @@ CREATE TABLE pending_mapping (
 ) ENGINE = INNODB;
 CREATE UNIQUE INDEX idx_UQ_pending_mapping ON pending_mapping (tenantid, activityId, userId, actorId);
 
+CREATE TABLE pending_task_inbox (
+	tenantid BIGINT NOT NULL,
+  	id BIGINT NOT NULL,
+  	userId BIGINT NOT NULL,
+  	activityId BIGINT NOT NULL,
+  	PRIMARY KEY (tenantid, id)
+) ENGINE = INNODB;
+CREATE INDEX idx_pending_task_inbox_usr ON pending_task_inbox (tenantid, userId, activityId);
+CREATE INDEX idx_pending_task_inbox_act ON pending_task_inbox (tenantid, activityId);
+
 CREATE TABLE ref_biz_data_inst (
 	tenantid BIGINT NOT NULL,
   	id BIGINT NOT NULL,
@@ -635,6 +649,7 @@ CREATE TABLE dependency (
   description TEXT,
   filename VARCHAR(255) NOT NULL,
   value_ MEDIUMBLOB NOT NULL,
+  checksum VARCHAR(64),
   UNIQUE (tenantId, name),
   PRIMARY KEY (tenantid, id)
 ) ENGINE = INNODB;
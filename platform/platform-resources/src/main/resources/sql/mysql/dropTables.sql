@@ -19,6 +19,7 @@ DROP TABLE arch_ref_biz_data_inst;
 DROP TABLE multi_biz_data;
 DROP TABLE ref_biz_data_inst;
 DROP TABLE pending_mapping;
+DROP TABLE pending_task_inbox;
 DROP TABLE connector_instance;
 DROP TABLE flownode_instance;
 DROP TABLE process_instance;
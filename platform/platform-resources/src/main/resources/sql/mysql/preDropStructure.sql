@@ -23,6 +23,7 @@ ALTER TABLE custom_usr_inf_def DROP FOREIGN KEY fk_custom_usr_inf_def_tenantId;
 ALTER TABLE custom_usr_inf_val DROP FOREIGN KEY fk_custom_usr_inf_val_tenantId;
 ALTER TABLE pending_mapping DROP FOREIGN KEY fk_pending_mapping_tenantId;
 ALTER TABLE pending_mapping DROP FOREIGN KEY fk_pending_mapping_flownode_instanceId;
+ALTER TABLE pending_task_inbox DROP FOREIGN KEY fk_pending_task_inbox_tenantId;
 ALTER TABLE processcategorymapping DROP FOREIGN KEY fk_processcategorymapping_tenantId;
 ALTER TABLE process_comment DROP FOREIGN KEY fk_process_comment_tenantId;
 ALTER TABLE process_definition DROP FOREIGN KEY fk_process_definition_tenantId;
@@ -151,6 +151,7 @@ CREATE TABLE document (
   mimetype VARCHAR2(255 CHAR),
   url VARCHAR2(1024 CHAR),
   content BLOB,
+  contentreference VARCHAR2(64 CHAR),
   PRIMARY KEY (tenantid, id)
 );
 CREATE TABLE document_mapping (
@@ -313,6 +314,7 @@ CREATE TABLE flownode_instance (
   priority SMALLINT,
   gatewayType VARCHAR2(50 CHAR),
   hitBys VARCHAR2(255 CHAR),
+  tokens BLOB,
   stateCategory VARCHAR2(50 CHAR) NOT NULL,
   logicalGroup1 NUMBER(19, 0) NOT NULL,
   logicalGroup2 NUMBER(19, 0) NOT NULL,
@@ -370,6 +372,8 @@ CREATE TABLE event_trigger_instance (
   	jobTriggerName VARCHAR2(255 CHAR),
   	PRIMARY KEY (tenantid, id)
 );
+CREATE INDEX idx_evt_trig_exec ON event_trigger_instance (tenantid, executionDate, id);
+CREATE INDEX idx_evt_trig_evt ON event_trigger_instance (eventInstanceId, tenantid);
 
 CREATE TABLE waiting_event (
 	tenantid NUMBER(19, 0) NOT NULL,
@@ -429,6 +433,16 @@ CREATE TABLE pending_mapping (
 );
 CREATE UNIQUE INDEX idx_UQ_pending_mapping ON pending_mapping (tenantid, activityId, userId, actorId);
 
+CREATE TABLE pending_task_inbox (
+	tenantid NUMBER(19, 0) NOT NULL,
+  	id NUMBER(19, 0) NOT NULL,
+  	userId NUMBER(19, 0) NOT NULL,
+  	activityId NUMBER(19, 0) NOT NULL,
+  	PRIMARY KEY (tenantid, id)
+);
+CREATE INDEX idx_pending_task_inbox_usr ON pending_task_inbox (tenantid, userId, activityId);
+CREATE INDEX idx_pending_task_inbox_act ON pending_task_inbox (tenantid, activityId);
+
 
 CREATE TABLE ref_biz_data_inst (
 	tenantid NUMBER(19, 0) NOT NULL,
@@ -630,6 +644,7 @@ CREATE TABLE dependency (
   description VARCHAR2(1024 CHAR),
   filename VARCHAR2(255 CHAR) NOT NULL,
   value_ BLOB NOT NULL,
+  checksum VARCHAR2(64 CHAR),
   CONSTRAINT UK_Dependency UNIQUE (tenantId, name),
   PRIMARY KEY (tenantid, id)
 );
@@ -156,6 +156,7 @@ CREATE TABLE document (
   mimetype VARCHAR(255),
   url VARCHAR(1024),
   content BYTEA,
+  contentreference VARCHAR(64),
   PRIMARY KEY (tenantid, id)
 );
 CREATE TABLE document_mapping (
@@ -318,6 +319,7 @@ CREATE TABLE flownode_instance (
   priority SMALLINT,
   gatewayType VARCHAR(50),
   hitBys VARCHAR(255),
+  tokens BYTEA,
   stateCategory VARCHAR(50) NOT NULL,
   logicalGroup1 INT8 NOT NULL,
   logicalGroup2 INT8 NOT NULL,
@@ -375,6 +377,8 @@ CREATE TABLE event_trigger_instance (
   	jobTriggerName VARCHAR(255),
   	PRIMARY KEY (tenantid, id)
 );
+CREATE INDEX idx_evt_trig_exec ON event_trigger_instance (tenantid, executionDate, id);
+CREATE INDEX idx_evt_trig_evt ON event_trigger_instance (eventInstanceId, tenantid);
 
 CREATE TABLE waiting_event (
 	tenantid INT8 NOT NULL,
@@ -434,6 +438,16 @@ CREATE TABLE pending_mapping (
 );
 CREATE UNIQUE INDEX idx_UQ_pending_mapping ON pending_mapping (tenantid, activityId, userId, actorId);
 
+CREATE TABLE pending_task_inbox (
+	tenantid INT8 NOT NULL,
+  	id INT8 NOT NULL,
+  	userId INT8 NOT NULL,
+  	activityId INT8 NOT NULL,
+  	PRIMARY KEY (tenantid, id)
+);
+CREATE INDEX idx_pending_task_inbox_usr ON pending_task_inbox (tenantid, userId, activityId);
+CREATE INDEX idx_pending_task_inbox_act ON pending_task_inbox (tenantid, activityId);
+
 CREATE TABLE ref_biz_data_inst (
 	tenantid INT8 NOT NULL,
   	id INT8 NOT NULL,
@@ -636,6 +650,7 @@ CREATE TABLE dependency (
   description TEXT,
   filename VARCHAR(255) NOT NULL,
   value_ BYTEA NOT NULL,
+  checksum VARCHAR(64),
   UNIQUE (tenantId, name),
   PRIMARY KEY (tenantid, id)
 );
@@ -38,6 +38,8 @@ DELETE FROM ref_biz_data_inst
 GO
 DELETE FROM pending_mapping
 GO
+DELETE FROM pending_task_inbox
+GO
 DELETE FROM message_instance
 GO
 DELETE FROM waiting_event
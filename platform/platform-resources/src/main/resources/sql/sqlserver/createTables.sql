@@ -176,6 +176,7 @@ CREATE TABLE document (
   mimetype NVARCHAR(255),
   url NVARCHAR(1024),
   content VARBINARY(MAX),
+  contentreference NVARCHAR(64),
   PRIMARY KEY (tenantid, id)
 )
 GO
@@ -353,6 +354,7 @@ CREATE TABLE flownode_instance (
   priority TINYINT,
   gatewayType NVARCHAR(50),
   hitBys NVARCHAR(255),
+  tokens VARBINARY(MAX),
   stateCategory NVARCHAR(50) NOT NULL,
   logicalGroup1 NUMERIC(19, 0) NOT NULL,
   logicalGroup2 NUMERIC(19, 0) NOT NULL,
@@ -417,6 +419,10 @@ CREATE TABLE event_trigger_instance (
   	PRIMARY KEY (tenantid, id)
 )
 GO
+CREATE INDEX idx_evt_trig_exec ON event_trigger_instance (tenantid, executionDate, id)
+GO
+CREATE INDEX idx_evt_trig_evt ON event_trigger_instance (eventInstanceId, tenantid)
+GO
 
 CREATE TABLE waiting_event (
 	tenantid NUMERIC(19, 0) NOT NULL,
@@ -482,6 +488,19 @@ GO
 CREATE UNIQUE INDEX idx_UQ_pending_mapping ON pending_mapping (tenantid, activityId, userId, actorId)
 GO
 
+CREATE TABLE pending_task_inbox (
+	tenantid NUMERIC(19, 0) NOT NULL,
+  	id NUMERIC(19, 0) NOT NULL,
+  	userId NUMERIC(19, 0) NOT NULL,
+  	activityId NUMERIC(19, 0) NOT NULL,
+  	PRIMARY KEY (tenantid, id)
+)
+GO
+CREATE INDEX idx_pending_task_inbox_usr ON pending_task_inbox (tenantid, userId, activityId)
+GO
+CREATE INDEX idx_pending_task_inbox_act ON pending_task_inbox (tenantid, activityId)
+GO
+
 CREATE TABLE ref_biz_data_inst (
 	tenantid NUMERIC(19, 0) NOT NULL,
   	id NUMERIC(19, 0) NOT NULL,
@@ -721,6 +740,7 @@ CREATE TABLE dependency (
   description NVARCHAR(MAX),
   filename NVARCHAR(255) NOT NULL,
   value_ VARBINARY(MAX) NOT NULL,
+  checksum NVARCHAR(64),
   UNIQUE (tenantId, name),
   PRIMARY KEY (tenantid, id)
 )
@@ -42,6 +42,8 @@ DELETE FROM message_instance WHERE tenantid = ${tenantid}
 GO
 DELETE FROM pending_mapping WHERE tenantid = ${tenantid}
 GO
+DELETE FROM pending_task_inbox WHERE tenantid = ${tenantid}
+GO
 DELETE FROM event_trigger_instance WHERE tenantid = ${tenantid}
 GO
 DELETE FROM waiting_event WHERE tenantid = ${tenantid}
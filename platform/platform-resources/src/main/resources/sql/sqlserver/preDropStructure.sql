@@ -49,6 +49,8 @@ ALTER TABLE pending_mapping DROP CONSTRAINT fk_pending_mapping_tenantId
 GO
 ALTER TABLE pending_mapping DROP CONSTRAINT fk_pending_mapping_flownode_instanceId
 GO
+ALTER TABLE pending_task_inbox DROP CONSTRAINT fk_pending_task_inbox_tenantId
+GO
 ALTER TABLE processcategorymapping DROP CONSTRAINT fk_processcategorymapping_tenantId
 GO
 ALTER TABLE process_comment DROP CONSTRAINT fk_process_comment_tenantId
@@ -0,0 +1,299 @@
+/**
+ * Copyright (C) 2018 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.archive.impl;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.zip.CRC32;
+
+import org.bonitasoft.engine.persistence.ArchivedPersistentObject;
+
+/**
+ * Append only file holding the archived objects of committed transactions until they are written in the archive tables.
+ * <p>
+ * The archived objects of a transaction are appended before it commits, the outcome of the transaction is appended once it completed: only the
+ * archived objects of transactions marked as {@link #COMMITTED} are written again when the journal is opened.
+ * Each record is {@code length, crc32, type, transactionId, payload}. Records appended with {@code sync} are forced to disk before
+ * {@link #append(byte, long, byte[], boolean)} returns; concurrent appends share the same force (group commit).
+ * A record that is not complete, e.g. because of a crash while it was written, ends the journal.
+ */
+final class ArchiveJournal implements Closeable {
+
+    /**
+     * Archived objects of a transaction, appended before the transaction commits
+     */
+    static final byte ENTRIES = 1;
+
+    /**
+     * The transaction committed: its archived objects must be written
+     */
+    static final byte COMMITTED = 4;
+
+    /**
+     * The transaction did not commit: its archived objects must not be written
+     */
+    static final byte ROLLED_BACK = 2;
+
+    /**
+     * The archived objects of the transaction are in the archive tables
+     */
+    static final byte WRITTEN = 3;
+
+    private static final int HEADER_SIZE = 4 + 4;
+
+    private static final int BODY_HEADER_SIZE = 1 + 8;
+
+    private final Path file;
+
+    private final Object writeLock = new Object();
+
+    private final Object syncLock = new Object();
+
+    private final AtomicLong transactionIds = new AtomicLong();
+
+    private FileChannel channel;
+
+    // positions are logical: they keep growing when the file is truncated, so that a position compares to the synced one
+    private long truncatedBytes;
+
+    private volatile long writtenPosition;
+
+    private volatile long syncedPosition;
+
+    ArchiveJournal(final Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Open the journal and read the archived objects that were not written in the archive tables.
+     *
+     * @return the serialized archived objects of the transactions that were not written
+     */
+    Content open() throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        final Content content = new Content();
+        long validLength = 0;
+        long maxTransactionId = 0;
+        if (Files.exists(file)) {
+            final long fileSize = Files.size(file);
+            try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+                while (true) {
+                    final byte[] body = readRecord(input, fileSize - validLength - HEADER_SIZE);
+                    if (body == null) {
+                        break;
+                    }
+                    validLength += HEADER_SIZE + body.length;
+                    final ByteBuffer buffer = ByteBuffer.wrap(body);
+                    final byte type = buffer.get();
+                    final long transactionId = buffer.getLong();
+                    maxTransactionId = Math.max(maxTransactionId, transactionId);
+                    if (type == ENTRIES) {
+                        final byte[] payload = new byte[buffer.remaining()];
+                        buffer.get(payload);
+                        content.inDoubt.put(transactionId, payload);
+                    } else if (type == COMMITTED) {
+                        final byte[] payload = content.inDoubt.remove(transactionId);
+                        if (payload != null) {
+                            content.committed.put(transactionId, payload);
+                        }
+                    } else {
+                        content.inDoubt.remove(transactionId);
+                        content.committed.remove(transactionId);
+                    }
+                }
+            }
+        }
+        transactionIds.set(maxTransactionId);
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        // drop an incomplete record left by a crash
+        channel.truncate(validLength);
+        channel.position(validLength);
+        writtenPosition = validLength;
+        syncedPosition = validLength;
+        return content;
+    }
+
+    private byte[] readRecord(final DataInputStream input, final long remainingBytes) throws IOException {
+        try {
+            final int length = input.readInt();
+            final int crc = input.readInt();
+            if (length < BODY_HEADER_SIZE || length > remainingBytes) {
+                return null;
+            }
+            final byte[] body = new byte[length];
+            input.readFully(body);
+            return crc == crc32(body) ? body : null;
+        } catch (final EOFException e) {
+            return null;
+        }
+    }
+
+    long nextTransactionId() {
+        return transactionIds.incrementAndGet();
+    }
+
+    void append(final byte type, final long transactionId, final byte[] payload, final boolean sync) throws IOException {
+        final int length = BODY_HEADER_SIZE + payload.length;
+        final ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + length);
+        buffer.putInt(length).putInt(0).put(type).putLong(transactionId).put(payload);
+        buffer.putInt(4, crc32(buffer.array(), HEADER_SIZE, length));
+        buffer.flip();
+        final long position;
+        synchronized (writeLock) {
+            if (channel == null) {
+                throw new IOException("The archive journal " + file + " is closed");
+            }
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            position = truncatedBytes + channel.position();
+            writtenPosition = position;
+        }
+        if (sync) {
+            force(position);
+        }
+    }
+
+    private void force(final long position) throws IOException {
+        if (syncedPosition >= position) {
+            return;
+        }
+        synchronized (syncLock) {
+            // an other thread may have forced our record while we were waiting
+            if (syncedPosition >= position) {
+                return;
+            }
+            final long forcedPosition = writtenPosition;
+            channel.force(false);
+            syncedPosition = forcedPosition;
+        }
+    }
+
+    /**
+     * Empty the journal if the condition is true when checked while no record can be appended.
+     */
+    void truncateIf(final BooleanSupplier condition) throws IOException {
+        synchronized (writeLock) {
+            if (channel.position() == 0 || !condition.getAsBoolean()) {
+                return;
+            }
+            truncatedBytes += channel.position();
+            channel.truncate(0);
+            channel.position(0);
+        }
+    }
+
+    long size() throws IOException {
+        synchronized (writeLock) {
+            return channel.position();
+        }
+    }
+
+    Path getFile() {
+        return file;
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (writeLock) {
+            if (channel != null) {
+                channel.force(false);
+                channel.close();
+                channel = null;
+            }
+        }
+    }
+
+    static byte[] serialize(final List<ArchivedPersistentObject> archivedObjects) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+            output.writeObject(new ArrayList<>(archivedObjects));
+        }
+        return bytes.toByteArray();
+    }
+
+    @SuppressWarnings("unchecked")
+    static List<ArchivedPersistentObject> deserialize(final byte[] payload) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream input = new ContextClassLoaderObjectInputStream(new ByteArrayInputStream(payload))) {
+            return (List<ArchivedPersistentObject>) input.readObject();
+        }
+    }
+
+    private static int crc32(final byte[] bytes) {
+        return crc32(bytes, 0, bytes.length);
+    }
+
+    private static int crc32(final byte[] bytes, final int offset, final int length) {
+        final CRC32 crc32 = new CRC32();
+        crc32.update(bytes, offset, length);
+        return (int) crc32.getValue();
+    }
+
+    /**
+     * Archived objects read from the journal when it is opened
+     */
+    static final class Content {
+
+        /**
+         * Transactions that committed but whose archived objects were not written, in the order they committed
+         */
+        final Map<Long, byte[]> committed = new LinkedHashMap<>();
+
+        /**
+         * Transactions whose outcome is unknown: the node stopped while they were completing, they might have been rolled back
+         */
+        final Map<Long, byte[]> inDoubt = new LinkedHashMap<>();
+    }
+
+    private static final class ContextClassLoaderObjectInputStream extends ObjectInputStream {
+
+        ContextClassLoaderObjectInputStream(final InputStream in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected Class<?> resolveClass(final ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            final ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+            if (contextClassLoader != null) {
+                try {
+                    return Class.forName(desc.getName(), false, contextClassLoader);
+                } catch (final ClassNotFoundException e) {
+                    // try with the default resolution
+                }
+            }
+            return super.resolveClass(desc);
+        }
+    }
+
+}
@@ -13,6 +13,8 @@
  **/
 package org.bonitasoft.engine.archive.impl;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 import org.bonitasoft.engine.archive.ArchiveInsertRecord;
@@ -47,13 +49,22 @@ public class ArchiveServiceImpl implements ArchiveService {
 
     private ArchivingStrategy archivingStrategy;
 
+    private final AsyncArchiveWriter asyncArchiveWriter;
+
     public ArchiveServiceImpl(final PersistenceService definitiveArchivePersistenceService,
             final TechnicalLoggerService logger, final ArchivingStrategy archivingStrategy, final UserTransactionService transactionService) {
+        this(definitiveArchivePersistenceService, logger, archivingStrategy, transactionService, null);
+    }
+
+    public ArchiveServiceImpl(final PersistenceService definitiveArchivePersistenceService,
+            final TechnicalLoggerService logger, final ArchivingStrategy archivingStrategy, final UserTransactionService transactionService,
+            final AsyncArchiveWriter asyncArchiveWriter) {
         super();
         this.definitiveArchivePersistenceService = definitiveArchivePersistenceService;
         this.archivingStrategy = archivingStrategy;
         this.logger = logger;
         this.transactionService = transactionService;
+        this.asyncArchiveWriter = asyncArchiveWriter;
     }
 
     @Override
@@ -69,6 +80,10 @@ public class ArchiveServiceImpl implements ArchiveService {
         logBeforeMethod(TechnicalLogSeverity.TRACE, methodName);
         if (records != null) {
             assignArchiveDate(time, records);
+            if (asyncArchiveWriter != null && asyncArchiveWriter.archive(getArchivedObjects(records))) {
+                logAfterMethod(TechnicalLogSeverity.TRACE, methodName);
+                return;
+            }
             final BatchArchiveCallable callable = buildBatchArchiveCallable(records);
 
             try {
@@ -89,6 +104,16 @@ public class ArchiveServiceImpl implements ArchiveService {
         return new BatchArchiveCallable(definitiveArchivePersistenceService, records);
     }
 
+    private List<ArchivedPersistentObject> getArchivedObjects(final ArchiveInsertRecord... records) {
+        final List<ArchivedPersistentObject> archivedObjects = new ArrayList<>(records.length);
+        for (final ArchiveInsertRecord record : records) {
+            if (record != null) {
+                archivedObjects.add(record.getEntity());
+            }
+        }
+        return archivedObjects;
+    }
+
     private void assignArchiveDate(final long time, final ArchiveInsertRecord... records) throws SRecorderException {
         for (final ArchiveInsertRecord record : records) {
             if (record != null) {
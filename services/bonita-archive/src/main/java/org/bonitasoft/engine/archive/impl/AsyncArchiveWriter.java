@@ -0,0 +1,547 @@
+/**
+ * Copyright (C) 2018 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.archive.impl;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.bonitasoft.engine.commons.TenantLifecycleService;
+import org.bonitasoft.engine.commons.exceptions.SBonitaException;
+import org.bonitasoft.engine.commons.exceptions.SBonitaRuntimeException;
+import org.bonitasoft.engine.log.technical.TechnicalLogSeverity;
+import org.bonitasoft.engine.log.technical.TechnicalLoggerService;
+import org.bonitasoft.engine.persistence.ArchivedPersistentObject;
+import org.bonitasoft.engine.persistence.PersistentObject;
+import org.bonitasoft.engine.services.PersistenceService;
+import org.bonitasoft.engine.services.SPersistenceException;
+import org.bonitasoft.engine.sessionaccessor.SessionAccessor;
+import org.bonitasoft.engine.transaction.BonitaTransactionSynchronization;
+import org.bonitasoft.engine.transaction.STransactionNotFoundException;
+import org.bonitasoft.engine.transaction.TransactionState;
+import org.bonitasoft.engine.transaction.UserTransactionService;
+
+/**
+ * Writes archived objects in the archive tables outside of the transaction that archived them.
+ * <p>
+ * Before a transaction commits, its archived objects are appended to a local {@link ArchiveJournal} and forced to disk. Once it committed, they are
+ * handed to a background thread that inserts the archived objects of many transactions at once, in one transaction, grouped by type so that they are
+ * sent in large JDBC batches. Archived objects of committed transactions still in the journal when the tenant starts, e.g. after a crash, are
+ * written first. Transactions that were still completing when the node stopped are not written: the journal is copied aside so that they can be
+ * checked against the database.
+ * <p>
+ * Archived objects that the database refuses stay in the journal and are written again on next start, the journal is then no longer emptied.
+ * <p>
+ * When more than {@code maxPendingArchives} archived objects are waiting to be written, or when the writer is not started, {@link #archive(List)}
+ * refuses the archived objects and the caller writes them in its own transaction, as when this writer is disabled.
+ * Archived objects become visible in the archive tables shortly after the transaction that archived them committed.
+ */
+public class AsyncArchiveWriter implements TenantLifecycleService {
+
+    static final String JOURNAL_FILE_PREFIX = "archive-journal-";
+
+    private static final long RETRY_DELAY = TimeUnit.SECONDS.toMillis(1);
+
+    private static final int MAX_BATCH_ATTEMPTS = 3;
+
+    private static final long STOP_TIMEOUT = TimeUnit.SECONDS.toMillis(30);
+
+    private final PersistenceService persistenceService;
+
+    private final UserTransactionService transactionService;
+
+    private final SessionAccessor sessionAccessor;
+
+    private final TechnicalLoggerService logger;
+
+    private final long tenantId;
+
+    private final boolean enabled;
+
+    private final String journalFolder;
+
+    private final Path journalFile;
+
+    private final int maxPendingArchives;
+
+    private final int maxBatchSize;
+
+    private final ThreadLocal<TransactionArchives> currentTransaction = new ThreadLocal<>();
+
+    private final BlockingDeque<Batch> batches = new LinkedBlockingDeque<>();
+
+    // archived objects of committed transactions not yet written in the archive tables
+    private final AtomicInteger pendingArchives = new AtomicInteger();
+
+    // transactions that archived objects and are not completed yet
+    private final AtomicInteger transactionsInProgress = new AtomicInteger();
+
+    // transactions having archived objects refused by the database, kept in the journal until next start
+    private final AtomicInteger failedTransactions = new AtomicInteger();
+
+    private volatile boolean started;
+
+    // false while stopping: new transactions archive synchronously while the ones already archiving complete
+    private volatile boolean accepting;
+
+    private ArchiveJournal journal;
+
+    private Thread writerThread;
+
+    public AsyncArchiveWriter(final PersistenceService persistenceService, final UserTransactionService transactionService,
+            final SessionAccessor sessionAccessor, final TechnicalLoggerService logger, final long tenantId, final boolean enabled,
+            final String journalFolder, final int maxPendingArchives, final int maxBatchSize) {
+        this.persistenceService = persistenceService;
+        this.transactionService = transactionService;
+        this.sessionAccessor = sessionAccessor;
+        this.logger = logger;
+        this.tenantId = tenantId;
+        this.enabled = enabled;
+        this.journalFolder = journalFolder;
+        this.journalFile = isBlank(journalFolder) ? null : Paths.get(journalFolder, JOURNAL_FILE_PREFIX + tenantId + ".log");
+        this.maxPendingArchives = maxPendingArchives;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * Archive the given objects once the current transaction commits.
+     *
+     * @return false if the archived objects were not taken, the caller must then write them in the current transaction
+     */
+    public boolean archive(final List<ArchivedPersistentObject> archivedObjects) {
+        if (!accepting || pendingArchives.get() >= maxPendingArchives) {
+            return false;
+        }
+        TransactionArchives transactionArchives = currentTransaction.get();
+        if (transactionArchives == null) {
+            // counted before checking the state so that the journal is never closed while the transaction can still append to it
+            transactionsInProgress.incrementAndGet();
+            if (!accepting) {
+                transactionsInProgress.decrementAndGet();
+                return false;
+            }
+            transactionArchives = new TransactionArchives();
+            try {
+                transactionService.registerBonitaSynchronization(transactionArchives);
+            } catch (final STransactionNotFoundException e) {
+                transactionsInProgress.decrementAndGet();
+                return false;
+            }
+            currentTransaction.set(transactionArchives);
+        }
+        return transactionArchives.add(archivedObjects);
+    }
+
+    @Override
+    public synchronized void start() throws SBonitaException {
+        if (!enabled || started) {
+            return;
+        }
+        if (journalFile == null) {
+            throw new SBonitaRuntimeException("The folder of the archive journal must be set with bonita.tenant.archive.async.journalFolder"
+                    + " when archiving in background is enabled, it was '" + journalFolder + "'");
+        }
+        journal = new ArchiveJournal(journalFile);
+        final ArchiveJournal.Content toRecover;
+        try {
+            toRecover = journal.open();
+        } catch (final IOException e) {
+            throw new SBonitaRuntimeException("Unable to open the archive journal " + journalFile, e);
+        }
+        // archived objects not written when it was stopped are read again from the journal
+        batches.clear();
+        pendingArchives.set(0);
+        failedTransactions.set(0);
+        recover(toRecover);
+        writerThread = new Thread(new Writer(), "Bonita-Archive-Writer-" + tenantId);
+        writerThread.setDaemon(true);
+        started = true;
+        accepting = true;
+        writerThread.start();
+    }
+
+    private void recover(final ArchiveJournal.Content toRecover) {
+        boolean unrecoverable = false;
+        if (!toRecover.inDoubt.isEmpty()) {
+            unrecoverable = true;
+            logger.log(getClass(), TechnicalLogSeverity.ERROR, "The outcome of transactions " + toRecover.inDoubt.keySet()
+                    + " is unknown, they were completing when the node stopped. Their archived objects are not written, check in the database if"
+                    + " the elements they archived still exist.");
+        }
+        for (final Map.Entry<Long, byte[]> entry : toRecover.committed.entrySet()) {
+            try {
+                addBatch(new Batch(Collections.singletonList(entry.getKey()), ArchiveJournal.deserialize(entry.getValue()), true));
+            } catch (final IOException | ClassNotFoundException e) {
+                unrecoverable = true;
+                logger.log(getClass(), TechnicalLogSeverity.ERROR, "Unable to read the archived objects of transaction " + entry.getKey()
+                        + " from the archive journal, they will not be archived", e);
+            }
+        }
+        if (unrecoverable) {
+            final Path copy = journalFile.resolveSibling(journalFile.getFileName() + "." + System.currentTimeMillis() + ".unrecovered");
+            try {
+                Files.copy(journalFile, copy);
+                logger.log(getClass(), TechnicalLogSeverity.ERROR, "The archive journal was copied to " + copy);
+            } catch (final IOException e) {
+                logger.log(getClass(), TechnicalLogSeverity.ERROR, "Unable to copy the archive journal to " + copy, e);
+            }
+        }
+        if (!toRecover.committed.isEmpty() && logger.isLoggable(getClass(), TechnicalLogSeverity.INFO)) {
+            logger.log(getClass(), TechnicalLogSeverity.INFO, "Recovered " + pendingArchives.get() + " archived objects from the archive journal "
+                    + journalFile);
+        }
+    }
+
+    @Override
+    public synchronized void stop() throws SBonitaException {
+        if (!started) {
+            return;
+        }
+        final long deadline = System.currentTimeMillis() + STOP_TIMEOUT;
+        // new transactions archive synchronously, the ones already archiving append to the journal until they complete
+        accepting = false;
+        awaitTransactionsInProgress(deadline);
+        // the writer drains what was committed and stops
+        started = false;
+        try {
+            writerThread.join(Math.max(1, deadline - System.currentTimeMillis()));
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writerThread.isAlive()) {
+            logger.log(getClass(), TechnicalLogSeverity.WARNING, "Archive writer did not finish writing, the remaining archived objects will be written"
+                    + " from the archive journal on next start");
+        }
+        writerThread = null;
+        try {
+            journal.close();
+        } catch (final IOException e) {
+            logger.log(getClass(), TechnicalLogSeverity.WARNING, "Unable to close the archive journal " + journalFile, e);
+        }
+    }
+
+    private void awaitTransactionsInProgress(final long deadline) {
+        // the transaction stopping the writer, if it archived objects, completes after the journal is closed and is not waited for
+        final int stoppingTransaction = currentTransaction.get() == null ? 0 : 1;
+        while (transactionsInProgress.get() > stoppingTransaction) {
+            if (System.currentTimeMillis() >= deadline) {
+                logger.log(getClass(), TechnicalLogSeverity.WARNING, (transactionsInProgress.get() - stoppingTransaction)
+                        + " transactions that archived objects did not complete before the archive journal is closed, they will be reported as in doubt"
+                        + " on next start");
+                return;
+            }
+            try {
+                Thread.sleep(10);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void pause() throws SBonitaException {
+        stop();
+    }
+
+    @Override
+    public void resume() throws SBonitaException {
+        start();
+    }
+
+    boolean isStarted() {
+        return started;
+    }
+
+    int getPendingArchives() {
+        return pendingArchives.get();
+    }
+
+    private void addBatch(final Batch batch) {
+        pendingArchives.addAndGet(batch.archivedObjects.size());
+        batches.add(batch);
+    }
+
+    private List<Batch> takeBatches() throws InterruptedException {
+        final Batch first = started ? batches.poll(1, TimeUnit.SECONDS) : batches.poll();
+        if (first == null) {
+            return Collections.emptyList();
+        }
+        final List<Batch> taken = new ArrayList<>();
+        taken.add(first);
+        int size = first.archivedObjects.size();
+        Batch next;
+        while (size < maxBatchSize && (next = batches.poll()) != null) {
+            taken.add(next);
+            size += next.archivedObjects.size();
+        }
+        return taken;
+    }
+
+    void write(final List<Batch> toWrite) throws Exception {
+        final Map<Class<?>, List<PersistentObject>> archivedObjectsByType = new LinkedHashMap<>();
+        for (final Batch batch : toWrite) {
+            for (final ArchivedPersistentObject archivedObject : batch.archivedObjects) {
+                List<PersistentObject> ofType = archivedObjectsByType.get(archivedObject.getClass());
+                if (ofType == null) {
+                    ofType = new ArrayList<>();
+                    archivedObjectsByType.put(archivedObject.getClass(), ofType);
+                }
+                ofType.add(archivedObject);
+            }
+        }
+        executeInTransaction(() -> {
+            for (final List<PersistentObject> ofType : archivedObjectsByType.values()) {
+                persistenceService.insertInBatch(ofType);
+            }
+            return null;
+        });
+    }
+
+    /*
+     * a failing object must not prevent the others from being written: archived objects read from the journal may already be in the archive tables,
+     * and an object that is refused by the database would otherwise block all the others.
+     * The transactions of a refused object are not marked as written, so that it is written again from the journal on next start.
+     */
+    private int writeOneByOne(final List<Batch> toWrite) {
+        int written = 0;
+        for (final Batch batch : toWrite) {
+            for (final ArchivedPersistentObject archivedObject : batch.archivedObjects) {
+                try {
+                    executeInTransaction(() -> {
+                        persistenceService.insert(archivedObject);
+                        return null;
+                    });
+                    written++;
+                } catch (final Exception e) {
+                    if (batch.recovered) {
+                        logger.log(getClass(), TechnicalLogSeverity.WARNING, "Unable to write archived object " + archivedObject.getClass().getSimpleName()
+                                + " with id " + archivedObject.getId() + " read from the archive journal, it might already be archived: " + e.getMessage());
+                    } else {
+                        batch.failed = true;
+                        logger.log(getClass(), TechnicalLogSeverity.ERROR, "Unable to write archived object " + archivedObject.getClass().getSimpleName()
+                                + " with id " + archivedObject.getId() + ", it is kept in the archive journal " + journalFile
+                                + " and will be written again on next start", e);
+                    }
+                }
+            }
+        }
+        return written;
+    }
+
+    private void executeInTransaction(final Callable<Void> callable) throws Exception {
+        sessionAccessor.setTenantId(tenantId);
+        try {
+            transactionService.executeInTransaction(callable);
+        } finally {
+            sessionAccessor.deleteTenantId();
+        }
+    }
+
+    private void markAsWritten(final List<Batch> written) {
+        int count = 0;
+        try {
+            for (final Batch batch : written) {
+                count += batch.archivedObjects.size();
+                if (batch.failed) {
+                    failedTransactions.addAndGet(batch.transactionIds.size());
+                    continue;
+                }
+                for (final Long transactionId : batch.transactionIds) {
+                    journal.append(ArchiveJournal.WRITTEN, transactionId, new byte[0], false);
+                }
+            }
+        } catch (final IOException e) {
+            // archived objects will be written again from the journal on next start
+            logger.log(getClass(), TechnicalLogSeverity.WARNING, "Unable to mark archived objects as written in the archive journal", e);
+        } finally {
+            pendingArchives.addAndGet(-count);
+        }
+        try {
+            journal.truncateIf(() -> pendingArchives.get() == 0 && transactionsInProgress.get() == 0 && failedTransactions.get() == 0);
+        } catch (final IOException e) {
+            logger.log(getClass(), TechnicalLogSeverity.WARNING, "Unable to truncate the archive journal " + journalFile, e);
+        }
+    }
+
+    private final class Writer implements Runnable {
+
+        @Override
+        public void run() {
+            while (true) {
+                final List<Batch> toWrite;
+                try {
+                    toWrite = takeBatches();
+                } catch (final InterruptedException e) {
+                    return;
+                }
+                if (toWrite.isEmpty()) {
+                    if (!started) {
+                        return;
+                    }
+                    continue;
+                }
+                if (!writeWithRetries(toWrite)) {
+                    // stopped while the archive tables were not available, archived objects stay in the journal
+                    return;
+                }
+                markAsWritten(toWrite);
+            }
+        }
+
+        private boolean writeWithRetries(final List<Batch> toWrite) {
+            int attempt = 0;
+            while (true) {
+                attempt++;
+                try {
+                    write(toWrite);
+                    return true;
+                } catch (final Exception e) {
+                    if (containsRecoveredBatch(toWrite) || attempt >= MAX_BATCH_ATTEMPTS) {
+                        // when nothing can be written the database is not available: keep retrying
+                        if (writeOneByOne(toWrite) > 0 || containsRecoveredBatch(toWrite)) {
+                            return true;
+                        }
+                    }
+                    logger.log(AsyncArchiveWriter.class, TechnicalLogSeverity.ERROR, "Unable to write " + toWrite.size()
+                            + " transactions of archived objects, retrying in " + RETRY_DELAY + " ms", e);
+                    if (!started) {
+                        return false;
+                    }
+                    try {
+                        Thread.sleep(RETRY_DELAY);
+                    } catch (final InterruptedException ie) {
+                        return false;
+                    }
+                }
+            }
+        }
+
+        private boolean containsRecoveredBatch(final List<Batch> toWrite) {
+            for (final Batch batch : toWrite) {
+                if (batch.recovered) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Archived objects of one or more transactions, to be written together
+     */
+    static final class Batch {
+
+        final List<Long> transactionIds;
+
+        final List<ArchivedPersistentObject> archivedObjects;
+
+        final boolean recovered;
+
+        // some archived objects were refused by the database
+        boolean failed;
+
+        Batch(final List<Long> transactionIds, final List<ArchivedPersistentObject> archivedObjects, final boolean recovered) {
+            this.transactionIds = transactionIds;
+            this.archivedObjects = archivedObjects;
+            this.recovered = recovered;
+        }
+    }
+
+    /**
+     * Archived objects of the current transaction: journaled before it commits, handed to the writer once it committed.
+     */
+    private final class TransactionArchives implements BonitaTransactionSynchronization {
+
+        private final List<ArchivedPersistentObject> archivedObjects = new ArrayList<>();
+
+        private long transactionId;
+
+        private boolean journaled;
+
+        boolean add(final List<ArchivedPersistentObject> toArchive) {
+            if (journaled) {
+                // archived while the transaction is committing, after the journal was written
+                return false;
+            }
+            archivedObjects.addAll(toArchive);
+            return true;
+        }
+
+        @Override
+        public void beforeCommit() {
+            journaled = true;
+            if (archivedObjects.isEmpty()) {
+                return;
+            }
+            try {
+                final byte[] payload = ArchiveJournal.serialize(archivedObjects);
+                transactionId = journal.nextTransactionId();
+                journal.append(ArchiveJournal.ENTRIES, transactionId, payload, true);
+            } catch (final IOException e) {
+                transactionId = 0;
+                if (logger.isLoggable(AsyncArchiveWriter.class, TechnicalLogSeverity.DEBUG)) {
+                    logger.log(AsyncArchiveWriter.class, TechnicalLogSeverity.DEBUG,
+                            "Unable to journal archived objects, writing them in the current transaction", e);
+                }
+                try {
+                    persistenceService.insertInBatch(new ArrayList<PersistentObject>(archivedObjects));
+                } catch (final SPersistenceException spe) {
+                    throw new SBonitaRuntimeException(spe);
+                }
+            }
+        }
+
+        @Override
+        public void afterCompletion(final TransactionState txState) {
+            if (currentTransaction.get() == this) {
+                currentTransaction.remove();
+            }
+            try {
+                if (transactionId == 0) {
+                    return;
+                }
+                final boolean committed = txState == TransactionState.COMMITTED;
+                try {
+                    journal.append(committed ? ArchiveJournal.COMMITTED : ArchiveJournal.ROLLED_BACK, transactionId, new byte[0], true);
+                } catch (final IOException e) {
+                    logger.log(AsyncArchiveWriter.class, TechnicalLogSeverity.ERROR, "Unable to mark transaction " + transactionId + " as "
+                            + (committed ? "committed" : "rolled back") + " in the archive journal, it will be reported as in doubt if the node stops"
+                            + " before the journal is emptied", e);
+                }
+                if (committed) {
+                    addBatch(new Batch(Collections.singletonList(transactionId), archivedObjects, false));
+                }
+            } finally {
+                transactionsInProgress.decrementAndGet();
+            }
+        }
+    }
+
+    private static boolean isBlank(final String value) {
+        return value == null || value.trim().isEmpty();
+    }
+
+}
@@ -0,0 +1,139 @@
+/**
+ * Copyright (C) 2018 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.archive.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ArchiveJournalTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Path file;
+
+    private ArchiveJournal journal;
+
+    @Before
+    public void before() throws Exception {
+        file = temporaryFolder.getRoot().toPath().resolve("journal.log");
+        journal = new ArchiveJournal(file);
+        journal.open();
+    }
+
+    @After
+    public void after() throws Exception {
+        journal.close();
+    }
+
+    private ArchiveJournal.Content reopen() throws Exception {
+        journal.close();
+        journal = new ArchiveJournal(file);
+        return journal.open();
+    }
+
+    @Test
+    public void open_should_return_entries_of_committed_transactions_not_written() throws Exception {
+        journal.append(ArchiveJournal.ENTRIES, 1, new byte[] { 1 }, true);
+        journal.append(ArchiveJournal.ENTRIES, 2, new byte[] { 2 }, true);
+        journal.append(ArchiveJournal.ENTRIES, 3, new byte[] { 3 }, true);
+        journal.append(ArchiveJournal.COMMITTED, 1, new byte[0], true);
+        journal.append(ArchiveJournal.COMMITTED, 2, new byte[0], true);
+        journal.append(ArchiveJournal.WRITTEN, 1, new byte[0], false);
+        journal.append(ArchiveJournal.ROLLED_BACK, 3, new byte[0], true);
+
+        final ArchiveJournal.Content content = reopen();
+
+        assertThat(content.committed).containsOnlyKeys(2L);
+        assertThat(content.committed.get(2L)).containsExactly(2);
+        assertThat(content.inDoubt).isEmpty();
+    }
+
+    @Test
+    public void open_should_return_apart_entries_of_transactions_not_completed() throws Exception {
+        journal.append(ArchiveJournal.ENTRIES, 1, new byte[] { 1 }, true);
+        journal.append(ArchiveJournal.ENTRIES, 2, new byte[] { 2 }, true);
+        journal.append(ArchiveJournal.COMMITTED, 2, new byte[0], true);
+
+        final ArchiveJournal.Content content = reopen();
+
+        assertThat(content.committed).containsOnlyKeys(2L);
+        assertThat(content.inDoubt).containsOnlyKeys(1L);
+    }
+
+    @Test
+    public void open_should_return_committed_transactions_in_the_order_they_committed() throws Exception {
+        journal.append(ArchiveJournal.ENTRIES, 1, new byte[] { 1 }, true);
+        journal.append(ArchiveJournal.ENTRIES, 2, new byte[] { 2 }, true);
+        journal.append(ArchiveJournal.COMMITTED, 2, new byte[0], true);
+        journal.append(ArchiveJournal.COMMITTED, 1, new byte[0], true);
+
+        assertThat(reopen().committed.keySet()).containsExactly(2L, 1L);
+    }
+
+    @Test
+    public void open_should_ignore_an_incomplete_record_and_continue_after_the_last_complete_one() throws Exception {
+        journal.append(ArchiveJournal.ENTRIES, 1, new byte[] { 1 }, true);
+        journal.append(ArchiveJournal.COMMITTED, 1, new byte[0], true);
+        journal.close();
+        Files.write(file, new byte[] { 0, 0, 0, 42, 1, 2 }, StandardOpenOption.APPEND);
+
+        journal = new ArchiveJournal(file);
+        assertThat(journal.open().committed).containsOnlyKeys(1L);
+        final long transactionId = journal.nextTransactionId();
+        journal.append(ArchiveJournal.ENTRIES, transactionId, new byte[] { 2 }, true);
+        journal.append(ArchiveJournal.COMMITTED, transactionId, new byte[0], true);
+
+        assertThat(reopen().committed).containsOnlyKeys(1L, 2L);
+    }
+
+    @Test
+    public void nextTransactionId_should_continue_after_ids_of_the_journal() throws Exception {
+        journal.append(ArchiveJournal.ENTRIES, 41, new byte[] { 1 }, true);
+
+        reopen();
+
+        assertThat(journal.nextTransactionId()).isEqualTo(42);
+    }
+
+    @Test
+    public void truncateIf_should_empty_the_journal_only_when_condition_is_true() throws Exception {
+        journal.append(ArchiveJournal.ENTRIES, 1, new byte[] { 1 }, true);
+
+        journal.truncateIf(() -> false);
+        assertThat(journal.size()).isGreaterThan(0);
+        journal.truncateIf(() -> true);
+
+        assertThat(journal.size()).isEqualTo(0);
+        assertThat(reopen().inDoubt).isEmpty();
+    }
+
+    @Test
+    public void should_serialize_and_deserialize_archived_objects() throws Exception {
+        final byte[] payload = ArchiveJournal.serialize(Arrays.asList(new SATestObject(1), new SATestObject(2)));
+
+        assertThat(ArchiveJournal.deserialize(payload)).extracting("id").containsExactly(1L, 2L);
+    }
+
+}
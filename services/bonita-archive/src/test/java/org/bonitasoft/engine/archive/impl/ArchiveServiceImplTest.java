@@ -14,6 +14,7 @@
 package org.bonitasoft.engine.archive.impl;
 
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.*;
 
@@ -50,6 +51,32 @@ public class ArchiveServiceImplTest {
         verify(transactionService, times(1)).registerBeforeCommitCallable(eq(mockBatchArchiveCallable));
     }
 
+    @Test
+    public void should_recordInserts_not_register_beforeCommitCallable_when_archived_asynchronously() throws Exception {
+        final UserTransactionService transactionService = mock(UserTransactionService.class);
+        final AsyncArchiveWriter asyncArchiveWriter = mock(AsyncArchiveWriter.class);
+        when(asyncArchiveWriter.archive(anyListOf(ArchivedPersistentObject.class))).thenReturn(true);
+        final ArchiveServiceImpl archiveService = new ArchiveServiceImpl(null, mock(TechnicalLoggerService.class), null, transactionService,
+                asyncArchiveWriter);
+
+        archiveService.recordInserts(3L, new ArchiveInsertRecord(mock(ArchivedPersistentObjectWithSetter.class)));
+
+        verify(asyncArchiveWriter).archive(anyListOf(ArchivedPersistentObject.class));
+        verify(transactionService, never()).registerBeforeCommitCallable(any(BatchArchiveCallable.class));
+    }
+
+    @Test
+    public void should_recordInserts_register_beforeCommitCallable_when_asynchronous_archiving_refuses_archived_objects() throws Exception {
+        final UserTransactionService transactionService = mock(UserTransactionService.class);
+        final AsyncArchiveWriter asyncArchiveWriter = mock(AsyncArchiveWriter.class);
+        final ArchiveServiceImpl archiveService = new ArchiveServiceImpl(null, mock(TechnicalLoggerService.class), null, transactionService,
+                asyncArchiveWriter);
+
+        archiveService.recordInserts(3L, new ArchiveInsertRecord(mock(ArchivedPersistentObjectWithSetter.class)));
+
+        verify(transactionService).registerBeforeCommitCallable(any(BatchArchiveCallable.class));
+    }
+
     // Test with exception on TxService
 
     // Seen with Nicolas C. for this "interface extension" :)
@@ -0,0 +1,167 @@
+/**
+ * Copyright (C) 2018 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.archive.impl;
+
+import static org.mockito.Mockito.mock;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+import org.bonitasoft.engine.archive.ArchiveInsertRecord;
+import org.bonitasoft.engine.log.technical.TechnicalLoggerSLF4JImpl;
+import org.bonitasoft.engine.services.PersistenceService;
+import org.bonitasoft.engine.sessionaccessor.SessionAccessor;
+import org.bonitasoft.engine.transaction.BonitaTransactionSynchronization;
+import org.bonitasoft.engine.transaction.TransactionState;
+import org.bonitasoft.engine.transaction.UserTransactionService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compare the time spent archiving in a transaction with and without {@link AsyncArchiveWriter}, 8 threads committing transactions that archive
+ * {@link #archivedObjectsPerTransaction} objects.
+ * Inserting in the archive tables is simulated by waiting {@link #rowInsertMicros} per row and per statement: synchronous archiving pays it in the
+ * transaction, asynchronous archiving pays a forced write of the journal instead, shared by the transactions committing at the same time.
+ * Run it using {@link #main(String[])}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ArchiveTransactionLatencyBenchmark {
+
+    @Param({ "false", "true" })
+    public boolean async;
+
+    @Param({ "5", "50" })
+    public int archivedObjectsPerTransaction;
+
+    @Param({ "20" })
+    public int rowInsertMicros;
+
+    private final AtomicLong ids = new AtomicLong();
+
+    private final SimulatedTransactionService transactionService = new SimulatedTransactionService();
+
+    private Path journalFolder;
+
+    private AsyncArchiveWriter asyncArchiveWriter;
+
+    private ArchiveServiceImpl archiveService;
+
+    @Setup
+    public void setup() throws Exception {
+        final PersistenceService persistenceService = mock(PersistenceService.class, invocation -> {
+            final Object[] arguments = invocation.getArguments();
+            final int rows = arguments.length == 1 && arguments[0] instanceof List ? ((List<?>) arguments[0]).size() : 1;
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(rowInsertMicros) * (1 + rows));
+            return null;
+        });
+        final TechnicalLoggerSLF4JImpl logger = new TechnicalLoggerSLF4JImpl();
+        journalFolder = Files.createTempDirectory("archive-journal");
+        asyncArchiveWriter = new AsyncArchiveWriter(persistenceService, transactionService, mock(SessionAccessor.class), logger, 1L, async,
+                journalFolder.toString(), Integer.MAX_VALUE, 5000);
+        asyncArchiveWriter.start();
+        archiveService = new ArchiveServiceImpl(persistenceService, logger, new DefaultArchivingStrategy(Collections.<String, Boolean> emptyMap()), transactionService, asyncArchiveWriter);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        asyncArchiveWriter.stop();
+        try (Stream<Path> files = Files.list(journalFolder)) {
+            for (final Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(journalFolder);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void commitTransactionArchivingObjects() throws Exception {
+        final ArchiveInsertRecord[] records = new ArchiveInsertRecord[archivedObjectsPerTransaction];
+        for (int i = 0; i < records.length; i++) {
+            records[i] = new ArchiveInsertRecord(new SATestObject(ids.incrementAndGet()));
+        }
+        archiveService.recordInserts(1L, records);
+        transactionService.commit();
+    }
+
+    /**
+     * Runs the before commit callables and synchronizations registered by the current thread, as the transaction service does when committing.
+     */
+    private static final class SimulatedTransactionService implements UserTransactionService {
+
+        private final ThreadLocal<List<Callable<Void>>> beforeCommitCallables = ThreadLocal.withInitial(ArrayList::new);
+
+        private final ThreadLocal<List<BonitaTransactionSynchronization>> synchronizations = ThreadLocal.withInitial(ArrayList::new);
+
+        @Override
+        public <T> T executeInTransaction(final Callable<T> callable) throws Exception {
+            return callable.call();
+        }
+
+        @Override
+        public void registerBonitaSynchronization(final BonitaTransactionSynchronization txSync) {
+            synchronizations.get().add(txSync);
+        }
+
+        @Override
+        public void registerBeforeCommitCallable(final Callable<Void> callable) {
+            beforeCommitCallables.get().add(callable);
+        }
+
+        void commit() throws Exception {
+            for (final Callable<Void> callable : beforeCommitCallables.get()) {
+                callable.call();
+            }
+            for (final BonitaTransactionSynchronization synchronization : synchronizations.get()) {
+                synchronization.beforeCommit();
+            }
+            for (final BonitaTransactionSynchronization synchronization : synchronizations.get()) {
+                synchronization.afterCompletion(TransactionState.COMMITTED);
+            }
+            beforeCommitCallables.get().clear();
+            synchronizations.get().clear();
+        }
+    }
+
+    public static void main(final String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(ArchiveTransactionLatencyBenchmark.class.getSimpleName()).build()).run();
+    }
+
+}
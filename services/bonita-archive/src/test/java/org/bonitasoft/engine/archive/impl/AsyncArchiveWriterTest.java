@@ -0,0 +1,261 @@
+/**
+ * Copyright (C) 2018 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.archive.impl;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import org.bonitasoft.engine.commons.exceptions.SBonitaRuntimeException;
+import org.bonitasoft.engine.log.technical.TechnicalLoggerService;
+import org.bonitasoft.engine.persistence.ArchivedPersistentObject;
+import org.bonitasoft.engine.persistence.PersistentObject;
+import org.bonitasoft.engine.services.PersistenceService;
+import org.bonitasoft.engine.sessionaccessor.SessionAccessor;
+import org.bonitasoft.engine.transaction.BonitaTransactionSynchronization;
+import org.bonitasoft.engine.transaction.TransactionState;
+import org.bonitasoft.engine.transaction.UserTransactionService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
+
+public class AsyncArchiveWriterTest {
+
+    private static final long TENANT_ID = 12L;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private PersistenceService persistenceService;
+
+    private UserTransactionService transactionService;
+
+    private final List<BonitaTransactionSynchronization> synchronizations = new ArrayList<>();
+
+    private AsyncArchiveWriter asyncArchiveWriter;
+
+    @Before
+    public void before() throws Exception {
+        persistenceService = mock(PersistenceService.class);
+        transactionService = mock(UserTransactionService.class);
+        doAnswer(invocation -> {
+            synchronizations.add(invocation.getArgument(0));
+            return null;
+        }).when(transactionService).registerBonitaSynchronization(any(BonitaTransactionSynchronization.class));
+        doAnswer(invocation -> ((Callable<?>) invocation.getArgument(0)).call()).when(transactionService).executeInTransaction(any(Callable.class));
+        asyncArchiveWriter = createWriter(100);
+    }
+
+    @After
+    public void stopWriter() throws Exception {
+        asyncArchiveWriter.stop();
+    }
+
+    private AsyncArchiveWriter createWriter(final int maxPendingArchives) {
+        return new AsyncArchiveWriter(persistenceService, transactionService, mock(SessionAccessor.class), mock(TechnicalLoggerService.class), TENANT_ID,
+                true, temporaryFolder.getRoot().getAbsolutePath(), maxPendingArchives, 1000);
+    }
+
+    private void completeTransaction(final TransactionState transactionState) {
+        for (final BonitaTransactionSynchronization synchronization : synchronizations) {
+            synchronization.beforeCommit();
+        }
+        for (final BonitaTransactionSynchronization synchronization : synchronizations) {
+            synchronization.afterCompletion(transactionState);
+        }
+        synchronizations.clear();
+    }
+
+    @Test
+    public void should_write_archived_objects_of_the_transaction_in_one_batch_once_committed() throws Exception {
+        asyncArchiveWriter.start();
+
+        assertThat(asyncArchiveWriter.archive(singletonList(new SATestObject(1)))).isTrue();
+        assertThat(asyncArchiveWriter.archive(singletonList(new SATestObject(2)))).isTrue();
+        assertThat(synchronizations).hasSize(1);
+        verify(persistenceService, after(100).never()).insertInBatch(any());
+        completeTransaction(TransactionState.COMMITTED);
+
+        final ArgumentCaptor<List<PersistentObject>> written = ArgumentCaptor.forClass(List.class);
+        verify(persistenceService, timeout(2000)).insertInBatch(written.capture());
+        assertThat(written.getValue()).extracting("id").containsExactly(1L, 2L);
+    }
+
+    @Test
+    public void should_not_write_archived_objects_of_a_rolled_back_transaction() throws Exception {
+        asyncArchiveWriter.start();
+
+        asyncArchiveWriter.archive(singletonList(new SATestObject(1)));
+        completeTransaction(TransactionState.ROLLEDBACK);
+
+        verify(persistenceService, after(500).never()).insertInBatch(any());
+        assertThat(asyncArchiveWriter.getPendingArchives()).isEqualTo(0);
+    }
+
+    @Test
+    public void should_refuse_archived_objects_when_not_started() {
+        assertThat(asyncArchiveWriter.archive(singletonList(new SATestObject(1)))).isFalse();
+    }
+
+    @Test
+    public void should_refuse_archived_objects_when_too_many_are_waiting_to_be_written() throws Exception {
+        doThrow(new IllegalStateException("database not available")).when(persistenceService).insertInBatch(any());
+        asyncArchiveWriter = createWriter(2);
+        asyncArchiveWriter.start();
+        asyncArchiveWriter.archive(asList(new SATestObject(1), new SATestObject(2)));
+        completeTransaction(TransactionState.COMMITTED);
+
+        assertThat(asyncArchiveWriter.archive(singletonList(new SATestObject(3)))).isFalse();
+    }
+
+    @Test
+    public void should_write_on_start_archived_objects_left_in_the_journal() throws Exception {
+        doThrow(new IllegalStateException("database not available")).when(persistenceService).insertInBatch(any());
+        asyncArchiveWriter.start();
+        asyncArchiveWriter.archive(asList(new SATestObject(1), new SATestObject(2)));
+        completeTransaction(TransactionState.COMMITTED);
+        verify(persistenceService, timeout(2000)).insertInBatch(any());
+        asyncArchiveWriter.stop();
+
+        persistenceService = mock(PersistenceService.class);
+        asyncArchiveWriter = createWriter(100);
+        asyncArchiveWriter.start();
+
+        final ArgumentCaptor<List<PersistentObject>> written = ArgumentCaptor.forClass(List.class);
+        verify(persistenceService, timeout(2000)).insertInBatch(written.capture());
+        assertThat(written.getValue()).extracting("id").containsExactly(1L, 2L);
+    }
+
+    @Test
+    public void should_write_one_by_one_archived_objects_of_the_journal_that_might_already_be_written() throws Exception {
+        doThrow(new IllegalStateException("database not available")).when(persistenceService).insertInBatch(any());
+        asyncArchiveWriter.start();
+        asyncArchiveWriter.archive(asList(new SATestObject(1), new SATestObject(2)));
+        completeTransaction(TransactionState.COMMITTED);
+        verify(persistenceService, timeout(2000)).insertInBatch(any());
+        asyncArchiveWriter.stop();
+
+        // object 1 was written but the writer stopped before marking it as written
+        persistenceService = mock(PersistenceService.class);
+        doThrow(new IllegalStateException("duplicate key")).when(persistenceService).insertInBatch(any());
+        doThrow(new IllegalStateException("duplicate key")).when(persistenceService).insert(any(SATestObject.class));
+        asyncArchiveWriter = createWriter(100);
+        asyncArchiveWriter.start();
+
+        verify(persistenceService, timeout(2000).times(2)).insert(any(PersistentObject.class));
+    }
+
+    @Test
+    public void should_not_write_on_start_archived_objects_of_transactions_that_did_not_complete() throws Exception {
+        asyncArchiveWriter.start();
+        asyncArchiveWriter.archive(asList(new SATestObject(1), new SATestObject(2)));
+        // the node stops while the transaction commits
+        synchronizations.get(0).beforeCommit();
+        asyncArchiveWriter.stop();
+
+        asyncArchiveWriter = createWriter(100);
+        asyncArchiveWriter.start();
+
+        verify(persistenceService, after(500).never()).insertInBatch(any());
+        verify(persistenceService, never()).insert(any(PersistentObject.class));
+        assertThat(temporaryFolder.getRoot().list()).anyMatch(name -> name.endsWith(".unrecovered"));
+    }
+
+    @Test
+    public void should_wait_for_transactions_archiving_objects_to_complete_before_pausing() throws Exception {
+        asyncArchiveWriter.start();
+        final Thread transaction = new Thread(() -> {
+            asyncArchiveWriter.archive(asList(new SATestObject(1), new SATestObject(2)));
+            synchronizations.get(0).beforeCommit();
+        });
+        transaction.start();
+        transaction.join();
+        final Thread pause = new Thread(() -> {
+            try {
+                asyncArchiveWriter.pause();
+            } catch (final Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        pause.start();
+        pause.join(200);
+
+        assertThat(pause.isAlive()).isTrue();
+        assertThat(asyncArchiveWriter.archive(singletonList(new SATestObject(3)))).isFalse();
+        synchronizations.get(0).afterCompletion(TransactionState.COMMITTED);
+        pause.join(2000);
+
+        assertThat(pause.isAlive()).isFalse();
+        final ArgumentCaptor<List<PersistentObject>> written = ArgumentCaptor.forClass(List.class);
+        verify(persistenceService).insertInBatch(written.capture());
+        assertThat(written.getValue()).extracting("id").containsExactly(1L, 2L);
+    }
+
+    @Test
+    public void should_write_on_start_archived_objects_refused_by_the_database() throws Exception {
+        final SATestObject refused = new SATestObject(2);
+        doThrow(new IllegalStateException("value too large")).when(persistenceService).insertInBatch(any());
+        doThrow(new IllegalStateException("value too large")).when(persistenceService).insert(refused);
+        asyncArchiveWriter.start();
+        asyncArchiveWriter.archive(asList(new SATestObject(1), refused));
+        completeTransaction(TransactionState.COMMITTED);
+        verify(persistenceService, timeout(5000)).insert(refused);
+        asyncArchiveWriter.stop();
+
+        persistenceService = mock(PersistenceService.class);
+        asyncArchiveWriter = createWriter(100);
+        asyncArchiveWriter.start();
+
+        final ArgumentCaptor<List<PersistentObject>> written = ArgumentCaptor.forClass(List.class);
+        verify(persistenceService, timeout(2000)).insertInBatch(written.capture());
+        assertThat(written.getValue()).extracting("id").containsExactly(1L, 2L);
+    }
+
+    @Test(expected = SBonitaRuntimeException.class)
+    public void should_not_start_when_enabled_without_journal_folder() throws Exception {
+        asyncArchiveWriter = new AsyncArchiveWriter(persistenceService, transactionService, mock(SessionAccessor.class),
+                mock(TechnicalLoggerService.class), TENANT_ID, true, "", 100, 1000);
+
+        asyncArchiveWriter.start();
+    }
+
+    @Test
+    public void should_archive_synchronously_when_disabled() throws Exception {
+        asyncArchiveWriter = new AsyncArchiveWriter(persistenceService, transactionService, mock(SessionAccessor.class),
+                mock(TechnicalLoggerService.class), TENANT_ID, false, temporaryFolder.getRoot().getAbsolutePath(), 100, 1000);
+        asyncArchiveWriter.start();
+
+        assertThat(asyncArchiveWriter.isStarted()).isFalse();
+        assertThat(asyncArchiveWriter.archive(singletonList(new SATestObject(1)))).isFalse();
+        verify(transactionService, never()).registerBonitaSynchronization(any(BonitaTransactionSynchronization.class));
+        verify(persistenceService, times(0)).insert(any(ArchivedPersistentObject.class));
+    }
+
+}
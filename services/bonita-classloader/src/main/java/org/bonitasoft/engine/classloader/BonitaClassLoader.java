@@ -15,22 +15,23 @@ package org.bonitasoft.engine.classloader;
 
 import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.IOException;
 import java.io.InputStream;
-import java.net.URI;
+import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.Collection;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Map;
-import java.util.Set;
 import java.util.UUID;
 
-import org.apache.commons.io.FileUtils;
 import org.bonitasoft.engine.commons.NullCheckingUtil;
-import org.bonitasoft.engine.commons.io.IOUtil;
 import org.bonitasoft.engine.exception.BonitaRuntimeException;
 
 /**
+ * ClassLoader of an artifact (process, tenant...)
+ * <p>
+ * Jars are read directly from the files of the {@link JarStore}: they are only opened when a class or a resource is looked up for the first time
+ * and they are not deleted when the classloader is destroyed since they can be shared with other classloaders.
+ *
  * @author Elias Ricken de Medeiros
  * @author Charles Souillard
  * @author Baptiste Mesta
@@ -44,81 +45,45 @@ public class BonitaClassLoader extends MonoParentJarFileClassLoader {
 
     protected Map<String, byte[]> nonJarResources;
 
-    protected Set<URL> urls;
-
-    private File temporaryDirectory;
-
     private boolean isActive = true;
 
     private final long creationTime;
 
     private String uuid;
 
-    BonitaClassLoader(final Map<String, byte[]> resources, final String type, final long id, final URI temporaryDirectoryUri, final ClassLoader parent) {
+    /**
+     * @param jars jar files of this classloader, usually taken from the {@link JarStore}
+     * @param nonJarResources resources that are not jars, kept in memory
+     */
+    BonitaClassLoader(final Collection<File> jars, final Map<String, byte[]> nonJarResources, final String type, final long id,
+            final ClassLoader parent) {
         super(type + "__" + id, new URL[] {}, parent);
         this.creationTime = System.currentTimeMillis();
-        NullCheckingUtil.checkArgsNotNull(resources, type, id, temporaryDirectoryUri, parent);
+        NullCheckingUtil.checkArgsNotNull(jars, nonJarResources, type, id, parent);
         this.type = type;
         this.id = id;
         this.uuid = generateUUID();
-
-        nonJarResources = new HashMap<>();
-        urls = new HashSet<>();
-        this.temporaryDirectory = createTemporaryDirectory(temporaryDirectoryUri);
-        addResources(resources);
-        addURLs(urls.toArray(new URL[urls.size()]));
+        this.nonJarResources = new HashMap<>(nonJarResources);
+        addURLs(toURLs(jars));
     }
 
-    private File createTemporaryDirectory(URI temporaryDirectoryUri) {
-        File temporaryDirectory = new File(temporaryDirectoryUri);
-        if (!temporaryDirectory.exists()) {
-            temporaryDirectory.mkdirs();
-        }
-        temporaryDirectory = createFolderFromUUID(temporaryDirectory, uuid);
-        if (temporaryDirectory.exists()) {
-            uuid = generateUUID();
-            //retry
-            return createTemporaryDirectory(temporaryDirectoryUri);
+    private URL[] toURLs(final Collection<File> jars) {
+        final URL[] urls = new URL[jars.size()];
+        int i = 0;
+        for (final File jar : jars) {
+            try {
+                urls[i++] = jar.toURI().toURL();
+            } catch (final MalformedURLException e) {
+                throw new BonitaRuntimeException(e);
+            }
         }
-        temporaryDirectory.mkdir();
-        return temporaryDirectory;
-    }
-
-    private File createFolderFromUUID(File temporaryDirectory, String uuid) {
-        return new File(temporaryDirectory, uuid.substring(0, 5));
+        return urls;
     }
 
     String generateUUID() {
         return UUID.randomUUID().toString();
     }
 
-    protected void addResources(final Map<String, byte[]> resources) {
-        if (resources == null) {
-            return;
-        }
-        for (final Map.Entry<String, byte[]> resource : resources.entrySet()) {
-            if (resource.getKey().matches(".*\\.jar")) {
-                final byte[] data = resource.getValue();
-                try {
-                    final File file = writeResource(resource, data);
-                    final String path = file.getAbsolutePath();
-                    final URL url = new File(path).toURI().toURL();
-                    urls.add(url);
-                } catch (final IOException e) {
-                    throw new BonitaRuntimeException(e);
-                }
-            } else {
-                nonJarResources.put(resource.getKey(), resource.getValue());
-            }
-        }
-    }
-
-    File writeResource(Map.Entry<String, byte[]> resource, byte[] data) throws IOException {
-        final File file = File.createTempFile(resource.getKey(), ".jar", temporaryDirectory);
-        IOUtil.write(file, data);
-        return file;
-    }
-
     @Override
     public InputStream getResourceAsStream(final String name) {
         InputStream is = getInternalInputstream(name);
@@ -179,7 +144,6 @@ public class BonitaClassLoader extends MonoParentJarFileClassLoader {
     @Override
     public void destroy() {
         super.destroy();
-        FileUtils.deleteQuietly(temporaryDirectory);
         isActive = false;
     }
 
@@ -191,10 +155,6 @@ public class BonitaClassLoader extends MonoParentJarFileClassLoader {
         return type;
     }
 
-    public File getTemporaryFolder() {
-        return temporaryDirectory;
-    }
-
     @Override
     public String toString() {
         return super.toString() + ", uuid=" + uuid + ", creationTime=" + creationTime + ", type=" + type + ", id=" + id + ", isActive: " + isActive
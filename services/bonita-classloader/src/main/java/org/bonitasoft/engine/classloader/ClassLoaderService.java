@@ -13,6 +13,8 @@
  **/
 package org.bonitasoft.engine.classloader;
 
+import java.io.File;
+import java.util.List;
 import java.util.Map;
 
 import org.bonitasoft.engine.commons.PlatformLifecycleService;
@@ -70,6 +72,26 @@ public interface ClassLoaderService extends PlatformLifecycleService {
 
     void refreshLocalClassLoader(final String type, final long id, final Map<String, byte[]> resources) throws SClassLoaderException;
 
+    /**
+     * Refresh the local ClassLoader using jars that are already in the {@link JarStore}
+     *
+     * @param type      The classloader's type identifier
+     * @param id        The local ClassLoader's id
+     * @param jars      files of the jars, taken from the jar store
+     * @param resources resources that are not jars
+     * @throws SClassLoaderException Error thrown if it's impossible to refresh the ClassLoader
+     * @since 7.7.2
+     */
+    void refreshLocalClassLoader(final String type, final long id, final List<File> jars, final Map<String, byte[]> resources)
+            throws SClassLoaderException;
+
+    /**
+     * @return the store in which the jars used by the classloaders are kept, shared by all classloaders and reused between restarts
+     * @throws SClassLoaderException if the store folder can't be accessed
+     * @since 7.7.2
+     */
+    JarStore getJarStore() throws SClassLoaderException;
+
     /**
      * add listener on a classloader
      *
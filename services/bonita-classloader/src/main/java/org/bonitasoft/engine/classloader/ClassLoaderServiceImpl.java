@@ -13,20 +13,29 @@
  **/
 package org.bonitasoft.engine.classloader;
 
+import java.io.File;
 import java.io.IOException;
-import java.net.URI;
+import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.bonitasoft.engine.classloader.listeners.ClassReflectorClearer;
 import org.bonitasoft.engine.classloader.listeners.JacksonCacheClearer;
 import org.bonitasoft.engine.commons.NullCheckingUtil;
 import org.bonitasoft.engine.events.EventService;
 import org.bonitasoft.engine.events.model.SEvent;
-import org.bonitasoft.engine.exception.BonitaHomeNotSetException;
 import org.bonitasoft.engine.home.BonitaHomeServer;
 import org.bonitasoft.engine.log.technical.TechnicalLogSeverity;
 import org.bonitasoft.engine.log.technical.TechnicalLoggerService;
@@ -38,22 +47,27 @@ import org.bonitasoft.engine.log.technical.TechnicalLoggerService;
  */
 public class ClassLoaderServiceImpl implements ClassLoaderService {
 
+    private static final long CREATION_TIMEOUT_SECONDS = 30;
+
     private final ParentClassLoaderResolver parentClassLoaderResolver;
 
     private final TechnicalLoggerService logger;
 
     private VirtualClassLoader virtualGlobalClassLoader = new VirtualClassLoader(ClassLoaderIdentifier.GLOBAL_TYPE, ClassLoaderIdentifier.GLOBAL_ID, VirtualClassLoader.class.getClassLoader());
 
-    private final Map<ClassLoaderIdentifier, VirtualClassLoader> localClassLoaders = new HashMap<>();
-
-    private final Set<ClassLoaderListener> globalListeners = new HashSet<>();
+    /**
+     * Local classloaders by identifier. Lookups of existing classloaders do not take any lock: the creation of a missing classloader is registered
+     * as a future so that it is done only once and only threads asking for this classloader wait for it.
+     */
+    private final ConcurrentMap<ClassLoaderIdentifier, FutureTask<VirtualClassLoader>> localClassLoaders = new ConcurrentHashMap<>();
 
-    private final Object mutex = new ClassLoaderServiceMutex();
+    private final Set<ClassLoaderListener> globalListeners = new CopyOnWriteArraySet<>();
 
-    private boolean shuttingDown = false;
+    private volatile boolean shuttingDown = false;
 
     private final EventService eventService;
     private boolean traceEnabled;
+    private volatile JarStore jarStore;
 
     public ClassLoaderServiceImpl(final ParentClassLoaderResolver parentClassLoaderResolver, final TechnicalLoggerService logger,
                                   final EventService eventService) {
@@ -66,10 +80,6 @@ public class ClassLoaderServiceImpl implements ClassLoaderService {
         // BS-9304 : Create the temporary directory with the IOUtil class, to delete it at the end of the JVM
     }
 
-    private static final class ClassLoaderServiceMutex {
-
-    }
-
     private ClassLoaderIdentifier getKey(final String type, final long id) {
         return new ClassLoaderIdentifier(type, id);
     }
@@ -108,24 +118,80 @@ public class ClassLoaderServiceImpl implements ClassLoaderService {
 
     private VirtualClassLoader getLocalClassLoader(ClassLoaderIdentifier key) {
         warnOnShuttingDown(key);
-        if (!localClassLoaders.containsKey(key)) {
-            synchronized (mutex) {
-                // double check synchronization
-                if (!localClassLoaders.containsKey(key)) {
-                    createClassLoader(key);
-                }
+        FutureTask<VirtualClassLoader> creation = localClassLoaders.get(key);
+        if (creation == null) {
+            final FutureTask<VirtualClassLoader> newCreation = new FutureTask<>(() -> createClassLoader(key));
+            creation = localClassLoaders.putIfAbsent(key, newCreation);
+            if (creation == null) {
+                // the parent is created (if needed) by this thread, outside of any map operation
+                creation = newCreation;
+                newCreation.run();
             }
         }
-        return localClassLoaders.get(key);
+        return getCreatedClassLoader(key, creation);
     }
 
-    private void createClassLoader(ClassLoaderIdentifier identifier) {
+    private VirtualClassLoader getCreatedClassLoader(ClassLoaderIdentifier key, FutureTask<VirtualClassLoader> creation) {
+        try {
+            return creation.get();
+        } catch (final ExecutionException e) {
+            // let an other call retry the creation
+            localClassLoaders.remove(key, creation);
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException("Unable to create classloader " + key, cause);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the creation of classloader " + key, e);
+        }
+    }
+
+    private VirtualClassLoader createClassLoader(ClassLoaderIdentifier identifier) {
         if (traceEnabled) {
             logger.log(this.getClass(), TechnicalLogSeverity.TRACE, "creating classloader with key " + identifier);
         }
-        VirtualClassLoader parent = getParentClassLoader(identifier);
-        final VirtualClassLoader virtualClassLoader = new VirtualClassLoader(identifier.getType(), identifier.getId(), parent);
-        localClassLoaders.put(identifier, virtualClassLoader);
+        final ClassLoaderIdentifier parentIdentifier = parentClassLoaderResolver.getParentClassLoaderIdentifier(identifier);
+        NullCheckingUtil.checkArgsNotNull(parentIdentifier);
+        if (ClassLoaderIdentifier.GLOBAL.equals(parentIdentifier)) {
+            return new VirtualClassLoader(identifier.getType(), identifier.getId(), getVirtualGlobalClassLoader());
+        }
+        while (true) {
+            final VirtualClassLoader parent = getLocalClassLoader(parentIdentifier);
+            // registered as a child of the parent while the parent can't be removed, see destroyLocalClassLoader
+            final AtomicReference<VirtualClassLoader> created = new AtomicReference<>();
+            localClassLoaders.computeIfPresent(parentIdentifier, (parentKey, parentCreation) -> {
+                if (getExistingClassLoader(parentCreation) == parent) {
+                    created.set(new VirtualClassLoader(identifier.getType(), identifier.getId(), parent));
+                }
+                return parentCreation;
+            });
+            if (created.get() != null) {
+                return created.get();
+            }
+            // the parent was removed since it was read: use the new one
+        }
+    }
+
+    /**
+     * @return the classloader if it exists and is completely created, null otherwise
+     */
+    private VirtualClassLoader getExistingClassLoader(FutureTask<VirtualClassLoader> creation) {
+        if (creation == null || !creation.isDone()) {
+            return null;
+        }
+        try {
+            return creation.get();
+        } catch (final ExecutionException e) {
+            return null;
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
     }
 
     private VirtualClassLoader getParentClassLoader(ClassLoaderIdentifier identifier) {
@@ -156,13 +222,27 @@ public class ClassLoaderServiceImpl implements ClassLoaderService {
         if (traceEnabled) {
             logger.log(this.getClass(), TechnicalLogSeverity.TRACE, "Destroying local classloader with key: " + key);
         }
-        final VirtualClassLoader localClassLoader = localClassLoaders.get(key);
-        if (localClassLoader != null) {
-            if (localClassLoader.hasChildren()) {
-                throw new SClassLoaderException("Unable to delete classloader " + key + " because it has children: " + localClassLoader.getChildren());
+        // removed only if it has no children, atomically with the registration of new children, see createClassLoader
+        final AtomicReference<VirtualClassLoader> removed = new AtomicReference<>();
+        final AtomicReference<VirtualClassLoader> withChildren = new AtomicReference<>();
+        localClassLoaders.computeIfPresent(key, (k, creation) -> {
+            final VirtualClassLoader classLoader = getExistingClassLoader(creation);
+            if (classLoader == null) {
+                return creation;
             }
+            if (classLoader.hasChildren()) {
+                withChildren.set(classLoader);
+                return creation;
+            }
+            removed.set(classLoader);
+            return null;
+        });
+        if (withChildren.get() != null) {
+            throw new SClassLoaderException("Unable to delete classloader " + key + " because it has children: " + withChildren.get().getChildren());
+        }
+        final VirtualClassLoader localClassLoader = removed.get();
+        if (localClassLoader != null) {
             localClassLoader.destroy();
-            localClassLoaders.remove(key);
             for (ClassLoaderListener globalListener : globalListeners) {
                 globalListener.onDestroy(localClassLoader);
             }
@@ -176,8 +256,10 @@ public class ClassLoaderServiceImpl implements ClassLoaderService {
         }
         final VirtualClassLoader virtualClassloader = (VirtualClassLoader) getGlobalClassLoader();
         try {
-            refreshClassLoader(virtualClassloader, resources, getGlobalClassLoaderType(), getGlobalClassLoaderId(),
-                    BonitaHomeServer.getInstance().getGlobalTemporaryFolder(),
+            final List<File> jars = new ArrayList<>();
+            final Map<String, byte[]> nonJarResources = new HashMap<>();
+            storeJars(resources, jars, nonJarResources);
+            refreshClassLoader(virtualClassloader, jars, nonJarResources, getGlobalClassLoaderType(), getGlobalClassLoaderId(),
                     ClassLoaderServiceImpl.class.getClassLoader());
         } catch (Exception e) {
             throw new SClassLoaderException(e);
@@ -186,14 +268,26 @@ public class ClassLoaderServiceImpl implements ClassLoaderService {
 
     @Override
     public void refreshLocalClassLoader(final String type, final long id, final Map<String, byte[]> resources) throws SClassLoaderException {
+        final List<File> jars = new ArrayList<>();
+        final Map<String, byte[]> nonJarResources = new HashMap<>();
+        try {
+            storeJars(resources, jars, nonJarResources);
+        } catch (IOException e) {
+            throw new SClassLoaderException(e);
+        }
+        refreshLocalClassLoader(type, id, jars, nonJarResources);
+    }
+
+    @Override
+    public void refreshLocalClassLoader(final String type, final long id, final List<File> jars, final Map<String, byte[]> resources)
+            throws SClassLoaderException {
         final ClassLoaderIdentifier key = getKey(type, id);
         if (traceEnabled) {
             logger.log(this.getClass(), TechnicalLogSeverity.TRACE, "Refreshing local classloader with key: " + key);
         }
         final VirtualClassLoader virtualClassloader = getLocalClassLoader(type, id);
         try {
-            refreshClassLoader(virtualClassloader, resources, type, id, getLocalTemporaryFolder(type, id),
-                    getParentClassLoader(key));
+            refreshClassLoader(virtualClassloader, jars, resources, type, id, getParentClassLoader(key));
             final SEvent event = new SEvent("ClassLoaderRefreshed");
             event.setObject(key);
             eventService.fireEvent(event);
@@ -202,15 +296,45 @@ public class ClassLoaderServiceImpl implements ClassLoaderService {
         }
     }
 
-    protected URI getLocalTemporaryFolder(String type, long id) throws BonitaHomeNotSetException, IOException {
-        return BonitaHomeServer.getInstance().getLocalTemporaryFolder(type, id);
+    private void storeJars(final Map<String, byte[]> resources, final List<File> jars, final Map<String, byte[]> nonJarResources)
+            throws SClassLoaderException, IOException {
+        if (resources == null) {
+            return;
+        }
+        for (final Map.Entry<String, byte[]> resource : resources.entrySet()) {
+            if (resource.getKey().matches(".*\\.jar")) {
+                jars.add(getJarStore().store(resource.getValue()));
+            } else {
+                nonJarResources.put(resource.getKey(), resource.getValue());
+            }
+        }
+    }
+
+    @Override
+    public JarStore getJarStore() throws SClassLoaderException {
+        if (jarStore == null) {
+            synchronized (this) {
+                if (jarStore == null) {
+                    try {
+                        jarStore = new JarStore(getJarStoreFolder());
+                    } catch (IOException e) {
+                        throw new SClassLoaderException(e);
+                    }
+                }
+            }
+        }
+        return jarStore;
+    }
+
+    protected File getJarStoreFolder() throws IOException {
+        return BonitaHomeServer.getInstance().getJarStoreFolder();
     }
 
-    private void refreshClassLoader(final VirtualClassLoader virtualClassloader, final Map<String, byte[]> resources, final String type, final long id,
-                                    final URI temporaryFolder, final ClassLoader parent) {
-        final BonitaClassLoader classLoader = new BonitaClassLoader(resources, type, id, temporaryFolder, parent);
+    private void refreshClassLoader(final VirtualClassLoader virtualClassloader, final List<File> jars, final Map<String, byte[]> nonJarResources,
+                                    final String type, final long id, final ClassLoader parent) {
+        final BonitaClassLoader classLoader = new BonitaClassLoader(jars, nonJarResources, type, id, parent);
         virtualClassloader.replaceClassLoader(classLoader);
-        for (ClassLoaderListener globalListener : new HashSet<>(globalListeners)) {
+        for (ClassLoaderListener globalListener : globalListeners) {
             globalListener.onUpdate(virtualClassloader);
         }
     }
@@ -239,19 +363,55 @@ public class ClassLoaderServiceImpl implements ClassLoaderService {
         }
         //remove elements only that don't have children
         //there is no loop in this so the algorithm finishes
-        final Set<Map.Entry<ClassLoaderIdentifier, VirtualClassLoader>> entries = localClassLoaders.entrySet();
+        final Set<Map.Entry<ClassLoaderIdentifier, FutureTask<VirtualClassLoader>>> entries = localClassLoaders.entrySet();
         while (!entries.isEmpty()) {
-            final Iterator<Map.Entry<ClassLoaderIdentifier, VirtualClassLoader>> iterator = entries.iterator();
+            final Iterator<Map.Entry<ClassLoaderIdentifier, FutureTask<VirtualClassLoader>>> iterator = entries.iterator();
             while (iterator.hasNext()) {
-                Map.Entry<ClassLoaderIdentifier, VirtualClassLoader> next = iterator.next();
-                if (!next.getValue().hasChildren()) {
-                    next.getValue().destroy();
+                final Map.Entry<ClassLoaderIdentifier, FutureTask<VirtualClassLoader>> entry = iterator.next();
+                final FutureTask<VirtualClassLoader> creation = entry.getValue();
+                if (!creation.isDone()) {
+                    // wait for the creation to finish so that it is destroyed too
+                    try {
+                        creation.get(CREATION_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                    } catch (final ExecutionException e) {
+                        // creation failed, removed below
+                    } catch (final TimeoutException e) {
+                        logger.log(getClass(), TechnicalLogSeverity.WARNING, "Classloader " + entry.getKey() + " was not created after "
+                                + CREATION_TIMEOUT_SECONDS + " seconds, it will not be destroyed");
+                        iterator.remove();
+                        continue;
+                    } catch (final InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new SClassLoaderException("Interrupted while waiting for the creation of classloader " + entry.getKey(), e);
+                    }
+                }
+                final VirtualClassLoader classLoader = getExistingClassLoader(creation);
+                if (classLoader == null) {
+                    // creation failed
                     iterator.remove();
+                } else if (removeIfHasNoChildren(entry.getKey(), creation, classLoader)) {
+                    classLoader.destroy();
                 }
             }
         }
     }
 
+    /**
+     * remove the classloader atomically with the registration of new children, see createClassLoader
+     */
+    private boolean removeIfHasNoChildren(final ClassLoaderIdentifier key, final FutureTask<VirtualClassLoader> creation,
+            final VirtualClassLoader classLoader) {
+        final AtomicBoolean removed = new AtomicBoolean();
+        localClassLoaders.computeIfPresent(key, (k, current) -> {
+            if (current != creation || classLoader.hasChildren()) {
+                return current;
+            }
+            removed.set(true);
+            return null;
+        });
+        return removed.get();
+    }
+
     @Override
     public void pause() {
     }
@@ -0,0 +1,144 @@
+/**
+ * Copyright (C) 2018 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.classloader;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.bonitasoft.engine.commons.io.IOUtil;
+
+/**
+ * Folder holding the jars used by the classloaders, each jar being stored once in a file named after the SHA-256 checksum of its content.
+ * <p>
+ * Jars shared by several classloaders are written only once and a jar already present in the store is never written again, even after a restart.
+ * Files are never modified once written: they are first written in a temporary file that is then atomically moved in the store.
+ * <p>
+ * The content of a file found in the store is checked against its checksum before it is used for the first time by this JVM: a file that was
+ * truncated or replaced is never given to a classloader, it is written again from the content read from the database.
+ */
+public class JarStore {
+
+    private static final String JAR_EXTENSION = ".jar";
+
+    private final File folder;
+
+    private final Set<String> verifiedChecksums = ConcurrentHashMap.newKeySet();
+
+    public JarStore(File folder) {
+        this.folder = folder;
+    }
+
+    public File getFolder() {
+        return folder;
+    }
+
+    /**
+     * @param checksum the SHA-256 checksum of the jar, as computed by {@link IOUtil#sha256(byte[])}
+     * @return the file of the jar having this checksum or null if this jar is not in the store or if its content does not match the checksum
+     */
+    public File get(String checksum) {
+        if (checksum == null) {
+            return null;
+        }
+        final File file = getFile(checksum);
+        return isValid(file, checksum) ? file : null;
+    }
+
+    /**
+     * Put the jar in the store if it is not already there
+     *
+     * @param content content of the jar
+     * @return the file of the jar in the store
+     */
+    public File store(byte[] content) throws IOException {
+        final String checksum = IOUtil.sha256(content);
+        final File file = getFile(checksum);
+        if (isValid(file, checksum)) {
+            return file;
+        }
+        if (!folder.exists() && !folder.mkdirs() && !folder.exists()) {
+            throw new IOException("Unable to create the jar store folder " + folder.getAbsolutePath());
+        }
+        final File temporaryFile = File.createTempFile(checksum, ".tmp", folder);
+        try {
+            IOUtil.write(temporaryFile, content);
+            move(temporaryFile, file);
+            verifiedChecksums.add(checksum);
+        } catch (IOException e) {
+            // the same jar might have been stored concurrently by another classloader or another engine
+            if (!isValid(file, checksum)) {
+                throw e;
+            }
+        } finally {
+            Files.deleteIfExists(temporaryFile.toPath());
+        }
+        return file;
+    }
+
+    private void move(File source, File target) throws IOException {
+        try {
+            // an atomic move replaces the target file on POSIX file systems, e.g. a file whose content does not match its checksum
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private boolean isValid(File file, String checksum) {
+        if (!file.isFile()) {
+            verifiedChecksums.remove(checksum);
+            return false;
+        }
+        if (verifiedChecksums.contains(checksum)) {
+            return true;
+        }
+        try {
+            if (checksum.equals(sha256(file))) {
+                verifiedChecksums.add(checksum);
+                return true;
+            }
+        } catch (IOException e) {
+            // unreadable: considered as missing and written again
+        }
+        return false;
+    }
+
+    private static String sha256(File file) throws IOException {
+        try (InputStream inputStream = Files.newInputStream(file.toPath())) {
+            final MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            final byte[] buffer = new byte[8192];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                sha256.update(buffer, 0, read);
+            }
+            // same format as IOUtil.sha256
+            return String.format("%064x", new BigInteger(1, sha256.digest()));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    File getFile(String checksum) {
+        return new File(folder, checksum + JAR_EXTENSION);
+    }
+}
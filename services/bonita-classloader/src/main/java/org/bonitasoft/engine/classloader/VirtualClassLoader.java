@@ -16,11 +16,10 @@ package org.bonitasoft.engine.classloader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
-import java.util.ArrayList;
 import java.util.Enumeration;
-import java.util.HashSet;
-import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.bonitasoft.engine.data.instance.model.impl.XStreamFactory;
 
@@ -41,19 +40,26 @@ public class VirtualClassLoader extends ClassLoader {
      * this to the BonitaClassLoader instance
      * then the delegation model does not work anymore and some classes/resources can't be found. A good implementation should override all methods...
      */
-    private BonitaClassLoader classloader;
+    private volatile BonitaClassLoader classloader;
 
     private VirtualClassLoader virtualParent;
 
-    private List<ClassLoaderListener> listeners;
+    /**
+     * listeners are notified much more often than they are changed: iterate on a snapshot without locking
+     */
+    private final CopyOnWriteArrayList<ClassLoaderListener> listeners = new CopyOnWriteArrayList<>();
 
-    private Set<VirtualClassLoader> children = new HashSet<>();
+    private final Set<VirtualClassLoader> children = ConcurrentHashMap.newKeySet();
     private ClassLoaderIdentifier identifier;
 
+    /**
+     * only serializes the updates of this classloader, classes are loaded without taking it
+     */
+    private final Object updateLock = new Object();
+
     VirtualClassLoader(final String artifactType, final long artifactId, final ClassLoader parent) {
         super(parent);
         identifier = new ClassLoaderIdentifier(artifactType, artifactId);
-        listeners = new ArrayList<>();
     }
 
     VirtualClassLoader(final String artifactType, final long artifactId, final VirtualClassLoader parent) {
@@ -63,16 +69,18 @@ public class VirtualClassLoader extends ClassLoader {
     }
 
     void replaceClassLoader(final BonitaClassLoader classloader) {
-        BonitaClassLoader oldClassLoader = this.classloader;
-        this.classloader = classloader;
-        notifyUpdate();
-        if (oldClassLoader != null) {
-            destroy(oldClassLoader);
+        synchronized (updateLock) {
+            BonitaClassLoader oldClassLoader = this.classloader;
+            this.classloader = classloader;
+            notifyUpdate();
+            if (oldClassLoader != null) {
+                destroy(oldClassLoader);
+            }
         }
     }
 
     private void notifyUpdate() {
-        for (ClassLoaderListener listener : getListeners()) {
+        for (ClassLoaderListener listener : listeners) {
             listener.onUpdate(this);
         }
         for (VirtualClassLoader child : children) {
@@ -82,6 +90,7 @@ public class VirtualClassLoader extends ClassLoader {
 
     @Override
     public Class<?> loadClass(final String name) throws ClassNotFoundException {
+        final BonitaClassLoader classloader = this.classloader;
         if (classloader != null) {
             return classloader.loadClass(name, false);
         }
@@ -90,6 +99,7 @@ public class VirtualClassLoader extends ClassLoader {
 
     @Override
     protected Class<?> loadClass(final String name, final boolean resolve) throws ClassNotFoundException {
+        final BonitaClassLoader classloader = this.classloader;
         if (classloader != null) {
             return classloader.loadClass(name, resolve);
         }
@@ -98,6 +108,7 @@ public class VirtualClassLoader extends ClassLoader {
 
     @Override
     public InputStream getResourceAsStream(final String name) {
+        final BonitaClassLoader classloader = this.classloader;
         if (classloader != null) {
             return classloader.getResourceAsStream(name);
         }
@@ -110,6 +121,7 @@ public class VirtualClassLoader extends ClassLoader {
 
     @Override
     public URL getResource(final String name) {
+        final BonitaClassLoader classloader = this.classloader;
         if (classloader != null) {
             return classloader.getResource(name);
         }
@@ -118,6 +130,7 @@ public class VirtualClassLoader extends ClassLoader {
 
     @Override
     public Enumeration<URL> getResources(final String name) throws IOException {
+        final BonitaClassLoader classloader = this.classloader;
         if (classloader != null) {
             return classloader.getResources(name);
         }
@@ -125,8 +138,9 @@ public class VirtualClassLoader extends ClassLoader {
     }
 
     public void destroy() {
-        final BonitaClassLoader classloader = this.classloader;
-        destroy(classloader);
+        synchronized (updateLock) {
+            destroy(this.classloader);
+        }
         notifyDestroy();
         if(virtualParent != null){
             virtualParent.removeChild(this);
@@ -134,16 +148,12 @@ public class VirtualClassLoader extends ClassLoader {
     }
 
     private void notifyDestroy() {
-        for (ClassLoaderListener listener : getListeners()) {
+        for (ClassLoaderListener listener : listeners) {
             listener.onDestroy(this);
         }
         //do not notify children, it should not happen
     }
 
-    private synchronized List<ClassLoaderListener> getListeners() {
-        return new ArrayList<>(listeners);
-    }
-
     private void destroy(BonitaClassLoader classloader) {
         XStreamFactory.remove(this);
         if (classloader != null) {
@@ -156,11 +166,11 @@ public class VirtualClassLoader extends ClassLoader {
         return super.toString() + ", type=" + identifier.getType() + ", id=" + identifier.getId() + " delegate: " + classloader;
     }
 
-    public synchronized boolean addListener(ClassLoaderListener listener) {
-        return !listeners.contains(listener) && listeners.add(listener);
+    public boolean addListener(ClassLoaderListener listener) {
+        return listeners.addIfAbsent(listener);
     }
 
-    public synchronized boolean removeListener(ClassLoaderListener classLoaderListener) {
+    public boolean removeListener(ClassLoaderListener classLoaderListener) {
         return listeners.remove(classLoaderListener);
     }
 
@@ -19,6 +19,8 @@ import java.io.File;
 import java.io.IOException;
 import java.util.Collections;
 
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
@@ -31,40 +33,46 @@ public class BonitaClassLoaderTest {
     @Rule
     public ExpectedException expectedException = ExpectedException.none();
 
+    private JarStore jarStore;
+
+    @Before
+    public void before() throws IOException {
+        jarStore = new JarStore(temporaryFolder.newFolder());
+    }
+
     @Test
-    public void releaseShouldRemoveAllScopeFolderAndItsContent() throws IOException {
-        final BonitaClassLoader bonitaClassLoader = new BonitaClassLoader(
-                Collections.singletonMap("myJar.jar", "Salut le monde".getBytes()), "here", 154L,
-                temporaryFolder.newFolder().toURI(), BonitaClassLoader.class.getClassLoader());
-        File temporaryFolder = bonitaClassLoader.getTemporaryFolder();
-        assertThat(temporaryFolder).as("bonitaClassLoader tempDir:%s should exists after bonitaClassLoader creation",
-                temporaryFolder.getAbsolutePath())
-                .exists();
+    public void destroy_should_not_delete_jars_of_the_store() throws IOException {
+        final File jar = jarStore.store("Salut le monde".getBytes());
+        final BonitaClassLoader bonitaClassLoader = new BonitaClassLoader(Collections.singletonList(jar),
+                Collections.<String, byte[]> emptyMap(), "here", 154L, BonitaClassLoader.class.getClassLoader());
         // when
         bonitaClassLoader.destroy();
 
         // then
-        assertThat(temporaryFolder).as("bonitaClassLoader tempDir:%s should not exists after bonitaClassLoader release",
-                temporaryFolder.getAbsolutePath())
-                .doesNotExist();
+        assertThat(jar).as("jar %s is shared and should still exist after bonitaClassLoader release", jar.getAbsolutePath())
+                .exists();
     }
 
     @Test
-    public void should_create_second_classloader_use_other_folder() throws Exception {
-        //given
-        File tempFolder = temporaryFolder.newFolder();
+    public void should_two_classloaders_use_the_same_jar_file() throws Exception {
         //when
-        BonitaClassLoader classLoader1 = new BonitaClassLoader(
-                Collections.singletonMap("myJar1.jar", "content".getBytes()), "type", 12L, tempFolder.toURI(),
-                BonitaClassLoaderTest.class.getClassLoader());
-        BonitaClassLoader classLoader2 = new BonitaClassLoader(
-                Collections.singletonMap("myJar2.jar", "content".getBytes()), "type", 13L, tempFolder.toURI(),
-                BonitaClassLoaderTest.class.getClassLoader());
+        final File jar1 = jarStore.store("content".getBytes());
+        final File jar2 = jarStore.store("content".getBytes());
+        final BonitaClassLoader classLoader1 = new BonitaClassLoader(Collections.singletonList(jar1),
+                Collections.<String, byte[]> emptyMap(), "type", 12L, BonitaClassLoaderTest.class.getClassLoader());
+        final BonitaClassLoader classLoader2 = new BonitaClassLoader(Collections.singletonList(jar2),
+                Collections.<String, byte[]> emptyMap(), "type", 13L, BonitaClassLoaderTest.class.getClassLoader());
         //then
-        assertThat(classLoader1.getTemporaryFolder().getAbsolutePath())
-                .isNotEqualTo(classLoader2.getTemporaryFolder().getAbsolutePath());
-        assertThat(classLoader1.getTemporaryFolder().getParentFile()).isEqualTo(tempFolder);
-        assertThat(classLoader2.getTemporaryFolder().getParentFile()).isEqualTo(tempFolder);
+        assertThat(classLoader1.getURLs()).containsExactly(classLoader2.getURLs());
+        assertThat(jarStore.getFolder().listFiles()).hasSize(1);
+    }
+
+    @Test
+    public void should_serve_non_jar_resources_from_memory() throws Exception {
+        final BonitaClassLoader classLoader = new BonitaClassLoader(Collections.<File> emptyList(),
+                Collections.singletonMap("config.properties", "key=value".getBytes()), "type", 12L, BonitaClassLoaderTest.class.getClassLoader());
+
+        assertThat(IOUtils.toString(classLoader.getResourceAsStream("config.properties"), "UTF-8")).isEqualTo("key=value");
     }
 
 }
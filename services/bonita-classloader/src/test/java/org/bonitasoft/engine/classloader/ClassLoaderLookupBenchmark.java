@@ -0,0 +1,116 @@
+/**
+ * Copyright (C) 2018 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.classloader;
+
+import java.util.Collections;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.bonitasoft.engine.events.impl.EventServiceImpl;
+import org.bonitasoft.engine.log.technical.TechnicalLoggerSLF4JImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measure the throughput of process classloader lookups among {@link #numberOfProcesses} deployed processes, alone and while other threads
+ * keep deploying (creating and refreshing) and deleting process classloaders.
+ * Run it using {@link #main(String[])}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ClassLoaderLookupBenchmark {
+
+    private static final String PROCESS = "PROCESS";
+    private static final String TENANT = "TENANT";
+    private static final long TENANT_ID = 1L;
+
+    @Param({ "100", "10000" })
+    public int numberOfProcesses;
+
+    private ClassLoaderServiceImpl classLoaderService;
+
+    private final AtomicLong nextDeployedProcessId = new AtomicLong();
+
+    @Setup
+    public void setup() throws Exception {
+        TechnicalLoggerSLF4JImpl logger = new TechnicalLoggerSLF4JImpl();
+        classLoaderService = new ClassLoaderServiceImpl(identifier -> PROCESS.equals(identifier.getType())
+                ? new ClassLoaderIdentifier(TENANT, TENANT_ID) : ClassLoaderIdentifier.GLOBAL, logger, new EventServiceImpl(logger));
+        for (long processId = 0; processId < numberOfProcesses; processId++) {
+            classLoaderService.refreshLocalClassLoader(PROCESS, processId, Collections.<String, byte[]> emptyMap());
+        }
+        nextDeployedProcessId.set(numberOfProcesses);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        classLoaderService.stop();
+    }
+
+    private ClassLoader lookup() {
+        return classLoaderService.getLocalClassLoader(PROCESS, ThreadLocalRandom.current().nextInt(numberOfProcesses));
+    }
+
+    private void deployAndDelete() throws Exception {
+        long processId = nextDeployedProcessId.getAndIncrement();
+        classLoaderService.refreshLocalClassLoader(PROCESS, processId, Collections.<String, byte[]> emptyMap());
+        classLoaderService.refreshLocalClassLoader(PROCESS, processId, Collections.<String, byte[]> emptyMap());
+        classLoaderService.removeLocalClassLoader(PROCESS, processId);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public ClassLoader lookupsOnly() {
+        return lookup();
+    }
+
+    @Benchmark
+    @Group("lookupsDuringDeployments")
+    @GroupThreads(6)
+    public ClassLoader lookups() {
+        return lookup();
+    }
+
+    @Benchmark
+    @Group("lookupsDuringDeployments")
+    @GroupThreads(2)
+    public void deployments() throws Exception {
+        deployAndDelete();
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(ClassLoaderLookupBenchmark.class.getSimpleName()).build()).run();
+    }
+
+}
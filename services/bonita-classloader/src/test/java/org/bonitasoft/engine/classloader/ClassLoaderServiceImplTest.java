@@ -1,14 +1,20 @@
 package org.bonitasoft.engine.classloader;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
 import static org.mockito.Matchers.any;
-import static org.mockito.Matchers.anyLong;
-import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.*;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+import org.bonitasoft.engine.commons.io.IOUtil;
 import org.bonitasoft.engine.events.EventService;
 import org.bonitasoft.engine.log.technical.TechnicalLoggerService;
 import org.junit.After;
@@ -75,7 +81,7 @@ public class ClassLoaderServiceImplTest {
         myClassLoaderListener = new MyClassLoaderListener();
         temporaryFolder.create();
         final File file = temporaryFolder.newFolder();
-        doReturn(file.toURI()).when(classLoaderService).getLocalTemporaryFolder(anyString(), anyLong());
+        doReturn(file).when(classLoaderService).getJarStoreFolder();
     }
 
     @After
@@ -208,6 +214,82 @@ public class ClassLoaderServiceImplTest {
 
     }
 
+    @Test
+    public void should_getLocalClassLoader_retry_creation_after_a_failure() throws Exception {
+        //given
+        final ParentClassLoaderResolver resolver = mock(ParentClassLoaderResolver.class);
+        when(resolver.getParentClassLoaderIdentifier(any(ClassLoaderIdentifier.class))).thenThrow(new IllegalStateException("not ready"))
+                .thenReturn(ClassLoaderIdentifier.GLOBAL);
+        classLoaderService = new ClassLoaderServiceImpl(resolver, logger, eventService);
+        final Throwable failure = catchThrowable(() -> classLoaderService.getLocalClassLoader(PARENT_TYPE, 42L));
+        //when
+        final VirtualClassLoader localClassLoader = classLoaderService.getLocalClassLoader(PARENT_TYPE, 42L);
+        //then
+        assertThat(failure).isInstanceOf(IllegalStateException.class).hasMessage("not ready");
+        assertThat(localClassLoader.getIdentifier()).isEqualTo(new ClassLoaderIdentifier(PARENT_TYPE, 42L));
+    }
+
+    @Test
+    public void should_getLocalClassLoader_create_only_one_classloader_when_called_concurrently() throws Exception {
+        //given
+        final int numberOfThreads = 8;
+        final ExecutorService executorService = Executors.newFixedThreadPool(numberOfThreads);
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Future<VirtualClassLoader>> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < numberOfThreads; i++) {
+                results.add(executorService.submit(() -> {
+                    start.await();
+                    return classLoaderService.getLocalClassLoader(CHILD_TYPE, 99L);
+                }));
+            }
+            //when
+            start.countDown();
+            //then
+            final VirtualClassLoader created = results.get(0).get();
+            for (Future<VirtualClassLoader> result : results) {
+                assertThat(result.get()).isSameAs(created);
+            }
+            assertThat(tenantClassLoader.getChildren().stream().filter(child -> child.getIdentifier().getId() == 99L).count()).isEqualTo(1);
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    @Test
+    public void should_never_attach_a_child_to_a_removed_parent() throws Exception {
+        //given
+        classLoaderService.removeLocalClassLoader(CHILD_TYPE, CHILD_ID);
+        final ExecutorService executorService = Executors.newFixedThreadPool(2);
+        try {
+            for (long childId = 1000; childId < 1200; childId++) {
+                classLoaderService.getLocalClassLoader(PARENT_TYPE, PARENT_ID);
+                final CountDownLatch start = new CountDownLatch(1);
+                final long id = childId;
+                //when
+                final Future<VirtualClassLoader> child = executorService.submit(() -> {
+                    start.await();
+                    return classLoaderService.getLocalClassLoader(CHILD_TYPE, id);
+                });
+                final Future<?> removal = executorService.submit(() -> {
+                    start.await();
+                    try {
+                        classLoaderService.removeLocalClassLoader(PARENT_TYPE, PARENT_ID);
+                    } catch (final SClassLoaderException e) {
+                        // the child was created first
+                    }
+                    return null;
+                });
+                start.countDown();
+                removal.get();
+                //then
+                assertThat(child.get().getParent()).isSameAs(classLoaderService.getLocalClassLoader(PARENT_TYPE, PARENT_ID));
+                classLoaderService.removeLocalClassLoader(CHILD_TYPE, id);
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
 
     @Test
     public void should_globalListeners_be_called_on_destroy() throws Exception {
@@ -237,4 +319,17 @@ public class ClassLoaderServiceImplTest {
         verify(listener, times(2)).onUpdate(any(VirtualClassLoader.class));
     }
 
+    @Test
+    public void should_refreshLocalClassLoader_write_a_jar_shared_by_two_classloaders_only_once() throws Exception {
+        //given
+        classLoaderService.getLocalClassLoader(CHILD_TYPE, 17);
+        final byte[] jarContent = "the jar content".getBytes();
+        //when
+        classLoaderService.refreshLocalClassLoader(CHILD_TYPE, CHILD_ID, Collections.singletonMap("connector.jar", jarContent));
+        classLoaderService.refreshLocalClassLoader(CHILD_TYPE, 17, Collections.singletonMap("connector-1.0.jar", jarContent));
+        //then
+        final File jarStoreFolder = classLoaderService.getJarStore().getFolder();
+        assertThat(jarStoreFolder.listFiles()).containsExactly(classLoaderService.getJarStore().get(IOUtil.sha256(jarContent)));
+    }
+
 }
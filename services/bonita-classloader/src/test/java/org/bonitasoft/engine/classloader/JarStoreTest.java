@@ -0,0 +1,81 @@
+/**
+ * Copyright (C) 2015 BonitaSoft S.A.
+ * BonitaSoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.classloader;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.bonitasoft.engine.commons.io.IOUtil;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class JarStoreTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File folder;
+
+    @Before
+    public void before() throws IOException {
+        folder = temporaryFolder.newFolder();
+    }
+
+    @Test
+    public void get_should_return_stored_jar() throws Exception {
+        final JarStore jarStore = new JarStore(folder);
+        final File jar = jarStore.store("content".getBytes());
+
+        assertThat(jarStore.get(IOUtil.sha256("content".getBytes()))).isEqualTo(jar).hasBinaryContent("content".getBytes());
+    }
+
+    @Test
+    public void get_should_return_jar_stored_before_a_restart() throws Exception {
+        new JarStore(folder).store("content".getBytes());
+
+        assertThat(new JarStore(folder).get(IOUtil.sha256("content".getBytes()))).hasBinaryContent("content".getBytes());
+    }
+
+    @Test
+    public void get_should_not_return_a_file_not_matching_its_checksum() throws Exception {
+        final String checksum = IOUtil.sha256("content".getBytes());
+        IOUtil.write(new File(folder, checksum + ".jar"), "replaced content".getBytes());
+
+        assertThat(new JarStore(folder).get(checksum)).isNull();
+    }
+
+    @Test
+    public void get_should_not_return_a_jar_that_is_not_in_the_store() {
+        assertThat(new JarStore(folder).get(IOUtil.sha256("content".getBytes()))).isNull();
+        assertThat(new JarStore(folder).get(null)).isNull();
+    }
+
+    @Test
+    public void store_should_replace_a_file_not_matching_its_checksum() throws Exception {
+        final String checksum = IOUtil.sha256("content".getBytes());
+        IOUtil.write(new File(folder, checksum + ".jar"), "replaced content".getBytes());
+        final JarStore jarStore = new JarStore(folder);
+
+        final File jar = jarStore.store("content".getBytes());
+
+        assertThat(jar).hasBinaryContent("content".getBytes());
+        assertThat(jarStore.get(checksum)).isEqualTo(jar);
+        assertThat(folder.listFiles()).containsOnly(jar);
+    }
+
+}
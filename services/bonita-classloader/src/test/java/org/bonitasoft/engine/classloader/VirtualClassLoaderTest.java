@@ -20,8 +20,6 @@ import java.io.File;
 import java.io.IOException;
 import java.net.URL;
 import java.util.Collections;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -52,7 +50,7 @@ public class VirtualClassLoaderTest {
     private ClassLoaderListener myClassLoaderListener;
     private VirtualClassLoader localClassLoader;
     private BonitaClassLoader newClassLoader;
-    private File tempDir;
+    private JarStore jarStore;
 
     @Before
     public void before() throws IOException {
@@ -60,9 +58,9 @@ public class VirtualClassLoaderTest {
         localClassLoader = new VirtualClassLoader("org.bonitasoft", 1L, Thread.currentThread().getContextClassLoader());
         Thread.currentThread().setContextClassLoader(localClassLoader);
 
-        newClassLoader = new BonitaClassLoader(Collections.emptyMap(), "test", 125,
-                File.createTempFile("test", ".tmp").toURI(), testClassLoader);
-        tempDir = temporaryFolder.newFolder();
+        newClassLoader = new BonitaClassLoader(Collections.<File> emptyList(), Collections.<String, byte[]> emptyMap(), "test", 125,
+                testClassLoader);
+        jarStore = new JarStore(temporaryFolder.newFolder());
     }
 
     @After
@@ -73,9 +71,9 @@ public class VirtualClassLoaderTest {
     @Test
     public void loadClassStudentInformation_to_VirtualClassLoarder_should_be_get_as_resource() throws Exception {
         VirtualClassLoader vcl = new VirtualClassLoader("org.bonitasoft", 1L, Thread.currentThread().getContextClassLoader());
-        final Map<String, byte[]> resources = new HashMap<>(1);
-        resources.put("UOSFaasApplication.jar", FileUtils.readFileToByteArray(new File("src/test/resources/UOSFaasApplication.jar")));
-        final BonitaClassLoader bonitaClassLoader = new BonitaClassLoader(resources, "here", 154L, tempDir.toURI(), BonitaClassLoader.class.getClassLoader());
+        final File jar = jarStore.store(FileUtils.readFileToByteArray(new File("src/test/resources/UOSFaasApplication.jar")));
+        final BonitaClassLoader bonitaClassLoader = new BonitaClassLoader(Collections.singletonList(jar), Collections.<String, byte[]> emptyMap(),
+                "here", 154L, BonitaClassLoader.class.getClassLoader());
 
         vcl.replaceClassLoader(bonitaClassLoader);
         URL url = vcl.getResource("au/edu/sydney/faas/applicationstudent/StudentInformation.class");
@@ -96,9 +94,9 @@ public class VirtualClassLoaderTest {
     @Test
     public void loadStudentInformation_toVirtualClassLoader_should_be_usable_via_JavaMethodInvoker() throws Exception {
         final VirtualClassLoader vcl = new VirtualClassLoader("org.bonitasoft", 1L, Thread.currentThread().getContextClassLoader());
-        final Map<String, byte[]> resources = new HashMap<>(1);
-        resources.put("UOSFaasApplication.jar", FileUtils.readFileToByteArray(new File("src/test/resources/UOSFaasApplication.jar")));
-        final BonitaClassLoader bonitaClassLoader = new BonitaClassLoader(resources, "here", 154L, tempDir.toURI(), BonitaClassLoader.class.getClassLoader());
+        final File jar = jarStore.store(FileUtils.readFileToByteArray(new File("src/test/resources/UOSFaasApplication.jar")));
+        final BonitaClassLoader bonitaClassLoader = new BonitaClassLoader(Collections.singletonList(jar), Collections.<String, byte[]> emptyMap(),
+                "here", 154L, BonitaClassLoader.class.getClassLoader());
 
         vcl.replaceClassLoader(bonitaClassLoader);
         final Object objectToInvokeJavaMethodOn = vcl.loadClass("au.edu.sydney.faas.applicationstudent.StudentRequest").getConstructors()[0].newInstance();
@@ -226,11 +224,8 @@ public class VirtualClassLoaderTest {
 
     }
 
-    private BonitaClassLoader classloader(long id) {
-        final Map<String, byte[]> resources = new HashMap<>(1);
-        resources.put("test-1.jar",
-                new byte[] { 1, 2, 3 });
-        return new BonitaClassLoader(resources, "here", id, tempDir.toURI(),
-                BonitaClassLoader.class.getClassLoader());
+    private BonitaClassLoader classloader(long id) throws IOException {
+        return new BonitaClassLoader(Collections.singletonList(jarStore.store(new byte[] { 1, 2, 3 })), Collections.<String, byte[]> emptyMap(),
+                "here", id, BonitaClassLoader.class.getClassLoader());
     }
 }
@@ -596,6 +596,19 @@ public class IOUtil {
         return new BigInteger(1, md5.digest(content)).toString(16);
     }
 
+    /**
+     * @return the SHA-256 digest of the content as a 64 characters lower case hexadecimal string
+     */
+    public static String sha256(byte[] content) {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            return String.format("%064x", new BigInteger(1, sha256.digest(content)));
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform must support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
     public static void writeMD5(File file, byte[] bytes) throws NoSuchAlgorithmException, IOException {
         write(file, md5(bytes).getBytes());
 
@@ -138,4 +138,17 @@ public class IOUtilTest {
         Assert.assertEquals(updatedValue2, updatedProperties.get("key2"));
 
     }
+
+    @Test
+    public void sha256_should_return_the_hexadecimal_digest_of_the_content() {
+        assertThat(IOUtil.sha256("abc".getBytes())).isEqualTo("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad");
+    }
+
+    @Test
+    public void sha256_should_keep_leading_zeros() {
+        // about one digest out of 16 starts with a 0
+        for (int i = 0; i < 100; i++) {
+            assertThat(IOUtil.sha256(String.valueOf(i).getBytes())).hasSize(64);
+        }
+    }
 }
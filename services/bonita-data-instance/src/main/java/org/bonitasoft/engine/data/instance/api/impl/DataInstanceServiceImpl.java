@@ -60,6 +60,8 @@ import org.bonitasoft.engine.recorder.model.DeleteRecord;
 import org.bonitasoft.engine.recorder.model.EntityUpdateDescriptor;
 import org.bonitasoft.engine.recorder.model.InsertRecord;
 import org.bonitasoft.engine.recorder.model.UpdateRecord;
+import org.bonitasoft.engine.transaction.STransactionNotFoundException;
+import org.bonitasoft.engine.transaction.UserTransactionService;
 
 /**
  * General mechanism for lookup is to look in specific flow node to search a data instance. When referring to "local" data instance, it means the lookup is
@@ -84,14 +86,51 @@ public class DataInstanceServiceImpl implements DataInstanceService {
 
     protected final TechnicalLoggerService logger;
 
+    private final UserTransactionService transactionService;
+
+    private final ThreadLocal<DataResolutionContext> resolutionContexts = new ThreadLocal<>();
+
     public DataInstanceServiceImpl(final Recorder recorder, final ReadPersistenceService persistenceService,
             final ArchiveService archiveService, final TechnicalLoggerService logger) {
+        this(recorder, persistenceService, archiveService, null, logger);
+    }
+
+    /**
+     * @param userTransactionService
+     *        used to keep the resolved containers and data instances until the end of the current transaction, nothing is kept if null
+     */
+    public DataInstanceServiceImpl(final Recorder recorder, final ReadPersistenceService persistenceService,
+            final ArchiveService archiveService, final UserTransactionService userTransactionService, final TechnicalLoggerService logger) {
         this.recorder = recorder;
         this.persistenceService = persistenceService;
         this.archiveService = archiveService;
+        this.transactionService = userTransactionService;
         this.logger = logger;
     }
 
+    DataResolutionContext getResolutionContext() {
+        DataResolutionContext context = resolutionContexts.get();
+        if (context == null) {
+            context = new DataResolutionContext(resolutionContexts);
+            if (transactionService != null) {
+                try {
+                    transactionService.registerBonitaSynchronization(context);
+                    resolutionContexts.set(context);
+                } catch (final STransactionNotFoundException e) {
+                    // outside of a transaction the context is only used for the current call
+                }
+            }
+        }
+        return context;
+    }
+
+    private void clearResolvedDataInstances() {
+        final DataResolutionContext context = resolutionContexts.get();
+        if (context != null) {
+            context.clearResolvedDataInstances();
+        }
+    }
+
     private void archiveDataInstance(final SDataInstance sDataInstance) throws SDataInstanceException {
         if (!sDataInstance.isTransientData()) {
             try {
@@ -110,19 +149,65 @@ public class DataInstanceServiceImpl implements DataInstanceService {
             final ParentContainerResolver parentContainerResolver) throws SDataInstanceException {
         NullCheckingUtil.checkArgsNotNull(dataName, containerType);
 
-        final String queryName = "getDataInstancesWithNames";
-        final Map<String, Object> inputParameters = new HashMap<String, Object>();
-        inputParameters.put("dataNames", Collections.singletonList(dataName));
-        final List<SDataInstance> dataInstances = getSDatainstanceOfContainers(containerId, containerType, parentContainerResolver, queryName, inputParameters);
+        final DataContainer container = new DataContainer(containerId, containerType);
+        final DataResolutionContext context = getResolutionContext();
+        final SDataInstance resolved = context.getResolvedDataInstance(container, dataName);
+        if (resolved != null) {
+            return resolved;
+        }
+        final List<SDataInstance> dataInstances = getNearestDataInstances(container, parentContainerResolver, context,
+                Collections.singletonList(dataName));
         if (dataInstances.size() == 0) {
             throw new SDataInstanceNotFoundException(
                     "DataInstance with name not found: [name: " + dataName + ", container type: " + containerType + ", container id: " + containerId + ']');
-        } else if (dataInstances.size() > 1) {
-            //should never happen but in case...
-            throw new SDataInstanceReadException(
-                    "Several data have been retrieved for: [name: " + dataName + ", container type: " + containerType + ", container id: " + containerId + ']');
-        } else {
-            return dataInstances.get(0);
+        }
+        return dataInstances.get(0);
+    }
+
+    /**
+     * get, for each of the given names, the data instance of the nearest container in the hierarchy of the given container
+     *
+     * @return the data instances ordered by container level
+     */
+    private List<SDataInstance> getNearestDataInstances(final DataContainer container, final ParentContainerResolver parentContainerResolver,
+            final DataResolutionContext context, final List<String> dataNames) throws SDataInstanceNotFoundException, SDataInstanceReadException {
+        final List<DataContainer> containerHierarchy = getContainerHierarchy(container, parentContainerResolver, context);
+        final Map<String, Object> inputParameters = new HashMap<String, Object>();
+        inputParameters.put("dataNames", dataNames);
+        final Map<String, List<Long>> containers = buildContainersMap(containerHierarchy, inputParameters);
+        final List<SDataInstance> dataInstances;
+        try {
+            dataInstances = persistenceService.selectList(new SelectListDescriptor<SDataInstance>(
+                    getDynamicContainersQueryName("getDataInstancesWithNames", containers.size()),
+                    inputParameters, SDataInstance.class, new QueryOptions(0, QueryOptions.UNLIMITED_NUMBER_OF_RESULTS)));
+        } catch (final SBonitaReadException e) {
+            throw new SDataInstanceReadException("Unable to check if a data instance already exists: " + e.getMessage(), e);
+        }
+        //keep the data of the nearest container, there is at most one data with a given name by container
+        final Map<String, SDataInstance> nearestByName = new HashMap<>();
+        final Map<String, Integer> nearestLevels = new HashMap<>();
+        for (final SDataInstance dataInstance : dataInstances) {
+            final int level = containerHierarchy.indexOf(new DataContainer(dataInstance.getContainerId(), dataInstance.getContainerType()));
+            final Integer nearestLevel = nearestLevels.get(dataInstance.getName());
+            if (nearestLevel == null || level < nearestLevel) {
+                nearestByName.put(dataInstance.getName(), dataInstance);
+                nearestLevels.put(dataInstance.getName(), level);
+            }
+        }
+        final List<SDataInstance> nearest = new ArrayList<>(nearestByName.values());
+        for (final SDataInstance dataInstance : nearest) {
+            context.putResolvedDataInstance(container, dataInstance);
+        }
+        Collections.sort(nearest, new DataInContainersComparator(containerHierarchy));
+        return nearest;
+    }
+
+    private List<DataContainer> getContainerHierarchy(final DataContainer container, final ParentContainerResolver parentContainerResolver,
+            final DataResolutionContext context) throws SDataInstanceNotFoundException {
+        try {
+            return context.getContainerHierarchy(container, parentContainerResolver);
+        } catch (SObjectNotFoundException | SObjectReadException e) {
+            throw new SDataInstanceNotFoundException(e);
         }
     }
 
@@ -160,12 +245,8 @@ public class DataInstanceServiceImpl implements DataInstanceService {
     private List<SDataInstance> getSDatainstanceOfContainers(long containerId, String containerType, ParentContainerResolver parentContainerResolver,
             String queryName, Map<String, Object> inputParameters) throws SDataInstanceNotFoundException, SDataInstanceReadException {
         //getAllContainers from me to root
-        final List<DataContainer> containerHierarchy;
-        try {
-            containerHierarchy = parentContainerResolver.getContainerHierarchy(new DataContainer(containerId, containerType));
-        } catch (SObjectNotFoundException | SObjectReadException e) {
-            throw new SDataInstanceNotFoundException(e);
-        }
+        final List<DataContainer> containerHierarchy = getContainerHierarchy(new DataContainer(containerId, containerType), parentContainerResolver,
+                getResolutionContext());
 
         final Map<String, List<Long>> containers = buildContainersMap(containerHierarchy, inputParameters);
 
@@ -387,10 +468,27 @@ public class DataInstanceServiceImpl implements DataInstanceService {
             return Collections.emptyList();
         }
 
-        final String queryName = "getDataInstancesWithNames";
-        final Map<String, Object> inputParameters = new HashMap<String, Object>();
-        inputParameters.put("dataNames", dataNames);
-        return getSDatainstanceOfContainers(containerId, containerType, parentContainerResolver, queryName, inputParameters);
+        final DataContainer container = new DataContainer(containerId, containerType);
+        final DataResolutionContext context = getResolutionContext();
+        final List<SDataInstance> dataInstances = new ArrayList<>(dataNames.size());
+        final List<String> namesToResolve = new ArrayList<>();
+        for (final String dataName : dataNames) {
+            final SDataInstance resolved = context.getResolvedDataInstance(container, dataName);
+            if (resolved != null) {
+                dataInstances.add(resolved);
+            } else {
+                namesToResolve.add(dataName);
+            }
+        }
+        if (namesToResolve.isEmpty()) {
+            return dataInstances;
+        }
+        if (dataInstances.isEmpty()) {
+            return getNearestDataInstances(container, parentContainerResolver, context, namesToResolve);
+        }
+        dataInstances.addAll(getNearestDataInstances(container, parentContainerResolver, context, namesToResolve));
+        Collections.sort(dataInstances, new DataInContainersComparator(getContainerHierarchy(container, parentContainerResolver, context)));
+        return dataInstances;
     }
 
     @Override
@@ -471,6 +569,7 @@ public class DataInstanceServiceImpl implements DataInstanceService {
         } catch (final SRecorderException e) {
             throw new SCreateDataInstanceException("Impossible to create data instance.", e);
         }
+        clearResolvedDataInstances();
         archiveDataInstance(dataInstance);
     }
 
@@ -493,6 +592,7 @@ public class DataInstanceServiceImpl implements DataInstanceService {
         } catch (final SRecorderException e) {
             throw new SDeleteDataInstanceException("Impossible to delete data instance", e);
         }
+        clearResolvedDataInstances();
     }
 
     @Override
@@ -0,0 +1,90 @@
+/**
+ * Copyright (C) 2018 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.data.instance.api.impl;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.bonitasoft.engine.commons.exceptions.SObjectNotFoundException;
+import org.bonitasoft.engine.commons.exceptions.SObjectReadException;
+import org.bonitasoft.engine.data.instance.api.DataContainer;
+import org.bonitasoft.engine.data.instance.api.ParentContainerResolver;
+import org.bonitasoft.engine.data.instance.model.SDataInstance;
+import org.bonitasoft.engine.transaction.BonitaTransactionSynchronization;
+import org.bonitasoft.engine.transaction.TransactionState;
+
+/**
+ * Keeps, for the duration of a transaction, the container hierarchies and the data instances already resolved from a container.
+ * <p>
+ * Operations and expressions evaluated in the same work resolve the same variables from the same flow node again and again: the hierarchy of a container
+ * is read only once (one flow node or process instance read per level, including the callers of call activities), and a data instance already resolved
+ * by its name is returned without any query.
+ * <p>
+ * Hierarchies do not change during a transaction, but creating or deleting a data instance can change which container holds the nearest data of a given
+ * name: resolved data instances are then forgotten using {@link #clearResolvedDataInstances()}.
+ */
+class DataResolutionContext implements BonitaTransactionSynchronization {
+
+    private final ThreadLocal<DataResolutionContext> currentContext;
+
+    private final Map<DataContainer, List<DataContainer>> hierarchies = new HashMap<>();
+
+    private final Map<DataContainer, Map<String, SDataInstance>> resolvedDataInstances = new HashMap<>();
+
+    DataResolutionContext(final ThreadLocal<DataResolutionContext> currentContext) {
+        this.currentContext = currentContext;
+    }
+
+    List<DataContainer> getContainerHierarchy(final DataContainer container, final ParentContainerResolver parentContainerResolver)
+            throws SObjectNotFoundException, SObjectReadException {
+        List<DataContainer> hierarchy = hierarchies.get(container);
+        if (hierarchy == null) {
+            hierarchy = parentContainerResolver.getContainerHierarchy(container);
+            hierarchies.put(container, hierarchy);
+        }
+        return hierarchy;
+    }
+
+    SDataInstance getResolvedDataInstance(final DataContainer container, final String dataName) {
+        final Map<String, SDataInstance> dataInstances = resolvedDataInstances.get(container);
+        return dataInstances == null ? null : dataInstances.get(dataName);
+    }
+
+    void putResolvedDataInstance(final DataContainer container, final SDataInstance dataInstance) {
+        Map<String, SDataInstance> dataInstances = resolvedDataInstances.get(container);
+        if (dataInstances == null) {
+            dataInstances = new HashMap<>();
+            resolvedDataInstances.put(container, dataInstances);
+        }
+        dataInstances.put(dataInstance.getName(), dataInstance);
+    }
+
+    void clearResolvedDataInstances() {
+        resolvedDataInstances.clear();
+    }
+
+    @Override
+    public void beforeCommit() {
+        // nothing to do
+    }
+
+    @Override
+    public void afterCompletion(final TransactionState txState) {
+        if (currentContext.get() == this) {
+            currentContext.remove();
+        }
+    }
+
+}
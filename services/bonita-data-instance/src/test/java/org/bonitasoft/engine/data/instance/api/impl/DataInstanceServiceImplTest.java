@@ -40,6 +40,10 @@ import org.bonitasoft.engine.persistence.SBonitaReadException;
 import org.bonitasoft.engine.persistence.SelectListDescriptor;
 import org.bonitasoft.engine.recorder.Recorder;
 import org.bonitasoft.engine.recorder.model.EntityUpdateDescriptor;
+import org.bonitasoft.engine.transaction.BonitaTransactionSynchronization;
+import org.bonitasoft.engine.transaction.STransactionNotFoundException;
+import org.bonitasoft.engine.transaction.TransactionState;
+import org.bonitasoft.engine.transaction.UserTransactionService;
 import org.junit.Assert;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -63,6 +67,8 @@ public class DataInstanceServiceImplTest {
     private TechnicalLoggerService logger;
     @Mock
     private ParentContainerResolver parentContainerResolver;
+    @Mock
+    private UserTransactionService userTransactionService;
     @Captor
     private ArgumentCaptor<ArchiveInsertRecord> archiveInsertRecordArgumentCaptor;
     @InjectMocks
@@ -187,6 +193,12 @@ public class DataInstanceServiceImplTest {
         return dataInstance;
     }
 
+    private SLongTextDataInstanceImpl createDataInstance(long id, String name, long containerId, String containerType, String value) {
+        SLongTextDataInstanceImpl dataInstance = createDataInstance(id, containerId, containerType, value);
+        dataInstance.setName(name);
+        return dataInstance;
+    }
+
     private SLongTextDataInstanceImpl createDataInstance(long id, long containerId, String containerType, String value) {
         SLongTextDataInstanceImpl dataInstance = new SLongTextDataInstanceImpl();
         dataInstance.setId(id);
@@ -211,4 +223,112 @@ public class DataInstanceServiceImplTest {
         //then
         assertThat(dataInstance.getValue()).isEqualTo("SUBTASK_VALUE");
     }
+
+    private void subTaskHierarchy() throws Exception {
+        doReturn(Arrays.asList(new DataContainer(68L, "SUBTASK"), new DataContainer(67L, "TASK"), new DataContainer(66L, "PROC"))).when(parentContainerResolver)
+                .getContainerHierarchy(new DataContainer(68L, "SUBTASK"));
+    }
+
+    @Test
+    public void should_resolve_the_container_hierarchy_once_per_transaction() throws Exception {
+        //given
+        subTaskHierarchy();
+        doReturn(Arrays.asList(createDataInstance(1, "a", 66L, "PROC", "A")), Arrays.asList(createDataInstance(2, "b", 67L, "TASK", "B")))
+                .when(persistenceService).selectList(any(SelectListDescriptor.class));
+        //when
+        dataInstanceServiceImpl.getDataInstance("a", 68L, "SUBTASK", parentContainerResolver);
+        dataInstanceServiceImpl.getDataInstance("b", 68L, "SUBTASK", parentContainerResolver);
+        //then
+        verify(parentContainerResolver, times(1)).getContainerHierarchy(new DataContainer(68L, "SUBTASK"));
+        verify(userTransactionService, times(1)).registerBonitaSynchronization(any(BonitaTransactionSynchronization.class));
+    }
+
+    @Test
+    public void should_not_query_again_a_data_already_resolved_in_the_transaction() throws Exception {
+        //given
+        subTaskHierarchy();
+        doReturn(Arrays.asList(createDataInstance(1, "a", 66L, "PROC", "A"))).when(persistenceService).selectList(any(SelectListDescriptor.class));
+        //when
+        SDataInstance first = dataInstanceServiceImpl.getDataInstance("a", 68L, "SUBTASK", parentContainerResolver);
+        SDataInstance second = dataInstanceServiceImpl.getDataInstance("a", 68L, "SUBTASK", parentContainerResolver);
+        List<SDataInstance> fromList = dataInstanceServiceImpl.getDataInstances(Collections.singletonList("a"), 68L, "SUBTASK", parentContainerResolver);
+        //then
+        assertThat(second).isSameAs(first);
+        assertThat(fromList).containsExactly(first);
+        verify(persistenceService, times(1)).selectList(any(SelectListDescriptor.class));
+    }
+
+    @Test
+    public void should_only_query_names_that_are_not_resolved_yet() throws Exception {
+        //given
+        subTaskHierarchy();
+        SLongTextDataInstanceImpl a = createDataInstance(1, "a", 66L, "PROC", "A");
+        SLongTextDataInstanceImpl b = createDataInstance(2, "b", 68L, "SUBTASK", "B");
+        doReturn(Arrays.asList(a), Arrays.asList(b)).when(persistenceService).selectList(any(SelectListDescriptor.class));
+        dataInstanceServiceImpl.getDataInstance("a", 68L, "SUBTASK", parentContainerResolver);
+        //when
+        List<SDataInstance> dataInstances = dataInstanceServiceImpl.getDataInstances(Arrays.asList("a", "b"), 68L, "SUBTASK", parentContainerResolver);
+        //then
+        ArgumentCaptor<SelectListDescriptor> descriptor = ArgumentCaptor.forClass(SelectListDescriptor.class);
+        verify(persistenceService, times(2)).selectList(descriptor.capture());
+        assertThat(descriptor.getAllValues().get(1).getInputParameters().get("dataNames")).isEqualTo(Collections.singletonList("b"));
+        //ordered by container level
+        assertThat(dataInstances).containsExactly(b, a);
+    }
+
+    @Test
+    public void should_keep_only_the_data_of_the_nearest_container_for_each_name() throws Exception {
+        //given
+        subTaskHierarchy();
+        doReturn(Arrays.asList(createDataInstance(1, "a", 66L, "PROC", "PROC_A"), createDataInstance(2, "b", 66L, "PROC", "PROC_B"),
+                createDataInstance(3, "a", 67L, "TASK", "TASK_A"))).when(persistenceService).selectList(any(SelectListDescriptor.class));
+        //when
+        List<SDataInstance> dataInstances = dataInstanceServiceImpl.getDataInstances(Arrays.asList("a", "b"), 68L, "SUBTASK", parentContainerResolver);
+        //then
+        assertThat(dataInstances).hasSize(2);
+        assertThat(dataInstances.get(0).getValue()).isEqualTo("TASK_A");
+        assertThat(dataInstances.get(1).getValue()).isEqualTo("PROC_B");
+    }
+
+    @Test
+    public void should_resolve_data_again_after_a_data_instance_is_created() throws Exception {
+        //given
+        subTaskHierarchy();
+        doReturn(Arrays.asList(createDataInstance(1, "a", 66L, "PROC", "PROC_A")), Arrays.asList(createDataInstance(2, "a", 68L, "SUBTASK", "SUBTASK_A")))
+                .when(persistenceService).selectList(any(SelectListDescriptor.class));
+        dataInstanceServiceImpl.getDataInstance("a", 68L, "SUBTASK", parentContainerResolver);
+        //when
+        dataInstanceServiceImpl.createDataInstance(createDataInstance(2, "a", 68L, "SUBTASK", "SUBTASK_A"));
+        SDataInstance dataInstance = dataInstanceServiceImpl.getDataInstance("a", 68L, "SUBTASK", parentContainerResolver);
+        //then
+        assertThat(dataInstance.getValue()).isEqualTo("SUBTASK_A");
+        verify(parentContainerResolver, times(1)).getContainerHierarchy(new DataContainer(68L, "SUBTASK"));
+    }
+
+    @Test
+    public void should_forget_resolved_data_at_the_end_of_the_transaction() throws Exception {
+        //given
+        subTaskHierarchy();
+        doReturn(Arrays.asList(createDataInstance(1, "a", 66L, "PROC", "A"))).when(persistenceService).selectList(any(SelectListDescriptor.class));
+        dataInstanceServiceImpl.getDataInstance("a", 68L, "SUBTASK", parentContainerResolver);
+        //when
+        dataInstanceServiceImpl.getResolutionContext().afterCompletion(TransactionState.COMMITTED);
+        dataInstanceServiceImpl.getDataInstance("a", 68L, "SUBTASK", parentContainerResolver);
+        //then
+        verify(persistenceService, times(2)).selectList(any(SelectListDescriptor.class));
+        verify(parentContainerResolver, times(2)).getContainerHierarchy(new DataContainer(68L, "SUBTASK"));
+    }
+
+    @Test
+    public void should_not_keep_resolved_data_outside_of_a_transaction() throws Exception {
+        //given
+        subTaskHierarchy();
+        doThrow(new STransactionNotFoundException()).when(userTransactionService).registerBonitaSynchronization(any(BonitaTransactionSynchronization.class));
+        doReturn(Arrays.asList(createDataInstance(1, "a", 66L, "PROC", "A"))).when(persistenceService).selectList(any(SelectListDescriptor.class));
+        //when
+        dataInstanceServiceImpl.getDataInstance("a", 68L, "SUBTASK", parentContainerResolver);
+        dataInstanceServiceImpl.getDataInstance("a", 68L, "SUBTASK", parentContainerResolver);
+        //then
+        verify(persistenceService, times(2)).selectList(any(SelectListDescriptor.class));
+    }
 }
@@ -0,0 +1,180 @@
+/**
+ * Copyright (C) 2018 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.data.instance.api.impl;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import org.bonitasoft.engine.data.instance.api.DataContainer;
+import org.bonitasoft.engine.data.instance.api.ParentContainerResolver;
+import org.bonitasoft.engine.data.instance.model.SDataInstance;
+import org.bonitasoft.engine.data.instance.model.impl.SLongTextDataInstanceImpl;
+import org.bonitasoft.engine.log.technical.TechnicalLoggerSLF4JImpl;
+import org.bonitasoft.engine.persistence.ReadPersistenceService;
+import org.bonitasoft.engine.persistence.SelectListDescriptor;
+import org.bonitasoft.engine.transaction.BonitaTransactionSynchronization;
+import org.bonitasoft.engine.transaction.TransactionState;
+import org.bonitasoft.engine.transaction.UserTransactionService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measure a work evaluating {@link #numberOfVariables} data expressions and then updating them with operations, from a flow node nested in
+ * {@link #depth} containers (process instances called by call activities, multi-instances, event sub-processes).
+ * <p>
+ * Each flow node or process instance read of the hierarchy and each data query consumes {@link #readCost} tokens of CPU to stand for a database round
+ * trip. With <code>cached</code> the data resolution context is kept for the whole work as in a transaction, without it each access resolves the
+ * hierarchy and queries the data again.
+ * Run it using {@link #main(String[])}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DataResolutionBenchmark {
+
+    private static final long FLOW_NODE_ID = 1000L;
+
+    @Param({ "true", "false" })
+    public boolean cached;
+
+    @Param({ "2", "10" })
+    public int depth;
+
+    @Param({ "20" })
+    public int numberOfVariables;
+
+    @Param({ "2000" })
+    public int readCost;
+
+    private DataInstanceServiceImpl dataInstanceService;
+
+    private ParentContainerResolver parentContainerResolver;
+
+    private final List<BonitaTransactionSynchronization> synchronizations = new ArrayList<>();
+
+    private String[] names;
+
+    @Setup
+    public void setup() {
+        final List<DataContainer> hierarchy = new ArrayList<>();
+        hierarchy.add(new DataContainer(FLOW_NODE_ID, "ACTIVITY_INSTANCE"));
+        for (int i = 0; i < depth; i++) {
+            hierarchy.add(new DataContainer(i, "PROCESS_INSTANCE"));
+        }
+        // variables are declared on the root process instance, the one the farthest from the flow node
+        final DataContainer root = hierarchy.get(hierarchy.size() - 1);
+        names = new String[numberOfVariables];
+        final List<SDataInstance> dataInstances = new ArrayList<>();
+        for (int i = 0; i < numberOfVariables; i++) {
+            names[i] = "variable" + i;
+            final SLongTextDataInstanceImpl dataInstance = new SLongTextDataInstanceImpl();
+            dataInstance.setId(i);
+            dataInstance.setName(names[i]);
+            dataInstance.setContainerId(root.getId());
+            dataInstance.setContainerType(root.getType());
+            dataInstance.setValue("value" + i);
+            dataInstances.add(dataInstance);
+        }
+        parentContainerResolver = new ParentContainerResolver() {
+
+            @Override
+            public List<DataContainer> getContainerHierarchy(final DataContainer currentContainer) {
+                // one read for each level and one for the caller of the root process instance
+                Blackhole.consumeCPU((long) readCost * (hierarchy.size() + 1));
+                return new ArrayList<>(hierarchy);
+            }
+
+            @Override
+            public List<DataContainer> getArchivedContainerHierarchy(final DataContainer currentContainer) {
+                return getContainerHierarchy(currentContainer);
+            }
+        };
+        final ReadPersistenceService persistenceService = (ReadPersistenceService) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { ReadPersistenceService.class }, new InvocationHandler() {
+
+                    @Override
+                    public Object invoke(final Object proxy, final Method method, final Object[] args) {
+                        Blackhole.consumeCPU(readCost);
+                        final Map<String, Object> parameters = ((SelectListDescriptor<?>) args[0]).getInputParameters();
+                        final List<?> requestedNames = (List<?>) parameters.get("dataNames");
+                        final List<SDataInstance> result = new ArrayList<>();
+                        for (final SDataInstance dataInstance : dataInstances) {
+                            if (requestedNames.contains(dataInstance.getName())) {
+                                result.add(dataInstance);
+                            }
+                        }
+                        return result;
+                    }
+                });
+        final UserTransactionService transactionService = new UserTransactionService() {
+
+            @Override
+            public <T> T executeInTransaction(final Callable<T> callable) throws Exception {
+                return callable.call();
+            }
+
+            @Override
+            public void registerBonitaSynchronization(final BonitaTransactionSynchronization txSync) {
+                synchronizations.add(txSync);
+            }
+
+            @Override
+            public void registerBeforeCommitCallable(final Callable<Void> callable) {
+            }
+        };
+        dataInstanceService = new DataInstanceServiceImpl(null, persistenceService, null, cached ? transactionService : null,
+                new TechnicalLoggerSLF4JImpl());
+    }
+
+    @Benchmark
+    public void evaluateExpressionsAndOperations(final Blackhole blackhole) throws Exception {
+        // expressions read all variables at once
+        blackhole.consume(dataInstanceService.getDataInstances(Arrays.asList(names), FLOW_NODE_ID, "ACTIVITY_INSTANCE", parentContainerResolver));
+        // each operation then resolves the variable it updates
+        for (final String name : names) {
+            blackhole.consume(dataInstanceService.getDataInstance(name, FLOW_NODE_ID, "ACTIVITY_INSTANCE", parentContainerResolver));
+        }
+        for (final BonitaTransactionSynchronization synchronization : synchronizations) {
+            synchronization.afterCompletion(TransactionState.COMMITTED);
+        }
+        synchronizations.clear();
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(DataResolutionBenchmark.class.getSimpleName()).build()).run();
+    }
+
+}
@@ -13,6 +13,9 @@
  **/
 package org.bonitasoft.engine.dependency.impl;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -22,6 +25,7 @@ import java.util.Optional;
 
 import org.bonitasoft.engine.builder.BuilderFactory;
 import org.bonitasoft.engine.classloader.ClassLoaderService;
+import org.bonitasoft.engine.classloader.JarStore;
 import org.bonitasoft.engine.classloader.SClassLoaderException;
 import org.bonitasoft.engine.commons.CollectionUtil;
 import org.bonitasoft.engine.commons.NullCheckingUtil;
@@ -252,16 +256,67 @@ public class DependencyServiceImpl extends AbstractDependencyService {
         }
     }
 
+    /**
+     * Jars already present in the jar store are given to the classloader without reading their content from the database: only the jars missing
+     * from the store and the other resources are read.
+     */
     @Override
     public void refreshClassLoader(final ScopeType type, final long id) throws SDependencyException {
-        final Map<String, byte[]> resources = getDependenciesResources(type, id);
+        final List<File> jars = new ArrayList<>();
+        final Map<String, byte[]> resources = new HashMap<>();
         try {
-            classLoaderService.refreshLocalClassLoader(type.name(), id, resources);
-        } catch (final SClassLoaderException e) {
+            final JarStore jarStore = classLoaderService.getJarStore();
+            int fromIndex = 0;
+            List<Long> dependencyIds;
+            do {
+                dependencyIds = getDependencyIds(id, type, fromIndex, BATCH_SIZE);
+                if (dependencyIds != null && dependencyIds.size() > 0) {
+                    addJarsAndResources(jarStore, dependencyIds, jars, resources);
+                }
+                fromIndex = fromIndex + BATCH_SIZE;
+            } while (dependencyIds != null && dependencyIds.size() == BATCH_SIZE);
+            classLoaderService.refreshLocalClassLoader(type.name(), id, jars, resources);
+        } catch (final SClassLoaderException | IOException e) {
             throw new SDependencyException("Cannot refresh classLoader with type'" + type + "' and id " + id, e);
         }
     }
 
+    private void addJarsAndResources(final JarStore jarStore, final List<Long> dependencyIds, final List<File> jars, final Map<String, byte[]> resources)
+            throws SDependencyException, IOException {
+        final List<Long> dependenciesToRead = new ArrayList<>();
+        for (final Map<String, Object> dependency : getFileNamesAndChecksums(dependencyIds)) {
+            final File jar = isJar((String) dependency.get("fileName")) ? jarStore.get((String) dependency.get("checksum")) : null;
+            if (jar != null) {
+                jars.add(jar);
+            } else {
+                dependenciesToRead.add((Long) dependency.get("id"));
+            }
+        }
+        if (dependenciesToRead.isEmpty()) {
+            return;
+        }
+        for (final SDependency dependency : getDependencies(dependenciesToRead)) {
+            if (isJar(dependency.getFileName())) {
+                jars.add(jarStore.store(dependency.getValue()));
+            } else {
+                resources.put(dependency.getFileName(), dependency.getValue());
+            }
+        }
+    }
+
+    private boolean isJar(final String fileName) {
+        return fileName != null && fileName.endsWith(".jar");
+    }
+
+    private List<Map<String, Object>> getFileNamesAndChecksums(final List<Long> dependencyIds) throws SDependencyException {
+        try {
+            return persistenceService.selectList(new SelectListDescriptor<Map<String, Object>>("getDependencyFileNamesAndChecksums",
+                    CollectionUtil.buildSimpleMap("ids", dependencyIds), SDependency.class, QueryOptions.countQueryOptions()));
+        } catch (final SBonitaReadException e) {
+            throw new SDependencyException("Can't get dependencies", e);
+        }
+    }
+
     @Override
     protected Long getTenantId() throws STenantIdNotSetException {
         return readSessionAccessor.getTenantId();
@@ -281,6 +336,7 @@ public class DependencyServiceImpl extends AbstractDependencyService {
             if (sDependency == null) {
                 throw new SDependencyNotFoundException("unable to find dependency " + fileName + " on artifact: " + artifactId + " with type " + scopeType);
             }
+            // the checksum is updated along with the value
             recorder.recordUpdate(UpdateRecord.buildSetFields(sDependency, Collections.singletonMap("value_", jarContent)), DEPENDENCY);
             return sDependency;
         } catch (SBonitaReadException | SRecorderException e) {
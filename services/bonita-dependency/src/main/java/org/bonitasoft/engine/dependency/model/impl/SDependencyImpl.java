@@ -15,6 +15,7 @@ package org.bonitasoft.engine.dependency.model.impl;
 
 import java.util.Arrays;
 
+import org.bonitasoft.engine.commons.io.IOUtil;
 import org.bonitasoft.engine.dependency.model.SDependency;
 
 /**
@@ -37,6 +38,11 @@ public class SDependencyImpl implements SDependency {
 
     private byte[] value_;
 
+    /**
+     * SHA-256 of the value, used to find the jar in the jar store without reading the value
+     */
+    private String checksum;
+
     public SDependencyImpl() {
         super();
     }
@@ -45,7 +51,7 @@ public class SDependencyImpl implements SDependency {
         super();
         this.name = name;
         this.fileName = fileName;
-        this.value_ = value;
+        setValue_(value);
     }
 
     public long getTenantId() {
@@ -82,6 +88,11 @@ public class SDependencyImpl implements SDependency {
 
     public void setValue_(final byte[] value_) {
         this.value_ = value_;
+        this.checksum = value_ != null ? IOUtil.sha256(value_) : null;
+    }
+
+    public String getChecksum() {
+        return checksum;
     }
 
     public void setName(final String name) {
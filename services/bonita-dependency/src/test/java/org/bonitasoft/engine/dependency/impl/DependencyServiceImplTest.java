@@ -15,16 +15,23 @@ package org.bonitasoft.engine.dependency.impl;
 
 import static org.mockito.Mockito.*;
 
+import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.bonitasoft.engine.classloader.ClassLoaderService;
+import org.bonitasoft.engine.classloader.JarStore;
+import org.bonitasoft.engine.commons.io.IOUtil;
 import org.bonitasoft.engine.dependency.SDependencyException;
 import org.bonitasoft.engine.dependency.SDependencyNotFoundException;
 import org.bonitasoft.engine.dependency.model.SDependency;
 import org.bonitasoft.engine.dependency.model.SDependencyMapping;
 import org.bonitasoft.engine.dependency.model.ScopeType;
+import org.bonitasoft.engine.dependency.model.impl.SDependencyImpl;
 import org.bonitasoft.engine.events.EventService;
 import org.bonitasoft.engine.log.technical.TechnicalLoggerService;
 import org.bonitasoft.engine.persistence.QueryOptions;
@@ -38,7 +45,9 @@ import org.bonitasoft.engine.service.BroadcastService;
 import org.bonitasoft.engine.services.QueriableLoggerService;
 import org.bonitasoft.engine.sessionaccessor.ReadSessionAccessor;
 import org.junit.Assert;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.mockito.InjectMocks;
 import org.mockito.Matchers;
@@ -69,6 +78,8 @@ public class DependencyServiceImplTest {
     private ReadSessionAccessor readSessionAccessor;
     @InjectMocks
     private DependencyServiceImpl dependencyServiceImpl;
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
 
     /**
      * Test method for {@link org.bonitasoft.engine.dependency.impl.DependencyServiceImpl#getDependency(long)}.
@@ -202,4 +213,44 @@ public class DependencyServiceImplTest {
         dependencyServiceImpl.deleteDependency("notFound");
     }
 
+    @Test
+    public void refreshClassLoader_should_only_read_the_content_of_jars_missing_from_the_jar_store() throws Exception {
+        final JarStore jarStore = new JarStore(temporaryFolder.newFolder());
+        final File storedJar = jarStore.store("stored".getBytes());
+        final byte[] configuration = "key=value".getBytes();
+        final List<SDependency> missingDependencies = Arrays.<SDependency> asList(new SDependencyImpl("missing", "missing.jar", "missing".getBytes()),
+                new SDependencyImpl("config", "config.properties", configuration));
+        doReturn(jarStore).when(classLoaderService).getJarStore();
+        doAnswer(invocation -> {
+            final SelectListDescriptor<?> descriptor = invocation.getArgument(0);
+            switch (descriptor.getQueryName()) {
+                case "getDependencyIds":
+                    return Arrays.asList(1L, 2L, 3L);
+                case "getDependencyFileNamesAndChecksums":
+                    return Arrays.asList(fileNameAndChecksum(1L, "stored.jar", "stored"), fileNameAndChecksum(2L, "missing.jar", "missing"),
+                            fileNameAndChecksum(3L, "config.properties", "key=value"));
+                default:
+                    return missingDependencies;
+            }
+        }).when(persistenceService).selectList(Matchers.<SelectListDescriptor<Object>> any());
+
+        dependencyServiceImpl.refreshClassLoader(ScopeType.PROCESS, 12L);
+
+        verify(persistenceService).selectList(
+                Matchers.<SelectListDescriptor<Object>> argThat(descriptor -> descriptor.getQueryName().equals("getDependenciesByIds")
+                        && descriptor.getInputParameter("ids").equals(Arrays.asList(2L, 3L))));
+        final File missingJar = jarStore.get(IOUtil.sha256("missing".getBytes()));
+        Assert.assertNotNull(missingJar);
+        verify(classLoaderService).refreshLocalClassLoader("PROCESS", 12L, Arrays.asList(storedJar, missingJar),
+                Collections.singletonMap("config.properties", configuration));
+    }
+
+    private Map<String, Object> fileNameAndChecksum(long id, String fileName, String content) {
+        final Map<String, Object> dependency = new HashMap<>();
+        dependency.put("id", id);
+        dependency.put("fileName", fileName);
+        dependency.put("checksum", IOUtil.sha256(content.getBytes()));
+        return dependency;
+    }
+
 }
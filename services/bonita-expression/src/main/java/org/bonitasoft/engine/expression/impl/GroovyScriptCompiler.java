@@ -0,0 +1,125 @@
+/**
+ * Copyright (C) 2018 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.expression.impl;
+
+import java.nio.charset.StandardCharsets;
+import java.security.AccessController;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivilegedAction;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+
+import org.bonitasoft.engine.commons.exceptions.SBonitaRuntimeException;
+import org.codehaus.groovy.control.CompilationFailedException;
+import org.codehaus.groovy.control.CompilationUnit;
+import org.codehaus.groovy.control.CompilerConfiguration;
+import org.codehaus.groovy.control.Phases;
+import org.codehaus.groovy.tools.GroovyClass;
+
+import groovy.lang.GroovyClassLoader;
+
+/**
+ * Compiles groovy scripts ahead of their first evaluation.
+ * <p>
+ * Each script is compiled into a class named after the digest of its content (see {@link #getScriptClassName(String)}), so that
+ * {@link GroovyScriptExpressionExecutorCacheStrategy} can load the precompiled class from the definition classloader instead of parsing the script again.
+ */
+public class GroovyScriptCompiler {
+
+    /**
+     * Name of the dependency holding the scripts compiled when a process is deployed
+     */
+    public static final String COMPILED_SCRIPTS_JAR_NAME = "bonita-compiled-groovy-scripts.jar";
+
+    private static final String SCRIPT_CLASS_PREFIX = "BScript_";
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /**
+     * @param expressionContent
+     *        the content of the script
+     * @return the name of the class the script is compiled into, derived from a SHA-256 digest of its content
+     */
+    public static String getScriptClassName(final String expressionContent) {
+        final byte[] digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256").digest(expressionContent.getBytes(StandardCharsets.UTF_8));
+        } catch (final NoSuchAlgorithmException e) {
+            throw new SBonitaRuntimeException(e);
+        }
+        final StringBuilder name = new StringBuilder(SCRIPT_CLASS_PREFIX.length() + digest.length * 2).append(SCRIPT_CLASS_PREFIX);
+        for (final byte b : digest) {
+            name.append(HEX[(b >> 4) & 0xF]).append(HEX[b & 0xF]);
+        }
+        return name.toString();
+    }
+
+    /**
+     * Compile the given scripts against the given classloader.
+     * Scripts that do not compile are skipped: they will be compiled, and will fail, when evaluated.
+     *
+     * @param scripts
+     *        contents of the scripts to compile
+     * @param classLoader
+     *        the classloader used to resolve the classes referenced by the scripts
+     * @return the bytecode of the compiled classes, indexed by the name of their class file
+     */
+    public Map<String, byte[]> compile(final Collection<String> scripts, final ClassLoader classLoader) {
+        final Map<String, byte[]> classes = new HashMap<>();
+        final GroovyClassLoader groovyClassLoader = AccessController.doPrivileged(new PrivilegedAction<GroovyClassLoader>() {
+
+            @Override
+            public GroovyClassLoader run() {
+                return new GroovyClassLoader(classLoader);
+            }
+        });
+        for (final String script : new LinkedHashSet<>(scripts)) {
+            // one compilation unit per script: a script that does not compile must not prevent the others from being compiled
+            final CompilationUnit compilationUnit = new CompilationUnit(CompilerConfiguration.DEFAULT, null, groovyClassLoader);
+            final String scriptClassName = getScriptClassName(script);
+            compilationUnit.addSource(scriptClassName + ".groovy", script);
+            try {
+                compilationUnit.compile(Phases.CLASS_GENERATION);
+            } catch (final CompilationFailedException e) {
+                continue;
+            }
+            final Map<String, byte[]> scriptClasses = new HashMap<>();
+            for (final Object compiledClass : compilationUnit.getClasses()) {
+                final GroovyClass groovyClass = (GroovyClass) compiledClass;
+                scriptClasses.put(groovyClass.getName().replace('.', '/') + ".class", groovyClass.getBytes());
+            }
+            if (declaresOnlyScriptClasses(scriptClasses, scriptClassName)) {
+                classes.putAll(scriptClasses);
+            }
+        }
+        return classes;
+    }
+
+    /*
+     * classes declared inside a script are shared by the whole jar and could clash with the ones of another script: such scripts are left to the
+     * evaluation time compilation, which isolates them
+     */
+    private boolean declaresOnlyScriptClasses(final Map<String, byte[]> scriptClasses, final String scriptClassName) {
+        for (final String className : scriptClasses.keySet()) {
+            if (!className.equals(scriptClassName + ".class") && !className.startsWith(scriptClassName + "$")) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
@@ -16,6 +16,9 @@ package org.bonitasoft.engine.expression.impl;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.bonitasoft.engine.cache.CacheService;
 import org.bonitasoft.engine.cache.SCacheException;
@@ -43,10 +46,15 @@ import groovy.lang.Script;
  * @author Matthieu Chaffotte
  * @author Celine Souchet
  */
-public class GroovyScriptExpressionExecutorCacheStrategy extends AbstractGroovyScriptExpressionExecutorStrategy implements ClassLoaderListener {
+public class GroovyScriptExpressionExecutorCacheStrategy extends AbstractGroovyScriptExpressionExecutorStrategy {
 
     public static final String GROOVY_SCRIPT_CACHE_NAME = "GROOVY_SCRIPT_CACHE_NAME";
 
+    /**
+     * @deprecated script classes are no longer stored in the cache under their own key, they are kept with the shell of their definition, see
+     *             {@link #SHELL_KEY}
+     */
+    @Deprecated
     public static final String SCRIPT_KEY = "SCRIPT_";
 
     public static final String SHELL_KEY = "SHELL_";
@@ -59,7 +67,10 @@ public class GroovyScriptExpressionExecutorCacheStrategy extends AbstractGroovyS
 
     private final boolean debugEnabled;
 
-    private static int counter;
+    /**
+     * definitions whose classloader was updated since they were deployed: the classes compiled at deployment are outdated
+     */
+    private final Set<Long> definitionsWithOutdatedCompiledScripts = ConcurrentHashMap.newKeySet();
 
     public GroovyScriptExpressionExecutorCacheStrategy(final CacheService cacheService, final ClassLoaderService classLoaderService,
             final TechnicalLoggerService logger) {
@@ -69,48 +80,59 @@ public class GroovyScriptExpressionExecutorCacheStrategy extends AbstractGroovyS
         debugEnabled = logger.isLoggable(this.getClass(), TechnicalLogSeverity.DEBUG);
     }
 
-    protected synchronized String generateScriptName() {
-        return "BScript" + (++counter) + ".groovy";
-    }
-
     Class getScriptFromCache(final String expressionContent, final Long definitionId) throws SCacheException, SClassLoaderException {
         if (definitionId == null) {
             throw new SBonitaRuntimeException("Unable to evaluate expression without a definitionId");
         }
-        final GroovyShell shell = getShell(definitionId);
-        final String key = getScriptKey(expressionContent);
+        final DefinitionScripts definitionScripts = getDefinitionScripts(definitionId);
+        // the content is the one of the cached definition: the String caches its hash, and equals returns as soon as it finds the same instance
+        Class scriptClass = definitionScripts.scriptClasses.get(expressionContent);
+        if (scriptClass == null) {
+            scriptClass = definitionsWithOutdatedCompiledScripts.contains(definitionId) ? parseScript(definitionScripts.shell, expressionContent)
+                    : loadOrParseScript(definitionScripts.shell, expressionContent);
+            definitionScripts.scriptClasses.put(expressionContent, scriptClass);
+        }
+        return scriptClass;
+    }
 
-        GroovyCodeSource gcs = (GroovyCodeSource) cacheService.get(GROOVY_SCRIPT_CACHE_NAME, key);
+    private Class loadOrParseScript(final GroovyShell shell, final String expressionContent) {
+        try {
+            // compiled when the definition was deployed, or already parsed by this shell
+            return shell.getClassLoader().loadClass(GroovyScriptCompiler.getScriptClassName(expressionContent), false, true);
+        } catch (final ClassNotFoundException e) {
+            return parseScript(shell, expressionContent);
+        }
+    }
 
-        if (gcs == null) {
-            gcs = AccessController.doPrivileged(new PrivilegedAction<GroovyCodeSource>() {
+    private Class parseScript(final GroovyShell shell, final String expressionContent) {
+        final String className = GroovyScriptCompiler.getScriptClassName(expressionContent);
+        final GroovyCodeSource gcs = AccessController.doPrivileged(new PrivilegedAction<GroovyCodeSource>() {
 
-                public GroovyCodeSource run() {
-                    return new GroovyCodeSource(expressionContent, generateScriptName(), GroovyShell.DEFAULT_CODE_BASE);
-                }
-            });
-            cacheService.store(GROOVY_SCRIPT_CACHE_NAME, key, gcs);
-        }
+            @Override
+            public GroovyCodeSource run() {
+                return new GroovyCodeSource(expressionContent, className + ".groovy", GroovyShell.DEFAULT_CODE_BASE);
+            }
+        });
         // parse the groovy source code with cache set to true
         return shell.getClassLoader().parseClass(gcs, true);
     }
 
-    private String getScriptKey(String expressionContent) {
-        return SCRIPT_KEY + expressionContent.hashCode();
+    GroovyShell getShell(final Long definitionId) throws SClassLoaderException, SCacheException {
+        return getDefinitionScripts(definitionId).shell;
     }
 
-    GroovyShell getShell(final Long definitionId) throws SClassLoaderException, SCacheException {
+    private DefinitionScripts getDefinitionScripts(final Long definitionId) throws SClassLoaderException, SCacheException {
         String key = SHELL_KEY + definitionId;
-        GroovyShell shell = (GroovyShell) cacheService.get(GROOVY_SCRIPT_CACHE_NAME, key);
-        if (shell == null) {
+        DefinitionScripts definitionScripts = (DefinitionScripts) cacheService.get(GROOVY_SCRIPT_CACHE_NAME, key);
+        if (definitionScripts == null) {
             ClassLoader classLoader = getClassLoaderForShell(definitionId);
             if (debugEnabled) {
                 logger.log(this.getClass(), TechnicalLogSeverity.DEBUG, "Create a new groovy classloader for " + definitionId + " " + classLoader);
             }
-            shell = new GroovyShell(classLoader);
-            cacheService.store(GROOVY_SCRIPT_CACHE_NAME, key, shell);
+            definitionScripts = new DefinitionScripts(new GroovyShell(classLoader));
+            cacheService.store(GROOVY_SCRIPT_CACHE_NAME, key, definitionScripts);
         }
-        return shell;
+        return definitionScripts;
     }
 
     private ClassLoader getClassLoaderForShell(Long definitionId) throws SClassLoaderException {
@@ -124,7 +146,7 @@ public class GroovyScriptExpressionExecutorCacheStrategy extends AbstractGroovyS
             }
         } else {
             classLoader = classLoaderService.getLocalClassLoader(DEFINITION_TYPE, definitionId);
-            classLoaderService.addListener(DEFINITION_TYPE, definitionId, this);
+            classLoaderService.addListener(DEFINITION_TYPE, definitionId, new DefinitionClassLoaderListener(definitionId));
         }
         return classLoader;
     }
@@ -161,23 +183,111 @@ public class GroovyScriptExpressionExecutorCacheStrategy extends AbstractGroovyS
         }
     }
 
-    @Override
-    public void onUpdate(ClassLoader newClassLoader) {
-        clearCache();
+    /**
+     * The classes compiled when the definition was deployed were compiled against its previous dependencies: the scripts already evaluated are compiled
+     * again in a new shell using the updated classloader, and the other ones are compiled when first evaluated.
+     */
+    private void recompileScripts(final long definitionId, final ClassLoader newClassLoader) {
+        definitionsWithOutdatedCompiledScripts.add(definitionId);
+        final DefinitionScripts previousScripts = removeShell(definitionId);
+        if (previousScripts == null || previousScripts.scriptClasses.isEmpty() || newClassLoader == null) {
+            return;
+        }
+        final DefinitionScripts definitionScripts = new DefinitionScripts(new GroovyShell(newClassLoader));
+        for (final String expressionContent : previousScripts.scriptClasses.keySet()) {
+            try {
+                definitionScripts.scriptClasses.put(expressionContent, parseScript(definitionScripts.shell, expressionContent));
+            } catch (final RuntimeException | LinkageError e) {
+                // it will be compiled again, and fail, when evaluated
+                if (debugEnabled) {
+                    logger.log(getClass(), TechnicalLogSeverity.DEBUG, "Unable to compile again a groovy script of definition " + definitionId, e);
+                }
+            }
+        }
+        try {
+            cacheService.store(GROOVY_SCRIPT_CACHE_NAME, SHELL_KEY + definitionId, definitionScripts);
+        } catch (final SCacheException e) {
+            logger.log(getClass(), TechnicalLogSeverity.WARNING, "Unable to cache the groovy shell of definition " + definitionId
+                    + ", its scripts will be compiled again when evaluated", e);
+        }
     }
 
-    private void clearCache() {
+    private DefinitionScripts removeShell(final long definitionId) {
         try {
-            cacheService.clear(GROOVY_SCRIPT_CACHE_NAME);
+            final DefinitionScripts definitionScripts = (DefinitionScripts) cacheService.get(GROOVY_SCRIPT_CACHE_NAME, SHELL_KEY + definitionId);
+            cacheService.remove(GROOVY_SCRIPT_CACHE_NAME, SHELL_KEY + definitionId);
+            return definitionScripts;
         } catch (SCacheException e) {
             logger.log(getClass(), TechnicalLogSeverity.ERROR,
-                    "error while clearing the cache of the groovy script executor strategy, you might have classloading issue, restart the server if it's the case",
+                    "error while removing the groovy shell of definition " + definitionId
+                            + " from the cache of the groovy script executor strategy, you might have classloading issue, restart the server if it's the case",
                     e);
+            return null;
         }
     }
 
-    @Override
-    public void onDestroy(ClassLoader oldClassLoader) {
-        clearCache();
+    /**
+     * Shell of a definition with the classes of the scripts it evaluated, by script content. The classes are already kept
+     * by the classloader of the shell, they are dropped with it.
+     */
+    private static final class DefinitionScripts {
+
+        private final GroovyShell shell;
+
+        private final ConcurrentMap<String, Class> scriptClasses = new ConcurrentHashMap<>();
+
+        DefinitionScripts(final GroovyShell shell) {
+            this.shell = shell;
+        }
+    }
+
+    /**
+     * Recompiles the scripts of the definition whose classloader was updated, and drops its shell when the classloader is destroyed.
+     * Listeners are compared on the definition id so that a definition has a single listener registered.
+     */
+    private class DefinitionClassLoaderListener implements ClassLoaderListener {
+
+        private final long definitionId;
+
+        DefinitionClassLoaderListener(final long definitionId) {
+            this.definitionId = definitionId;
+        }
+
+        @Override
+        public void onUpdate(ClassLoader newClassLoader) {
+            recompileScripts(definitionId, newClassLoader);
+        }
+
+        @Override
+        public void onDestroy(ClassLoader oldClassLoader) {
+            definitionsWithOutdatedCompiledScripts.remove(definitionId);
+            removeShell(definitionId);
+        }
+
+        private GroovyScriptExpressionExecutorCacheStrategy getStrategy() {
+            return GroovyScriptExpressionExecutorCacheStrategy.this;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof DefinitionClassLoaderListener)) {
+                return false;
+            }
+            final DefinitionClassLoaderListener that = (DefinitionClassLoaderListener) o;
+            return definitionId == that.definitionId && getStrategy() == that.getStrategy();
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (definitionId ^ (definitionId >>> 32));
+        }
+
+        @Override
+        public String toString() {
+            return "DefinitionClassLoaderListener{definitionId=" + definitionId + "}";
+        }
     }
 }
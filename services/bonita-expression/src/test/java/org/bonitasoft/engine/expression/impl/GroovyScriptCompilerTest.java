@@ -0,0 +1,66 @@
+/**
+ * Copyright (C) 2018 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.expression.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class GroovyScriptCompilerTest {
+
+    private final GroovyScriptCompiler groovyScriptCompiler = new GroovyScriptCompiler();
+
+    @Test
+    public void getScriptClassName_should_depend_only_on_the_content() {
+        assertThat(GroovyScriptCompiler.getScriptClassName("return 1")).isEqualTo(GroovyScriptCompiler.getScriptClassName("return 1"))
+                .isNotEqualTo(GroovyScriptCompiler.getScriptClassName("return 2")).matches("BScript_[0-9a-f]{64}");
+    }
+
+    @Test
+    public void getScriptClassName_should_differ_for_contents_having_the_same_hashCode() {
+        assertThat("Aa".hashCode()).isEqualTo("BB".hashCode());
+
+        assertThat(GroovyScriptCompiler.getScriptClassName("Aa")).isNotEqualTo(GroovyScriptCompiler.getScriptClassName("BB"));
+    }
+
+    @Test
+    public void compile_should_generate_a_class_named_after_the_script_digest() {
+        final Map<String, byte[]> classes = groovyScriptCompiler.compile(Collections.singletonList("return [1, 2].collect { it * 2 }"),
+                getClass().getClassLoader());
+
+        final String scriptClassName = GroovyScriptCompiler.getScriptClassName("return [1, 2].collect { it * 2 }");
+        assertThat(classes).containsKey(scriptClassName + ".class");
+        assertThat(classes.keySet()).allMatch(name -> name.startsWith(scriptClassName));
+    }
+
+    @Test
+    public void compile_should_skip_scripts_that_do_not_compile() {
+        final Map<String, byte[]> classes = groovyScriptCompiler.compile(Arrays.asList("return 'ok'", "return (("), getClass().getClassLoader());
+
+        assertThat(classes).containsOnlyKeys(GroovyScriptCompiler.getScriptClassName("return 'ok'") + ".class");
+    }
+
+    @Test
+    public void compile_should_skip_scripts_declaring_classes() {
+        final Map<String, byte[]> classes = groovyScriptCompiler.compile(Collections.singletonList("class Foo {}\nreturn new Foo()"),
+                getClass().getClassLoader());
+
+        assertThat(classes).isEmpty();
+    }
+
+}
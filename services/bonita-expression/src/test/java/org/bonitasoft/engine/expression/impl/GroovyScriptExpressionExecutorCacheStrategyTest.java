@@ -16,10 +16,14 @@ package org.bonitasoft.engine.expression.impl;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.verify;
 
 import java.io.File;
 import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -28,6 +32,7 @@ import java.util.Map;
 import org.bonitasoft.engine.cache.CacheConfiguration;
 import org.bonitasoft.engine.cache.SCacheException;
 import org.bonitasoft.engine.cache.ehcache.EhCacheCacheService;
+import org.bonitasoft.engine.classloader.ClassLoaderListener;
 import org.bonitasoft.engine.classloader.ClassLoaderService;
 import org.bonitasoft.engine.classloader.SClassLoaderException;
 import org.bonitasoft.engine.commons.exceptions.SBonitaRuntimeException;
@@ -44,6 +49,7 @@ import org.junit.AfterClass;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
@@ -111,28 +117,14 @@ public class GroovyScriptExpressionExecutorCacheStrategyTest {
 
 
     @Test
-    public void should_update_on_classloader_listener_clear_shell_cache() throws Exception {
+    public void should_destroy_of_a_definition_classloader_clear_the_shell_of_this_definition() throws Exception {
         // given
-
-        // when
         final GroovyShell shell1 = groovyScriptExpressionExecutorCacheStrategy.getShell(12l);
-        groovyScriptExpressionExecutorCacheStrategy.onUpdate(null);
-        final GroovyShell shell2 = groovyScriptExpressionExecutorCacheStrategy.getShell(12l);
-
-        // then
-        assertThat(shell1).isNotNull();
-        assertThat(shell2).isNotNull();
-        assertThat(shell1).isNotEqualTo(shell2);
-    }
-
-
-    @Test
-    public void should_destroy_on_classloader_listener_clear_shell_cache() throws Exception {
-        // given
+        final ArgumentCaptor<ClassLoaderListener> listener = ArgumentCaptor.forClass(ClassLoaderListener.class);
+        verify(classLoaderService).addListener(anyString(), eq(12L), listener.capture());
 
         // when
-        final GroovyShell shell1 = groovyScriptExpressionExecutorCacheStrategy.getShell(12l);
-        groovyScriptExpressionExecutorCacheStrategy.onDestroy(null);
+        listener.getValue().onDestroy(null);
         final GroovyShell shell2 = groovyScriptExpressionExecutorCacheStrategy.getShell(12l);
 
         // then
@@ -215,6 +207,84 @@ public class GroovyScriptExpressionExecutorCacheStrategyTest {
         assertThat(script1).isNotEqualTo(script2);
     }
 
+    @Test
+    public void should_getScriptFromCache_name_script_class_using_the_digest_of_its_content() throws Exception {
+        // when
+        final Class script = groovyScriptExpressionExecutorCacheStrategy.getScriptFromCache("MyScriptContent", 12L);
+
+        // then
+        assertThat(script.getName()).isEqualTo(GroovyScriptCompiler.getScriptClassName("MyScriptContent"));
+    }
+
+    @Test
+    public void should_getScriptFromCache_keep_script_classes_with_the_shell_of_the_definition() throws Exception {
+        // when
+        groovyScriptExpressionExecutorCacheStrategy.getScriptFromCache("MyScriptContent1", 12L);
+        groovyScriptExpressionExecutorCacheStrategy.getScriptFromCache("MyScriptContent2", 12L);
+
+        // then
+        assertThat(cacheService.getKeys("GROOVY_SCRIPT_CACHE_NAME")).containsOnly(GroovyScriptExpressionExecutorCacheStrategy.SHELL_KEY + 12L);
+    }
+
+    @Test
+    public void should_getScriptFromCache_load_script_compiled_at_deployment() throws Exception {
+        // given
+        final String content = "return 'precompiled'";
+        final Map<String, byte[]> classes = new GroovyScriptCompiler().compile(Collections.singletonList(content), getClass().getClassLoader());
+        final File jar = new File(diskStorePath, "scripts.jar");
+        jar.getParentFile().mkdirs();
+        IOUtil.write(jar, IOUtil.generateJar(classes));
+        final URLClassLoader definitionClassLoader = new URLClassLoader(new URL[] { jar.toURI().toURL() }, getClass().getClassLoader());
+        doReturn(definitionClassLoader).when(classLoaderService).getLocalClassLoader(anyString(), eq(14L));
+
+        // when
+        final Class script = groovyScriptExpressionExecutorCacheStrategy.getScriptFromCache(content, 14L);
+
+        // then
+        assertThat(script.getClassLoader()).isSameAs(definitionClassLoader);
+    }
+
+    @Test
+    public void should_update_of_a_definition_classloader_compile_again_the_scripts_compiled_at_deployment() throws Exception {
+        // given
+        final String content = "return 'precompiled'";
+        final Map<String, byte[]> classes = new GroovyScriptCompiler().compile(Collections.singletonList(content), getClass().getClassLoader());
+        final File jar = new File(diskStorePath, "outdated-scripts.jar");
+        jar.getParentFile().mkdirs();
+        IOUtil.write(jar, IOUtil.generateJar(classes));
+        final URLClassLoader definitionClassLoader = new URLClassLoader(new URL[] { jar.toURI().toURL() }, getClass().getClassLoader());
+        doReturn(definitionClassLoader).when(classLoaderService).getLocalClassLoader(anyString(), eq(15L));
+        final Class compiledAtDeployment = groovyScriptExpressionExecutorCacheStrategy.getScriptFromCache(content, 15L);
+        final ArgumentCaptor<ClassLoaderListener> listener = ArgumentCaptor.forClass(ClassLoaderListener.class);
+        verify(classLoaderService).addListener(anyString(), eq(15L), listener.capture());
+
+        // when
+        listener.getValue().onUpdate(definitionClassLoader);
+
+        // then
+        final Class recompiled = groovyScriptExpressionExecutorCacheStrategy.getScriptFromCache(content, 15L);
+        assertThat(compiledAtDeployment.getClassLoader()).isSameAs(definitionClassLoader);
+        assertThat(recompiled).isNotSameAs(compiledAtDeployment);
+        assertThat(recompiled.getClassLoader()).isNotSameAs(definitionClassLoader);
+        assertThat(recompiled.getName()).isEqualTo(compiledAtDeployment.getName());
+    }
+
+    @Test
+    public void should_update_of_a_definition_classloader_only_clear_the_shell_of_this_definition() throws Exception {
+        // given
+        final GroovyShell shellOf12 = groovyScriptExpressionExecutorCacheStrategy.getShell(12L);
+        final GroovyShell shellOf13 = groovyScriptExpressionExecutorCacheStrategy.getShell(13L);
+        final ArgumentCaptor<ClassLoaderListener> listener = ArgumentCaptor.forClass(ClassLoaderListener.class);
+        verify(classLoaderService).addListener(anyString(), eq(12L), listener.capture());
+
+        // when
+        listener.getValue().onUpdate(null);
+
+        // then
+        assertThat(groovyScriptExpressionExecutorCacheStrategy.getShell(12L)).isNotSameAs(shellOf12);
+        assertThat(groovyScriptExpressionExecutorCacheStrategy.getShell(13L)).isSameAs(shellOf13);
+    }
+
     @Test(expected = SBonitaRuntimeException.class)
     public void should_not_put_in_cache_script_without_definition_id() throws Exception {
 
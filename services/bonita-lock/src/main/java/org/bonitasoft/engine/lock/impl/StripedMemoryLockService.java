@@ -0,0 +1,228 @@
+/**
+ * Copyright (C) 2018 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.lock.impl;
+
+import java.text.MessageFormat;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.bonitasoft.engine.lock.BonitaLock;
+import org.bonitasoft.engine.lock.LockService;
+import org.bonitasoft.engine.lock.SLockException;
+import org.bonitasoft.engine.log.technical.TechnicalLogSeverity;
+import org.bonitasoft.engine.log.technical.TechnicalLoggerService;
+
+/**
+ * In memory {@link LockService} using a striped set of {@link ConcurrentHashMap} instead of a global synchronized map.
+ * <p>
+ * Locks are keyed by a primitive composite (ordinal of the object type, object id, tenant id): no String key is built on
+ * lock or unlock. Each entry counts the threads holding or waiting for its lock and is removed atomically (using
+ * {@link ConcurrentHashMap#compute}) when this count drops to zero, so there is no race between a thread releasing the
+ * last reference and a thread taking a new one, and no retry is needed.
+ * <p>
+ * Unlike {@link MemoryLockService}, the timeout given to {@link #tryLock(long, String, long, TimeUnit, long)} is
+ * honored. This service must be configured as a singleton.
+ */
+public class StripedMemoryLockService implements LockService {
+
+    private final ConcurrentHashMap<String, Integer> objectTypeOrdinals = new ConcurrentHashMap<>();
+
+    private final AtomicInteger nextObjectTypeOrdinal = new AtomicInteger();
+
+    private final ConcurrentHashMap<LockKey, LockEntry>[] stripes;
+
+    private final int stripeMask;
+
+    private final TechnicalLoggerService logger;
+
+    private final int lockTimeout;
+
+    private final boolean traceEnabled;
+
+    /**
+     * @param lockTimeout timeout to obtain a lock using {@link #lock(long, String, long)} (in seconds)
+     * @param lockPoolSize the number of stripes, rounded up to the next power of two
+     */
+    @SuppressWarnings("unchecked")
+    public StripedMemoryLockService(final TechnicalLoggerService logger, final int lockTimeout, final int lockPoolSize) {
+        this.logger = logger;
+        this.lockTimeout = lockTimeout;
+        traceEnabled = logger.isLoggable(getClass(), TechnicalLogSeverity.TRACE);
+        final int numberOfStripes = Integer.highestOneBit(Math.max(1, lockPoolSize - 1)) << 1;
+        stripes = new ConcurrentHashMap[numberOfStripes];
+        for (int i = 0; i < numberOfStripes; i++) {
+            stripes[i] = new ConcurrentHashMap<>();
+        }
+        stripeMask = numberOfStripes - 1;
+    }
+
+    private static final class LockKey {
+
+        private final int objectTypeOrdinal;
+
+        private final long objectToLockId;
+
+        private final long tenantId;
+
+        private final int hash;
+
+        LockKey(final int objectTypeOrdinal, final long objectToLockId, final long tenantId) {
+            this.objectTypeOrdinal = objectTypeOrdinal;
+            this.objectToLockId = objectToLockId;
+            this.tenantId = tenantId;
+            int h = Long.hashCode(objectToLockId);
+            h = 31 * h + objectTypeOrdinal;
+            h = 31 * h + Long.hashCode(tenantId);
+            // spread the bits so that consecutive ids do not end up in the same stripe
+            hash = h ^ (h >>> 16);
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof LockKey)) {
+                return false;
+            }
+            final LockKey other = (LockKey) o;
+            return objectToLockId == other.objectToLockId && objectTypeOrdinal == other.objectTypeOrdinal && tenantId == other.tenantId;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static final class LockEntry {
+
+        private final ReentrantLock lock = new ReentrantLock();
+
+        /**
+         * number of threads holding or waiting for the lock, only modified inside a compute of the owning map
+         */
+        private int references;
+    }
+
+    private LockKey key(final long objectToLockId, final String objectType, final long tenantId) {
+        Integer ordinal = objectTypeOrdinals.get(objectType);
+        if (ordinal == null) {
+            // object types are a small fixed set of constants: this is only done once per type
+            ordinal = objectTypeOrdinals.computeIfAbsent(objectType, type -> nextObjectTypeOrdinal.getAndIncrement());
+        }
+        return new LockKey(ordinal, objectToLockId, tenantId);
+    }
+
+    private ConcurrentHashMap<LockKey, LockEntry> stripe(final LockKey key) {
+        return stripes[key.hashCode() & stripeMask];
+    }
+
+    private LockEntry acquireReference(final ConcurrentHashMap<LockKey, LockEntry> stripe, final LockKey key) {
+        return stripe.compute(key, (k, entry) -> {
+            final LockEntry referencedEntry = entry == null ? new LockEntry() : entry;
+            referencedEntry.references++;
+            return referencedEntry;
+        });
+    }
+
+    private void releaseReference(final ConcurrentHashMap<LockKey, LockEntry> stripe, final LockKey key) {
+        stripe.computeIfPresent(key, (k, entry) -> --entry.references == 0 ? null : entry);
+    }
+
+    @Override
+    public BonitaLock tryLock(final long objectToLockId, final String objectType, final long timeout, final TimeUnit timeUnit, final long tenantId) {
+        final LockKey key = key(objectToLockId, objectType, tenantId);
+        final ConcurrentHashMap<LockKey, LockEntry> stripe = stripe(key);
+        final LockEntry entry = acquireReference(stripe, key);
+        final ReentrantLock lock = entry.lock;
+        if (lock.isHeldByCurrentThread()) {
+            releaseReference(stripe, key);
+            // We do not want to support reentrant access
+            final String message = "Trying to acquire the lock another time by the same Thread, this should not happen !";
+            logger.log(getClass(), TechnicalLogSeverity.WARNING, message);
+            throw new IllegalStateException(message);
+        }
+        boolean locked = false;
+        try {
+            locked = lock.tryLock(timeout, timeUnit);
+        } catch (final InterruptedException e) {
+            logger.log(getClass(), TechnicalLogSeverity.ERROR, MessageFormat.format("The trylock was interrupted on {0}:{1}", objectType,
+                    String.valueOf(objectToLockId)));
+            Thread.currentThread().interrupt();
+        }
+        if (!locked) {
+            releaseReference(stripe, key);
+            if (traceEnabled) {
+                logger.log(getClass(), TechnicalLogSeverity.TRACE, MessageFormat.format("Could not lock after {0} {1} {2}:{3}", timeout, timeUnit,
+                        objectType, String.valueOf(objectToLockId)));
+            }
+            return null;
+        }
+        if (traceEnabled) {
+            logger.log(getClass(), TechnicalLogSeverity.TRACE, MessageFormat.format("Locked {0}:{1}", objectType, String.valueOf(objectToLockId)));
+        }
+        return new BonitaLock(lock, objectType, objectToLockId);
+    }
+
+    @Override
+    public BonitaLock lock(final long objectToLockId, final String objectType, final long tenantId) throws SLockException {
+        final BonitaLock lock = tryLock(objectToLockId, objectType, lockTimeout, TimeUnit.SECONDS, tenantId);
+        if (lock == null) {
+            throw new SLockException(MessageFormat.format("Unable to acquire the lock after {0} {1} for {2}:{3}{4}", lockTimeout, TimeUnit.SECONDS,
+                    objectType, String.valueOf(objectToLockId), getDetailsOnLock(objectToLockId, objectType, tenantId)));
+        }
+        return lock;
+    }
+
+    @Override
+    public void unlock(final BonitaLock bonitaLock, final long tenantId) {
+        final LockKey key = key(bonitaLock.getObjectToLockId(), bonitaLock.getObjectType(), tenantId);
+        final ConcurrentHashMap<LockKey, LockEntry> stripe = stripe(key);
+        final LockEntry entry = stripe.get(key);
+        // Compare the references
+        if (entry == null || entry.lock != bonitaLock.getLock()) {
+            throw new IllegalStateException("The lock held by the BonitaLock and the one associated to the key do not match.");
+        }
+        entry.lock.unlock();
+        releaseReference(stripe, key);
+        if (traceEnabled) {
+            logger.log(getClass(), TechnicalLogSeverity.TRACE, "Unlocked " + bonitaLock);
+        }
+    }
+
+    protected String getDetailsOnLock(final long objectToLockId, final String objectType, final long tenantId) {
+        final LockKey key = key(objectToLockId, objectType, tenantId);
+        final LockEntry entry = stripe(key).get(key);
+        if (entry == null) {
+            return ", Details: the lock is not held by any thread";
+        }
+        return ", Details: the lock is " + (entry.lock.isLocked() ? "locked" : "not locked") + " and " + entry.lock.getQueueLength()
+                + " threads are waiting for it";
+    }
+
+    /**
+     * @return the number of locks currently held or waited for
+     */
+    int getNumberOfLocks() {
+        int count = 0;
+        for (final ConcurrentHashMap<LockKey, LockEntry> stripe : stripes) {
+            count += stripe.size();
+        }
+        return count;
+    }
+
+}
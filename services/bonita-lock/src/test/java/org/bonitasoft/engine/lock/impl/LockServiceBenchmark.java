@@ -0,0 +1,105 @@
+/**
+ * Copyright (C) 2018 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.lock.impl;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.bonitasoft.engine.lock.BonitaLock;
+import org.bonitasoft.engine.lock.LockService;
+import org.bonitasoft.engine.log.technical.TechnicalLoggerSLF4JImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compare lock/unlock throughput of {@link MemoryLockService} and {@link StripedMemoryLockService} with 8, 32 and 128
+ * worker threads locking process instances picked among {@link #numberOfProcessInstances}.
+ * Run it using {@link #main(String[])}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LockServiceBenchmark {
+
+    private static final long TENANT_ID = 1L;
+    private static final String PROCESS = "PROCESS";
+
+    @Param({ "MemoryLockService", "StripedMemoryLockService" })
+    public String implementation;
+
+    @Param({ "100", "100000" })
+    public int numberOfProcessInstances;
+
+    private LockService lockService;
+
+    @Setup
+    public void setup() {
+        TechnicalLoggerSLF4JImpl logger = new TechnicalLoggerSLF4JImpl();
+        if ("MemoryLockService".equals(implementation)) {
+            lockService = new MemoryLockService(logger, 60, 100);
+        } else {
+            lockService = new StripedMemoryLockService(logger, 60, 100);
+        }
+    }
+
+    private void lockAndUnlock() {
+        long processInstanceId = ThreadLocalRandom.current().nextInt(numberOfProcessInstances);
+        BonitaLock lock = lockService.tryLock(processInstanceId, PROCESS, 20, TimeUnit.MILLISECONDS, TENANT_ID);
+        if (lock != null) {
+            try {
+                lockService.unlock(lock, TENANT_ID);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void lockAndUnlockWith8Threads() {
+        lockAndUnlock();
+    }
+
+    @Benchmark
+    @Threads(32)
+    public void lockAndUnlockWith32Threads() {
+        lockAndUnlock();
+    }
+
+    @Benchmark
+    @Threads(128)
+    public void lockAndUnlockWith128Threads() {
+        lockAndUnlock();
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(LockServiceBenchmark.class.getSimpleName()).build()).run();
+    }
+
+}
@@ -0,0 +1,163 @@
+/**
+ * Copyright (C) 2018 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.lock.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.bonitasoft.engine.lock.BonitaLock;
+import org.bonitasoft.engine.lock.SLockException;
+import org.bonitasoft.engine.log.technical.TechnicalLoggerService;
+import org.junit.Before;
+import org.junit.Test;
+
+public class StripedMemoryLockServiceTest {
+
+    private static final long TENANT_ID = 1L;
+
+    private StripedMemoryLockService lockService;
+
+    @Before
+    public void before() {
+        lockService = new StripedMemoryLockService(mock(TechnicalLoggerService.class), 1, 12);
+    }
+
+    @Test
+    public void should_lock_different_objects_in_parallel() throws Exception {
+        lockService.lock(3, "a", TENANT_ID);
+
+        final Future<BonitaLock> lock = Executors.newSingleThreadExecutor().submit(() -> lockService.lock(4, "a", TENANT_ID));
+
+        assertThat(lock.get(100, TimeUnit.MILLISECONDS)).isNotNull();
+    }
+
+    @Test
+    public void should_lock_same_id_with_different_types_in_parallel() throws Exception {
+        lockService.lock(3, "a", TENANT_ID);
+
+        final Future<BonitaLock> lock = Executors.newSingleThreadExecutor().submit(() -> lockService.lock(3, "b", TENANT_ID));
+
+        assertThat(lock.get(100, TimeUnit.MILLISECONDS)).isNotNull();
+    }
+
+    @Test
+    public void should_lock_same_object_of_different_tenants_in_parallel() throws Exception {
+        lockService.lock(3, "a", TENANT_ID);
+
+        final Future<BonitaLock> lock = Executors.newSingleThreadExecutor().submit(() -> lockService.lock(3, "a", 2L));
+
+        assertThat(lock.get(100, TimeUnit.MILLISECONDS)).isNotNull();
+    }
+
+    @Test(expected = SLockException.class)
+    public void lock_should_fail_after_timeout_when_object_is_locked_by_an_other_thread() throws Throwable {
+        lockService.lock(2, "a", TENANT_ID);
+
+        try {
+            Executors.newSingleThreadExecutor().submit(() -> lockService.lock(2, "a", TENANT_ID)).get();
+        } catch (final java.util.concurrent.ExecutionException e) {
+            throw e.getCause();
+        }
+    }
+
+    @Test
+    public void tryLock_should_honor_the_given_timeout() throws Exception {
+        lockService.lock(2, "a", TENANT_ID);
+
+        final long start = System.currentTimeMillis();
+        final BonitaLock lock = Executors.newSingleThreadExecutor().submit(() -> lockService.tryLock(2, "a", 20, TimeUnit.MILLISECONDS, TENANT_ID))
+                .get();
+
+        assertThat(lock).isNull();
+        assertThat(System.currentTimeMillis() - start).isLessThan(1000);
+    }
+
+    @Test
+    public void should_give_lock_to_waiting_thread_when_unlocked() throws Exception {
+        final BonitaLock lock = lockService.lock(5, "a", TENANT_ID);
+        final Future<BonitaLock> waitingLock = Executors.newSingleThreadExecutor()
+                .submit(() -> lockService.tryLock(5, "a", 5, TimeUnit.SECONDS, TENANT_ID));
+        Thread.sleep(50);
+
+        lockService.unlock(lock, TENANT_ID);
+
+        assertThat(waitingLock.get(1, TimeUnit.SECONDS)).isNotNull();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void lockOnSameThread_should_throw_IllegalStateException() throws Exception {
+        lockService.lock(123, "abc", TENANT_ID);
+        lockService.lock(123, "abc", TENANT_ID);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void unlock_should_throw_IllegalStateException_when_lock_does_not_match() throws Exception {
+        lockService.lock(123, "abc", TENANT_ID);
+
+        lockService.unlock(new BonitaLock(new java.util.concurrent.locks.ReentrantLock(), "abc", 123), TENANT_ID);
+    }
+
+    @Test
+    public void should_remove_lock_entry_when_no_thread_holds_or_waits_for_it() throws Exception {
+        final BonitaLock lock = lockService.lock(5, "a", TENANT_ID);
+
+        lockService.unlock(lock, TENANT_ID);
+
+        assertThat(lockService.getNumberOfLocks()).isEqualTo(0);
+    }
+
+    @Test
+    public void should_remove_lock_entry_when_tryLock_times_out() throws Exception {
+        final BonitaLock lock = lockService.lock(5, "a", TENANT_ID);
+        Executors.newSingleThreadExecutor().submit(() -> lockService.tryLock(5, "a", 10, TimeUnit.MILLISECONDS, TENANT_ID)).get();
+
+        lockService.unlock(lock, TENANT_ID);
+
+        assertThat(lockService.getNumberOfLocks()).isEqualTo(0);
+    }
+
+    @Test
+    public void should_never_give_the_same_lock_to_two_threads() throws Exception {
+        final int numberOfThreads = 8;
+        final ExecutorService executorService = Executors.newFixedThreadPool(numberOfThreads);
+        final AtomicInteger holders = new AtomicInteger();
+        final AtomicInteger maxHolders = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(numberOfThreads);
+        for (int i = 0; i < numberOfThreads; i++) {
+            executorService.submit(() -> {
+                for (int j = 0; j < 1000; j++) {
+                    final BonitaLock lock = lockService.lock(1, "a", TENANT_ID);
+                    maxHolders.accumulateAndGet(holders.incrementAndGet(), Math::max);
+                    holders.decrementAndGet();
+                    lockService.unlock(lock, TENANT_ID);
+                }
+                done.countDown();
+                return null;
+            });
+        }
+
+        assertThat(done.await(30, TimeUnit.SECONDS)).isTrue();
+        assertThat(maxHolders.get()).isEqualTo(1);
+        assertThat(lockService.getNumberOfLocks()).isEqualTo(0);
+        executorService.shutdown();
+    }
+
+}
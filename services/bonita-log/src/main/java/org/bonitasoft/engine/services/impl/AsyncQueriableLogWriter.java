@@ -0,0 +1,316 @@
+/**
+ * Copyright (C) 2018 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.services.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import org.bonitasoft.engine.commons.TenantLifecycleService;
+import org.bonitasoft.engine.commons.exceptions.SBonitaException;
+import org.bonitasoft.engine.log.technical.TechnicalLogSeverity;
+import org.bonitasoft.engine.log.technical.TechnicalLoggerService;
+import org.bonitasoft.engine.queriablelogger.model.SQueriableLog;
+import org.bonitasoft.engine.services.PersistenceService;
+import org.bonitasoft.engine.sessionaccessor.SessionAccessor;
+import org.bonitasoft.engine.transaction.UserTransactionService;
+
+/**
+ * Writes the queriable logs of committed transactions in background instead of inserting them in the transaction that logged them.
+ * <p>
+ * Once a transaction committed, its logs are put in a bounded {@link RingBuffer} and a single thread per tenant takes them in the order they were put
+ * and inserts them in large JDBC batches. When the buffer is full, committing threads wait for the writer to make room. Logs of transactions that
+ * committed before the writer is stopped are written before it stops.
+ * <p>
+ * A batch that can't be inserted is tried again a few times, then split in halves written one after the other, down to the single log that can't
+ * be inserted, which is skipped. A writer started again while the previous one is still writing goes on with the same writer and buffer, so logs
+ * stay written in the order their transactions committed.
+ */
+public class AsyncQueriableLogWriter implements TenantLifecycleService {
+
+    private static final long IDLE_WAIT = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private static final long FULL_WAIT = TimeUnit.MICROSECONDS.toNanos(100);
+
+    private static final long RETRY_DELAY = TimeUnit.SECONDS.toMillis(1);
+
+    private static final long STOP_TIMEOUT = TimeUnit.SECONDS.toMillis(30);
+
+    static final int MAX_ATTEMPTS = 3;
+
+    private final PersistenceService persistenceService;
+
+    private final UserTransactionService transactionService;
+
+    private final SessionAccessor sessionAccessor;
+
+    private final TechnicalLoggerService logger;
+
+    private final long tenantId;
+
+    private final boolean enabled;
+
+    private final int bufferSize;
+
+    private final int maxBatchSize;
+
+    private final long retryDelay;
+
+    private final long stopTimeout;
+
+    // guards the end of the writer thread against a start reusing it
+    private final Object writerLock = new Object();
+
+    // transactions that handed their logs to the writer and are not completed yet
+    private final AtomicInteger transactionsInProgress = new AtomicInteger();
+
+    private RingBuffer<List<SQueriableLog>> buffer;
+
+    private volatile boolean started;
+
+    private volatile boolean idle;
+
+    private volatile Thread writerThread;
+
+    public AsyncQueriableLogWriter(final PersistenceService persistenceService, final UserTransactionService transactionService,
+            final SessionAccessor sessionAccessor, final TechnicalLoggerService logger, final long tenantId, final boolean enabled,
+            final int bufferSize, final int maxBatchSize) {
+        this(persistenceService, transactionService, sessionAccessor, logger, tenantId, enabled, bufferSize, maxBatchSize, RETRY_DELAY, STOP_TIMEOUT);
+    }
+
+    AsyncQueriableLogWriter(final PersistenceService persistenceService, final UserTransactionService transactionService,
+            final SessionAccessor sessionAccessor, final TechnicalLoggerService logger, final long tenantId, final boolean enabled,
+            final int bufferSize, final int maxBatchSize, final long retryDelay, final long stopTimeout) {
+        this.persistenceService = persistenceService;
+        this.transactionService = transactionService;
+        this.sessionAccessor = sessionAccessor;
+        this.logger = logger;
+        this.tenantId = tenantId;
+        this.enabled = enabled;
+        this.bufferSize = bufferSize;
+        this.maxBatchSize = maxBatchSize;
+        this.retryDelay = retryDelay;
+        this.stopTimeout = stopTimeout;
+    }
+
+    /**
+     * Called before the current transaction commits.
+     *
+     * @return true if the writer takes the logs of the current transaction, {@link #completeTransaction(List)} must then be called once the
+     *         transaction is completed. When false, the logs must be inserted in the current transaction.
+     */
+    boolean startTransaction() {
+        // counted before checking the state so that the writer, once stopped, never misses a transaction
+        transactionsInProgress.incrementAndGet();
+        if (!started) {
+            transactionsInProgress.decrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Called once a transaction that was started using {@link #startTransaction()} is completed.
+     *
+     * @param logs the logs to write, empty if the transaction was rolled back
+     */
+    void completeTransaction(final List<SQueriableLog> logs) {
+        try {
+            if (!logs.isEmpty()) {
+                publish(logs);
+            }
+        } finally {
+            transactionsInProgress.decrementAndGet();
+        }
+    }
+
+    private void publish(final List<SQueriableLog> logs) {
+        final Thread writer = writerThread;
+        while (!buffer.offer(logs)) {
+            if (writer == null || !writer.isAlive()) {
+                logger.log(getClass(), TechnicalLogSeverity.ERROR, "Queriable log writer is stopped, " + logs.size() + " logs will not be written");
+                return;
+            }
+            // back-pressure: wait for the writer to make room
+            LockSupport.unpark(writer);
+            LockSupport.parkNanos(FULL_WAIT);
+        }
+        if (idle) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    @Override
+    public synchronized void start() throws SBonitaException {
+        if (!enabled || started) {
+            return;
+        }
+        synchronized (writerLock) {
+            if (writerThread != null && writerThread.isAlive()) {
+                // the previous writer did not finish writing when stopped: it goes on, logs must not be written by two writers
+                started = true;
+                LockSupport.unpark(writerThread);
+                return;
+            }
+        }
+        buffer = new RingBuffer<>(bufferSize);
+        final Thread writer = new Thread(new Writer(buffer), "Bonita-Queriable-Log-Writer-" + tenantId);
+        writer.setDaemon(true);
+        writerThread = writer;
+        started = true;
+        writer.start();
+    }
+
+    @Override
+    public synchronized void stop() throws SBonitaException {
+        if (!started) {
+            return;
+        }
+        final Thread writer = writerThread;
+        // new transactions insert their logs themselves, the writer writes what was handed to it and stops
+        started = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(stopTimeout);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writer.isAlive()) {
+            logger.log(getClass(), TechnicalLogSeverity.WARNING, "Queriable log writer did not finish writing, " + buffer.size()
+                    + " transactions of logs are still waiting to be written");
+        }
+    }
+
+    @Override
+    public void pause() throws SBonitaException {
+        stop();
+    }
+
+    @Override
+    public void resume() throws SBonitaException {
+        start();
+    }
+
+    boolean isStarted() {
+        return started;
+    }
+
+    void write(final List<SQueriableLog> logs) throws Exception {
+        sessionAccessor.setTenantId(tenantId);
+        try {
+            transactionService.executeInTransaction(() -> {
+                persistenceService.insertInBatch(logs);
+                return null;
+            });
+        } finally {
+            sessionAccessor.deleteTenantId();
+        }
+    }
+
+    private final class Writer implements Runnable {
+
+        private final RingBuffer<List<SQueriableLog>> buffer;
+
+        private Writer(final RingBuffer<List<SQueriableLog>> buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                final List<SQueriableLog> logs = take();
+                if (logs.isEmpty()) {
+                    if (isFinished()) {
+                        return;
+                    }
+                    waitForLogs();
+                    continue;
+                }
+                writeOrSplit(logs, MAX_ATTEMPTS);
+            }
+        }
+
+        private boolean isFinished() {
+            synchronized (writerLock) {
+                if (!started && transactionsInProgress.get() == 0 && buffer.isEmpty()) {
+                    writerThread = null;
+                    return true;
+                }
+                return false;
+            }
+        }
+
+        private List<SQueriableLog> take() {
+            final List<SQueriableLog> logs = new ArrayList<>();
+            List<SQueriableLog> transactionLogs;
+            // logs of a transaction are never split between two batches
+            while (logs.size() < maxBatchSize && (transactionLogs = buffer.poll()) != null) {
+                logs.addAll(transactionLogs);
+            }
+            return logs;
+        }
+
+        private void waitForLogs() {
+            idle = true;
+            if (buffer.isEmpty()) {
+                LockSupport.parkNanos(IDLE_WAIT);
+            }
+            idle = false;
+        }
+
+        private void writeOrSplit(final List<SQueriableLog> logs, final int attempts) {
+            final Exception failure = writeWithRetries(logs, attempts);
+            if (failure == null) {
+                return;
+            }
+            if (logs.size() == 1) {
+                final SQueriableLog log = logs.get(0);
+                logger.log(AsyncQueriableLogWriter.class, TechnicalLogSeverity.ERROR, "Unable to write the queriable log " + log.getActionType()
+                        + " of " + log.getUserId() + " at " + log.getTimeStamp() + ", it is skipped: " + log.getRawMessage(), failure);
+                return;
+            }
+            // the logs written before the failing one are not lost with it, halves are written once each, in order
+            final int half = logs.size() / 2;
+            writeOrSplit(new ArrayList<>(logs.subList(0, half)), 1);
+            writeOrSplit(new ArrayList<>(logs.subList(half, logs.size())), 1);
+        }
+
+        /**
+         * @return the last failure, or null when the logs were written
+         */
+        private Exception writeWithRetries(final List<SQueriableLog> logs, final int attempts) {
+            for (int attempt = 1;; attempt++) {
+                try {
+                    write(logs);
+                    return null;
+                } catch (final Exception e) {
+                    // no retry while stopping: the tenant waits for the writer
+                    if (attempt >= attempts || !started) {
+                        return e;
+                    }
+                    logger.log(AsyncQueriableLogWriter.class, TechnicalLogSeverity.ERROR, "Unable to write " + logs.size()
+                            + " queriable logs, retrying in " + retryDelay + " ms", e);
+                    try {
+                        Thread.sleep(retryDelay);
+                    } catch (final InterruptedException ie) {
+                        return e;
+                    }
+                }
+            }
+        }
+    }
+
+}
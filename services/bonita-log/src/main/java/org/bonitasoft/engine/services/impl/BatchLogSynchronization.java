@@ -21,6 +21,7 @@ import org.bonitasoft.engine.transaction.BonitaTransactionSynchronization;
 import org.bonitasoft.engine.transaction.TransactionState;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -32,22 +33,34 @@ class BatchLogSynchronization implements BonitaTransactionSynchronization {
 
     private final PersistenceService persistenceService;
     private QueriableLoggerImpl queriableLogger;
+    private final AsyncQueriableLogWriter asyncWriter;
     private final List<SQueriableLog> logs = new ArrayList<>();
+    private boolean handedToAsyncWriter;
 
-    public BatchLogSynchronization(PersistenceService persistenceService, QueriableLoggerImpl queriableLogger) {
+    public BatchLogSynchronization(PersistenceService persistenceService, QueriableLoggerImpl queriableLogger, AsyncQueriableLogWriter asyncWriter) {
         super();
         this.persistenceService = persistenceService;
         this.queriableLogger = queriableLogger;
+        this.asyncWriter = asyncWriter;
     }
 
     @Override
     public void afterCompletion(final TransactionState transactionState) {
         queriableLogger.clearSynchronization();
+        if (handedToAsyncWriter) {
+            asyncWriter.completeTransaction(transactionState == TransactionState.COMMITTED ? logs : Collections.<SQueriableLog> emptyList());
+        }
     }
 
     @Override
     public void beforeCommit() {
-        if (!logs.isEmpty()) {
+        if (logs.isEmpty()) {
+            return;
+        }
+        if (asyncWriter != null && asyncWriter.startTransaction()) {
+            // written by the async writer once the transaction is committed
+            handedToAsyncWriter = true;
+        } else {
             try {
                 persistenceService.insertInBatch(logs);
                 // this is mandatory (probably because we are in a synchronization)
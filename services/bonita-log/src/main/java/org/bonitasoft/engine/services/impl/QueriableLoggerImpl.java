@@ -49,6 +49,7 @@ public class QueriableLoggerImpl implements QueriableLoggerService {
     private TransactionService transactionService;
     protected final TechnicalLoggerService logger;
     private final QueriableLogUpdater logUpdater;
+    private final AsyncQueriableLogWriter asyncWriter;
     private final ThreadLocal<BatchLogSynchronization> synchronizations = new ThreadLocal<>();
 
 
@@ -58,6 +59,17 @@ public class QueriableLoggerImpl implements QueriableLoggerService {
                                QueriableLogSessionProvider sessionProvider,
                                PlatformService platformService,
                                TechnicalLoggerService logger) {
+        this(persistenceService, transactionService, loggerStrategy, sessionProvider, platformService, logger, null);
+    }
+
+    public QueriableLoggerImpl(PersistenceService persistenceService,
+                               TransactionService transactionService,
+                               QueriableLoggerStrategy loggerStrategy,
+                               QueriableLogSessionProvider sessionProvider,
+                               PlatformService platformService,
+                               TechnicalLoggerService logger,
+                               AsyncQueriableLogWriter asyncWriter) {
+        this.asyncWriter = asyncWriter;
         this.transactionService = transactionService;
         this.logger = logger;
         this.persistenceService = persistenceService;
@@ -102,10 +114,11 @@ public class QueriableLoggerImpl implements QueriableLoggerService {
         }
     }
 
-    private synchronized BatchLogSynchronization getBatchLogSynchronization() {
+    // the synchronization is bound to the current thread: no need to synchronize on the service
+    private BatchLogSynchronization getBatchLogSynchronization() {
         BatchLogSynchronization synchronization = synchronizations.get();
         if (synchronization == null) {
-            synchronization = new BatchLogSynchronization(persistenceService, this);
+            synchronization = new BatchLogSynchronization(persistenceService, this, asyncWriter);
             synchronizations.set(synchronization);
             registerSynchronization(synchronization);
         }
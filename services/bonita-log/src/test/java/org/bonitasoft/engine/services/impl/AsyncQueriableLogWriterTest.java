@@ -0,0 +1,251 @@
+/**
+ * Copyright (C) 2018 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.services.impl;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.bonitasoft.engine.log.technical.TechnicalLoggerService;
+import org.bonitasoft.engine.queriablelogger.model.SQueriableLog;
+import org.bonitasoft.engine.services.PersistenceService;
+import org.bonitasoft.engine.services.SPersistenceException;
+import org.bonitasoft.engine.sessionaccessor.SessionAccessor;
+import org.bonitasoft.engine.transaction.UserTransactionService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AsyncQueriableLogWriterTest {
+
+    private static final long TENANT_ID = 12L;
+
+    private PersistenceService persistenceService;
+
+    private UserTransactionService transactionService;
+
+    private final List<SQueriableLog> written = new ArrayList<>();
+
+    private AsyncQueriableLogWriter asyncWriter;
+
+    @Before
+    public void before() throws Exception {
+        persistenceService = mock(PersistenceService.class);
+        transactionService = mock(UserTransactionService.class);
+        doAnswer(invocation -> ((Callable<?>) invocation.getArgument(0)).call()).when(transactionService).executeInTransaction(any(Callable.class));
+        doAnswer(invocation -> {
+            synchronized (written) {
+                written.addAll(invocation.getArgument(0));
+            }
+            return null;
+        }).when(persistenceService).insertInBatch(any());
+        asyncWriter = createWriter(16, 100);
+    }
+
+    @After
+    public void stopWriter() throws Exception {
+        asyncWriter.stop();
+    }
+
+    private AsyncQueriableLogWriter createWriter(final int bufferSize, final int maxBatchSize) {
+        return new AsyncQueriableLogWriter(persistenceService, transactionService, mock(SessionAccessor.class), mock(TechnicalLoggerService.class),
+                TENANT_ID, true, bufferSize, maxBatchSize);
+    }
+
+    private AsyncQueriableLogWriter createWriter(final long retryDelay, final long stopTimeout) {
+        return new AsyncQueriableLogWriter(persistenceService, transactionService, mock(SessionAccessor.class), mock(TechnicalLoggerService.class),
+                TENANT_ID, true, 16, 100, retryDelay, stopTimeout);
+    }
+
+    private void commit(final SQueriableLog... logs) {
+        assertThat(asyncWriter.startTransaction()).isTrue();
+        asyncWriter.completeTransaction(asList(logs));
+    }
+
+    private List<SQueriableLog> getWritten() {
+        synchronized (written) {
+            return new ArrayList<>(written);
+        }
+    }
+
+    @Test
+    public void should_not_take_logs_when_not_started() {
+        assertThat(asyncWriter.startTransaction()).isFalse();
+    }
+
+    @Test
+    public void should_write_logs_of_committed_transactions_in_the_order_they_committed() throws Exception {
+        asyncWriter.start();
+        SQueriableLog log1 = mock(SQueriableLog.class);
+        SQueriableLog log2 = mock(SQueriableLog.class);
+        SQueriableLog log3 = mock(SQueriableLog.class);
+
+        commit(log1, log2);
+        commit(log3);
+
+        verify(persistenceService, timeout(2000).atLeastOnce()).insertInBatch(any());
+        asyncWriter.stop();
+        assertThat(getWritten()).containsExactly(log1, log2, log3);
+    }
+
+    @Test
+    public void should_not_write_logs_of_a_rolled_back_transaction() throws Exception {
+        asyncWriter.start();
+
+        assertThat(asyncWriter.startTransaction()).isTrue();
+        asyncWriter.completeTransaction(new ArrayList<>());
+
+        verify(persistenceService, after(300).never()).insertInBatch(any());
+    }
+
+    @Test
+    public void should_write_logs_of_transactions_completing_while_stopping() throws Exception {
+        asyncWriter.start();
+        SQueriableLog log = mock(SQueriableLog.class);
+        assertThat(asyncWriter.startTransaction()).isTrue();
+        Thread committing = new Thread(() -> {
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException ignored) {
+            }
+            asyncWriter.completeTransaction(singletonList(log));
+        });
+        committing.start();
+
+        asyncWriter.stop();
+
+        assertThat(getWritten()).containsExactly(log);
+        assertThat(asyncWriter.startTransaction()).isFalse();
+    }
+
+    @Test
+    public void should_make_committing_transactions_wait_when_the_buffer_is_full() throws Exception {
+        asyncWriter = createWriter(2, 1);
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            writing.countDown();
+            release.await();
+            return ((Callable<?>) invocation.getArgument(0)).call();
+        }).when(transactionService).executeInTransaction(any(Callable.class));
+        asyncWriter.start();
+        List<SQueriableLog> logs = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            logs.add(mock(SQueriableLog.class));
+        }
+        commit(logs.get(0));
+        assertThat(writing.await(2, TimeUnit.SECONDS)).isTrue();
+        // the writer is busy with the first log, the two next ones fill the buffer
+        commit(logs.get(1));
+        commit(logs.get(2));
+
+        Thread committing = new Thread(() -> commit(logs.get(3)));
+        committing.start();
+        committing.join(300);
+        assertThat(committing.isAlive()).isTrue();
+
+        release.countDown();
+        committing.join(2000);
+        assertThat(committing.isAlive()).isFalse();
+        asyncWriter.stop();
+        assertThat(getWritten()).containsExactlyElementsOf(logs);
+    }
+
+    @Test
+    public void should_retry_writing_logs_when_insertion_fails() throws Exception {
+        SQueriableLog log = mock(SQueriableLog.class);
+        doThrow(new SPersistenceException("database not available")).doAnswer(invocation -> {
+            synchronized (written) {
+                written.addAll(invocation.getArgument(0));
+            }
+            return null;
+        }).when(persistenceService).insertInBatch(any());
+        asyncWriter.start();
+
+        commit(log);
+
+        verify(persistenceService, timeout(3000).times(2)).insertInBatch(any());
+        assertThat(getWritten()).containsExactly(log);
+    }
+
+    @Test
+    public void should_skip_a_log_that_can_not_be_written_and_write_the_others_in_order() throws Exception {
+        asyncWriter = createWriter(10, 30000);
+        SQueriableLog log1 = mock(SQueriableLog.class);
+        SQueriableLog invalidLog = mock(SQueriableLog.class);
+        SQueriableLog log2 = mock(SQueriableLog.class);
+        SQueriableLog log3 = mock(SQueriableLog.class);
+        doAnswer(invocation -> {
+            List<SQueriableLog> logs = invocation.getArgument(0);
+            if (logs.contains(invalidLog)) {
+                throw new SPersistenceException("value too large");
+            }
+            synchronized (written) {
+                written.addAll(logs);
+            }
+            return null;
+        }).when(persistenceService).insertInBatch(any());
+        asyncWriter.start();
+
+        commit(log1, invalidLog, log2);
+        commit(log3);
+
+        asyncWriter.stop();
+        assertThat(getWritten()).containsExactly(log1, log2, log3);
+    }
+
+    @Test
+    public void should_go_on_with_the_same_writer_when_started_again_before_it_finished_writing() throws Exception {
+        asyncWriter = createWriter(1000, 100);
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            writing.countDown();
+            release.await();
+            return ((Callable<?>) invocation.getArgument(0)).call();
+        }).when(transactionService).executeInTransaction(any(Callable.class));
+        SQueriableLog log1 = mock(SQueriableLog.class);
+        SQueriableLog log2 = mock(SQueriableLog.class);
+        asyncWriter.start();
+        commit(log1);
+        assertThat(writing.await(2, TimeUnit.SECONDS)).isTrue();
+        // the writer is still writing when the stop times out
+        asyncWriter.stop();
+
+        asyncWriter.start();
+        commit(log2);
+
+        assertThat(Thread.getAllStackTraces().keySet().stream().filter(t -> t.getName().equals("Bonita-Queriable-Log-Writer-" + TENANT_ID)))
+                .hasSize(1);
+        release.countDown();
+        verify(persistenceService, timeout(2000).times(2)).insertInBatch(any());
+        asyncWriter.stop();
+        assertThat(getWritten()).containsExactly(log1, log2);
+    }
+
+}
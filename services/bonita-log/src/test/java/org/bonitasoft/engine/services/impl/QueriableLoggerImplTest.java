@@ -18,6 +18,7 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import org.bonitasoft.engine.log.technical.TechnicalLoggerService;
@@ -35,6 +36,7 @@ import org.bonitasoft.engine.services.PersistenceService;
 import org.bonitasoft.engine.services.QueriableLogSessionProvider;
 import org.bonitasoft.engine.services.QueriableLoggerStrategy;
 import org.bonitasoft.engine.transaction.TransactionService;
+import org.bonitasoft.engine.transaction.TransactionState;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -67,6 +69,8 @@ public class QueriableLoggerImplTest {
     private SQueriableLogImpl log2;
     @Mock
     private PlatformService platformService;
+    @Mock
+    private AsyncQueriableLogWriter asyncWriter;
     @Captor
     private ArgumentCaptor<SelectOneDescriptor<?>> selectOneCaptor;
     @Captor
@@ -167,6 +171,55 @@ public class QueriableLoggerImplTest {
         assertThat(value.getLogs()).containsExactly(log1, log2);
     }
 
+    @Test
+    public void should_insert_logs_before_commit_when_async_writer_does_not_take_them() throws Exception {
+        // given
+        doReturn(true).when(loggerStrategy).isLoggable(FIRST_ACTION, SQueriableLogSeverity.INTERNAL);
+        logService.log("CallerClass", "callerMethod", log1);
+        verify(transactionService).registerBonitaSynchronization(synchroCaptor.capture());
+
+        // when
+        synchroCaptor.getValue().beforeCommit();
+        synchroCaptor.getValue().afterCompletion(TransactionState.COMMITTED);
+
+        // then
+        verify(persistenceService).insertInBatch(Collections.singletonList(log1));
+        verify(asyncWriter, never()).completeTransaction(any());
+    }
+
+    @Test
+    public void should_hand_logs_to_async_writer_once_committed() throws Exception {
+        // given
+        doReturn(true).when(loggerStrategy).isLoggable(FIRST_ACTION, SQueriableLogSeverity.INTERNAL);
+        doReturn(true).when(asyncWriter).startTransaction();
+        logService.log("CallerClass", "callerMethod", log1);
+        verify(transactionService).registerBonitaSynchronization(synchroCaptor.capture());
+
+        // when
+        synchroCaptor.getValue().beforeCommit();
+        synchroCaptor.getValue().afterCompletion(TransactionState.COMMITTED);
+
+        // then
+        verify(persistenceService, never()).insertInBatch(any());
+        verify(asyncWriter).completeTransaction(Collections.singletonList(log1));
+    }
+
+    @Test
+    public void should_give_no_logs_to_async_writer_when_rolled_back() throws Exception {
+        // given
+        doReturn(true).when(loggerStrategy).isLoggable(FIRST_ACTION, SQueriableLogSeverity.INTERNAL);
+        doReturn(true).when(asyncWriter).startTransaction();
+        logService.log("CallerClass", "callerMethod", log1);
+        verify(transactionService).registerBonitaSynchronization(synchroCaptor.capture());
+
+        // when
+        synchroCaptor.getValue().beforeCommit();
+        synchroCaptor.getValue().afterCompletion(TransactionState.ROLLEDBACK);
+
+        // then
+        verify(asyncWriter).completeTransaction(Collections.<SQueriableLog> emptyList());
+    }
+
     @Test
     public void getNumberOfLogs_should_return_number_of_logs_from_persistence_service() throws Exception {
         // given
@@ -0,0 +1,107 @@
+/**
+ * Copyright (C) 2018 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.services.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+public class RingBufferTest {
+
+    @Test
+    public void should_round_capacity_to_a_power_of_two() {
+        assertThat(new RingBuffer<String>(1).capacity()).isEqualTo(2);
+        assertThat(new RingBuffer<String>(4).capacity()).isEqualTo(4);
+        assertThat(new RingBuffer<String>(5).capacity()).isEqualTo(8);
+    }
+
+    @Test
+    public void should_give_elements_in_the_order_they_were_offered() {
+        RingBuffer<String> ringBuffer = new RingBuffer<>(4);
+
+        ringBuffer.offer("a");
+        ringBuffer.offer("b");
+        ringBuffer.offer("c");
+
+        assertThat(ringBuffer.size()).isEqualTo(3);
+        assertThat(ringBuffer.poll()).isEqualTo("a");
+        assertThat(ringBuffer.poll()).isEqualTo("b");
+        assertThat(ringBuffer.poll()).isEqualTo("c");
+        assertThat(ringBuffer.poll()).isNull();
+        assertThat(ringBuffer.isEmpty()).isTrue();
+    }
+
+    @Test
+    public void should_refuse_elements_when_full() {
+        RingBuffer<String> ringBuffer = new RingBuffer<>(2);
+
+        assertThat(ringBuffer.offer("a")).isTrue();
+        assertThat(ringBuffer.offer("b")).isTrue();
+        assertThat(ringBuffer.offer("c")).isFalse();
+
+        ringBuffer.poll();
+        assertThat(ringBuffer.offer("c")).isTrue();
+        assertThat(ringBuffer.poll()).isEqualTo("b");
+        assertThat(ringBuffer.poll()).isEqualTo("c");
+    }
+
+    @Test
+    public void should_keep_order_of_each_producer_when_offered_concurrently() throws Exception {
+        RingBuffer<int[]> ringBuffer = new RingBuffer<>(64);
+        int producers = 4;
+        int elementsPerProducer = 10000;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int producer = p;
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < elementsPerProducer; i++) {
+                    while (!ringBuffer.offer(new int[] { producer, i })) {
+                        Thread.yield();
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+
+        int[] nextOfProducer = new int[producers];
+        int received = 0;
+        while (received < producers * elementsPerProducer) {
+            int[] element = ringBuffer.poll();
+            if (element == null) {
+                Thread.yield();
+                continue;
+            }
+            assertThat(element[1]).isEqualTo(nextOfProducer[element[0]]);
+            nextOfProducer[element[0]]++;
+            received++;
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertThat(ringBuffer.isEmpty()).isTrue();
+    }
+
+}
@@ -16,6 +16,10 @@ package org.bonitasoft.engine.sequence;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import javax.sql.DataSource;
 
@@ -29,6 +33,8 @@ import org.bonitasoft.engine.lock.LockService;
  */
 public class SequenceManagerImpl implements SequenceManager {
 
+    static final int DEFAULT_MAX_RANGE_SIZE_FACTOR = 10;
+
     private final SequenceMappingProvider sequenceMappingProvider;
 
     private final int retries;
@@ -41,6 +47,11 @@ public class SequenceManagerImpl implements SequenceManager {
 
     private final LockService lockService;
 
+    private final int maxRangeSizeFactor;
+
+    // reserves the next ranges of ids in background, its thread stops when idle
+    private final ExecutorService prefetchExecutor;
+
     private final Map<Long, TenantSequenceManagerImpl> sequenceManagers = new HashMap<Long, TenantSequenceManagerImpl>();
 
     private final Object mutex = new SequenceManagerImplMutex();
@@ -48,12 +59,26 @@ public class SequenceManagerImpl implements SequenceManager {
     public SequenceManagerImpl(final LockService lockService,
             final SequenceMappingProvider sequenceMappingProvider,
             final DataSource datasource, final int retries, final int delay, final int delayFactor) {
+        this(lockService, sequenceMappingProvider, datasource, retries, delay, delayFactor, DEFAULT_MAX_RANGE_SIZE_FACTOR);
+    }
+
+    public SequenceManagerImpl(final LockService lockService,
+            final SequenceMappingProvider sequenceMappingProvider,
+            final DataSource datasource, final int retries, final int delay, final int delayFactor, final int maxRangeSizeFactor) {
         this.lockService = lockService;
         this.sequenceMappingProvider = sequenceMappingProvider;
         this.retries = retries;
         this.delay = delay;
         this.delayFactor = delayFactor;
         this.datasource = datasource;
+        this.maxRangeSizeFactor = maxRangeSizeFactor;
+        final ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), runnable -> {
+            final Thread thread = new Thread(runnable, "Bonita-Sequence-Prefetch");
+            thread.setDaemon(true);
+            return thread;
+        });
+        threadPoolExecutor.allowCoreThreadTimeOut(true);
+        prefetchExecutor = threadPoolExecutor;
     }
 
     private static final class SequenceManagerImplMutex {
@@ -73,7 +98,7 @@ public class SequenceManagerImpl implements SequenceManager {
                 mgr = this.sequenceManagers.get(tenantId);
                 if (mgr == null) {
                     mgr = new TenantSequenceManagerImpl(tenantId, lockService, getSequenceIdToRangeSizeMap(), getClassNameToSequenceIdMap(), datasource, retries, delay,
-                            delayFactor);
+                            delayFactor, prefetchExecutor, maxRangeSizeFactor);
                     this.sequenceManagers.put(tenantId, mgr);
                 }
             }
@@ -19,6 +19,12 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.sql.DataSource;
 
@@ -28,6 +34,12 @@ import org.bonitasoft.engine.lock.LockService;
 import org.bonitasoft.engine.lock.SLockException;
 
 /**
+ * Hands out the ids of a tenant.
+ * <p>
+ * Ids are taken without locking from a range reserved in database. Once 3/4 of the current range are consumed, the next range is reserved in background
+ * so that threads asking for ids do not wait for the database. The size of the reserved ranges grows, up to {@code maxRangeSizeFactor} times the configured
+ * range size, when ids are consumed quickly, and goes back to the configured size when they are not.
+ *
  * @author Charles Souillard
  * @author Matthieu Chaffotte
  * @author Baptiste Mesta
@@ -42,20 +54,13 @@ public class TenantSequenceManagerImpl {
 
     static final String UPDATE_SEQUENCE = "UPDATE sequence SET nextId = ? WHERE tenantid = ? AND id = ?";
 
-    private final Long tenantId;
-
-    private final Map<Long, Integer> sequenceIdToRangeSize;
-
-    // Map of available IDs: key=sequenceId, value = nextAvailableId to be assigned to a new entity of the given sequence
-    private final Map<Long, Long> nextAvailableIds = new HashMap<Long, Long>();
+    // a range should last about this long: quicker consumption makes the next ranges bigger
+    static final long TARGET_RANGE_DURATION = TimeUnit.SECONDS.toNanos(1);
 
-    // Map of lastId that can be consumed for a given sequence
-    private final Map<Long, Long> lastIdInRanges = new HashMap<Long, Long>();
-
-    // Map of sequenceId, mutex
-    private static final Map<Long, Object> SEQUENCE_MUTEXS = new HashMap<Long, Object>();
+    private final Long tenantId;
 
-    private final Map<String, Long> classNameToSequenceId;
+    // Map of className, sequence: built once, only read afterwards
+    private final Map<String, Sequence> sequences = new HashMap<>();
 
     private final int retries;
 
@@ -67,50 +72,152 @@ public class TenantSequenceManagerImpl {
 
     private final LockService lockService;
 
+    private final Executor prefetchExecutor;
+
     public TenantSequenceManagerImpl(final long tenantId, final LockService lockService, final Map<Long, Integer> sequenceIdToRangeSize,
             final Map<String, Long> classNameToSequenceId,
-            final DataSource datasource, final int retries, final int delay, final int delayFactor) {
+            final DataSource datasource, final int retries, final int delay, final int delayFactor, final Executor prefetchExecutor,
+            final int maxRangeSizeFactor) {
         this.tenantId = tenantId;
         this.lockService = lockService;
-        this.sequenceIdToRangeSize = sequenceIdToRangeSize;
-        this.classNameToSequenceId = classNameToSequenceId;
         this.retries = retries;
         this.delay = delay;
         this.delayFactor = delayFactor;
         this.datasource = datasource;
+        this.prefetchExecutor = prefetchExecutor;
+
+        final Map<Long, Sequence> sequencesById = new HashMap<>();
+        for (final Map.Entry<String, Long> classNameAndSequenceId : classNameToSequenceId.entrySet()) {
+            final long sequenceId = classNameAndSequenceId.getValue();
+            Sequence sequence = sequencesById.get(sequenceId);
+            if (sequence == null) {
+                final int rangeSize = sequenceIdToRangeSize.get(sequenceId);
+                sequence = new Sequence(sequenceId, rangeSize, rangeSize * Math.max(1, maxRangeSizeFactor));
+                sequencesById.put(sequenceId, sequence);
+            }
+            sequences.put(classNameAndSequenceId.getKey(), sequence);
+        }
+    }
 
-        for (final Long sequenceId : classNameToSequenceId.values()) {
-            SEQUENCE_MUTEXS.put(sequenceId, new TenantSequenceManagerImplMutex());
-            nextAvailableIds.put(sequenceId, 0L);
-            lastIdInRanges.put(sequenceId, -1L);
+    public long getNextId(final String entityName) throws SObjectNotFoundException {
+        final Sequence sequence = sequences.get(entityName);
+        if (sequence == null) {
+            throw new SObjectNotFoundException("No sequence id found for " + entityName);
+        }
+        while (true) {
+            final Range range = sequence.current;
+            final long id = range.next.getAndIncrement();
+            if (id <= range.last) {
+                if (id == range.prefetchThreshold) {
+                    // only one thread gets this id
+                    sequence.prefetchNextRange(range);
+                }
+                return id;
+            }
+            sequence.switchRange(range);
         }
     }
 
-    private static final class TenantSequenceManagerImplMutex {
+    /**
+     * Ids of a sequence that were reserved in database, from {@code first} to {@code last} included.
+     */
+    static final class Range {
+
+        final long first;
+
+        final long last;
+
+        final long prefetchThreshold;
 
+        final AtomicLong next;
+
+        final long startTime;
+
+        Range(final long first, final long last) {
+            this.first = first;
+            this.last = last;
+            prefetchThreshold = first + (last - first + 1) * 3 / 4;
+            next = new AtomicLong(first);
+            startTime = System.nanoTime();
+        }
+
+        long size() {
+            return last - first + 1;
+        }
     }
 
-    public long getNextId(final String entityName) throws SObjectNotFoundException {
-        final Long sequenceId = classNameToSequenceId.get(entityName);
-        if (sequenceId == null) {
-            throw new SObjectNotFoundException("No sequence id found for " + entityName);
+    private final class Sequence {
+
+        private final long sequenceId;
+
+        private final int minRangeSize;
+
+        private final int maxRangeSize;
+
+        private volatile Range current = new Range(0, -1);
+
+        // guarded by this
+        private CompletableFuture<Range> nextRange;
+
+        Sequence(final long sequenceId, final int minRangeSize, final int maxRangeSize) {
+            this.sequenceId = sequenceId;
+            this.minRangeSize = minRangeSize;
+            this.maxRangeSize = maxRangeSize;
         }
-        final Object sequenceMutex = SEQUENCE_MUTEXS.get(sequenceId);
-        synchronized (sequenceMutex) {
-            Long nextAvailableId = nextAvailableIds.get(sequenceId);
-            final Long lastIdInRange = lastIdInRanges.get(sequenceId);
-            if (nextAvailableId > lastIdInRange) {
-                // No available IF in the range this sequence can consume, we need to get a new range and calculate a new nextAvailableId
-                setNewRange(sequenceId);
-                nextAvailableId = nextAvailableIds.get(sequenceId);
+
+        synchronized void prefetchNextRange(final Range range) {
+            if (current != range || nextRange != null) {
+                return;
             }
-            nextAvailableIds.put(sequenceId, nextAvailableId + 1);
+            final int rangeSize = computeRangeSize(range.prefetchThreshold - range.first + 1, System.nanoTime() - range.startTime);
+            try {
+                nextRange = CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return reserveRange(sequenceId, rangeSize);
+                    } catch (final SObjectNotFoundException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }, prefetchExecutor);
+            } catch (final RejectedExecutionException e) {
+                // the next range will be reserved when this one is exhausted
+            }
+        }
+
+        synchronized void switchRange(final Range exhausted) throws SObjectNotFoundException {
+            if (current != exhausted) {
+                // an other thread already switched
+                return;
+            }
+            Range range = null;
+            if (nextRange != null) {
+                try {
+                    range = nextRange.get();
+                } catch (final ExecutionException e) {
+                    // reserve it again below, that will throw the actual error if it still fails
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new SObjectNotFoundException("Interrupted while waiting for a new range of sequence " + sequenceId, e);
+                } finally {
+                    nextRange = null;
+                }
+            }
+            if (range == null) {
+                range = reserveRange(sequenceId, computeRangeSize(exhausted.size(), System.nanoTime() - exhausted.startTime));
+            }
+            current = range;
+        }
 
-            return nextAvailableId;
+        int computeRangeSize(final long consumedIds, final long elapsedTime) {
+            if (consumedIds <= 0) {
+                // nothing consumed yet, e.g. the first range
+                return minRangeSize;
+            }
+            final long rangeSize = consumedIds * TARGET_RANGE_DURATION / Math.max(1, elapsedTime);
+            return (int) Math.max(minRangeSize, Math.min(maxRangeSize, rangeSize));
         }
     }
 
-    private void setNewRange(final long sequenceId) throws SObjectNotFoundException {
+    private Range reserveRange(final long sequenceId, final int rangeSize) throws SObjectNotFoundException {
         BonitaLock lock;
         try {
             lock = lockService.lock(sequenceId, SEQUENCE, tenantId);
@@ -130,14 +237,12 @@ public class TenantSequenceManagerImpl {
 
                         // we have reach the maximum in this range
                         final long nextAvailableId = selectById(connection, sequenceId, tenantId);
-                        nextAvailableIds.put(sequenceId, nextAvailableId);
 
-                        final long nextSequenceId = nextAvailableId + sequenceIdToRangeSize.get(sequenceId);
+                        final long nextSequenceId = nextAvailableId + rangeSize;
                         updateSequence(connection, nextSequenceId, tenantId, sequenceId);
-                        lastIdInRanges.put(sequenceId, nextSequenceId - 1);
 
                         connection.commit();
-                        return;
+                        return new Range(nextAvailableId, nextSequenceId - 1);
                     } catch (final SObjectNotFoundException t) {
                         // Not found needs no retry.
                         attempt = retries + 1; // To exit the loop
@@ -104,6 +104,35 @@ public class SequenceManagerImplTest {
         assertEquals(310, sequenceManager.getNextId("myClass", 1));
     }
 
+    @Test
+    public void should_reserve_next_range_in_background_when_three_quarters_of_the_range_are_consumed() throws Exception {
+        when(resultSet.next()).thenAnswer(new TrueThenFalse());
+        when(resultSet.getLong(TenantSequenceManagerImpl.NEXTID)).thenReturn(110L, 310L);
+
+        sequenceManager.getNextId("myClass", 1);
+        sequenceManager.getNextId("myClass", 1);
+        verify(preparedStatement, times(1)).executeUpdate();
+        sequenceManager.getNextId("myClass", 1);
+
+        // the range is not exhausted yet but the next one is already reserved
+        verify(preparedStatement, timeout(1000).times(2)).executeUpdate();
+        assertEquals(310, sequenceManager.getNextId("myClass", 1));
+    }
+
+    @Test
+    public void should_reserve_bigger_ranges_when_ids_are_consumed_quickly() throws Exception {
+        when(resultSet.next()).thenAnswer(new TrueThenFalse());
+        when(resultSet.getLong(TenantSequenceManagerImpl.NEXTID)).thenReturn(110L, 310L);
+
+        for (int i = 0; i < RANGE_SIZE; i++) {
+            sequenceManager.getNextId("myClass", 1);
+        }
+
+        // first range has the configured size, the next one is capped to maxRangeSizeFactor times the configured size
+        verify(preparedStatement).setObject(1, 110L + RANGE_SIZE);
+        verify(preparedStatement, timeout(1000)).setObject(1, 310L + RANGE_SIZE * SequenceManagerImpl.DEFAULT_MAX_RANGE_SIZE_FACTOR);
+    }
+
     @Test
     public void testGetNextIdDatabaseAccessIsInsideLock() throws Exception {
         when(resultSet.next()).thenAnswer(new TrueThenFalse());
@@ -13,6 +13,9 @@
  **/
 package org.bonitasoft.engine.recorder;
 
+import java.util.List;
+
+import org.bonitasoft.engine.persistence.PersistentObject;
 import org.bonitasoft.engine.recorder.model.DeleteAllRecord;
 import org.bonitasoft.engine.recorder.model.DeleteRecord;
 import org.bonitasoft.engine.recorder.model.InsertRecord;
@@ -31,6 +34,19 @@ public interface Recorder {
      */
     void recordInsert(InsertRecord record, String type) throws SRecorderException;
 
+    /**
+     * Add many records of a same type to database, their insert statements are sent together
+     * <p>
+     * Insert events are fired for each record only when handlers listen to them
+     *
+     * @param entities
+     *            the records to insert
+     * @param type
+     * @throws SRecorderException
+     * @since 7.7.2
+     */
+    void recordInsertInBatch(List<? extends PersistentObject> entities, String type) throws SRecorderException;
+
     /**
      * Delete a record from database
      * 
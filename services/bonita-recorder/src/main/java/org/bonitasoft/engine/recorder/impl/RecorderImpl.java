@@ -13,6 +13,7 @@
  **/
 package org.bonitasoft.engine.recorder.impl;
 
+import org.bonitasoft.engine.events.EventActionType;
 import org.bonitasoft.engine.events.EventService;
 import org.bonitasoft.engine.events.model.SDeleteEvent;
 import org.bonitasoft.engine.events.model.SEvent;
@@ -66,6 +67,24 @@ public class RecorderImpl implements Recorder {
         }
     }
 
+    @Override
+    public void recordInsertInBatch(final List<? extends PersistentObject> entities, final String type) throws SRecorderException {
+        if (entities.isEmpty()) {
+            return;
+        }
+        try {
+            persistenceService.insertInBatch(entities);
+            if (eventService.hasHandlers(type, EventActionType.CREATED)) {
+                for (final PersistentObject entity : entities) {
+                    eventService.fireEvent(createInsertEvent(entity, type));
+                }
+            }
+        } catch (final Exception e) {
+            logExceptionsFromHandlers(e);
+            throw new SRecorderException(e);
+        }
+    }
+
     private SInsertEvent createInsertEvent(PersistentObject entity, String type) {
         SInsertEvent sInsertEvent = new SInsertEvent(type + SEvent.CREATED);
         sInsertEvent.setObject(entity);
@@ -14,12 +14,17 @@
 
 package org.bonitasoft.engine.recorder.impl;
 
+import static java.util.Arrays.asList;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 
 import java.util.Collections;
 import java.util.UUID;
 
+import org.bonitasoft.engine.events.EventActionType;
 import org.bonitasoft.engine.events.EventService;
 import org.bonitasoft.engine.events.model.SEvent;
 import org.bonitasoft.engine.log.technical.TechnicalLoggerService;
@@ -74,6 +79,29 @@ public class RecorderImplTest {
         verify(eventService).fireEvent(argThat(match("theEvent_DELETED", entity)));
     }
 
+    @Test
+    public void should_insert_all_entities_in_batch_and_fire_their_events_when_there_are_handlers() throws Exception {
+        MyPersistentObject entity1 = entity();
+        MyPersistentObject entity2 = entity();
+        doReturn(true).when(eventService).hasHandlers("theEvent", EventActionType.CREATED);
+
+        recorder.recordInsertInBatch(asList(entity1, entity2), "theEvent");
+
+        verify(persistenceService).insertInBatch(asList(entity1, entity2));
+        verify(eventService).fireEvent(argThat(match("theEvent_CREATED", entity1)));
+        verify(eventService).fireEvent(argThat(match("theEvent_CREATED", entity2)));
+    }
+
+    @Test
+    public void should_not_fire_events_of_batch_insert_when_there_are_no_handlers() throws Exception {
+        MyPersistentObject entity = entity();
+
+        recorder.recordInsertInBatch(asList(entity), "theEvent");
+
+        verify(persistenceService).insertInBatch(asList(entity));
+        verify(eventService, never()).fireEvent(any());
+    }
+
     protected ArgumentMatcher<SEvent> match(String type, Object entity) {
         return sEvent -> sEvent.getType().equals(type) && sEvent.getObject().equals(entity);
     }
@@ -23,6 +23,9 @@ public interface SessionProvider {
 
     void removeSessions();
 
+    /**
+     * @return the session, that callers can't use to modify the stored one: either a copy or an immutable session
+     */
     SSession getSession(final long sessionId) throws SSessionNotFoundException;
 
     void removeSession(final long sessionId) throws SSessionNotFoundException;
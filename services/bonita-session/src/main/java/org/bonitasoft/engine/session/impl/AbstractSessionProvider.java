@@ -22,6 +22,7 @@ import org.bonitasoft.engine.session.SSessionAlreadyExistsException;
 import org.bonitasoft.engine.session.SSessionNotFoundException;
 import org.bonitasoft.engine.session.SessionProvider;
 import org.bonitasoft.engine.session.model.SSession;
+import org.bonitasoft.engine.session.model.impl.SSessionImpl;
 
 /**
  * @author Baptiste Mesta
@@ -58,7 +59,8 @@ public abstract class AbstractSessionProvider implements SessionProvider {
         if (session == null) {
             throw new SSessionNotFoundException("No session found with id \"" + sessionId + "\"");
         }
-        return session;
+        // the stored session is mutable, callers get a copy
+        return new SSessionImpl(session);
     }
 
     @Override
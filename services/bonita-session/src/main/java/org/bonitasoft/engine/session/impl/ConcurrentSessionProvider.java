@@ -0,0 +1,157 @@
+/**
+ * Copyright (C) 2018 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.session.impl;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import org.bonitasoft.engine.session.SSessionAlreadyExistsException;
+import org.bonitasoft.engine.session.SSessionNotFoundException;
+import org.bonitasoft.engine.session.SessionProvider;
+import org.bonitasoft.engine.session.model.SSession;
+import org.bonitasoft.engine.session.model.impl.SSessionSnapshot;
+
+/**
+ * Session provider that does not lock on reads nor on writes.
+ * <p>
+ * Sessions are kept as {@link SSessionSnapshot}s in a {@link ConcurrentHashMap}: {@link #getSession(long)} returns the stored snapshot, which can't be
+ * modified, and an update replaces it. Expired sessions are removed by a {@link SessionExpirationWheel} advanced when sessions are created or deleted
+ * and by {@link #cleanInvalidSessions()}, instead of scanning all the sessions.
+ * <p>
+ * As with {@link SessionProviderImpl}, the sessions are shared by all the instances of this provider.
+ */
+public final class ConcurrentSessionProvider implements SessionProvider {
+
+    static final long TICK_DURATION = TimeUnit.SECONDS.toMillis(1);
+
+    // one turn of the wheel is a bit more than the default session duration
+    static final int WHEEL_SIZE = 4096;
+
+    private static final ConcurrentMap<Long, SSessionSnapshot> SHARED_SESSIONS = new ConcurrentHashMap<>();
+
+    private static final SessionExpirationWheel SHARED_EXPIRATIONS = new SessionExpirationWheel(TICK_DURATION, WHEEL_SIZE,
+            System.currentTimeMillis());
+
+    private final ConcurrentMap<Long, SSessionSnapshot> sessions;
+
+    private final SessionExpirationWheel expirations;
+
+    private final SessionExpirationWheel.ExpirationHandler expirationHandler = new SessionExpirationWheel.ExpirationHandler() {
+
+        @Override
+        public long expire(final long sessionId, final long now) {
+            SSessionSnapshot session = sessions.get(sessionId);
+            while (session != null) {
+                if (session.getExpirationTime() > now) {
+                    // renewed since it was scheduled
+                    return session.getExpirationTime();
+                }
+                if (sessions.remove(sessionId, session)) {
+                    return -1;
+                }
+                // renewed or removed concurrently
+                session = sessions.get(sessionId);
+            }
+            return -1;
+        }
+    };
+
+    public ConcurrentSessionProvider() {
+        this(SHARED_SESSIONS, SHARED_EXPIRATIONS);
+    }
+
+    ConcurrentSessionProvider(final ConcurrentMap<Long, SSessionSnapshot> sessions, final SessionExpirationWheel expirations) {
+        this.sessions = sessions;
+        this.expirations = expirations;
+    }
+
+    @Override
+    public void addSession(final SSession session) throws SSessionAlreadyExistsException {
+        final SSessionSnapshot snapshot = SSessionSnapshot.of(session);
+        if (sessions.putIfAbsent(snapshot.getId(), snapshot) != null) {
+            throw new SSessionAlreadyExistsException("A session wih id \"" + snapshot.getId() + "\" already exists");
+        }
+        expirations.schedule(snapshot.getId(), snapshot.getExpirationTime());
+        expireSessionsIfDue();
+    }
+
+    @Override
+    public void removeSession(final long sessionId) throws SSessionNotFoundException {
+        if (sessions.remove(sessionId) == null) {
+            throw new SSessionNotFoundException("No session found with id \"" + sessionId + "\"");
+        }
+        expireSessionsIfDue();
+    }
+
+    @Override
+    public SSession getSession(final long sessionId) throws SSessionNotFoundException {
+        final SSession session = sessions.get(sessionId);
+        if (session == null) {
+            throw new SSessionNotFoundException("No session found with id \"" + sessionId + "\"");
+        }
+        return session;
+    }
+
+    @Override
+    public void updateSession(final SSession session) throws SSessionNotFoundException {
+        final SSessionSnapshot snapshot = SSessionSnapshot.of(session);
+        // the expiration wheel is not updated: it checks the expiration of the session when the previous one is due
+        if (sessions.replace(snapshot.getId(), snapshot) == null) {
+            throw new SSessionNotFoundException("No session found with id \"" + snapshot.getId() + "\"");
+        }
+    }
+
+    @Override
+    public void cleanInvalidSessions() {
+        expireSessions(System.currentTimeMillis());
+    }
+
+    /**
+     * @return the number of sessions removed because they expired
+     */
+    int expireSessions(final long now) {
+        return expirations.advance(now, expirationHandler);
+    }
+
+    private void expireSessionsIfDue() {
+        final long now = System.currentTimeMillis();
+        if (expirations.isAdvanceDue(now)) {
+            expireSessions(now);
+        }
+    }
+
+    int size() {
+        return sessions.size();
+    }
+
+    @Override
+    public void removeSessions() {
+        // expirations of removed sessions are dropped when they are due
+        sessions.clear();
+    }
+
+    @Override
+    public void deleteSessionsOfTenant(final long tenantId, final boolean keepTechnicalSessions) {
+        final Iterator<SSessionSnapshot> iterator = sessions.values().iterator();
+        while (iterator.hasNext()) {
+            final SSessionSnapshot session = iterator.next();
+            if (tenantId == session.getTenantId() && (!keepTechnicalSessions || !session.isTechnicalUser())) {
+                iterator.remove();
+            }
+        }
+    }
+
+}
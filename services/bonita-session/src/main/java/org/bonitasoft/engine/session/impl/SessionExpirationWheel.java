@@ -0,0 +1,153 @@
+/**
+ * Copyright (C) 2018 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.session.impl;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Hashed timing wheel of session expirations.
+ * <p>
+ * Each expiration is put in the bucket of the tick it falls in, modulo the size of the wheel. Advancing the wheel only looks at the buckets of the ticks
+ * elapsed since it was last advanced, so the cost of expiring sessions depends on the number of expirations due, not on the number of sessions.
+ * Expirations falling more than one turn of the wheel ahead stay in their bucket until the turn they are due.
+ * <p>
+ * A session is scheduled once, when it is created, and not when it is renewed: when its expiration is due, the {@link ExpirationHandler} checks the
+ * current expiration of the session and the session is scheduled again if it was renewed meanwhile.
+ */
+class SessionExpirationWheel {
+
+    interface ExpirationHandler {
+
+        /**
+         * Called when the scheduled expiration of a session is due
+         *
+         * @return the new expiration time of the session if it is still valid, -1 if it was removed
+         */
+        long expire(long sessionId, long now);
+    }
+
+    private final long tickDuration;
+
+    private final Queue<Expiration>[] buckets;
+
+    private final int mask;
+
+    private final ReentrantLock advanceLock = new ReentrantLock();
+
+    private volatile long lastTick;
+
+    /**
+     * @param tickDuration duration of a tick in milliseconds
+     * @param wheelSize number of buckets, rounded up to a power of two
+     * @param now current time in milliseconds
+     */
+    @SuppressWarnings("unchecked")
+    SessionExpirationWheel(final long tickDuration, final int wheelSize, final long now) {
+        this.tickDuration = tickDuration;
+        final int size = Integer.highestOneBit(Math.max(1, wheelSize - 1)) << 1;
+        buckets = new Queue[size];
+        for (int i = 0; i < size; i++) {
+            buckets[i] = new ConcurrentLinkedQueue<>();
+        }
+        mask = size - 1;
+        lastTick = now / tickDuration;
+    }
+
+    void schedule(final long sessionId, final long expirationTime) {
+        if (expirationTime == Long.MAX_VALUE) {
+            return;
+        }
+        buckets[bucketOf(expirationTime / tickDuration)].add(new Expiration(sessionId, expirationTime));
+    }
+
+    /**
+     * @return true if at least one tick elapsed since the wheel was last advanced
+     */
+    boolean isAdvanceDue(final long now) {
+        return now / tickDuration > lastTick;
+    }
+
+    /**
+     * Handle the expirations due in the ticks elapsed since the wheel was last advanced. Does nothing if the wheel is being advanced by another thread.
+     *
+     * @return the number of sessions expired
+     */
+    int advance(final long now, final ExpirationHandler handler) {
+        if (!advanceLock.tryLock()) {
+            return 0;
+        }
+        try {
+            final long currentTick = now / tickDuration;
+            // after a whole turn of the wheel, every bucket was visited
+            final long elapsedTicks = Math.min(currentTick - lastTick, buckets.length);
+            int expired = 0;
+            for (long tick = currentTick - elapsedTicks + 1; tick <= currentTick; tick++) {
+                expired += expireBucket(buckets[bucketOf(tick)], now, handler);
+            }
+            lastTick = Math.max(lastTick, currentTick);
+            return expired;
+        } finally {
+            advanceLock.unlock();
+        }
+    }
+
+    private int expireBucket(final Queue<Expiration> bucket, final long now, final ExpirationHandler handler) {
+        int expired = 0;
+        // expirations added while the bucket is read, including the ones not due yet put back, are left for a next turn
+        for (int remaining = bucket.size(); remaining > 0; remaining--) {
+            final Expiration expiration = bucket.poll();
+            if (expiration == null) {
+                break;
+            }
+            if (expiration.time > now) {
+                bucket.add(expiration);
+                continue;
+            }
+            final long newExpirationTime = handler.expire(expiration.sessionId, now);
+            if (newExpirationTime == -1) {
+                expired++;
+            } else {
+                schedule(expiration.sessionId, newExpirationTime);
+            }
+        }
+        return expired;
+    }
+
+    private int bucketOf(final long tick) {
+        return (int) (tick & mask);
+    }
+
+    int size() {
+        int size = 0;
+        for (final Queue<Expiration> bucket : buckets) {
+            size += bucket.size();
+        }
+        return size;
+    }
+
+    private static final class Expiration {
+
+        private final long sessionId;
+
+        private final long time;
+
+        private Expiration(final long sessionId, final long time) {
+            this.sessionId = sessionId;
+            this.time = time;
+        }
+    }
+
+}
@@ -106,11 +106,12 @@ public class SessionServiceImpl implements SessionService {
         if (logger.isLoggable(this.getClass(), TechnicalLogSeverity.TRACE)) {
             logger.log(this.getClass(), TechnicalLogSeverity.TRACE, LogUtil.getLogBeforeMethod(this.getClass(), "getSession"));
         }
+        // providers never give the instance they store: it can be returned as is
         final SSession session = sessionProvider.getSession(sessionId);
         if (logger.isLoggable(this.getClass(), TechnicalLogSeverity.TRACE)) {
             logger.log(this.getClass(), TechnicalLogSeverity.TRACE, LogUtil.getLogAfterMethod(this.getClass(), "getSession"));
         }
-        return BuilderFactory.get(SSessionBuilderFactory.class).copy(session);
+        return session;
     }
 
     @Override
@@ -154,7 +155,7 @@ public class SessionServiceImpl implements SessionService {
         if (logger.isLoggable(this.getClass(), TechnicalLogSeverity.TRACE)) {
             logger.log(this.getClass(), TechnicalLogSeverity.TRACE, LogUtil.getLogBeforeMethod(this.getClass(), "renewSession"));
         }
-        final SSession session = getSession(sessionId);
+        final SSession session = BuilderFactory.get(SSessionBuilderFactory.class).copy(getSession(sessionId));
         try {
             ClassReflector.invokeSetter(session, "setLastRenewDate", Date.class, new Date());
             sessionProvider.updateSession(session);
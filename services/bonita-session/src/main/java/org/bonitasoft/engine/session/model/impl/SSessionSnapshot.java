@@ -0,0 +1,160 @@
+/**
+ * Copyright (C) 2018 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.session.model.impl;
+
+import java.util.Date;
+
+import org.bonitasoft.engine.session.model.SSession;
+
+/**
+ * Immutable copy of a session, that can be given to any caller without being copied again.
+ */
+public final class SSessionSnapshot implements SSession {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long tenantId;
+
+    private final long id;
+
+    private final long creationTime;
+
+    private final long duration;
+
+    private final long lastRenewTime;
+
+    private final long expirationTime;
+
+    private final String userName;
+
+    private final long userId;
+
+    private final String clientIP;
+
+    private final String clusterNode;
+
+    private final String applicationName;
+
+    private final String clientApplicationName;
+
+    private final boolean technicalUser;
+
+    private SSessionSnapshot(final SSession session) {
+        id = session.getId();
+        tenantId = session.getTenantId();
+        creationTime = session.getCreationDate() != null ? session.getCreationDate().getTime() : -1;
+        duration = session.getDuration();
+        lastRenewTime = session.getLastRenewDate() != null ? session.getLastRenewDate().getTime() : -1;
+        // a session never renewed has no expiration, as SSessionImpl can't compute one
+        expirationTime = lastRenewTime != -1 ? lastRenewTime + duration : Long.MAX_VALUE;
+        userName = session.getUserName();
+        userId = session.getUserId();
+        technicalUser = session.isTechnicalUser();
+        clientIP = session.getClientIP();
+        clusterNode = session.getClusterNode();
+        applicationName = session.getApplicationName();
+        clientApplicationName = session.getClientApplicationName();
+    }
+
+    public static SSessionSnapshot of(final SSession session) {
+        if (session instanceof SSessionSnapshot) {
+            return (SSessionSnapshot) session;
+        }
+        return new SSessionSnapshot(session);
+    }
+
+    @Override
+    public long getTenantId() {
+        return tenantId;
+    }
+
+    @Override
+    public long getId() {
+        return id;
+    }
+
+    @Override
+    public Date getCreationDate() {
+        return creationTime != -1 ? new Date(creationTime) : null;
+    }
+
+    @Override
+    public Date getLastRenewDate() {
+        return lastRenewTime != -1 ? new Date(lastRenewTime) : null;
+    }
+
+    @Override
+    public long getDuration() {
+        return duration;
+    }
+
+    @Override
+    public Date getExpirationDate() {
+        return new Date(expirationTime);
+    }
+
+    /**
+     * @return the expiration date of the session in milliseconds, {@link Long#MAX_VALUE} if it was never renewed
+     */
+    public long getExpirationTime() {
+        return expirationTime;
+    }
+
+    @Override
+    public String getUserName() {
+        return userName;
+    }
+
+    @Override
+    public long getUserId() {
+        return userId;
+    }
+
+    @Override
+    public boolean isTechnicalUser() {
+        return technicalUser;
+    }
+
+    @Override
+    public String getClientIP() {
+        return clientIP;
+    }
+
+    @Override
+    public String getClusterNode() {
+        return clusterNode;
+    }
+
+    @Override
+    public String getApplicationName() {
+        return applicationName;
+    }
+
+    @Override
+    public String getClientApplicationName() {
+        return clientApplicationName;
+    }
+
+    @Override
+    public boolean isValid() {
+        return expirationTime > System.currentTimeMillis();
+    }
+
+    @Override
+    public String toString() {
+        return "SSessionSnapshot{id=" + id + ", tenantId=" + tenantId + ", userName='" + userName + "', userId=" + userId + ", technicalUser="
+                + technicalUser + ", expirationTime=" + expirationTime + "}";
+    }
+
+}
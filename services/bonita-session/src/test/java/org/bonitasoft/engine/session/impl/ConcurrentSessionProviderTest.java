@@ -0,0 +1,139 @@
+/**
+ * Copyright (C) 2018 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.session.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+import java.util.Date;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.bonitasoft.engine.session.SSessionAlreadyExistsException;
+import org.bonitasoft.engine.session.SSessionNotFoundException;
+import org.bonitasoft.engine.session.model.SSession;
+import org.bonitasoft.engine.session.model.impl.SSessionImpl;
+import org.bonitasoft.engine.session.model.impl.SSessionSnapshot;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ConcurrentSessionProviderTest {
+
+    private static final long DURATION = 10000;
+
+    private long now;
+
+    private ConcurrentSessionProvider sessionProvider;
+
+    @Before
+    public void before() {
+        now = System.currentTimeMillis();
+        sessionProvider = new ConcurrentSessionProvider(new ConcurrentHashMap<Long, SSessionSnapshot>(),
+                new SessionExpirationWheel(1000, 64, now));
+    }
+
+    private SSessionImpl session(final long id, final long tenantId, final long lastRenewTime) {
+        final SSessionImpl session = new SSessionImpl(id, tenantId, "john", "TEST", 12);
+        session.setDuration(DURATION);
+        session.setCreationDate(new Date(now));
+        session.setLastRenewDate(new Date(lastRenewTime));
+        return session;
+    }
+
+    @Test
+    public void should_return_the_stored_session_without_copying_it() throws Exception {
+        sessionProvider.addSession(session(12, 2, now));
+
+        final SSession session = sessionProvider.getSession(12);
+
+        assertThat(session).isInstanceOf(SSessionSnapshot.class);
+        assertThat(sessionProvider.getSession(12)).isSameAs(session);
+    }
+
+    @Test
+    public void should_not_be_modified_by_changes_of_the_added_session() throws Exception {
+        final SSessionImpl session = session(12, 2, now);
+        sessionProvider.addSession(session);
+
+        session.setUserName("jack");
+
+        assertThat(sessionProvider.getSession(12).getUserName()).isEqualTo("john");
+    }
+
+    @Test
+    public void should_refuse_to_add_a_session_twice() throws Exception {
+        sessionProvider.addSession(session(12, 2, now));
+
+        final Throwable thrown = catchThrowable(() -> sessionProvider.addSession(session(12, 2, now)));
+
+        assertThat(thrown).isInstanceOf(SSessionAlreadyExistsException.class);
+    }
+
+    @Test
+    public void should_refuse_to_update_a_removed_session() throws Exception {
+        sessionProvider.addSession(session(12, 2, now));
+        sessionProvider.removeSession(12);
+
+        final Throwable thrown = catchThrowable(() -> sessionProvider.updateSession(session(12, 2, now)));
+
+        assertThat(thrown).isInstanceOf(SSessionNotFoundException.class);
+    }
+
+    @Test
+    public void should_remove_sessions_once_they_expired() throws Exception {
+        sessionProvider.addSession(session(12, 2, now));
+
+        assertThat(sessionProvider.expireSessions(now + DURATION / 2)).isEqualTo(0);
+        assertThat(sessionProvider.expireSessions(now + DURATION + 1000)).isEqualTo(1);
+
+        assertThat(catchThrowable(() -> sessionProvider.getSession(12))).isInstanceOf(SSessionNotFoundException.class);
+    }
+
+    @Test
+    public void should_keep_sessions_renewed_before_they_expired() throws Exception {
+        sessionProvider.addSession(session(12, 2, now));
+        sessionProvider.updateSession(session(12, 2, now + DURATION - 2000));
+
+        assertThat(sessionProvider.expireSessions(now + DURATION + 1000)).isEqualTo(0);
+        assertThat(sessionProvider.getSession(12).getLastRenewDate()).isEqualTo(new Date(now + DURATION - 2000));
+        assertThat(sessionProvider.expireSessions(now + 2 * DURATION)).isEqualTo(1);
+        assertThat(sessionProvider.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void should_expire_all_due_sessions_when_not_advanced_for_more_than_a_turn_of_the_wheel() throws Exception {
+        sessionProvider.addSession(session(12, 2, now));
+        sessionProvider.addSession(session(13, 2, now + 5000));
+        sessionProvider.addSession(session(14, 2, now + 1000000));
+
+        assertThat(sessionProvider.expireSessions(now + 500000)).isEqualTo(2);
+
+        assertThat(sessionProvider.getSession(14)).isNotNull();
+    }
+
+    @Test
+    public void should_delete_sessions_of_tenant_but_technical_ones() throws Exception {
+        sessionProvider.addSession(session(54, 3, now));
+        final SSessionImpl technicalSession = session(55, 3, now);
+        technicalSession.setTechnicalUser(true);
+        sessionProvider.addSession(technicalSession);
+        sessionProvider.addSession(session(56, 4, now));
+
+        sessionProvider.deleteSessionsOfTenant(3, true);
+
+        assertThat(sessionProvider.getSession(55)).isNotNull();
+        assertThat(sessionProvider.getSession(56)).isNotNull();
+        assertThat(catchThrowable(() -> sessionProvider.getSession(54))).isInstanceOf(SSessionNotFoundException.class);
+    }
+
+}
@@ -13,11 +13,13 @@
  **/
 package org.bonitasoft.engine.session.impl;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.fail;
 
 import org.bonitasoft.engine.session.SSessionNotFoundException;
 import org.bonitasoft.engine.session.SessionProvider;
+import org.bonitasoft.engine.session.model.SSession;
 import org.bonitasoft.engine.session.model.impl.SSessionImpl;
 import org.junit.Test;
 
@@ -31,6 +33,17 @@ public class SessionProviderImplTest {
         assertNotNull(sessionProvider.getSession(12));
     }
 
+    @Test
+    public void getSession_should_return_a_copy_of_the_stored_session() throws Exception {
+        final SSessionImpl session = new SSessionImpl(14, 2, "john", "TEST", 12);
+        sessionProvider.addSession(session);
+
+        final SSession copy = sessionProvider.getSession(14);
+
+        assertThat(copy).isNotSameAs(session);
+        assertThat(copy.getUserName()).isEqualTo("john");
+    }
+
     @Test(expected = SSessionNotFoundException.class)
     public void testRemoveSession() throws Exception {
         sessionProvider.addSession(new SSessionImpl(13, 2, "john", "TEST", 12));
@@ -0,0 +1,118 @@
+/**
+ * Copyright (C) 2018 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.session.impl;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.bonitasoft.engine.log.technical.TechnicalLoggerSLF4JImpl;
+import org.bonitasoft.engine.session.SessionProvider;
+import org.bonitasoft.engine.session.model.SSession;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measure the throughput of session validation and retrieval among {@link #numberOfSessions} opened sessions, with the synchronized
+ * {@link SessionProviderImpl} and with the {@link ConcurrentSessionProvider}: alone, and as API calls (validate, renew, get) while other threads
+ * create and delete sessions as connector executions do.
+ * Run it using {@link #main(String[])}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SessionServiceBenchmark {
+
+    private static final long TENANT_ID = 1L;
+
+    @Param({ "synchronized", "concurrent" })
+    public String provider;
+
+    @Param({ "1000" })
+    public int numberOfSessions;
+
+    private SessionProvider sessionProvider;
+
+    private SessionServiceImpl sessionService;
+
+    private long[] sessionIds;
+
+    @Setup
+    public void setup() throws Exception {
+        sessionProvider = "synchronized".equals(provider) ? new SessionProviderImpl() : new ConcurrentSessionProvider();
+        sessionProvider.removeSessions();
+        sessionService = new SessionServiceImpl(sessionProvider, "BPM", new TechnicalLoggerSLF4JImpl());
+        sessionIds = new long[numberOfSessions];
+        for (int i = 0; i < numberOfSessions; i++) {
+            sessionIds[i] = sessionService.createSession(TENANT_ID, i, "user" + i, false).getId();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        sessionProvider.removeSessions();
+    }
+
+    private long randomSessionId() {
+        return sessionIds[ThreadLocalRandom.current().nextInt(numberOfSessions)];
+    }
+
+    @Benchmark
+    @Threads(8)
+    public SSession validateAndGet() throws Exception {
+        final long sessionId = randomSessionId();
+        sessionService.isValid(sessionId);
+        return sessionService.getSession(sessionId);
+    }
+
+    @Benchmark
+    @Group("apiCallsDuringConnectorExecutions")
+    @GroupThreads(6)
+    public SSession apiCalls() throws Exception {
+        final long sessionId = randomSessionId();
+        sessionService.isValid(sessionId);
+        sessionService.renewSession(sessionId);
+        return sessionService.getSession(sessionId);
+    }
+
+    @Benchmark
+    @Group("apiCallsDuringConnectorExecutions")
+    @GroupThreads(2)
+    public void connectorExecutions() throws Exception {
+        final SSession session = sessionService.createSession(TENANT_ID, -1, "system", true);
+        sessionService.deleteSession(session.getId());
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(SessionServiceBenchmark.class.getSimpleName()).build()).run();
+    }
+
+}
@@ -23,6 +23,7 @@ import static org.mockito.Mockito.verify;
 import org.bonitasoft.engine.log.technical.TechnicalLoggerService;
 import org.bonitasoft.engine.session.SSessionNotFoundException;
 import org.bonitasoft.engine.session.SessionProvider;
+import org.bonitasoft.engine.session.model.SSession;
 import org.bonitasoft.engine.session.model.impl.SSessionImpl;
 import org.bonitasoft.engine.sessionaccessor.ReadSessionAccessor;
 import org.bonitasoft.engine.sessionaccessor.SessionIdNotSetException;
@@ -112,6 +113,15 @@ public class SessionServiceImplTest {
         verify(sessionProvider, times(1)).deleteSessionsOfTenant(12l, true);
     }
 
+    @Test
+    public final void getSession_should_return_the_session_of_the_provider_without_copying_it() throws Exception {
+        doReturn(sSession).when(sessionProvider).getSession(SESSION_ID);
+
+        final SSession session = sessionServiceImpl.getSession(SESSION_ID);
+
+        assertThat(session).isSameAs(sSession);
+    }
+
     @Test
     public final void should_getLoggedUserFromSession_return_user_id_when_there_is_a_session() throws Exception {
         //given
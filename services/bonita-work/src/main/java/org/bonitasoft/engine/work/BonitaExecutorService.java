@@ -43,4 +43,19 @@ public interface BonitaExecutorService {
 
     boolean awaitTermination(long workTerminationTimeout, TimeUnit seconds) throws InterruptedException;
 
+    /**
+     * @return the number of works waiting for their execution threshold
+     */
+    int getNumberOfDelayedWorks();
+
+    /**
+     * @return the time in milliseconds between the execution threshold and the submission of the last delayed work
+     */
+    long getLastDelayLag();
+
+    /**
+     * @return the maximum time in milliseconds between the execution threshold of a delayed work and its submission
+     */
+    long getMaxDelayLag();
+
 }
@@ -16,6 +16,7 @@ package org.bonitasoft.engine.work;
 import java.util.HashMap;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.RejectedExecutionHandler;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -34,8 +35,9 @@ public class BonitaThreadPoolExecutor extends ThreadPoolExecutor implements Boni
     private final BlockingQueue<Runnable> workQueue;
     private final WorkFactory workFactory;
     private final TechnicalLoggerService logger;
-    private final EngineClock engineClock;
     private final WorkExecutionCallback workExecutionCallback;
+    private final WorkMailboxes workMailboxes;
+    private final DelayedWorkStage delayedWorkStage;
 
     public BonitaThreadPoolExecutor(final int corePoolSize,
             final int maximumPoolSize,
@@ -45,17 +47,40 @@ public class BonitaThreadPoolExecutor extends ThreadPoolExecutor implements Boni
             final ThreadFactory threadFactory,
             final RejectedExecutionHandler handler, WorkFactory workFactory, final TechnicalLoggerService logger,
             EngineClock engineClock, WorkExecutionCallback workExecutionCallback) {
+        this(corePoolSize, maximumPoolSize, keepAliveTime, unit, workQueue, threadFactory, handler, workFactory, logger,
+                workExecutionCallback, null, new DelayedWorkStage(threadFactory, engineClock, logger));
+    }
+
+    /**
+     * @param workMailboxes mailboxes used to dispatch works of a same process instance one at a time, null to
+     *        dispatch all works directly and let them retry when the process instance is locked
+     * @param delayedWorkStage stage holding works having an execution threshold in the future, it is started by this
+     *        executor when the first delayed work is submitted
+     */
+    public BonitaThreadPoolExecutor(final int corePoolSize,
+            final int maximumPoolSize,
+            final long keepAliveTime,
+            final TimeUnit unit,
+            final BlockingQueue<Runnable> workQueue,
+            final ThreadFactory threadFactory,
+            final RejectedExecutionHandler handler, WorkFactory workFactory, final TechnicalLoggerService logger,
+            WorkExecutionCallback workExecutionCallback, WorkMailboxes workMailboxes, DelayedWorkStage delayedWorkStage) {
         super(corePoolSize, maximumPoolSize, keepAliveTime, unit, workQueue, threadFactory, handler);
         this.workQueue = workQueue;
         this.workFactory = workFactory;
         this.logger = logger;
-        this.engineClock = engineClock;
         this.workExecutionCallback = workExecutionCallback;
+        this.workMailboxes = workMailboxes;
+        this.delayedWorkStage = delayedWorkStage;
     }
 
     @Override
     public void clearAllQueues() {
         workQueue.clear();
+        delayedWorkStage.clear();
+        if (workMailboxes != null) {
+            workMailboxes.clear();
+        }
     }
 
     @Override
@@ -73,26 +98,98 @@ public class BonitaThreadPoolExecutor extends ThreadPoolExecutor implements Boni
         logger.log(getClass(), TechnicalLogSeverity.INFO,
                 "Clearing queue of work, had " + workQueue.size() + " elements");
         workQueue.clear();
+        logger.log(getClass(), TechnicalLogSeverity.INFO,
+                "Clearing delayed works, had " + delayedWorkStage.getQueueDepth() + " elements");
+        delayedWorkStage.stop();
+        if (workMailboxes != null) {
+            logger.log(getClass(), TechnicalLogSeverity.INFO,
+                    "Clearing mailboxes of work, had " + workMailboxes.getNumberOfWaitingWorks() + " elements");
+            workMailboxes.clear();
+        }
     }
 
     @Override
     public void submit(WorkDescriptor work) {
-        submit(() -> {
-            if (work.getExecutionThreshold() != null && work.getExecutionThreshold().isAfter(engineClock.now())) {
-                // Future implementation should use a real delay e.g. using a ScheduledThreadPoolExecutor
-                // Will be executed later
-                submit(work);
-                return;
-            }
-            BonitaWork bonitaWork = workFactory.create(work);
-            HashMap<String, Object> context = new HashMap<>();
-            try {
-                bonitaWork.work(context);
-                workExecutionCallback.onSuccess(work);
-            } catch (Exception e) {
-                workExecutionCallback.onFailure(work, bonitaWork, context, e);
+        if (delayedWorkStage.isDelayed(work)) {
+            // Will be submitted again by the delayed work stage once the execution threshold is reached
+            // The stage is started here and not in the constructor so that it never sees a partially constructed executor
+            delayedWorkStage.start(this::dispatchDelayedWork);
+            delayedWorkStage.delay(work);
+            return;
+        }
+        Long processInstanceId = workMailboxes != null ? workFactory.getProcessInstanceToLock(work) : null;
+        if (processInstanceId != null && !workMailboxes.offer(processInstanceId, work)) {
+            // an other work of this process instance is in flight, this one is dispatched when it is released
+            return;
+        }
+        dispatch(work, processInstanceId);
+    }
+
+    private void dispatch(WorkDescriptor work, Long processInstanceId) {
+        try {
+            submit(() -> {
+                try {
+                    executeWork(work);
+                } finally {
+                    if (processInstanceId != null) {
+                        dispatchNext(processInstanceId);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            if (processInstanceId != null) {
+                // the rejected work will never release the mailbox, hand it over to the next work of the process instance
+                dispatchNext(processInstanceId);
             }
-        });
+            throw e;
+        }
+    }
+
+    private void dispatchDelayedWork(WorkDescriptor work) {
+        try {
+            submit(work);
+        } catch (RejectedExecutionException e) {
+            workExecutionCallback.onFailure(work, workFactory.create(work), new HashMap<>(), e);
+        }
+    }
+
+    private void dispatchNext(long processInstanceId) {
+        WorkDescriptor next = workMailboxes.release(processInstanceId);
+        if (next == null) {
+            return;
+        }
+        try {
+            dispatch(next, processInstanceId);
+        } catch (RejectedExecutionException e) {
+            // nobody is waiting for this work: its failure is handled like the one of a work that failed to execute
+            workExecutionCallback.onFailure(next, workFactory.create(next), new HashMap<>(), e);
+        }
+    }
+
+    private void executeWork(WorkDescriptor work) {
+        BonitaWork bonitaWork = workFactory.create(work);
+        HashMap<String, Object> context = new HashMap<>();
+        try {
+            bonitaWork.work(context);
+            workExecutionCallback.onSuccess(work);
+        } catch (Exception e) {
+            workExecutionCallback.onFailure(work, bonitaWork, context, e);
+        }
+    }
+
+    @Override
+    public int getNumberOfDelayedWorks() {
+        return delayedWorkStage.getQueueDepth();
+    }
+
+    @Override
+    public long getLastDelayLag() {
+        return delayedWorkStage.getLastDelayLag();
+    }
+
+    @Override
+    public long getMaxDelayLag() {
+        return delayedWorkStage.getMaxDelayLag();
     }
 
 }
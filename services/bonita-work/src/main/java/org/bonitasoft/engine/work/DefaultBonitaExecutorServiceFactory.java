@@ -33,6 +33,8 @@ import org.bonitasoft.engine.log.technical.TechnicalLoggerService;
  * - If the queue is full, and the number of threads is less than the maxPoolSize, create a new thread to run tasks in.
  * - If the queue is full, and the number of threads is greater than or equal to maxPoolSize, reject the task.
  * When the current number of threads are > than corePoolSize, they are kept idle during keepAliveTimeSeconds
+ * When processInstanceMailboxes is enabled, works locking the same process instance are dispatched one at a time
+ * using {@link WorkMailboxes} instead of being retried when the process instance is locked.
  * 
  * @author Baptiste Mesta
  */
@@ -46,11 +48,19 @@ public class DefaultBonitaExecutorServiceFactory implements BonitaExecutorServic
     private final TechnicalLoggerService logger;
     private WorkFactory workFactory;
     private final long tenantId;
+    private final boolean processInstanceMailboxes;
 
     public DefaultBonitaExecutorServiceFactory(final TechnicalLoggerService logger, WorkFactory workFactory, final long tenantId, final int corePoolSize, final int queueCapacity,
             final int maximumPoolSize,
             final long keepAliveTimeSeconds,
             EngineClock engineClock) {
+        this(logger, workFactory, tenantId, corePoolSize, queueCapacity, maximumPoolSize, keepAliveTimeSeconds, engineClock, false);
+    }
+
+    public DefaultBonitaExecutorServiceFactory(final TechnicalLoggerService logger, WorkFactory workFactory, final long tenantId, final int corePoolSize, final int queueCapacity,
+            final int maximumPoolSize,
+            final long keepAliveTimeSeconds,
+            EngineClock engineClock, final boolean processInstanceMailboxes) {
         this.logger = logger;
         this.workFactory = workFactory;
         this.tenantId = tenantId;
@@ -59,6 +69,7 @@ public class DefaultBonitaExecutorServiceFactory implements BonitaExecutorServic
         this.maximumPoolSize = maximumPoolSize;
         this.keepAliveTimeSeconds = keepAliveTimeSeconds;
         this.engineClock = engineClock;
+        this.processInstanceMailboxes = processInstanceMailboxes;
     }
 
     @Override
@@ -67,7 +78,9 @@ public class DefaultBonitaExecutorServiceFactory implements BonitaExecutorServic
         final RejectedExecutionHandler handler = new QueueRejectedExecutionHandler();
         final WorkerThreadFactory threadFactory = new WorkerThreadFactory("Bonita-Worker", tenantId, maximumPoolSize);
         return new BonitaThreadPoolExecutor(corePoolSize, maximumPoolSize, keepAliveTimeSeconds, TimeUnit.SECONDS, workQueue,
-                threadFactory, handler, workFactory, logger, engineClock, workExecutionCallback);
+                threadFactory, handler, workFactory, logger, workExecutionCallback,
+                processInstanceMailboxes ? new WorkMailboxes() : null,
+                new DelayedWorkStage(new WorkerThreadFactory("Bonita-Delayed-Works", tenantId, 1), engineClock, logger));
     }
 
     private final class QueueRejectedExecutionHandler implements RejectedExecutionHandler {
@@ -0,0 +1,170 @@
+/**
+ * Copyright (C) 2018 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.work;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import org.bonitasoft.engine.commons.time.EngineClock;
+import org.bonitasoft.engine.log.technical.TechnicalLogSeverity;
+import org.bonitasoft.engine.log.technical.TechnicalLoggerService;
+
+/**
+ * Stage in front of the work executor holding works that must be executed later (see
+ * {@link WorkDescriptor#getExecutionThreshold()}).
+ * Delayed works sleep in a {@link DelayQueue} and are handed to the executor only once their execution threshold is
+ * reached, instead of being dequeued and re-submitted again and again by the worker threads.
+ * <p>
+ * The delay is computed using the {@link EngineClock}. Because this clock can be moved (e.g. in tests), the
+ * dispatching thread never sleeps more than {@link #MAX_WAIT_MILLIS} before checking the head of the queue again.
+ */
+public class DelayedWorkStage {
+
+    static final long MAX_WAIT_MILLIS = 200;
+
+    private final DelayQueue<DelayedWork> delayedWorks = new DelayQueue<>();
+    private final ThreadFactory threadFactory;
+    private final EngineClock engineClock;
+    private final TechnicalLoggerService logger;
+    private final AtomicLong lastDelayLag = new AtomicLong();
+    private final AtomicLong maxDelayLag = new AtomicLong();
+    private volatile boolean running;
+    private boolean stopped;
+    private Thread dispatchingThread;
+
+    public DelayedWorkStage(ThreadFactory threadFactory, EngineClock engineClock, TechnicalLoggerService logger) {
+        this.threadFactory = threadFactory;
+        this.engineClock = engineClock;
+        this.logger = logger;
+    }
+
+    /**
+     * Start the dispatching thread, does nothing if it is already started or if the stage was stopped
+     *
+     * @param dispatcher called with each work once its execution threshold is reached
+     */
+    public synchronized void start(Consumer<WorkDescriptor> dispatcher) {
+        if (running || stopped) {
+            return;
+        }
+        running = true;
+        dispatchingThread = threadFactory.newThread(() -> dispatchDueWorks(dispatcher));
+        dispatchingThread.setDaemon(true);
+        dispatchingThread.start();
+    }
+
+    public synchronized void stop() {
+        running = false;
+        stopped = true;
+        if (dispatchingThread != null) {
+            dispatchingThread.interrupt();
+            dispatchingThread = null;
+        }
+        delayedWorks.clear();
+    }
+
+    public boolean isDelayed(WorkDescriptor work) {
+        return work.getExecutionThreshold() != null && work.getExecutionThreshold().isAfter(engineClock.now());
+    }
+
+    public void delay(WorkDescriptor work) {
+        delayedWorks.put(new DelayedWork(work));
+    }
+
+    public void clear() {
+        delayedWorks.clear();
+    }
+
+    /**
+     * @return the number of works waiting for their execution threshold
+     */
+    public int getQueueDepth() {
+        return delayedWorks.size();
+    }
+
+    /**
+     * @return the time in milliseconds between the execution threshold and the dispatching of the last released work
+     */
+    public long getLastDelayLag() {
+        return lastDelayLag.get();
+    }
+
+    /**
+     * @return the maximum time in milliseconds between the execution threshold of a work and its dispatching
+     */
+    public long getMaxDelayLag() {
+        return maxDelayLag.get();
+    }
+
+    private void dispatchDueWorks(Consumer<WorkDescriptor> dispatcher) {
+        while (running) {
+            DelayedWork dueWork;
+            try {
+                dueWork = delayedWorks.poll(MAX_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (dueWork != null && running) {
+                long lag = Math.max(0, Duration.between(dueWork.getExecutionThreshold(), engineClock.now()).toMillis());
+                lastDelayLag.set(lag);
+                maxDelayLag.accumulateAndGet(lag, Math::max);
+                dispatch(dispatcher, dueWork.getWork());
+            }
+        }
+    }
+
+    private void dispatch(Consumer<WorkDescriptor> dispatcher, WorkDescriptor work) {
+        try {
+            dispatcher.accept(work);
+        } catch (RuntimeException e) {
+            // the dispatching thread must survive, otherwise no other delayed work would ever be executed
+            logger.log(getClass(), TechnicalLogSeverity.ERROR, "Unable to dispatch the delayed work " + work.getDescription(), e);
+        }
+    }
+
+    private class DelayedWork implements Delayed {
+
+        private final WorkDescriptor work;
+
+        DelayedWork(WorkDescriptor work) {
+            this.work = work;
+        }
+
+        WorkDescriptor getWork() {
+            return work;
+        }
+
+        Instant getExecutionThreshold() {
+            return work.getExecutionThreshold();
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(Duration.between(engineClock.now(), getExecutionThreshold()).toMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed o) {
+            return getExecutionThreshold().compareTo(((DelayedWork) o).getExecutionThreshold());
+        }
+    }
+
+}
@@ -29,4 +29,19 @@ public interface WorkExecutorService extends TenantLifecycleService {
     void notifyNodeStopped(String nodeName);
 
     void execute(WorkDescriptor work);
+
+    /**
+     * @return the number of works waiting for their execution threshold, 0 when the service is stopped
+     */
+    int getNumberOfDelayedWorks();
+
+    /**
+     * @return the time in milliseconds between the execution threshold and the submission of the last delayed work, 0 when the service is stopped
+     */
+    long getLastDelayLag();
+
+    /**
+     * @return the maximum time in milliseconds between the execution threshold of a delayed work and its submission, 0 when the service is stopped
+     */
+    long getMaxDelayLag();
 }
@@ -131,4 +131,22 @@ public class WorkExecutorServiceImpl implements WorkExecutorService, WorkExecuti
     @Override
     public void notifyNodeStopped(String nodeName) {
     }
+
+    @Override
+    public int getNumberOfDelayedWorks() {
+        final BonitaExecutorService currentExecutor = executor;
+        return currentExecutor == null ? 0 : currentExecutor.getNumberOfDelayedWorks();
+    }
+
+    @Override
+    public long getLastDelayLag() {
+        final BonitaExecutorService currentExecutor = executor;
+        return currentExecutor == null ? 0 : currentExecutor.getLastDelayLag();
+    }
+
+    @Override
+    public long getMaxDelayLag() {
+        final BonitaExecutorService currentExecutor = executor;
+        return currentExecutor == null ? 0 : currentExecutor.getMaxDelayLag();
+    }
 }
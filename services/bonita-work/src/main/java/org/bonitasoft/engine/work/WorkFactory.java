@@ -21,4 +21,15 @@ public interface WorkFactory {
 
     BonitaWork create(WorkDescriptor workDescriptor);
 
+    /**
+     * Give the id of the process instance that will be locked by the work created from this descriptor.
+     * Works having the same key are dispatched one at a time when process instance mailboxes are enabled.
+     *
+     * @param workDescriptor the descriptor of the work
+     * @return the id of the process instance locked by the work or null if the work does not lock any process instance
+     */
+    default Long getProcessInstanceToLock(WorkDescriptor workDescriptor) {
+        return null;
+    }
+
 }
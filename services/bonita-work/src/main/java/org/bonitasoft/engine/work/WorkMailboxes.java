@@ -0,0 +1,93 @@
+/**
+ * Copyright (C) 2018 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.work;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Ordered mailboxes of works, one per process instance.
+ * At most one work of a given process instance is in flight: the others wait in the mailbox of the process instance
+ * instead of taking a worker thread to spin on the process instance lock.
+ * A mailbox exists in the map as long as a work of its process instance is in flight, it is removed when the in-flight
+ * work is released and no other work is waiting.
+ */
+public class WorkMailboxes {
+
+    private final ConcurrentHashMap<Long, ArrayDeque<WorkDescriptor>> mailboxes = new ConcurrentHashMap<>();
+    private final AtomicInteger waitingWorks = new AtomicInteger();
+
+    /**
+     * Offer a work to the mailbox of its process instance
+     *
+     * @param processInstanceId the id of the process instance locked by the work
+     * @param work the work to dispatch
+     * @return true if the work can be dispatched right now, false if it was put in the mailbox because an other work of
+     *         the same process instance is in flight
+     */
+    public boolean offer(long processInstanceId, WorkDescriptor work) {
+        boolean[] canBeDispatched = new boolean[1];
+        mailboxes.compute(processInstanceId, (key, mailbox) -> {
+            if (mailbox == null) {
+                canBeDispatched[0] = true;
+                return new ArrayDeque<>(2);
+            }
+            mailbox.addLast(work);
+            return mailbox;
+        });
+        if (!canBeDispatched[0]) {
+            waitingWorks.incrementAndGet();
+        }
+        return canBeDispatched[0];
+    }
+
+    /**
+     * Release the in-flight work of the process instance
+     *
+     * @param processInstanceId the id of the process instance locked by the work
+     * @return the next work of the process instance that must now be dispatched, or null if no work is waiting
+     */
+    public WorkDescriptor release(long processInstanceId) {
+        WorkDescriptor[] next = new WorkDescriptor[1];
+        mailboxes.computeIfPresent(processInstanceId, (key, mailbox) -> {
+            next[0] = mailbox.pollFirst();
+            return next[0] == null ? null : mailbox;
+        });
+        if (next[0] != null) {
+            waitingWorks.decrementAndGet();
+        }
+        return next[0];
+    }
+
+    /**
+     * @return the number of works waiting in a mailbox, in-flight works are not counted
+     */
+    public int getNumberOfWaitingWorks() {
+        return waitingWorks.get();
+    }
+
+    /**
+     * @return the number of process instances having a work in flight
+     */
+    public int getNumberOfMailboxes() {
+        return mailboxes.size();
+    }
+
+    public void clear() {
+        mailboxes.clear();
+        waitingWorks.set(0);
+    }
+
+}
@@ -16,14 +16,20 @@ package org.bonitasoft.engine.work;
 
 import static java.time.temporal.ChronoUnit.SECONDS;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.awaitility.Awaitility.await;
 
 import java.time.Instant;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.bonitasoft.engine.commons.time.FixedEngineClock;
 import org.bonitasoft.engine.log.technical.TechnicalLoggerService;
@@ -118,20 +124,190 @@ public class BonitaThreadPoolExecutorTest {
         await().until(() -> workExecutionCallback.isOnSuccessCalled());
     }
 
+    @Test
+    public void should_start_the_delayed_work_stage_only_when_a_work_is_delayed() throws Exception {
+        AtomicInteger createdThreads = new AtomicInteger();
+        ThreadFactory delayerThreadFactory = r -> {
+            createdThreads.incrementAndGet();
+            return new Thread(r);
+        };
+        BonitaThreadPoolExecutor executor = new BonitaThreadPoolExecutor(1, 1, 1000, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(10), new WorkerThreadFactory("test-worker", 1, 1),
+                (r, e) -> {
+                }, workFactory, technicalLoggerService, workExecutionCallback, null,
+                new DelayedWorkStage(delayerThreadFactory, engineClock, technicalLoggerService));
+        assertThat(createdThreads.get()).isEqualTo(0);
+
+        executor.submit(WorkDescriptor.create("NORMAL").mustBeExecutedAfter(engineClock.now().plus(5, SECONDS)));
+        executor.submit(WorkDescriptor.create("NORMAL").mustBeExecutedAfter(engineClock.now().plus(5, SECONDS)));
+
+        assertThat(createdThreads.get()).isEqualTo(1);
+        executor.shutdownAndEmptyQueue();
+    }
+
+    @Test
+    public void should_not_execute_two_works_of_the_same_process_instance_concurrently_when_using_mailboxes() throws Exception {
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        CountDownLatch executed = new CountDownLatch(20);
+        WorkFactory lockingWorkFactory = new WorkFactory() {
+
+            @Override
+            public BonitaWork create(WorkDescriptor workDescriptor) {
+                return new BonitaWork() {
+
+                    @Override
+                    public String getDescription() {
+                        return workDescriptor.toString();
+                    }
+
+                    @Override
+                    public void work(Map<String, Object> context) throws Exception {
+                        maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                        Thread.sleep(5);
+                        inFlight.decrementAndGet();
+                        executed.countDown();
+                    }
+
+                    @Override
+                    public void handleFailure(Exception e, Map<String, Object> context) throws Exception {
+                    }
+                };
+            }
+
+            @Override
+            public Long getProcessInstanceToLock(WorkDescriptor workDescriptor) {
+                return 1L;
+            }
+        };
+        BonitaThreadPoolExecutor executorWithMailboxes = new BonitaThreadPoolExecutor(3, 3, 1000, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(1000), new WorkerThreadFactory("test-worker", 1, 3),
+                (r, executor) -> {
+                }, lockingWorkFactory, technicalLoggerService, workExecutionCallback, new WorkMailboxes(),
+                new DelayedWorkStage(new WorkerThreadFactory("test-delayer", 1, 1), engineClock, technicalLoggerService));
+
+        for (int i = 0; i < 20; i++) {
+            executorWithMailboxes.submit(WorkDescriptor.create("NORMAL"));
+        }
+
+        assertThat(executed.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(maxInFlight.get()).isEqualTo(1);
+        executorWithMailboxes.shutdown();
+    }
+
+    @Test
+    public void should_release_the_mailbox_when_the_first_work_of_a_process_instance_is_rejected() throws Exception {
+        CountDownLatch blockingWorkStarted = new CountDownLatch(1);
+        CountDownLatch unblock = new CountDownLatch(1);
+        WorkMailboxes workMailboxes = new WorkMailboxes();
+        BonitaThreadPoolExecutor rejectingExecutor = createSingleThreadRejectingExecutor(workMailboxes, blockingWorkStarted, unblock);
+        rejectingExecutor.submit(workOfProcessInstance("BLOCK", 1L));
+        blockingWorkStarted.await(10, TimeUnit.SECONDS);
+        rejectingExecutor.submit(workOfProcessInstance("NORMAL", 2L));
+
+        assertThatThrownBy(() -> rejectingExecutor.submit(workOfProcessInstance("NORMAL", 3L)))
+                .isInstanceOf(RejectedExecutionException.class);
+
+        unblock.countDown();
+        await().until(() -> workMailboxes.getNumberOfMailboxes() == 0);
+        WorkDescriptor resubmittedWork = workOfProcessInstance("NORMAL", 3L);
+        rejectingExecutor.submit(resubmittedWork);
+        await().until(() -> workExecutionCallback.getSucceededWorks().contains(resubmittedWork));
+        rejectingExecutor.shutdown();
+    }
+
+    @Test
+    public void should_call_on_failure_callback_when_the_next_work_of_a_process_instance_is_rejected() throws Exception {
+        CountDownLatch blockingWorkStarted = new CountDownLatch(1);
+        CountDownLatch unblock = new CountDownLatch(1);
+        WorkMailboxes workMailboxes = new WorkMailboxes();
+        BonitaThreadPoolExecutor rejectingExecutor = createSingleThreadRejectingExecutor(workMailboxes, blockingWorkStarted, unblock);
+        rejectingExecutor.submit(workOfProcessInstance("BLOCK", 1L));
+        blockingWorkStarted.await(10, TimeUnit.SECONDS);
+        // waits in the mailbox of the process instance 1
+        WorkDescriptor nextWork = workOfProcessInstance("NEXT", 1L);
+        rejectingExecutor.submit(nextWork);
+        // fills the queue, so that the next work is rejected when the blocking work completes
+        rejectingExecutor.submit(workOfProcessInstance("NORMAL", 2L));
+
+        unblock.countDown();
+
+        await().until(() -> workExecutionCallback.getFailedWorks().contains(nextWork));
+        await().until(() -> workMailboxes.getNumberOfMailboxes() == 0);
+        assertThat(workMailboxes.getNumberOfWaitingWorks()).isEqualTo(0);
+        rejectingExecutor.shutdown();
+    }
+
+    private WorkDescriptor workOfProcessInstance(String type, long processInstanceId) {
+        return WorkDescriptor.create(type).withParameter("processInstanceId", processInstanceId);
+    }
+
+    private BonitaThreadPoolExecutor createSingleThreadRejectingExecutor(WorkMailboxes workMailboxes, CountDownLatch blockingWorkStarted,
+            CountDownLatch unblock) {
+        WorkFactory blockingWorkFactory = new WorkFactory() {
+
+            @Override
+            public BonitaWork create(WorkDescriptor workDescriptor) {
+                return new BonitaWork() {
+
+                    @Override
+                    public String getDescription() {
+                        return workDescriptor.toString();
+                    }
+
+                    @Override
+                    public void work(Map<String, Object> context) throws Exception {
+                        if ("BLOCK".equals(workDescriptor.getType())) {
+                            blockingWorkStarted.countDown();
+                            unblock.await(10, TimeUnit.SECONDS);
+                        }
+                    }
+
+                    @Override
+                    public void handleFailure(Exception e, Map<String, Object> context) throws Exception {
+                    }
+                };
+            }
+
+            @Override
+            public Long getProcessInstanceToLock(WorkDescriptor workDescriptor) {
+                return workDescriptor.getLong("processInstanceId");
+            }
+        };
+        return new BonitaThreadPoolExecutor(1, 1, 1000, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(1), new WorkerThreadFactory("test-worker", 1, 1),
+                (r, executor) -> {
+                    throw new RejectedExecutionException("queue is full");
+                }, blockingWorkFactory, technicalLoggerService, workExecutionCallback, workMailboxes,
+                new DelayedWorkStage(new WorkerThreadFactory("test-delayer", 1, 1), engineClock, technicalLoggerService));
+    }
+
     private static class MyWorkExecutionCallback implements WorkExecutionCallback {
 
         private final AtomicBoolean onSuccessCalled = new AtomicBoolean(false);
         private final AtomicBoolean onFailureCalled = new AtomicBoolean(false);
+        private final List<WorkDescriptor> succeededWorks = new CopyOnWriteArrayList<>();
+        private final List<WorkDescriptor> failedWorks = new CopyOnWriteArrayList<>();
 
         @Override
         public void onSuccess(WorkDescriptor workDescriptor) {
             onSuccessCalled.set(true);
+            succeededWorks.add(workDescriptor);
         }
 
         @Override
         public void onFailure(WorkDescriptor work, BonitaWork bonitaWork, Map<String, Object> context,
                 Exception thrown) {
             onFailureCalled.set(true);
+            failedWorks.add(work);
+        }
+
+        public List<WorkDescriptor> getSucceededWorks() {
+            return succeededWorks;
+        }
+
+        public List<WorkDescriptor> getFailedWorks() {
+            return failedWorks;
         }
 
         public boolean isOnSuccessCalled() {
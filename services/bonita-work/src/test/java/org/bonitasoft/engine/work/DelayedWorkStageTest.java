@@ -0,0 +1,137 @@
+/**
+ * Copyright (C) 2018 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.work;
+
+import static java.time.temporal.ChronoUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.Mockito.mock;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.bonitasoft.engine.commons.time.FixedEngineClock;
+import org.bonitasoft.engine.log.technical.TechnicalLoggerService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DelayedWorkStageTest {
+
+    private FixedEngineClock engineClock = new FixedEngineClock(Instant.now());
+    private TechnicalLoggerService logger = mock(TechnicalLoggerService.class);
+    private DelayedWorkStage delayedWorkStage = new DelayedWorkStage(new WorkerThreadFactory("test-delayer", 1, 1), engineClock, logger);
+    private List<WorkDescriptor> dispatchedWorks = new CopyOnWriteArrayList<>();
+
+    @Before
+    public void before() {
+        delayedWorkStage.start(dispatchedWorks::add);
+    }
+
+    @After
+    public void after() {
+        delayedWorkStage.stop();
+    }
+
+    @Test
+    public void should_consider_work_without_threshold_as_not_delayed() {
+        assertThat(delayedWorkStage.isDelayed(WorkDescriptor.create("WORK"))).isFalse();
+    }
+
+    @Test
+    public void should_consider_work_with_threshold_in_the_future_as_delayed() {
+        assertThat(delayedWorkStage.isDelayed(WorkDescriptor.create("WORK").mustBeExecutedAfter(engineClock.now().plus(1, SECONDS)))).isTrue();
+    }
+
+    @Test
+    public void should_not_dispatch_work_before_its_threshold() throws Exception {
+        delayedWorkStage.delay(WorkDescriptor.create("WORK").mustBeExecutedAfter(engineClock.now().plus(5, SECONDS)));
+
+        Thread.sleep(DelayedWorkStage.MAX_WAIT_MILLIS * 2);
+
+        assertThat(dispatchedWorks).isEmpty();
+        assertThat(delayedWorkStage.getQueueDepth()).isEqualTo(1);
+    }
+
+    @Test
+    public void should_dispatch_works_in_threshold_order_once_reached() {
+        WorkDescriptor work1 = WorkDescriptor.create("WORK1").mustBeExecutedAfter(engineClock.now().plus(3, SECONDS));
+        WorkDescriptor work2 = WorkDescriptor.create("WORK2").mustBeExecutedAfter(engineClock.now().plus(2, SECONDS));
+        delayedWorkStage.delay(work1);
+        delayedWorkStage.delay(work2);
+
+        engineClock.addTime(5, SECONDS);
+
+        await().until(() -> dispatchedWorks.size() == 2);
+        assertThat(dispatchedWorks).containsExactly(work2, work1);
+        assertThat(delayedWorkStage.getQueueDepth()).isEqualTo(0);
+    }
+
+    @Test
+    public void should_record_delay_lag() {
+        delayedWorkStage.delay(WorkDescriptor.create("WORK").mustBeExecutedAfter(engineClock.now().plus(1, SECONDS)));
+
+        engineClock.addTime(4, SECONDS);
+
+        await().until(() -> dispatchedWorks.size() == 1);
+        assertThat(delayedWorkStage.getLastDelayLag()).isEqualTo(3000);
+        assertThat(delayedWorkStage.getMaxDelayLag()).isEqualTo(3000);
+    }
+
+    @Test
+    public void should_keep_dispatching_works_when_the_dispatcher_fails() {
+        DelayedWorkStage stage = new DelayedWorkStage(new WorkerThreadFactory("test-delayer", 1, 1), engineClock, logger);
+        stage.start(work -> {
+            if (work.getType().equals("REJECTED")) {
+                throw new RejectedExecutionException("queue is full");
+            }
+            dispatchedWorks.add(work);
+        });
+        WorkDescriptor rejected = WorkDescriptor.create("REJECTED").mustBeExecutedAfter(engineClock.now().plus(1, SECONDS));
+        WorkDescriptor work = WorkDescriptor.create("WORK").mustBeExecutedAfter(engineClock.now().plus(2, SECONDS));
+        stage.delay(rejected);
+        stage.delay(work);
+
+        engineClock.addTime(5, SECONDS);
+
+        await().until(() -> dispatchedWorks.size() == 1);
+        assertThat(dispatchedWorks).containsExactly(work);
+        stage.stop();
+    }
+
+    @Test
+    public void should_not_be_restarted_once_stopped() throws Exception {
+        delayedWorkStage.stop();
+        delayedWorkStage.start(dispatchedWorks::add);
+        delayedWorkStage.delay(WorkDescriptor.create("WORK").mustBeExecutedAfter(engineClock.now().plus(1, SECONDS)));
+
+        engineClock.addTime(5, SECONDS);
+        Thread.sleep(DelayedWorkStage.MAX_WAIT_MILLIS * 2);
+
+        assertThat(dispatchedWorks).isEmpty();
+        assertThat(delayedWorkStage.getQueueDepth()).isEqualTo(1);
+    }
+
+    @Test
+    public void clear_should_remove_delayed_works() {
+        delayedWorkStage.delay(WorkDescriptor.create("WORK").mustBeExecutedAfter(engineClock.now().plus(1, SECONDS)));
+
+        delayedWorkStage.clear();
+
+        assertThat(delayedWorkStage.getQueueDepth()).isEqualTo(0);
+    }
+
+}
@@ -0,0 +1,144 @@
+/**
+ * Copyright (C) 2018 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.work;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.bonitasoft.engine.commons.time.DefaultEngineClock;
+import org.bonitasoft.engine.log.technical.TechnicalLoggerSLF4JImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compare the throughput of the work executor when works of a same process instance are dispatched using the lock and
+ * retry strategy (the work fails with a {@link LockTimeoutException} and is put back in the queue) or using
+ * {@link WorkMailboxes}.
+ * It simulates a fan-out: many works hitting few process instances, each work holding the process instance lock during
+ * a short time, like a {@code LockProcessInstanceWork} wrapping a transaction.
+ * Run it using {@link #main(String[])}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class WorkDispatchBenchmark {
+
+    private static final long LOCK_TIMEOUT_MILLIS = 20;
+    private static final int WORKER_THREADS = 10;
+    private static final int NUMBER_OF_WORKS = 1000;
+
+    @Param({ "false", "true" })
+    public boolean processInstanceMailboxes;
+
+    @Param({ "1", "10", "100" })
+    public int numberOfProcessInstances;
+
+    private final Map<Long, ReentrantLock> processInstanceLocks = new ConcurrentHashMap<>();
+    private WorkExecutorServiceImpl workExecutorService;
+    private volatile CountDownLatch executedWorks;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        WorkFactory workFactory = new WorkFactory() {
+
+            @Override
+            public BonitaWork create(WorkDescriptor workDescriptor) {
+                return new LockingWork(workDescriptor.getLong("processInstanceId"));
+            }
+
+            @Override
+            public Long getProcessInstanceToLock(WorkDescriptor workDescriptor) {
+                return workDescriptor.getLong("processInstanceId");
+            }
+        };
+        DefaultBonitaExecutorServiceFactory executorServiceFactory = new DefaultBonitaExecutorServiceFactory(new TechnicalLoggerSLF4JImpl(), workFactory,
+                1L, WORKER_THREADS, 1000000, WORKER_THREADS, 60, new DefaultEngineClock(), processInstanceMailboxes);
+        workExecutorService = new WorkExecutorServiceImpl(executorServiceFactory, new TechnicalLoggerSLF4JImpl(), 30);
+        workExecutorService.start();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        workExecutorService.stop();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUMBER_OF_WORKS)
+    public void executeWorksOnFewProcessInstances() throws InterruptedException {
+        executedWorks = new CountDownLatch(NUMBER_OF_WORKS);
+        for (int i = 0; i < NUMBER_OF_WORKS; i++) {
+            workExecutorService.execute(WorkDescriptor.create("LOCKING_WORK").withParameter("processInstanceId", (long) (i % numberOfProcessInstances)));
+        }
+        executedWorks.await();
+    }
+
+    private class LockingWork extends BonitaWork {
+
+        private final long processInstanceId;
+
+        LockingWork(long processInstanceId) {
+            this.processInstanceId = processInstanceId;
+        }
+
+        @Override
+        public String getDescription() {
+            return "LockingWork on " + processInstanceId;
+        }
+
+        @Override
+        public void work(Map<String, Object> context) throws Exception {
+            ReentrantLock lock = processInstanceLocks.computeIfAbsent(processInstanceId, k -> new ReentrantLock());
+            if (!lock.tryLock(LOCK_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                throw new LockTimeoutException("Unable to lock process instance " + processInstanceId);
+            }
+            try {
+                // simulate a short transaction
+                TimeUnit.MICROSECONDS.sleep(200);
+            } finally {
+                lock.unlock();
+            }
+            executedWorks.countDown();
+        }
+
+        @Override
+        public void handleFailure(Exception e, Map<String, Object> context) throws Exception {
+            throw e;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(WorkDispatchBenchmark.class.getSimpleName()).build()).run();
+    }
+
+}
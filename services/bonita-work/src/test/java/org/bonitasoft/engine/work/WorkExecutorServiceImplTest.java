@@ -14,15 +14,20 @@
 
 package org.bonitasoft.engine.work;
 
+import static java.time.temporal.ChronoUnit.SECONDS;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyLong;
 import static org.mockito.Mockito.*;
 
+import java.time.Instant;
 import java.util.Collections;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.TimeUnit;
 
 import org.bonitasoft.engine.commons.exceptions.SBonitaException;
+import org.bonitasoft.engine.commons.time.FixedEngineClock;
 import org.bonitasoft.engine.log.technical.TechnicalLogSeverity;
 import org.bonitasoft.engine.log.technical.TechnicalLoggerService;
 import org.junit.Before;
@@ -240,4 +245,26 @@ public class WorkExecutorServiceImplTest {
         verify(bonitaExecutorService).awaitTermination(WORK_TERMINATION_TIMEOUT, TimeUnit.SECONDS);
     }
 
+    @Test
+    public void should_expose_the_delayed_work_metrics_of_the_executor() throws Exception {
+        FixedEngineClock engineClock = new FixedEngineClock(Instant.now());
+        WorkExecutorServiceImpl service = new WorkExecutorServiceImpl(callback -> new BonitaThreadPoolExecutor(1, 1, 1000, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(10), new WorkerThreadFactory("test-worker", 1, 1), (r, e) -> {
+                }, work -> bonitaWork, loggerService, callback, null,
+                new DelayedWorkStage(new WorkerThreadFactory("test-delayer", 1, 1), engineClock, loggerService)), loggerService,
+                WORK_TERMINATION_TIMEOUT);
+        service.start();
+
+        service.execute(WorkDescriptor.create("myWork").mustBeExecutedAfter(engineClock.now().plus(1, SECONDS)));
+        service.execute(WorkDescriptor.create("myWork").mustBeExecutedAfter(engineClock.now().plus(10, SECONDS)));
+        assertThat(service.getNumberOfDelayedWorks()).isEqualTo(2);
+        engineClock.addTime(4, SECONDS);
+
+        await().until(() -> service.getLastDelayLag() == 3000);
+        assertThat(service.getNumberOfDelayedWorks()).isEqualTo(1);
+        assertThat(service.getMaxDelayLag()).isEqualTo(3000);
+        service.stop();
+        assertThat(service.getNumberOfDelayedWorks()).isEqualTo(0);
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,79 @@
+/**
+ * Copyright (C) 2018 Bonitasoft S.A.
+ * Bonitasoft, 32 rue Gustave Eiffel - 38000 Grenoble
+ * This library is free software; you can redistribute it and/or modify it under the terms
+ * of the GNU Lesser General Public License as published by the Free Software Foundation
+ * version 2.1 of the License.
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth
+ * Floor, Boston, MA 02110-1301, USA.
+ **/
+package org.bonitasoft.engine.work;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+
+public class WorkMailboxesTest {
+
+    private WorkMailboxes workMailboxes = new WorkMailboxes();
+
+    @Test
+    public void should_dispatch_first_work_of_a_process_instance() {
+        assertThat(workMailboxes.offer(1L, WorkDescriptor.create("WORK"))).isTrue();
+        assertThat(workMailboxes.getNumberOfMailboxes()).isEqualTo(1);
+    }
+
+    @Test
+    public void should_keep_work_in_mailbox_while_an_other_work_of_the_process_instance_is_in_flight() {
+        workMailboxes.offer(1L, WorkDescriptor.create("WORK1"));
+
+        assertThat(workMailboxes.offer(1L, WorkDescriptor.create("WORK2"))).isFalse();
+        assertThat(workMailboxes.getNumberOfWaitingWorks()).isEqualTo(1);
+    }
+
+    @Test
+    public void should_dispatch_works_of_different_process_instances() {
+        workMailboxes.offer(1L, WorkDescriptor.create("WORK1"));
+
+        assertThat(workMailboxes.offer(2L, WorkDescriptor.create("WORK2"))).isTrue();
+    }
+
+    @Test
+    public void should_release_waiting_works_in_order() {
+        WorkDescriptor work2 = WorkDescriptor.create("WORK2");
+        WorkDescriptor work3 = WorkDescriptor.create("WORK3");
+        workMailboxes.offer(1L, WorkDescriptor.create("WORK1"));
+        workMailboxes.offer(1L, work2);
+        workMailboxes.offer(1L, work3);
+
+        assertThat(workMailboxes.release(1L)).isEqualTo(work2);
+        assertThat(workMailboxes.release(1L)).isEqualTo(work3);
+        assertThat(workMailboxes.release(1L)).isNull();
+        assertThat(workMailboxes.getNumberOfWaitingWorks()).isEqualTo(0);
+        assertThat(workMailboxes.getNumberOfMailboxes()).isEqualTo(0);
+    }
+
+    @Test
+    public void should_dispatch_directly_once_last_work_is_released() {
+        workMailboxes.offer(1L, WorkDescriptor.create("WORK1"));
+        workMailboxes.release(1L);
+
+        assertThat(workMailboxes.offer(1L, WorkDescriptor.create("WORK2"))).isTrue();
+    }
+
+    @Test
+    public void clear_should_remove_all_mailboxes() {
+        workMailboxes.offer(1L, WorkDescriptor.create("WORK1"));
+        workMailboxes.offer(1L, WorkDescriptor.create("WORK2"));
+
+        workMailboxes.clear();
+
+        assertThat(workMailboxes.getNumberOfWaitingWorks()).isEqualTo(0);
+        assertThat(workMailboxes.getNumberOfMailboxes()).isEqualTo(0);
+    }
+
+}